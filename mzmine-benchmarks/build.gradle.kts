@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2004-2024 The mzmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+/*
+ * JMH benchmarks of the core processing steps on synthetic data.
+ * Run all:        ./gradlew :mzmine-benchmarks:jmh
+ * Run a subset:   ./gradlew :mzmine-benchmarks:jmh -PjmhIncludes=MassDetection
+ * Results are written as json to build/results/jmh/results.json
+ */
+plugins {
+    id("io.github.mzmine.java-common-conv")
+    id("io.github.mzmine.javafx-conv")
+    alias(libs.plugins.jmh)
+}
+
+repositories {
+    mavenCentral()
+    // local libraries
+    maven { url = uri("file://" + layout.projectDirectory.dir("../local-repo")) }
+    // same repositories as mzmine-community for its transitive dependencies
+    maven { url = uri("https://www.ebi.ac.uk/Tools/maven/repos/content/groups/ebi-repo/") }
+    maven { url = uri("https://bio.informatik.uni-jena.de/repository/libs-oss/") }
+    maven { url = uri("https://jitpack.io") }
+    maven { url = uri("https://www.xypron.de/repository/") }
+}
+
+dependencies {
+    jmhImplementation(project(":mzmine-community"))
+    jmhImplementation(project(":utils"))
+    jmhImplementation(project(":taskcontroller"))
+    jmhImplementation(libs.bundles.mzio)
+    jmhImplementation(libs.guava)
+    jmhImplementation(libs.fastutil)
+}
+
+jmh {
+    jmhVersion = libs.versions.jmh.get()
+    fork = 1
+    warmupIterations = 3
+    iterations = 5
+    // fixed seeds in the generators and json output make runs comparable over time
+    resultFormat = "JSON"
+    resultsFile = layout.buildDirectory.file("results/jmh/results.json")
+    jvmArgs.addAll("--enable-preview", "-Xmx8G")
+    // same opt-in as mzmine-community: -PvectorApi
+    if (project.hasProperty("vectorApi")) {
+        jvmArgs.add("--add-modules=jdk.incubator.vector")
+    }
+    if (project.hasProperty("jmhIncludes")) {
+        includes.add(project.property("jmhIncludes").toString())
+    }
+}
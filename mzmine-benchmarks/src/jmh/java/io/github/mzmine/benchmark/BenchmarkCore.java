@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2004-2024 The mzmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.benchmark;
+
+import io.github.mzmine.main.MZmineCore;
+import io.github.mzmine.modules.MZmineRunnableModule;
+import io.github.mzmine.parameters.ParameterSet;
+import io.github.mzmine.project.ProjectService;
+import io.github.mzmine.taskcontrol.Task;
+import io.github.mzmine.taskcontrol.TaskStatus;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Starts a headless mzmine core once per benchmark JVM and runs tasks blocking on the benchmark
+ * thread.
+ */
+public final class BenchmarkCore {
+
+  private static final Logger logger = Logger.getLogger(BenchmarkCore.class.getName());
+  private static boolean started = false;
+
+  private BenchmarkCore() {
+  }
+
+  /**
+   * Starts mzmine headless if not already running. Required for the configuration and the task
+   * controller.
+   */
+  public static synchronized void start() {
+    if (started) {
+      return;
+    }
+    try {
+      MZmineCore.main(new String[]{"-r", "-m", "all"});
+    } catch (Exception ex) {
+      // might be already initialized
+      logger.fine("mzmine core was already started: " + ex.getMessage());
+    }
+    started = true;
+  }
+
+  /**
+   * Runs the task on this thread and fails if the task did not finish
+   */
+  public static void runBlocking(@NotNull Task task) {
+    MZmineCore.getTaskController().runTaskOnThisThreadBlocking(task);
+    if (task.getStatus() != TaskStatus.FINISHED) {
+      throw new IllegalStateException(
+          "Task %s did not finish: %s %s".formatted(task.getTaskDescription(), task.getStatus(),
+              task.getErrorMessage()));
+    }
+  }
+
+  /**
+   * Creates the tasks of a module on the current project and runs them one after another on this
+   * thread
+   */
+  public static void runModuleBlocking(@NotNull Class<? extends MZmineRunnableModule> moduleClass,
+      @NotNull ParameterSet parameters) {
+    final MZmineRunnableModule module = MZmineCore.getModuleInstance(moduleClass);
+    final List<Task> tasks = new ArrayList<>();
+    module.runModule(ProjectService.getProject(), parameters, tasks, Instant.now());
+    for (Task task : tasks) {
+      runBlocking(task);
+    }
+  }
+}
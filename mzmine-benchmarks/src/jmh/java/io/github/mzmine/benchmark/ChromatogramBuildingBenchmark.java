@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2004-2024 The mzmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.benchmark;
+
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.modules.dataprocessing.featdet_adapchromatogrambuilder.ADAPChromatogramBuilderParameters;
+import io.github.mzmine.modules.dataprocessing.featdet_adapchromatogrambuilder.ModularADAPChromatogramBuilderModule;
+import io.github.mzmine.modules.dataprocessing.featdet_adapchromatogrambuilder.ModularADAPChromatogramBuilderTask;
+import io.github.mzmine.parameters.ParameterSet;
+import io.github.mzmine.parameters.parametertypes.selectors.ScanSelection;
+import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
+import io.github.mzmine.project.impl.MZmineProjectImpl;
+import io.github.mzmine.taskcontrol.TaskStatus;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * ADAP chromatogram building on a synthetic LC-MS data file with mass lists.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ChromatogramBuildingBenchmark {
+
+  @Param({"1000"})
+  public int scans;
+
+  @Param({"500", "5000"})
+  public int compounds;
+
+  private RawDataFile dataFile;
+  private ParameterSet parameters;
+
+  @Setup
+  public void setup() {
+    BenchmarkCore.start();
+    dataFile = SyntheticData.rawDataFile("adap_benchmark", 11, scans, compounds, 200);
+
+    parameters = new ADAPChromatogramBuilderParameters().cloneParameterSet();
+    parameters.setParameter(ADAPChromatogramBuilderParameters.scanSelection, new ScanSelection(1));
+    parameters.setParameter(ADAPChromatogramBuilderParameters.minimumConsecutiveScans, 5);
+    parameters.setParameter(ADAPChromatogramBuilderParameters.minGroupIntensity, 1E3);
+    parameters.setParameter(ADAPChromatogramBuilderParameters.minHighestPoint, 1E4);
+    parameters.setParameter(ADAPChromatogramBuilderParameters.mzTolerance,
+        new MZTolerance(0.002, 10));
+    parameters.setParameter(ADAPChromatogramBuilderParameters.suffix, "eics");
+  }
+
+  @Benchmark
+  public MZmineProjectImpl buildChromatograms() {
+    final MZmineProjectImpl project = new MZmineProjectImpl();
+    final var task = new ModularADAPChromatogramBuilderTask(project, dataFile, parameters, null,
+        Instant.now(), ModularADAPChromatogramBuilderModule.class, null, 1E3);
+    task.run();
+    if (task.getStatus() != TaskStatus.FINISHED) {
+      throw new IllegalStateException("Chromatogram building failed: " + task.getErrorMessage());
+    }
+    return project;
+  }
+}
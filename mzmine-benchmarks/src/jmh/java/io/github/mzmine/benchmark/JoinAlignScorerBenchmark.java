@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2004-2024 The mzmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.benchmark;
+
+import static io.github.mzmine.util.FeatureListRowSorter.MZ_ASCENDING;
+
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.features.FeatureListRow;
+import io.github.mzmine.datamodel.features.ModularFeatureList;
+import io.github.mzmine.modules.dataprocessing.align_join.JoinAlignerParameters;
+import io.github.mzmine.modules.dataprocessing.align_join.JoinRowAlignScorer;
+import io.github.mzmine.modules.dataprocessing.align_join.RowVsRowScore;
+import io.github.mzmine.parameters.ParameterSet;
+import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
+import io.github.mzmine.parameters.parametertypes.tolerances.RTTolerance;
+import io.github.mzmine.parameters.parametertypes.tolerances.RTTolerance.Unit;
+import io.github.mzmine.util.FeatureListUtils;
+import io.github.mzmine.util.collections.MzRtMobilityIndex;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Scores all rows of one feature list against the rows of another feature list with the join
+ * aligner scorer, like one sample in the join aligner.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class JoinAlignScorerBenchmark {
+
+  @Param({"1000", "10000"})
+  public int rows;
+
+  private JoinRowAlignScorer scorer;
+  private List<FeatureListRow> baseRowsByMz;
+  private List<FeatureListRow> rowsToAdd;
+
+  @Setup
+  public void setup() {
+    BenchmarkCore.start();
+    final RawDataFile baseFile = SyntheticData.rawDataFile("align_base", 1, 1000, 1, 1);
+    final RawDataFile otherFile = SyntheticData.rawDataFile("align_other", 2, 1000, 1, 1);
+    // same seed results in the same m/z and retention times in both lists
+    final ModularFeatureList base = SyntheticData.featureList("base", 21, baseFile, rows, 20);
+    final ModularFeatureList other = SyntheticData.featureList("other", 21, otherFile, rows, 20);
+
+    baseRowsByMz = new ArrayList<>(base.getRows());
+    baseRowsByMz.sort(MZ_ASCENDING);
+    rowsToAdd = new ArrayList<>(other.getRows());
+
+    final ParameterSet parameters = JoinAlignerParameters.create(new MZTolerance(0.005, 10));
+    parameters.setParameter(JoinAlignerParameters.RTTolerance, new RTTolerance(0.1f, Unit.MINUTES));
+    parameters.setParameter(JoinAlignerParameters.RTWeight, 1d);
+    parameters.setParameter(JoinAlignerParameters.MZWeight, 3d);
+    scorer = new JoinRowAlignScorer(parameters);
+  }
+
+  @Benchmark
+  public ConcurrentLinkedDeque<RowVsRowScore> scoreRows() {
+    final ConcurrentLinkedDeque<RowVsRowScore> scores = new ConcurrentLinkedDeque<>();
+    // the aligner indexes the base rows once for all rows to add
+    final MzRtMobilityIndex<FeatureListRow> baseRowIndex = FeatureListUtils.createRowIndex(
+        baseRowsByMz);
+    for (FeatureListRow row : rowsToAdd) {
+      scorer.scoreRowAgainstBaseRows(baseRowIndex, row, scores);
+    }
+    return scores;
+  }
+}
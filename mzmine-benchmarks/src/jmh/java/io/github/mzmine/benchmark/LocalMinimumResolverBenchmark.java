@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2004-2024 The mzmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.benchmark;
+
+import com.google.common.collect.Range;
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.features.ModularFeatureList;
+import io.github.mzmine.modules.dataprocessing.featdet_chromatogramdeconvolution.ResolvingDimension;
+import io.github.mzmine.modules.dataprocessing.featdet_chromatogramdeconvolution.minimumsearch.MinimumSearchFeatureResolver;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Local minimum resolver on a single chromatogram with overlapping peaks. The resolver modifies
+ * the intensities, so each invocation works on a copy.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class LocalMinimumResolverBenchmark {
+
+  /**
+   * Data points in the chromatogram
+   */
+  @Param({"500", "5000"})
+  public int points;
+
+  private MinimumSearchFeatureResolver resolver;
+  private double[] rts;
+  private double[] intensities;
+
+  @Setup
+  public void setup() {
+    BenchmarkCore.start();
+    final RawDataFile file = SyntheticData.rawDataFile("resolver_benchmark", 3, 10, 1, 1);
+    final ModularFeatureList flist = new ModularFeatureList("resolver_benchmark", null, file);
+    resolver = new MinimumSearchFeatureResolver(flist, ResolvingDimension.RETENTION_TIME, 0.85,
+        0.05, 0, 1E3, 1.7, Range.closed(0d, 1.5d), 4);
+    final double[][] chromatogram = SyntheticData.chromatogram(5, points, points / 50);
+    rts = chromatogram[0];
+    intensities = chromatogram[1];
+  }
+
+  @Benchmark
+  public List<Range<Double>> resolve() {
+    return resolver.resolve(rts, intensities.clone());
+  }
+}
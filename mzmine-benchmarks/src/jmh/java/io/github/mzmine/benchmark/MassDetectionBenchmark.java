@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2004-2024 The mzmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.benchmark;
+
+import io.github.mzmine.datamodel.MassSpectrum;
+import io.github.mzmine.datamodel.MassSpectrumType;
+import io.github.mzmine.datamodel.impl.SimpleMassSpectrum;
+import io.github.mzmine.modules.dataprocessing.featdet_massdetection.MassDetector;
+import io.github.mzmine.modules.dataprocessing.featdet_massdetection.auto.AutoMassDetector;
+import io.github.mzmine.modules.dataprocessing.featdet_massdetection.centroid.CentroidMassDetector;
+import io.github.mzmine.modules.dataprocessing.featdet_massdetection.exactmass.ExactMassDetector;
+import io.github.mzmine.modules.dataprocessing.featdet_massdetection.factor_of_lowest.FactorOfLowestMassDetector;
+import io.github.mzmine.modules.dataprocessing.featdet_massdetection.localmaxima.LocalMaxMassDetector;
+import io.github.mzmine.modules.dataprocessing.featdet_massdetection.recursive.RecursiveMassDetector;
+import io.github.mzmine.modules.dataprocessing.featdet_massdetection.wavelet.WaveletMassDetector;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Mass detection of a single spectrum. Centroid detectors run on centroid spectra, all others on
+ * profile spectra.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MassDetectionBenchmark {
+
+  @Param({"centroid", "factor_of_lowest", "exact", "local_max", "recursive", "wavelet", "auto"})
+  public String detector;
+
+  /**
+   * Number of peaks in the spectrum
+   */
+  @Param({"500", "5000"})
+  public int peaks;
+
+  private MassDetector massDetector;
+  private MassSpectrum spectrum;
+
+  @Setup
+  public void setup() {
+    massDetector = switch (detector) {
+      case "centroid" -> new CentroidMassDetector(1000);
+      case "factor_of_lowest" -> new FactorOfLowestMassDetector(2.5);
+      case "exact" -> new ExactMassDetector(1000);
+      case "local_max" -> new LocalMaxMassDetector(1000);
+      case "recursive" -> new RecursiveMassDetector(1000, 0.001, 0.1);
+      case "wavelet" -> new WaveletMassDetector(1000, 3, 0.3);
+      case "auto" -> new AutoMassDetector(1000);
+      default -> throw new IllegalArgumentException("Unknown mass detector " + detector);
+    };
+
+    final boolean centroid = detector.equals("centroid") || detector.equals("factor_of_lowest");
+    if (centroid) {
+      final double[][] data = SyntheticData.centroidSpectrum(42, peaks);
+      spectrum = new SimpleMassSpectrum(data[0], data[1], MassSpectrumType.CENTROIDED);
+    } else {
+      final double[][] data = SyntheticData.profileSpectrum(42, peaks, 15);
+      spectrum = new SimpleMassSpectrum(data[0], data[1], MassSpectrumType.PROFILE);
+    }
+  }
+
+  @Benchmark
+  public double[][] detectMasses() {
+    return massDetector.getMassValues(spectrum);
+  }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2004-2024 The mzmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.benchmark;
+
+import io.github.mzmine.datamodel.MZmineProject;
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.features.ModularFeatureList;
+import io.github.mzmine.modules.io.export_rawdata_mzml.MzMLExportTask;
+import io.github.mzmine.modules.io.import_rawdata_all.AllSpectralDataImportModule;
+import io.github.mzmine.modules.io.import_rawdata_all.AllSpectralDataImportParameters;
+import io.github.mzmine.modules.io.projectload.ProjectOpeningTask;
+import io.github.mzmine.modules.io.projectsave.ProjectSaveAsParameters;
+import io.github.mzmine.modules.io.projectsave.ProjectSaveOption;
+import io.github.mzmine.modules.io.projectsave.ProjectSavingTask;
+import io.github.mzmine.parameters.ParameterSet;
+import io.github.mzmine.project.ProjectService;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Saves and loads a referencing project. Referencing projects re-import their raw data files, so
+ * the synthetic data file is written to mzML and imported once before the synthetic feature lists
+ * are added.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ProjectSaveLoadBenchmark {
+
+  @Param({"5000"})
+  public int rows;
+
+  @Param({"true", "false"})
+  public boolean binaryFeatureLists;
+
+  private Path directory;
+  private MZmineProject project;
+  private ParameterSet saveParameters;
+  private File projectFile;
+
+  @Setup
+  public void setup() throws IOException {
+    BenchmarkCore.start();
+    directory = Files.createTempDirectory("mzmine_benchmark");
+
+    // write synthetic data to mzML and import it into a new project
+    final RawDataFile synthetic = SyntheticData.rawDataFile("synthetic", 31, 1000, 2000, 200);
+    final File mzml = directory.resolve("synthetic.mzML").toFile();
+    BenchmarkCore.runBlocking(new MzMLExportTask(synthetic, mzml, Instant.now()));
+
+    ProjectService.getProjectManager().clearProject();
+    BenchmarkCore.runModuleBlocking(AllSpectralDataImportModule.class,
+        AllSpectralDataImportParameters.create(new File[]{mzml}, null, null));
+    project = ProjectService.getProject();
+    final RawDataFile file = project.getDataFiles()[0];
+    for (int i = 0; i < 3; i++) {
+      final ModularFeatureList flist = SyntheticData.featureList("flist " + i, 40 + i, file, rows,
+          20);
+      project.addFeatureList(flist);
+    }
+
+    projectFile = directory.resolve("benchmark.mzmine").toFile();
+    saveParameters = new ProjectSaveAsParameters().cloneParameterSet();
+    saveParameters.setParameter(ProjectSaveAsParameters.projectFile, projectFile);
+    saveParameters.setParameter(ProjectSaveAsParameters.option, ProjectSaveOption.REFERENCING);
+    saveParameters.setParameter(ProjectSaveAsParameters.compressRawData, false);
+    saveParameters.setParameter(ProjectSaveAsParameters.binaryFeatureLists, binaryFeatureLists);
+    // the load benchmark needs a saved project
+    saveProject();
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    try (Stream<Path> files = Files.walk(directory)) {
+      files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+    }
+  }
+
+  @Benchmark
+  public File saveProject() {
+    BenchmarkCore.runBlocking(new ProjectSavingTask(project, saveParameters, Instant.now()));
+    return projectFile;
+  }
+
+  @Benchmark
+  public MZmineProject loadProject() {
+    BenchmarkCore.runBlocking(new ProjectOpeningTask(projectFile, Instant.now()));
+    return ProjectService.getProject();
+  }
+}
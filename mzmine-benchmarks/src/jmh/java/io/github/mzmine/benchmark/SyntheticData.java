@@ -0,0 +1,285 @@
+/*
+ * Copyright (c) 2004-2024 The mzmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.benchmark;
+
+import com.google.common.collect.Range;
+import io.github.mzmine.datamodel.DataPoint;
+import io.github.mzmine.datamodel.FeatureStatus;
+import io.github.mzmine.datamodel.MassSpectrumType;
+import io.github.mzmine.datamodel.PolarityType;
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.Scan;
+import io.github.mzmine.datamodel.featuredata.IonTimeSeries;
+import io.github.mzmine.datamodel.featuredata.impl.SimpleIonTimeSeries;
+import io.github.mzmine.datamodel.features.ModularFeature;
+import io.github.mzmine.datamodel.features.ModularFeatureList;
+import io.github.mzmine.datamodel.features.ModularFeatureListRow;
+import io.github.mzmine.datamodel.impl.SimpleDataPoint;
+import io.github.mzmine.datamodel.impl.SimpleScan;
+import io.github.mzmine.datamodel.impl.masslist.SimpleMassList;
+import io.github.mzmine.project.impl.RawDataFileImpl;
+import io.github.mzmine.util.scans.ScanAlignment;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import javafx.scene.paint.Color;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Reproducible synthetic data for benchmarks. All generators take a seed so that repeated runs
+ * process the same data.
+ */
+public final class SyntheticData {
+
+  public static final double MIN_MZ = 100;
+  public static final double MAX_MZ = 1000;
+  /**
+   * Retention time step between two scans in minutes
+   */
+  public static final float RT_STEP = 0.01f;
+
+  private SyntheticData() {
+  }
+
+  /**
+   * A profile spectrum of gaussian peaks
+   *
+   * @param numPeaks      number of profile peaks
+   * @param pointsPerPeak data points of each profile peak
+   * @return [mzs, intensities] sorted by m/z
+   */
+  public static double[][] profileSpectrum(long seed, int numPeaks, int pointsPerPeak) {
+    final Random random = new Random(seed);
+    final double[] centers = new double[numPeaks];
+    for (int i = 0; i < numPeaks; i++) {
+      centers[i] = MIN_MZ + random.nextDouble() * (MAX_MZ - MIN_MZ);
+    }
+    Arrays.sort(centers);
+
+    final double step = 0.002;
+    final double sigma = step * pointsPerPeak / 6d;
+    final double[] mzs = new double[numPeaks * pointsPerPeak];
+    final double[] intensities = new double[mzs.length];
+    double lastMz = 0;
+    int n = 0;
+    for (double center : centers) {
+      final double height = 1E3 + random.nextDouble() * 1E6;
+      final double start = Math.max(lastMz + step, center - step * pointsPerPeak / 2d);
+      for (int p = 0; p < pointsPerPeak; p++) {
+        final double mz = start + p * step;
+        final double delta = mz - center;
+        mzs[n] = mz;
+        intensities[n] = height * Math.exp(-delta * delta / (2 * sigma * sigma));
+        n++;
+        lastMz = mz;
+      }
+    }
+    return new double[][]{mzs, intensities};
+  }
+
+  /**
+   * A centroid spectrum with log-uniform intensities
+   *
+   * @return [mzs, intensities] sorted by m/z
+   */
+  public static double[][] centroidSpectrum(long seed, int numSignals) {
+    final Random random = new Random(seed);
+    final double[] mzs = new double[numSignals];
+    for (int i = 0; i < numSignals; i++) {
+      mzs[i] = MIN_MZ + random.nextDouble() * (MAX_MZ - MIN_MZ);
+    }
+    Arrays.sort(mzs);
+    final double[] intensities = new double[numSignals];
+    for (int i = 0; i < numSignals; i++) {
+      intensities[i] = Math.pow(10, 2 + random.nextDouble() * 4);
+    }
+    return new double[][]{mzs, intensities};
+  }
+
+  /**
+   * A centroid spectrum as data points sorted by m/z
+   */
+  public static DataPoint[] dataPoints(long seed, int numSignals) {
+    final double[][] data = centroidSpectrum(seed, numSignals);
+    final DataPoint[] dps = new DataPoint[numSignals];
+    for (int i = 0; i < numSignals; i++) {
+      dps[i] = new SimpleDataPoint(data[0][i], data[1][i]);
+    }
+    return dps;
+  }
+
+  /**
+   * Copy of the spectrum with shifted m/z values, changed intensities and some signals replaced by
+   * noise. Used to create similar spectra for spectral similarity.
+   *
+   * @param fractionChanged fraction of signals that are replaced by random signals
+   * @return data points sorted by intensity as required by {@link ScanAlignment}
+   */
+  public static DataPoint[] similarDataPoints(long seed, DataPoint[] original,
+      double fractionChanged) {
+    final Random random = new Random(seed);
+    final DataPoint[] dps = new DataPoint[original.length];
+    for (int i = 0; i < original.length; i++) {
+      if (random.nextDouble() < fractionChanged) {
+        dps[i] = new SimpleDataPoint(MIN_MZ + random.nextDouble() * (MAX_MZ - MIN_MZ),
+            Math.pow(10, 2 + random.nextDouble() * 4));
+      } else {
+        dps[i] = new SimpleDataPoint(original[i].getMZ() + (random.nextDouble() - 0.5) * 0.002,
+            original[i].getIntensity() * (0.8 + random.nextDouble() * 0.4));
+      }
+    }
+    Arrays.sort(dps, ScanAlignment.sorter);
+    return dps;
+  }
+
+  /**
+   * An LC-MS data file of centroid MS1 scans with mass lists. Each compound elutes as a gaussian
+   * peak at a random retention time on top of random noise signals.
+   *
+   * @param numScans          number of MS1 scans
+   * @param numCompounds      number of compounds that elute over the run
+   * @param noiseSignalsPerScan random noise signals in each scan
+   */
+  public static RawDataFile rawDataFile(@NotNull String name, long seed, int numScans,
+      int numCompounds, int noiseSignalsPerScan) {
+    final Random random = new Random(seed);
+    final RawDataFileImpl file = new RawDataFileImpl(name, null, null, Color.BLACK);
+
+    final double[] compoundMzs = new double[numCompounds];
+    final int[] apexScans = new int[numCompounds];
+    final double[] heights = new double[numCompounds];
+    for (int c = 0; c < numCompounds; c++) {
+      compoundMzs[c] = MIN_MZ + random.nextDouble() * (MAX_MZ - MIN_MZ);
+      apexScans[c] = random.nextInt(numScans);
+      heights[c] = Math.pow(10, 4 + random.nextDouble() * 3);
+    }
+    // peak width in scans (sigma)
+    final double sigma = 4;
+
+    for (int s = 0; s < numScans; s++) {
+      final List<double[]> signals = new ArrayList<>(noiseSignalsPerScan + 64);
+      for (int c = 0; c < numCompounds; c++) {
+        final int delta = s - apexScans[c];
+        if (Math.abs(delta) <= 4 * sigma) {
+          final double intensity = heights[c] * Math.exp(-delta * delta / (2 * sigma * sigma));
+          final double mz = compoundMzs[c] + (random.nextDouble() - 0.5) * 0.001;
+          signals.add(new double[]{mz, intensity});
+        }
+      }
+      for (int i = 0; i < noiseSignalsPerScan; i++) {
+        signals.add(new double[]{MIN_MZ + random.nextDouble() * (MAX_MZ - MIN_MZ),
+            100 + random.nextDouble() * 900});
+      }
+      signals.sort((a, b) -> Double.compare(a[0], b[0]));
+
+      final double[] mzs = new double[signals.size()];
+      final double[] intensities = new double[signals.size()];
+      for (int i = 0; i < mzs.length; i++) {
+        mzs[i] = signals.get(i)[0];
+        intensities[i] = signals.get(i)[1];
+      }
+
+      final SimpleScan scan = new SimpleScan(file, s, 1, s * RT_STEP, null, mzs, intensities,
+          MassSpectrumType.CENTROIDED, PolarityType.POSITIVE, "", Range.closed(MIN_MZ, MAX_MZ));
+      scan.addMassList(new SimpleMassList(null, mzs, intensities));
+      file.addScan(scan);
+    }
+    return file;
+  }
+
+  /**
+   * A gaussian chromatogram over consecutive scans
+   *
+   * @param firstScan index of the first scan in the file
+   * @param numScans  number of data points
+   */
+  public static IonTimeSeries<Scan> ionTimeSeries(long seed, @NotNull RawDataFile file,
+      int firstScan, int numScans, double mz) {
+    final Random random = new Random(seed);
+    final List<Scan> scans = file.getScans().subList(firstScan, firstScan + numScans);
+    final double[] mzs = new double[numScans];
+    final double[] intensities = new double[numScans];
+    final double apex = numScans / 2d;
+    final double sigma = numScans / 8d;
+    final double height = Math.pow(10, 4 + random.nextDouble() * 3);
+    for (int i = 0; i < numScans; i++) {
+      mzs[i] = mz + (random.nextDouble() - 0.5) * 0.001;
+      final double delta = i - apex;
+      intensities[i] = height * Math.exp(-delta * delta / (2 * sigma * sigma));
+    }
+    return new SimpleIonTimeSeries(null, mzs, intensities, scans);
+  }
+
+  /**
+   * Chromatogram values with several overlapping gaussian peaks and noise, like an EIC before
+   * resolving
+   *
+   * @return [retention times, intensities]
+   */
+  public static double[][] chromatogram(long seed, int numPoints, int numPeaks) {
+    final Random random = new Random(seed);
+    final double[] rts = new double[numPoints];
+    final double[] intensities = new double[numPoints];
+    for (int i = 0; i < numPoints; i++) {
+      rts[i] = i * RT_STEP;
+      intensities[i] = random.nextDouble() * 100;
+    }
+    for (int p = 0; p < numPeaks; p++) {
+      final double apex = random.nextDouble() * numPoints;
+      final double sigma = 3 + random.nextDouble() * 6;
+      final double height = Math.pow(10, 4 + random.nextDouble() * 3);
+      for (int i = 0; i < numPoints; i++) {
+        final double delta = i - apex;
+        intensities[i] += height * Math.exp(-delta * delta / (2 * sigma * sigma));
+      }
+    }
+    return new double[][]{rts, intensities};
+  }
+
+  /**
+   * A feature list with one feature per row, features are gaussian chromatograms of random m/z
+   * and retention time in the file
+   *
+   * @param pointsPerFeature data points of each feature
+   */
+  public static ModularFeatureList featureList(@NotNull String name, long seed,
+      @NotNull RawDataFile file, int numRows, int pointsPerFeature) {
+    final Random random = new Random(seed);
+    final ModularFeatureList flist = new ModularFeatureList(name, null, file);
+    flist.setSelectedScans(file, file.getScans());
+    final int maxStart = file.getNumOfScans() - pointsPerFeature;
+    for (int i = 0; i < numRows; i++) {
+      final double mz = MIN_MZ + random.nextDouble() * (MAX_MZ - MIN_MZ);
+      final IonTimeSeries<Scan> series = ionTimeSeries(random.nextLong(), file,
+          random.nextInt(maxStart), pointsPerFeature, mz);
+      final ModularFeature feature = new ModularFeature(flist, file, series,
+          FeatureStatus.DETECTED);
+      flist.addRow(new ModularFeatureListRow(flist, i + 1, feature));
+    }
+    return flist;
+  }
+}
@@ -31,6 +31,7 @@ import io.github.mzmine.datamodel.RawDataFile;
 import io.github.mzmine.datamodel.Scan;
 import io.github.mzmine.datamodel.featuredata.IonMobilogramTimeSeries;
 import io.github.mzmine.datamodel.features.FeatureList;
+import io.github.mzmine.datamodel.features.FeatureListRow;
 import io.github.mzmine.parameters.parametertypes.selectors.ScanSelection;
 import java.util.List;
 import org.jetbrains.annotations.NotNull;
@@ -110,6 +111,23 @@ public class EfficientDataAccess {
     };
   }
 
+  /**
+   * Access the chromatographic data of a subset of rows in a feature list sorted by scan ID
+   * (usually sorted by retention time). Each chunk of rows can be accessed on a different thread.
+   *
+   * @param flist    target feature list. Loops through all features of the rows in dataFile
+   * @param type     defines the data accession type
+   * @param dataFile define the data file in an aligned feature list
+   * @param rows     the subset of rows of flist
+   */
+  public static FeatureDataAccess of(FeatureList flist, FeatureDataType type,
+      RawDataFile dataFile, List<FeatureListRow> rows) {
+    return switch (type) {
+      case ONLY_DETECTED -> new FeatureDetectedDataAccess(flist, dataFile, rows);
+      case INCLUDE_ZEROS -> new FeatureFullDataAccess(flist, dataFile, rows);
+    };
+  }
+
   public static MobilogramDataAccess of(final IonMobilogramTimeSeries ionTrace,
       final MobilogramAccessType accessType) {
     return new MobilogramDataAccess(ionTrace, accessType);
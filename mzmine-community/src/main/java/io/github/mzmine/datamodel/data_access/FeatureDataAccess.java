@@ -91,12 +91,25 @@ public abstract class FeatureDataAccess implements IonTimeSeries<Scan> {
    * @param dataFile define the data file in an aligned feature list
    */
   protected FeatureDataAccess(FeatureList flist, @Nullable RawDataFile dataFile) {
+    this(flist, dataFile, flist.getRows());
+  }
+
+  /**
+   * Access the chromatographic data of a subset of rows in a feature list sorted by scan ID
+   * (usually sorted by retention time). Used to split a feature list into chunks that are accessed
+   * in parallel.
+   *
+   * @param flist    target feature list. Loops through all features of the rows in dataFile
+   * @param dataFile define the data file in an aligned feature list
+   * @param allRows  the subset of rows of the feature list
+   */
+  protected FeatureDataAccess(FeatureList flist, @Nullable RawDataFile dataFile,
+      List<FeatureListRow> allRows) {
     this.flist = flist;
     this.dataFile = dataFile;
 
     // set rows and number of features
     int totalFeatures = 0;
-    List<FeatureListRow> allRows = flist.getRows();
     // handle aligned flist
     if (flist.getNumberOfRawDataFiles() > 1) {
       if (dataFile != null) {
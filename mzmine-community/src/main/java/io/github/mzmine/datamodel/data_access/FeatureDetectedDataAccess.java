@@ -30,6 +30,7 @@ import io.github.mzmine.datamodel.Scan;
 import io.github.mzmine.datamodel.featuredata.IonTimeSeries;
 import io.github.mzmine.datamodel.features.Feature;
 import io.github.mzmine.datamodel.features.FeatureList;
+import io.github.mzmine.datamodel.features.FeatureListRow;
 import java.util.List;
 import org.jetbrains.annotations.Nullable;
 
@@ -67,7 +68,20 @@ public class FeatureDetectedDataAccess extends FeatureDataAccess {
    * @param dataFile define the data file in an aligned feature list
    */
   protected FeatureDetectedDataAccess(FeatureList flist, @Nullable RawDataFile dataFile) {
-    super(flist, dataFile);
+    this(flist, dataFile, flist.getRows());
+  }
+
+  /**
+   * Detected data access on a subset of rows, see
+   * {@link #FeatureDetectedDataAccess(FeatureList, RawDataFile)}
+   *
+   * @param flist    target feature list. Loops through all features of the rows in dataFile
+   * @param dataFile define the data file in an aligned feature list
+   * @param rows     the subset of rows of the feature list
+   */
+  protected FeatureDetectedDataAccess(FeatureList flist, @Nullable RawDataFile dataFile,
+      List<FeatureListRow> rows) {
+    super(flist, dataFile, rows);
 
     // detected data points currently on feature/chromatogram
     int detected = getMaxNumOfDetectedDataPoints();
@@ -30,6 +30,7 @@ import io.github.mzmine.datamodel.Scan;
 import io.github.mzmine.datamodel.featuredata.IonTimeSeries;
 import io.github.mzmine.datamodel.features.Feature;
 import io.github.mzmine.datamodel.features.FeatureList;
+import io.github.mzmine.datamodel.features.FeatureListRow;
 import java.util.Arrays;
 import java.util.List;
 import org.jetbrains.annotations.Nullable;
@@ -79,7 +80,20 @@ public class FeatureFullDataAccess extends FeatureDataAccess {
    * @param dataFile define the data file in an aligned feature list
    */
   protected FeatureFullDataAccess(FeatureList flist, @Nullable RawDataFile dataFile) {
-    super(flist, dataFile);
+    this(flist, dataFile, flist.getRows());
+  }
+
+  /**
+   * Full data access on a subset of rows, see {@link #FeatureFullDataAccess(FeatureList,
+   * RawDataFile)}
+   *
+   * @param flist    target feature list. Loops through all features of the rows in dataFile
+   * @param dataFile define the data file in an aligned feature list
+   * @param rows     the subset of rows of the feature list
+   */
+  protected FeatureFullDataAccess(FeatureList flist, @Nullable RawDataFile dataFile,
+      List<FeatureListRow> rows) {
+    super(flist, dataFile, rows);
 
     // return all scans that were used to create the chromatograms in the first place
     int max = 0;
@@ -109,6 +109,18 @@ public class SimpleIonTimeSeries implements IonTimeSeries<Scan> {
     this.intensityValues = intensityValues;
   }
 
+  /**
+   * Creates a series that directly uses the memory segments without copying, e.g., segments of a
+   * memory mapped project file.
+   *
+   * @param mzValues        m/z values in native byte order
+   * @param intensityValues intensity values in native byte order
+   */
+  public static SimpleIonTimeSeries ofSegments(@NotNull MemorySegment mzValues,
+      @NotNull MemorySegment intensityValues, @NotNull List<? extends Scan> scans) {
+    return new SimpleIonTimeSeries(mzValues, intensityValues, scans);
+  }
+
   public static SimpleIonTimeSeries loadFromXML(XMLStreamReader reader, MemoryMapStorage storage,
       RawDataFile file) throws XMLStreamException {
 
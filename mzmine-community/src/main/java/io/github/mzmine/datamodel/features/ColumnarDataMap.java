@@ -0,0 +1,402 @@
+/*
+ * Copyright (c) 2004-2025 The mzmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package io.github.mzmine.datamodel.features;
+
+import io.github.mzmine.datamodel.features.types.DataType;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Consumer;
+import javafx.beans.InvalidationListener;
+import javafx.collections.MapChangeListener;
+import javafx.collections.ObservableMap;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * The data map of a {@link ModularFeature} or {@link ModularFeatureListRow}. Values of the types
+ * in {@link ModularDataColumns} are stored in the primitive columns of the feature list, all other
+ * values in a {@link HashMap}. A key is either mapped in the columns or in the hash map, never in
+ * both. Change events are fired like in the observable map of {@link
+ * javafx.collections.FXCollections#observableMap(Map)}.
+ * <p>
+ * When the row or feature is removed, {@link #releaseColumns()} moves the column values to the hash
+ * map and releases the slot, so the removed row or feature keeps its values.
+ */
+class ColumnarDataMap extends AbstractMap<DataType, Object> implements
+    ObservableMap<DataType, Object> {
+
+  private final ModularDataColumns columns;
+  // -1 after the slot was released
+  private volatile int slot;
+  private final Consumer<DataType> typeAdded;
+  // values that are not stored in columns
+  private final HashMap<DataType, Object> values = new HashMap<>(8);
+  // listeners are rarely added, only create lists on demand
+  private List<InvalidationListener> invalidationListeners;
+  private List<MapChangeListener<? super DataType, ? super Object>> changeListeners;
+  private EntrySet entrySet;
+
+  /**
+   * @param columns   the column store of the feature list
+   * @param typeAdded called when a key is added to the map
+   */
+  ColumnarDataMap(@NotNull ModularDataColumns columns, @NotNull Consumer<DataType> typeAdded) {
+    this.columns = columns;
+    this.slot = columns.allocateSlot();
+    this.typeAdded = typeAdded;
+  }
+
+  /**
+   * Moves all column values to the hash map and releases the slot for reuse. Later values are only
+   * stored in the hash map. No change events are fired, as the mapped values stay the same.
+   */
+  synchronized void releaseColumns() {
+    final int released = slot;
+    if (released == -1) {
+      return;
+    }
+    for (int c = 0; c < ModularDataColumns.numColumns(); c++) {
+      final Object value = columns.get(c, released);
+      if (value != ModularDataColumns.ABSENT) {
+        values.put(ModularDataColumns.getType(c), value);
+      }
+    }
+    slot = -1;
+    columns.releaseSlot(released);
+  }
+
+  /**
+   * @return the column of this key or -1 if the key is not stored in columns
+   */
+  private int columnIndex(Object key) {
+    return slot == -1 ? -1 : ModularDataColumns.columnIndex(key);
+  }
+
+  @Override
+  public int size() {
+    final int current = slot;
+    return values.size() + (current == -1 ? 0 : columns.countMapped(current));
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return size() == 0;
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    final int column = columnIndex(key);
+    if (column != -1 && columns.get(column, slot) != ModularDataColumns.ABSENT) {
+      return true;
+    }
+    return values.containsKey(key);
+  }
+
+  @Override
+  public Object get(Object key) {
+    final int column = columnIndex(key);
+    if (column != -1) {
+      final Object value = columns.get(column, slot);
+      if (value != ModularDataColumns.ABSENT) {
+        return value;
+      }
+    }
+    return values.get(key);
+  }
+
+  @Override
+  public Object put(DataType key, Object value) {
+    final int column = columnIndex(key);
+    boolean wasMapped;
+    Object old;
+    if (column != -1 && ModularDataColumns.canStore(column, value)) {
+      old = columns.put(column, slot, value);
+      wasMapped = old != ModularDataColumns.ABSENT;
+      if (!wasMapped && !values.isEmpty() && values.containsKey(key)) {
+        // value of a different class was in the map before
+        old = values.remove(key);
+        wasMapped = true;
+      }
+    } else {
+      wasMapped = values.containsKey(key);
+      old = values.put(key, value);
+      if (column != -1 && !wasMapped) {
+        old = columns.remove(column, slot);
+        wasMapped = old != ModularDataColumns.ABSENT;
+      }
+    }
+    if (!wasMapped) {
+      old = null;
+      typeAdded.accept(key);
+      fireChange(key, null, value, true, false);
+    } else if (!Objects.equals(old, value)) {
+      fireChange(key, old, value, true, true);
+    }
+    return old;
+  }
+
+  @Override
+  public Object remove(Object key) {
+    final int column = columnIndex(key);
+    if (column != -1) {
+      final Object old = columns.remove(column, slot);
+      if (old != ModularDataColumns.ABSENT) {
+        fireChange((DataType) key, old, null, false, true);
+        return old;
+      }
+    }
+    if (!values.containsKey(key)) {
+      return null;
+    }
+    final Object old = values.remove(key);
+    fireChange((DataType) key, old, null, false, true);
+    return old;
+  }
+
+  @Override
+  public void clear() {
+    for (final DataType key : new ArrayList<>(keySet())) {
+      remove(key);
+    }
+  }
+
+  @Override
+  public @NotNull Set<Entry<DataType, Object>> entrySet() {
+    if (entrySet == null) {
+      entrySet = new EntrySet();
+    }
+    return entrySet;
+  }
+
+  @Override
+  public void addListener(MapChangeListener<? super DataType, ? super Object> listener) {
+    if (changeListeners == null) {
+      changeListeners = new ArrayList<>(1);
+    }
+    changeListeners.add(listener);
+  }
+
+  @Override
+  public void removeListener(MapChangeListener<? super DataType, ? super Object> listener) {
+    if (changeListeners != null) {
+      changeListeners.remove(listener);
+    }
+  }
+
+  @Override
+  public void addListener(InvalidationListener listener) {
+    if (invalidationListeners == null) {
+      invalidationListeners = new ArrayList<>(1);
+    }
+    invalidationListeners.add(listener);
+  }
+
+  @Override
+  public void removeListener(InvalidationListener listener) {
+    if (invalidationListeners != null) {
+      invalidationListeners.remove(listener);
+    }
+  }
+
+  private void fireChange(DataType key, @Nullable Object removed, @Nullable Object added,
+      boolean wasAdded, boolean wasRemoved) {
+    if (invalidationListeners != null) {
+      for (final InvalidationListener listener : List.copyOf(invalidationListeners)) {
+        listener.invalidated(this);
+      }
+    }
+    if (changeListeners != null) {
+      final Change change = new Change(key, removed, added, wasAdded, wasRemoved);
+      for (final MapChangeListener<? super DataType, ? super Object> listener : List.copyOf(
+          changeListeners)) {
+        listener.onChanged(change);
+      }
+    }
+  }
+
+  private class Change extends MapChangeListener.Change<DataType, Object> {
+
+    private final DataType key;
+    private final Object removed;
+    private final Object added;
+    private final boolean wasAdded;
+    private final boolean wasRemoved;
+
+    private Change(DataType key, Object removed, Object added, boolean wasAdded,
+        boolean wasRemoved) {
+      super(ColumnarDataMap.this);
+      this.key = key;
+      this.removed = removed;
+      this.added = added;
+      this.wasAdded = wasAdded;
+      this.wasRemoved = wasRemoved;
+    }
+
+    @Override
+    public boolean wasAdded() {
+      return wasAdded;
+    }
+
+    @Override
+    public boolean wasRemoved() {
+      return wasRemoved;
+    }
+
+    @Override
+    public DataType getKey() {
+      return key;
+    }
+
+    @Override
+    public Object getValueAdded() {
+      return added;
+    }
+
+    @Override
+    public Object getValueRemoved() {
+      return removed;
+    }
+  }
+
+  private class EntrySet extends AbstractSet<Entry<DataType, Object>> {
+
+    @Override
+    public @NotNull Iterator<Entry<DataType, Object>> iterator() {
+      return new EntryIterator();
+    }
+
+    @Override
+    public int size() {
+      return ColumnarDataMap.this.size();
+    }
+  }
+
+  /**
+   * Iterates the hash map first, then all mapped columns
+   */
+  private class EntryIterator implements Iterator<Entry<DataType, Object>> {
+
+    private final Iterator<DataType> mapKeys = new ArrayList<>(values.keySet()).iterator();
+    private int nextColumn = -1;
+    private DataType current;
+    private DataType next;
+
+    private EntryIterator() {
+      advance();
+    }
+
+    private void advance() {
+      if (mapKeys.hasNext()) {
+        next = mapKeys.next();
+        return;
+      }
+      next = null;
+      final int slot = ColumnarDataMap.this.slot;
+      if (slot == -1) {
+        return;
+      }
+      while (++nextColumn < ModularDataColumns.numColumns()) {
+        if (columns.get(nextColumn, slot) != ModularDataColumns.ABSENT) {
+          next = ModularDataColumns.getType(nextColumn);
+          return;
+        }
+      }
+    }
+
+    @Override
+    public boolean hasNext() {
+      return next != null;
+    }
+
+    @Override
+    public Entry<DataType, Object> next() {
+      if (next == null) {
+        throw new NoSuchElementException();
+      }
+      current = next;
+      advance();
+      return new DataEntry(current);
+    }
+
+    @Override
+    public void remove() {
+      if (current == null) {
+        throw new IllegalStateException();
+      }
+      ColumnarDataMap.this.remove(current);
+      current = null;
+    }
+  }
+
+  private class DataEntry implements Entry<DataType, Object> {
+
+    private final DataType key;
+
+    private DataEntry(DataType key) {
+      this.key = key;
+    }
+
+    @Override
+    public DataType getKey() {
+      return key;
+    }
+
+    @Override
+    public Object getValue() {
+      return get(key);
+    }
+
+    @Override
+    public Object setValue(Object value) {
+      return put(key, value);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof Map.Entry<?, ?> e && Objects.equals(key, e.getKey()) && Objects.equals(
+          getValue(), e.getValue());
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(key) ^ Objects.hashCode(getValue());
+    }
+
+    @Override
+    public String toString() {
+      return key + "=" + getValue();
+    }
+  }
+}
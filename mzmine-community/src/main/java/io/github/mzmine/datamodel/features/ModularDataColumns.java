@@ -0,0 +1,490 @@
+/*
+ * Copyright (c) 2004-2025 The mzmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package io.github.mzmine.datamodel.features;
+
+import io.github.mzmine.datamodel.features.types.DataType;
+import io.github.mzmine.datamodel.features.types.DataTypes;
+import io.github.mzmine.datamodel.features.types.numbers.AreaType;
+import io.github.mzmine.datamodel.features.types.numbers.AsymmetryFactorType;
+import io.github.mzmine.datamodel.features.types.numbers.CCSType;
+import io.github.mzmine.datamodel.features.types.numbers.ChargeType;
+import io.github.mzmine.datamodel.features.types.numbers.FwhmType;
+import io.github.mzmine.datamodel.features.types.numbers.HeightType;
+import io.github.mzmine.datamodel.features.types.numbers.IDType;
+import io.github.mzmine.datamodel.features.types.numbers.MZType;
+import io.github.mzmine.datamodel.features.types.numbers.MobilityType;
+import io.github.mzmine.datamodel.features.types.numbers.RTType;
+import io.github.mzmine.datamodel.features.types.numbers.TailingFactorType;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Column store for the frequently used numeric {@link DataType}s of all rows or all features of
+ * one {@link ModularFeatureList}. Each row or feature gets a slot and the values are held in
+ * primitive arrays per type instead of boxed values in a map. Columns and chunks of slots are only
+ * allocated when the first value is set.
+ * <p>
+ * A slot of a column can be absent (no mapping), mapped to null, or hold a value. This keeps the
+ * same semantics as the map of a {@link ModularDataModel}. Values are accessed through
+ * {@link ModularDataModel#get(DataType)} and {@link ModularDataModel#set(DataType, Object)}, which
+ * stay unchanged for all types.
+ * <p>
+ * The slot of a row or feature is released when it is removed from its feature list or row. The
+ * values of a released slot are moved to the map of its owner and the slot is reused for new rows
+ * or features, so the columns do not grow with removed rows or features.
+ */
+public final class ModularDataColumns {
+
+  /**
+   * Returned by {@link #get(int, int)} if the slot has no mapping
+   */
+  static final Object ABSENT = new Object();
+
+  private static final int CHUNK_BITS = 12;
+  private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+  private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+  // NaN patterns that are never created by floatToIntBits / doubleToLongBits (canonical NaN)
+  private static final int FLOAT_ABSENT = 0x7f800001;
+  private static final int FLOAT_NULL = 0x7f800002;
+  private static final long DOUBLE_ABSENT = 0x7ff0000000000001L;
+  private static final long DOUBLE_NULL = 0x7ff0000000000002L;
+  // these two integers are stored in the map instead of the column
+  private static final int INTEGER_ABSENT = Integer.MIN_VALUE;
+  private static final int INTEGER_NULL = Integer.MIN_VALUE + 1;
+
+  private enum Kind {
+    FLOAT, DOUBLE, INTEGER
+  }
+
+  /**
+   * The columnar types. Only the exact classes are stored in columns, subclasses are different
+   * types and stay in the map.
+   */
+  private static final List<Class<? extends DataType<?>>> COLUMN_TYPES = List.of(MZType.class,
+      RTType.class, HeightType.class, AreaType.class, MobilityType.class, CCSType.class,
+      FwhmType.class, TailingFactorType.class, AsymmetryFactorType.class, ChargeType.class,
+      IDType.class);
+  private static final Kind[] KINDS = {Kind.DOUBLE, Kind.FLOAT, Kind.FLOAT, Kind.FLOAT, Kind.FLOAT,
+      Kind.FLOAT, Kind.FLOAT, Kind.FLOAT, Kind.FLOAT, Kind.INTEGER, Kind.INTEGER};
+  private static final Map<Class<?>, Integer> COLUMN_INDEX = new IdentityHashMap<>();
+
+  static {
+    for (int i = 0; i < COLUMN_TYPES.size(); i++) {
+      COLUMN_INDEX.put(COLUMN_TYPES.get(i), i);
+    }
+  }
+
+  private final AtomicInteger nextSlot = new AtomicInteger(0);
+  // released slots that are reused before new slots are allocated. Guarded by freeSlots
+  private final IntArrayList freeSlots = new IntArrayList();
+  private final BitSet releasedSlots = new BitSet();
+  // read without lock so that allocation is lock free while no slot was released
+  private final AtomicInteger numFreeSlots = new AtomicInteger(0);
+  private final AtomicReferenceArray<Column> columns = new AtomicReferenceArray<>(
+      COLUMN_TYPES.size());
+
+  /**
+   * @return the column index of this type or -1 if the type is not stored in columns
+   */
+  static int columnIndex(@Nullable Object type) {
+    if (!(type instanceof DataType<?>)) {
+      return -1;
+    }
+    final Integer index = COLUMN_INDEX.get(type.getClass());
+    return index == null ? -1 : index;
+  }
+
+  /**
+   * @return true if values of this type are stored in columns
+   */
+  public static boolean isColumnarType(@Nullable DataType<?> type) {
+    return columnIndex(type) != -1;
+  }
+
+  /**
+   * @return number of columns
+   */
+  static int numColumns() {
+    return COLUMN_TYPES.size();
+  }
+
+  /**
+   * @return the singleton type of this column
+   */
+  static @NotNull DataType<?> getType(int column) {
+    return DataTypes.get(COLUMN_TYPES.get(column));
+  }
+
+  /**
+   * @return a free slot for a row or feature. Released slots are reused first.
+   */
+  int allocateSlot() {
+    if (numFreeSlots.get() > 0) {
+      synchronized (freeSlots) {
+        if (!freeSlots.isEmpty()) {
+          final int slot = freeSlots.popInt();
+          releasedSlots.clear(slot);
+          numFreeSlots.decrementAndGet();
+          return slot;
+        }
+      }
+    }
+    return nextSlot.getAndIncrement();
+  }
+
+  /**
+   * Removes all values of this slot and marks it free for reuse. The slot must not be used
+   * afterwards. Releasing a slot that is already free has no effect.
+   *
+   * @return true if the slot was released, false if it was already free
+   */
+  boolean releaseSlot(int slot) {
+    if (slot < 0 || slot >= nextSlot.get()) {
+      throw new IllegalArgumentException("Slot %d was not allocated".formatted(slot));
+    }
+    synchronized (freeSlots) {
+      if (releasedSlots.get(slot)) {
+        return false;
+      }
+      for (int c = 0; c < columns.length(); c++) {
+        final Column col = columns.get(c);
+        if (col != null) {
+          col.remove(slot);
+        }
+      }
+      releasedSlots.set(slot);
+      freeSlots.push(slot);
+      numFreeSlots.incrementAndGet();
+      return true;
+    }
+  }
+
+  /**
+   * @return number of slots that were allocated, including released slots
+   */
+  public int getNumSlots() {
+    return nextSlot.get();
+  }
+
+  /**
+   * @return number of slots in use
+   */
+  public int getNumUsedSlots() {
+    return nextSlot.get() - numFreeSlots.get();
+  }
+
+  /**
+   * @return true if the value can be stored in this column. Other values (with a different class)
+   * need to be stored in the map.
+   */
+  static boolean canStore(int column, @Nullable Object value) {
+    if (value == null) {
+      return true;
+    }
+    return switch (KINDS[column]) {
+      case FLOAT -> value.getClass() == Float.class;
+      case DOUBLE -> value.getClass() == Double.class;
+      case INTEGER -> value.getClass() == Integer.class && (Integer) value != INTEGER_ABSENT
+                      && (Integer) value != INTEGER_NULL;
+    };
+  }
+
+  /**
+   * @return the value, null if mapped to null, or {@link #ABSENT}
+   */
+  @Nullable
+  Object get(int column, int slot) {
+    final Column col = columns.get(column);
+    return col == null ? ABSENT : col.get(slot);
+  }
+
+  /**
+   * @param value value that passed {@link #canStore(int, Object)}
+   * @return the old value, null if mapped to null, or {@link #ABSENT}
+   */
+  @Nullable
+  Object put(int column, int slot, @Nullable Object value) {
+    return getOrCreateColumn(column).put(slot, value);
+  }
+
+  /**
+   * @return the old value, null if mapped to null, or {@link #ABSENT}
+   */
+  @Nullable
+  Object remove(int column, int slot) {
+    final Column col = columns.get(column);
+    return col == null ? ABSENT : col.remove(slot);
+  }
+
+  /**
+   * @return the number of mapped columns for this slot
+   */
+  int countMapped(int slot) {
+    int n = 0;
+    for (int c = 0; c < columns.length(); c++) {
+      final Column col = columns.get(c);
+      if (col != null && col.get(slot) != ABSENT) {
+        n++;
+      }
+    }
+    return n;
+  }
+
+  private Column getOrCreateColumn(int column) {
+    final Column col = columns.get(column);
+    if (col != null) {
+      return col;
+    }
+    final Column created = switch (KINDS[column]) {
+      case FLOAT -> new FloatColumn();
+      case DOUBLE -> new DoubleColumn();
+      case INTEGER -> new IntegerColumn();
+    };
+    // another thread may have created the column in the meantime
+    return columns.compareAndSet(column, null, created) ? created : columns.get(column);
+  }
+
+  /**
+   * Primitive values in chunks of slots. Chunks are created on the first write.
+   */
+  private abstract static sealed class Column permits FloatColumn, DoubleColumn, IntegerColumn {
+
+    abstract Object get(int slot);
+
+    abstract Object put(int slot, Object value);
+
+    abstract Object remove(int slot);
+  }
+
+  private static final class FloatColumn extends Column {
+
+    private volatile int[][] chunks = new int[0][];
+
+    @Override
+    Object get(int slot) {
+      final int[][] current = chunks;
+      final int chunk = slot >>> CHUNK_BITS;
+      if (chunk >= current.length || current[chunk] == null) {
+        return ABSENT;
+      }
+      return decode(current[chunk][slot & CHUNK_MASK]);
+    }
+
+    @Override
+    Object put(int slot, Object value) {
+      final int[] chunk = getOrCreateChunk(slot >>> CHUNK_BITS);
+      final int index = slot & CHUNK_MASK;
+      final Object old = decode(chunk[index]);
+      chunk[index] = value == null ? FLOAT_NULL : Float.floatToIntBits((Float) value);
+      return old;
+    }
+
+    @Override
+    Object remove(int slot) {
+      final int[][] current = chunks;
+      final int chunk = slot >>> CHUNK_BITS;
+      if (chunk >= current.length || current[chunk] == null) {
+        return ABSENT;
+      }
+      final int index = slot & CHUNK_MASK;
+      final Object old = decode(current[chunk][index]);
+      current[chunk][index] = FLOAT_ABSENT;
+      return old;
+    }
+
+    private static Object decode(int bits) {
+      return switch (bits) {
+        case FLOAT_ABSENT -> ABSENT;
+        case FLOAT_NULL -> null;
+        default -> Float.intBitsToFloat(bits);
+      };
+    }
+
+    private int[] getOrCreateChunk(int chunk) {
+      int[][] current = chunks;
+      if (chunk < current.length && current[chunk] != null) {
+        return current[chunk];
+      }
+      synchronized (this) {
+        current = chunks;
+        if (chunk >= current.length) {
+          current = Arrays.copyOf(current, Math.max(chunk + 1, current.length * 2));
+        }
+        if (current[chunk] == null) {
+          final int[] values = new int[CHUNK_SIZE];
+          Arrays.fill(values, FLOAT_ABSENT);
+          current[chunk] = values;
+        }
+        chunks = current;
+        return current[chunk];
+      }
+    }
+  }
+
+  private static final class DoubleColumn extends Column {
+
+    private volatile long[][] chunks = new long[0][];
+
+    @Override
+    Object get(int slot) {
+      final long[][] current = chunks;
+      final int chunk = slot >>> CHUNK_BITS;
+      if (chunk >= current.length || current[chunk] == null) {
+        return ABSENT;
+      }
+      return decode(current[chunk][slot & CHUNK_MASK]);
+    }
+
+    @Override
+    Object put(int slot, Object value) {
+      final long[] chunk = getOrCreateChunk(slot >>> CHUNK_BITS);
+      final int index = slot & CHUNK_MASK;
+      final Object old = decode(chunk[index]);
+      chunk[index] = value == null ? DOUBLE_NULL : Double.doubleToLongBits((Double) value);
+      return old;
+    }
+
+    @Override
+    Object remove(int slot) {
+      final long[][] current = chunks;
+      final int chunk = slot >>> CHUNK_BITS;
+      if (chunk >= current.length || current[chunk] == null) {
+        return ABSENT;
+      }
+      final int index = slot & CHUNK_MASK;
+      final Object old = decode(current[chunk][index]);
+      current[chunk][index] = DOUBLE_ABSENT;
+      return old;
+    }
+
+    private static Object decode(long bits) {
+      if (bits == DOUBLE_ABSENT) {
+        return ABSENT;
+      }
+      if (bits == DOUBLE_NULL) {
+        return null;
+      }
+      return Double.longBitsToDouble(bits);
+    }
+
+    private long[] getOrCreateChunk(int chunk) {
+      long[][] current = chunks;
+      if (chunk < current.length && current[chunk] != null) {
+        return current[chunk];
+      }
+      synchronized (this) {
+        current = chunks;
+        if (chunk >= current.length) {
+          current = Arrays.copyOf(current, Math.max(chunk + 1, current.length * 2));
+        }
+        if (current[chunk] == null) {
+          final long[] values = new long[CHUNK_SIZE];
+          Arrays.fill(values, DOUBLE_ABSENT);
+          current[chunk] = values;
+        }
+        chunks = current;
+        return current[chunk];
+      }
+    }
+  }
+
+  private static final class IntegerColumn extends Column {
+
+    private volatile int[][] chunks = new int[0][];
+
+    @Override
+    Object get(int slot) {
+      final int[][] current = chunks;
+      final int chunk = slot >>> CHUNK_BITS;
+      if (chunk >= current.length || current[chunk] == null) {
+        return ABSENT;
+      }
+      return decode(current[chunk][slot & CHUNK_MASK]);
+    }
+
+    @Override
+    Object put(int slot, Object value) {
+      final int[] chunk = getOrCreateChunk(slot >>> CHUNK_BITS);
+      final int index = slot & CHUNK_MASK;
+      final Object old = decode(chunk[index]);
+      chunk[index] = value == null ? INTEGER_NULL : (Integer) value;
+      return old;
+    }
+
+    @Override
+    Object remove(int slot) {
+      final int[][] current = chunks;
+      final int chunk = slot >>> CHUNK_BITS;
+      if (chunk >= current.length || current[chunk] == null) {
+        return ABSENT;
+      }
+      final int index = slot & CHUNK_MASK;
+      final Object old = decode(current[chunk][index]);
+      current[chunk][index] = INTEGER_ABSENT;
+      return old;
+    }
+
+    private static Object decode(int value) {
+      if (value == INTEGER_ABSENT) {
+        return ABSENT;
+      }
+      if (value == INTEGER_NULL) {
+        return null;
+      }
+      return value;
+    }
+
+    private int[] getOrCreateChunk(int chunk) {
+      int[][] current = chunks;
+      if (chunk < current.length && current[chunk] != null) {
+        return current[chunk];
+      }
+      synchronized (this) {
+        current = chunks;
+        if (chunk >= current.length) {
+          current = Arrays.copyOf(current, Math.max(chunk + 1, current.length * 2));
+        }
+        if (current[chunk] == null) {
+          final int[] values = new int[CHUNK_SIZE];
+          Arrays.fill(values, INTEGER_ABSENT);
+          current[chunk] = values;
+        }
+        chunks = current;
+        return current[chunk];
+      }
+    }
+  }
+}
@@ -64,7 +64,6 @@ import io.github.mzmine.modules.tools.qualityparameters.QualityParameters;
 import io.github.mzmine.util.DataPointUtils;
 import io.github.mzmine.util.FeatureUtils;
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -72,7 +71,6 @@ import java.util.Set;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 import javafx.collections.FXCollections;
-import javafx.collections.MapChangeListener;
 import javafx.collections.ObservableMap;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -85,7 +83,8 @@ import org.jetbrains.annotations.Nullable;
 public class ModularFeature implements Feature, ModularDataModel {
 
   private static final Logger logger = Logger.getLogger(ModularFeature.class.getName());
-  private final ObservableMap<DataType, Object> map = FXCollections.observableMap(new HashMap<>());
+  // core numeric types are stored in the primitive columns of the feature list
+  private final ObservableMap<DataType, Object> map;
   // buffert col charts and nodes
   @NotNull
   private final ModularFeatureList flist;
@@ -94,13 +93,7 @@ public class ModularFeature implements Feature, ModularDataModel {
 
   public ModularFeature(@NotNull ModularFeatureList flist) {
     this.flist = flist;
-
-    //
-    map.addListener((MapChangeListener<? super DataType, ? super Object>) change -> {
-      if (change.wasAdded()) {
-        this.flist.addFeatureType(change.getKey());
-      }
-    });
+    map = new ColumnarDataMap(flist.getFeatureColumns(), flist::addFeatureType);
   }
 
   // NOT TESTED
@@ -289,6 +282,16 @@ public class ModularFeature implements Feature, ModularDataModel {
     return map;
   }
 
+  /**
+   * Moves the values out of the primitive columns of the feature list. Called when this feature is
+   * removed from its row, so that the column slot can be reused.
+   */
+  void releaseColumns() {
+    if (map instanceof ColumnarDataMap columnarMap) {
+      columnarMap.releaseColumns();
+    }
+  }
+
   /**
    * Use {@link ModularFeature#getFeatureData()} and
    * {@link
@@ -61,6 +61,7 @@ import java.util.Date;
 import java.util.DoubleSummaryStatistics;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
@@ -120,6 +121,10 @@ public class ModularFeatureList implements FeatureList {
 
   private final R2RNetworkingMaps r2rNetworkingMaps = new R2RNetworkingMaps();
 
+  // primitive storage of core numeric types of all features and rows
+  private final ModularDataColumns featureColumns = new ModularDataColumns();
+  private final ModularDataColumns rowColumns = new ModularDataColumns();
+
   @NotNull
   private String nameProperty = "";
   private String dateCreated;
@@ -508,6 +513,13 @@ public class ModularFeatureList implements FeatureList {
       }
     }
 //    logger.log(Level.FINEST, "SET ALL ROWS");
+    final Set<FeatureListRow> newRows = Collections.newSetFromMap(new IdentityHashMap<>());
+    newRows.addAll(Arrays.asList(rows));
+    for (FeatureListRow old : featureListRows) {
+      if (!newRows.contains(old)) {
+        releaseColumns(old);
+      }
+    }
     featureListRows.clear();
     featureListRows.addAll(rows);
     applyRowBindings();
@@ -602,7 +614,9 @@ public class ModularFeatureList implements FeatureList {
    */
   @Override
   public void removeRow(FeatureListRow row) {
-    featureListRows.remove(row);
+    if (featureListRows.remove(row)) {
+      releaseColumns(row);
+    }
   }
 
   /**
@@ -610,12 +624,24 @@ public class ModularFeatureList implements FeatureList {
    */
   @Override
   public void removeRow(int rowNum) {
-    removeRow(featureListRows.remove(rowNum));
+    releaseColumns(featureListRows.remove(rowNum));
   }
 
   @Override
   public void removeRows(final Set<FeatureListRow> rowsToRemove) {
-    featureListRows.removeIf(rowsToRemove::contains);
+    final List<FeatureListRow> removed = new ArrayList<>();
+    featureListRows.removeIf(row -> rowsToRemove.contains(row) && removed.add(row));
+    removed.forEach(this::releaseColumns);
+  }
+
+  /**
+   * Releases the column slots of a removed row and its features. Rows that are removed from the
+   * list directly keep their slots.
+   */
+  private void releaseColumns(FeatureListRow row) {
+    if (row instanceof ModularFeatureListRow modularRow) {
+      modularRow.releaseColumns();
+    }
   }
 
   @Override
@@ -764,6 +790,22 @@ public class ModularFeatureList implements FeatureList {
     return r2rNetworkingMaps;
   }
 
+  /**
+   * @return the primitive column store for the core numeric types of all features
+   */
+  @NotNull
+  ModularDataColumns getFeatureColumns() {
+    return featureColumns;
+  }
+
+  /**
+   * @return the primitive column store for the core numeric types of all rows
+   */
+  @NotNull
+  ModularDataColumns getRowColumns() {
+    return rowColumns;
+  }
+
   @Override
   public @NotNull Map<DataType<?>, List<DataTypeValueChangeListener<?>>> getFeatureTypeChangeListeners() {
     return featureTypeListeners;
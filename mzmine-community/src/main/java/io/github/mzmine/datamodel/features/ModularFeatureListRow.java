@@ -84,7 +84,6 @@ import java.util.Set;
 import java.util.logging.Logger;
 import java.util.stream.Stream;
 import javafx.collections.FXCollections;
-import javafx.collections.MapChangeListener;
 import javafx.collections.ObservableList;
 import javafx.collections.ObservableMap;
 import org.jetbrains.annotations.NotNull;
@@ -107,7 +106,7 @@ public class ModularFeatureListRow implements FeatureListRow {
    * this final map is used in the FeaturesType - only ModularFeatureListRow is supposed to change
    * this map see {@link #addFeature}
    */
-  private final ObservableMap<DataType, Object> map = FXCollections.observableMap(new HashMap<>());
+  private final ObservableMap<DataType, Object> map;
   private final Map<RawDataFile, ModularFeature> features;
   @NotNull
   private final ModularFeatureList flist;
@@ -120,12 +119,8 @@ public class ModularFeatureListRow implements FeatureListRow {
    */
   public ModularFeatureListRow(@NotNull ModularFeatureList flist, int id) {
     this.flist = flist;
-
-    map.addListener((MapChangeListener<? super DataType, ? super Object>) change -> {
-      if (change.wasAdded()) {
-        this.flist.addRowType(change.getKey());
-      }
-    });
+    // core numeric types are stored in the primitive columns of the feature list
+    map = new ColumnarDataMap(flist.getRowColumns(), flist::addRowType);
 
     // features
     List<RawDataFile> raws = flist.getRawDataFiles();
@@ -205,6 +200,18 @@ public class ModularFeatureListRow implements FeatureListRow {
     return map;
   }
 
+  /**
+   * Moves the values of this row and its features out of the primitive columns of the feature
+   * list. Called when this row is removed from the feature list, so that the column slots can be
+   * reused.
+   */
+  void releaseColumns() {
+    if (map instanceof ColumnarDataMap columnarMap) {
+      columnarMap.releaseColumns();
+    }
+    features.values().forEach(ModularFeature::releaseColumns);
+  }
+
   @Override
   public @NotNull Map<DataType<?>, List<DataTypeValueChangeListener<?>>> getValueChangeListeners() {
     return getFeatureList().getRowTypeChangeListeners();
@@ -253,6 +260,9 @@ public class ModularFeatureListRow implements FeatureListRow {
 //    logger.log(Level.FINEST, "ADDING FEATURE");
     ModularFeature oldFeature = features.put(raw, modularFeature);
     modularFeature.setRow(this);
+    if (oldFeature != null && oldFeature != modularFeature) {
+      oldFeature.releaseColumns();
+    }
 
     if (!Objects.equals(oldFeature, modularFeature)) {
       // reflect changes by updating all row bindings
@@ -281,6 +291,7 @@ public class ModularFeatureListRow implements FeatureListRow {
   public void removeFeature(RawDataFile file, boolean updateByRowBindings) {
     final ModularFeature removed = this.features.remove(file);
     if (removed != null) {
+      removed.releaseColumns();
       // reflect changes by updating all row bindings
       getFeatureList().fireFeatureChangedEvent(this, null, null, updateByRowBindings);
     }
@@ -289,6 +300,7 @@ public class ModularFeatureListRow implements FeatureListRow {
   @Override
   public void clearFeatures(final boolean updateByRowBindings) {
     final  boolean changed = !features.isEmpty();
+    features.values().forEach(ModularFeature::releaseColumns);
     this.features.clear();
     if (changed) {
       // reflect changes by updating all row bindings
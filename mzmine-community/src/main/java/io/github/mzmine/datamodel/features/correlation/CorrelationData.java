@@ -25,6 +25,7 @@
 
 package io.github.mzmine.datamodel.features.correlation;
 
+import io.github.mzmine.util.maths.similarity.Similarity;
 import io.github.mzmine.util.maths.similarity.SimilarityMeasure;
 import org.jetbrains.annotations.Nullable;
 import org.apache.commons.math.MathException;
@@ -85,6 +86,14 @@ public interface CorrelationData {
   @Nullable
   double[][] getData();
 
+  /**
+   * @param column 0 for x and 1 for y
+   * @return the fold change from the minimum to the maximum value in this column of the data
+   */
+  default double getMaxFoldChange(int column) {
+    return Similarity.maxFoldChange(getData(), column);
+  }
+
   /**
    * Simple check if the correlation is valid
    *
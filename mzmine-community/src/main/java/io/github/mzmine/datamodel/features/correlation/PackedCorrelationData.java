@@ -0,0 +1,204 @@
+/*
+ * Copyright (c) 2004-2024 The mzmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.datamodel.features.correlation;
+
+import java.util.List;
+import org.apache.commons.math3.distribution.TDistribution;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Correlation of two feature shapes that is defined by the summary statistics of two slices of
+ * packed intensity arrays. The data points are only copied into a double[][] if
+ * {@link #getData()} is called, e.g., for similarity measures other than Pearson and cosine. Pearson
+ * r, slope and significance follow the definitions of {@link FullCorrelationData}.
+ */
+public class PackedCorrelationData implements CorrelationData {
+
+  private final @NotNull Statistics stats;
+  // source of the data points, either two array slices or multiple parts
+  private final double[] x;
+  private final double[] y;
+  private final int xOffset;
+  private final int yOffset;
+  private final List<PackedCorrelationData> parts;
+  private volatile double[][] data;
+
+  /**
+   * @param stats the statistics of the slices x[xOffset, xOffset+n) and y[yOffset, yOffset+n)
+   * @param x     packed values of the first feature, not copied
+   * @param y     packed values of the second feature, not copied
+   */
+  public PackedCorrelationData(@NotNull Statistics stats, double[] x, int xOffset, double[] y,
+      int yOffset) {
+    this.stats = stats;
+    this.x = x;
+    this.y = y;
+    this.xOffset = xOffset;
+    this.yOffset = yOffset;
+    this.parts = null;
+  }
+
+  private PackedCorrelationData(@NotNull Statistics stats,
+      @NotNull List<PackedCorrelationData> parts) {
+    this.stats = stats;
+    this.x = null;
+    this.y = null;
+    this.xOffset = 0;
+    this.yOffset = 0;
+    this.parts = parts;
+  }
+
+  /**
+   * Combines the data points of multiple correlations without copying the data, e.g., to calculate
+   * the total correlation of all feature shapes of two rows
+   *
+   * @param parts at least one correlation
+   */
+  public static PackedCorrelationData merge(@NotNull List<PackedCorrelationData> parts) {
+    Statistics stats = parts.getFirst().stats;
+    for (int i = 1; i < parts.size(); i++) {
+      stats = stats.merge(parts.get(i).stats);
+    }
+    return new PackedCorrelationData(stats, List.copyOf(parts));
+  }
+
+  public @NotNull Statistics getStatistics() {
+    return stats;
+  }
+
+  @Override
+  public int getDPCount() {
+    return stats.n();
+  }
+
+  @Override
+  public double getPearsonR() {
+    final double slope = getSlope();
+    double r = Math.sqrt(getRSquare());
+    return slope < 0 ? -r : r;
+  }
+
+  @Override
+  public double getCosineSimilarity() {
+    return stats.dot() / (Math.sqrt(stats.normX()) * Math.sqrt(stats.normY()));
+  }
+
+  @Override
+  public double getSlope() {
+    if (stats.n() < 2 || Math.abs(stats.sumXX()) < 10 * Double.MIN_VALUE) {
+      return Double.NaN;
+    }
+    return stats.sumXY() / stats.sumXX();
+  }
+
+  @Override
+  public double getRegressionSignificance() {
+    final int n = stats.n();
+    if (n < 3) {
+      return Double.NaN;
+    }
+    final double meanSquareError = getSumSquaredErrors() / (n - 2);
+    final double slopeStdErr = Math.sqrt(meanSquareError / stats.sumXX());
+    // no random generator needed for the cumulative probability
+    final TDistribution distribution = new TDistribution(null, n - 2);
+    return 2d * (1d - distribution.cumulativeProbability(Math.abs(getSlope()) / slopeStdErr));
+  }
+
+  @Override
+  public double getMaxFoldChange(int column) {
+    return column == 0 ? stats.maxX() / stats.minX() : stats.maxY() / stats.minY();
+  }
+
+  private double getSumSquaredErrors() {
+    return Math.max(0d, stats.sumYY() - stats.sumXY() * stats.sumXY() / stats.sumXX());
+  }
+
+  private double getRSquare() {
+    final double totalSumSquares = stats.n() < 2 ? Double.NaN : stats.sumYY();
+    return (totalSumSquares - getSumSquaredErrors()) / totalSumSquares;
+  }
+
+  @Override
+  public double[][] getData() {
+    double[][] result = data;
+    if (result == null) {
+      result = new double[stats.n()][];
+      fillData(result, 0);
+      data = result;
+    }
+    return result;
+  }
+
+  private int fillData(double[][] target, int start) {
+    if (parts != null) {
+      for (PackedCorrelationData part : parts) {
+        start = part.fillData(target, start);
+      }
+      return start;
+    }
+    for (int i = 0; i < stats.n(); i++) {
+      target[start++] = new double[]{x[xOffset + i], y[yOffset + i]};
+    }
+    return start;
+  }
+
+  /**
+   * Summary statistics of paired data points. Sums of squares and products are centered around the
+   * means.
+   *
+   * @param n     number of data points
+   * @param sumXX sum of (x - meanX)^2
+   * @param sumYY sum of (y - meanY)^2
+   * @param sumXY sum of (x - meanX) * (y - meanY)
+   * @param dot   sum of x*y
+   * @param normX sum of x^2
+   * @param normY sum of y^2
+   */
+  public record Statistics(int n, double meanX, double meanY, double sumXX, double sumYY,
+                           double sumXY, double dot, double normX, double normY, double minX,
+                           double maxX, double minY, double maxY) {
+
+    /**
+     * Pairwise combination of the centered sums (Chan et al.)
+     *
+     * @return the statistics of the data points of both
+     */
+    public Statistics merge(Statistics other) {
+      final int total = n + other.n;
+      if (total == 0) {
+        return this;
+      }
+      final double dx = other.meanX - meanX;
+      final double dy = other.meanY - meanY;
+      final double weight = (double) n * other.n / total;
+      return new Statistics(total, meanX + dx * other.n / total, meanY + dy * other.n / total,
+          sumXX + other.sumXX + dx * dx * weight, sumYY + other.sumYY + dy * dy * weight,
+          sumXY + other.sumXY + dx * dy * weight, dot + other.dot, normX + other.normX,
+          normY + other.normY, Math.min(minX, other.minX), Math.max(maxX, other.maxX),
+          Math.min(minY, other.minY), Math.max(maxY, other.maxY));
+    }
+  }
+}
@@ -105,6 +105,12 @@ public class R2RFullCorrelationData extends R2RCorrelationData {
     avgShapeCosineSim = avgShapeCosineSim / c;
 
     // create new total corr
+    // packed correlations are combined by their statistics without copying the data points
+    if (corrFeatureShape.values().stream().allMatch(PackedCorrelationData.class::isInstance)) {
+      corrTotal = PackedCorrelationData.merge(corrFeatureShape.values().stream()
+          .map(PackedCorrelationData.class::cast).toList());
+      return;
+    }
     double[][] data = corrFeatureShape.values().stream().map(CorrelationData::getData)
         .flatMap(Arrays::stream).toArray(double[][]::new);
     corrTotal = new FullCorrelationData(data);
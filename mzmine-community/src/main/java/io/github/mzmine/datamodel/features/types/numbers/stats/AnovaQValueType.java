@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.datamodel.features.types.numbers.stats;
+
+import io.github.mzmine.datamodel.features.types.numbers.abstr.DoubleType;
+import java.text.DecimalFormat;
+import java.text.NumberFormat;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Benjamini-Hochberg adjusted ANOVA p-value (false discovery rate) over all tested rows
+ */
+public class AnovaQValueType extends DoubleType {
+
+  private static final DecimalFormat format = new DecimalFormat("0.###");
+
+  public AnovaQValueType() {
+    super(format);
+  }
+
+  @Override
+  public @NotNull String getUniqueID() {
+    return "anova_q_value";
+  }
+
+  @Override
+  public @NotNull String getHeaderString() {
+    return "ANOVA q";
+  }
+
+  @Override
+  public NumberFormat getFormat() {
+    return format;
+  }
+
+  @Override
+  public NumberFormat getExportFormat() {
+    return format;
+  }
+}
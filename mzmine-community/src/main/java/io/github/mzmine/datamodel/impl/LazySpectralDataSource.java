@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.datamodel.impl;
+
+import io.github.mzmine.modules.io.import_rawdata_all.spectral_processor.SimpleSpectralArrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map.Entry;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Provides the spectral data of {@link SourceBackedScan}s that are not stored in RAM or in the
+ * {@link io.github.mzmine.util.MemoryMapStorage} but are decoded from the original data file on
+ * demand. The last decoded spectra are kept in a least recently used cache that is bounded by the
+ * total number of data points, so that sequential access via
+ * {@link io.github.mzmine.datamodel.data_access.ScanDataAccess} decodes every spectrum only once.
+ */
+public abstract class LazySpectralDataSource {
+
+  /**
+   * 4M data points are 64 MB of m/z and intensity values
+   */
+  public static final long DEFAULT_MAX_CACHED_DATA_POINTS = 4_000_000L;
+
+  private final long maxCachedDataPoints;
+  // access ordered: least recently used first
+  private final LinkedHashMap<Integer, SimpleSpectralArrays> cache = new LinkedHashMap<>(64, 0.75f,
+      true);
+  private long cachedDataPoints = 0;
+
+  protected LazySpectralDataSource() {
+    this(DEFAULT_MAX_CACHED_DATA_POINTS);
+  }
+
+  /**
+   * @param maxCachedDataPoints the cache is bounded by the sum of data points of all cached
+   *                            spectra. The last decoded spectrum is always cached.
+   */
+  protected LazySpectralDataSource(long maxCachedDataPoints) {
+    this.maxCachedDataPoints = maxCachedDataPoints;
+  }
+
+  /**
+   * Decode the spectrum from the source
+   *
+   * @param index the index of the spectrum in this source
+   * @return the spectral data sorted by m/z
+   */
+  protected abstract @NotNull SimpleSpectralArrays decodeSpectrum(int index);
+
+  /**
+   * @param index the index of the spectrum in this source
+   * @return the cached or newly decoded spectral data sorted by m/z. Must not be changed.
+   */
+  public @NotNull SimpleSpectralArrays getSpectrum(int index) {
+    synchronized (cache) {
+      final SimpleSpectralArrays cached = cache.get(index);
+      if (cached != null) {
+        return cached;
+      }
+    }
+    // decode outside of lock so that multiple threads can decode different spectra
+    final SimpleSpectralArrays data = decodeSpectrum(index);
+    synchronized (cache) {
+      final SimpleSpectralArrays old = cache.put(index, data);
+      if (old != null) {
+        cachedDataPoints -= old.getNumberOfDataPoints();
+      }
+      cachedDataPoints += data.getNumberOfDataPoints();
+      evict();
+    }
+    return data;
+  }
+
+  private void evict() {
+    final Iterator<Entry<Integer, SimpleSpectralArrays>> it = cache.entrySet().iterator();
+    // keep at least the last decoded spectrum
+    while (cachedDataPoints > maxCachedDataPoints && cache.size() > 1) {
+      cachedDataPoints -= it.next().getValue().getNumberOfDataPoints();
+      it.remove();
+    }
+  }
+
+  /**
+   * @return number of spectra currently in the cache
+   */
+  public int getCachedSpectra() {
+    synchronized (cache) {
+      return cache.size();
+    }
+  }
+
+  /**
+   * Removes all decoded spectra from the cache
+   */
+  public void clearCache() {
+    synchronized (cache) {
+      cache.clear();
+      cachedDataPoints = 0;
+    }
+  }
+}
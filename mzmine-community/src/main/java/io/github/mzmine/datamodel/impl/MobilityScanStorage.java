@@ -31,6 +31,9 @@ import io.github.mzmine.datamodel.MobilityScan;
 import io.github.mzmine.datamodel.featuredata.impl.SimpleIonMobilogramTimeSeries;
 import io.github.mzmine.datamodel.featuredata.impl.StorageUtils;
 import io.github.mzmine.datamodel.impl.masslist.StoredMobilityScanMassList;
+import io.github.mzmine.gui.preferences.MZminePreferences;
+import io.github.mzmine.main.ConfigService;
+import io.github.mzmine.modules.dataprocessing.featdet_massdetection.MassDetectionBuffer;
 import io.github.mzmine.modules.dataprocessing.featdet_massdetection.MassDetector;
 import io.github.mzmine.util.MemoryMapStorage;
 import io.github.mzmine.util.exceptions.MissingMassListException;
@@ -38,6 +41,7 @@ import io.github.mzmine.util.scans.ScanUtils;
 import java.lang.foreign.MemorySegment;
 import java.lang.foreign.ValueLayout;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
 import org.jetbrains.annotations.NotNull;
@@ -56,13 +60,13 @@ public class MobilityScanStorage {
   @NotNull
   private final Frame frame;
   /**
-   * doubles
+   * doubles or compact encoding, see {@link MZminePreferences#compactMobilityScanStorage}
    */
-  private final MemorySegment rawMzValues;
+  private final MobilityScanValues rawMzValues;
   /**
-   * doubles
+   * doubles or floats in the compact encoding
    */
-  private final MemorySegment rawIntensityValues;
+  private final MobilityScanValues rawIntensityValues;
   /**
    * Per scan, ints.
    */
@@ -75,13 +79,13 @@ public class MobilityScanStorage {
 
   // mass list
   /**
-   * doubles
+   * doubles or compact encoding
    */
-  private MemorySegment massListMzValues = null;
+  private MobilityScanValues massListMzValues = null;
   /**
-   * doubles
+   * doubles or floats in the compact encoding
    */
-  private MemorySegment massListIntensityValues = null;
+  private MobilityScanValues massListIntensityValues = null;
   /**
    * Per scan, ints.
    */
@@ -122,8 +126,8 @@ public class MobilityScanStorage {
     final int[] rawBasePeakIndices = StorageUtils.putAllValuesIntoOneArray(data, 1, intensities);
     this.rawBasePeakIndices = StorageUtils.storeValuesToIntBuffer(storage, rawBasePeakIndices);
 
-    rawMzValues = StorageUtils.storeValuesToDoubleBuffer(storage, mzs);
-    rawIntensityValues = StorageUtils.storeValuesToDoubleBuffer(storage, intensities);
+    rawMzValues = storeMzValues(storage, mzs);
+    rawIntensityValues = storeIntensityValues(storage, intensities);
   }
 
   public MobilityScanStorage(@Nullable MemoryMapStorage storage, @NotNull final Frame frame,
@@ -144,7 +148,8 @@ public class MobilityScanStorage {
    *
    * @param storage         for memory mapping
    * @param frame           the actual frame
-   * @param mzValues        already memory mapped mz values, doubles.
+   * @param mzValues        already memory mapped mz values, doubles. Kept as is, even in the
+   *                        compact storage mode.
    * @param intensityValues already memory mapped intensity values, doubles.
    * @param maxNumPoints    the maximum number of signals in the largest scan
    * @param storageOffsets  the offsets to find the start of each mobility scan in the memory mapped
@@ -158,8 +163,8 @@ public class MobilityScanStorage {
     this.frame = frame;
     rawBasePeakIndices = StorageUtils.storeValuesToIntBuffer(storage, basePeakIndices);
     rawStorageOffsets = StorageUtils.storeValuesToIntBuffer(storage, storageOffsets);
-    rawMzValues = mzValues;
-    rawIntensityValues = intensityValues;
+    rawMzValues = MobilityScanValues.ofDoubles(mzValues);
+    rawIntensityValues = MobilityScanValues.ofDoubles(intensityValues);
     rawMaxNumPoints = maxNumPoints;
 
     if (useAsMassList) {
@@ -203,6 +208,76 @@ public class MobilityScanStorage {
     setMassLists(storage, data);
   }
 
+  /**
+   * Runs mass detection on all mobility scans and appends the results to a caller owned buffer.
+   * Does not change this storage, the results are set by
+   * {@link #setMassLists(MemoryMapStorage, double[], double[], int[])}. Only needed if
+   * {@link MassDetector#filtersActive()}, otherwise use
+   * {@link #generateAndAddMobilityScanMassLists(MemoryMapStorage, MassDetector, boolean)}.
+   *
+   * @param output receives the detected masses of all mobility scans
+   * @return the start of each mobility scan in the output buffer and the end of the last mobility
+   * scan, so number of mobility scans + 1 values
+   */
+  public int[] detectMassLists(@NotNull MassDetector massDetector, boolean denormalizeMSnScans,
+      @NotNull MassDetectionBuffer output) {
+    final List<MobilityScan> mobilityScans = getMobilityScans();
+    final int[] offsets = new int[mobilityScans.size() + 1];
+    offsets[0] = output.size();
+    for (int i = 0; i < mobilityScans.size(); i++) {
+      massDetector.getMassValues(mobilityScans.get(i), output);
+      offsets[i + 1] = output.size();
+      if (denormalizeMSnScans && frame.getMSLevel() > 1) {
+        ScanUtils.denormalizeIntensitiesMultiplyByInjectTime(output.intensities(), offsets[i],
+            offsets[i + 1], frame.getInjectionTime());
+      }
+    }
+    return offsets;
+  }
+
+  /**
+   * Sets the new masslists from packed arrays, e.g., the results of
+   * {@link #detectMassLists(MassDetector, boolean, MassDetectionBuffer)}.
+   *
+   * @param mzs         the m/z values of all mobility scans
+   * @param intensities the intensities of all mobility scans
+   * @param offsets     the start of each mobility scan in the arrays and the end of the last
+   *                    mobility scan, so number of mobility scans + 1 values. The first offset
+   *                    must be 0 and the last offset the length of the arrays.
+   */
+  public void setMassLists(final @Nullable MemoryMapStorage storage, final double[] mzs,
+      final double[] intensities, final int[] offsets) {
+    final int numScans = offsets.length - 1;
+    if (offsets[0] != 0 || offsets[numScans] != mzs.length || mzs.length != intensities.length) {
+      throw new IllegalArgumentException("Offsets do not match the m/z and intensity arrays");
+    }
+
+    final int[] basePeakIndices = new int[numScans];
+    int maxNumPoints = 0;
+    for (int scan = 0; scan < numScans; scan++) {
+      final int start = offsets[scan];
+      final int numPoints = offsets[scan + 1] - start;
+      maxNumPoints = Math.max(maxNumPoints, numPoints);
+
+      int basePeak = -1;
+      double maxIntensity = -1d;
+      for (int i = 0; i < numPoints; i++) {
+        if (intensities[start + i] > maxIntensity) {
+          maxIntensity = intensities[start + i];
+          basePeak = i;
+        }
+      }
+      basePeakIndices[scan] = basePeak;
+    }
+
+    massListStorageOffsets = StorageUtils.storeValuesToIntBuffer(storage,
+        Arrays.copyOf(offsets, numScans));
+    massListMaxNumPoints = maxNumPoints;
+    massListBasePeakIndices = StorageUtils.storeValuesToIntBuffer(storage, basePeakIndices);
+    massListMzValues = storeMzValues(storage, mzs);
+    massListIntensityValues = storeIntensityValues(storage, intensities);
+  }
+
   /**
    * Sets the new masslists
    *
@@ -227,8 +302,30 @@ public class MobilityScanStorage {
         intensities);
     this.massListBasePeakIndices = StorageUtils.storeValuesToIntBuffer(storage,
         massListBasePeakIndices);
-    massListMzValues = StorageUtils.storeValuesToDoubleBuffer(storage, mzs);
-    massListIntensityValues = StorageUtils.storeValuesToDoubleBuffer(storage, intensities);
+    massListMzValues = storeMzValues(storage, mzs);
+    massListIntensityValues = storeIntensityValues(storage, intensities);
+  }
+
+  /**
+   * @return the m/z precision of the compact storage mode or null to store doubles
+   */
+  private static @Nullable Double getCompactMzPrecision() {
+    final var compact = ConfigService.getPreferences()
+        .getParameter(MZminePreferences.compactMobilityScanStorage);
+    return compact.getValue() ? compact.getEmbeddedParameter().getValue() : null;
+  }
+
+  private static MobilityScanValues storeMzValues(@Nullable MemoryMapStorage storage,
+      double[] mzs) {
+    final Double mzPrecision = getCompactMzPrecision();
+    return mzPrecision == null ? MobilityScanValues.ofDoubles(storage, mzs)
+        : MobilityScanValues.ofFixedPoint(storage, mzs, mzPrecision);
+  }
+
+  private static MobilityScanValues storeIntensityValues(@Nullable MemoryMapStorage storage,
+      double[] intensities) {
+    return getCompactMzPrecision() == null ? MobilityScanValues.ofDoubles(storage, intensities)
+        : MobilityScanValues.ofFloats(storage, intensities);
   }
 
   public MassList getMassList(int mobilityScanIndex) {
@@ -306,7 +403,7 @@ public class MobilityScanStorage {
    * @return The total number of points in this {@link  MobilityScanStorage}.
    */
   public int getRawTotalNumPoints() {
-    return (int) StorageUtils.numDoubles(rawMzValues);
+    return rawMzValues.size();
   }
 
   public Frame getFrame() {
@@ -324,14 +421,13 @@ public class MobilityScanStorage {
   public void getRawMobilityScanMzValues(int mobilityScanIndex, double[] dst) {
     final int rawNumDp = getNumberOfRawDatapoints(mobilityScanIndex);
     assert rawNumDp <= dst.length;
-    final MemorySegment slice = StorageUtils.sliceDoubles(rawMzValues,
-        getRawStorageOffset(mobilityScanIndex), getRawStorageOffset(mobilityScanIndex) + rawNumDp);
-    MemorySegment.copy(slice, ValueLayout.JAVA_DOUBLE, 0, dst, 0, rawNumDp);
+    final int offset = getRawStorageOffset(mobilityScanIndex);
+    rawMzValues.copyTo(offset, offset + rawNumDp, dst);
   }
 
   public void getAllRawMobilityScanMzValues(double[] dst) {
     assert dst.length >= getRawTotalNumPoints();
-    StorageUtils.copyToBuffer(dst, rawMzValues, 0, getRawTotalNumPoints());
+    rawMzValues.copyTo(0, getRawTotalNumPoints(), dst);
   }
 
   /**
@@ -341,24 +437,21 @@ public class MobilityScanStorage {
     final int rawNumDp = getNumberOfRawDatapoints(mobilityScanIndex);
     assert rawNumDp <= dst.length;
 
-    final MemorySegment slice = StorageUtils.sliceDoubles(rawIntensityValues,
-        getRawStorageOffset(mobilityScanIndex), getRawStorageOffset(mobilityScanIndex) + rawNumDp);
-    MemorySegment.copy(slice, ValueLayout.JAVA_DOUBLE, 0, dst, 0, rawNumDp);
+    final int offset = getRawStorageOffset(mobilityScanIndex);
+    rawIntensityValues.copyTo(offset, offset + rawNumDp, dst);
   }
 
   public void getAllRawMobilityScanIntensityValues(double[] dst) {
     assert dst.length >= getRawTotalNumPoints();
-    StorageUtils.copyToBuffer(dst, rawIntensityValues, 0, getRawTotalNumPoints());
+    rawIntensityValues.copyTo(0, getRawTotalNumPoints(), dst);
   }
 
   public double getRawMobilityScanMzValue(int mobilityScanIndex, int index) {
-    return rawMzValues.getAtIndex(ValueLayout.JAVA_DOUBLE,
-        getRawStorageOffset(mobilityScanIndex) + index);
+    return rawMzValues.get(getRawStorageOffset(mobilityScanIndex) + index);
   }
 
   public double getRawMobilityScanIntensityValue(int mobilityScanIndex, int index) {
-    return rawIntensityValues.getAtIndex(ValueLayout.JAVA_DOUBLE,
-        getRawStorageOffset(mobilityScanIndex) + index);
+    return rawIntensityValues.get(getRawStorageOffset(mobilityScanIndex) + index);
   }
 
   // mass list
@@ -424,7 +517,7 @@ public class MobilityScanStorage {
           "No mass list present for mobility scans. Run mass detection for scan type \"Mobility scans\" prior.",
           frame);
     }
-    return (int) StorageUtils.numDoubles(massListIntensityValues);
+    return massListIntensityValues.size();
   }
 
   public void getMassListMzValues(int mobilityScanIndex, double[] dst) {
@@ -436,10 +529,8 @@ public class MobilityScanStorage {
     final int numMassListDp = getNumberOfMassListDatapoints(mobilityScanIndex);
     assert numMassListDp <= dst.length;
 
-    final MemorySegment slice = StorageUtils.sliceDoubles(massListMzValues,
-        getMassListStorageOffset(mobilityScanIndex),
-        getMassListStorageOffset(mobilityScanIndex) + numMassListDp);
-    MemorySegment.copy(slice, ValueLayout.JAVA_DOUBLE, 0, dst, 0, numMassListDp);
+    final int offset = getMassListStorageOffset(mobilityScanIndex);
+    massListMzValues.copyTo(offset, offset + numMassListDp, dst);
   }
 
   public void getAllMassListMzValues(double[] dst) {
@@ -449,7 +540,7 @@ public class MobilityScanStorage {
           frame);
     }
     assert dst.length >= getMassListTotalNumPoints();
-    StorageUtils.copyToBuffer(dst, massListMzValues, 0, getMassListTotalNumPoints());
+    massListMzValues.copyTo(0, getMassListTotalNumPoints(), dst);
   }
 
   public void getMassListIntensityValues(int mobilityScanIndex, double[] dst) {
@@ -461,10 +552,8 @@ public class MobilityScanStorage {
     final int numMassListDp = getNumberOfMassListDatapoints(mobilityScanIndex);
     assert numMassListDp <= dst.length;
 
-    final MemorySegment slice = StorageUtils.sliceDoubles(massListIntensityValues,
-        getMassListStorageOffset(mobilityScanIndex),
-        getMassListStorageOffset(mobilityScanIndex) + numMassListDp);
-    MemorySegment.copy(slice, ValueLayout.JAVA_DOUBLE, 0, dst, 0, numMassListDp);
+    final int offset = getMassListStorageOffset(mobilityScanIndex);
+    massListIntensityValues.copyTo(offset, offset + numMassListDp, dst);
   }
 
   public void getAllMassListIntensityValues(double[] dst) {
@@ -474,7 +563,7 @@ public class MobilityScanStorage {
           frame);
     }
     assert dst.length >= getMassListTotalNumPoints();
-    StorageUtils.copyToBuffer(dst, massListIntensityValues, 0, getMassListTotalNumPoints());
+    massListIntensityValues.copyTo(0, getMassListTotalNumPoints(), dst);
   }
 
   public double getMassListMzValue(int mobilityScanIndex, int index) {
@@ -483,8 +572,7 @@ public class MobilityScanStorage {
           "No mass list present for mobility scans. Run mass detection for scan type \"Mobility scans\" prior.",
           frame);
     }
-    return massListMzValues.getAtIndex(ValueLayout.JAVA_DOUBLE,
-        getMassListStorageOffset(mobilityScanIndex) + index);
+    return massListMzValues.get(getMassListStorageOffset(mobilityScanIndex) + index);
   }
 
   public double getMassListIntensityValue(int mobilityScanIndex, int index) {
@@ -493,7 +581,6 @@ public class MobilityScanStorage {
           "No mass list present for mobility scans. Run mass detection for scan type \"Mobility scans\" prior.",
           frame);
     }
-    return massListIntensityValues.getAtIndex(ValueLayout.JAVA_DOUBLE,
-        getMassListStorageOffset(mobilityScanIndex) + index);
+    return massListIntensityValues.get(getMassListStorageOffset(mobilityScanIndex) + index);
   }
 }
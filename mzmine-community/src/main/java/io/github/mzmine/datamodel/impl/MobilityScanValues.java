@@ -0,0 +1,173 @@
+/*
+ * Copyright (c) 2004-2024 The mzmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.datamodel.impl;
+
+import io.github.mzmine.datamodel.featuredata.impl.StorageUtils;
+import io.github.mzmine.util.MemoryMapStorage;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * The m/z or intensity values of all mobility scans of a {@link MobilityScanStorage}. Values are
+ * either stored as doubles or in a compact 4 byte encoding that is decoded on access.
+ */
+sealed interface MobilityScanValues {
+
+  /**
+   * @param storage may be null to keep values in memory
+   * @param values  the values, not copied if storage is null
+   */
+  static @NotNull MobilityScanValues ofDoubles(@Nullable MemoryMapStorage storage,
+      @NotNull double[] values) {
+    return new DoubleValues(StorageUtils.storeValuesToDoubleBuffer(storage, values));
+  }
+
+  /**
+   * @param doubles already stored double values
+   */
+  static @NotNull MobilityScanValues ofDoubles(@NotNull MemorySegment doubles) {
+    return new DoubleValues(doubles);
+  }
+
+  /**
+   * Floats keep a relative precision of ~6E-8, sufficient for intensities.
+   */
+  static @NotNull MobilityScanValues ofFloats(@Nullable MemoryMapStorage storage,
+      @NotNull double[] values) {
+    final float[] floats = new float[values.length];
+    for (int i = 0; i < values.length; i++) {
+      floats[i] = (float) values[i];
+    }
+    return new FloatValues(StorageUtils.storeValuesToFloatBuffer(storage, floats));
+  }
+
+  /**
+   * Stores m/z values as int steps of mzPrecision above the lowest m/z. The absolute error of
+   * every value is at most mzPrecision / 2. Falls back to doubles if the m/z range is too wide for
+   * the precision.
+   *
+   * @param mzPrecision the step size in Da
+   */
+  static @NotNull MobilityScanValues ofFixedPoint(@Nullable MemoryMapStorage storage,
+      @NotNull double[] values, double mzPrecision) {
+    if (values.length == 0) {
+      return ofDoubles(storage, values);
+    }
+    double min = Double.POSITIVE_INFINITY;
+    double max = Double.NEGATIVE_INFINITY;
+    for (double value : values) {
+      min = Math.min(min, value);
+      max = Math.max(max, value);
+    }
+    if (!(mzPrecision > 0) || (max - min) / mzPrecision >= Integer.MAX_VALUE) {
+      return ofDoubles(storage, values);
+    }
+
+    final int[] steps = new int[values.length];
+    for (int i = 0; i < values.length; i++) {
+      steps[i] = (int) Math.round((values[i] - min) / mzPrecision);
+    }
+    return new FixedPointValues(StorageUtils.storeValuesToIntBuffer(storage, steps), min,
+        mzPrecision);
+  }
+
+  int size();
+
+  double get(int index);
+
+  /**
+   * Decodes values into dst starting at index 0
+   *
+   * @param from first value index, inclusive
+   * @param to   last value index, exclusive
+   */
+  void copyTo(int from, int to, @NotNull double[] dst);
+
+  record DoubleValues(@NotNull MemorySegment values) implements MobilityScanValues {
+
+    @Override
+    public int size() {
+      return (int) StorageUtils.numDoubles(values);
+    }
+
+    @Override
+    public double get(int index) {
+      return values.getAtIndex(ValueLayout.JAVA_DOUBLE, index);
+    }
+
+    @Override
+    public void copyTo(int from, int to, @NotNull double[] dst) {
+      MemorySegment.copy(values, ValueLayout.JAVA_DOUBLE, from * ValueLayout.JAVA_DOUBLE.byteSize(),
+          dst, 0, to - from);
+    }
+  }
+
+  record FloatValues(@NotNull MemorySegment values) implements MobilityScanValues {
+
+    @Override
+    public int size() {
+      return (int) StorageUtils.numFloats(values);
+    }
+
+    @Override
+    public double get(int index) {
+      return values.getAtIndex(ValueLayout.JAVA_FLOAT, index);
+    }
+
+    @Override
+    public void copyTo(int from, int to, @NotNull double[] dst) {
+      for (int i = from; i < to; i++) {
+        dst[i - from] = values.getAtIndex(ValueLayout.JAVA_FLOAT, i);
+      }
+    }
+  }
+
+  /**
+   * value = base + steps * precision
+   */
+  record FixedPointValues(@NotNull MemorySegment steps, double base, double precision) implements
+      MobilityScanValues {
+
+    @Override
+    public int size() {
+      return (int) StorageUtils.numInts(steps);
+    }
+
+    @Override
+    public double get(int index) {
+      return base + steps.getAtIndex(ValueLayout.JAVA_INT, index) * precision;
+    }
+
+    @Override
+    public void copyTo(int from, int to, @NotNull double[] dst) {
+      for (int i = from; i < to; i++) {
+        dst[i - from] = base + steps.getAtIndex(ValueLayout.JAVA_INT, i) * precision;
+      }
+    }
+  }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.datamodel.impl;
+
+import com.google.common.collect.Range;
+import io.github.mzmine.datamodel.MassSpectrumType;
+import io.github.mzmine.datamodel.PolarityType;
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.msms.MsMsInfo;
+import io.github.mzmine.modules.io.import_rawdata_all.spectral_processor.SimpleSpectralArrays;
+import java.lang.foreign.MemorySegment;
+import java.lang.ref.WeakReference;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A scan that does not store its raw data points. The m/z and intensity values are decoded on
+ * demand from the original data file by a {@link LazySpectralDataSource}. The number of data points,
+ * m/z range, TIC and base peak are calculated once during import. Mass lists are stored as usual.
+ * <p>
+ * Prefer {@link io.github.mzmine.datamodel.data_access.ScanDataAccess} or
+ * {@link #getMzValues(double[])} over single value access in loops.
+ */
+public class SourceBackedScan extends SimpleScan {
+
+  private final @NotNull LazySpectralDataSource source;
+  private final int sourceIndex;
+  private final int numDataPoints;
+
+  public SourceBackedScan(@NotNull RawDataFile dataFile, int scanNumber, int msLevel,
+      float retentionTime, @Nullable MsMsInfo msMsInfo, MassSpectrumType spectrumType,
+      PolarityType polarity, String scanDefinition, Range<Double> scanMZRange,
+      @Nullable Float injectionTime, @NotNull LazySpectralDataSource source, int sourceIndex,
+      @NotNull DataSummary summary) {
+    super(dataFile, scanNumber, msLevel, retentionTime, msMsInfo, (MemorySegment) null, null,
+        spectrumType, polarity, scanDefinition, scanMZRange, injectionTime);
+    this.source = source;
+    this.sourceIndex = sourceIndex;
+    this.numDataPoints = summary.numDataPoints();
+    this.mzRange = summary.mzRange();
+    this.totalIonCurrent = summary.tic();
+    this.basePeakIndex = summary.basePeakIndex();
+  }
+
+  // the last decoded data. Single value access in loops reads this field instead of going through
+  // the synchronized cache of the source. Weak so that the data is released with the cache entry.
+  private volatile @Nullable WeakReference<SimpleSpectralArrays> decoded;
+
+  private @NotNull SimpleSpectralArrays data() {
+    final WeakReference<SimpleSpectralArrays> ref = decoded;
+    SimpleSpectralArrays data = ref == null ? null : ref.get();
+    if (data == null) {
+      data = source.getSpectrum(sourceIndex);
+      decoded = new WeakReference<>(data);
+    }
+    return data;
+  }
+
+  @Override
+  MemorySegment getMzValues() {
+    return MemorySegment.ofArray(data().mzs());
+  }
+
+  @Override
+  MemorySegment getIntensityValues() {
+    return MemorySegment.ofArray(data().intensities());
+  }
+
+  @Override
+  public int getNumberOfDataPoints() {
+    return numDataPoints;
+  }
+
+  @Override
+  public double getMzValue(int index) {
+    return data().mzs()[index];
+  }
+
+  @Override
+  public double getIntensityValue(int index) {
+    return data().intensities()[index];
+  }
+
+  @Override
+  public double[] getMzValues(@NotNull double[] dst) {
+    if (dst.length < numDataPoints) {
+      dst = new double[numDataPoints];
+    }
+    System.arraycopy(data().mzs(), 0, dst, 0, numDataPoints);
+    return dst;
+  }
+
+  @Override
+  public double[] getIntensityValues(@NotNull double[] dst) {
+    if (dst.length < numDataPoints) {
+      dst = new double[numDataPoints];
+    }
+    System.arraycopy(data().intensities(), 0, dst, 0, numDataPoints);
+    return dst;
+  }
+
+  /**
+   * @return the source that decodes the data points
+   */
+  public @NotNull LazySpectralDataSource getSource() {
+    return source;
+  }
+
+  public int getSourceIndex() {
+    return sourceIndex;
+  }
+
+  /**
+   * Values that are calculated once from the raw data during import
+   *
+   * @param mzRange       null if empty
+   * @param basePeakIndex null if empty
+   */
+  public record DataSummary(int numDataPoints, @Nullable Range<Double> mzRange, double tic,
+                            @Nullable Integer basePeakIndex) {
+
+    /**
+     * @param data sorted by m/z
+     */
+    public static @NotNull DataSummary of(@NotNull SimpleSpectralArrays data) {
+      final double[] mzs = data.mzs();
+      final double[] intensities = data.intensities();
+      final int n = mzs.length;
+      if (n == 0) {
+        return new DataSummary(0, null, 0d, null);
+      }
+      int basePeak = 0;
+      double tic = 0;
+      for (int i = 0; i < n; i++) {
+        tic += intensities[i];
+        if (intensities[i] > intensities[basePeak]) {
+          basePeak = i;
+        }
+      }
+      return new DataSummary(n, Range.closed(mzs[0], mzs[n - 1]), tic, basePeak);
+    }
+  }
+}
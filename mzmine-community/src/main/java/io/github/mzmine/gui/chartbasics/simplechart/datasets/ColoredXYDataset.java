@@ -50,6 +50,7 @@ import javafx.beans.property.ObjectProperty;
 import javafx.beans.property.SimpleObjectProperty;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import org.jfree.data.DomainOrder;
 import org.jfree.data.xy.IntervalXYDataset;
 
 /**
@@ -81,6 +82,8 @@ public class ColoredXYDataset extends AbstractTaskXYDataset implements IntervalX
   protected int computedItemCount;
   protected boolean[] isLocalMaximum;
   protected boolean valuesComputed;
+  // enables binary search of the visible items during rendering
+  protected boolean domainAscending;
 
   protected Range<Double> domainRange;
   protected Range<Double> rangeRange;
@@ -315,10 +318,13 @@ public class ColoredXYDataset extends AbstractTaskXYDataset implements IntervalX
     double maxDomain = Double.NEGATIVE_INFINITY;
     double minRange = Double.POSITIVE_INFINITY;
     double maxRange = Double.NEGATIVE_INFINITY;
+    boolean ascending = true;
 
     for (int i = 0; i < computedItemCount; i++) {
       final double rangeValue = xyValueProvider.getRangeValue(i);
       final double domainValue = xyValueProvider.getDomainValue(i);
+      // NaN is not ascending
+      ascending = ascending && domainValue >= maxDomain;
 
       minDomain = Math.min(domainValue, minDomain);
       maxDomain = Math.max(domainValue, maxDomain);
@@ -328,6 +334,7 @@ public class ColoredXYDataset extends AbstractTaskXYDataset implements IntervalX
       isLocalMaximum[i] = SimpleChartUtility.isLocalMaximum(this, 0, i);
     }
 
+    domainAscending = ascending;
     domainRange = computedItemCount > 0 ? Range.closed(minDomain, maxDomain) : Range.closed(0d, 1d);
     rangeRange = computedItemCount > 0 ? Range.closed(minRange, maxRange) : Range.closed(0d, 1d);
 
@@ -349,6 +356,11 @@ public class ColoredXYDataset extends AbstractTaskXYDataset implements IntervalX
     }
   }
 
+  @Override
+  public DomainOrder getDomainOrder() {
+    return domainAscending ? DomainOrder.ASCENDING : DomainOrder.NONE;
+  }
+
   @Override
   public String getTaskDescription() {
     return "Computing values for dataset " + seriesKeyProvider.getSeriesKey();
@@ -62,6 +62,8 @@ public class ColoredXYLineRenderer extends XYLineAndShapeRenderer {
   private double transparency = 1.0f;
 
   private XYDataset currentDataset;
+  // only draws the items that change the shape of large series
+  private transient LevelOfDetailDecimator decimator = new LevelOfDetailDecimator();
 
   public ColoredXYLineRenderer() {
     super(true, false);
@@ -69,6 +71,23 @@ public class ColoredXYLineRenderer extends XYLineAndShapeRenderer {
     SimpleChartUtility.tryApplyDefaultChartThemeToRenderer(this);
   }
 
+  /**
+   * Skipping items only keeps the shape if the line is drawn as one path without item shapes
+   */
+  private boolean isDecimated(int series) {
+    if (decimator == null) {
+      decimator = new LevelOfDetailDecimator();
+    }
+    return getDrawSeriesLineAsPath() && !getItemShapeVisible(series, 0);
+  }
+
+  @Override
+  public Object clone() throws CloneNotSupportedException {
+    final ColoredXYLineRenderer clone = (ColoredXYLineRenderer) super.clone();
+    clone.decimator = new LevelOfDetailDecimator();
+    return clone;
+  }
+
   private AlphaComposite makeComposite(double alpha) {
     int type = AlphaComposite.SRC_OVER;
     return (AlphaComposite.getInstance(type, (float) alpha));
@@ -84,6 +103,10 @@ public class ColoredXYLineRenderer extends XYLineAndShapeRenderer {
   public void drawItem(Graphics2D g2, XYItemRendererState state, Rectangle2D dataArea,
       PlotRenderingInfo info, XYPlot plot, ValueAxis domainAxis, ValueAxis rangeAxis,
       XYDataset dataset, int series, int item, CrosshairState crosshairState, int pass) {
+    if (isDecimated(series) && !decimator.isItemDrawn(state, plot, dataArea, domainAxis, dataset,
+        series, item)) {
+      return;
+    }
 
     g2.setComposite(makeComposite(transparency));
     currentDataset = dataset;
@@ -0,0 +1,385 @@
+/*
+ * Copyright (c) 2004-2024 The mzmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.gui.chartbasics.simplechart.renderers;
+
+import io.github.mzmine.javafx.concurrent.threading.FxThread;
+import java.awt.geom.Rectangle2D;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jfree.chart.axis.ValueAxis;
+import org.jfree.chart.event.PlotChangeEvent;
+import org.jfree.chart.plot.XYPlot;
+import org.jfree.chart.renderer.xy.XYItemRendererState;
+import org.jfree.data.xy.XYDataset;
+
+/**
+ * Level of detail for line renderers that draw large series with ascending x values. Only the
+ * first, last, minimum and maximum item of each bucket of half a pixel width is drawn, which keeps
+ * the drawn shape of the full resolution line. The selection is aligned to the pixels of the
+ * current view and is cached for the last views, e.g., for redraws of the crosshair. After the
+ * domain axis changed, the selection is computed in the background and the plot is redrawn once
+ * it is available. Until then, a preview level is drawn. Preview levels split the whole domain
+ * into 2^level buckets and only depend on the zoom, so they are cached per zoom level and reused
+ * while panning.
+ * <p>
+ * Items with NaN y values and their neighbors are always drawn to keep gaps in the line.
+ */
+public class LevelOfDetailDecimator {
+
+  private static final Logger logger = Logger.getLogger(LevelOfDetailDecimator.class.getName());
+
+  /**
+   * Series with fewer visible items than this factor times the pixel width are drawn completely
+   */
+  private static final int ITEMS_PER_PIXEL = 8;
+  /**
+   * Buckets aligned to the pixels keep the exact shape with two buckets per pixel
+   */
+  private static final int BUCKETS_PER_PIXEL = 2;
+  /**
+   * Preview levels are not aligned to the pixels and need finer buckets
+   */
+  private static final int PREVIEW_BUCKETS_PER_PIXEL = 4;
+  private static final int MAX_LEVEL = 30;
+  private static final int MAX_CACHED_LEVELS = 8;
+  private static final int MAX_CACHED_VIEWS = 4;
+
+  private static final ExecutorService executor = Executors.newFixedThreadPool(2, runnable -> {
+    Thread t = new Thread(runnable, "chart-level-of-detail");
+    t.setDaemon(true);
+    return t;
+  });
+
+  private final Map<XYDataset, Map<Integer, SeriesLevels>> datasets = new WeakHashMap<>();
+
+  // the selection of the current series pass, only accessed on the rendering thread
+  private @Nullable BitSet currentItems;
+
+  /**
+   * Call for every item in the order of rendering. Selects the items of a series pass on its first
+   * item.
+   *
+   * @return true if the item should be drawn
+   */
+  public boolean isItemDrawn(@NotNull XYItemRendererState state, @NotNull XYPlot plot,
+      @NotNull Rectangle2D dataArea, @NotNull ValueAxis domainAxis, @NotNull XYDataset dataset,
+      int series, int item) {
+    if (item == state.getFirstItemIndex()) {
+      currentItems = selectItems(state, plot, dataArea, domainAxis, dataset, series);
+    }
+    // first and last items start and draw the path
+    return currentItems == null || item == state.getFirstItemIndex()
+           || item == state.getLastItemIndex() || currentItems.get(item);
+  }
+
+  /**
+   * @return the items to draw or null to draw all items
+   */
+  private @Nullable BitSet selectItems(XYItemRendererState state, XYPlot plot,
+      Rectangle2D dataArea, ValueAxis domainAxis, XYDataset dataset, int series) {
+    final double pixels = dataArea.getWidth();
+    final int first = state.getFirstItemIndex();
+    final int last = state.getLastItemIndex();
+    if (pixels <= 0 || last - first + 1 <= pixels * ITEMS_PER_PIXEL) {
+      return null;
+    }
+
+    final SeriesLevels levels = getLevels(dataset, series);
+    if (levels == null) {
+      return null;
+    }
+    final View view = new View(domainAxis.getLowerBound(), domainAxis.getUpperBound(), pixels,
+        first, last);
+    final BitSet items = levels.getView(view);
+    if (items != null) {
+      return items;
+    }
+
+    final int level = levels.getLevel(view.getPixelWidth() / PREVIEW_BUCKETS_PER_PIXEL);
+    final BitSet preview = level < 0 ? null : levels.getClosestLevel(level);
+    if (preview == null) {
+      // first rendering of this series, prepare the preview for the next view
+      if (level >= 0) {
+        levels.computeLater(dataset, series, level);
+      }
+      return levels.computeView(dataset, series, view);
+    }
+    levels.computeLater(dataset, series, view, level, plot);
+    return preview;
+  }
+
+  /**
+   * @return the cached levels or null if the series is not sorted by x
+   */
+  private @Nullable SeriesLevels getLevels(XYDataset dataset, int series) {
+    final Map<Integer, SeriesLevels> seriesLevels = datasets.computeIfAbsent(dataset,
+        _ -> new HashMap<>());
+    SeriesLevels levels = seriesLevels.get(series);
+    if (levels == null || !levels.isValid(dataset, series)) {
+      levels = SeriesLevels.create(dataset, series);
+      seriesLevels.put(series, levels);
+    }
+    return levels.ascending ? levels : null;
+  }
+
+  /**
+   * Domain range, pixel width and visible items of a rendering
+   */
+  private record View(double lower, double upper, double pixels, int first, int last) {
+
+    double getPixelWidth() {
+      return (upper - lower) / pixels;
+    }
+  }
+
+  private static final class SeriesLevels {
+
+    private final int itemCount;
+    private final double minX;
+    private final double maxX;
+    private final boolean ascending;
+    // least recently used levels and views are removed
+    private final Map<Integer, BitSet> levels = new LinkedHashMap<>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Entry<Integer, BitSet> eldest) {
+        return size() > MAX_CACHED_LEVELS;
+      }
+    };
+    private final Map<View, BitSet> views = new LinkedHashMap<>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Entry<View, BitSet> eldest) {
+        return size() > MAX_CACHED_VIEWS;
+      }
+    };
+    private final Set<Object> pending = new HashSet<>();
+
+    private SeriesLevels(int itemCount, double minX, double maxX, boolean ascending) {
+      this.itemCount = itemCount;
+      this.minX = minX;
+      this.maxX = maxX;
+      this.ascending = ascending;
+    }
+
+    private static SeriesLevels create(XYDataset dataset, int series) {
+      final int n = dataset.getItemCount(series);
+      boolean ascending = n > 1;
+      double last = Double.NEGATIVE_INFINITY;
+      for (int i = 0; i < n && ascending; i++) {
+        final double x = dataset.getXValue(series, i);
+        ascending = x >= last;
+        last = x;
+      }
+      if (!ascending) {
+        return new SeriesLevels(n, Double.NaN, Double.NaN, false);
+      }
+      final double minX = dataset.getXValue(series, 0);
+      final double maxX = dataset.getXValue(series, n - 1);
+      return new SeriesLevels(n, minX, maxX, maxX > minX);
+    }
+
+    /**
+     * Cheap check if the series changed
+     */
+    private boolean isValid(XYDataset dataset, int series) {
+      final int n = dataset.getItemCount(series);
+      if (n != itemCount) {
+        return false;
+      }
+      return !ascending || (Double.compare(dataset.getXValue(series, 0), minX) == 0
+                            && Double.compare(dataset.getXValue(series, n - 1), maxX) == 0);
+    }
+
+    /**
+     * @param bucketWidth maximum width of a bucket in domain units
+     * @return the level or -1 if the level would not reduce the number of items
+     */
+    private int getLevel(double bucketWidth) {
+      final double buckets = (maxX - minX) / bucketWidth;
+      final int level = Math.max(0, 64 - Long.numberOfLeadingZeros((long) Math.ceil(buckets) - 1));
+      if (level > MAX_LEVEL || (long) ITEMS_PER_PIXEL << level >= itemCount) {
+        return -1;
+      }
+      return level;
+    }
+
+    private synchronized @Nullable BitSet getView(View view) {
+      return views.get(view);
+    }
+
+    /**
+     * Finer levels are preferred, coarser levels are only used until the view was computed
+     */
+    private synchronized @Nullable BitSet getClosestLevel(int level) {
+      int finer = Integer.MAX_VALUE;
+      int coarser = -1;
+      for (int cached : levels.keySet()) {
+        if (cached >= level) {
+          finer = Math.min(finer, cached);
+        } else {
+          coarser = Math.max(coarser, cached);
+        }
+      }
+      if (finer != Integer.MAX_VALUE) {
+        return levels.get(finer);
+      }
+      return coarser == -1 ? null : levels.get(coarser);
+    }
+
+    /**
+     * Computes the view and the preview level if it is missing
+     */
+    private void computeLater(XYDataset dataset, int series, View view, int level, XYPlot plot) {
+      synchronized (this) {
+        if (!pending.add(view)) {
+          return;
+        }
+      }
+      executor.submit(() -> {
+        try {
+          computeView(dataset, series, view);
+          if (get(level) == null) {
+            computeLevel(dataset, series, level);
+          }
+          // redraw with the new selection
+          FxThread.runLater(() -> plot.notifyListeners(new PlotChangeEvent(plot)));
+        } catch (Exception e) {
+          // the dataset may have changed during computation
+          logger.log(Level.FINE, "Cannot compute level of detail", e);
+        } finally {
+          synchronized (this) {
+            pending.remove(view);
+          }
+        }
+      });
+    }
+
+    private void computeLater(XYDataset dataset, int series, int level) {
+      synchronized (this) {
+        if (!pending.add(level)) {
+          return;
+        }
+      }
+      executor.submit(() -> {
+        try {
+          computeLevel(dataset, series, level);
+        } catch (Exception e) {
+          logger.log(Level.FINE, "Cannot compute level of detail", e);
+        } finally {
+          synchronized (this) {
+            pending.remove(level);
+          }
+        }
+      });
+    }
+
+    private synchronized @Nullable BitSet get(int level) {
+      return levels.get(level);
+    }
+
+    private BitSet computeView(XYDataset dataset, int series, View view) {
+      final BitSet items = decimate(dataset, series, view.first(), view.last(), view.lower(),
+          view.getPixelWidth() / BUCKETS_PER_PIXEL);
+      synchronized (this) {
+        views.put(view, items);
+      }
+      return items;
+    }
+
+    private void computeLevel(XYDataset dataset, int series, int level) {
+      final BitSet items = decimate(dataset, series, 0, itemCount - 1, minX,
+          (maxX - minX) / (1L << level));
+      synchronized (this) {
+        levels.put(level, items);
+      }
+    }
+  }
+
+  /**
+   * Keeps the first, last, minimum and maximum item of each bucket
+   *
+   * @param origin      start of the first bucket
+   * @param bucketWidth width of the buckets in domain units
+   * @return the selected items
+   */
+  static BitSet decimate(XYDataset dataset, int series, int firstItem, int lastItem,
+      double origin, double bucketWidth) {
+    final int itemCount = dataset.getItemCount(series);
+    final BitSet items = new BitSet(itemCount);
+    long bucket = Long.MIN_VALUE;
+    int first = -1;
+    int last = -1;
+    int min = -1;
+    int max = -1;
+    double minY = 0;
+    double maxY = 0;
+    for (int i = firstItem; i <= lastItem; i++) {
+      final double y = dataset.getYValue(series, i);
+      if (Double.isNaN(y)) {
+        // keep the gap
+        items.set(Math.max(0, i - 1), Math.min(itemCount, i + 2));
+        continue;
+      }
+      final long b = (long) Math.floor((dataset.getXValue(series, i) - origin) / bucketWidth);
+      if (b != bucket) {
+        setBucket(items, first, last, min, max);
+        bucket = b;
+        first = min = max = i;
+        minY = maxY = y;
+      } else if (y < minY) {
+        minY = y;
+        min = i;
+      } else if (y > maxY) {
+        maxY = y;
+        max = i;
+      }
+      last = i;
+    }
+    setBucket(items, first, last, min, max);
+    return items;
+  }
+
+  private static void setBucket(BitSet items, int first, int last, int min, int max) {
+    if (first == -1) {
+      return;
+    }
+    items.set(first);
+    items.set(last);
+    items.set(min);
+    items.set(max);
+  }
+}
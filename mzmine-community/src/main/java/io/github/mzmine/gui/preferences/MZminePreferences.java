@@ -41,6 +41,7 @@ import io.github.mzmine.parameters.dialogs.GroupedParameterSetupDialog;
 import io.github.mzmine.parameters.impl.SimpleParameterSet;
 import io.github.mzmine.parameters.parametertypes.BooleanParameter;
 import io.github.mzmine.parameters.parametertypes.ComboParameter;
+import io.github.mzmine.parameters.parametertypes.DoubleParameter;
 import io.github.mzmine.parameters.parametertypes.FontSpecs;
 import io.github.mzmine.parameters.parametertypes.HiddenParameter;
 import io.github.mzmine.parameters.parametertypes.OptOutParameter;
@@ -182,6 +183,19 @@ public class MZminePreferences extends SimpleParameterSet {
       KeepInMemory.ALL, KeepInMemory.MASSES_AND_FEATURES), KeepInMemory.values(),
       KeepInMemory.NONE);
 
+  public static final OptionalParameter<DoubleParameter> compactMobilityScanStorage = new OptionalParameter<>(
+      new DoubleParameter("Compact ion mobility scan storage", """
+          Stores the m/z values of mobility scans as integer steps of this precision (in Da) and the \
+          intensities as floats instead of doubles. Halves the memory and temp file size of ion mobility \
+          data. The m/z error is at most half of the precision. Applies to newly imported data and mass detection.""",
+          new DecimalFormat("0.#######"), 0.00001, 0.0000001, 0.01), false);
+
+  public static final OptionalParameter<DirectoryParameter> spectralLibraryCache = new OptionalParameter<>(
+      new DirectoryParameter("Spectral library cache", """
+          Stores a compiled copy of imported spectral libraries in this directory. Importing an unchanged \
+          library file again maps the compiled copy instead of parsing the file. Uses the library_cache \
+          folder in the mzmine user directory if no directory is set."""), false);
+
   /*public static final BooleanParameter applyTimsPressureCompensation = new BooleanParameter(
       "Use MALDI-TIMS pressure compensation", """
       Specifies if mobility values from Bruker timsTOF fleX MALDI raw data shall be recalibrated using a Bruker algorithm.
@@ -253,8 +267,8 @@ public class MZminePreferences extends SimpleParameterSet {
 
   public MZminePreferences() {
     super(// start with performance
-        numOfThreads, memoryOption, tempDirectory, runGCafterBatchStep, deleteTempFiles,
-        proxySettings,
+        numOfThreads, memoryOption, compactMobilityScanStorage, spectralLibraryCache, tempDirectory,
+        runGCafterBatchStep, deleteTempFiles, proxySettings,
         /*applyTimsPressureCompensation,*/
         // visuals
         // number formats
@@ -294,8 +308,8 @@ public class MZminePreferences extends SimpleParameterSet {
     GroupedParameterSetupDialog dialog = new GroupedParameterSetupDialog(valueCheckRequired, this);
 
     // add groups
-    dialog.addParameterGroup("General", numOfThreads, memoryOption, tempDirectory,
-        runGCafterBatchStep, deleteTempFiles, proxySettings
+    dialog.addParameterGroup("General", numOfThreads, memoryOption, compactMobilityScanStorage,
+        spectralLibraryCache, tempDirectory, runGCafterBatchStep, deleteTempFiles, proxySettings
         /*, applyTimsPressureCompensation*/);
     dialog.addParameterGroup("Formats", mzFormat, rtFormat, mobilityFormat, ccsFormat,
         intensityFormat, ppmFormat, scoreFormat, unitFormat);
@@ -28,6 +28,8 @@ package io.github.mzmine.modules.batchmode;
 import io.github.mzmine.parameters.Parameter;
 import io.github.mzmine.parameters.impl.SimpleParameterSet;
 import io.github.mzmine.parameters.parametertypes.AdvancedParametersParameter;
+import io.github.mzmine.parameters.parametertypes.IntegerParameter;
+import io.github.mzmine.parameters.parametertypes.OptionalParameter;
 import io.github.mzmine.parameters.parametertypes.filenames.FileNameListSilentParameter;
 import io.github.mzmine.util.ExitCode;
 
@@ -37,11 +39,19 @@ public class BatchModeParameters extends SimpleParameterSet {
       "Last used files");
   public static final BatchQueueParameter batchQueue = new BatchQueueParameter();
 
+  public static final OptionalParameter<IntegerParameter> pipelinedSamples = new OptionalParameter<>(
+      new IntegerParameter("Pipelined samples", """
+          Runs consecutive per-sample steps (data import, mass detection, chromatogram building, \
+          smoothing, resolving, isotope grouping) as one chain per sample instead of waiting for \
+          all samples after every step. Steps that need all samples, like alignment, wait for all \
+          chains to finish. The value limits the number of samples processed at the same time.""",
+          4, 1, null), false);
+
   public static final AdvancedParametersParameter<AdvancedBatchModeParameters> advanced = new AdvancedParametersParameter<>(
       new AdvancedBatchModeParameters());
 
   public BatchModeParameters() {
-    super(new Parameter[]{batchQueue,
+    super(new Parameter[]{batchQueue, pipelinedSamples,
 //        advanced,
         lastFiles});
   }
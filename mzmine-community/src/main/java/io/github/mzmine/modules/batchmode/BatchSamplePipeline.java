@@ -0,0 +1,372 @@
+/*
+ * Copyright (c) 2004-2025 The mzmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.batchmode;
+
+import io.github.mzmine.datamodel.MZmineProject;
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.features.FeatureList;
+import io.github.mzmine.main.MZmineCore;
+import io.github.mzmine.modules.MZmineProcessingModule;
+import io.github.mzmine.modules.MZmineProcessingStep;
+import io.github.mzmine.modules.dataprocessing.featdet_adapchromatogrambuilder.ModularADAPChromatogramBuilderModule;
+import io.github.mzmine.modules.dataprocessing.featdet_chromatogramdeconvolution.FeatureResolverModule;
+import io.github.mzmine.modules.dataprocessing.featdet_massdetection.MassDetectionModule;
+import io.github.mzmine.modules.dataprocessing.featdet_smoothing.SmoothingModule;
+import io.github.mzmine.modules.dataprocessing.filter_isotopegrouper.IsotopeGrouperModule;
+import io.github.mzmine.modules.io.import_rawdata_all.AllSpectralDataImportModule;
+import io.github.mzmine.modules.io.import_rawdata_all.AllSpectralDataImportParameters;
+import io.github.mzmine.modules.io.import_spectral_library.SpectralLibraryImportParameters;
+import io.github.mzmine.parameters.Parameter;
+import io.github.mzmine.parameters.ParameterSet;
+import io.github.mzmine.parameters.parametertypes.EmbeddedParameterSet;
+import io.github.mzmine.parameters.parametertypes.selectors.FeatureListsParameter;
+import io.github.mzmine.parameters.parametertypes.selectors.FeatureListsSelection;
+import io.github.mzmine.parameters.parametertypes.selectors.FeatureListsSelectionType;
+import io.github.mzmine.parameters.parametertypes.selectors.RawDataFilesParameter;
+import io.github.mzmine.parameters.parametertypes.selectors.RawDataFilesSelection;
+import io.github.mzmine.parameters.parametertypes.selectors.RawDataFilesSelectionType;
+import io.github.mzmine.taskcontrol.AbstractTask;
+import io.github.mzmine.taskcontrol.Task;
+import io.github.mzmine.taskcontrol.TaskStatus;
+import io.github.mzmine.taskcontrol.impl.WrappedTask;
+import io.github.mzmine.util.ExitCode;
+import java.io.File;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Runs consecutive batch steps that work on each sample independently as one chain per sample.
+ * Samples do not wait for each other between those steps, only a limited number of samples is
+ * processed at the same time, and the intermediate results of finished samples can be released
+ * early. Steps that need all samples are not part of a pipeline and are run by {@link BatchTask}
+ * once all chains finished.
+ */
+class BatchSamplePipeline {
+
+  private static final Logger logger = Logger.getLogger(BatchSamplePipeline.class.getName());
+
+  // modules that create results for each sample from the data of this sample alone
+  private static final Set<Class<? extends MZmineProcessingModule>> perSampleModules = Set.of(
+      MassDetectionModule.class, ModularADAPChromatogramBuilderModule.class,
+      SmoothingModule.class, IsotopeGrouperModule.class);
+
+  private final AbstractTask batchTask;
+  private final MZmineProject project;
+  private final List<MZmineProcessingStep<MZmineProcessingModule>> steps;
+  private final int maxSamplesInFlight;
+  private final AtomicReference<String> errorMessage = new AtomicReference<>();
+
+  /**
+   * @param batchTask          the parent task, used to check for cancellation
+   * @param steps              consecutive per-sample steps, see {@link #findPipelineEnd}
+   * @param maxSamplesInFlight maximum number of samples processed at the same time
+   */
+  BatchSamplePipeline(@NotNull AbstractTask batchTask, @NotNull MZmineProject project,
+      @NotNull List<MZmineProcessingStep<MZmineProcessingModule>> steps, int maxSamplesInFlight) {
+    this.batchTask = batchTask;
+    this.project = project;
+    this.steps = steps;
+    this.maxSamplesInFlight = Math.max(1, maxSamplesInFlight);
+  }
+
+  /**
+   * @param queue     the batch queue
+   * @param fromIndex the first step of a potential pipeline
+   * @return the exclusive end index of consecutive per-sample steps starting at fromIndex. Equals
+   * fromIndex if the step needs all samples.
+   */
+  static int findPipelineEnd(@NotNull BatchQueue queue, int fromIndex) {
+    int end = fromIndex;
+    while (end < queue.size() && isPerSampleStep(queue.get(end), end == 0)) {
+      end++;
+    }
+    return end;
+  }
+
+  /**
+   * @param firstStep only the first step may import data
+   * @return true if the step processes each sample independently. Requires the input to be the
+   * files or feature lists of the previous batch step.
+   */
+  static boolean isPerSampleStep(@NotNull MZmineProcessingStep<MZmineProcessingModule> step,
+      boolean firstStep) {
+    final MZmineProcessingModule module = step.getModule();
+    final ParameterSet parameters = step.getParameterSet();
+    if (module instanceof AllSpectralDataImportModule) {
+      // metadata and libraries are imported once for all samples
+      final File[] libraries = parameters.getValue(SpectralLibraryImportParameters.dataBaseFiles);
+      return firstStep && !parameters.getValue(AllSpectralDataImportParameters.metadataFile) && (
+          libraries == null || libraries.length == 0);
+    }
+    if (!(module instanceof FeatureResolverModule) && !perSampleModules.contains(
+        module.getClass())) {
+      return false;
+    }
+
+    for (Parameter<?> p : parameters.getParameters()) {
+      if (p instanceof RawDataFilesParameter rdp && (rdp.getValue() == null
+          || rdp.getValue().getSelectionType() != RawDataFilesSelectionType.BATCH_LAST_FILES)) {
+        return false;
+      }
+      if (p instanceof FeatureListsParameter flp && (flp.getValue() == null
+          || flp.getValue().getSelectionType()
+             != FeatureListsSelectionType.BATCH_LAST_FEATURELISTS)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Runs all steps for each sample.
+   *
+   * @param lastFiles        the files created by the previous batch step
+   * @param lastFeatureLists the feature lists created by the previous batch step
+   * @return the results of all samples in input order or null on error or cancel, see
+   * {@link #getErrorMessage()}
+   */
+  @Nullable
+  List<Sample> run(@NotNull List<RawDataFile> lastFiles,
+      @NotNull List<FeatureList> lastFeatureLists) {
+    final List<Sample> samples = createSamples(lastFiles, lastFeatureLists);
+    if (samples == null) {
+      return null;
+    }
+    logger.info("Running %d pipelined batch steps on %d samples, %d at a time".formatted(
+        steps.size(), samples.size(), maxSamplesInFlight));
+
+    final AtomicInteger threadCounter = new AtomicInteger(0);
+    final ExecutorService executor = Executors.newFixedThreadPool(
+        Math.min(maxSamplesInFlight, Math.max(1, samples.size())), runnable -> {
+          Thread thread = new Thread(runnable,
+              "Batch sample pipeline " + threadCounter.getAndIncrement());
+          thread.setDaemon(true);
+          return thread;
+        });
+    try {
+      final List<Future<Sample>> futures = new ArrayList<>();
+      for (Sample sample : samples) {
+        futures.add(executor.submit(() -> processSample(sample)));
+      }
+
+      final List<Sample> results = new ArrayList<>(samples.size());
+      for (Future<Sample> future : futures) {
+        results.add(future.get());
+      }
+      if (errorMessage.get() != null || batchTask.isCanceled()) {
+        return null;
+      }
+      if (results.contains(null)) {
+        // never continue the batch with a subset of the samples
+        errorMessage.compareAndSet(null, "Pipelined batch steps did not finish for all samples");
+        return null;
+      }
+      return results;
+    } catch (InterruptedException | ExecutionException e) {
+      errorMessage.compareAndSet(null, "Error in pipelined batch steps: " + e.getMessage());
+      return null;
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * @return the first error of any sample or null
+   */
+  @Nullable
+  String getErrorMessage() {
+    return errorMessage.get();
+  }
+
+  /**
+   * One chain per imported file or per raw data file of the previous step
+   */
+  @Nullable
+  private List<Sample> createSamples(@NotNull List<RawDataFile> lastFiles,
+      @NotNull List<FeatureList> lastFeatureLists) {
+    final MZmineProcessingStep<MZmineProcessingModule> first = steps.getFirst();
+    if (first.getModule() instanceof AllSpectralDataImportModule) {
+      final File[] files = first.getParameterSet()
+          .getValue(AllSpectralDataImportParameters.fileNames);
+      return files == null ? List.of()
+          : Arrays.stream(files).map(f -> new Sample(f, List.of(), List.of())).toList();
+    }
+
+    final Map<RawDataFile, List<FeatureList>> samples = new LinkedHashMap<>();
+    for (RawDataFile file : lastFiles) {
+      samples.put(file, new ArrayList<>());
+    }
+    for (FeatureList flist : lastFeatureLists) {
+      if (flist.getNumberOfRawDataFiles() != 1) {
+        errorMessage.set("Cannot pipeline per-sample batch steps on aligned feature list " + flist);
+        return null;
+      }
+      samples.computeIfAbsent(flist.getRawDataFile(0), _ -> new ArrayList<>()).add(flist);
+    }
+    return samples.entrySet().stream()
+        .map(e -> new Sample(null, List.of(e.getKey()), List.copyOf(e.getValue()))).toList();
+  }
+
+  /**
+   * Runs all steps on one sample. Each step receives the files and feature lists of this sample
+   * that were created by the previous step.
+   *
+   * @return the result of the last step or null on error or cancel
+   */
+  @Nullable
+  private Sample processSample(@NotNull Sample sample) {
+    Sample current = sample;
+    for (MZmineProcessingStep<MZmineProcessingModule> step : steps) {
+      if (batchTask.isCanceled() || errorMessage.get() != null) {
+        return null;
+      }
+      current = processStep(step, current);
+      if (current == null) {
+        return null;
+      }
+    }
+    return current;
+  }
+
+  /**
+   * @return the sample with the newly created files and feature lists or null on error or cancel.
+   * Sets the error message unless the batch was canceled.
+   */
+  @Nullable
+  private Sample processStep(@NotNull MZmineProcessingStep<MZmineProcessingModule> step,
+      @NotNull Sample sample) {
+    final MZmineProcessingModule module = step.getModule();
+    // each sample needs its own parameters as the batch last selections are changed
+    final ParameterSet parameters = step.getParameterSet().cloneParameterSet();
+    if (sample.importFile() != null) {
+      parameters.setParameter(AllSpectralDataImportParameters.fileNames,
+          new File[]{sample.importFile()});
+    }
+    for (Parameter<?> p : parameters.getParameters()) {
+      if (p instanceof RawDataFilesParameter rdp) {
+        final RawDataFilesSelection selection = rdp.getValue();
+        selection.setBatchLastFiles(sample.files().toArray(new RawDataFile[0]));
+      }
+    }
+    setBatchLastFeatureLists(parameters, sample.featureLists());
+
+    final List<String> messages = new ArrayList<>();
+    if (!parameters.checkParameterValues(messages)) {
+      errorMessage.compareAndSet(null,
+          "Invalid parameter settings for module " + module.getName() + ": " + messages);
+      return null;
+    }
+
+    final Set<FeatureList> before = new HashSet<>(project.getCurrentFeatureLists());
+    final List<Task> tasks = new ArrayList<>();
+    final ExitCode exitCode = module.runModule(project, parameters, tasks, Instant.now());
+    if (exitCode != ExitCode.OK) {
+      errorMessage.compareAndSet(null, "Could not start batch step " + module.getName());
+      return null;
+    }
+
+    // run on this thread, parallelism comes from the samples
+    for (Task task : tasks) {
+      final WrappedTask finished = MZmineCore.getTaskController()
+          .runTaskOnThisThreadBlocking(task);
+      if (finished == null || finished.getStatus() == TaskStatus.ERROR) {
+        final String message = finished == null ? null : finished.getErrorMessage();
+        errorMessage.compareAndSet(null,
+            message != null ? message : "Could not run batch step " + module.getName());
+        return null;
+      }
+      final TaskStatus status = finished.getActualTask().getStatus();
+      if (status != TaskStatus.FINISHED) {
+        if (!batchTask.isCanceled()) {
+          // a task canceled on its own would silently drop this sample from all later steps
+          errorMessage.compareAndSet(null,
+              "Batch step %s ended with status %s for sample %s".formatted(module.getName(),
+                  status, sample.name()));
+        }
+        return null;
+      }
+    }
+    tasks.clear();
+
+    List<RawDataFile> files = sample.files();
+    if (sample.importFile() != null) {
+      files = AllSpectralDataImportParameters.getLoadedRawDataFiles(project, parameters);
+    }
+    // other samples add feature lists concurrently - only keep those of this sample
+    final Set<RawDataFile> sampleFiles = Set.copyOf(files);
+    final List<FeatureList> created = project.getCurrentFeatureLists().stream()
+        .filter(flist -> !before.contains(flist))
+        .filter(flist -> Set.copyOf(flist.getRawDataFiles()).equals(sampleFiles)).toList();
+    // same as the batch: keep the previous results if a step did not create any new
+    return new Sample(null, files, created.isEmpty() ? sample.featureLists() : created);
+  }
+
+  private static void setBatchLastFeatureLists(@NotNull ParameterSet parameters,
+      @NotNull List<FeatureList> featureLists) {
+    for (Parameter<?> p : parameters.getParameters()) {
+      if (p instanceof FeatureListsParameter flp) {
+        final FeatureListsSelection selection = flp.getValue();
+        selection.setBatchLastFeatureLists(featureLists.toArray(new FeatureList[0]));
+      } else if (p instanceof EmbeddedParameterSet embedded) {
+        setBatchLastFeatureLists(embedded.getEmbeddedParameters(), featureLists);
+      }
+    }
+  }
+
+  /**
+   * The state of one sample in the pipeline
+   *
+   * @param importFile   the file to import in the first step, null after import
+   * @param files        the raw data files of this sample
+   * @param featureLists the feature lists created by the last step
+   */
+  record Sample(@Nullable File importFile, @NotNull List<RawDataFile> files,
+                @NotNull List<FeatureList> featureLists) {
+
+    /**
+     * @return the import file or the raw data files of this sample
+     */
+    @NotNull String name() {
+      return importFile != null ? importFile.getName()
+          : files.stream().map(RawDataFile::getName).toList().toString();
+    }
+  }
+}
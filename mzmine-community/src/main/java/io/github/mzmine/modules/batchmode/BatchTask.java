@@ -36,7 +36,10 @@ import static io.github.mzmine.main.ConfigService.getPreference;
 import io.github.mzmine.main.MZmineCore;
 import io.github.mzmine.modules.MZmineProcessingModule;
 import io.github.mzmine.modules.MZmineProcessingStep;
+import io.github.mzmine.modules.batchmode.BatchSamplePipeline.Sample;
 import io.github.mzmine.modules.batchmode.change_outfiles.ChangeOutputFilesUtils;
+import io.github.mzmine.modules.batchmode.timing.BatchTimingReport;
+import io.github.mzmine.modules.batchmode.timing.StepResourceTracker;
 import io.github.mzmine.modules.batchmode.timing.StepTimeMeasurement;
 import io.github.mzmine.modules.io.import_rawdata_all.AllSpectralDataImportParameters;
 import io.github.mzmine.parameters.Parameter;
@@ -61,6 +64,7 @@ import io.github.mzmine.util.files.ExtensionFilters;
 import io.github.mzmine.util.files.FileAndPathUtil;
 import io.github.mzmine.util.io.CsvWriter;
 import java.io.File;
+import java.io.IOException;
 import java.nio.file.Paths;
 import java.time.Duration;
 import java.time.Instant;
@@ -73,6 +77,7 @@ import java.util.Optional;
 import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.Collectors;
 import javafx.scene.control.Alert.AlertType;
 import org.jetbrains.annotations.NotNull;
 
@@ -91,6 +96,8 @@ public class BatchTask extends AbstractTask {
   private final int datasets;
   private final List<StepTimeMeasurement> stepTimes = new ArrayList<>();
   private final boolean runGCafterBatchStep;
+  // maximum samples in flight for pipelined per-sample steps, 0 to run step by step
+  private final int pipelinedSamples;
   private int processedSteps;
   private List<File> subDirectories;
   private List<RawDataFile> createdDataFiles;
@@ -102,6 +109,8 @@ public class BatchTask extends AbstractTask {
   private Boolean createResultsDir;
   private File parentDir;
   private int currentDataset;
+  private String datasetName = "";
+  private Instant batchStart;
 
   BatchTask(MZmineProject project, ParameterSet parameters, @NotNull Instant moduleCallDate) {
     this(project, parameters, moduleCallDate,
@@ -117,6 +126,9 @@ public class BatchTask extends AbstractTask {
     setName("Batch task");
     this.project = project;
     this.queue = parameters.getParameter(BatchModeParameters.batchQueue).getValue();
+    this.pipelinedSamples = !parameters.hasParameter(BatchModeParameters.pipelinedSamples) ? 0
+        : requireNonNullElse(parameters.getEmbeddedParameterValueIfSelectedOrElse(
+            BatchModeParameters.pipelinedSamples, 0), 0);
     // advanced parameters
     useAdvanced = false;
 //    useAdvanced = parameters.getParameter(BatchModeParameters.advanced).getValue();
@@ -182,7 +194,8 @@ public class BatchTask extends AbstractTask {
 
   @Override
   public void run() {
-    Instant batchStart = Instant.now();
+    batchStart = Instant.now();
+    final StepResourceTracker batchResources = StepResourceTracker.start();
     setStatus(TaskStatus.PROCESSING);
     logger.info("Starting a batch of " + totalSteps + " steps");
 
@@ -218,14 +231,15 @@ public class BatchTask extends AbstractTask {
     if (runGCafterBatchStep) {
       System.gc();
     }
-    stepTimes.add(new StepTimeMeasurement(0, "WHOLE BATCH", duration, runGCafterBatchStep));
+    stepTimes.add(new StepTimeMeasurement(0, "WHOLE BATCH", duration, runGCafterBatchStep,
+        batchResources.stop(0, "WHOLE BATCH")));
     printBatchTimes();
   }
 
   private void runBatchQueue() {
     int errorDataset = 0;
     currentDataset = -1;
-    String datasetName = "";
+    datasetName = "";
     // Process individual batch steps
     for (int i = 0; i < totalSteps; i++) {
       // at the end of one dataset, clear the project and start over again
@@ -285,18 +299,32 @@ public class BatchTask extends AbstractTask {
       // run step
       final int stepNumber = i % stepsPerDataset;
       Instant start = Instant.now();
+      final StepResourceTracker stepResources = StepResourceTracker.start();
+
+      // consecutive per-sample steps run as one chain per sample
+      final int pipelineEnd = pipelinedSamples > 0 ? BatchSamplePipeline.findPipelineEnd(queue,
+          stepNumber) : stepNumber;
+      final int numSteps = pipelineEnd - stepNumber > 1 ? pipelineEnd - stepNumber : 1;
 
       // the heavy lifting
-      processQueueStep(stepNumber);
-      processedSteps++;
+      final String stepName;
+      if (numSteps > 1) {
+        processPipelinedSteps(stepNumber, pipelineEnd);
+        stepName = queue.subList(stepNumber, pipelineEnd).stream()
+            .map(step -> step.getModule().getName()).collect(Collectors.joining(" > "));
+      } else {
+        processQueueStep(stepNumber);
+        stepName = queue.get(stepNumber).getModule().getName();
+      }
+      processedSteps += numSteps;
+      i += numSteps - 1;
 
       Duration duration = Duration.between(start, Instant.now());
       if (runGCafterBatchStep) {
         System.gc();
       }
-      stepTimes.add(
-          new StepTimeMeasurement(stepNumber + 1, queue.get(stepNumber).getModule().getName(),
-              duration, runGCafterBatchStep));
+      stepTimes.add(new StepTimeMeasurement(stepNumber + 1, stepName, duration,
+          runGCafterBatchStep, stepResources.stop(stepNumber + 1, stepName)));
 
       // If we are canceled or ran into error, stop here
       if (getStatus() == TaskStatus.ERROR) {
@@ -322,6 +350,7 @@ public class BatchTask extends AbstractTask {
     logger.info("""
         Timing: Whole batch took %.3f seconds to finish
         %s""".formatted(stepTimes.getLast().secondsToFinish(), csv));
+    writeBatchReport();
 
 //    CsvWriter.writeToFile();
 //    logger.info(csv);
@@ -331,6 +360,23 @@ public class BatchTask extends AbstractTask {
 //    \{times}""");
   }
 
+  /**
+   * Writes the step times and resources as csv and json to compare batch runs over time
+   */
+  private void writeBatchReport() {
+    final File directory = BatchTimingReport.getDefaultDirectory();
+    if (directory == null || batchStart == null) {
+      return;
+    }
+    try {
+      final File file = new BatchTimingReport(batchStart, useAdvanced ? datasetName : null,
+          stepTimes).writeTo(directory);
+      logger.info("Batch report written to " + file.getAbsolutePath());
+    } catch (IOException e) {
+      logger.log(Level.WARNING, "Could not write batch report: " + e.getMessage(), e);
+    }
+  }
+
   private void setOutputFiles(final File parentDir, final boolean createResultsDir,
       final String datasetName) {
     File exportPath = createDatasetExportPath(parentDir, createResultsDir, datasetName);
@@ -363,6 +409,47 @@ public class BatchTask extends AbstractTask {
     return processedSteps % stepsPerDataset;
   }
 
+  /**
+   * Runs consecutive per-sample steps as one chain per sample, see {@link BatchSamplePipeline}.
+   * Afterwards, the batch last files and feature lists are the results of all samples.
+   *
+   * @param fromStep first step, inclusive
+   * @param toStep   last step, exclusive
+   */
+  private void processPipelinedSteps(int fromStep, int toStep) {
+    logger.info("Starting pipelined steps # %d to %d".formatted(fromStep + 1, toStep));
+
+    if (createdDataFiles.isEmpty()) {
+      createdDataFiles = previousCreatedDataFiles;
+    }
+    if (createdFeatureLists.isEmpty()) {
+      createdFeatureLists = previousCreatedFeatureLists;
+    }
+
+    final BatchSamplePipeline pipeline = new BatchSamplePipeline(this, project,
+        List.copyOf(queue.subList(fromStep, toStep)), pipelinedSamples);
+    final List<Sample> samples = pipeline.run(createdDataFiles, createdFeatureLists);
+    if (samples == null) {
+      if (pipeline.getErrorMessage() != null) {
+        error(pipeline.getErrorMessage());
+      } else if (!isCanceled()) {
+        error("Pipelined batch steps # %d to %d did not finish".formatted(fromStep + 1, toStep));
+      }
+      return;
+    }
+
+    createdDataFiles = samples.stream().flatMap(sample -> sample.files().stream()).distinct()
+        .collect(Collectors.toCollection(ArrayList::new));
+    createdFeatureLists = samples.stream().flatMap(sample -> sample.featureLists().stream())
+        .collect(Collectors.toCollection(ArrayList::new));
+    if (!createdDataFiles.isEmpty()) {
+      previousCreatedDataFiles = createdDataFiles;
+    }
+    if (!createdFeatureLists.isEmpty()) {
+      previousCreatedFeatureLists = createdFeatureLists;
+    }
+  }
+
   private void processQueueStep(int stepNumber) {
     logger.info("Starting step # " + (stepNumber + 1));
 
@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2004-2025 The mzmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.batchmode.timing;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * JDK Flight Recorder event for a single batch step. Started and committed by
+ * {@link StepResourceTracker}.
+ */
+@Name("io.github.mzmine.BatchStep")
+@Label("Batch step")
+@Category({"mzmine", "Batch"})
+@Description("Resources used by one step of a batch run")
+@StackTrace(false)
+class BatchStepEvent extends Event {
+
+  @Label("Step")
+  int step;
+
+  @Label("Name")
+  String name;
+
+  @Label("Process CPU time")
+  @Timespan(Timespan.NANOSECONDS)
+  long cpuTime;
+
+  @Label("GC time")
+  @Timespan(Timespan.MILLISECONDS)
+  long gcTime;
+
+  @Label("Allocated")
+  @DataAmount(DataAmount.BYTES)
+  long allocated;
+
+  @Label("Peak heap")
+  @DataAmount(DataAmount.BYTES)
+  long peakHeap;
+
+  @Label("Temp storage")
+  @DataAmount(DataAmount.BYTES)
+  long tempStorage;
+
+  @Label("Processed items")
+  long processedItems;
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2004-2025 The mzmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.batchmode.timing;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.mzmine.util.files.FileAndPathUtil;
+import io.github.mzmine.util.io.CsvWriter;
+import io.github.mzmine.util.io.WriterOptions;
+import java.io.File;
+import java.io.IOException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Report of one batch run that is written as csv and json to compare runs over time.
+ *
+ * @param batchStart       start of the batch
+ * @param dataset          dataset name in advanced batch mode, otherwise empty
+ * @param availableThreads processors available to the JVM
+ * @param maxHeapGB        maximum heap of the JVM
+ * @param steps            the measured steps
+ */
+public record BatchTimingReport(String batchStart, String dataset, int availableThreads,
+                                double maxHeapGB, List<StepTimeMeasurement> steps) {
+
+  private static final DateTimeFormatter FILE_FORMAT = DateTimeFormatter.ofPattern(
+      "yyyy-MM-dd_HH-mm-ss");
+
+  public BatchTimingReport(@NotNull Instant batchStart, @Nullable String dataset,
+      @NotNull List<StepTimeMeasurement> steps) {
+    this(batchStart.toString(), dataset == null ? "" : dataset,
+        Runtime.getRuntime().availableProcessors(),
+        Math.round(Runtime.getRuntime().maxMemory() / 1024d / 1024d / 1024d * 100d) / 100d,
+        List.copyOf(steps));
+  }
+
+  /**
+   * The default directory for batch reports in the mzmine user directory
+   */
+  @Nullable
+  public static File getDefaultDirectory() {
+    return FileAndPathUtil.resolveInMzmineDir("batch_reports");
+  }
+
+  /**
+   * Writes the report as csv (steps only) and json (with run information) into the directory. The
+   * file names start with the batch start time.
+   *
+   * @return the csv file
+   */
+  public File writeTo(@NotNull File directory) throws IOException {
+    String name = "batch_" + FILE_FORMAT.format(
+        LocalDateTime.ofInstant(Instant.parse(batchStart), ZoneId.systemDefault()));
+    if (!dataset.isBlank()) {
+      name += "_" + FileAndPathUtil.safePathEncode(dataset);
+    }
+    final File csv = new File(directory, name + ".csv");
+    CsvWriter.writeToFile(csv, steps, StepTimeMeasurement.class, WriterOptions.REPLACE, ',');
+
+    final File json = new File(directory, name + ".json");
+    new ObjectMapper().writerWithDefaultPrettyPrinter().writeValue(json, this);
+    return csv;
+  }
+}
@@ -0,0 +1,234 @@
+/*
+ * Copyright (c) 2004-2025 The mzmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.batchmode.timing;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+import io.github.mzmine.taskcontrol.impl.TaskEvent;
+import io.github.mzmine.util.files.FileAndPathUtil;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.openmbean.CompositeData;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Measures the resources of the whole JVM process between {@link #start()} and
+ * {@link #stop(int, String)} and emits a {@link BatchStepEvent}. Batch steps run one after
+ * another, so the process wide values are attributed to the current step. Trackers may overlap,
+ * e.g., the tracker of the whole batch and of each step, and do not change each other's values.
+ * <p>
+ * The peak heap is the highest total heap usage at the start, before each garbage collection and
+ * at the end of the step. The heap only shrinks during garbage collections, so this is the real
+ * peak of the total heap and not the sum of the peaks of each heap pool.
+ */
+public final class StepResourceTracker {
+
+  private static final double GB = 1024d * 1024d * 1024d;
+
+  private static final Set<String> heapPools = ManagementFactory.getMemoryPoolMXBeans().stream()
+      .filter(pool -> pool.getType() == MemoryType.HEAP).map(MemoryPoolMXBean::getName)
+      .collect(Collectors.toUnmodifiableSet());
+  // running trackers receive the heap usage before each garbage collection. Weak, so that trackers
+  // that were never stopped, e.g., after an error, are released
+  private static final Set<StepResourceTracker> runningTrackers = Collections.newSetFromMap(
+      new WeakHashMap<>());
+  private static boolean gcListenerAdded = false;
+
+  private final BatchStepEvent event = new BatchStepEvent();
+  private final AtomicLong peakHeap = new AtomicLong();
+  private final long startCpuNanos;
+  private final long startGcMillis;
+  private final long startAllocated;
+  private final long startTempUsable;
+  private final long startItems;
+
+  private StepResourceTracker() {
+    event.begin();
+    updatePeakHeap(heapUsedBytes());
+    startCpuNanos = processCpuNanos();
+    startGcMillis = gcMillis();
+    startAllocated = allocatedBytes();
+    startTempUsable = tempUsableBytes();
+    startItems = TaskEvent.getTotalProcessedItems();
+  }
+
+  /**
+   * Starts tracking
+   */
+  public static StepResourceTracker start() {
+    final StepResourceTracker tracker = new StepResourceTracker();
+    synchronized (runningTrackers) {
+      addGcListener();
+      runningTrackers.add(tracker);
+    }
+    return tracker;
+  }
+
+  /**
+   * Stops tracking and commits the flight recorder event.
+   *
+   * @param step the batch step number
+   * @param name the step name
+   * @return the used resources
+   */
+  @NotNull
+  public StepResourceUsage stop(int step, @NotNull String name) {
+    event.end();
+    synchronized (runningTrackers) {
+      runningTrackers.remove(this);
+    }
+    updatePeakHeap(heapUsedBytes());
+    final long cpu = Math.max(0, processCpuNanos() - startCpuNanos);
+    final long gc = Math.max(0, gcMillis() - startGcMillis);
+    final long allocated = Math.max(0, allocatedBytes() - startAllocated);
+    final long peakHeap = this.peakHeap.get();
+    final long tempUsable = tempUsableBytes();
+    // negative values mean that files were deleted or the drive is not accessible
+    final long tempStorage =
+        startTempUsable < 0 || tempUsable < 0 ? 0 : Math.max(0, startTempUsable - tempUsable);
+    final long items = TaskEvent.getTotalProcessedItems() - startItems;
+
+    if (event.shouldCommit()) {
+      event.step = step;
+      event.name = name;
+      event.cpuTime = cpu;
+      event.gcTime = gc;
+      event.allocated = allocated;
+      event.peakHeap = peakHeap;
+      event.tempStorage = tempStorage;
+      event.processedItems = items;
+      event.commit();
+    }
+
+    return new StepResourceUsage(round(cpu / 1E9), round(gc / 1000d), round(allocated / GB),
+        round(peakHeap / GB), round(tempStorage / GB), items);
+  }
+
+  private static double round(double value) {
+    return Math.round(value * 1000d) / 1000d;
+  }
+
+  private void updatePeakHeap(long used) {
+    peakHeap.accumulateAndGet(used, Math::max);
+  }
+
+  private static long heapUsedBytes() {
+    return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+  }
+
+  /**
+   * Listens to all garbage collections once. Called while holding the lock.
+   */
+  private static void addGcListener() {
+    if (gcListenerAdded) {
+      return;
+    }
+    gcListenerAdded = true;
+    for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+      if (gc instanceof NotificationEmitter emitter) {
+        emitter.addNotificationListener(StepResourceTracker::onGarbageCollection, null, null);
+      }
+    }
+  }
+
+  private static void onGarbageCollection(Notification notification, Object handback) {
+    if (!GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(
+        notification.getType())) {
+      return;
+    }
+    final GarbageCollectionNotificationInfo info = GarbageCollectionNotificationInfo.from(
+        (CompositeData) notification.getUserData());
+    long used = 0;
+    for (Map.Entry<String, MemoryUsage> pool : info.getGcInfo().getMemoryUsageBeforeGc()
+        .entrySet()) {
+      if (heapPools.contains(pool.getKey())) {
+        used += pool.getValue().getUsed();
+      }
+    }
+
+    final List<StepResourceTracker> trackers;
+    synchronized (runningTrackers) {
+      trackers = new ArrayList<>(runningTrackers);
+    }
+    for (StepResourceTracker tracker : trackers) {
+      tracker.updatePeakHeap(used);
+    }
+  }
+
+  private static long processCpuNanos() {
+    if (ManagementFactory.getOperatingSystemMXBean()
+        instanceof com.sun.management.OperatingSystemMXBean os) {
+      return Math.max(0, os.getProcessCpuTime());
+    }
+    return 0;
+  }
+
+  private static long gcMillis() {
+    long sum = 0;
+    for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+      sum += Math.max(0, gc.getCollectionTime());
+    }
+    return sum;
+  }
+
+  private static long allocatedBytes() {
+    if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean threads
+        && threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled()) {
+      return threads.getTotalThreadAllocatedBytes();
+    }
+    return 0;
+  }
+
+  /**
+   * @return usable bytes on the drive of the temp directory or -1 if unknown
+   */
+  private static long tempUsableBytes() {
+    final File tempDir = FileAndPathUtil.getTempDir();
+    if (tempDir == null || !tempDir.exists()) {
+      return -1;
+    }
+    try {
+      return Files.getFileStore(tempDir.toPath()).getUsableSpace();
+    } catch (IOException e) {
+      return -1;
+    }
+  }
+}
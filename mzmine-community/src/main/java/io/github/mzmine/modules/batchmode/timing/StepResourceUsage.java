@@ -0,0 +1,42 @@
+/*
+ * Copyright (c) 2004-2025 The mzmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.batchmode.timing;
+
+/**
+ * Resources used by one batch step, measured by {@link StepResourceTracker}.
+ *
+ * @param cpuSeconds     CPU time of the whole process
+ * @param gcSeconds      time spent in garbage collection
+ * @param allocatedGB    bytes allocated by all threads
+ * @param peakHeapGB     peak of the total heap usage of the process
+ * @param tempStorageGB  growth of the used space on the drive of the temp directory, which holds
+ *                       the memory mapped storage files
+ * @param processedItems items processed by finished tasks that count their items
+ */
+public record StepResourceUsage(double cpuSeconds, double gcSeconds, double allocatedGB,
+                                double peakHeapGB, double tempStorageGB, long processedItems) {
+
+}
@@ -29,8 +29,15 @@ import io.github.mzmine.main.ConfigService;
 import java.time.Duration;
 import org.jetbrains.annotations.Nullable;
 
+/**
+ * Wall time and resources used by one batch step. The resource columns are empty if they were not
+ * measured.
+ */
 public record StepTimeMeasurement(int step, double secondsToFinish, String name,
-                                  @Nullable String usedHeapGB) {
+                                  @Nullable String usedHeapGB, @Nullable Double cpuSeconds,
+                                  @Nullable Double gcSeconds, @Nullable Double allocatedGB,
+                                  @Nullable Double peakHeapGB, @Nullable Double tempStorageGB,
+                                  @Nullable Long processedItems) {
 
   /**
    * @param trackMemory memory measurements are only precise when combined with GC
@@ -38,16 +45,34 @@ public record StepTimeMeasurement(int step, double secondsToFinish, String name,
    */
   public StepTimeMeasurement(final int stepNumber, final String name, final Duration duration,
       final boolean trackMemory) {
+    this(stepNumber, name, duration, trackMemory, null);
+  }
+
+  /**
+   * @param trackMemory memory measurements are only precise when combined with GC
+   *                                  before, if active - please perform gc before this constructor
+   * @param usage       resources used by this step or null if not tracked
+   */
+  public StepTimeMeasurement(final int stepNumber, final String name, final Duration duration,
+      final boolean trackMemory, @Nullable final StepResourceUsage usage) {
     var memory = trackMemory ? "%.2f".formatted(
         ConfigService.getConfiguration().getUsedMemoryGB()) : null;
-    this(stepNumber, duration.toMillis() / 1000.0, name, memory);
+    this(stepNumber, duration.toMillis() / 1000.0, name, memory, //
+        usage == null ? null : usage.cpuSeconds(), //
+        usage == null ? null : usage.gcSeconds(), //
+        usage == null ? null : usage.allocatedGB(), //
+        usage == null ? null : usage.peakHeapGB(), //
+        usage == null ? null : usage.tempStorageGB(), //
+        usage == null ? null : usage.processedItems());
   }
 
   @Override
   public String toString() {
     String heap = usedHeapGB == null ? "" : " (used heap: %s GB)".formatted(usedHeapGB);
-    return "Step %d: %s took %.3f seconds to finish%s".formatted(step + 1, name, secondsToFinish,
-        heap);
+    String cpu = cpuSeconds == null ? "" : " (CPU: %.3f s, GC: %.3f s)".formatted(cpuSeconds,
+        gcSeconds);
+    return "Step %d: %s took %.3f seconds to finish%s%s".formatted(step + 1, name, secondsToFinish,
+        heap, cpu);
   }
 
 }
@@ -34,6 +34,7 @@ import io.github.mzmine.gui.chartbasics.simplechart.datasets.ColoredXYZDataset;
 import io.github.mzmine.gui.chartbasics.simplechart.datasets.DatasetAndRenderer;
 import io.github.mzmine.gui.chartbasics.simplechart.datasets.RunOption;
 import io.github.mzmine.gui.chartbasics.simplechart.renderers.ColoredXYShapeRenderer;
+import io.github.mzmine.javafx.concurrent.threading.FxThread;
 import io.github.mzmine.javafx.mvci.FxUpdateTask;
 import io.github.mzmine.modules.dataanalysis.utils.imputation.ImputationFunction;
 import io.github.mzmine.modules.dataanalysis.utils.imputation.ImputationFunctions;
@@ -132,37 +133,65 @@ public class PCAUpdateTask extends FxUpdateTask<PCAModel> {
         ((r1, r2) -> annotationPrioSorter.compare(rowsMappedToBestAnnotation.get(r1),
             rowsMappedToBestAnnotation.get(r2)))).toList();
 
+    // large datasets publish a first estimate while the decomposition is refined
     pcaRowsResult = PCAUtils.performPCAOnRows(rowsSortedByAnnotationPrio, abundance, scaling,
-        imputer, sampleTypeFilter);
+        imputer, sampleTypeFilter, this::publishIntermediateResult);
     if (pcaRowsResult == null) {
       return;
     }
     progressProvider.getAndIncrement();
 
-    final PCAScoresProvider scores = new PCAScoresProvider(pcaRowsResult, "Scores", Color.RED,
+    final PCADatasets datasets = createDatasets(pcaRowsResult);
+    progressProvider.addFinished(2);
+    scoresDatasets.addAll(datasets.scores());
+    loadingsDatasets.addAll(datasets.loadings());
+    components.addAll(datasets.components());
+  }
+
+  private PCADatasets createDatasets(PCARowsResult result) {
+    final PCAScoresProvider scores = new PCAScoresProvider(result, "Scores", Color.RED,
         domainPcIndex, rangePcIndex, metadataColumn);
     final ColoredXYZDataset scoresDS = new ColoredXYZDataset(scores, RunOption.THIS_THREAD);
-    progressProvider.getAndIncrement();
 
-    final PCALoadingsProvider loadings = new PCALoadingsProvider(pcaRowsResult, "Loadings",
-        Color.RED, domainPcIndex, rangePcIndex);
+    final PCALoadingsProvider loadings = new PCALoadingsProvider(result, "Loadings", Color.RED,
+        domainPcIndex, rangePcIndex);
     final ColoredXYZDataset loadingsDS = new ColoredXYZDataset(loadings, RunOption.THIS_THREAD);
-    progressProvider.getAndIncrement();
 
-    loadingsDatasets.add(new DatasetAndRenderer(loadingsDS, new ColoredXYShapeRenderer()));
-    scoresDatasets.add(new DatasetAndRenderer(scoresDS, new ColoredXYShapeRenderer()));
-
-    for (int i = 1; i <= pcaRowsResult.pcaResult().principalComponentsMatrix().getRowDimension();
-        i++) {
+    final List<Integer> components = new ArrayList<>();
+    for (int i = 1; i <= result.pcaResult().componentCount(); i++) {
       components.add(i);
     }
+    return new PCADatasets(result,
+        List.of(new DatasetAndRenderer(scoresDS, new ColoredXYShapeRenderer())),
+        List.of(new DatasetAndRenderer(loadingsDS, new ColoredXYShapeRenderer())), components);
+  }
+
+  /**
+   * Shows the first estimate of a truncated PCA. The final result is set by
+   * {@link #updateGuiModel()}
+   */
+  private void publishIntermediateResult(PCARowsResult intermediate) {
+    if (isCanceled()) {
+      return;
+    }
+    final PCADatasets datasets = createDatasets(intermediate);
+    FxThread.runLater(() -> {
+      if (!isCanceled()) {
+        applyToModel(datasets);
+      }
+    });
   }
 
   @Override
   protected void updateGuiModel() {
-    model.setScoresDatasets(scoresDatasets);
-    model.setLoadingsDatasets(loadingsDatasets);
-    model.setPcaResult(pcaRowsResult);
+    applyToModel(new PCADatasets(pcaRowsResult, scoresDatasets, loadingsDatasets, components));
+  }
+
+  private void applyToModel(PCADatasets datasets) {
+    final List<Integer> components = datasets.components();
+    model.setScoresDatasets(datasets.scores());
+    model.setLoadingsDatasets(datasets.loadings());
+    model.setPcaResult(datasets.result());
 
     if (model.getAvailablePCs().size() != components.size()) {
       model.getAvailablePCs().setAll(components);
@@ -199,4 +228,8 @@ public class PCAUpdateTask extends FxUpdateTask<PCAModel> {
     return progressProvider.progress();
   }
 
+  private record PCADatasets(PCARowsResult result, List<DatasetAndRenderer> scores,
+                             List<DatasetAndRenderer> loadings, List<Integer> components) {
+
+  }
 }
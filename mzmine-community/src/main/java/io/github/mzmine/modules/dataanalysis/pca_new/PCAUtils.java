@@ -33,14 +33,26 @@ import io.github.mzmine.modules.dataanalysis.utils.imputation.ImputationFunction
 import io.github.mzmine.modules.dataanalysis.utils.scaling.ScalingFunction;
 import io.github.mzmine.modules.visualization.projectmetadata.SampleTypeFilter;
 import java.util.List;
+import java.util.function.Consumer;
 import java.util.logging.Logger;
 import org.apache.commons.math3.linear.RealMatrix;
 import org.apache.commons.math3.linear.SingularValueDecomposition;
+import org.jetbrains.annotations.Nullable;
 
 public class PCAUtils {
 
   private static final Logger logger = Logger.getLogger(PCAUtils.class.getName());
 
+  /**
+   * Number of principal components computed by the randomized svd for large matrices
+   */
+  public static final int TRUNCATED_COMPONENTS = 20;
+  /**
+   * Matrices with more samples and features use the randomized svd. A full svd is fast for a small
+   * number of samples.
+   */
+  private static final int FULL_SVD_MAX_DIMENSION = 100;
+
   /**
    * Calculates the PCA of a matrix by singular value decomposition (svd).
    * https://stats.stackexchange.com/questions/134282/relationship-between-svd-and-pca-how-to-use-svd-to-perform-pca
@@ -50,26 +62,57 @@ public class PCAUtils {
    * @return A pca result.
    */
   public static PCAResult quickPCA(RealMatrix data, ScalingFunction scalingFunction) {
+    return quickPCA(data, scalingFunction, null);
+  }
+
+  /**
+   * Calculates the PCA of a matrix by singular value decomposition (svd). Large matrices only
+   * compute the first {@link #TRUNCATED_COMPONENTS} components, see {@link RandomizedSVD}.
+   *
+   * @param data                the data. The imputed data  see {@link ImputationFunction}. Will be
+   *                            centered around 0 and scaled according to the scaling function.
+   * @param intermediateResults receives a first estimate of a truncated PCA or null
+   * @return A pca result.
+   */
+  public static PCAResult quickPCA(RealMatrix data, ScalingFunction scalingFunction,
+      @Nullable Consumer<PCAResult> intermediateResults) {
 
     logger.finest(() -> "Performing scaling and centering");
     final RealMatrix centeredMatrix = StatisticUtils.centerAndScale(data, scalingFunction, false);
 
-    logger.finest(() -> "Performing singular value decomposition. This may take a while");
-    SingularValueDecomposition svd = new SingularValueDecomposition(centeredMatrix);
-    // https://stats.stackexchange.com/questions/134282/relationship-between-svd-and-pca-how-to-use-svd-to-perform-pca
-
-    return new PCAResult(svd);
+    return performPCA(centeredMatrix, intermediateResults);
   }
 
   /**
    * @param originalData the imputed data. see {@link ImputationFunction}
    */
   public static PCAResult performPCA(RealMatrix originalData, RealMatrix pretreatedData) {
-    logger.finest(() -> "Performing singular value decomposition. This may take a while");
-    SingularValueDecomposition svd = new SingularValueDecomposition(pretreatedData);
-    // https://stats.stackexchange.com/questions/134282/relationship-between-svd-and-pca-how-to-use-svd-to-perform-pca
+    return performPCA(pretreatedData, null);
+  }
+
+  /**
+   * Full svd for small matrices, otherwise the first {@link #TRUNCATED_COMPONENTS} of a randomized
+   * svd.
+   *
+   * @param pretreatedData      centered and scaled data
+   * @param intermediateResults receives a first estimate of a truncated PCA or null
+   */
+  public static PCAResult performPCA(RealMatrix pretreatedData,
+      @Nullable Consumer<PCAResult> intermediateResults) {
+    final int minDimension = Math.min(pretreatedData.getRowDimension(),
+        pretreatedData.getColumnDimension());
+    if (minDimension <= FULL_SVD_MAX_DIMENSION) {
+      logger.finest(() -> "Performing singular value decomposition. This may take a while");
+      SingularValueDecomposition svd = new SingularValueDecomposition(pretreatedData);
+      // https://stats.stackexchange.com/questions/134282/relationship-between-svd-and-pca-how-to-use-svd-to-perform-pca
 
-    return new PCAResult(svd);
+      return new PCAResult(svd);
+    }
+
+    logger.finest(() -> "Performing randomized singular value decomposition of %d x %d matrix".formatted(
+        pretreatedData.getRowDimension(), pretreatedData.getColumnDimension()));
+    return RandomizedSVD.decompose(RandomizedSVD.getRowMajorData(pretreatedData),
+        TRUNCATED_COMPONENTS, intermediateResults);
   }
 
   /**
@@ -95,6 +138,22 @@ public class PCAUtils {
   public static PCARowsResult performPCAOnRows(List<FeatureListRow> rows, AbundanceMeasure measure,
       ScalingFunction scalingFunction, ImputationFunction imputationFunction,
       SampleTypeFilter sampleTypeFilter) {
+    return performPCAOnRows(rows, measure, scalingFunction, imputationFunction, sampleTypeFilter,
+        null);
+  }
+
+  /**
+   * Performs a PCA on a list of feature list rows. Imputes missing values as 0s.
+   *
+   * @param rows                The rows.
+   * @param measure             The abundance to use.
+   * @param intermediateResults receives a first estimate of a truncated PCA for large datasets or
+   *                            null
+   * @return A pca result that can be mapped to the used rows.
+   */
+  public static PCARowsResult performPCAOnRows(List<FeatureListRow> rows, AbundanceMeasure measure,
+      ScalingFunction scalingFunction, ImputationFunction imputationFunction,
+      SampleTypeFilter sampleTypeFilter, @Nullable Consumer<PCARowsResult> intermediateResults) {
     final List<RawDataFile> files = rows.stream().flatMap(row -> row.getRawDataFiles().stream())
         .distinct().filter(sampleTypeFilter::matches).toList();
 
@@ -104,7 +163,10 @@ public class PCAUtils {
 
     final RealMatrix data = StatisticUtils.createDatasetFromRows(rows, files, measure);
     StatisticUtils.imputeMissingValues(data, true, imputationFunction);
-    final PCAResult pcaResult = quickPCA(data, scalingFunction);
+    // data is not used afterwards, avoid a copy of large matrices
+    StatisticUtils.centerAndScale(data, scalingFunction, true);
+    final PCAResult pcaResult = performPCA(data, intermediateResults == null ? null
+        : intermediate -> intermediateResults.accept(new PCARowsResult(intermediate, rows, files)));
     return new PCARowsResult(pcaResult, rows, files);
   }
 }
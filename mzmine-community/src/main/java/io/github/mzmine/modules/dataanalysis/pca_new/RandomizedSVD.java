@@ -0,0 +1,263 @@
+/*
+ * Copyright (c) 2004-2024 The mzmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataanalysis.pca_new;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.apache.commons.math3.linear.RealMatrix;
+import org.apache.commons.math3.linear.SingularValueDecomposition;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Randomized singular value decomposition that only computes the first k components of a large
+ * matrix (Halko, Martinsson, Tropp 2011). A random subspace is multiplied with the data matrix and
+ * refined by power iterations, which only requires products with the data matrix. The small
+ * projected matrix is then decomposed by a full svd.
+ * <p>
+ * The data matrix is kept as row-major primitive arrays, e.g., the data of an
+ * {@link Array2DRowRealMatrix} with samples as rows and features as columns. Matrix products are
+ * computed in parallel, each value is always summed in the same order, so results do not depend on
+ * the number of threads. The random subspace uses a fixed seed.
+ */
+public final class RandomizedSVD {
+
+  /**
+   * additional random vectors to improve the accuracy of the last components
+   */
+  public static final int DEFAULT_OVERSAMPLING = 10;
+  /**
+   * power iterations improve the accuracy for slowly decaying singular values
+   */
+  public static final int DEFAULT_POWER_ITERATIONS = 3;
+  /**
+   * number of columns in a block of the parallel transposed products
+   */
+  private static final int COLUMN_BLOCK = 1024;
+  private static final long SEED = 42;
+
+  private RandomizedSVD() {
+  }
+
+  /**
+   * @param data                row-major data matrix, centered and scaled for PCA
+   * @param numComponents       number of components k
+   * @param intermediateResults receives a first estimate without power iterations or null
+   * @return a PCA result with the first k components or less if the matrix has a lower rank
+   */
+  public static PCAResult decompose(double[][] data, int numComponents,
+      @Nullable Consumer<PCAResult> intermediateResults) {
+    return decompose(data, numComponents, DEFAULT_OVERSAMPLING, DEFAULT_POWER_ITERATIONS,
+        intermediateResults);
+  }
+
+  /**
+   * @param data                row-major data matrix, centered and scaled for PCA
+   * @param numComponents       number of components k
+   * @param oversampling        additional random vectors
+   * @param powerIterations     number of power iterations
+   * @param intermediateResults receives a first estimate without power iterations or null
+   * @return a PCA result with the first k components or less if the matrix has a lower rank
+   */
+  public static PCAResult decompose(double[][] data, int numComponents, int oversampling,
+      int powerIterations, @Nullable Consumer<PCAResult> intermediateResults) {
+    final int rows = data.length;
+    final int cols = rows == 0 ? 0 : data[0].length;
+    final int width = Math.min(numComponents + oversampling, Math.min(rows, cols));
+    if (width == 0) {
+      throw new IllegalArgumentException("Cannot decompose an empty matrix");
+    }
+    final int components = Math.min(numComponents, width);
+    final double totalVariance = sumOfSquares(data);
+
+    // range finder: Y = A * Omega with random gaussian vectors
+    final double[] omega = new double[cols * width];
+    final Random random = new Random(SEED);
+    for (int i = 0; i < omega.length; i++) {
+      omega[i] = random.nextGaussian();
+    }
+    double[] q = multiply(data, omega, width);
+    orthonormalizeColumns(q, rows, width);
+
+    if (intermediateResults != null && powerIterations > 0) {
+      intermediateResults.accept(project(data, q, width, components, totalVariance));
+    }
+
+    for (int i = 0; i < powerIterations; i++) {
+      final double[] z = multiplyTransposed(data, q, width);
+      orthonormalizeColumns(z, cols, width);
+      q = multiply(data, z, width);
+      orthonormalizeColumns(q, rows, width);
+    }
+
+    return project(data, q, width, components, totalVariance);
+  }
+
+  /**
+   * Decomposes the projection B = Q^T * A. The svd of B^T = W * S * Z^T results in A = (Q * Z) * S
+   * * W^T.
+   *
+   * @param q orthonormal basis, rows x width
+   */
+  private static PCAResult project(double[][] data, double[] q, int width, int components,
+      double totalVariance) {
+    final int rows = data.length;
+    final int cols = data[0].length;
+    final double[] bt = multiplyTransposed(data, q, width);
+    final double[][] btRows = new double[cols][];
+    for (int c = 0; c < cols; c++) {
+      btRows[c] = Arrays.copyOfRange(bt, c * width, (c + 1) * width);
+    }
+    final SingularValueDecomposition svd = new SingularValueDecomposition(
+        new Array2DRowRealMatrix(btRows, false));
+
+    // rank of the projection may be lower than the number of components
+    final double[] singularValues = svd.getSingularValues();
+    final int n = Math.min(components, singularValues.length);
+    final RealMatrix z = svd.getV();
+    final double[][] u = new double[rows][n];
+    for (int r = 0; r < rows; r++) {
+      for (int j = 0; j < n; j++) {
+        double sum = 0;
+        for (int p = 0; p < width; p++) {
+          sum += q[r * width + p] * z.getEntry(p, j);
+        }
+        u[r][j] = sum;
+      }
+    }
+    final RealMatrix v = svd.getU().getSubMatrix(0, cols - 1, 0, n - 1);
+    return new PCAResult(new Array2DRowRealMatrix(u, false), Arrays.copyOf(singularValues, n), v,
+        totalVariance);
+  }
+
+  /**
+   * @param x row-major matrix with cols x width values
+   * @return A * X as row-major matrix with rows x width values
+   */
+  static double[] multiply(double[][] data, double[] x, int width) {
+    final double[] result = new double[data.length * width];
+    IntStream.range(0, data.length).parallel().forEach(r -> {
+      final double[] row = data[r];
+      final int offset = r * width;
+      for (int c = 0; c < row.length; c++) {
+        final double value = row[c];
+        final int xOffset = c * width;
+        for (int j = 0; j < width; j++) {
+          result[offset + j] += value * x[xOffset + j];
+        }
+      }
+    });
+    return result;
+  }
+
+  /**
+   * @param y row-major matrix with rows x width values
+   * @return A^T * Y as row-major matrix with cols x width values
+   */
+  static double[] multiplyTransposed(double[][] data, double[] y, int width) {
+    final int cols = data[0].length;
+    final double[] result = new double[cols * width];
+    final int blocks = (cols + COLUMN_BLOCK - 1) / COLUMN_BLOCK;
+    IntStream.range(0, blocks).parallel().forEach(block -> {
+      final int from = block * COLUMN_BLOCK;
+      final int to = Math.min(cols, from + COLUMN_BLOCK);
+      for (int r = 0; r < data.length; r++) {
+        final double[] row = data[r];
+        final int yOffset = r * width;
+        for (int c = from; c < to; c++) {
+          final double value = row[c];
+          final int offset = c * width;
+          for (int j = 0; j < width; j++) {
+            result[offset + j] += value * y[yOffset + j];
+          }
+        }
+      }
+    });
+    return result;
+  }
+
+  /**
+   * Modified Gram-Schmidt applied twice for numerical stability. Columns that are linearly
+   * dependent on the previous columns are set to zero.
+   *
+   * @param m row-major matrix with rows x width values, changed in place
+   */
+  static void orthonormalizeColumns(double[] m, int rows, int width) {
+    for (int pass = 0; pass < 2; pass++) {
+      for (int j = 0; j < width; j++) {
+        final double initialNorm = columnNorm(m, rows, width, j);
+        for (int p = 0; p < j; p++) {
+          double dot = 0;
+          for (int r = 0; r < rows; r++) {
+            dot += m[r * width + j] * m[r * width + p];
+          }
+          for (int r = 0; r < rows; r++) {
+            m[r * width + j] -= dot * m[r * width + p];
+          }
+        }
+        final double norm = columnNorm(m, rows, width, j);
+        final double scale = norm > 1E-10 * initialNorm ? 1d / norm : 0d;
+        for (int r = 0; r < rows; r++) {
+          m[r * width + j] *= scale;
+        }
+      }
+    }
+  }
+
+  private static double columnNorm(double[] m, int rows, int width, int column) {
+    double sum = 0;
+    for (int r = 0; r < rows; r++) {
+      sum += m[r * width + column] * m[r * width + column];
+    }
+    return Math.sqrt(sum);
+  }
+
+  private static double sumOfSquares(double[][] data) {
+    final double[] rowSums = new double[data.length];
+    IntStream.range(0, data.length).parallel().forEach(r -> {
+      double sum = 0;
+      for (double v : data[r]) {
+        sum += v * v;
+      }
+      rowSums[r] = sum;
+    });
+    double sum = 0;
+    for (double rowSum : rowSums) {
+      sum += rowSum;
+    }
+    return sum;
+  }
+
+  /**
+   * @return the data of the matrix without copying if possible
+   */
+  static double[][] getRowMajorData(@NotNull RealMatrix matrix) {
+    return matrix instanceof Array2DRowRealMatrix array ? array.getDataRef() : matrix.getData();
+  }
+}
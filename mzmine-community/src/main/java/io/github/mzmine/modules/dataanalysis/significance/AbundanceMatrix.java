@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2004-2024 The mzmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataanalysis.significance;
+
+import io.github.mzmine.datamodel.AbundanceMeasure;
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.features.FeatureListRow;
+import io.github.mzmine.datamodel.features.ModularFeature;
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import java.util.List;
+import java.util.stream.IntStream;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Abundances of rows in raw data files, read once into primitive column-major arrays with one
+ * column per raw data file. Missing abundances are stored as {@link Float#NaN}.
+ */
+public final class AbundanceMatrix {
+
+  private final List<FeatureListRow> rows;
+  private final List<RawDataFile> files;
+  private final AbundanceMeasure measure;
+  private final Object2IntMap<RawDataFile> fileIndex;
+  private final float[][] columns;
+
+  private AbundanceMatrix(List<FeatureListRow> rows, List<RawDataFile> files,
+      AbundanceMeasure measure, float[][] columns) {
+    this.rows = rows;
+    this.files = files;
+    this.measure = measure;
+    this.columns = columns;
+    fileIndex = new Object2IntOpenHashMap<>(files.size());
+    fileIndex.defaultReturnValue(-1);
+    for (int i = 0; i < files.size(); i++) {
+      fileIndex.put(files.get(i), i);
+    }
+  }
+
+  /**
+   * Reads the abundances of all rows in all files. Columns are filled in parallel.
+   *
+   * @param files the distinct files
+   */
+  public static AbundanceMatrix of(@NotNull List<FeatureListRow> rows,
+      @NotNull List<RawDataFile> files, @NotNull AbundanceMeasure measure) {
+    final List<FeatureListRow> rowList = List.copyOf(rows);
+    final List<RawDataFile> fileList = List.copyOf(files);
+    final float[][] columns = new float[fileList.size()][];
+    IntStream.range(0, fileList.size()).parallel().forEach(f -> {
+      final RawDataFile file = fileList.get(f);
+      final float[] column = new float[rowList.size()];
+      for (int r = 0; r < column.length; r++) {
+        final Float abundance = measure.get((ModularFeature) rowList.get(r).getFeature(file));
+        column[r] = abundance == null ? Float.NaN : abundance;
+      }
+      columns[f] = column;
+    });
+    return new AbundanceMatrix(rowList, fileList, measure, columns);
+  }
+
+  /**
+   * Reads the abundances of all rows in all files of the groups. Files that are part of multiple
+   * groups are only read once.
+   */
+  public static AbundanceMatrix ofGroups(@NotNull List<FeatureListRow> rows,
+      @NotNull List<List<RawDataFile>> groupedFiles, @NotNull AbundanceMeasure measure) {
+    final List<RawDataFile> files = groupedFiles.stream().flatMap(List::stream).distinct()
+        .toList();
+    return of(rows, files, measure);
+  }
+
+  /**
+   * @return the column indices of the files in the same order. Files that are not part of this
+   * matrix are skipped.
+   */
+  public int[] columnIndices(@NotNull List<RawDataFile> files) {
+    return files.stream().mapToInt(fileIndex::getInt).filter(i -> i >= 0).toArray();
+  }
+
+  /**
+   * The backing arrays [file][row]. NaN for missing values. Must not be changed.
+   */
+  public float[][] columns() {
+    return columns;
+  }
+
+  public int getNumberOfRows() {
+    return rows.size();
+  }
+
+  public int getNumberOfFiles() {
+    return files.size();
+  }
+
+  public List<FeatureListRow> getRows() {
+    return rows;
+  }
+
+  public List<RawDataFile> getFiles() {
+    return files;
+  }
+
+  public AbundanceMeasure getMeasure() {
+    return measure;
+  }
+}
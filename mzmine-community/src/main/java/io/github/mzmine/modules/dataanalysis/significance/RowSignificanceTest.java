@@ -26,7 +26,12 @@
 package io.github.mzmine.modules.dataanalysis.significance;
 
 import io.github.mzmine.datamodel.AbundanceMeasure;
+import io.github.mzmine.datamodel.RawDataFile;
 import io.github.mzmine.datamodel.features.FeatureListRow;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 public interface RowSignificanceTest {
@@ -36,4 +41,33 @@ public interface RowSignificanceTest {
    */
   @Nullable RowSignificanceTestResult test(FeatureListRow row, AbundanceMeasure abundanceMeasure);
 
+  /**
+   * Tests all rows. The default implementation tests each row on its own. Implementations may
+   * read all abundances into an {@link AbundanceMatrix} once and use the
+   * {@link SignificanceKernels} instead.
+   *
+   * @param isCanceled checked during the test. The results of a canceled test are incomplete.
+   * @return the results in row order. Rows that could not be tested are skipped.
+   */
+  default @NotNull List<? extends RowSignificanceTestResult> testAll(
+      @NotNull List<FeatureListRow> rows, @NotNull AbundanceMeasure abundanceMeasure,
+      @NotNull BooleanSupplier isCanceled) {
+    final List<RowSignificanceTestResult> results = new ArrayList<>();
+    for (final FeatureListRow row : rows) {
+      if (isCanceled.getAsBoolean()) {
+        break;
+      }
+      final RowSignificanceTestResult result = test(row, abundanceMeasure);
+      if (result != null) {
+        results.add(result);
+      }
+    }
+    return results;
+  }
+
+  /**
+   * @return the raw data files of each group that are compared by this test
+   */
+  @NotNull List<List<RawDataFile>> groupedFiles();
+
 }
@@ -0,0 +1,345 @@
+/*
+ * Copyright (c) 2004-2024 The mzmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataanalysis.significance;
+
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import java.util.Arrays;
+import java.util.function.BooleanSupplier;
+import java.util.stream.IntStream;
+import org.apache.commons.math3.distribution.FDistribution;
+import org.apache.commons.math3.distribution.TDistribution;
+import org.apache.commons.math3.stat.inference.TestUtils;
+
+/**
+ * Significance tests of all rows of an {@link AbundanceMatrix} at once. Rows are processed in
+ * parallel blocks and the group statistics are accumulated column by column over primitive arrays.
+ * Missing values (NaN) are skipped, so the results are the same as the {@link TestUtils} methods on
+ * the non-missing abundances of each row in group order. The tests check for cancellation before
+ * each block, the results of a canceled test are incomplete and must be discarded.
+ */
+public final class SignificanceKernels {
+
+  private static final int BLOCK_SIZE = 1024;
+
+  private SignificanceKernels() {
+  }
+
+  /**
+   * Welch's unpaired t-test, same as {@link TestUtils#tTest(double[], double[])}
+   *
+   * @param columns column-major abundances [file][row], NaN for missing values
+   * @param groupA  column indices of group A
+   * @param groupB  column indices of group B
+   * @return the two-sided p-value of each row or NaN if a group has less than two values
+   */
+  public static double[] welchTTest(float[][] columns, int numRows, int[] groupA, int[] groupB,
+      BooleanSupplier isCanceled) {
+    final double[] pValues = new double[numRows];
+    forEachBlock(numRows, isCanceled, (from, to) -> {
+      final int length = to - from;
+      final Moments a = new Moments(length);
+      final Moments b = new Moments(length);
+      a.accumulate(columns, groupA, from);
+      b.accumulate(columns, groupB, from);
+
+      for (int i = 0; i < length; i++) {
+        final double n1 = a.n[i];
+        final double n2 = b.n[i];
+        if (n1 < 2 || n2 < 2) {
+          pValues[from + i] = Double.NaN;
+          continue;
+        }
+        final double v1 = a.variance[i];
+        final double v2 = b.variance[i];
+        final double t = Math.abs((a.mean[i] - b.mean[i]) / Math.sqrt((v1 / n1) + (v2 / n2)));
+        final double df = (((v1 / n1) + (v2 / n2)) * ((v1 / n1) + (v2 / n2))) / (
+            (v1 * v1) / (n1 * n1 * (n1 - 1d)) + (v2 * v2) / (n2 * n2 * (n2 - 1d)));
+        pValues[from + i] = 2.0 * new TDistribution(null, df).cumulativeProbability(-t);
+      }
+    });
+    return pValues;
+  }
+
+  /**
+   * Paired t-test, same as {@link TestUtils#pairedTTest(double[], double[])}. The non-missing values
+   * of both groups are paired by their position.
+   *
+   * @param columns column-major abundances [file][row], NaN for missing values
+   * @param groupA  column indices of group A
+   * @param groupB  column indices of group B
+   * @return the two-sided p-value of each row or NaN if the groups have a different number of
+   * values or less than two values
+   */
+  public static double[] pairedTTest(float[][] columns, int numRows, int[] groupA, int[] groupB,
+      BooleanSupplier isCanceled) {
+    final double[] pValues = new double[numRows];
+    forEachBlock(numRows, isCanceled, (from, to) -> {
+      final int length = to - from;
+      final int[] countA = count(columns, groupA, from, length);
+      final int[] countB = count(columns, groupB, from, length);
+      final double[] a = new double[groupA.length];
+      final double[] b = new double[groupB.length];
+
+      for (int i = 0; i < length; i++) {
+        final int n = countA[i];
+        if (n != countB[i] || n < 2) {
+          pValues[from + i] = Double.NaN;
+          continue;
+        }
+        final int row = from + i;
+        compact(columns, groupA, row, a);
+        compact(columns, groupB, row, b);
+
+        double sumDifference = 0;
+        for (int k = 0; k < n; k++) {
+          sumDifference += a[k] - b[k];
+        }
+        final double meanDifference = sumDifference / n;
+
+        double sum1 = 0;
+        double sum2 = 0;
+        for (int k = 0; k < n; k++) {
+          final double diff = a[k] - b[k];
+          sum1 += (diff - meanDifference) * (diff - meanDifference);
+          sum2 += diff - meanDifference;
+        }
+        final double variance = (sum1 - (sum2 * sum2 / n)) / (n - 1);
+
+        final double t = Math.abs(meanDifference / Math.sqrt(variance / n));
+        pValues[row] = 2.0 * new TDistribution(null, n - 1).cumulativeProbability(-t);
+      }
+    });
+    return pValues;
+  }
+
+  /**
+   * One-way ANOVA, same as {@link TestUtils#oneWayAnovaPValue(java.util.Collection)} and
+   * {@link TestUtils#oneWayAnovaFValue(java.util.Collection)}
+   *
+   * @param columns column-major abundances [file][row], NaN for missing values
+   * @param groups  column indices of each group, at least two groups
+   * @param pValues output p-value of each row or NaN if a group has less than two values
+   * @param fValues output F-value of each row or NaN if a group has less than two values
+   */
+  public static void oneWayAnova(float[][] columns, int numRows, int[][] groups, double[] pValues,
+      double[] fValues, BooleanSupplier isCanceled) {
+    if (groups.length < 2) {
+      throw new IllegalArgumentException("ANOVA requires at least two groups");
+    }
+    forEachBlock(numRows, isCanceled, (from, to) -> {
+      final int length = to - from;
+      final double[][] sums = new double[groups.length][length];
+      final double[][] sumsSquared = new double[groups.length][length];
+      final int[][] counts = new int[groups.length][length];
+      for (int g = 0; g < groups.length; g++) {
+        final double[] sum = sums[g];
+        final double[] sumSquared = sumsSquared[g];
+        final int[] n = counts[g];
+        for (final int c : groups[g]) {
+          final float[] column = columns[c];
+          for (int i = 0; i < length; i++) {
+            final double v = column[from + i];
+            final boolean valid = v == v;
+            sum[i] += valid ? v : 0d;
+            sumSquared[i] += valid ? v * v : 0d;
+            n[i] += valid ? 1 : 0;
+          }
+        }
+      }
+
+      final int dfbg = groups.length - 1;
+      rows:
+      for (int i = 0; i < length; i++) {
+        int dfwg = 0;
+        double sswg = 0;
+        double totsum = 0;
+        double totsumsq = 0;
+        int totnum = 0;
+        for (int g = 0; g < groups.length; g++) {
+          final int num = counts[g][i];
+          if (num <= 1) {
+            pValues[from + i] = Double.NaN;
+            fValues[from + i] = Double.NaN;
+            continue rows;
+          }
+          final double sum = sums[g][i];
+          final double sumsq = sumsSquared[g][i];
+          totnum += num;
+          totsum += sum;
+          totsumsq += sumsq;
+          dfwg += num - 1;
+          sswg += sumsq - ((sum * sum) / num);
+        }
+        final double sst = totsumsq - ((totsum * totsum) / totnum);
+        final double ssbg = sst - sswg;
+        final double f = (ssbg / dfbg) / (sswg / dfwg);
+        fValues[from + i] = f;
+        pValues[from + i] = 1.0 - new FDistribution(null, dfbg, dfwg).cumulativeProbability(f);
+      }
+    });
+  }
+
+  /**
+   * Benjamini-Hochberg false discovery rate correction. NaN p-values are not counted as tests.
+   *
+   * @return the q-values (adjusted p-values) in the same order, NaN for NaN p-values
+   */
+  public static double[] benjaminiHochberg(double[] pValues) {
+    final double[] qValues = new double[pValues.length];
+    Arrays.fill(qValues, Double.NaN);
+    final int[] order = IntStream.range(0, pValues.length).filter(i -> !Double.isNaN(pValues[i]))
+        .toArray();
+    IntArrays.quickSort(order, (a, b) -> Double.compare(pValues[a], pValues[b]));
+
+    final int tests = order.length;
+    double min = 1d;
+    for (int rank = tests; rank >= 1; rank--) {
+      final int i = order[rank - 1];
+      min = Math.min(min, pValues[i] * tests / rank);
+      qValues[i] = min;
+    }
+    return qValues;
+  }
+
+  /**
+   * @param columns column-major abundances [file][row], NaN for missing values
+   * @param group   column indices of the group
+   * @return the number of non-missing values of each row in the group
+   */
+  public static int[] countValues(float[][] columns, int numRows, int[] group) {
+    return count(columns, group, 0, numRows);
+  }
+
+  private static int[] count(float[][] columns, int[] group, int from, int length) {
+    final int[] n = new int[length];
+    for (final int c : group) {
+      final float[] column = columns[c];
+      for (int i = 0; i < length; i++) {
+        n[i] += column[from + i] == column[from + i] ? 1 : 0;
+      }
+    }
+    return n;
+  }
+
+  /**
+   * Copies the non-missing values of a row in group order
+   */
+  private static void compact(float[][] columns, int[] group, int row, double[] target) {
+    int n = 0;
+    for (final int c : group) {
+      final float v = columns[c][row];
+      if (v == v) {
+        target[n++] = v;
+      }
+    }
+  }
+
+  private static void forEachBlock(int numRows, BooleanSupplier isCanceled,
+      BlockConsumer consumer) {
+    final int blocks = (numRows + BLOCK_SIZE - 1) / BLOCK_SIZE;
+    IntStream.range(0, blocks).parallel().forEach(block -> {
+      if (isCanceled.getAsBoolean()) {
+        return;
+      }
+      final int from = block * BLOCK_SIZE;
+      consumer.accept(from, Math.min(from + BLOCK_SIZE, numRows));
+    });
+  }
+
+  @FunctionalInterface
+  private interface BlockConsumer {
+
+    void accept(int from, int to);
+  }
+
+  /**
+   * Number of values, mean and bias corrected variance of a block of rows, computed like the
+   * commons math Mean and Variance with a correction pass
+   */
+  private static final class Moments {
+
+    private final double[] n;
+    private final double[] mean;
+    private final double[] variance;
+
+    private Moments(int length) {
+      n = new double[length];
+      mean = new double[length];
+      variance = new double[length];
+    }
+
+    private void accumulate(float[][] columns, int[] group, int from) {
+      final int length = n.length;
+      // sum and number of values
+      final double[] sum = new double[length];
+      for (final int c : group) {
+        final float[] column = columns[c];
+        for (int i = 0; i < length; i++) {
+          final double v = column[from + i];
+          final boolean valid = v == v;
+          sum[i] += valid ? v : 0d;
+          n[i] += valid ? 1d : 0d;
+        }
+      }
+
+      // mean with correction term
+      final double[] correction = new double[length];
+      for (int i = 0; i < length; i++) {
+        mean[i] = sum[i] / n[i];
+      }
+      for (final int c : group) {
+        final float[] column = columns[c];
+        for (int i = 0; i < length; i++) {
+          final double v = column[from + i];
+          correction[i] += v == v ? v - mean[i] : 0d;
+        }
+      }
+      for (int i = 0; i < length; i++) {
+        mean[i] = mean[i] + (correction[i] / n[i]);
+      }
+
+      // variance with correction term
+      final double[] accum = sum;
+      final double[] accum2 = correction;
+      Arrays.fill(accum, 0d);
+      Arrays.fill(accum2, 0d);
+      for (final int c : group) {
+        final float[] column = columns[c];
+        for (int i = 0; i < length; i++) {
+          final double v = column[from + i];
+          final double dev = v - mean[i];
+          final boolean valid = v == v;
+          accum[i] += valid ? dev * dev : 0d;
+          accum2[i] += valid ? dev : 0d;
+        }
+      }
+      for (int i = 0; i < length; i++) {
+        final double len = n[i];
+        variance[i] = len == 1 ? 0d : (accum[i] - (accum2[i] * accum2[i] / len)) / (len - 1.0);
+      }
+    }
+  }
+}
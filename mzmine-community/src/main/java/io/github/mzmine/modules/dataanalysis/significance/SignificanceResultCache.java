@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2004-2024 The mzmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataanalysis.significance;
+
+import io.github.mzmine.datamodel.AbundanceMeasure;
+import io.github.mzmine.datamodel.MZmineProject;
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.features.FeatureList;
+import io.github.mzmine.datamodel.features.FeatureListRow;
+import io.github.mzmine.project.ProjectService;
+import java.lang.ref.WeakReference;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Caches the latest results of significance tests of one view so that, e.g., the volcano plot does
+ * not need to repeat the tests when only the visualization changes. Results are keyed by the
+ * feature list and its current rows, the test with its grouped files and the abundance measure.
+ * <p>
+ * Each view model owns its cache, so the results and their rows are released with the view. Only
+ * the most recently used results are kept and a new result replaces older results of the same
+ * feature list with other rows. Results of feature lists that were removed from the project and
+ * results of a previous project are dropped on the next access.
+ */
+public final class SignificanceResultCache {
+
+  private static final int MAX_ENTRIES = 4;
+
+  private final Map<Key, List<RowSignificanceTestResult>> cache = new LinkedHashMap<>(
+      MAX_ENTRIES + 1, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<Key, List<RowSignificanceTestResult>> eldest) {
+      return size() > MAX_ENTRIES;
+    }
+  };
+  private final @NotNull Supplier<@NotNull MZmineProject> projectSupplier;
+  // the project of the cached results
+  private @Nullable WeakReference<MZmineProject> cachedProject;
+
+  public SignificanceResultCache() {
+    this(ProjectService::getProject);
+  }
+
+  SignificanceResultCache(@NotNull Supplier<@NotNull MZmineProject> projectSupplier) {
+    this.projectSupplier = projectSupplier;
+  }
+
+  /**
+   * @param isCanceled checked during the test. Results of a canceled test are not cached.
+   * @return the cached results or the results of a new test of all rows
+   */
+  public @NotNull List<RowSignificanceTestResult> getOrCompute(@NotNull FeatureList flist,
+      @NotNull RowSignificanceTest test, @NotNull AbundanceMeasure abundanceMeasure,
+      @NotNull BooleanSupplier isCanceled) {
+    final Key key = new Key(flist, List.copyOf(flist.getRows()), test, test.groupedFiles(),
+        abundanceMeasure);
+    synchronized (cache) {
+      removeOutdated();
+      final List<RowSignificanceTestResult> cached = cache.get(key);
+      if (cached != null) {
+        return cached;
+      }
+    }
+
+    // compute outside of the lock, the same result may be computed twice
+    final List<RowSignificanceTestResult> results = List.copyOf(
+        test.testAll(key.rows(), abundanceMeasure, isCanceled));
+    if (isCanceled.getAsBoolean()) {
+      return results;
+    }
+    synchronized (cache) {
+      // rows were added or removed, the previous results would keep the old rows
+      cache.keySet().removeIf(k -> k.flist() == flist && !k.rows().equals(key.rows()));
+      cache.put(key, results);
+    }
+    return results;
+  }
+
+  public void clear() {
+    synchronized (cache) {
+      cache.clear();
+    }
+  }
+
+  /**
+   * @return the number of cached results
+   */
+  int size() {
+    synchronized (cache) {
+      return cache.size();
+    }
+  }
+
+  /**
+   * Clears the results of a previous project and removes the results of feature lists that are no
+   * longer in the project. Called while holding the lock.
+   */
+  private void removeOutdated() {
+    final MZmineProject project = projectSupplier.get();
+    if (cachedProject == null || cachedProject.get() != project) {
+      cache.clear();
+      cachedProject = new WeakReference<>(project);
+      return;
+    }
+    final List<FeatureList> current = project.getCurrentFeatureLists();
+    cache.keySet().removeIf(key -> !current.contains(key.flist()));
+  }
+
+  private record Key(FeatureList flist, List<FeatureListRow> rows, RowSignificanceTest test,
+                     List<List<RawDataFile>> groupedFiles, AbundanceMeasure abundanceMeasure) {
+
+  }
+}
@@ -30,14 +30,15 @@ import io.github.mzmine.datamodel.features.FeatureList;
 import io.github.mzmine.datamodel.features.SimpleFeatureListAppliedMethod;
 import io.github.mzmine.datamodel.features.types.DataTypes;
 import io.github.mzmine.datamodel.features.types.numbers.stats.AnovaPValueType;
+import io.github.mzmine.datamodel.features.types.numbers.stats.AnovaQValueType;
 import io.github.mzmine.main.MZmineCore;
+import io.github.mzmine.modules.dataanalysis.significance.SignificanceKernels;
 import io.github.mzmine.modules.visualization.projectmetadata.MetadataColumnDoesNotExistException;
 import io.github.mzmine.parameters.ParameterSet;
 import io.github.mzmine.taskcontrol.AbstractTask;
 import io.github.mzmine.taskcontrol.TaskStatus;
 import java.time.Instant;
 import java.util.List;
-import java.util.Objects;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.jetbrains.annotations.NotNull;
@@ -76,6 +77,7 @@ public class AnovaTask extends AbstractTask {
     logger.info("Started calculating significance values");
 
     flist.addRowType(DataTypes.get(AnovaPValueType.class));
+    flist.addRowType(DataTypes.get(AnovaQValueType.class));
     try {
       calc = new AnovaTest(MZmineCore.getProjectMetadata().getColumnByName(groupingColumnName));
     } catch (MetadataColumnDoesNotExistException e) {
@@ -85,15 +87,20 @@ public class AnovaTask extends AbstractTask {
       return;
     }
 
-    final List<AnovaResult> anovaResults = flist.getRows().stream().map(row -> {
-      if (isCanceled()) {
-        return null;
-      }
-      processed++;
-      return calc.test(row, AbundanceMeasure.Height);
-    }).filter(Objects::nonNull).toList();
+    final List<AnovaResult> anovaResults = calc.testAll(flist.getRows(), AbundanceMeasure.Height,
+        this::isCanceled);
+    if (isCanceled()) {
+      return;
+    }
+    processed = flist.getNumberOfRows();
 
-    anovaResults.forEach(r -> r.row().set(AnovaPValueType.class, r.pValue()));
+    final double[] qValues = SignificanceKernels.benjaminiHochberg(
+        anovaResults.stream().mapToDouble(AnovaResult::pValue).toArray());
+    for (int i = 0; i < qValues.length; i++) {
+      final AnovaResult result = anovaResults.get(i);
+      result.row().set(AnovaPValueType.class, result.pValue());
+      result.row().set(AnovaQValueType.class, qValues[i]);
+    }
     flist.getAppliedMethods()
         .add(new SimpleFeatureListAppliedMethod(AnovaModule.class, parameters, moduleCallDate));
 
@@ -30,15 +30,22 @@ import io.github.mzmine.datamodel.AbundanceMeasure;
 import io.github.mzmine.datamodel.RawDataFile;
 import io.github.mzmine.datamodel.features.FeatureListRow;
 import io.github.mzmine.main.MZmineCore;
+import io.github.mzmine.modules.dataanalysis.significance.AbundanceMatrix;
 import io.github.mzmine.modules.dataanalysis.significance.RowSignificanceTest;
+import io.github.mzmine.modules.dataanalysis.significance.SignificanceKernels;
 import io.github.mzmine.modules.dataanalysis.utils.StatisticUtils;
 import io.github.mzmine.modules.visualization.projectmetadata.MetadataColumnDoesNotExistException;
 import io.github.mzmine.modules.visualization.projectmetadata.table.MetadataTable;
 import io.github.mzmine.modules.visualization.projectmetadata.table.columns.MetadataColumn;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.function.BooleanSupplier;
 import java.util.logging.Logger;
+import java.util.stream.IntStream;
 import org.apache.commons.math3.stat.inference.TestUtils;
+import org.jetbrains.annotations.NotNull;
 
 public class AnovaTest implements RowSignificanceTest {
 
@@ -77,4 +84,59 @@ public class AnovaTest implements RowSignificanceTest {
 
     return null;
   }
+
+  /**
+   * Reads all abundances once and tests all rows in parallel. Rows with less than two values in any
+   * group are skipped.
+   */
+  @Override
+  public @NotNull List<AnovaResult> testAll(@NotNull List<FeatureListRow> rows,
+      @NotNull AbundanceMeasure abundanceMeasure, @NotNull BooleanSupplier isCanceled) {
+    if (groupedFiles.size() <= 2) {
+      return List.of();
+    }
+    final AbundanceMatrix matrix = AbundanceMatrix.ofGroups(rows, groupedFiles, abundanceMeasure);
+    final int numRows = matrix.getNumberOfRows();
+    final int[][] groups = groupedFiles.stream().map(matrix::columnIndices).toArray(int[][]::new);
+    final double[] pValues = new double[numRows];
+    final double[] fValues = new double[numRows];
+    SignificanceKernels.oneWayAnova(matrix.columns(), numRows, groups, pValues, fValues,
+        isCanceled);
+    if (isCanceled.getAsBoolean()) {
+      return List.of();
+    }
+
+    // p-values may also be NaN for tested rows, e.g., without variance
+    final int[][] counts = Arrays.stream(groups)
+        .map(group -> SignificanceKernels.countValues(matrix.columns(), numRows, group))
+        .toArray(int[][]::new);
+    final List<FeatureListRow> matrixRows = matrix.getRows();
+    final String title = groupingColumn.getTitle();
+    return IntStream.range(0, numRows)
+        .filter(i -> Arrays.stream(counts).allMatch(groupCounts -> groupCounts[i] > 1))
+        .mapToObj(i -> new AnovaResult(matrixRows.get(i), title, pValues[i], fValues[i]))
+        .toList();
+  }
+
+  @Override
+  public @NotNull List<List<RawDataFile>> groupedFiles() {
+    return groupedFiles;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    final AnovaTest that = (AnovaTest) o;
+    return Objects.equals(groupingColumn, that.groupingColumn);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hashCode(groupingColumn);
+  }
 }
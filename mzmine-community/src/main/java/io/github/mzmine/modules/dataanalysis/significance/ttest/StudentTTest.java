@@ -29,13 +29,17 @@ import io.github.mzmine.datamodel.AbundanceMeasure;
 import io.github.mzmine.datamodel.RawDataFile;
 import io.github.mzmine.datamodel.features.FeatureListRow;
 import io.github.mzmine.main.MZmineCore;
+import io.github.mzmine.modules.dataanalysis.significance.AbundanceMatrix;
 import io.github.mzmine.modules.dataanalysis.significance.RowSignificanceTest;
 import io.github.mzmine.modules.dataanalysis.significance.RowSignificanceTestResult;
+import io.github.mzmine.modules.dataanalysis.significance.SignificanceKernels;
 import io.github.mzmine.modules.dataanalysis.utils.StatisticUtils;
 import io.github.mzmine.modules.visualization.projectmetadata.table.MetadataTable;
 import io.github.mzmine.modules.visualization.projectmetadata.table.columns.MetadataColumn;
 import java.util.List;
 import java.util.Objects;
+import java.util.function.BooleanSupplier;
+import java.util.stream.IntStream;
 import org.apache.commons.math3.stat.inference.TestUtils;
 import org.jetbrains.annotations.NotNull;
 
@@ -79,16 +83,56 @@ public final class StudentTTest<T> implements RowSignificanceTest {
     return new TTestResult(row, column.getTitle(), p);
   }
 
+  /**
+   * Reads all abundances once and tests all rows in parallel. Rows are skipped under the same
+   * conditions as in {@link #test(FeatureListRow, AbundanceMeasure)}.
+   */
+  @Override
+  public @NotNull List<TTestResult> testAll(@NotNull List<FeatureListRow> rows,
+      @NotNull AbundanceMeasure abundanceMeasure, @NotNull BooleanSupplier isCanceled) {
+    final AbundanceMatrix matrix = AbundanceMatrix.ofGroups(rows, groupedFiles(),
+        abundanceMeasure);
+    final int numRows = matrix.getNumberOfRows();
+    final int[] groupA = matrix.columnIndices(groupedFilesA);
+    final int[] groupB = matrix.columnIndices(groupedFilesB);
+    final double[] pValues = switch (samplingConfig) {
+      case PAIRED ->
+          SignificanceKernels.pairedTTest(matrix.columns(), numRows, groupA, groupB, isCanceled);
+      case UNPAIRED ->
+          SignificanceKernels.welchTTest(matrix.columns(), numRows, groupA, groupB, isCanceled);
+    };
+    if (isCanceled.getAsBoolean()) {
+      return List.of();
+    }
+
+    // p-values may also be NaN for tested rows, e.g., without variance
+    final int[] countA = SignificanceKernels.countValues(matrix.columns(), numRows, groupA);
+    final int[] countB = SignificanceKernels.countValues(matrix.columns(), numRows, groupB);
+    final List<FeatureListRow> matrixRows = matrix.getRows();
+    final String title = column.getTitle();
+    return IntStream.range(0, numRows).filter(i -> checkConditions(countA[i], countB[i]))
+        .mapToObj(i -> new TTestResult(matrixRows.get(i), title, pValues[i])).toList();
+  }
+
+  @Override
+  public @NotNull List<List<RawDataFile>> groupedFiles() {
+    return List.of(groupedFilesA, groupedFilesB);
+  }
+
   private boolean checkConditions(double[] abundancesA, double[] abundancesB) {
+    return checkConditions(abundancesA.length, abundancesB.length);
+  }
+
+  private boolean checkConditions(int numA, int numB) {
     switch (samplingConfig) {
       case PAIRED -> {
         // only perform paired test if the number of abundances is equal (pre/post treatment)
-        if (abundancesA.length != abundancesB.length || abundancesA.length < 2) {
+        if (numA != numB || numA < 2) {
           return false;
         }
       }
       case UNPAIRED -> {
-        if (abundancesA.length < 2 || abundancesB.length < 2) {
+        if (numA < 2 || numB < 2) {
           return false;
         }
       }
@@ -27,6 +27,7 @@ package io.github.mzmine.modules.dataanalysis.volcanoplot;
 
 import io.github.mzmine.datamodel.AbundanceMeasure;
 import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.features.FeatureListRow;
 import io.github.mzmine.datamodel.features.compoundannotations.FeatureAnnotation;
 import io.github.mzmine.gui.chartbasics.simplechart.providers.PlotXYZDataProvider;
 import io.github.mzmine.gui.chartbasics.simplechart.providers.SimpleXYProvider;
@@ -36,6 +37,7 @@ import io.github.mzmine.modules.dataanalysis.significance.ttest.StudentTTest;
 import io.github.mzmine.modules.dataanalysis.utils.StatisticUtils;
 import io.github.mzmine.taskcontrol.TaskStatus;
 import io.github.mzmine.util.FeatureUtils;
+import it.unimi.dsi.fastutil.objects.Object2DoubleMap;
 import java.awt.Color;
 import java.text.DecimalFormat;
 import java.util.List;
@@ -48,14 +50,20 @@ public class VolcanoDatasetProvider extends SimpleXYProvider implements
 
   private final StudentTTest<?> test;
   private final List<RowSignificanceTestResult> results;
+  private final Object2DoubleMap<FeatureListRow> qValues;
 
   private final AbundanceMeasure abundanceMeasure;
 
+  /**
+   * @param qValues Benjamini-Hochberg q-values of the rows, corrected over all tested rows
+   */
   public VolcanoDatasetProvider(StudentTTest<?> test, List<RowSignificanceTestResult> results,
-      Color color, String key, AbundanceMeasure abundanceMeasure) {
+      Object2DoubleMap<FeatureListRow> qValues, Color color, String key,
+      AbundanceMeasure abundanceMeasure) {
     super(key, color, new DecimalFormat("0.0"), new DecimalFormat("0.0"));
     this.test = test;
     this.results = results;
+    this.qValues = qValues;
     this.abundanceMeasure = abundanceMeasure;
   }
 
@@ -75,7 +83,9 @@ public class VolcanoDatasetProvider extends SimpleXYProvider implements
     return String.format("""
         %s
         Fold change: %.3f
-        p-Value: %.3f""", name, Math.pow(2, getDomainValue(index)), result.pValue());
+        p-Value: %.3f
+        q-Value (FDR): %.3f""", name, Math.pow(2, getDomainValue(index)), result.pValue(),
+        qValues.getDouble(result.row()));
   }
 
   @Override
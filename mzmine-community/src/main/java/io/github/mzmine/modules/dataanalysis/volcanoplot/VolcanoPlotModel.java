@@ -30,6 +30,7 @@ import io.github.mzmine.datamodel.features.FeatureList;
 import io.github.mzmine.datamodel.features.FeatureListRow;
 import io.github.mzmine.gui.chartbasics.simplechart.datasets.DatasetAndRenderer;
 import io.github.mzmine.modules.dataanalysis.significance.RowSignificanceTest;
+import io.github.mzmine.modules.dataanalysis.significance.SignificanceResultCache;
 import java.util.Collection;
 import java.util.List;
 import javafx.beans.property.DoubleProperty;
@@ -51,6 +52,9 @@ public class VolcanoPlotModel {
 
   private final ObjectProperty<List<FeatureListRow>> selectedRows = new SimpleObjectProperty<>();
 
+  // only changing the p-value threshold does not repeat the tests
+  private final SignificanceResultCache significanceResults = new SignificanceResultCache();
+
   public List<FeatureList> getFlists() {
     return flists.get();
   }
@@ -122,5 +126,9 @@ public class VolcanoPlotModel {
   public void setSelectedRows(List<FeatureListRow> selectedRows) {
     this.selectedRows.set(selectedRows);
   }
+
+  public SignificanceResultCache getSignificanceResults() {
+    return significanceResults;
+  }
 }
 
@@ -41,10 +41,13 @@ import io.github.mzmine.javafx.mvci.FxUpdateTask;
 import io.github.mzmine.main.MZmineCore;
 import io.github.mzmine.modules.dataanalysis.significance.RowSignificanceTest;
 import io.github.mzmine.modules.dataanalysis.significance.RowSignificanceTestResult;
+import io.github.mzmine.modules.dataanalysis.significance.SignificanceKernels;
 import io.github.mzmine.modules.dataanalysis.significance.ttest.StudentTTest;
 import io.github.mzmine.taskcontrol.progress.TotalFinishedItemsProgress;
 import io.github.mzmine.util.DataTypeUtils;
 import io.github.mzmine.util.color.SimpleColorPalette;
+import it.unimi.dsi.fastutil.objects.Object2DoubleMap;
+import it.unimi.dsi.fastutil.objects.Object2DoubleOpenHashMap;
 import java.awt.Color;
 import java.util.ArrayList;
 import java.util.List;
@@ -91,17 +94,13 @@ class VolcanoPlotUpdateTask extends FxUpdateTask<VolcanoPlotModel> {
     if (!checkPreConditions()) {
       return;
     }
-    List<RowSignificanceTestResult> rowSignificanceTestResults = new ArrayList<>();
-    for (final FeatureListRow row : flist.getRows()) {
-      if (isCanceled()) {
-        return;
-      }
-      RowSignificanceTestResult result = test.test(row, abundanceMeasure);
-      if (result != null) {
-        rowSignificanceTestResults.add(result);
-      }
-      progress.getAndIncrement();
+    // cached, so that only changing the p-value threshold does not repeat the tests
+    final List<RowSignificanceTestResult> rowSignificanceTestResults = model.getSignificanceResults()
+        .getOrCompute(flist, test, abundanceMeasure, this::isCanceled);
+    if (isCanceled()) {
+      return;
     }
+    progress.setFinished(progress.getTotal().get());
 
     final Map<DataType<?>, List<RowSignificanceTestResult>> dataTypeMap = DataTypeUtils.groupByBestDataType(
         rowSignificanceTestResults, RowSignificanceTestResult::row, true,
@@ -111,6 +110,17 @@ class VolcanoPlotUpdateTask extends FxUpdateTask<VolcanoPlotModel> {
       return;
     }
 
+    // false discovery rate over all tested rows, shown with the p-values
+    final double[] qValues = SignificanceKernels.benjaminiHochberg(
+        rowSignificanceTestResults.stream().mapToDouble(RowSignificanceTestResult::pValue)
+            .toArray());
+    final Object2DoubleMap<FeatureListRow> rowQValues = new Object2DoubleOpenHashMap<>(
+        qValues.length);
+    rowQValues.defaultReturnValue(Double.NaN);
+    for (int i = 0; i < qValues.length; i++) {
+      rowQValues.put(rowSignificanceTestResults.get(i).row(), qValues[i]);
+    }
+
     final SimpleColorPalette colors = MZmineCore.getConfiguration().getDefaultColorPalette();
     temporaryDatasets = new ArrayList<>();
     colors.resetColorCounter(); // set color index to 0
@@ -121,12 +131,13 @@ class VolcanoPlotUpdateTask extends FxUpdateTask<VolcanoPlotModel> {
 
       final List<RowSignificanceTestResult> significantRows = testResults.stream()
           .filter(result -> result.pValue() < pValue).toList();
+      // also keeps rows with undefined p-values
       final List<RowSignificanceTestResult> insignificantRows = testResults.stream()
-          .filter(result -> result.pValue() >= pValue).toList();
+          .filter(result -> !(result.pValue() < pValue)).toList();
 
       final Color color = colors.getNextColorAWT();
       if (!significantRows.isEmpty()) {
-        var provider = new VolcanoDatasetProvider(ttest, significantRows, color,
+        var provider = new VolcanoDatasetProvider(ttest, significantRows, rowQValues, color,
             (type.equals(DataTypes.get(MissingValueType.class)) ? "unknown"
                 : type.getHeaderString()) + " (p < " + pValue + ")", abundanceMeasure);
         temporaryDatasets.add(
@@ -135,7 +146,7 @@ class VolcanoPlotUpdateTask extends FxUpdateTask<VolcanoPlotModel> {
       }
       // NOT significant
       if (!insignificantRows.isEmpty()) {
-        var provider = new VolcanoDatasetProvider(ttest, insignificantRows, color,
+        var provider = new VolcanoDatasetProvider(ttest, insignificantRows, rowQValues, color,
             (type.equals(DataTypes.get(MissingValueType.class)) ? "unknown"
                 : type.getHeaderString()) + " (p ≥ " + pValue + ")", abundanceMeasure);
         temporaryDatasets.add(
@@ -35,6 +35,7 @@ import io.github.mzmine.taskcontrol.Task;
 import java.util.Collection;
 import java.util.List;
 import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.function.BiConsumer;
 
 public interface FeatureRowAlignScorer {
 
@@ -48,6 +49,19 @@ public interface FeatureRowAlignScorer {
    */
   default Collection<RowVsRowScore> alignRowsOnBaseRows(final Task parentTask,
       List<List<FeatureListRow>> unalignedRows, List<FeatureListRow> baseRowsSorted) {
+    return scoreRowsInParallel(parentTask, unalignedRows,
+        (rowToAdd, scoresList) -> scoreRowAgainstBaseRows(baseRowsSorted, rowToAdd, scoresList));
+  }
+
+  /**
+   * Scores all unaligned rows in parallel
+   *
+   * @param scorer scores one row and adds the scores to the list
+   * @return all RowVsRowScores
+   */
+  static Collection<RowVsRowScore> scoreRowsInParallel(final Task parentTask,
+      List<List<FeatureListRow>> unalignedRows,
+      BiConsumer<FeatureListRow, ConcurrentLinkedDeque<RowVsRowScore>> scorer) {
 
     // key = a row to be aligned, value = all possible matches in the aligned fl and it's scores
     final ConcurrentLinkedDeque<RowVsRowScore> scoresList = new ConcurrentLinkedDeque<>();
@@ -58,7 +72,7 @@ public interface FeatureRowAlignScorer {
         return;
       }
 
-      scoreRowAgainstBaseRows(baseRowsSorted, rowToAdd, scoresList);
+      scorer.accept(rowToAdd, scoresList);
     });
     return scoresList;
   }
@@ -39,12 +39,15 @@ import io.github.mzmine.parameters.ParameterSet;
 import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
 import io.github.mzmine.parameters.parametertypes.tolerances.RTTolerance;
 import io.github.mzmine.parameters.parametertypes.tolerances.mobilitytolerance.MobilityTolerance;
+import io.github.mzmine.taskcontrol.Task;
 import io.github.mzmine.util.FeatureListUtils;
 import io.github.mzmine.util.FeatureUtils;
+import io.github.mzmine.util.collections.MzRtMobilityIndex;
 import io.github.mzmine.util.exceptions.MissingMassListException;
 import io.github.mzmine.util.scans.similarity.SpectralSimilarity;
 import io.github.mzmine.util.scans.similarity.SpectralSimilarityFunction;
 import io.github.mzmine.util.scans.similarity.SpectralSimilarityFunctions;
+import java.util.Collection;
 import java.util.List;
 import java.util.concurrent.ConcurrentLinkedDeque;
 
@@ -121,22 +124,69 @@ public class JoinRowAlignScorer implements FeatureRowAlignScorer {
     }
   }
 
+  @Override
+  public Collection<RowVsRowScore> alignRowsOnBaseRows(final Task parentTask,
+      final List<List<FeatureListRow>> unalignedRows, final List<FeatureListRow> baseRowsSorted) {
+    // index the base rows once for all rows that are scored against them
+    final MzRtMobilityIndex<FeatureListRow> baseRowIndex = FeatureListUtils.createRowIndex(
+        baseRowsSorted);
+    return FeatureRowAlignScorer.scoreRowsInParallel(parentTask, unalignedRows,
+        (rowToAdd, scoresList) -> scoreRowAgainstBaseRows(baseRowIndex, rowToAdd, scoresList));
+  }
+
+  /**
+   * Searches the m/z sorted base rows without an index. Use
+   * {@link #scoreRowAgainstBaseRows(MzRtMobilityIndex, FeatureListRow, ConcurrentLinkedDeque)} to
+   * score many rows against the same base rows.
+   */
   @Override
   public void scoreRowAgainstBaseRows(final List<FeatureListRow> baseRowsByMz,
       final FeatureListRow rowToAdd, final ConcurrentLinkedDeque<RowVsRowScore> scoresList) {
-    // ranges are build with prechecks - so if there is no mobility use Range.all() to deactivate the filter
-    final Range<Double> mzRange =
-        mzWeight > 0 ? mzTolerance.getToleranceRange(rowToAdd.getAverageMZ()) : Range.all();
-    final Range<Float> rtRange =
-        rtWeight > 0 ? rtTolerance.getToleranceRange(rowToAdd.getAverageRT()) : Range.all();
-    final Range<Float> mobilityRange =
-        compareMobility && mobilityWeight > 0 && rowToAdd.getAverageMobility() != null
-            ? mobilityTolerance.getToleranceRange(rowToAdd.getAverageMobility()) : Range.all();
+    final Range<Double> mzRange = getMzRange(rowToAdd);
+    final Range<Float> rtRange = getRtRange(rowToAdd);
+    final Range<Float> mobilityRange = getMobilityRange(rowToAdd);
 
     // find all rows in the aligned rows that might match
     List<FeatureListRow> candidatesInAligned = FeatureListUtils.getCandidatesWithinRanges(mzRange,
         rtRange, mobilityRange, baseRowsByMz, true);
+    scoreCandidates(rowToAdd, candidatesInAligned, mzRange, rtRange, mobilityRange, scoresList);
+  }
+
+  /**
+   * @param baseRows   index of the base rows, see {@link FeatureListUtils#createRowIndex}
+   * @param rowToAdd   row to score
+   * @param scoresList scores are added here
+   */
+  public void scoreRowAgainstBaseRows(final MzRtMobilityIndex<FeatureListRow> baseRows,
+      final FeatureListRow rowToAdd, final ConcurrentLinkedDeque<RowVsRowScore> scoresList) {
+    final Range<Double> mzRange = getMzRange(rowToAdd);
+    final Range<Float> rtRange = getRtRange(rowToAdd);
+    final Range<Float> mobilityRange = getMobilityRange(rowToAdd);
+
+    // find all rows in the aligned rows that might match
+    List<FeatureListRow> candidatesInAligned = baseRows.getWithinRanges(mzRange, rtRange,
+        mobilityRange);
+    scoreCandidates(rowToAdd, candidatesInAligned, mzRange, rtRange, mobilityRange, scoresList);
+  }
+
+  // ranges are build with prechecks - so if there is no mobility use Range.all() to deactivate the filter
+  private Range<Double> getMzRange(final FeatureListRow rowToAdd) {
+    return mzWeight > 0 ? mzTolerance.getToleranceRange(rowToAdd.getAverageMZ()) : Range.all();
+  }
+
+  private Range<Float> getRtRange(final FeatureListRow rowToAdd) {
+    return rtWeight > 0 ? rtTolerance.getToleranceRange(rowToAdd.getAverageRT()) : Range.all();
+  }
+
+  private Range<Float> getMobilityRange(final FeatureListRow rowToAdd) {
+    return compareMobility && mobilityWeight > 0 && rowToAdd.getAverageMobility() != null
+        ? mobilityTolerance.getToleranceRange(rowToAdd.getAverageMobility()) : Range.all();
+  }
 
+  private void scoreCandidates(final FeatureListRow rowToAdd,
+      final List<FeatureListRow> candidatesInAligned, final Range<Double> mzRange,
+      final Range<Float> rtRange, final Range<Float> mobilityRange,
+      final ConcurrentLinkedDeque<RowVsRowScore> scoresList) {
     if (candidatesInAligned.isEmpty()) {
       return;
     }
@@ -27,7 +27,6 @@ package io.github.mzmine.modules.dataprocessing.align_join;
 
 import static io.github.mzmine.datamodel.features.types.alignment.AlignmentScores.max;
 import static io.github.mzmine.datamodel.features.types.alignment.AlignmentScores.min;
-import static io.github.mzmine.util.FeatureListRowSorter.MZ_ASCENDING;
 
 import com.google.common.collect.Range;
 import io.github.mzmine.datamodel.RawDataFile;
@@ -38,10 +37,10 @@ import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
 import io.github.mzmine.parameters.parametertypes.tolerances.RTTolerance;
 import io.github.mzmine.parameters.parametertypes.tolerances.mobilitytolerance.MobilityTolerance;
 import io.github.mzmine.util.FeatureListUtils;
+import io.github.mzmine.util.collections.MzRtMobilityIndex;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import javafx.collections.transformation.SortedList;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -51,7 +50,7 @@ import org.jetbrains.annotations.Nullable;
 public class RowAlignmentScoreCalculator {
 
 
-  private final Map<RawDataFile, SortedList<FeatureListRow>> originalRowsMap;
+  private final Map<RawDataFile, MzRtMobilityIndex<FeatureListRow>> originalRowsMap;
   private final MZTolerance mzTol;
   private final RTTolerance rtTol;
   private final MobilityTolerance mobTol;
@@ -78,7 +77,8 @@ public class RowAlignmentScoreCalculator {
     this.rtWeight = rtWeight;
     this.mobilityWeight = mobilityWeight;
     for (FeatureList flist : originalFeatureLists) {
-      originalRowsMap.put(flist.getRawDataFile(0), flist.getRows().sorted(MZ_ASCENDING));
+      originalRowsMap.put(flist.getRawDataFile(0),
+          FeatureListUtils.createRowIndex(flist.getRows()));
     }
     totalSamples = originalRowsMap.size();
   }
@@ -112,14 +112,13 @@ public class RowAlignmentScoreCalculator {
     int sumExtra = 0;
     for (var entry : originalRowsMap.entrySet()) {
       RawDataFile raw = entry.getKey();
-      SortedList<FeatureListRow> originals = entry.getValue();
+      MzRtMobilityIndex<FeatureListRow> originals = entry.getValue();
 
       // result is the number of possible features for this raw data file
-      List<FeatureListRow> matchedRows = FeatureListUtils.getCandidatesWithinRanges(mzRange,
-          rtRange, mobilityRange, originals, true);
+      int matchedRows = originals.countWithinRanges(mzRange, rtRange, mobilityRange);
       var feature = alignedRow.getFeature(raw);
       // if the row has a feature, remove 1 and then add to the total
-      sumExtra += Math.max(0, matchedRows.size() - (feature != null ? 1 : 0));
+      sumExtra += Math.max(0, matchedRows - (feature != null ? 1 : 0));
 
       if (feature != null) {
         testedAlignedFeatures++;
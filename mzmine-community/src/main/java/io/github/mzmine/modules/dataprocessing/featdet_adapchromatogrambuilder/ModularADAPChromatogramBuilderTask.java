@@ -27,8 +27,6 @@ package io.github.mzmine.modules.dataprocessing.featdet_adapchromatogrambuilder;
 
 
 import com.google.common.collect.Range;
-import com.google.common.collect.RangeMap;
-import com.google.common.collect.TreeRangeMap;
 import io.github.mzmine.datamodel.IMSRawDataFile;
 import io.github.mzmine.datamodel.MZmineProject;
 import io.github.mzmine.datamodel.MassSpectrum;
@@ -43,6 +41,7 @@ import io.github.mzmine.datamodel.features.ModularFeatureList;
 import io.github.mzmine.datamodel.features.ModularFeatureListRow;
 import io.github.mzmine.datamodel.features.SimpleFeatureListAppliedMethod;
 import io.github.mzmine.datamodel.features.types.FeatureShapeType;
+import io.github.mzmine.datamodel.impl.SimpleDataPoint;
 import io.github.mzmine.gui.DesktopService;
 import io.github.mzmine.modules.MZmineModule;
 import io.github.mzmine.modules.dataprocessing.featdet_imagebuilder.ImageBuilderModule;
@@ -52,18 +51,16 @@ import io.github.mzmine.parameters.parametertypes.selectors.ScanSelection;
 import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
 import io.github.mzmine.taskcontrol.AbstractTask;
 import io.github.mzmine.taskcontrol.TaskStatus;
-import io.github.mzmine.util.DataPointSorter;
 import io.github.mzmine.util.DataTypeUtils;
 import io.github.mzmine.util.FeatureConvertors;
 import io.github.mzmine.util.FeatureListUtils;
 import io.github.mzmine.util.MemoryMapStorage;
-import io.github.mzmine.util.SortingDirection;
-import io.github.mzmine.util.SortingProperty;
 import io.github.mzmine.util.exceptions.MissingMassListException;
+import it.unimi.dsi.fastutil.ints.IntArrays;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Map;
-import java.util.Map.Entry;
+import java.util.List;
 import static java.util.Objects.requireNonNullElse;
 import java.util.logging.Logger;
 import org.jetbrains.annotations.NotNull;
@@ -159,7 +156,6 @@ public class ModularADAPChromatogramBuilderTask extends AbstractTask {
     return dataFile;
   }
 
-  @SuppressWarnings("UnstableApiUsage")
   @Override
   public void run() {
     setStatus(TaskStatus.PROCESSING);
@@ -231,9 +227,8 @@ public class ModularADAPChromatogramBuilderTask extends AbstractTask {
     // add data point to chromatogrm or make new one
     // update mz avg and other stuff
     //
-
-    // map the mz tolerance to chromatograms
-    RangeMap<Double, ADAPChromatogram> rangeToChromMap = TreeRangeMap.create();
+    // all signals are kept in parallel primitive arrays and sorted by an index permutation.
+    // chromatograms are only created for the final candidates
 
     // make a list of all the data points
     final int totalDps = Arrays.stream(scans).map(s -> {
@@ -246,10 +241,13 @@ public class ModularADAPChromatogramBuilderTask extends AbstractTask {
     }).mapToInt(MassSpectrum::getNumberOfDataPoints).sum();
     int dpCounter = 0;
 
-    ExpandedDataPoint[] allMzValues = new ExpandedDataPoint[totalDps];
+    final double[] mzs = new double[totalDps];
+    final double[] intensities = new double[totalDps];
+    final int[] scanIndices = new int[totalDps];
 
     ScanDataAccess scanData = EfficientDataAccess.of(dataFile, ScanDataType.MASS_LIST,
         scanSelection);
+    final List<Scan> signalScans = new ArrayList<>(scanData.getNumberOfScans());
 
     progress = 0;
     double progressStep = 0.1 / scanData.getNumberOfScans();
@@ -277,25 +275,43 @@ public class ModularADAPChromatogramBuilderTask extends AbstractTask {
         return;
       }
 
+      final int scanIndex = signalScans.size();
+      signalScans.add(scan);
       int dps = scanData.getNumberOfDataPoints();
       for (int i = 0; i < dps; i++) {
-        ExpandedDataPoint curDatP = new ExpandedDataPoint(scanData.getMzValue(i),
-            scanData.getIntensityValue(i), scan);
-        allMzValues[dpCounter] = curDatP;
+        mzs[dpCounter] = scanData.getMzValue(i);
+        intensities[dpCounter] = scanData.getIntensityValue(i);
+        scanIndices[dpCounter] = scanIndex;
         dpCounter++;
       }
       progress += progressStep;
     }
 
-    // sort data points by intensity
-    Arrays.parallelSort(allMzValues,
-        new DataPointSorter(SortingProperty.Intensity, SortingDirection.Descending));
+    // sort data points by intensity (descending intensity and m/z, stable like a merge sort)
+    final int numSignals = dpCounter;
+    final int[] intensitySorted = new int[numSignals];
+    for (int i = 0; i < numSignals; i++) {
+      intensitySorted[i] = i;
+    }
+    IntArrays.parallelQuickSort(intensitySorted, (i, j) -> {
+      int result = Double.compare(intensities[j], intensities[i]);
+      if (result == 0) {
+        result = Double.compare(mzs[j], mzs[i]);
+      }
+      return result != 0 ? result : Integer.compare(i, j);
+    });
 
     // count starts at 1 since we already have added one with a single point.
     progress = 0.1;
-    progressStep = (allMzValues.length > 0) ? 0.45 / allMzValues.length : 0.0;
+    progressStep = (numSignals > 0) ? 0.45 / numSignals : 0.0;
 
-    for (ExpandedDataPoint mzFeature : allMzValues) {
+    // map the mz tolerance to chromatograms
+    final MzIntervalIndex rangeToChromIndex = new MzIntervalIndex();
+    // the chromatogram id for each signal or -1
+    final int[] chromatogramOfSignal = new int[numSignals];
+    Arrays.fill(chromatogramOfSignal, -1);
+
+    for (final int signal : intensitySorted) {
 
       progress += progressStep;
 
@@ -303,30 +319,48 @@ public class ModularADAPChromatogramBuilderTask extends AbstractTask {
         return;
       }
 
-      if (mzFeature == null || Double.isNaN(mzFeature.getMZ()) || Double.isNaN(
-          mzFeature.getIntensity())) {
+      final double mz = mzs[signal];
+      if (Double.isNaN(mz) || Double.isNaN(intensities[signal])) {
         continue;
       }
 
-      final Entry<Range<Double>, ADAPChromatogram> existing = rangeToChromMap.getEntry(
-          mzFeature.getMZ());
-      if (existing != null) {
+      final int existing = rangeToChromIndex.get(mz);
+      if (existing != -1) {
         // add data point to chromatogram
-        existing.getValue().addMzFeature(mzFeature.getScan(), mzFeature);
+        chromatogramOfSignal[signal] = existing;
       } else {
         // skip it entierly if the intensity is not high enough
-        if (mzFeature.getIntensity() < minHighestPoint) {
+        if (intensities[signal] < minHighestPoint) {
           continue;
         }
         // add a new chromatogram to the range map - limit ranges to avoid overlap
-        startNewChromatogramLimitMzRanges(rangeToChromMap, mzFeature);
+        chromatogramOfSignal[signal] = startNewChromatogramLimitMzRanges(rangeToChromIndex, mz);
+      }
+    }
+
+    // group signals by chromatogram and keep the intensity order within each chromatogram
+    final int[] chromatogramStart = new int[rangeToChromIndex.numIds() + 1];
+    for (final int chrom : chromatogramOfSignal) {
+      if (chrom != -1) {
+        chromatogramStart[chrom + 1]++;
+      }
+    }
+    for (int c = 0; c < rangeToChromIndex.numIds(); c++) {
+      chromatogramStart[c + 1] += chromatogramStart[c];
+    }
+    final int[] groupedSignals = new int[chromatogramStart[rangeToChromIndex.numIds()]];
+    final int[] insertPosition = Arrays.copyOf(chromatogramStart, rangeToChromIndex.numIds());
+    for (final int signal : intensitySorted) {
+      final int chrom = chromatogramOfSignal[signal];
+      if (chrom != -1) {
+        groupedSignals[insertPosition[chrom]++] = signal;
       }
     }
 
     // finish chromatograms sorted by m/z
-    final Map<Range<Double>, ADAPChromatogram> finalRangeMap = rangeToChromMap.asMapOfRanges();
+    final int[] finalChromatograms = rangeToChromIndex.getSortedIds();
 
-    int numChromatograms = finalRangeMap.size();
+    int numChromatograms = finalChromatograms.length;
     progressStep = numChromatograms > 0 ? 0.45 / numChromatograms : 0.0;
 
     // Create new feature list
@@ -337,13 +371,27 @@ public class ModularADAPChromatogramBuilderTask extends AbstractTask {
 
     int newFeatureID = 1;
     // add chromatograms that match criteria
-    for (ADAPChromatogram chromatogram : finalRangeMap.values()) {
+    for (final int chrom : finalChromatograms) {
       if (isCanceled()) {
         return;
       }
 
       progress += progressStep;
 
+      // there is at most one data point per scan - skip small chromatograms before creating them
+      final int start = chromatogramStart[chrom];
+      final int end = chromatogramStart[chrom + 1];
+      if (end - start < minimumTotalScans) {
+        continue;
+      }
+      // add signals in intensity order - the first signal per scan is used
+      final ADAPChromatogram chromatogram = new ADAPChromatogram();
+      for (int i = start; i < end; i++) {
+        final int signal = groupedSignals[i];
+        chromatogram.addMzFeature(signalScans.get(scanIndices[signal]),
+            new SimpleDataPoint(mzs[signal], intensities[signal]));
+      }
+
       // And remove chromatograms who dont have a certain number of continous points above the
       // IntensityThresh2 level.
       var dps = chromatogram.getNumberOfDataPoints();
@@ -390,47 +438,40 @@ public class ModularADAPChromatogramBuilderTask extends AbstractTask {
    * Starts a new chromatogram and limits its range so that it does not overlap with existing m/z
    * ranges
    *
-   * @param rangeToChromMap started chromatograms with their non overlapping m/z range
-   * @param mzFeature       current tested data point
+   * @param rangeToChromIndex started chromatograms with their non overlapping m/z range
+   * @param mz                m/z of the current tested data point
+   * @return the id of the new chromatogram or of the existing chromatogram that the data point
+   * was added to
    */
-  @SuppressWarnings("UnstableApiUsage")
-  private void startNewChromatogramLimitMzRanges(RangeMap<Double, ADAPChromatogram> rangeToChromMap,
-      ExpandedDataPoint mzFeature) {
+  private int startNewChromatogramLimitMzRanges(MzIntervalIndex rangeToChromIndex, double mz) {
     // start new chromatogram and create new range (subract overlapping existing ranges)
-    Range<Double> toleranceRange = mzTolerance.getToleranceRange(mzFeature.getMZ());
+    Range<Double> toleranceRange = mzTolerance.getToleranceRange(mz);
 
     // look +- mz tolerance to see if ther is a range near by.
     // If there is use the proper boundry of that range for the
     // new range to insure than NON OF THE RANGES OVERLAP.
-    final Entry<Range<Double>, ADAPChromatogram> minusRange = rangeToChromMap.getEntry(
-        toleranceRange.lowerEndpoint());
-    final Entry<Range<Double>, ADAPChromatogram> plusRange = rangeToChromMap.getEntry(
-        toleranceRange.upperEndpoint());
+    final int minusRange = rangeToChromIndex.get(toleranceRange.lowerEndpoint());
+    final int plusRange = rangeToChromIndex.get(toleranceRange.upperEndpoint());
 
     // If both of the above ranges are null then we make the new range spaning the full
     // mz tolerance range.
     // If one or both are not null we need to properly modify the range of the new
     // chromatogram so that none of the points are overlapping.
-    Double toBeLowerBound =
-        minusRange == null ? toleranceRange.lowerEndpoint() : minusRange.getKey().upperEndpoint();
-    Double toBeUpperBound =
-        plusRange == null ? toleranceRange.upperEndpoint() : plusRange.getKey().lowerEndpoint();
+    double toBeLowerBound = minusRange == -1 ? toleranceRange.lowerEndpoint()
+        : rangeToChromIndex.getUpper(minusRange);
+    double toBeUpperBound = plusRange == -1 ? toleranceRange.upperEndpoint()
+        : rangeToChromIndex.getLower(plusRange);
 
     if (toBeLowerBound < toBeUpperBound) {
-      // use closed open so that every value may be captured by rangeMap
-      Range<Double> newRange = Range.closedOpen(toBeLowerBound, toBeUpperBound);
-      ADAPChromatogram newChrom = new ADAPChromatogram();
-      newChrom.addMzFeature(mzFeature.getScan(), mzFeature);
-
-      rangeToChromMap.put(newRange, newChrom);
-    } else if (toBeLowerBound.equals(toBeUpperBound) && plusRange != null) {
-      plusRange.getValue().addMzFeature(mzFeature.getScan(), mzFeature);
+      // use closed open so that every value may be captured by the index
+      return rangeToChromIndex.add(toBeLowerBound, toBeUpperBound);
+    } else if (toBeLowerBound == toBeUpperBound && plusRange != -1) {
+      return plusRange;
     } else {
       throw new IllegalStateException(
           String.format("Incorrect range [%f, %f] for m/z %f", toBeLowerBound, toBeUpperBound,
-              mzFeature.getMZ()));
+              mz));
     }
   }
 
 }
-
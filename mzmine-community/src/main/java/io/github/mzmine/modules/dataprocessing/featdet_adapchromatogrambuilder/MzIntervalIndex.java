@@ -0,0 +1,267 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package io.github.mzmine.modules.dataprocessing.featdet_adapchromatogrambuilder;
+
+import it.unimi.dsi.fastutil.doubles.DoubleArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import java.util.Arrays;
+
+/**
+ * Sorted, non-overlapping m/z intervals [lower, upper) on primitive arrays. Replaces a
+ * {@link com.google.common.collect.TreeRangeMap} of closedOpen ranges for the chromatogram builder
+ * without creating objects per interval. Intervals are kept sorted in blocks of limited size so
+ * that insertions only shift a small array.
+ * <p>
+ * Each added interval gets a new id (0, 1, 2, ...). Like {@link
+ * com.google.common.collect.RangeMap#put(com.google.common.collect.Range, Object)}, adding an
+ * interval removes all intervals that are covered by the new interval. Callers need to make sure
+ * that the new interval does not partially overlap existing intervals.
+ */
+final class MzIntervalIndex {
+
+  private static final int BLOCK_SIZE = 512;
+
+  // bounds of all intervals by id, also of removed intervals
+  private final DoubleArrayList lowerById = new DoubleArrayList();
+  private final DoubleArrayList upperById = new DoubleArrayList();
+
+  // sorted blocks of intervals
+  private double[][] lowers = new double[8][];
+  private double[][] uppers = new double[8][];
+  private int[][] ids = new int[8][];
+  private int[] sizes = new int[8];
+  private int numBlocks = 0;
+  private int size = 0;
+
+  /**
+   * @return the id of the interval that contains mz or -1
+   */
+  int get(double mz) {
+    final int b = findBlock(mz);
+    if (b < 0) {
+      return -1;
+    }
+    // last interval with lower <= mz
+    final int i = firstIndexAbove(b, mz) - 1;
+    return mz < uppers[b][i] ? ids[b][i] : -1;
+  }
+
+  /**
+   * Adds a new interval and removes all intervals that are covered by [lower, upper)
+   *
+   * @return the id of the new interval
+   */
+  int add(double lower, double upper) {
+    final int id = lowerById.size();
+    lowerById.add(lower);
+    upperById.add(upper);
+
+    if (numBlocks == 0) {
+      addBlock(0);
+    }
+    int b = Math.max(findBlock(lower), 0);
+    int i = firstIndexNotBelow(b, lower);
+    // remove all covered intervals
+    while (b < numBlocks) {
+      if (i == sizes[b]) {
+        if (b + 1 < numBlocks && lowers[b + 1][0] < upper) {
+          b++;
+          i = 0;
+          continue;
+        }
+        break;
+      }
+      if (lowers[b][i] >= upper) {
+        break;
+      }
+      removeAt(b, i);
+      if (sizes[b] == 0 && numBlocks > 1) {
+        removeBlock(b);
+        i = 0;
+      }
+    }
+    if (b == numBlocks) {
+      b = numBlocks - 1;
+      i = sizes[b];
+    }
+    insertAt(b, i, lower, upper, id);
+    return id;
+  }
+
+  /**
+   * @return lower bound of the interval with id
+   */
+  double getLower(int id) {
+    return lowerById.getDouble(id);
+  }
+
+  /**
+   * @return upper bound (exclusive) of the interval with id
+   */
+  double getUpper(int id) {
+    return upperById.getDouble(id);
+  }
+
+  /**
+   * @return number of intervals in this index (without removed intervals)
+   */
+  int size() {
+    return size;
+  }
+
+  /**
+   * @return the total number of ids, including removed intervals
+   */
+  int numIds() {
+    return lowerById.size();
+  }
+
+  /**
+   * @return the ids of all intervals sorted by ascending m/z
+   */
+  int[] getSortedIds() {
+    IntArrayList result = new IntArrayList(size);
+    for (int b = 0; b < numBlocks; b++) {
+      result.addElements(result.size(), ids[b], 0, sizes[b]);
+    }
+    return result.toIntArray();
+  }
+
+  /**
+   * @return the last block with a first lower bound <= mz or -1
+   */
+  private int findBlock(double mz) {
+    int low = 0;
+    int high = numBlocks;
+    while (low < high) {
+      final int mid = (low + high) >>> 1;
+      if (sizes[mid] > 0 && lowers[mid][0] <= mz) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low - 1;
+  }
+
+  private int firstIndexAbove(int b, double mz) {
+    final double[] values = lowers[b];
+    int low = 0;
+    int high = sizes[b];
+    while (low < high) {
+      final int mid = (low + high) >>> 1;
+      if (values[mid] <= mz) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  private int firstIndexNotBelow(int b, double mz) {
+    final double[] values = lowers[b];
+    int low = 0;
+    int high = sizes[b];
+    while (low < high) {
+      final int mid = (low + high) >>> 1;
+      if (values[mid] < mz) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  private void insertAt(int b, int i, double lower, double upper, int id) {
+    if (sizes[b] == BLOCK_SIZE) {
+      // split full block
+      final int half = BLOCK_SIZE / 2;
+      addBlock(b + 1);
+      System.arraycopy(lowers[b], half, lowers[b + 1], 0, BLOCK_SIZE - half);
+      System.arraycopy(uppers[b], half, uppers[b + 1], 0, BLOCK_SIZE - half);
+      System.arraycopy(ids[b], half, ids[b + 1], 0, BLOCK_SIZE - half);
+      sizes[b + 1] = BLOCK_SIZE - half;
+      sizes[b] = half;
+      if (i > half) {
+        b++;
+        i -= half;
+      }
+    }
+    final int n = sizes[b];
+    System.arraycopy(lowers[b], i, lowers[b], i + 1, n - i);
+    System.arraycopy(uppers[b], i, uppers[b], i + 1, n - i);
+    System.arraycopy(ids[b], i, ids[b], i + 1, n - i);
+    lowers[b][i] = lower;
+    uppers[b][i] = upper;
+    ids[b][i] = id;
+    sizes[b]++;
+    size++;
+  }
+
+  private void removeAt(int b, int i) {
+    final int n = sizes[b];
+    System.arraycopy(lowers[b], i + 1, lowers[b], i, n - i - 1);
+    System.arraycopy(uppers[b], i + 1, uppers[b], i, n - i - 1);
+    System.arraycopy(ids[b], i + 1, ids[b], i, n - i - 1);
+    sizes[b]--;
+    size--;
+  }
+
+  private void addBlock(int b) {
+    if (numBlocks == sizes.length) {
+      final int capacity = sizes.length * 2;
+      lowers = Arrays.copyOf(lowers, capacity);
+      uppers = Arrays.copyOf(uppers, capacity);
+      ids = Arrays.copyOf(ids, capacity);
+      sizes = Arrays.copyOf(sizes, capacity);
+    }
+    shiftBlocks(b, b + 1, numBlocks - b);
+    lowers[b] = new double[BLOCK_SIZE];
+    uppers[b] = new double[BLOCK_SIZE];
+    ids[b] = new int[BLOCK_SIZE];
+    sizes[b] = 0;
+    numBlocks++;
+  }
+
+  private void removeBlock(int b) {
+    shiftBlocks(b + 1, b, numBlocks - b - 1);
+    numBlocks--;
+    lowers[numBlocks] = null;
+    uppers[numBlocks] = null;
+    ids[numBlocks] = null;
+    sizes[numBlocks] = 0;
+  }
+
+  private void shiftBlocks(int from, int to, int length) {
+    System.arraycopy(lowers, from, lowers, to, length);
+    System.arraycopy(uppers, from, uppers, to, length);
+    System.arraycopy(ids, from, ids, to, length);
+    System.arraycopy(sizes, from, sizes, to, length);
+  }
+}
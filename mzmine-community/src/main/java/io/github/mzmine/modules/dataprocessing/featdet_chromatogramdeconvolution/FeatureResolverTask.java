@@ -36,6 +36,7 @@ import io.github.mzmine.datamodel.featuredata.IonMobilogramTimeSeries;
 import io.github.mzmine.datamodel.featuredata.IonTimeSeries;
 import io.github.mzmine.datamodel.features.Feature;
 import io.github.mzmine.datamodel.features.FeatureList;
+import io.github.mzmine.datamodel.features.FeatureListRow;
 import io.github.mzmine.datamodel.features.ModularFeature;
 import io.github.mzmine.datamodel.features.ModularFeatureList;
 import io.github.mzmine.datamodel.features.ModularFeatureListRow;
@@ -50,6 +51,7 @@ import io.github.mzmine.datamodel.features.types.numbers.RTType;
 import io.github.mzmine.datamodel.features.types.otherdectectors.MrmTransitionListType;
 import io.github.mzmine.datamodel.otherdetectors.MrmTransition;
 import io.github.mzmine.datamodel.otherdetectors.MrmTransitionList;
+import io.github.mzmine.main.ConfigService;
 import io.github.mzmine.modules.dataprocessing.featdet_smoothing.SmoothingAlgorithm;
 import io.github.mzmine.modules.dataprocessing.filter_groupms2.GroupMS2Processor;
 import io.github.mzmine.modules.dataprocessing.filter_groupms2.GroupMS2SubParameters;
@@ -64,15 +66,19 @@ import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import org.jetbrains.annotations.NotNull;
 
 public class FeatureResolverTask extends AbstractTask {
 
   // Logger.
   private static final Logger logger = Logger.getLogger(FeatureResolverTask.class.getName());
+  // smaller feature lists are resolved on fewer threads
+  private static final int MIN_ROWS_PER_CHUNK = 500;
 
   // These types will not be copied to a new feature
   private final Set<DataType<?>> featureCopyExcludedTypes = DataTypes.getInstances().stream()
@@ -96,7 +102,7 @@ public class FeatureResolverTask extends AbstractTask {
   private final CenterFunction mzCenterFunction;
   private FeatureList newPeakList;
   // Counters.
-  private int processedRows;
+  private final AtomicInteger processedRows = new AtomicInteger(0);
   private int totalRows;
   private String errorMsg;
   private boolean setMSMSRange, setMSMSRT;
@@ -121,7 +127,6 @@ public class FeatureResolverTask extends AbstractTask {
     parameters = parameterSet;
     originalPeakList = list;
     newPeakList = null;
-    processedRows = 0;
     totalRows = 0;
     this.mzCenterFunction = mzCenterFunction;
   }
@@ -139,7 +144,7 @@ public class FeatureResolverTask extends AbstractTask {
     if (groupMS2Task != null) {
       return groupMS2Task.getFinishedPercentage();
     }
-    return totalRows == 0 ? 0.0 : processedRows / (double) totalRows;
+    return totalRows == 0 ? 0.0 : processedRows.get() / (double) totalRows;
   }
 
   @Override
@@ -163,6 +168,9 @@ public class FeatureResolverTask extends AbstractTask {
               (ModularFeatureList) originalPeakList) != null) {
             dimensionIndependentResolve((ModularFeatureList) originalPeakList);
           }
+          if (isCanceled()) {
+            return;
+          }
           // resolving finished
 
           // sort and reset IDs here to ahve the same sorting for every feature list
@@ -213,26 +221,87 @@ public class FeatureResolverTask extends AbstractTask {
       return;
     }
 
-    final RawDataFile dataFile = originalFeatureList.getRawDataFile(0);
     final ModularFeatureList resolvedFeatureList = createNewFeatureList(originalFeatureList);
 
-    final FeatureDataAccess access = EfficientDataAccess.of(originalFeatureList,
-        EfficientDataAccess.FeatureDataType.INCLUDE_ZEROS, dataFile);
+    // chromatograms are resolved in chunks on worker threads, each with its own data access and
+    // resolver. The chunks are merged in order so the result equals the sequential result.
+    final int numThreads = ConfigService.getConfiguration().getNumOfThreads();
+    final int numChunks = Math.max(1, Math.min(numThreads,
+        Math.ceilDiv(originalFeatureList.getNumberOfRows(), MIN_ROWS_PER_CHUNK)));
+    final List<ModularFeature> resolvedFeatures = resolveInChunks(originalFeatureList,
+        resolvedFeatureList, resolver, numChunks);
 
-    processedRows = 0;
-    totalRows = originalFeatureList.getNumberOfRows();
-    int peakId = 1;
+    if (isCanceled()) {
+      return;
+    }
 
+    int peakId = 1;
     int c = 0;
+    for (ModularFeature f : resolvedFeatures) {
+      final ModularFeatureListRow newRow = new ModularFeatureListRow(resolvedFeatureList, peakId++);
+      newRow.addFeature(f.getRawDataFile(), f);
+      resolvedFeatureList.addRow(newRow);
+      if (f.getFeatureData().getSpectra().size() <= 3) {
+        c++;
+      }
+    }
+    logger.info(c + "/" + resolvedFeatureList.getNumberOfRows()
+        + " have less than 4 scans (frames for IMS data)");
+    //    QualityParameters.calculateAndSetModularQualityParameters(resolvedFeatureList);
+
+    resolvedFeatureList.addDescriptionOfAppliedTask(
+        new SimpleFeatureListAppliedMethod(resolver.getModuleClass(), parameters,
+            getModuleCallDate()));
+
+    newPeakList = resolvedFeatureList;
+  }
+
+  /**
+   * Splits the rows into contiguous chunks and resolves them in parallel. The first chunk uses the
+   * given resolver, all other chunks create their own resolver as resolvers keep buffers.
+   *
+   * @param numChunks the number of chunks, 1 resolves all rows sequentially
+   * @return the resolved features in the order of the rows of the original feature list
+   */
+  List<ModularFeature> resolveInChunks(ModularFeatureList originalFeatureList,
+      ModularFeatureList resolvedFeatureList, Resolver resolver, int numChunks) {
+    final List<FeatureListRow> rows = originalFeatureList.getRows();
+    processedRows.set(0);
+    totalRows = rows.size();
+    final int chunkSize = Math.max(1, Math.ceilDiv(totalRows, numChunks));
+    final int usedChunks = Math.max(1, Math.ceilDiv(totalRows, chunkSize));
+
+    return IntStream.range(0, usedChunks).parallel().mapToObj(chunk -> {
+      final List<FeatureListRow> chunkRows = rows.subList(Math.min(totalRows, chunk * chunkSize),
+          Math.min(totalRows, (chunk + 1) * chunkSize));
+      final Resolver chunkResolver = chunk == 0 ? resolver
+          : ((GeneralResolverParameters) parameters).getResolver(parameters, originalFeatureList);
+      return resolveChunk(originalFeatureList, resolvedFeatureList, chunkRows, chunkResolver);
+    }).flatMap(List::stream).toList();
+  }
 
+  /**
+   * Resolves the chromatograms of a chunk of rows. Creates its own data access, so multiple chunks
+   * can be resolved in parallel, each with a different resolver instance.
+   *
+   * @return the resolved features in the order of the rows
+   */
+  private List<ModularFeature> resolveChunk(ModularFeatureList originalFeatureList,
+      ModularFeatureList resolvedFeatureList, List<FeatureListRow> chunkRows, Resolver resolver) {
+    final RawDataFile dataFile = originalFeatureList.getRawDataFile(0);
+    final FeatureDataAccess access = EfficientDataAccess.of(originalFeatureList,
+        EfficientDataAccess.FeatureDataType.INCLUDE_ZEROS, dataFile, chunkRows);
+
+    final List<ModularFeature> resolvedFeatures = new ArrayList<>();
     while (access.hasNextFeature()) {
+      if (isCanceled()) {
+        return resolvedFeatures;
+      }
       final ModularFeature originalFeature = (ModularFeature) access.nextFeature();
       final List<IonTimeSeries<? extends Scan>> resolvedSeries = resolver.resolve(access,
           getMemoryMapStorage());
 
       for (IonTimeSeries<? extends Scan> resolved : resolvedSeries) {
-        final ModularFeatureListRow newRow = new ModularFeatureListRow(resolvedFeatureList,
-            peakId++);
         final ModularFeature f = new ModularFeature(resolvedFeatureList,
             originalFeature.getRawDataFile(), originalFeature.getFeatureStatus());
         DataTypeUtils.copyAllBut(originalFeature, f, featureCopyExcludedTypes);
@@ -240,24 +309,11 @@ public class FeatureResolverTask extends AbstractTask {
         f.set(FeatureDataType.class, resolved);
         FeatureDataUtils.recalculateIonSeriesDependingTypes(f);
 //        handleMrmTraces(f);
-
-        newRow.addFeature(originalFeature.getRawDataFile(), f);
-        resolvedFeatureList.addRow(newRow);
-        if (resolved.getSpectra().size() <= 3) {
-          c++;
-        }
+        resolvedFeatures.add(f);
       }
-      processedRows++;
+      processedRows.incrementAndGet();
     }
-    logger.info(c + "/" + resolvedFeatureList.getNumberOfRows()
-        + " have less than 4 scans (frames for IMS data)");
-    //    QualityParameters.calculateAndSetModularQualityParameters(resolvedFeatureList);
-
-    resolvedFeatureList.addDescriptionOfAppliedTask(
-        new SimpleFeatureListAppliedMethod(resolver.getModuleClass(), parameters,
-            getModuleCallDate()));
-
-    newPeakList = resolvedFeatureList;
+    return resolvedFeatures;
   }
 
   /**
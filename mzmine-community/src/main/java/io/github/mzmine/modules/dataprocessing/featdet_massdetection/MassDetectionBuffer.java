@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2004-2024 The mzmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataprocessing.featdet_massdetection;
+
+import java.util.Arrays;
+
+/**
+ * Caller owned output buffers for
+ * {@link MassDetector#getMassValues(io.github.mzmine.datamodel.MassSpectrum, MassDetectionBuffer)}.
+ * Detected masses are appended so that the results of multiple spectra can be packed into the same
+ * buffer and reused for the next spectra. Buffers only grow and are never shrunk.
+ */
+public final class MassDetectionBuffer {
+
+  private double[] mzs;
+  private double[] intensities;
+  private int size;
+
+  public MassDetectionBuffer() {
+    this(1024);
+  }
+
+  public MassDetectionBuffer(int initialCapacity) {
+    mzs = new double[Math.max(initialCapacity, 16)];
+    intensities = new double[mzs.length];
+  }
+
+  /**
+   * Makes sure that additional values can be appended without resizing
+   */
+  public void ensureAdditionalCapacity(int additional) {
+    final int required = size + additional;
+    if (required > mzs.length) {
+      final int capacity = Math.max(required, mzs.length * 2);
+      mzs = Arrays.copyOf(mzs, capacity);
+      intensities = Arrays.copyOf(intensities, capacity);
+    }
+  }
+
+  public void add(double mz, double intensity) {
+    if (size == mzs.length) {
+      ensureAdditionalCapacity(1);
+    }
+    mzs[size] = mz;
+    intensities[size] = intensity;
+    size++;
+  }
+
+  /**
+   * Appends the first length values
+   */
+  public void addAll(double[] mzs, double[] intensities, int length) {
+    ensureAdditionalCapacity(length);
+    System.arraycopy(mzs, 0, this.mzs, size, length);
+    System.arraycopy(intensities, 0, this.intensities, size, length);
+    size += length;
+  }
+
+  /**
+   * @return number of values in this buffer
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Removes all values
+   */
+  public void clear() {
+    size = 0;
+  }
+
+  /**
+   * Removes all values after the first size values
+   */
+  public void truncate(int size) {
+    if (size < 0 || size > this.size) {
+      throw new IndexOutOfBoundsException(size);
+    }
+    this.size = size;
+  }
+
+  /**
+   * The backing array, valid up to {@link #size()} and only until the next value is added
+   */
+  public double[] mzs() {
+    return mzs;
+  }
+
+  /**
+   * The backing array, valid up to {@link #size()} and only until the next value is added
+   */
+  public double[] intensities() {
+    return intensities;
+  }
+}
@@ -29,34 +29,69 @@ import io.github.mzmine.datamodel.RawDataFile;
 import io.github.mzmine.datamodel.Scan;
 import io.github.mzmine.datamodel.data_access.EfficientDataAccess;
 import io.github.mzmine.datamodel.data_access.ScanDataAccess;
+import io.github.mzmine.datamodel.featuredata.impl.StorageUtils;
 import io.github.mzmine.datamodel.features.SimpleFeatureListAppliedMethod;
+import io.github.mzmine.datamodel.impl.MobilityScanStorage;
 import io.github.mzmine.datamodel.impl.SimpleFrame;
 import io.github.mzmine.datamodel.impl.masslist.SimpleMassList;
+import io.github.mzmine.main.ConfigService;
+import io.github.mzmine.modules.io.import_rawdata_all.spectral_processor.SimpleSpectralArrays;
 import io.github.mzmine.parameters.ParameterSet;
 import io.github.mzmine.parameters.parametertypes.selectors.ScanSelection;
 import io.github.mzmine.taskcontrol.AbstractTask;
 import io.github.mzmine.taskcontrol.TaskStatus;
+import io.github.mzmine.util.DataPointSorter;
+import io.github.mzmine.util.DataPointUtils;
 import io.github.mzmine.util.MemoryMapStorage;
+import io.github.mzmine.util.concurrent.OrderedCommitPipeline;
 import io.github.mzmine.util.scans.ScanUtils;
+import java.lang.foreign.MemorySegment;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
+/**
+ * Detects masses in chunks of scans in parallel. Each worker uses its own {@link ScanDataAccess}
+ * cursor and {@link MassDetectionBuffer}. The chunks are committed in scan order by the task
+ * thread, so the mass lists are memory mapped in the same order for any number of threads. The
+ * workers are shared with all other running pipelines, see {@link OrderedCommitPipeline}.
+ */
 public class MassDetectionTask extends AbstractTask {
 
   private static final Logger logger = Logger.getLogger(MassDetectionTask.class.getName());
+  /**
+   * Maximum number of scans per chunk. Chunks are closed early after frames with mobility scans
+   */
+  static final int CHUNK_SIZE = 128;
+
   private final RawDataFile dataFile;
   private final ScanSelection scanSelection;
   private final SelectedScanTypes scanTypes;
   private final Boolean denormalizeMSnScans;
   private final ParameterSet parameters;
   private final MassDetector detector;
+  private final int numThreads;
   private int processedScans = 0, totalScans = 0;
 
   public MassDetectionTask(RawDataFile dataFile, ParameterSet parameters,
       MemoryMapStorage storageMemoryMap, @NotNull Instant moduleCallDate) {
+    this(dataFile, parameters, storageMemoryMap, moduleCallDate,
+        ConfigService.getConfiguration().getNumOfThreads());
+  }
+
+  /**
+   * @param numThreads number of worker threads, 1 detects all scans in the task thread
+   */
+  MassDetectionTask(RawDataFile dataFile, ParameterSet parameters,
+      MemoryMapStorage storageMemoryMap, @NotNull Instant moduleCallDate, int numThreads) {
     super(storageMemoryMap, moduleCallDate);
+    this.numThreads = numThreads;
 
     this.dataFile = dataFile;
 
@@ -93,61 +128,190 @@ public class MassDetectionTask extends AbstractTask {
 
       logger.info("Started mass detector on " + dataFile);
 
-      // uses only a single array for each (mz and intensity) to loop over all scans
-      ScanDataAccess data = EfficientDataAccess.of(dataFile, EfficientDataAccess.ScanDataType.RAW,
-          scanSelection);
-      totalScans = data.getNumberOfScans();
+      final List<Scan> scans = scanSelection.getMatchingScans(dataFile.getScans());
+      totalScans = scans.size();
 
-      // all scans
-      while (data.hasNextScan()) {
-        if (isCanceled()) {
-          return;
+      // workers are reused by the next chunks, each has its own data access cursor and buffers
+      final ConcurrentLinkedQueue<ChunkWorker> workers = new ConcurrentLinkedQueue<>();
+      try (var pipeline = new OrderedCommitPipeline(numThreads, numThreads * 2)) {
+        int from = 0;
+        while (from < scans.size()) {
+          if (isCanceled()) {
+            return;
+          }
+
+          final int chunkStart = from;
+          final int chunkEnd = findChunkEnd(scans, chunkStart, scanTypes);
+          pipeline.submit(() -> {
+            ChunkWorker worker = workers.poll();
+            if (worker == null) {
+              worker = new ChunkWorker(scans);
+            }
+            try {
+              return worker.detectChunk(chunkStart, chunkEnd);
+            } finally {
+              workers.add(worker);
+            }
+          });
+          from = chunkEnd;
         }
+        pipeline.finish();
+      }
+
+      if (isCanceled()) {
+        return;
+      }
 
-        Scan scan = data.nextScan();
-        assert scan != null;
+      dataFile.getAppliedMethods().add(
+          new SimpleFeatureListAppliedMethod(MassDetectionModule.class, parameters,
+              getModuleCallDate()));
+    } catch (Exception e) {
+      logger.log(Level.WARNING, "Error during mass detection, " + e.getMessage(), e);
+      setErrorMessage(e.getMessage());
+      setStatus(TaskStatus.ERROR);
+      return;
+    }
+
+    setStatus(TaskStatus.FINISHED);
+
+    logger.info("Finished mass detector on " + dataFile);
+  }
+
+  /**
+   * Frames with mobility scans are much larger than other scans and close a chunk
+   *
+   * @return the end index (exclusive) of the chunk
+   */
+  static int findChunkEnd(@NotNull List<Scan> scans, int from,
+      @NotNull SelectedScanTypes scanTypes) {
+    final int maxEnd = Math.min(scans.size(), from + CHUNK_SIZE);
+    for (int i = from; i < maxEnd; i++) {
+      if (isMobilityDetection(scans.get(i), scanTypes)) {
+        return i + 1;
+      }
+    }
+    return maxEnd;
+  }
+
+  private static boolean isMobilityDetection(Scan scan, @NotNull SelectedScanTypes scanTypes) {
+    return scan instanceof SimpleFrame && (scanTypes == SelectedScanTypes.MOBLITY_SCANS
+                                           || scanTypes == SelectedScanTypes.SCANS);
+  }
 
-        double[][] mzPeaks;
+  /**
+   * Detects the masses of a chunk of scans in a worker thread and packs them into one array each
+   * for m/z and intensity values.
+   */
+  private final class ChunkWorker {
+
+    private final ScanDataAccess data;
+    private final MassDetectionBuffer buffer = new MassDetectionBuffer();
+    private final MassDetectionBuffer mobilityBuffer = new MassDetectionBuffer();
+    private final List<Scan> scans;
+
+    private ChunkWorker(@NotNull List<Scan> scans) {
+      this.scans = scans;
+      // uses only a single array for each (mz and intensity) to loop over all scans
+      data = EfficientDataAccess.of(dataFile, EfficientDataAccess.ScanDataType.RAW, scans);
+    }
+
+    /**
+     * @return the commit action that adds the mass lists in the task thread
+     */
+    @Nullable
+    private Runnable detectChunk(int from, int to) {
+      if (isCanceled()) {
+        return null;
+      }
+
+      buffer.clear();
+      final int numScans = to - from;
+      final int[] offsets = new int[numScans + 1];
+      final boolean[] detected = new boolean[numScans];
+      final List<Runnable> mobilityCommits = new ArrayList<>(1);
+
+      for (int i = 0; i < numScans; i++) {
+        final Scan scan = scans.get(from + i);
         if (scanTypes.applyTo(scan)) {
+          data.jumpToIndex(from + i);
           // run mass detection on data object
-          // [mzs, intensities]
-          mzPeaks = detector.getMassValues(data);
+          detector.getMassValues(data, buffer);
+          detected[i] = true;
 
           // denormalize scan intensities if injection time of trapped instrument was used.
           // this is only done for MS2 because absolute intensities do not matter there
           // MS1 needs to be normalized by injection time, which is already done during data acquisition
           if (denormalizeMSnScans && scan.getMSLevel() > 1) {
-            ScanUtils.denormalizeIntensitiesMultiplyByInjectTime(mzPeaks[1],
-                scan.getInjectionTime());
+            ScanUtils.denormalizeIntensitiesMultiplyByInjectTime(buffer.intensities(), offsets[i],
+                buffer.size(), scan.getInjectionTime());
           }
-
-          // add mass list to scans and frames
-          scan.addMassList(new SimpleMassList(getMemoryMapStorage(), mzPeaks[0], mzPeaks[1]));
+          ensureSortedByMz(offsets[i], buffer.size());
         }
+        offsets[i + 1] = buffer.size();
 
-        if (scan instanceof SimpleFrame frame && (scanTypes == SelectedScanTypes.MOBLITY_SCANS
-                                                  || scanTypes == SelectedScanTypes.SCANS)) {
+        if (isMobilityDetection(scan, scanTypes)) {
           // for ion mobility, detect subscans, too
-          frame.getMobilityScanStorage()
-              .generateAndAddMobilityScanMassLists(getMemoryMapStorage(), detector,
-                  denormalizeMSnScans);
+          mobilityCommits.add(detectMobilityScans(((SimpleFrame) scan).getMobilityScanStorage()));
         }
-
-        processedScans++;
       }
 
-      dataFile.getAppliedMethods().add(
-          new SimpleFeatureListAppliedMethod(MassDetectionModule.class, parameters,
-              getModuleCallDate()));
-    } catch (Exception e) {
-      logger.log(Level.WARNING, "Error during mass detection, " + e.getMessage(), e);
-      setErrorMessage(e.getMessage());
-      setStatus(TaskStatus.ERROR);
-      return;
+      final double[] mzs = Arrays.copyOf(buffer.mzs(), buffer.size());
+      final double[] intensities = Arrays.copyOf(buffer.intensities(), buffer.size());
+
+      return () -> {
+        final MemoryMapStorage storage = getMemoryMapStorage();
+        // one stored block per chunk, the mass lists are slices
+        final MemorySegment storedMzs = StorageUtils.storeValuesToDoubleBuffer(storage, mzs);
+        final MemorySegment storedIntensities = StorageUtils.storeValuesToDoubleBuffer(storage,
+            intensities);
+        for (int i = 0; i < numScans; i++) {
+          if (detected[i]) {
+            // add mass list to scans and frames
+            scans.get(from + i).addMassList(
+                new SimpleMassList(StorageUtils.sliceDoubles(storedMzs, offsets[i], offsets[i + 1]),
+                    StorageUtils.sliceDoubles(storedIntensities, offsets[i], offsets[i + 1])));
+          }
+        }
+        mobilityCommits.forEach(Runnable::run);
+        processedScans += numScans;
+      };
     }
 
-    setStatus(TaskStatus.FINISHED);
+    /**
+     * @return the commit action that sets the mobility scan mass lists in the task thread
+     */
+    private Runnable detectMobilityScans(@NotNull MobilityScanStorage mobilityScans) {
+      if (!detector.filtersActive()) {
+        // no mass detection, reuses the raw data
+        return () -> mobilityScans.generateAndAddMobilityScanMassLists(getMemoryMapStorage(),
+            detector, denormalizeMSnScans);
+      }
 
-    logger.info("Finished mass detector on " + dataFile);
+      mobilityBuffer.clear();
+      final int[] offsets = mobilityScans.detectMassLists(detector, denormalizeMSnScans,
+          mobilityBuffer);
+      final double[] mzs = Arrays.copyOf(mobilityBuffer.mzs(), mobilityBuffer.size());
+      final double[] intensities = Arrays.copyOf(mobilityBuffer.intensities(),
+          mobilityBuffer.size());
+      return () -> mobilityScans.setMassLists(getMemoryMapStorage(), mzs, intensities, offsets);
+    }
+
+    /**
+     * Mass lists are sorted by m/z. Only sorts the range in the buffer if it is unsorted.
+     */
+    private void ensureSortedByMz(int from, int to) {
+      final double[] mzs = buffer.mzs();
+      for (int i = from + 1; i < to; i++) {
+        if (mzs[i - 1] > mzs[i]) {
+          final SimpleSpectralArrays sorted = DataPointUtils.sort(
+              Arrays.copyOfRange(mzs, from, to),
+              Arrays.copyOfRange(buffer.intensities(), from, to),
+              DataPointSorter.DEFAULT_MZ_ASCENDING);
+          System.arraycopy(sorted.mzs(), 0, mzs, from, to - from);
+          System.arraycopy(sorted.intensities(), 0, buffer.intensities(), from, to - from);
+          return;
+        }
+      }
+    }
   }
 }
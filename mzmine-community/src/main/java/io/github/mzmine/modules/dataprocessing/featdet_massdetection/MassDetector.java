@@ -52,4 +52,19 @@ public interface MassDetector extends MZmineModule {
       final @NotNull MassSpectrumType type) {
     throw new UnsupportedOperationException("Method not implemented. Please implement me.");
   }
+
+  /**
+   * Detects masses in the given spectrum and appends them to the caller owned output buffer, which
+   * can be reused for many spectra. The default implementation copies the result of
+   * {@link #getMassValues(MassSpectrum)}, detectors should override this to avoid allocations.
+   *
+   * @param spectrum the spectrum, usually a reused data access or mobility scan
+   * @param output   the detected masses are appended to this buffer
+   * @return the number of appended masses
+   */
+  default int getMassValues(@NotNull MassSpectrum spectrum, @NotNull MassDetectionBuffer output) {
+    final double[][] mzIntensities = getMassValues(spectrum);
+    output.addAll(mzIntensities[0], mzIntensities[1], mzIntensities[0].length);
+    return mzIntensities[0].length;
+  }
 }
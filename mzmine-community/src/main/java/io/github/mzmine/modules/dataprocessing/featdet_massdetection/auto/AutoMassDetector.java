@@ -83,6 +83,15 @@ public class AutoMassDetector implements MassDetector {
     }
   }
 
+  @Override
+  public int getMassValues(@NotNull MassSpectrum spectrum, @NotNull MassDetectionBuffer output) {
+    if (spectrum.getSpectrumType() == MassSpectrumType.PROFILE) {
+      return exactMassDetector.getMassValues(spectrum, output);
+    } else {
+      return centroidDetector.getMassValues(spectrum, output);
+    }
+  }
+
   @Override
   public double[][] getMassValues(double[] mzs, double[] intensities,
       @NotNull MassSpectrumType type) {
@@ -27,6 +27,7 @@ package io.github.mzmine.modules.dataprocessing.featdet_massdetection.centroid;
 
 import io.github.mzmine.datamodel.MassSpectrum;
 import io.github.mzmine.datamodel.MassSpectrumType;
+import io.github.mzmine.modules.dataprocessing.featdet_massdetection.MassDetectionBuffer;
 import io.github.mzmine.modules.dataprocessing.featdet_massdetection.MassDetector;
 import io.github.mzmine.parameters.ParameterSet;
 import it.unimi.dsi.fastutil.doubles.DoubleArrayList;
@@ -112,6 +113,20 @@ public class CentroidMassDetector implements MassDetector {
     return new double[][]{mzs.toDoubleArray(), intensities.toDoubleArray()};
   }
 
+  @Override
+  public int getMassValues(@NotNull MassSpectrum spectrum, @NotNull MassDetectionBuffer output) {
+    final int points = spectrum.getNumberOfDataPoints();
+    output.ensureAdditionalCapacity(points);
+    final int start = output.size();
+    for (int i = 0; i < points; i++) {
+      final double intensity = spectrum.getIntensityValue(i);
+      if (intensity >= noiseLevel) {
+        output.add(spectrum.getMzValue(i), intensity);
+      }
+    }
+    return output.size() - start;
+  }
+
   @Override
   public @NotNull String getName() {
     return "Centroid";
@@ -27,6 +27,7 @@ package io.github.mzmine.modules.dataprocessing.featdet_massdetection.factor_of_
 
 import io.github.mzmine.datamodel.MassSpectrum;
 import io.github.mzmine.datamodel.MassSpectrumType;
+import io.github.mzmine.modules.dataprocessing.featdet_massdetection.MassDetectionBuffer;
 import io.github.mzmine.modules.dataprocessing.featdet_massdetection.MassDetector;
 import io.github.mzmine.modules.dataprocessing.featdet_massdetection.exactmass.ExactMassDetector;
 import io.github.mzmine.parameters.ParameterSet;
@@ -168,6 +169,26 @@ public class FactorOfLowestMassDetector implements MassDetector {
     return getMassValues(spectrum, noiseFactor);
   }
 
+  @Override
+  public int getMassValues(@NotNull MassSpectrum spectrum, @NotNull MassDetectionBuffer output) {
+    if (spectrum.getSpectrumType() == MassSpectrumType.PROFILE) {
+      // centroiding allocates anyway
+      return MassDetector.super.getMassValues(spectrum, output);
+    }
+
+    final double noiseLevel = minIntensity(spectrum) * noiseFactor;
+    final int points = spectrum.getNumberOfDataPoints();
+    output.ensureAdditionalCapacity(points);
+    final int start = output.size();
+    for (int i = 0; i < points; i++) {
+      final double intensity = spectrum.getIntensityValue(i);
+      if (intensity >= noiseLevel) {
+        output.add(spectrum.getMzValue(i), intensity);
+      }
+    }
+    return output.size() - start;
+  }
+
   @Override
   public @NotNull String getName() {
     return "Factor of lowest signal";
@@ -25,23 +25,22 @@
 
 package io.github.mzmine.modules.dataprocessing.featdet_massdetection.wavelet;
 
-import io.github.mzmine.datamodel.DataPoint;
 import io.github.mzmine.datamodel.MassSpectrum;
-import io.github.mzmine.datamodel.impl.SimpleDataPoint;
+import io.github.mzmine.modules.dataprocessing.featdet_massdetection.MassDetectionBuffer;
 import io.github.mzmine.modules.dataprocessing.featdet_massdetection.MassDetector;
 import io.github.mzmine.parameters.ParameterSet;
-import io.github.mzmine.util.DataPointSorter;
-import io.github.mzmine.util.SortingDirection;
-import io.github.mzmine.util.SortingProperty;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.TreeSet;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import java.util.Arrays;
 import org.jetbrains.annotations.NotNull;
 
 /**
  * This class implements the Continuous Wavelet Transform (CWT), Mexican Hat, over raw datapoints of
  * a certain spectrum. After get the spectrum in the wavelet's time domain, we use the local maxima
  * to detect possible peaks in the original raw datapoints.
+ * <p>
+ * The wavelet is only translated in one scale level, so the kernel is precomputed once per
+ * detector. The convolution runs over primitive arrays in tiles and the peaks are appended to a
+ * {@link MassDetectionBuffer} without creating data point objects.
  */
 public class WaveletMassDetector implements MassDetector {
 
@@ -52,10 +51,20 @@ public class WaveletMassDetector implements MassDetector {
   private static final double NPOINTS = 60000;
   private static final int WAVELET_ESL = -5;
   private static final int WAVELET_ESR = 5;
+  /**
+   * number of data points convolved together so that the output stays in the cache for all kernel
+   * values
+   */
+  private static final int TILE_SIZE = 2048;
 
   private final double noiseLevel;
   private final int scaleLevel;
   private final double waveletWindow;
+  /**
+   * wavelet values for each translation from -5 x scaleLevel to +5 x scaleLevel data points
+   */
+  private final double[] kernel;
+  private final double sqrtScaleLevel;
 
   /**
    * required to create a default instance via reflection
@@ -70,6 +79,8 @@ public class WaveletMassDetector implements MassDetector {
     this.noiseLevel = noiseLevel;
     this.scaleLevel = scaleLevel;
     this.waveletWindow = waveletWindow;
+    kernel = scaleLevel > 0 ? createKernel(waveletWindow, scaleLevel) : new double[0];
+    sqrtScaleLevel = Math.sqrt(scaleLevel);
   }
 
   @Override
@@ -87,30 +98,41 @@ public class WaveletMassDetector implements MassDetector {
 
   @Override
   public double[][] getMassValues(MassSpectrum scan) {
+    final MassDetectionBuffer buffer = new MassDetectionBuffer(
+        Math.max(16, scan.getNumberOfDataPoints() / 4));
+    final int size = getMassValues(scan, buffer);
+    return new double[][]{Arrays.copyOf(buffer.mzs(), size),
+        Arrays.copyOf(buffer.intensities(), size)};
+  }
 
-    DataPoint waveletDataPoints[] = performCWT(scan, waveletWindow, scaleLevel);
-
-    DataPoint detected[] = getMzPeaks(noiseLevel, scan, waveletDataPoints);
+  @Override
+  public int getMassValues(@NotNull MassSpectrum scan, @NotNull MassDetectionBuffer output) {
+    final int length = scan.getNumberOfDataPoints();
+    final int start = output.size();
+    if (length == 0) {
+      return 0;
+    }
 
-    // convert to double[][] TODO remove use of DataPoint
-    int size = detected.length;
-    double[] mzs = new double[size];
-    double[] intensities = new double[size];
-    for (int i = 0; i < size; i++) {
-      mzs[i] = detected[i].getMZ();
-      intensities[i] = detected[i].getIntensity();
+    // intensities with zero padding on both sides for the translations of the wavelet
+    final int offset = kernel.length / 2;
+    final double[] paddedIntensities = new double[length + kernel.length];
+    for (int i = 0; i < length; i++) {
+      paddedIntensities[offset + i] = scan.getIntensityValue(i);
     }
-    return new double[][]{mzs, intensities};
+
+    final double[] cwt = performCWT(paddedIntensities, length);
+    getMzPeaks(noiseLevel, scan, paddedIntensities, offset, cwt, output);
+
+    // peaks are usually sorted by m/z already
+    sortByMzAndRemoveDuplicates(output, start);
+    return output.size() - start;
   }
 
   /**
-   * Perform the CWT over raw data points in the selected scale level
-   *
-   * @param scan
+   * Pre calculate the values of the wavelet and map them to the translations in the selected scale
+   * level
    */
-  private SimpleDataPoint[] performCWT(MassSpectrum scan, double waveletWindow, int scaleLevel) {
-    int length = scan.getNumberOfDataPoints();
-    SimpleDataPoint[] cwtDataPoints = new SimpleDataPoint[length];
+  private static double[] createKernel(double waveletWindow, int scaleLevel) {
     double wstep = ((WAVELET_ESR - WAVELET_ESL) / NPOINTS);
     double[] W = new double[(int) NPOINTS];
 
@@ -127,40 +149,53 @@ public class WaveletMassDetector implements MassDetector {
     int d = (int) NPOINTS / (WAVELET_ESR - WAVELET_ESL);
     int a_esl = scaleLevel * WAVELET_ESL;
     int a_esr = scaleLevel * WAVELET_ESR;
-    double sqrtScaleLevel = Math.sqrt(scaleLevel);
-    for (int dx = 0; dx < length; dx++) {
-
-      /* Compute wavelet boundaries */
-      int t1 = a_esl + dx;
-      if (t1 < 0) {
-        t1 = 0;
+    final double[] kernel = new double[a_esr - a_esl + 1];
+    for (int translation = a_esl; translation <= a_esr; translation++) {
+      int ind = (int) (NPOINTS / 2) - ((d * translation / scaleLevel) * (-1));
+      if (ind < 0) {
+        ind = 0;
       }
-      int t2 = a_esr + dx;
-      if (t2 >= length) {
-        t2 = (length - 1);
+      if (ind >= NPOINTS) {
+        ind = (int) NPOINTS - 1;
       }
+      kernel[translation - a_esl] = W[ind];
+    }
+    return kernel;
+  }
 
+  /**
+   * Perform the CWT over raw data points in the selected scale level. The zero padding adds zeros
+   * to the sum of each data point, so the result is the same as with the wavelet cut at the
+   * spectrum boundaries. Each data point is summed in the order of the kernel values, which keeps
+   * the results exact while the inner loop can be vectorized by the JIT.
+   *
+   * @param paddedIntensities intensities with kernel.length / 2 zeros on both sides
+   * @param length            number of data points
+   * @return the wavelet intensities of each data point, negative values are set to 0
+   */
+  private double[] performCWT(double[] paddedIntensities, int length) {
+    final double[] cwt = new double[length];
+
+    for (int from = 0; from < length; from += TILE_SIZE) {
+      final int to = Math.min(length, from + TILE_SIZE);
       /* Perform convolution */
-      double intensity = 0.0;
-      for (int i = t1; i <= t2; i++) {
-        int ind = (int) (NPOINTS / 2) - ((d * (i - dx) / scaleLevel) * (-1));
-        if (ind < 0) {
-          ind = 0;
-        }
-        if (ind >= NPOINTS) {
-          ind = (int) NPOINTS - 1;
+      for (int k = 0; k < kernel.length; k++) {
+        final double w = kernel[k];
+        for (int dx = from; dx < to; dx++) {
+          cwt[dx] += paddedIntensities[dx + k] * w;
         }
-        intensity += scan.getIntensityValue(i) * W[ind];
       }
-      intensity /= sqrtScaleLevel;
-      // Eliminate the negative part of the wavelet map
-      if (intensity < 0) {
-        intensity = 0;
+      for (int dx = from; dx < to; dx++) {
+        double intensity = cwt[dx] / sqrtScaleLevel;
+        // Eliminate the negative part of the wavelet map
+        if (intensity < 0) {
+          intensity = 0;
+        }
+        cwt[dx] = intensity;
       }
-      cwtDataPoints[dx] = new SimpleDataPoint(scan.getMzValue(dx), intensity);
     }
 
-    return cwtDataPoints;
+    return cwt;
   }
 
   /**
@@ -170,7 +205,7 @@ public class WaveletMassDetector implements MassDetector {
    * @param a Window Width of the wavelet
    * @param b Offset from the center of the peak
    */
-  private double cwtMEXHATreal(double x, double a, double b) {
+  private static double cwtMEXHATreal(double x, double a, double b) {
     /* c = 2 / ( sqrt(3) * pi^(1/4) ) */
     double c = 0.8673250705840776;
     double TINY = 1E-200;
@@ -185,21 +220,23 @@ public class WaveletMassDetector implements MassDetector {
   }
 
   /**
-   * This function searches for maximums from wavelet data points
+   * This function searches for maximums from wavelet data points. The intensity of a peak is the
+   * maximum raw intensity of all data points with positive wavelet intensity and the first data
+   * point after.
+   *
+   * @param paddedIntensities the raw intensities starting at offset
+   * @param cwt               the wavelet intensities
+   * @param output            the detected peaks are appended
    */
-  private DataPoint[] getMzPeaks(double noiseLevel, MassSpectrum scan,
-      DataPoint[] waveletDataPoints) {
-
-    TreeSet<DataPoint> mzPeaks = new TreeSet<>(
-        new DataPointSorter(SortingProperty.MZ, SortingDirection.Ascending));
+  private static void getMzPeaks(double noiseLevel, MassSpectrum scan, double[] paddedIntensities,
+      int offset, double[] cwt, MassDetectionBuffer output) {
 
-    List<DataPoint> rawDataPoints = new ArrayList<>();
     int peakMaxInd = 0;
-    int stopInd = waveletDataPoints.length - 1;
+    int stopInd = cwt.length - 1;
 
     for (int ind = 0; ind <= stopInd; ind++) {
 
-      while ((ind <= stopInd) && (waveletDataPoints[ind].getIntensity() == 0)) {
+      while ((ind <= stopInd) && (cwt[ind] == 0)) {
         ind++;
       }
       peakMaxInd = ind;
@@ -207,13 +244,16 @@ public class WaveletMassDetector implements MassDetector {
         break;
       }
 
+      double aproxIntensity = 0;
       // While peak is on
-      while ((ind <= stopInd) && (waveletDataPoints[ind].getIntensity() > 0)) {
+      while ((ind <= stopInd) && (cwt[ind] > 0)) {
         // Check if this is the maximum point of the peak
-        if (waveletDataPoints[ind].getIntensity() > waveletDataPoints[peakMaxInd].getIntensity()) {
+        if (cwt[ind] > cwt[peakMaxInd]) {
           peakMaxInd = ind;
         }
-        rawDataPoints.add(new SimpleDataPoint(scan.getMzValue(ind), scan.getIntensityValue(ind)));
+        if (paddedIntensities[offset + ind] > aproxIntensity) {
+          aproxIntensity = paddedIntensities[offset + ind];
+        }
         ind++;
       }
 
@@ -221,32 +261,58 @@ public class WaveletMassDetector implements MassDetector {
         break;
       }
 
-      rawDataPoints.add(new SimpleDataPoint(scan.getMzValue(ind), scan.getIntensityValue(ind)));
-
-      if (scan.getIntensityValue(peakMaxInd) > noiseLevel) {
-        SimpleDataPoint peakDataPoint = new SimpleDataPoint(scan.getMzValue(peakMaxInd),
-            calcAproxIntensity(rawDataPoints));
-
-        mzPeaks.add(peakDataPoint);
+      if (paddedIntensities[offset + ind] > aproxIntensity) {
+        aproxIntensity = paddedIntensities[offset + ind];
+      }
 
+      if (paddedIntensities[offset + peakMaxInd] > noiseLevel) {
+        output.add(scan.getMzValue(peakMaxInd), aproxIntensity);
       }
-      rawDataPoints.clear();
     }
-
-    return mzPeaks.toArray(new DataPoint[0]);
-
   }
 
-  private double calcAproxIntensity(List<DataPoint> rawDataPoints) {
-
-    double aproxIntensity = 0;
+  /**
+   * Peaks are sorted by m/z and intensity and equal peaks are only kept once
+   *
+   * @param start the first peak of this spectrum in the buffer
+   */
+  private static void sortByMzAndRemoveDuplicates(MassDetectionBuffer output, int start) {
+    final double[] mzs = output.mzs();
+    final double[] intensities = output.intensities();
+    final int end = output.size();
+    boolean sorted = true;
+    for (int i = start + 1; i < end && sorted; i++) {
+      sorted = compareMzIntensity(mzs, intensities, i - 1, i) < 0;
+    }
+    if (sorted) {
+      return;
+    }
 
-    for (DataPoint d : rawDataPoints) {
-      if (d.getIntensity() > aproxIntensity) {
-        aproxIntensity = d.getIntensity();
+    final int[] order = new int[end - start];
+    for (int i = 0; i < order.length; i++) {
+      order[i] = start + i;
+    }
+    IntArrays.mergeSort(order, (a, b) -> compareMzIntensity(mzs, intensities, a, b));
+    final double[] sortedMzs = new double[order.length];
+    final double[] sortedIntensities = new double[order.length];
+    int size = 0;
+    for (int index : order) {
+      if (size > 0 && Double.compare(sortedMzs[size - 1], mzs[index]) == 0
+          && Double.compare(sortedIntensities[size - 1], intensities[index]) == 0) {
+        continue;
       }
+      sortedMzs[size] = mzs[index];
+      sortedIntensities[size] = intensities[index];
+      size++;
     }
-    return aproxIntensity;
+
+    output.truncate(start);
+    output.addAll(sortedMzs, sortedIntensities, size);
+  }
+
+  private static int compareMzIntensity(double[] mzs, double[] intensities, int a, int b) {
+    final int result = Double.compare(mzs[a], mzs[b]);
+    return result != 0 ? result : Double.compare(intensities[a], intensities[b]);
   }
 
   @Override
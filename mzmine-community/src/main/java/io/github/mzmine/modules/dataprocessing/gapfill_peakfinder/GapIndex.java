@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2004-2023 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataprocessing.gapfill_peakfinder;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Consumer;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Sweep line over the retention time to schedule the scans of a raw data file to the gaps. Gaps are
+ * sorted by their RT start and enter the active set once the RT of the current scan reaches their
+ * RT range. They leave the active set when the RT passes their range. The active set is sorted by
+ * the lower m/z bound to find the gaps that overlap with the signals of a scan in a single sweep.
+ * <p>
+ * This way each scan only touches the gaps that overlap in RT instead of all gaps of the file.
+ * Scans should be offered in ascending RT order, the index is reset if the RT decreases.
+ */
+public class GapIndex<G extends Gap> {
+
+  private static final Comparator<Gap> mzLowerComparator = Comparator.comparingDouble(
+      g -> g.getMzRange().lowerEndpoint());
+
+  private final List<G> byRtStart;
+  // sorted by lower m/z
+  private final List<G> active = new ArrayList<>();
+  private final List<G> activeView = Collections.unmodifiableList(active);
+  private int nextGap = 0;
+  private float lastRt = Float.NEGATIVE_INFINITY;
+
+  public GapIndex(@NotNull Collection<? extends G> gaps) {
+    byRtStart = new ArrayList<>(gaps);
+    byRtStart.sort(Comparator.comparingDouble(g -> g.getRtRange().lowerEndpoint()));
+  }
+
+  /**
+   * Moves the sweep line to the retention time of the next scan
+   *
+   * @param rt retention time of the next scan
+   * @return all gaps with an RT range that contains rt, sorted by their lower m/z bound. This view
+   * changes with the next call.
+   */
+  public @NotNull List<G> advance(float rt) {
+    if (rt < lastRt) {
+      // scans are not sorted by RT - start over
+      active.clear();
+      nextGap = 0;
+    }
+    lastRt = rt;
+
+    active.removeIf(gap -> gap.getRtRange().upperEndpoint() < rt);
+
+    while (nextGap < byRtStart.size()) {
+      final G gap = byRtStart.get(nextGap);
+      if (gap.getRtRange().lowerEndpoint() > rt) {
+        break;
+      }
+      nextGap++;
+      if (gap.getRtRange().upperEndpoint() >= rt) {
+        insertByMz(gap);
+      }
+    }
+    return activeView;
+  }
+
+  private void insertByMz(G gap) {
+    int index = Collections.binarySearch(active, gap, mzLowerComparator);
+    if (index < 0) {
+      index = -index - 1;
+    }
+    active.add(index, gap);
+  }
+
+  /**
+   * Sweeps over the active gaps and the signals of a scan. Call after {@link #advance(float)}.
+   *
+   * @param sortedMzs m/z values sorted ascending
+   * @param numValues number of values in sortedMzs
+   * @param consumer  receives all active gaps with at least one m/z value within their m/z range
+   */
+  public void forEachMzOverlapping(@NotNull double[] sortedMzs, int numValues,
+      @NotNull Consumer<? super G> consumer) {
+    int mzIndex = 0;
+    for (G gap : active) {
+      final double lower = gap.getMzRange().lowerEndpoint();
+      // gaps are sorted by lower bound so the first candidate only moves forward
+      while (mzIndex < numValues && sortedMzs[mzIndex] < lower) {
+        mzIndex++;
+      }
+      if (mzIndex >= numValues) {
+        return;
+      }
+      if (sortedMzs[mzIndex] <= gap.getMzRange().upperEndpoint()) {
+        consumer.accept(gap);
+      }
+    }
+  }
+
+  /**
+   * @return number of gaps that overlap with the retention time of the last scan
+   */
+  public int getNumActive() {
+    return active.size();
+  }
+}
@@ -41,14 +41,17 @@ import io.github.mzmine.datamodel.features.FeatureListRow;
 import io.github.mzmine.datamodel.features.ModularFeatureList;
 import io.github.mzmine.datamodel.features.types.numbers.MobilityType;
 import io.github.mzmine.modules.dataprocessing.gapfill_peakfinder.Gap;
+import io.github.mzmine.modules.dataprocessing.gapfill_peakfinder.GapIndex;
 import io.github.mzmine.parameters.ParameterSet;
 import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
 import io.github.mzmine.parameters.parametertypes.tolerances.RTTolerance;
 import io.github.mzmine.taskcontrol.AbstractTask;
 import io.github.mzmine.taskcontrol.TaskPriority;
 import io.github.mzmine.taskcontrol.TaskStatus;
+import io.github.mzmine.util.exceptions.MissingMassListException;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
@@ -70,6 +73,8 @@ class MultiThreadPeakFinderTask extends AbstractTask {
   private final int taskIndex;
   private final int minDataPoints;
   private int totalScans;
+  // m/z values of all mobility scans in the current frame
+  private double[] frameMzs = new double[1024];
 
   MultiThreadPeakFinderTask(ModularFeatureList peakList, ModularFeatureList processedPeakList,
       ParameterSet parameters, int start, int endexcl, int taskIndex,
@@ -212,6 +217,7 @@ class MultiThreadPeakFinderTask extends AbstractTask {
       final MobilityScanDataAccess access = new MobilityScanDataAccess(imsFile,
           MobilityScanDataType.MASS_LIST, (List<Frame>) peakList.getSeletedScans(file));
       List<ImsGap> imsGaps = (List<ImsGap>) (List<? extends Gap>) gaps;
+      final GapIndex<ImsGap> gapIndex = new GapIndex<>(imsGaps);
 
       while (access.hasNextFrame()) {
         if (isCanceled()) {
@@ -219,9 +225,25 @@ class MultiThreadPeakFinderTask extends AbstractTask {
         }
 
         final Frame frame = access.nextFrame();
-        for (ImsGap gap : imsGaps) {
-          access.resetMobilityScan();
-          gap.offerNextScan(access);
+        final List<ImsGap> rtGaps = gapIndex.advance(frame.getRetentionTime());
+        if (rtGaps.isEmpty()) {
+          processedScans.incrementAndGet();
+          continue;
+        }
+
+        // ims gaps do not change if no signal in the frame matches the m/z range
+        final int numFrameMzs = collectSortedFrameMzs(access);
+        if (numFrameMzs == -1) {
+          // missing mass list is reported by each gap
+          for (ImsGap gap : rtGaps) {
+            access.resetMobilityScan();
+            gap.offerNextScan(access);
+          }
+        } else {
+          gapIndex.forEachMzOverlapping(frameMzs, numFrameMzs, gap -> {
+            access.resetMobilityScan();
+            gap.offerNextScan(access);
+          });
         }
         processedScans.incrementAndGet();
       }
@@ -231,13 +253,15 @@ class MultiThreadPeakFinderTask extends AbstractTask {
 
       final ScanDataAccess scanAccess = EfficientDataAccess.of(file, ScanDataType.MASS_LIST,
           peakList.getSeletedScans(file));
+      final GapIndex<Gap> gapIndex = new GapIndex<>(gaps);
       while (scanAccess.hasNextScan()) {
         if (isCanceled()) {
           return;
         }
         scanAccess.nextScan();
-        // Feed this scan to all gaps
-        for (Gap gap : gaps) {
+        // Feed this scan to all gaps within RT range. Gaps also add data points if there is no
+        // signal in their m/z range, so all of them need the scan
+        for (Gap gap : gapIndex.advance(scanAccess.getRetentionTime())) {
           gap.offerNextScan(scanAccess);
         }
 
@@ -245,4 +269,30 @@ class MultiThreadPeakFinderTask extends AbstractTask {
       }
     }
   }
+
+  /**
+   * Collects the m/z values of all mobility scans in the current frame into {@link #frameMzs}
+   *
+   * @return the number of sorted m/z values or -1 if a mass list is missing
+   */
+  private int collectSortedFrameMzs(MobilityScanDataAccess access) {
+    access.resetMobilityScan();
+    int n = 0;
+    try {
+      while (access.hasNextMobilityScan()) {
+        access.nextMobilityScan();
+        final int numDp = access.getNumberOfDataPoints();
+        if (n + numDp > frameMzs.length) {
+          frameMzs = Arrays.copyOf(frameMzs, Math.max(n + numDp, frameMzs.length * 2));
+        }
+        for (int i = 0; i < numDp; i++) {
+          frameMzs[n++] = access.getMzValue(i);
+        }
+      }
+    } catch (MissingMassListException e) {
+      return -1;
+    }
+    Arrays.sort(frameMzs, 0, n);
+    return n;
+  }
 }
@@ -40,7 +40,6 @@ import io.github.mzmine.parameters.parametertypes.MinimumFeatureFilter;
 import io.github.mzmine.util.MathUtils;
 import io.github.mzmine.util.collections.BinarySearch;
 import io.github.mzmine.util.collections.BinarySearch.DefaultTo;
-import io.github.mzmine.util.maths.similarity.Similarity;
 import io.github.mzmine.util.maths.similarity.SimilarityMeasure;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -138,15 +137,7 @@ public class FeatureCorrelationUtil {
     if (useHeightCorrFilter) {
       heightCorr = FeatureCorrelationUtil.corrR2RFeatureHeight(raws, testRow, row, minHeight,
           noiseLevelShapeCorr, minDPFHeightCorr);
-
-      // significance is alpha. 0 is perfect
-      double maxHeightCorrSlopeSignificance = 0.3;
-      double minHeightCorrFoldChange = 10;
-      // do not group if slope is negative / too low
-      // go on if heightCorr is null
-      if (useHeightCorrFilter && heightCorr != null && FeatureCorrelationUtil.isNegativeRegression(
-          heightCorr, minHeightCorrFoldChange, maxHeightCorrSlopeSignificance, minDPFHeightCorr,
-          minHeightCorr, heightSimilarity)) {
+      if (isFilteredByHeightCorr(heightCorr, minDPFHeightCorr, minHeightCorr, heightSimilarity)) {
         return null;
       }
     }
@@ -165,6 +156,93 @@ public class FeatureCorrelationUtil {
     return new R2RFullCorrelationData(testRow, row, heightCorr, featureCorrMap);
   }
 
+  /**
+   * Feature height correlation (used as a filter), feature shape correlation used to group. Same
+   * as {@link #corrR2R(CachedFeatureDataAccess, List, FeatureListRow, FeatureListRow, boolean, int,
+   * int, int, double, double, boolean, SimilarityMeasure, double)} with feature shape correlation
+   * on packed feature shapes.
+   *
+   * @param shapes   packed feature shapes of all rows
+   * @param testRow  index of the first row in shapes
+   * @param row      index of the second row in shapes
+   * @return R2R correlation, returns null if it was filtered by height correlation. Check for
+   * validity on result
+   */
+  public static R2RFullCorrelationData corrR2R(PackedFeatureShapes shapes, int testRow, int row,
+      int minCorrelatedDataPoints, int minCorrDPOnFeatureEdge, int minDPFHeightCorr,
+      double minHeight, double noiseLevelShapeCorr, boolean useHeightCorrFilter,
+      SimilarityMeasure heightSimilarity, double minHeightCorr) {
+    final FeatureListRow a = shapes.getRow(testRow);
+    final FeatureListRow b = shapes.getRow(row);
+    CorrelationData heightCorr = null;
+    if (useHeightCorrFilter) {
+      heightCorr = FeatureCorrelationUtil.corrR2RFeatureHeight(shapes.getRawDataFiles(), a, b,
+          minHeight, noiseLevelShapeCorr, minDPFHeightCorr);
+      if (isFilteredByHeightCorr(heightCorr, minDPFHeightCorr, minHeightCorr, heightSimilarity)) {
+        return null;
+      }
+    }
+
+    Map<RawDataFile, CorrelationData> featureCorrMap = corrR2RFeatureShapes(shapes, testRow, row,
+        minCorrelatedDataPoints, minCorrDPOnFeatureEdge, noiseLevelShapeCorr);
+    if (featureCorrMap != null && featureCorrMap.isEmpty()) {
+      featureCorrMap = null;
+    }
+    return new R2RFullCorrelationData(a, b, heightCorr, featureCorrMap);
+  }
+
+  /**
+   * Height correlation is only used as exclusion filter - not to group
+   *
+   * @param heightCorr the height correlation or null
+   * @return true if the slope is negative or too low
+   */
+  private static boolean isFilteredByHeightCorr(@Nullable CorrelationData heightCorr,
+      int minDPFHeightCorr, double minHeightCorr, SimilarityMeasure heightSimilarity) {
+    // significance is alpha. 0 is perfect
+    double maxHeightCorrSlopeSignificance = 0.3;
+    double minHeightCorrFoldChange = 10;
+    // do not group if slope is negative / too low
+    // go on if heightCorr is null
+    return heightCorr != null && FeatureCorrelationUtil.isNegativeRegression(heightCorr,
+        minHeightCorrFoldChange, maxHeightCorrSlopeSignificance, minDPFHeightCorr, minHeightCorr,
+        heightSimilarity);
+  }
+
+  /**
+   * Correlation of feature to feature shapes in all RawDataFiles of two rows on packed feature
+   * shapes
+   *
+   * @param shapes  packed feature shapes of all rows
+   * @param testRow index of the first row in shapes
+   * @param row     index of the second row in shapes
+   * @return Map of feature shape correlation data (can be empty) or null if one correlation was
+   * negative
+   */
+  public static Map<RawDataFile, CorrelationData> corrR2RFeatureShapes(PackedFeatureShapes shapes,
+      int testRow, int row, int minCorrelatedDataPoints, int minCorrDPOnFeatureEdge,
+      double noiseLevelShapeCorr) {
+    final List<RawDataFile> raws = shapes.getRawDataFiles();
+    HashMap<RawDataFile, CorrelationData> corrData = new HashMap<>();
+    for (int r = 0; r < raws.size(); r++) {
+      if (!shapes.hasFeature(testRow, r) || !shapes.hasFeature(row, r)) {
+        continue;
+      }
+      CorrelationData correlationData = shapes.corrFeatureShape(testRow, row, r,
+          minCorrelatedDataPoints, minCorrDPOnFeatureEdge, noiseLevelShapeCorr);
+
+      // if correlation is really bad return null
+      if (isNegativeRegression(correlationData, 5, 0.2, 7, 0.5, SimilarityMeasure.PEARSON)) {
+        return null;
+      }
+      // enough data points
+      if (correlationData != null && correlationData.getDPCount() >= minCorrelatedDataPoints) {
+        corrData.put(raws.get(r), correlationData);
+      }
+    }
+    return corrData;
+  }
+
   /**
    * Correlation of feature to feature shapes in all RawDataFiles of two rows
    *
@@ -343,6 +421,24 @@ public class FeatureCorrelationUtil {
     return maxIndex;
   }
 
+  /**
+   * Find index of maximum value in values[offset, offset+length)
+   *
+   * @return the index relative to offset
+   */
+  public static int indexOfMax(double[] values, int offset, int length) {
+    int maxIndex = 0;
+    double max = 0;
+    for (int i = 0; i < length; i++) {
+      double val = values[offset + i];
+      if (val > max) {
+        maxIndex = i;
+        max = val;
+      }
+    }
+    return maxIndex;
+  }
+
   /**
    * correlates the height profile of one row to another NO escape routine
    *
@@ -457,8 +553,7 @@ public class FeatureCorrelationUtil {
       return false;
     }
 
-    double maxFC = Math.max(Similarity.maxFoldChange(corr.getData(), 0),
-        Similarity.maxFoldChange(corr.getData(), 1));
+    double maxFC = Math.max(corr.getMaxFoldChange(0), corr.getMaxFoldChange(1));
     // do not use as filter if
     if (maxFC < minFoldChange) {
       return false;
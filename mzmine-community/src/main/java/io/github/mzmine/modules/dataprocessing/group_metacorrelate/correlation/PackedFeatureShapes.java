@@ -0,0 +1,265 @@
+/*
+ * Copyright (c) 2004-2024 The mzmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataprocessing.group_metacorrelate.correlation;
+
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.Scan;
+import io.github.mzmine.datamodel.features.Feature;
+import io.github.mzmine.datamodel.features.FeatureListRow;
+import io.github.mzmine.datamodel.features.correlation.CorrelationData;
+import io.github.mzmine.datamodel.features.correlation.PackedCorrelationData;
+import io.github.mzmine.datamodel.features.correlation.PackedCorrelationData.Statistics;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.util.List;
+import java.util.stream.IntStream;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Feature shapes of an array of rows packed into one primitive array per row for large scale
+ * feature shape correlation, e.g., in the
+ * {@link io.github.mzmine.modules.dataprocessing.group_metacorrelate.corrgrouping.CorrelateGroupingTask}.
+ * The intensities of all features of a row are stored consecutively in the order of the raw data
+ * files. Scans are stored as their index in {@link RawDataFile#getScans()}. The correlated data
+ * points of two features are always consecutive slices of the packed arrays and are correlated by
+ * the {@link ShapeCorrelationKernel}.
+ */
+public class PackedFeatureShapes {
+
+  private final FeatureListRow[] rows;
+  private final List<RawDataFile> raws;
+  // [row][raw] start of feature in packed arrays, [row][numRaws] is the total length
+  private final int[][] offsets;
+  // [row][raw] index of the max intensity relative to the start of the feature, -1 if no feature
+  private final int[][] apexIndices;
+  private final float[][] heights;
+  private final double[][] intensities;
+  private final int[][] scanIndices;
+
+  /**
+   * Packs all features of the rows in parallel
+   *
+   * @param rows the rows, indices of rows are used for correlation
+   * @param raws the raw data files, indices of raw files are used for correlation
+   */
+  public PackedFeatureShapes(@NotNull FeatureListRow[] rows, @NotNull List<RawDataFile> raws) {
+    this.rows = rows;
+    this.raws = raws;
+    offsets = new int[rows.length][];
+    apexIndices = new int[rows.length][];
+    heights = new float[rows.length][];
+    intensities = new double[rows.length][];
+    scanIndices = new int[rows.length][];
+    IntStream.range(0, rows.length).parallel().forEach(this::packRow);
+  }
+
+  /**
+   * Index of a scan in the raw data file scans. The scans of a feature are a subset of the raw
+   * data file scans in the same order, so the search continues from the last index.
+   *
+   * @param from start search at this index
+   * @return the index or -1 if the scan is not in the list
+   */
+  private static int indexOfScan(List<Scan> rawScans, Scan scan, int from) {
+    for (int i = from; i < rawScans.size(); i++) {
+      if (rawScans.get(i) == scan) {
+        return i;
+      }
+    }
+    for (int i = 0; i < Math.min(from, rawScans.size()); i++) {
+      if (rawScans.get(i) == scan) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * @return index of the first scan with a retention time >= rt
+   */
+  private static int lowerBoundRT(List<Scan> rawScans, float rt) {
+    int low = 0;
+    int high = rawScans.size();
+    while (low < high) {
+      final int mid = (low + high) >>> 1;
+      if (rawScans.get(mid).getRetentionTime() < rt) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  private void packRow(int r) {
+    final FeatureListRow row = rows[r];
+    final int numRaws = raws.size();
+    final Feature[] features = new Feature[numRaws];
+    final int[] offset = new int[numRaws + 1];
+    for (int k = 0; k < numRaws; k++) {
+      features[k] = row.getFeature(raws.get(k));
+      offset[k + 1] = offset[k] + (features[k] == null ? 0 : features[k].getNumberOfDataPoints());
+    }
+
+    final double[] values = new double[offset[numRaws]];
+    final int[] scans = new int[offset[numRaws]];
+    final int[] apex = new int[numRaws];
+    final float[] height = new float[numRaws];
+    for (int k = 0; k < numRaws; k++) {
+      final Feature f = features[k];
+      apex[k] = -1;
+      if (f == null) {
+        continue;
+      }
+      final Float h = f.getHeight();
+      height[k] = h == null ? Float.NaN : h;
+      final int n = offset[k + 1] - offset[k];
+      if (n == 0) {
+        continue;
+      }
+      MemorySegment.copy(f.getFeatureData().getIntensityValueBuffer(), ValueLayout.JAVA_DOUBLE, 0,
+          values, offset[k], n);
+      apex[k] = FeatureCorrelationUtil.indexOfMax(values, offset[k], n);
+
+      final List<Scan> rawScans = raws.get(k).getScans();
+      final List<Scan> featureScans = f.getScanNumbers();
+      int last = lowerBoundRT(rawScans, featureScans.getFirst().getRetentionTime());
+      for (int i = 0; i < n; i++) {
+        final int index = indexOfScan(rawScans, featureScans.get(i), Math.max(last, 0));
+        scans[offset[k] + i] = index;
+        if (index >= 0) {
+          last = index + 1;
+        }
+      }
+    }
+
+    offsets[r] = offset;
+    apexIndices[r] = apex;
+    heights[r] = height;
+    intensities[r] = values;
+    scanIndices[r] = scans;
+  }
+
+  public FeatureListRow getRow(int row) {
+    return rows[row];
+  }
+
+  public int getNumberOfRows() {
+    return rows.length;
+  }
+
+  public List<RawDataFile> getRawDataFiles() {
+    return raws;
+  }
+
+  /**
+   * @return true if the row has a feature in this raw data file
+   */
+  public boolean hasFeature(int row, int raw) {
+    return rows[row].getFeature(raws.get(raw)) != null;
+  }
+
+  /**
+   * Feature shape correlation of two rows in the same raw data file. Same result as
+   * {@link FeatureCorrelationUtil#corrFeatureShape} for the same raw data file.
+   *
+   * @param rowA index of the first row
+   * @param rowB index of the second row
+   * @param raw  index of the raw data file
+   * @return feature shape correlation or null if there are not enough data points
+   */
+  public @Nullable CorrelationData corrFeatureShape(int rowA, int rowB, int raw,
+      int minCorrelatedDataPoints, int minCorrDPOnFeatureEdge, double noiseLevelShapeCorr) {
+    // a should be the higher feature
+    if (heights[rowA][raw] < heights[rowB][raw]) {
+      final int tmp = rowA;
+      rowA = rowB;
+      rowB = tmp;
+    }
+    final int startA = offsets[rowA][raw];
+    final int endA = offsets[rowA][raw + 1];
+    final int startB = offsets[rowB][raw];
+    final int endB = offsets[rowB][raw + 1];
+    if (endA - startA < minCorrelatedDataPoints || endB - startB < minCorrelatedDataPoints
+        || apexIndices[rowA][raw] < 0 || endB == startB) {
+      return null;
+    }
+
+    final double[] intensitiesA = intensities[rowA];
+    final double[] intensitiesB = intensities[rowB];
+    final int[] scansA = scanIndices[rowA];
+    final int[] scansB = scanIndices[rowB];
+
+    // apex of a in b
+    final int apexA = startA + apexIndices[rowA][raw];
+    int apexB = -1;
+    for (int i = startB; i < endB; i++) {
+      if (scansB[i] == scansA[apexA]) {
+        apexB = i;
+        break;
+      }
+    }
+    if (apexB == -1 || scansA[apexA] < 0) {
+      return null;
+    }
+
+    // data points <= apex
+    int left = 0;
+    for (int i1 = apexA, i2 = apexB; i1 >= startA && i2 >= startB; i1--, i2--) {
+      if (scansA[i1] != scansB[i2] || intensitiesA[i1] < noiseLevelShapeCorr
+          || intensitiesB[i2] < noiseLevelShapeCorr) {
+        break;
+      }
+      left++;
+    }
+    // check min data points left from apex
+    if (left - 1 < minCorrDPOnFeatureEdge) {
+      return null;
+    }
+
+    // data points > apex
+    int right = 0;
+    for (int i1 = apexA + 1, i2 = apexB + 1; i1 < endA && i2 < endB; i1++, i2++) {
+      if (scansA[i1] != scansB[i2] || intensitiesA[i1] < noiseLevelShapeCorr
+          || intensitiesB[i2] < noiseLevelShapeCorr) {
+        break;
+      }
+      right++;
+    }
+
+    final int n = left + right;
+    if (n < minCorrelatedDataPoints || right < minCorrDPOnFeatureEdge) {
+      return null;
+    }
+    // the correlated data points are consecutive in both packed arrays
+    final int firstA = apexA - left + 1;
+    final int firstB = apexB - left + 1;
+    final Statistics stats = ShapeCorrelationKernel.computeStatistics(intensitiesA, firstA,
+        intensitiesB, firstB, n);
+    return new PackedCorrelationData(stats, intensitiesA, firstA, intensitiesB, firstB);
+  }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2004-2024 The mzmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataprocessing.group_metacorrelate.correlation;
+
+import io.github.mzmine.datamodel.features.correlation.PackedCorrelationData.Statistics;
+import java.util.logging.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Computes the summary statistics for Pearson and cosine correlation of two slices of packed
+ * intensity arrays. Uses a scalar loop by default. The Java Vector API kernel is only compiled with
+ * the vectorApi build property (gradlew build -PvectorApi) and is selected at runtime if the
+ * jdk.incubator.vector module was added (--add-modules jdk.incubator.vector).
+ */
+public final class ShapeCorrelationKernel {
+
+  private static final Logger logger = Logger.getLogger(ShapeCorrelationKernel.class.getName());
+
+  private static final @Nullable VectorKernel VECTOR_KERNEL = loadVectorKernel();
+
+  /**
+   * True if the Vector API kernel is used
+   */
+  public static final boolean VECTORIZED = VECTOR_KERNEL != null;
+
+  private static final int MIN_VECTOR_LENGTH = VECTORIZED ? VECTOR_KERNEL.minLength() : 0;
+
+  private ShapeCorrelationKernel() {
+  }
+
+  private static @Nullable VectorKernel loadVectorKernel() {
+    if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+      logger.fine(
+          "Vector API not available, feature shape correlation uses the scalar implementation");
+      return null;
+    }
+    try {
+      // only on the class path if compiled with the vectorApi build property
+      return (VectorKernel) Class.forName(
+              ShapeCorrelationKernel.class.getPackageName() + ".VectorShapeCorrelationKernel")
+          .getDeclaredConstructor().newInstance();
+    } catch (ReflectiveOperationException | LinkageError e) {
+      logger.fine(
+          "Vector API kernel not compiled, feature shape correlation uses the scalar implementation");
+      return null;
+    }
+  }
+
+  /**
+   * Statistics of the data points (x[xOffset+i], y[yOffset+i]) for i in [0, n)
+   */
+  public static @NotNull Statistics computeStatistics(double[] x, int xOffset, double[] y,
+      int yOffset, int n) {
+    if (VECTORIZED && n >= MIN_VECTOR_LENGTH) {
+      return VECTOR_KERNEL.computeStatistics(x, xOffset, y, yOffset, n);
+    }
+    return computeStatisticsScalar(x, xOffset, y, yOffset, n);
+  }
+
+  static @NotNull Statistics computeStatisticsScalar(double[] x, int xOffset, double[] y,
+      int yOffset, int n) {
+    double sumX = 0, sumY = 0, dot = 0, normX = 0, normY = 0;
+    double minX = Double.POSITIVE_INFINITY, maxX = Double.NEGATIVE_INFINITY;
+    double minY = Double.POSITIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+    for (int i = 0; i < n; i++) {
+      final double a = x[xOffset + i];
+      final double b = y[yOffset + i];
+      sumX += a;
+      sumY += b;
+      dot += a * b;
+      normX += a * a;
+      normY += b * b;
+      minX = Math.min(minX, a);
+      maxX = Math.max(maxX, a);
+      minY = Math.min(minY, b);
+      maxY = Math.max(maxY, b);
+    }
+    return centered(x, xOffset, y, yOffset, n, 0, sumX, sumY, 0, 0, 0, dot, normX, normY, minX,
+        maxX, minY, maxY);
+  }
+
+  /**
+   * Second pass over the data points from index start to add the centered sums
+   */
+  static @NotNull Statistics centered(double[] x, int xOffset, double[] y, int yOffset, int n,
+      int start, double sumX, double sumY, double sumXX, double sumYY, double sumXY, double dot,
+      double normX, double normY, double minX, double maxX, double minY, double maxY) {
+    final double meanX = n == 0 ? 0 : sumX / n;
+    final double meanY = n == 0 ? 0 : sumY / n;
+    for (int i = start; i < n; i++) {
+      final double dx = x[xOffset + i] - meanX;
+      final double dy = y[yOffset + i] - meanY;
+      sumXX += dx * dx;
+      sumYY += dy * dy;
+      sumXY += dx * dy;
+    }
+    return new Statistics(n, meanX, meanY, sumXX, sumYY, sumXY, dot, normX, normY, minX, maxX,
+        minY, maxY);
+  }
+
+  /**
+   * Implemented by the Vector API kernel
+   */
+  interface VectorKernel {
+
+    /**
+     * @return minimum number of data points to use the vector kernel
+     */
+    int minLength();
+
+    @NotNull Statistics computeStatistics(double[] x, int xOffset, double[] y, int yOffset, int n);
+  }
+}
@@ -44,6 +44,7 @@ import io.github.mzmine.datamodel.features.correlation.RowsRelationship.Type;
 import io.github.mzmine.modules.dataprocessing.group_metacorrelate.correlation.FeatureCorrelationUtil;
 import io.github.mzmine.modules.dataprocessing.group_metacorrelate.correlation.FeatureShapeCorrelationParameters;
 import io.github.mzmine.modules.dataprocessing.group_metacorrelate.correlation.InterSampleHeightCorrParameters;
+import io.github.mzmine.modules.dataprocessing.group_metacorrelate.correlation.PackedFeatureShapes;
 import io.github.mzmine.parameters.ParameterSet;
 import io.github.mzmine.parameters.parametertypes.MinimumFeatureFilter;
 import io.github.mzmine.parameters.parametertypes.MinimumFeatureFilter.OverlapResult;
@@ -58,6 +59,7 @@ import io.github.mzmine.util.FeatureListUtils;
 import io.github.mzmine.util.SortingDirection;
 import io.github.mzmine.util.SortingProperty;
 import io.github.mzmine.util.maths.similarity.SimilarityMeasure;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
 import java.text.MessageFormat;
 import java.time.Instant;
 import java.util.List;
@@ -308,43 +310,50 @@ public class CorrelateGroupingTask extends AbstractTask {
 
     totalRows = rows.length;
 
-    // preload all intensity values only if feature shape correlation active or if overlap is computed
+    // preload all intensity values only if overlap is computed
     // overlap is not computed for large datasets
     boolean calculateShapeOverlap = raws.size() < simplifyLargeDatasets;
-    boolean preloadIntensities =
-        useTotalShapeCorrFilter || groupByFShapeCorr || calculateShapeOverlap;
-    CachedFeatureDataAccess data = new CachedFeatureDataAccess(rows, false, preloadIntensities);
+    CachedFeatureDataAccess data = new CachedFeatureDataAccess(rows, false, calculateShapeOverlap);
+    // feature shapes are packed per row for the correlation kernels
+    final PackedFeatureShapes shapes =
+        groupByFShapeCorr ? new PackedFeatureShapes(rows, raws) : null;
+
+    // rows are sorted by RT: each row is compared to all following rows until the RT window ends
+    final float[] rts = new float[totalRows];
+    for (int i = 0; i < totalRows; i++) {
+      rts[i] = rows[i].getAverageRT();
+    }
+    final int[] windowEnd = findRtWindowEnds(rts, rtTolerance);
+    // the number of comparisons differs between rows, balance the work over blocks of rows
+    final int[] blocks = createBalancedBlocks(windowEnd,
+        Runtime.getRuntime().availableProcessors() * 16);
 
-    // for all rows - do in parallel
-    long correlated = IntStream.range(0, totalRows - 1).parallel().mapToLong(i -> {
+    long correlated = IntStream.range(0, blocks.length - 1).parallel().mapToLong(b -> {
       long addedCorrelations = 0;
-      if (!isCanceled()) {
+      for (int i = blocks[b]; i < blocks[b + 1] && !isCanceled(); i++) {
         try {
           FeatureListRow row = rows[i];
-          // compare to the rest of rows
-          for (int x = i + 1; x < totalRows; x++) {
+          // compare to the rest of rows in RT window
+          for (int x = i + 1; x < windowEnd[i]; x++) {
             if (isCanceled()) {
               break;
             }
 
             FeatureListRow row2 = rows[x];
 
-            // average retention time should be in range
-            if (!rtTolerance.checkWithinTolerance(row.getAverageRT(), row2.getAverageRT())) {
-              // end second loop
-              break;
-            }
-
             // has a minimum number/% of overlapping features in all samples / in at least one
             // groups
             OverlapResult overlap = minFFilter.filterMinFeaturesOverlap(data, raws, row, row2,
                 rtTolerance, calculateShapeOverlap);
             if (overlap.equals(OverlapResult.TRUE)) {
               // correlate if in rt range
-              R2RFullCorrelationData corr = FeatureCorrelationUtil.corrR2R(data, raws, row, row2,
-                  groupByFShapeCorr, minCorrelatedDataPoints, minCorrDPOnFeatureEdge,
-                  minDPHeightCorr, minHeight, noiseLevelCorr, useHeightCorrFilter, heightSimMeasure,
-                  minHeightCorr);
+              R2RFullCorrelationData corr = shapes != null ? //
+                  FeatureCorrelationUtil.corrR2R(shapes, i, x, minCorrelatedDataPoints,
+                      minCorrDPOnFeatureEdge, minDPHeightCorr, minHeight, noiseLevelCorr,
+                      useHeightCorrFilter, heightSimMeasure, minHeightCorr)
+                  : FeatureCorrelationUtil.corrR2R(data, raws, row, row2, false,
+                      minCorrelatedDataPoints, minCorrDPOnFeatureEdge, minDPHeightCorr, minHeight,
+                      noiseLevelCorr, useHeightCorrFilter, heightSimMeasure, minHeightCorr);
 
               // corr is even present if only grouping by retention time
               // corr is only null if heightCorrelation was not met
@@ -378,4 +387,46 @@ public class CorrelateGroupingTask extends AbstractTask {
     logger.info(MessageFormat.format("Added {0} correlation edges", map.size()));
   }
 
+  /**
+   * @param rts sorted retention times of the rows
+   * @return for each row i the index of the first following row that is outside the RT tolerance
+   */
+  static int[] findRtWindowEnds(float[] rts, RTTolerance rtTolerance) {
+    return IntStream.range(0, rts.length).parallel().map(i -> {
+      int x = i + 1;
+      while (x < rts.length && rtTolerance.checkWithinTolerance(rts[i], rts[x])) {
+        x++;
+      }
+      return x;
+    }).toArray();
+  }
+
+  /**
+   * Splits the rows into consecutive blocks with a similar number of comparisons
+   *
+   * @param windowEnd each row i is compared to the rows (i, windowEnd[i])
+   * @param numBlocks target number of blocks
+   * @return the start index of each block and the number of rows as the last element
+   */
+  static int[] createBalancedBlocks(int[] windowEnd, int numBlocks) {
+    long totalComparisons = 0;
+    for (int i = 0; i < windowEnd.length; i++) {
+      totalComparisons += windowEnd[i] - i - 1;
+    }
+    // at least one row per block
+    final long comparisonsPerBlock = Math.max(1, totalComparisons / Math.max(1, numBlocks));
+    final IntArrayList starts = new IntArrayList();
+    starts.add(0);
+    long comparisons = 0;
+    for (int i = 0; i < windowEnd.length; i++) {
+      comparisons += windowEnd[i] - i - 1;
+      if (comparisons >= comparisonsPerBlock && i + 1 < windowEnd.length) {
+        starts.add(i + 1);
+        comparisons = 0;
+      }
+    }
+    starts.add(windowEnd.length);
+    return starts.toIntArray();
+  }
+
 }
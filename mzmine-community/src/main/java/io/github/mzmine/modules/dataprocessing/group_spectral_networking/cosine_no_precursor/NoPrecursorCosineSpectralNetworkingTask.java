@@ -29,6 +29,7 @@ package io.github.mzmine.modules.dataprocessing.group_spectral_networking.cosine
 import static io.github.mzmine.modules.dataprocessing.group_spectral_networking.modified_cosine.ModifiedCosineSpectralNetworkingTask.SIZE_OVERLAP;
 import static io.github.mzmine.modules.dataprocessing.group_spectral_networking.modified_cosine.ModifiedCosineSpectralNetworkingTask.addNetworkStatisticsToRows;
 import static io.github.mzmine.modules.dataprocessing.group_spectral_networking.modified_cosine.ModifiedCosineSpectralNetworkingTask.createMS2Sim;
+import static io.github.mzmine.modules.dataprocessing.group_spectral_networking.modified_cosine.ModifiedCosineSpectralNetworkingTask.createMS2SimModificationAware;
 
 import io.github.mzmine.datamodel.DataPoint;
 import io.github.mzmine.datamodel.Scan;
@@ -54,6 +55,7 @@ import io.github.mzmine.util.collections.CollectionUtils;
 import io.github.mzmine.util.collections.StreamUtils;
 import io.github.mzmine.util.exceptions.MissingMassListException;
 import io.github.mzmine.util.maths.Combinatorics;
+import io.github.mzmine.util.scans.similarity.Weights;
 import java.text.MessageFormat;
 import java.time.Instant;
 import java.util.List;
@@ -179,8 +181,10 @@ public class NoPrecursorCosineSpectralNetworkingTask extends AbstractFeatureList
 
   private boolean checkSpectralPair(final FilteredRowData a, final FilteredRowData b,
       final R2RMap<RowsRelationship> mapSimilarity) {
-    return checkR2RMs2Similarity(mapSimilarity, a.row(), b.row(), a.data(), b.data(),
-        Type.MS2_COSINE_SIM);
+    // align and check spectra on primitive arrays
+    SpectralSimilarity spectralSim = createMS2SimModificationAware(mzTolerance, Weights.SQRT,
+        a.mzs(), a.intensities(), b.mzs(), b.intensities(), minMatch, -1d, -1d);
+    return addIfSimilar(mapSimilarity, a.row(), b.row(), spectralSim, Type.MS2_COSINE_SIM);
   }
 
   /**
@@ -194,7 +198,11 @@ public class NoPrecursorCosineSpectralNetworkingTask extends AbstractFeatureList
     // align and check spectra
     SpectralSimilarity spectralSim = createMS2Sim(mzTolerance, sortedA, sortedB, minMatch,
         SIZE_OVERLAP);
+    return addIfSimilar(mapSimilarity, a, b, spectralSim, simType);
+  }
 
+  private boolean addIfSimilar(R2RMap<RowsRelationship> mapSimilarity, FeatureListRow a,
+      FeatureListRow b, @Nullable SpectralSimilarity spectralSim, Type simType) {
     if (spectralSim != null && spectralSim.cosine() >= minCosineSimilarity) {
       var r2r = new R2RSpectralSimilarity(a, b, simType, spectralSim);
       mapSimilarity.add(a, b, r2r);
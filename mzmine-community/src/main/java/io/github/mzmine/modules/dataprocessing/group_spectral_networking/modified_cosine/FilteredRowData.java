@@ -27,10 +27,21 @@ package io.github.mzmine.modules.dataprocessing.group_spectral_networking.modifi
 
 import io.github.mzmine.datamodel.DataPoint;
 import io.github.mzmine.datamodel.features.FeatureListRow;
+import io.github.mzmine.util.DataPointUtils;
 
 /**
- * the filtered data of the best MS2 scan from row
+ * the filtered data of the best MS2 scan from row. m/z and intensity values are also provided as
+ * primitive arrays in the same order (usually sorted by intensity) for allocation free
+ * alignments.
  */
-public record FilteredRowData(FeatureListRow row, DataPoint[] data) {
+public record FilteredRowData(FeatureListRow row, DataPoint[] data, double[] mzs,
+                              double[] intensities) {
 
+  public FilteredRowData(FeatureListRow row, DataPoint[] data) {
+    this(row, data, DataPointUtils.getDataPointsAsDoubleArray(data));
+  }
+
+  private FilteredRowData(FeatureListRow row, DataPoint[] data, double[][] mzIntensities) {
+    this(row, data, mzIntensities[0], mzIntensities[1]);
+  }
 }
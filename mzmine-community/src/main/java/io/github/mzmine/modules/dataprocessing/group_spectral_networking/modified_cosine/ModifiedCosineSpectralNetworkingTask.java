@@ -37,7 +37,6 @@ import io.github.mzmine.datamodel.features.FeatureListRow;
 import io.github.mzmine.datamodel.features.ModularFeatureList;
 import io.github.mzmine.datamodel.features.correlation.R2RMap;
 import io.github.mzmine.datamodel.features.correlation.R2RNetworkingMaps;
-import io.github.mzmine.datamodel.features.correlation.R2RSpectralSimilarity;
 import io.github.mzmine.datamodel.features.correlation.RowsRelationship;
 import io.github.mzmine.datamodel.features.correlation.RowsRelationship.Type;
 import io.github.mzmine.datamodel.features.correlation.SpectralSimilarity;
@@ -54,13 +53,14 @@ import io.github.mzmine.parameters.ParameterSet;
 import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
 import io.github.mzmine.taskcontrol.AbstractFeatureListTask;
 import io.github.mzmine.taskcontrol.TaskStatus;
+import io.github.mzmine.util.DataPointUtils;
 import io.github.mzmine.util.FeatureListRowSorter;
 import io.github.mzmine.util.GraphStreamUtils;
 import io.github.mzmine.util.collections.CollectionUtils;
-import io.github.mzmine.util.collections.StreamUtils;
 import io.github.mzmine.util.exceptions.MissingMassListException;
 import io.github.mzmine.util.maths.Combinatorics;
 import io.github.mzmine.util.maths.similarity.Similarity;
+import io.github.mzmine.util.scans.AlignmentBuffers;
 import io.github.mzmine.util.scans.FragmentScanSelection;
 import io.github.mzmine.util.scans.ScanAlignment;
 import io.github.mzmine.util.scans.ScanMZDiffConverter;
@@ -227,6 +227,13 @@ public class ModifiedCosineSpectralNetworkingTask extends AbstractFeatureListTas
       DataPoint[] sortedA, DataPoint[] sortedB, double minMatch,
       Function<List<DataPoint[]>, Integer> overlapFunction, double precursorMzA,
       double precursorMzB) {
+    if (overlapFunction == SIZE_OVERLAP) {
+      // same result on primitive arrays without aligned data point arrays
+      final double[][] a = DataPointUtils.getDataPointsAsDoubleArray(sortedA);
+      final double[][] b = DataPointUtils.getDataPointsAsDoubleArray(sortedB);
+      return createMS2SimModificationAware(mzTol, weights, a[0], a[1], b[0], b[1], minMatch,
+          precursorMzA, precursorMzB);
+    }
     // align
     final List<DataPoint[]> aligned = alignDataPoints(precursorMzA, precursorMzB, mzTol, sortedB,
         sortedA);
@@ -272,6 +279,78 @@ public class ModifiedCosineSpectralNetworkingTask extends AbstractFeatureListTas
     return null;
   }
 
+  /**
+   * Primitive version of
+   * {@link #createMS2SimModificationAware(MZTolerance, Weights, DataPoint[], DataPoint[], double,
+   * Function, double, double)} with {@link #SIZE_OVERLAP}. Uses the alignment buffers of the
+   * current thread and only allocates the result. Make sure to use arrays sorted by intensity.
+   *
+   * @param sortedMzsA         m/z values of A sorted by intensity
+   * @param sortedIntensitiesA intensities of A sorted by intensity
+   * @param sortedMzsB         m/z values of B sorted by intensity
+   * @param sortedIntensitiesB intensities of B sorted by intensity
+   * @param minMatch           minimum overlapping signals in the two mass lists
+   * @param precursorMzA       precursor mz of A, modification aware alignment if both are > 0
+   * @param precursorMzB       precursor mz of B, modification aware alignment if both are > 0
+   * @return the spectral similarity if number of overlapping signals >= minimum, else null
+   */
+  @Nullable
+  public static SpectralSimilarity createMS2SimModificationAware(MZTolerance mzTol, Weights weights,
+      double[] sortedMzsA, double[] sortedIntensitiesA, double[] sortedMzsB,
+      double[] sortedIntensitiesB, double minMatch, double precursorMzA, double precursorMzB) {
+    final AlignmentBuffers buffers = AlignmentBuffers.get();
+    // B is aligned against A - same as in alignDataPoints
+    final double[] mzsFirst = sortedMzsB;
+    final double[] intensitiesFirst = sortedIntensitiesB;
+    final int numFirst = sortedMzsB.length;
+    final double[] mzsSecond = sortedMzsA;
+    final double[] intensitiesSecond = sortedIntensitiesA;
+    final int numSecond = sortedMzsA.length;
+
+    final int overlap;
+    if (precursorMzA > 0 && precursorMzB > 0) {
+      overlap = ScanAlignment.alignOfSortedModAware(mzTol, mzsFirst, numFirst, mzsSecond,
+          numSecond, precursorMzB, precursorMzA, buffers);
+    } else {
+      overlap = ScanAlignment.alignOfSorted(mzTol, mzsFirst, numFirst, mzsSecond, numSecond,
+          buffers);
+    }
+    if (overlap < minMatch) {
+      return null;
+    }
+
+    // cosine, all unmatched signals are matched to zero
+    double diffCosine = ScanAlignment.weightedCosine(mzsFirst, intensitiesFirst, numFirst,
+        mzsSecond, intensitiesSecond, numSecond, weights.getIntensity(), weights.getMz(), true,
+        true, buffers);
+
+    // same summation order as for the aligned list
+    double totalIntensityFirst = 0;
+    double totalIntensitySecond = 0;
+    double explainedIntensityFirst = 0;
+    double explainedIntensitySecond = 0;
+    for (int i = 0; i < numFirst; i++) {
+      final int match = buffers.getMatchA(i);
+      if (match != -1) {
+        explainedIntensityFirst += intensitiesFirst[i];
+        explainedIntensitySecond += intensitiesSecond[match];
+      }
+      totalIntensityFirst += intensitiesFirst[i];
+      if (match != -1) {
+        totalIntensitySecond += intensitiesSecond[match];
+      }
+    }
+    for (int i = 0; i < numSecond; i++) {
+      if (!buffers.isMatchedB(i)) {
+        totalIntensitySecond += intensitiesSecond[i];
+      }
+    }
+
+    return new SpectralSimilarity(diffCosine, overlap, numFirst, numSecond,
+        explainedIntensityFirst / totalIntensityFirst,
+        explainedIntensitySecond / totalIntensitySecond);
+  }
+
   /**
    * Make sure to use arrays sorted by intensity
    *
@@ -425,7 +504,8 @@ public class ModifiedCosineSpectralNetworkingTask extends AbstractFeatureListTas
   }
 
   /**
-   * Parallel check of all r2r similarities
+   * Parallel check of all r2r similarities. Rows are packed and processed in cache sized tiles,
+   * see {@link TiledModifiedCosineEngine}.
    *
    * @param mapSimilarity map for all MS2 cosine similarity edges
    * @param mzSortedRows  match rows
@@ -438,52 +518,15 @@ public class ModifiedCosineSpectralNetworkingTask extends AbstractFeatureListTas
     totalMaxPairs = Combinatorics.uniquePairs(sortedFilteredRows.size());
     logger.log(Level.INFO, MessageFormat.format("Checking MS2 similarity on {0} rows", numRows));
 
-    long comparedPairs = StreamUtils.processPairs(sortedFilteredRows, this::isCanceled, true, //
-        // stop inner loop if mz distance is too far
-        (first, later) -> maxMzDelta < later.getKey().getAverageMZ() - first.getKey()
-            .getAverageMZ(), //
-        pair -> {
-          // the actual processing
-          var row1 = pair.left().getKey();
-          var scans1 = pair.left().getValue();
-          var row2 = pair.right().getKey();
-          var scans2 = pair.right().getValue();
-          checkRowsPair(row1, scans1, row2, scans2, mapSimilarity);
-          processedPairs.incrementAndGet();
-        });
-
-    logger.info("Spectral networking: Performed %d pairwise comparisons.".formatted(comparedPairs));
-  }
+    var engine = new TiledModifiedCosineEngine(sortedFilteredRows, mzTolerance, Weights.SQRT,
+        minMatch, minCosineSimilarity, maxMzDelta);
+    long comparedPairs = engine.processAllPairs(mapSimilarity, processedPairs, this::isCanceled);
 
-  /**
-   * Check and add {@link R2RSpectralSimilarity} to mapSimilarity.
-   *
-   * @param mapSimilarity results to be added
-   * @return true if relationship was added
-   */
-  private boolean checkRowsPair(final FeatureListRow row1, final List<FilteredRowData> scans1,
-      final FeatureListRow row2, final List<FilteredRowData> scans2,
-      final R2RMap<RowsRelationship> mapSimilarity) {
-    SpectralSimilarity best = null;
-
-    // TODO think about ways to match the same energies against each other
-    // Maybe in a +- 15 energy range
-    // currently this just matches all scans against all scans and takes the best score
-    for (final FilteredRowData a : scans1) {
-      for (final FilteredRowData b : scans2) {
-        // align and check spectra
-        var result = calcSpectralSimilarity(a.row(), b.row(), a.data(), b.data());
-        if (result != null && (best == null || result.cosine() > best.cosine())) {
-          best = result;
-        }
-      }
-    }
-    if (best != null && best.cosine() >= minCosineSimilarity && best.overlap() >= minMatch) {
-      var r2r = new R2RSpectralSimilarity(row1, row2, Type.MS2_COSINE_SIM, best);
-      mapSimilarity.add(row1, row2, r2r);
-      return true;
-    }
-    return false;
+    logger.info("""
+        Spectral networking: Performed %d pairwise comparisons in %d row blocks. \
+        Aligned %d spectra pairs, skipped %d spectra pairs by the score upper bound.""".formatted(
+        comparedPairs, engine.getNumBlocks(), engine.getAlignedSpectraPairs(),
+        engine.getPrunedSpectraPairs()));
   }
 
   private Map<FeatureListRow, List<FilteredRowData>> prepareRowSpectra(
@@ -536,12 +579,6 @@ public class ModifiedCosineSpectralNetworkingTask extends AbstractFeatureListTas
   }
 
 
-  private @Nullable SpectralSimilarity calcSpectralSimilarity(final FeatureListRow a,
-      final FeatureListRow b, final DataPoint[] sortedA, final DataPoint[] sortedB) {
-    return createMS2SimModificationAware(mzTolerance, sortedA, sortedB, minMatch, SIZE_OVERLAP,
-        a.getAverageMZ(), b.getAverageMZ());
-  }
-
   @Override
   public double getFinishedPercentage() {
     return totalMaxPairs == 0 ? 0 : processedPairs.get() / (double) totalMaxPairs;
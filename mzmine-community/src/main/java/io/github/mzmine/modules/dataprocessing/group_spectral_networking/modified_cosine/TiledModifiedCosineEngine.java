@@ -0,0 +1,383 @@
+/*
+ * Copyright (c) 2004-2024 The mzmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package io.github.mzmine.modules.dataprocessing.group_spectral_networking.modified_cosine;
+
+import static io.github.mzmine.modules.dataprocessing.group_spectral_networking.modified_cosine.ModifiedCosineSpectralNetworkingTask.createMS2SimModificationAware;
+
+import io.github.mzmine.datamodel.features.FeatureListRow;
+import io.github.mzmine.datamodel.features.correlation.R2RMap;
+import io.github.mzmine.datamodel.features.correlation.R2RSpectralSimilarity;
+import io.github.mzmine.datamodel.features.correlation.RowsRelationship;
+import io.github.mzmine.datamodel.features.correlation.RowsRelationship.Type;
+import io.github.mzmine.datamodel.features.correlation.SpectralSimilarity;
+import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
+import io.github.mzmine.util.scans.similarity.Weights;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+import java.util.stream.IntStream;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Blocked all-pairs engine for the modified cosine spectral networking. All spectra of the m/z
+ * sorted rows are packed into contiguous primitive arrays. Rows are grouped into blocks that fit
+ * into the CPU cache and each pair of blocks (tile) is processed as one task in the common
+ * work-stealing pool.
+ * <p>
+ * Before the exact alignment, each spectrum pair is checked against an upper bound of the number
+ * of matching signals and of the cosine similarity. The bound uses a bit fingerprint of the m/z
+ * values (dilated by the tolerance) of each spectrum. Signals of one spectrum can only match if
+ * their m/z (or m/z shifted by the precursor delta) hits a set bit of the other fingerprint. By
+ * Cauchy-Schwarz, the cosine is at most sqrt(matchable weighted energy / total weighted energy).
+ * The bound never rejects a pair that would pass the thresholds, so results are the same as for
+ * the exact check of all pairs and independent of the number of threads.
+ */
+final class TiledModifiedCosineEngine {
+
+  /**
+   * Size of a row block. Two blocks (one tile) fit well into the L2 cache
+   */
+  static final int BLOCK_BYTES = 64 * 1024;
+  /**
+   * Bits per fingerprint - bins are folded into this size
+   */
+  private static final int FINGERPRINT_BITS = 2048;
+  private static final int FINGERPRINT_WORDS = FINGERPRINT_BITS / Long.SIZE;
+  private static final long PER_SIGNAL_BYTES = 3 * Double.BYTES;
+  private static final long PER_SPECTRUM_BYTES = FINGERPRINT_WORDS * Long.BYTES + 4 * Double.BYTES;
+  // relative slack on the tolerance and the score bound to be safe against rounding
+  private static final double TOLERANCE_SLACK = 1.01;
+  private static final double SCORE_BOUND_SLACK = 1E-9;
+
+  private final MZTolerance mzTol;
+  private final Weights weights;
+  private final int minMatch;
+  private final double minCosineSimilarity;
+  private final double maxMzDelta;
+
+  // packed rows sorted by m/z
+  private final int numRows;
+  private final FeatureListRow[] rows;
+  private final double[] rowMz;
+  // spectra of row i are rowSpectraStart[i] until rowSpectraStart[i+1]
+  private final int[] rowSpectraStart;
+  private final FilteredRowData[] spectra;
+  // signals of spectrum s are signalStart[s] until signalStart[s+1]
+  private final int[] signalStart;
+  private final double[] signalMz;
+  private final double[] signalEnergy;
+  private final double[] spectrumEnergy;
+  private final long[] fingerprints;
+  private final double maxTolerance;
+  private final double binWidth;
+  // rows of block b are blockStart[b] until blockStart[b+1]
+  private final int[] blockStart;
+
+  // statistics
+  private final LongAdder comparedRowPairs = new LongAdder();
+  private final LongAdder prunedSpectraPairs = new LongAdder();
+  private final LongAdder alignedSpectraPairs = new LongAdder();
+
+  /**
+   * @param mzSortedRows rows sorted by ascending m/z with their filtered spectra sorted by
+   *                     intensity
+   */
+  TiledModifiedCosineEngine(@NotNull List<Entry<FeatureListRow, List<FilteredRowData>>> mzSortedRows,
+      MZTolerance mzTol, Weights weights, int minMatch, double minCosineSimilarity,
+      double maxMzDelta) {
+    this.mzTol = mzTol;
+    this.weights = weights;
+    this.minMatch = minMatch;
+    this.minCosineSimilarity = minCosineSimilarity;
+    this.maxMzDelta = maxMzDelta;
+
+    numRows = mzSortedRows.size();
+    rows = new FeatureListRow[numRows];
+    rowMz = new double[numRows];
+    rowSpectraStart = new int[numRows + 1];
+    int numSpectra = 0;
+    int numSignals = 0;
+    double maxMz = 0;
+    for (int i = 0; i < numRows; i++) {
+      var entry = mzSortedRows.get(i);
+      rows[i] = entry.getKey();
+      rowMz[i] = entry.getKey().getAverageMZ();
+      rowSpectraStart[i] = numSpectra;
+      for (FilteredRowData data : entry.getValue()) {
+        numSignals += data.mzs().length;
+        for (double mz : data.mzs()) {
+          maxMz = Math.max(maxMz, mz);
+        }
+      }
+      numSpectra += entry.getValue().size();
+    }
+    rowSpectraStart[numRows] = numSpectra;
+
+    // the tolerance is evaluated at the (shifted) m/z, which is always close to a signal <= maxMz
+    maxTolerance = mzTol.getMzToleranceForMass(maxMz) * TOLERANCE_SLACK + 1E-9;
+    // bins are at least as wide as the tolerance window so that a signal sets one or two bits
+    binWidth = Math.max(2 * maxTolerance, 1E-4);
+
+    spectra = new FilteredRowData[numSpectra];
+    signalStart = new int[numSpectra + 1];
+    signalMz = new double[numSignals];
+    signalEnergy = new double[numSignals];
+    spectrumEnergy = new double[numSpectra];
+    fingerprints = new long[numSpectra * FINGERPRINT_WORDS];
+
+    int s = 0;
+    int signal = 0;
+    for (var entry : mzSortedRows) {
+      for (FilteredRowData data : entry.getValue()) {
+        spectra[s] = data;
+        signalStart[s] = signal;
+        final double[] mzs = data.mzs();
+        final double[] intensities = data.intensities();
+        double energy = 0;
+        for (int k = 0; k < mzs.length; k++, signal++) {
+          final double weighted = Math.pow(intensities[k], weights.getIntensity()) * Math.pow(
+              mzs[k], weights.getMz());
+          signalMz[signal] = mzs[k];
+          signalEnergy[signal] = weighted * weighted;
+          energy += weighted * weighted;
+          setFingerprintBits(s, mzs[k]);
+        }
+        spectrumEnergy[s] = energy;
+        s++;
+      }
+    }
+    signalStart[numSpectra] = signal;
+
+    blockStart = createBlocks();
+  }
+
+  /**
+   * Groups consecutive rows into blocks of roughly {@link #BLOCK_BYTES} of packed data
+   */
+  private int[] createBlocks() {
+    IntArrayList starts = new IntArrayList();
+    long bytes = 0;
+    for (int i = 0; i < numRows; i++) {
+      final int firstSpectrum = rowSpectraStart[i];
+      final int lastSpectrum = rowSpectraStart[i + 1];
+      final long rowBytes = (lastSpectrum - firstSpectrum) * PER_SPECTRUM_BYTES
+                            + (signalStart[lastSpectrum] - signalStart[firstSpectrum])
+                              * PER_SIGNAL_BYTES;
+      if (starts.isEmpty() || bytes + rowBytes > BLOCK_BYTES) {
+        starts.add(i);
+        bytes = 0;
+      }
+      bytes += rowBytes;
+    }
+    starts.add(numRows);
+    return starts.toIntArray();
+  }
+
+  private void setFingerprintBits(int spectrum, double mz) {
+    final long lowerBin = (long) Math.floor((mz - maxTolerance) / binWidth);
+    final long upperBin = (long) Math.floor((mz + maxTolerance) / binWidth);
+    final int offset = spectrum * FINGERPRINT_WORDS;
+    for (long bin = lowerBin; bin <= upperBin && bin - lowerBin < FINGERPRINT_BITS; bin++) {
+      final int bit = (int) Math.floorMod(bin, FINGERPRINT_BITS);
+      fingerprints[offset + (bit >>> 6)] |= 1L << bit;
+    }
+  }
+
+  private boolean hasFingerprintBit(int offset, double mz) {
+    final int bit = (int) Math.floorMod((long) Math.floor(mz / binWidth), FINGERPRINT_BITS);
+    return (fingerprints[offset + (bit >>> 6)] & (1L << bit)) != 0;
+  }
+
+  /**
+   * Process all pairs of rows and add the spectral similarities that pass all thresholds.
+   *
+   * @param mapSimilarity  the resulting edges are added to this map
+   * @param processedPairs is incremented by the number of row pairs per finished tile
+   * @param isCanceled     stops processing of the remaining tiles
+   * @return the number of compared row pairs (within the max m/z delta)
+   */
+  long processAllPairs(@NotNull R2RMap<RowsRelationship> mapSimilarity,
+      @NotNull AtomicLong processedPairs, @NotNull BooleanSupplier isCanceled) {
+    final int numBlocks = blockStart.length - 1;
+    // create all tiles of the upper triangle, skip tiles outside the max m/z delta
+    IntArrayList tilesFirst = new IntArrayList();
+    IntArrayList tilesSecond = new IntArrayList();
+    for (int first = 0; first < numBlocks; first++) {
+      final double lastMzInFirst = rowMz[blockStart[first + 1] - 1];
+      for (int second = first; second < numBlocks; second++) {
+        if (second > first && rowMz[blockStart[second]] - lastMzInFirst > maxMzDelta) {
+          // all pairs with the remaining rows are outside the m/z delta
+          processedPairs.addAndGet(
+              (long) (blockStart[first + 1] - blockStart[first]) * (numRows
+                                                                     - blockStart[second]));
+          break;
+        }
+        tilesFirst.add(first);
+        tilesSecond.add(second);
+      }
+    }
+
+    IntStream.range(0, tilesFirst.size()).parallel().forEach(tile -> {
+      if (isCanceled.getAsBoolean()) {
+        return;
+      }
+      final int first = tilesFirst.getInt(tile);
+      final int second = tilesSecond.getInt(tile);
+      processTile(first, second, mapSimilarity);
+      processedPairs.addAndGet(countTilePairs(first, second));
+    });
+    return comparedRowPairs.sum();
+  }
+
+  private long countTilePairs(int first, int second) {
+    final long n = blockStart[first + 1] - blockStart[first];
+    if (first == second) {
+      return n * (n - 1) / 2;
+    }
+    return n * (blockStart[second + 1] - blockStart[second]);
+  }
+
+  private void processTile(int firstBlock, int secondBlock,
+      R2RMap<RowsRelationship> mapSimilarity) {
+    long compared = 0;
+    final int endI = blockStart[firstBlock + 1];
+    final int endJ = blockStart[secondBlock + 1];
+    for (int i = blockStart[firstBlock]; i < endI; i++) {
+      final int startJ = firstBlock == secondBlock ? i + 1 : blockStart[secondBlock];
+      for (int j = startJ; j < endJ; j++) {
+        // rows are sorted by m/z - stop inner loop if m/z distance is too far
+        if (maxMzDelta < rowMz[j] - rowMz[i]) {
+          break;
+        }
+        compared++;
+        checkRowsPair(i, j, mapSimilarity);
+      }
+    }
+    comparedRowPairs.add(compared);
+  }
+
+  /**
+   * Check all spectra of the two rows and add the best {@link R2RSpectralSimilarity} to
+   * mapSimilarity.
+   *
+   * @return true if relationship was added
+   */
+  private boolean checkRowsPair(int i, int j, R2RMap<RowsRelationship> mapSimilarity) {
+    SpectralSimilarity best = null;
+
+    // TODO think about ways to match the same energies against each other
+    // Maybe in a +- 15 energy range
+    // currently this just matches all scans against all scans and takes the best score
+    for (int a = rowSpectraStart[i]; a < rowSpectraStart[i + 1]; a++) {
+      for (int b = rowSpectraStart[j]; b < rowSpectraStart[j + 1]; b++) {
+        // a pair that cannot reach the thresholds can never become an edge
+        if (!isScoreReachable(a, rowMz[i], b, rowMz[j])) {
+          prunedSpectraPairs.increment();
+          continue;
+        }
+        alignedSpectraPairs.increment();
+        var result = calcSpectralSimilarity(spectra[a], rowMz[i], spectra[b], rowMz[j]);
+        if (result != null && (best == null || result.cosine() > best.cosine())) {
+          best = result;
+        }
+      }
+    }
+    if (best != null && best.cosine() >= minCosineSimilarity && best.overlap() >= minMatch) {
+      var r2r = new R2RSpectralSimilarity(rows[i], rows[j], Type.MS2_COSINE_SIM, best);
+      mapSimilarity.add(rows[i], rows[j], r2r);
+      return true;
+    }
+    return false;
+  }
+
+  private @Nullable SpectralSimilarity calcSpectralSimilarity(final FilteredRowData a,
+      double precursorMzA, final FilteredRowData b, double precursorMzB) {
+    return createMS2SimModificationAware(mzTol, weights, a.mzs(), a.intensities(), b.mzs(),
+        b.intensities(), minMatch, precursorMzA, precursorMzB);
+  }
+
+  /**
+   * Upper bound check of the number of matched signals and the cosine similarity. Uses the
+   * fingerprint of the other spectrum for both sides. Fingerprints are dilated by the maximum
+   * tolerance, which also covers the tolerance at shifted m/z values.
+   *
+   * @return false if the pair can never reach minMatch and the minimum cosine similarity
+   */
+  boolean isScoreReachable(int a, double precursorMzA, int b, double precursorMzB) {
+    final boolean modAware = precursorMzA > 0 && precursorMzB > 0;
+    return isScoreReachableOneSided(a, b, modAware ? precursorMzB - precursorMzA : 0d, modAware)
+           && isScoreReachableOneSided(b, a, modAware ? precursorMzA - precursorMzB : 0d,
+        modAware);
+  }
+
+  /**
+   * Checks all signals of spectrum against the fingerprint of the other spectrum
+   *
+   * @param delta precursor delta from spectrum to other
+   */
+  private boolean isScoreReachableOneSided(int spectrum, int other, double delta,
+      boolean modAware) {
+    final int otherOffset = other * FINGERPRINT_WORDS;
+    final int end = signalStart[spectrum + 1];
+    int matchable = 0;
+    double matchableEnergy = 0;
+    for (int k = signalStart[spectrum]; k < end; k++) {
+      final double mz = signalMz[k];
+      if (hasFingerprintBit(otherOffset, mz) || (modAware && hasFingerprintBit(otherOffset,
+          mz + delta))) {
+        matchable++;
+        matchableEnergy += signalEnergy[k];
+      }
+    }
+    if (matchable < minMatch) {
+      return false;
+    }
+    // cosine <= sqrt(matchable energy / total energy)
+    final double maxCosine = Math.sqrt(matchableEnergy / spectrumEnergy[spectrum]);
+    return maxCosine + SCORE_BOUND_SLACK >= minCosineSimilarity;
+  }
+
+  int getNumRows() {
+    return numRows;
+  }
+
+  int getNumBlocks() {
+    return blockStart.length - 1;
+  }
+
+  long getPrunedSpectraPairs() {
+    return prunedSpectraPairs.sum();
+  }
+
+  long getAlignedSpectraPairs() {
+    return alignedSpectraPairs.sum();
+  }
+}
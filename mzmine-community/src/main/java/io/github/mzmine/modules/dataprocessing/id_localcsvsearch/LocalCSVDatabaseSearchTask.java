@@ -68,6 +68,7 @@ import io.github.mzmine.taskcontrol.TaskStatus;
 import io.github.mzmine.util.CSVParsingUtils;
 import io.github.mzmine.util.FeatureListRowSorter;
 import io.github.mzmine.util.FeatureListUtils;
+import io.github.mzmine.util.collections.MzRtMobilityIndex;
 import java.io.File;
 import java.nio.file.NoSuchFileException;
 import java.time.Instant;
@@ -265,6 +266,8 @@ public class LocalCSVDatabaseSearchTask extends AbstractTask {
       // extract rows and sort by mz for binary search
       var mzSortedRows = Arrays.stream(featureLists)
           .map(flist -> flist.getRows().sorted(FeatureListRowSorter.MZ_ASCENDING)).toList();
+      // index rows once for all lines
+      var rowIndices = mzSortedRows.stream().map(FeatureListUtils::createRowIndex).toList();
 
       for (String[] currentLine : databaseValues) {
         if (finishedLines == 0) {
@@ -281,7 +284,7 @@ public class LocalCSVDatabaseSearchTask extends AbstractTask {
             continue;
           }
 
-          processOneLine(mzSortedRows, currentLine, lineIds, commentFields);
+          processOneLine(rowIndices, currentLine, lineIds, commentFields);
         } catch (Exception e) {
           logger.log(Level.FINE, "Exception while processing csv line " + finishedLines, e);
         }
@@ -357,13 +360,13 @@ public class LocalCSVDatabaseSearchTask extends AbstractTask {
   }
 
   /**
-   * @param mzSortedRows     rows per feature list sorted by mz
+   * @param rowIndices       rows per feature list indexed by mz, rt and mobility
    * @param values           csv values to be parsed into annotation
    * @param linesWithIndices columns
    * @param commentFields    comment fields that are put together into the comment
    */
   @SuppressWarnings("ResultOfMethodCallIgnored")
-  private void processOneLine(final List<SortedList<FeatureListRow>> mzSortedRows,
+  private void processOneLine(final List<MzRtMobilityIndex<FeatureListRow>> rowIndices,
       @NotNull String[] values, @NotNull List<ImportType> linesWithIndices,
       @NotNull final List<ImportType> commentFields) {
 
@@ -379,10 +382,10 @@ public class LocalCSVDatabaseSearchTask extends AbstractTask {
       var rawFiles = featureLists[i].getRawDataFiles();
       //  if active, check sample name contains id - this time for the feature list
       if (!filterSamples || matchSample(rawFiles, values[sampleColIndex])) {
-        var sortedRows = mzSortedRows.get(i);
+        var rowIndex = rowIndices.get(i);
 
         for (CompoundDBAnnotation annotation : annotations) {
-          List<FeatureListRow> candidates = binarySearchCandidates(sortedRows, annotation);
+          List<FeatureListRow> candidates = findCandidates(rowIndex, annotation);
 
           for (FeatureListRow row : candidates) {
             checkMatchAndAnnotate(annotation, row, mzTolerance, rtTolerance, mobTolerance,
@@ -394,7 +397,7 @@ public class LocalCSVDatabaseSearchTask extends AbstractTask {
   }
 
   @NotNull
-  private List<FeatureListRow> binarySearchCandidates(final SortedList<FeatureListRow> mzSortedRows,
+  private List<FeatureListRow> findCandidates(final MzRtMobilityIndex<FeatureListRow> rowIndex,
       final CompoundDBAnnotation annotation) {
     // ranges are build with prechecks - so if there is no mobility use Range.all() to deactivate the filter
     Double mz = annotation.getPrecursorMZ();
@@ -408,10 +411,9 @@ public class LocalCSVDatabaseSearchTask extends AbstractTask {
         mobTolerance != null && mobility != null ? mobTolerance.getToleranceRange(mobility)
             : Range.all();
 
-    // get all canditates with binary search
+    // get all canditates from the index
     // CCS is still missing here but will be tested later
-    return FeatureListUtils.getCandidatesWithinRanges(mzRange, rtRange, mobilityRange, mzSortedRows,
-        true);
+    return rowIndex.getWithinRanges(mzRange, rtRange, mobilityRange);
   }
 
   @NotNull
@@ -25,6 +25,7 @@
 
 package io.github.mzmine.modules.dataprocessing.id_spectral_library_match;
 
+import com.google.common.collect.Range;
 import io.github.mzmine.datamodel.DataPoint;
 import io.github.mzmine.datamodel.IMSRawDataFile;
 import io.github.mzmine.datamodel.MassList;
@@ -49,6 +50,7 @@ import io.github.mzmine.parameters.parametertypes.tolerances.PercentTolerance;
 import io.github.mzmine.parameters.parametertypes.tolerances.RTTolerance;
 import io.github.mzmine.taskcontrol.AbstractTask;
 import io.github.mzmine.util.collections.BinarySearch;
+import io.github.mzmine.util.collections.IndexRange;
 import io.github.mzmine.util.exceptions.MissingMassListException;
 import io.github.mzmine.util.scans.FragmentScanSelection;
 import io.github.mzmine.util.scans.ScanAlignment;
@@ -56,11 +58,14 @@ import io.github.mzmine.util.scans.ScanUtils;
 import io.github.mzmine.util.scans.similarity.SpectralSimilarity;
 import io.github.mzmine.util.scans.similarity.SpectralSimilarityFunction;
 import io.github.mzmine.util.scans.similarity.SpectralSimilarityFunctions;
+import io.github.mzmine.util.spectraldb.entry.CombinedLibraryEntries;
 import io.github.mzmine.util.spectraldb.entry.DBEntryField;
 import io.github.mzmine.util.spectraldb.entry.SpectralDBAnnotation;
+import io.github.mzmine.util.spectraldb.entry.SpectralLibrary;
 import io.github.mzmine.util.spectraldb.entry.SpectralLibraryEntry;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Objects;
@@ -109,6 +114,9 @@ public class RowsSpectralMatchTask extends AbstractTask {
   private boolean needsIsotopePattern;
   private int minMatchedIsoSignals;
   private double scanPrecursorMZ;
+  // fragment index of all library entries to find candidates
+  @Nullable
+  private SpectralLibraryFragmentIndex libraryIndex;
 
   public RowsSpectralMatchTask(ParameterSet parameters, @NotNull Scan scan,
       @NotNull Instant moduleCallDate) {
@@ -285,6 +293,15 @@ public class RowsSpectralMatchTask extends AbstractTask {
       return;
     }
 
+    // index all library signals to skip entries that cannot match
+    description = "Indexing %d spectral library entries".formatted(entries.size());
+    libraryIndex = new SpectralLibraryFragmentIndex(entries, mzToleranceSpectra);
+    logger.fine(() -> "Indexed %d signals of %d spectral library entries".formatted(
+        libraryIndex.getNumberOfSignals(), libraryIndex.getNumberOfEntries()));
+    if (isCanceled()) {
+      return;
+    }
+
     // run on spectra
     if (scan != null) {
       description = """
@@ -325,18 +342,29 @@ public class RowsSpectralMatchTask extends AbstractTask {
     }
   }
 
-  private @NotNull List<SpectralLibraryEntry> getSortedSpectralLibraryEntries() {
-    final List<SpectralLibraryEntry> entries = parameters.getValue(
-        SpectralLibrarySearchParameters.libraries).getMatchingLibraryEntriesAndCheckAvailability();
-    var stream = entries.stream().filter(entry -> entry.getNumberOfDataPoints() >= minMatch);
+  /**
+   * Entries of compiled libraries are only created for candidates during matching
+   */
+  private @NotNull List<SpectralLibraryEntry> getSortedSpectralLibraryEntries()
+      throws SpectralLibrarySelectionException {
+    final List<SpectralLibrary> libraries = parameters.getValue(
+        SpectralLibrarySearchParameters.libraries).getMatchingLibrariesAndCheckAvailability();
+    if (libraries.isEmpty()) {
+      throw SpectralLibrarySelectionException.forNoLibraries();
+    }
+    if (libraries.stream().allMatch(library -> library.size() == 0)) {
+      throw SpectralLibrarySelectionException.forEmptyLibraries(libraries);
+    }
 
+    final CombinedLibraryEntries entries;
     if (msLevelFilter.isFragmentationNoMS1()) {
       // remove scans without precursor mz if its MS2
       // sort by mz for binary search
-      stream = stream.filter(entry -> entry.getPrecursorMZ() != null)
-          .sorted(Comparator.comparing(SpectralLibraryEntry::getPrecursorMZ));
+      entries = CombinedLibraryEntries.sortedByPrecursorMz(libraries, minMatch);
+    } else {
+      entries = CombinedLibraryEntries.of(libraries, minMatch);
     }
-    return stream.toList();
+    return entries;
   }
 
   /**
@@ -349,8 +377,9 @@ public class RowsSpectralMatchTask extends AbstractTask {
     try {
       // filter entries first if MS2
       // MS1 is never filtered because of missing precursor mz
-      entries = binaryFindCandidateEntries(entries, ScanUtils.getPrecursorMz(scan));
-      if (entries.isEmpty()) {
+      final IndexRange entryRange = binaryFindCandidateRange(entries,
+          ScanUtils.getPrecursorMz(scan));
+      if (entryRange.isEmpty()) {
         return;
       }
 
@@ -360,7 +389,8 @@ public class RowsSpectralMatchTask extends AbstractTask {
       // get a ccs for the precursor of this scan
       final Float precursorCCS = getPrecursorCCSFromMsMs(scan);
 
-      for (var entry : entries) {
+      for (int entryIndex : findCandidates(entries, entryRange, masses)) {
+        final SpectralLibraryEntry entry = entries.get(entryIndex);
         float rt = scan.getRetentionTime();
         final SpectralSimilarity sim = matchSpectrum(rt, scanPrecursorMZ, precursorCCS, masses,
             entry);
@@ -421,8 +451,8 @@ public class RowsSpectralMatchTask extends AbstractTask {
   public int matchRowToLibraries(List<SpectralLibraryEntry> entries, FeatureListRow row) {
     try {
       // filter entries first if not MS1
-      entries = binaryFindCandidateEntries(entries, row.getAverageMZ());
-      if (entries.isEmpty()) {
+      final IndexRange entryRange = binaryFindCandidateRange(entries, row.getAverageMZ());
+      if (entryRange.isEmpty()) {
         return 0;
       }
 
@@ -442,13 +472,20 @@ public class RowsSpectralMatchTask extends AbstractTask {
         rowMassLists.add(rowMassList);
       }
 
+      // candidates for each scan are sorted by entry index
+      final int[][] scanCandidates = new int[scans.size()][];
+      for (int i = 0; i < scans.size(); i++) {
+        scanCandidates[i] = findCandidates(entries, entryRange, rowMassLists.get(i));
+      }
+
       final Float rowCCS = row.getAverageCCS();
       List<SpectralDBAnnotation> ids = null;
-      // match against all library entries
-      for (SpectralLibraryEntry ident : entries) {
+      // match against all candidate library entries
+      for (int entryIndex : SpectralLibraryFragmentIndex.union(scanCandidates)) {
         if (isCanceled()) {
           return 0;
         }
+        final SpectralLibraryEntry ident = entries.get(entryIndex);
 
         final String entryPolarity = ident.getOrElse(DBEntryField.POLARITY, null);
 
@@ -456,6 +493,10 @@ public class RowsSpectralMatchTask extends AbstractTask {
         SpectralDBAnnotation best = null;
         // match all scans against this ident to find best match
         for (int i = 0; i < scans.size(); i++) {
+          if (Arrays.binarySearch(scanCandidates[i], entryIndex) < 0) {
+            // entry cannot reach min matched signals or min score for this scan
+            continue;
+          }
           final PolarityType scanPolarity = scans.get(i).getPolarity();
           if (!weakPolarityCheck(entryPolarity, scanPolarity)) {
             // check each ms2 scan individually, maybe we have grouped pos/neg rows in the future.
@@ -503,21 +544,41 @@ public class RowsSpectralMatchTask extends AbstractTask {
    * Does no filtering in MS1 but for all other filters by precursor mz using binary search.
    *
    * @param entries         original entries will not be changed
-   * @param scanPrecursorMZ if null returns the initial entries - otherwise used as filter if not
-   *                        MS1
-   * @return either filtered sublist or the original list if no filters applicable
+   * @param scanPrecursorMZ if null returns the full range - otherwise used as filter if not MS1
+   * @return either the filtered index range or the full range if no filters applicable
    */
-  private List<SpectralLibraryEntry> binaryFindCandidateEntries(List<SpectralLibraryEntry> entries,
+  private IndexRange binaryFindCandidateRange(List<SpectralLibraryEntry> entries,
       @Nullable final Double scanPrecursorMZ) {
     if (scanPrecursorMZ == null || msLevelFilter.isMs1Only()) {
-      return entries;
+      return IndexRange.ofExclusive(0, entries.size());
     }
-    var indexRange = BinarySearch.indexRange(
-        mzTolerancePrecursor.getToleranceRange(scanPrecursorMZ), entries,
-        SpectralLibraryEntry::getPrecursorMZ);
-    // filter
-    entries = indexRange.sublist(entries);
-    return entries;
+    final Range<Double> mzRange = mzTolerancePrecursor.getToleranceRange(scanPrecursorMZ);
+    if (entries instanceof CombinedLibraryEntries combined && combined.isSortedByPrecursorMz()) {
+      // uses the precursor m/z values without creating entries
+      return combined.indexRangeOfPrecursorMz(mzRange);
+    }
+    return BinarySearch.indexRange(mzRange, entries, SpectralLibraryEntry::getPrecursorMZ);
+  }
+
+  /**
+   * Uses the fragment index to find all entries that may reach the minimum matched signals and
+   * the minimum score. Without index, all entries within the range are candidates.
+   *
+   * @param entries    all entries
+   * @param entryRange prefiltered range of entries
+   * @param query      the query mass list after filtering
+   * @return sorted entry indices
+   */
+  private int[] findCandidates(List<SpectralLibraryEntry> entries, IndexRange entryRange,
+      DataPoint[] query) {
+    if (libraryIndex == null || libraryIndex.getEntries() != entries) {
+      final int[] all = new int[entryRange.size()];
+      Arrays.setAll(all, i -> entryRange.min() + i);
+      return all;
+    }
+    // cropping changes the query norm, only use the number of matched signals then
+    return libraryIndex.findCandidates(entryRange, query, minMatch, simFunction,
+        !cropSpectraToOverlap);
   }
 
   /**
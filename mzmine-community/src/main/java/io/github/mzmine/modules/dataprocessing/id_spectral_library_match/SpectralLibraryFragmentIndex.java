@@ -0,0 +1,379 @@
+/*
+ * Copyright (c) 2004-2024 The mzmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataprocessing.id_spectral_library_match;
+
+import io.github.mzmine.datamodel.DataPoint;
+import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
+import io.github.mzmine.util.collections.IndexRange;
+import io.github.mzmine.util.scans.similarity.SpectralSimilarityFunction;
+import io.github.mzmine.util.scans.similarity.Weights;
+import io.github.mzmine.util.spectraldb.entry.CombinedLibraryEntries;
+import io.github.mzmine.util.spectraldb.entry.SpectralLibraryEntry;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Inverted index from fragment m/z bins to spectral library entries. All library signals are
+ * stored in flat primitive arrays, grouped by m/z bin. A query spectrum is looked up signal by
+ * signal to count the number of query signals that may match each library entry and the share of
+ * the weighted query intensity that can be matched at all. Both values are upper bounds of what the
+ * exact spectral alignment can find, so candidates below the minimum matched signals or below the
+ * minimum score of the {@link SpectralSimilarityFunction} are skipped without changing results.
+ * <p>
+ * The index is built on the raw library signals. All library signal filters (deisotoping,
+ * precursor removal, cropping) only remove signals, which keeps the bounds valid.
+ */
+public class SpectralLibraryFragmentIndex {
+
+  /**
+   * Default bin width in m/z. Usually covers the whole spectral m/z tolerance within 1-3 bins.
+   */
+  public static final double DEFAULT_BIN_WIDTH = 0.01;
+
+  // library m/z values are stored as float - relative rounding error is below 2^-24
+  private static final double FLOAT_RELATIVE_ERROR = 1E-7;
+  // allow small rounding errors in the score bound, never skip true matches
+  private static final double SCORE_BOUND_EPSILON = 1E-9;
+
+  private final @NotNull List<SpectralLibraryEntry> entries;
+  private final @NotNull MZTolerance mzTol;
+  private final double binWidth;
+  private final double minMz;
+  // postings of bin b are in [binStart[b], binStart[b+1])
+  private final int[] binStart;
+  private final float[] postingMz;
+  private final int[] postingEntry;
+  // reusable buffers of size numEntries - one per concurrent search
+  private final Queue<SearchBuffers> buffers = new ConcurrentLinkedQueue<>();
+
+  /**
+   * @param entries library entries. Indices in this list are used as entry ids. Entries of
+   *                {@link CombinedLibraryEntries} are not created for indexing
+   * @param mzTol   spectral m/z tolerance that is used to match signals
+   */
+  public SpectralLibraryFragmentIndex(@NotNull List<SpectralLibraryEntry> entries,
+      @NotNull MZTolerance mzTol) {
+    this(entries, mzTol, DEFAULT_BIN_WIDTH);
+  }
+
+  /**
+   * @param entries  library entries. Indices in this list are used as entry ids
+   * @param mzTol    spectral m/z tolerance that is used to match signals
+   * @param binWidth bin width in m/z
+   */
+  public SpectralLibraryFragmentIndex(@NotNull List<SpectralLibraryEntry> entries,
+      @NotNull MZTolerance mzTol, double binWidth) {
+    this.entries = entries;
+    this.mzTol = mzTol;
+    this.binWidth = binWidth;
+
+    // first pass: m/z range and number of signals
+    double min = Double.POSITIVE_INFINITY;
+    double max = Double.NEGATIVE_INFINITY;
+    long totalSignals = 0;
+    double[] mzs = new double[256];
+    for (int e = 0; e < entries.size(); e++) {
+      final int n = getNumberOfDataPoints(e);
+      mzs = ensureCapacity(mzs, n);
+      getMzValues(e, mzs);
+      for (int i = 0; i < n; i++) {
+        min = Math.min(min, mzs[i]);
+        max = Math.max(max, mzs[i]);
+      }
+      totalSignals += n;
+    }
+    if (totalSignals > Integer.MAX_VALUE - 8) {
+      throw new IllegalStateException(
+          "Too many library signals for one fragment index: " + totalSignals);
+    }
+
+    if (totalSignals == 0) {
+      minMz = 0;
+      binStart = new int[]{0, 0};
+      postingMz = new float[0];
+      postingEntry = new int[0];
+      return;
+    }
+
+    minMz = min;
+    final int numBins = binIndex(max) + 1;
+    binStart = new int[numBins + 1];
+
+    // second pass: count signals per bin
+    for (int e = 0; e < entries.size(); e++) {
+      final int n = getNumberOfDataPoints(e);
+      getMzValues(e, mzs);
+      for (int i = 0; i < n; i++) {
+        binStart[binIndex(mzs[i]) + 1]++;
+      }
+    }
+    for (int b = 0; b < numBins; b++) {
+      binStart[b + 1] += binStart[b];
+    }
+
+    // third pass: fill postings. Entries are added in order so that each bin is sorted by entry
+    postingMz = new float[(int) totalSignals];
+    postingEntry = new int[(int) totalSignals];
+    final int[] nextPosting = Arrays.copyOf(binStart, numBins);
+    for (int e = 0; e < entries.size(); e++) {
+      final int n = getNumberOfDataPoints(e);
+      getMzValues(e, mzs);
+      for (int i = 0; i < n; i++) {
+        final int p = nextPosting[binIndex(mzs[i])]++;
+        postingMz[p] = (float) mzs[i];
+        postingEntry[p] = e;
+      }
+    }
+  }
+
+  /**
+   * Reads {@link CombinedLibraryEntries} without creating entries
+   */
+  private int getNumberOfDataPoints(int entry) {
+    return entries instanceof CombinedLibraryEntries combined ? combined.getNumberOfDataPoints(entry)
+        : entries.get(entry).getNumberOfDataPoints();
+  }
+
+  private void getMzValues(int entry, double[] dst) {
+    if (entries instanceof CombinedLibraryEntries combined) {
+      combined.getMzValues(entry, dst);
+    } else {
+      entries.get(entry).getMzValues(dst);
+    }
+  }
+
+  private static double[] ensureCapacity(double[] array, int size) {
+    return array.length >= size ? array : new double[Math.max(size, array.length * 2)];
+  }
+
+  private int binIndex(double mz) {
+    return (int) ((mz - minMz) / binWidth);
+  }
+
+  /**
+   * @return number of indexed library entries
+   */
+  public int getNumberOfEntries() {
+    return entries.size();
+  }
+
+  /**
+   * @return number of indexed library signals
+   */
+  public int getNumberOfSignals() {
+    return postingMz.length;
+  }
+
+  /**
+   * @return the indexed entries
+   */
+  public @NotNull List<SpectralLibraryEntry> getEntries() {
+    return entries;
+  }
+
+  /**
+   * Finds all library entries within the entry index range that may reach the minimum number of
+   * matched signals and the minimum score of the similarity function.
+   *
+   * @param entryRange      only entries within this index range are considered (e.g., after
+   *                        precursor m/z filtering of the sorted entries)
+   * @param query           query signals after all filtering steps
+   * @param minMatch        minimum number of matched signals
+   * @param simFunction     used for score bounds. Null to only filter by matched signals
+   * @param useScoreBound   false if the query is changed before matching (e.g., cropping to the
+   *                        m/z overlap) which invalidates score bounds
+   * @return sorted ascending indices of candidate entries
+   */
+  public int[] findCandidates(@NotNull IndexRange entryRange, @NotNull DataPoint[] query,
+      int minMatch, @Nullable SpectralSimilarityFunction simFunction, boolean useScoreBound) {
+    if (entryRange.isEmpty()) {
+      return new int[0];
+    }
+    final int from = entryRange.min();
+    final int to = entryRange.maxExclusive();
+
+    // weighted query intensities for the score bound
+    final Weights weights =
+        useScoreBound && simFunction != null ? simFunction.getCosineWeights() : null;
+    final double[] squaredWeighted = new double[query.length];
+    double totalSquaredWeighted = 0;
+    if (weights != null) {
+      for (int q = 0; q < query.length; q++) {
+        final double w = weights.apply(query[q]);
+        squaredWeighted[q] = w * w;
+        totalSquaredWeighted += squaredWeighted[q];
+      }
+    }
+
+    final SearchBuffers buf = acquireBuffers();
+    try {
+      int touched = 0;
+      for (int q = 0; q < query.length; q++) {
+        final double mz = query[q].getMZ();
+        // library signal defines the ppm tolerance - widen the window and check exact later
+        final double halfWindow = mzTol.getMzToleranceForMass(mz * 1.001)
+                                  + mz * FLOAT_RELATIVE_ERROR * 2;
+        final int firstBin = Math.max(0, binIndex(mz - halfWindow));
+        final int lastBin = Math.min(binStart.length - 2, binIndex(mz + halfWindow));
+        for (int b = firstBin; b <= lastBin; b++) {
+          for (int p = binStart[b]; p < binStart[b + 1]; p++) {
+            final int e = postingEntry[p];
+            if (e < from || e >= to || buf.lastQuery[e] == q) {
+              continue;
+            }
+            final double libMz = postingMz[p];
+            final double tolerance =
+                mzTol.getMzToleranceForMass(libMz) + libMz * FLOAT_RELATIVE_ERROR * 2;
+            if (Math.abs(libMz - mz) > tolerance) {
+              continue;
+            }
+            // each query signal is counted once per entry
+            buf.lastQuery[e] = q;
+            if (buf.counts[e] == 0) {
+              buf.touched[touched++] = e;
+            }
+            buf.counts[e]++;
+            buf.matchedSquaredWeighted[e] += squaredWeighted[q];
+          }
+        }
+      }
+
+      final int[] candidates;
+      if (minMatch <= 0) {
+        // entries without any matching signal might still be candidates
+        candidates = new int[to - from];
+        int n = 0;
+        for (int e = from; e < to; e++) {
+          if (isCandidate(buf, e, minMatch, simFunction, weights, query.length,
+              totalSquaredWeighted)) {
+            candidates[n++] = e;
+          }
+        }
+        resetBuffers(buf, touched);
+        return Arrays.copyOf(candidates, n);
+      }
+
+      Arrays.sort(buf.touched, 0, touched);
+      int[] sorted = new int[touched];
+      int n = 0;
+      for (int i = 0; i < touched; i++) {
+        final int e = buf.touched[i];
+        if (isCandidate(buf, e, minMatch, simFunction, weights, query.length,
+            totalSquaredWeighted)) {
+          sorted[n++] = e;
+        }
+      }
+      candidates = n == touched ? sorted : Arrays.copyOf(sorted, n);
+      resetBuffers(buf, touched);
+      return candidates;
+    } finally {
+      buffers.offer(buf);
+    }
+  }
+
+  private boolean isCandidate(SearchBuffers buf, int e, int minMatch,
+      @Nullable SpectralSimilarityFunction simFunction, @Nullable Weights weights, int queryN,
+      double totalSquaredWeighted) {
+    final int maxOverlap = buf.counts[e];
+    if (maxOverlap < minMatch) {
+      return false;
+    }
+    if (simFunction == null) {
+      return true;
+    }
+    // fraction of the weighted query vector that can be matched at all
+    final double matchableFraction =
+        weights == null || totalSquaredWeighted <= 0 ? 1d : Math.min(1d,
+            Math.sqrt(buf.matchedSquaredWeighted[e] / totalSquaredWeighted)
+            + SCORE_BOUND_EPSILON);
+    return simFunction.isScoreReachable(maxOverlap, queryN, matchableFraction);
+  }
+
+  /**
+   * Sets all used values back to defaults. Only the touched entries were changed
+   */
+  private void resetBuffers(SearchBuffers buf, int touched) {
+    for (int i = 0; i < touched; i++) {
+      final int e = buf.touched[i];
+      buf.counts[e] = 0;
+      buf.matchedSquaredWeighted[e] = 0;
+      buf.lastQuery[e] = -1;
+    }
+  }
+
+  private SearchBuffers acquireBuffers() {
+    final SearchBuffers buf = buffers.poll();
+    return buf != null ? buf : new SearchBuffers(entries.size());
+  }
+
+  /**
+   * Merges sorted candidate arrays into one sorted array of unique indices
+   *
+   * @param candidates sorted ascending arrays
+   * @return union of all indices sorted ascending
+   */
+  public static int[] union(int[][] candidates) {
+    final int total = Arrays.stream(candidates).mapToInt(c -> c.length).sum();
+    final int[] all = new int[total];
+    int n = 0;
+    for (int[] c : candidates) {
+      System.arraycopy(c, 0, all, n, c.length);
+      n += c.length;
+    }
+    Arrays.sort(all);
+    // remove duplicates in place
+    int unique = 0;
+    for (int i = 0; i < total; i++) {
+      if (unique == 0 || all[unique - 1] != all[i]) {
+        all[unique++] = all[i];
+      }
+    }
+    return Arrays.copyOf(all, unique);
+  }
+
+  /**
+   * Buffers for one search. Values are kept at 0 (and lastQuery at -1) between searches.
+   */
+  private static class SearchBuffers {
+
+    private final int[] counts;
+    private final int[] lastQuery;
+    private final double[] matchedSquaredWeighted;
+    private final int[] touched;
+
+    private SearchBuffers(int numEntries) {
+      counts = new int[numEntries];
+      lastQuery = new int[numEntries];
+      Arrays.fill(lastQuery, -1);
+      matchedSquaredWeighted = new double[numEntries];
+      touched = new int[numEntries];
+    }
+  }
+}
@@ -64,9 +64,17 @@ public class AdvancedSpectraImportParameters extends SimpleParameterSet {
       This reduces the intensity differences between spectra acquired with different injection times
       and reverts to "raw" intensities.""", false);
 
+  public static final BooleanParameter lazyRawData = new BooleanParameter("Lazy raw data (mzML)",
+      """
+          Only store the mass lists of scans with mass detection (advanced detectors above).
+          The raw data points are decoded on demand from the original mzML file instead of storing a copy.
+          This reduces the temporary disk space and import time but the mzML file needs to stay in place.
+          Raw data is read as it is in the file, without cropping and denormalization.""", false);
+
 
   public AdvancedSpectraImportParameters() {
-    super(scanFilter, mzRange, msMassDetection, ms2MassDetection, denormalizeMSnScans);
+    super(scanFilter, mzRange, msMassDetection, ms2MassDetection, denormalizeMSnScans,
+        lazyRawData);
   }
 
   /**
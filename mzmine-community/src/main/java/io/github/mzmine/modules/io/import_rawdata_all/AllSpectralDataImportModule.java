@@ -127,7 +127,9 @@ public class AllSpectralDataImportModule implements MZmineProcessingModule {
     }
 
     var scanFilter = advanced.getValue(AdvancedSpectraImportParameters.scanFilter);
-    var conf = new ScanImportProcessorConfig(scanFilter, new MsProcessorList(processors));
+    boolean lazyRawData = advanced.getValue(AdvancedSpectraImportParameters.lazyRawData);
+    var conf = new ScanImportProcessorConfig(scanFilter, new MsProcessorList(processors),
+        lazyRawData);
     logger.info("Data import uses advanced direct data processing with these settings:\n" + conf);
     return conf;
   }
@@ -43,11 +43,22 @@ public final class ScanImportProcessorConfig {
   private final MsProcessorList processor;
   private final boolean ms1MassDetectActive;
   private final boolean ms2MassDetectActive;
+  private final boolean lazyRawData;
 
   public ScanImportProcessorConfig(final ScanSelection scanFilter,
       final MsProcessorList processor) {
+    this(scanFilter, processor, false);
+  }
+
+  /**
+   * @param lazyRawData only store the mass lists of scans with mass detection and decode their raw
+   *                    data on demand from the source file (if supported by the format)
+   */
+  public ScanImportProcessorConfig(final ScanSelection scanFilter,
+      final MsProcessorList processor, final boolean lazyRawData) {
     this.scanFilter = scanFilter;
     this.processor = processor;
+    this.lazyRawData = lazyRawData;
     Optional<MassDetectorMsProcessor> md = processor.findFirst(MassDetectorMsProcessor.class);
     ms1MassDetectActive = md.isPresent() && md.get().isMs1Active();
     ms2MassDetectActive = md.isPresent() && md.get().isMsnActive();
@@ -67,8 +78,9 @@ public final class ScanImportProcessorConfig {
 
   @Override
   public String toString() {
-    return "ScanImportProcessorConfig: scanFilter=%s\napplyMassDetection: MS1=%s; MS2..n=%s\n%s".formatted(
-        scanFilter, ms1MassDetectActive, ms2MassDetectActive, processor.description());
+    return "ScanImportProcessorConfig: scanFilter=%s\napplyMassDetection: MS1=%s; MS2..n=%s; lazy raw data=%s\n%s".formatted(
+        scanFilter, ms1MassDetectActive, ms2MassDetectActive, lazyRawData,
+        processor.description());
   }
 
   public ScanSelection scanFilter() {
@@ -83,6 +95,18 @@ public final class ScanImportProcessorConfig {
     return (msLevel <= 1 && ms1MassDetectActive) || (msLevel > 1 && ms2MassDetectActive);
   }
 
+  /**
+   * @return true if only the mass list is stored and the raw data is decoded on demand from the
+   * source file. Requires mass detection for this MS level.
+   */
+  public boolean isLazyRawData(int msLevel) {
+    return lazyRawData && isMassDetectActive(msLevel);
+  }
+
+  public boolean isLazyRawData() {
+    return lazyRawData;
+  }
+
   @Override
   public boolean equals(Object obj) {
     if (obj == this) {
@@ -94,12 +118,14 @@ public final class ScanImportProcessorConfig {
     var that = (ScanImportProcessorConfig) obj;
     return Objects.equals(this.scanFilter, that.scanFilter) && Objects.equals(this.processor,
         that.processor) && Objects.equals(this.ms1MassDetectActive, that.ms1MassDetectActive)
-           && Objects.equals(this.ms2MassDetectActive, that.ms2MassDetectActive);
+           && Objects.equals(this.ms2MassDetectActive, that.ms2MassDetectActive)
+           && this.lazyRawData == that.lazyRawData;
   }
 
   @Override
   public int hashCode() {
-    return Objects.hash(scanFilter, processor, ms1MassDetectActive, ms2MassDetectActive);
+    return Objects.hash(scanFilter, processor, ms1MassDetectActive, ms2MassDetectActive,
+        lazyRawData);
   }
 
 
@@ -40,6 +40,8 @@ import io.github.mzmine.datamodel.features.types.otherdectectors.PolarityTypeTyp
 import io.github.mzmine.datamodel.impl.DDAMsMsInfoImpl;
 import io.github.mzmine.datamodel.impl.SimpleDataPoint;
 import io.github.mzmine.datamodel.impl.SimpleScan;
+import io.github.mzmine.datamodel.impl.SourceBackedScan;
+import io.github.mzmine.datamodel.impl.masslist.SimpleMassList;
 import io.github.mzmine.datamodel.msms.ActivationMethod;
 import io.github.mzmine.datamodel.msms.MsMsInfo;
 import io.github.mzmine.datamodel.msms.PasefMsMsInfo;
@@ -291,6 +293,24 @@ public class ConversionUtils {
     return newScan;
   }
 
+  /**
+   * Creates a {@link SourceBackedScan} from a lazy raw data scan. The raw data is decoded on demand
+   * from the mzML file and the memory mapped data of the mzML scan becomes the mass list.
+   *
+   * @param scan a scan with {@link BuildingMzMLMsScan#isLazyRawData()}
+   * @return a {@link SourceBackedScan} with mass list
+   */
+  public static Scan mzmlScanToSourceBackedScan(RawDataFile rawDataFile, BuildingMzMLMsScan scan) {
+    final SourceBackedScan newScan = new SourceBackedScan(rawDataFile, scan.getScanNumber(),
+        scan.getMSLevel(), scan.getRetentionTime(), scan.getMsMsInfo(), scan.getSpectrumType(),
+        scan.getPolarity(), scan.getScanDefinition(), scan.getScanningMZRange(),
+        scan.getInjectionTime(), Objects.requireNonNull(scan.getLazySource()),
+        scan.getLazySourceIndex(), Objects.requireNonNull(scan.getLazyDataSummary()));
+    newScan.addMassList(new SimpleMassList(scan.getDoubleBufferMzValues(),
+        scan.getDoubleBufferIntensityValues()));
+    return newScan;
+  }
+
   /**
    * Builds precursor info based on the current scan. If a new Precursors was detected, a new
    * element is added to the list parameter.
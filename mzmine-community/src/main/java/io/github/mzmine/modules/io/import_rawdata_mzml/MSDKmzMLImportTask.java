@@ -49,8 +49,10 @@ import io.github.mzmine.modules.io.import_rawdata_all.spectral_processor.ScanImp
 import io.github.mzmine.modules.io.import_rawdata_mzml.msdk.data.BuildingMobilityScanStorage;
 import io.github.mzmine.modules.io.import_rawdata_mzml.msdk.data.BuildingMzMLMobilityScan;
 import io.github.mzmine.modules.io.import_rawdata_mzml.msdk.data.BuildingMzMLMsScan;
+import io.github.mzmine.modules.io.import_rawdata_mzml.msdk.data.MzMLIndexedReader;
 import io.github.mzmine.modules.io.import_rawdata_mzml.msdk.data.MzMLParser;
 import io.github.mzmine.modules.io.import_rawdata_mzml.msdk.data.MzMLRawDataFile;
+import io.github.mzmine.modules.io.import_rawdata_mzml.msdk.data.MzMLSpectralDataSource;
 import io.github.mzmine.parameters.ParameterSet;
 import io.github.mzmine.project.impl.IMSRawDataFileImpl;
 import io.github.mzmine.project.impl.RawDataFileImpl;
@@ -116,6 +118,8 @@ public class MSDKmzMLImportTask extends AbstractTask implements RawDataImportTas
   private String description;
 
   private MzMLParser parser;
+  // decodes raw data on demand in lazy raw data mode
+  private @Nullable MzMLSpectralDataSource lazyRawDataSource;
   private RawDataFileImpl newMZmineFile;
 
   /**
@@ -291,6 +295,10 @@ public class MSDKmzMLImportTask extends AbstractTask implements RawDataImportTas
 
   @NotNull
   private Scan convertScan(final BuildingMzMLMsScan mzMLScan, final RawDataFileImpl newMZmineFile) {
+    if (mzMLScan.isLazyRawData()) {
+      // raw data is read from the mzML file on demand, only the mass list is stored
+      return ConversionUtils.mzmlScanToSourceBackedScan(newMZmineFile, mzMLScan);
+    }
     // might not be centroided if mass detection was off
     if (scanProcessorConfig.isMassDetectActive(mzMLScan.getMSLevel())) {
       Scan scan = ConversionUtils.mzmlScanToSimpleScan(newMZmineFile, mzMLScan,
@@ -564,6 +572,14 @@ public class MSDKmzMLImportTask extends AbstractTask implements RawDataImportTas
           return parseMzMlInternal(xmlStreamReader);
         }
       } else if (file != null) {
+        lazyRawDataSource = openLazyRawDataSource();
+        if (MzMLIndexedReader.canSkipSpectra(scanProcessorConfig.scanFilter())) {
+          // only parse the selected spectra
+          final MzMLRawDataFile indexed = parseMzMlIndexed(factory);
+          if (indexed != null || isCanceled()) {
+            return indexed;
+          }
+        }
         logger.finest("Began parsing file: " + file.getAbsolutePath());
         // buffered reader had no performance gains. most likely because the XMLStreamReader already buffers
 //        try (BufferedReader br = Files.newBufferedReader(mzMLFile.toPath(),
@@ -580,9 +596,70 @@ public class MSDKmzMLImportTask extends AbstractTask implements RawDataImportTas
     }
   }
 
+  /**
+   * Lazy raw data mode only stores mass lists and decodes the raw data from the mzML file on demand
+   *
+   * @return the source or null if lazy raw data is off or the file cannot be mapped
+   */
+  private @Nullable MzMLSpectralDataSource openLazyRawDataSource() {
+    if (!scanProcessorConfig.isLazyRawData()) {
+      return null;
+    }
+    try {
+      return MzMLSpectralDataSource.open(file);
+    } catch (IOException | RuntimeException e) {
+      logger.log(Level.WARNING,
+          "Cannot map mzML file %s for lazy raw data, storing all raw data instead".formatted(file),
+          e);
+      return null;
+    }
+  }
+
+  private MzMLParser createParser() {
+    final MzMLParser mzMLParser = new MzMLParser(this, storage, scanProcessorConfig);
+    mzMLParser.setLazyRawDataSource(lazyRawDataSource);
+    return mzMLParser;
+  }
+
+  /**
+   * Random access import of the spectra selected by scan number or retention time
+   *
+   * @return the parsed file or null if the file cannot be mapped or indexed
+   */
+  private @Nullable MzMLRawDataFile parseMzMlIndexed(InputFactoryImpl factory) {
+    final MzMLIndexedReader indexedReader;
+    try {
+      indexedReader = new MzMLIndexedReader(file, factory);
+    } catch (IOException | RuntimeException e) {
+      logger.log(Level.WARNING,
+          "Cannot index mzML file %s, parsing the whole file instead".formatted(file), e);
+      return null;
+    }
+
+    logger.finest("Began parsing indexed file: " + file.getAbsolutePath());
+    // createParser may fail, do not close the parser of an earlier import
+    this.parser = null;
+    try (indexedReader) {
+      this.parser = createParser();
+      indexedReader.parse(parser, scanProcessorConfig.scanFilter(), this::isCanceled);
+      if (isCanceled()) {
+        return null;
+      }
+      logger.finest("Parsing Complete");
+      return parser.getMzMLRawFile();
+    } catch (IOException | DataFormatException | XMLStreamException e) {
+      throw new RuntimeException(e);
+    } finally {
+      if (parser != null) {
+        // stop decoding threads
+        parser.close();
+      }
+    }
+  }
+
   private MzMLRawDataFile parseMzMlInternal(XMLStreamReader xmlStreamReader) throws MSDKException {
     try {
-      this.parser = new MzMLParser(this, storage, scanProcessorConfig);
+      this.parser = createParser();
 
       int eventType;
       try {
@@ -617,11 +694,16 @@ public class MSDKmzMLImportTask extends AbstractTask implements RawDataImportTas
         throw new RuntimeException(e);
       }
       logger.finest("Parsing Complete");
+      return parser.getMzMLRawFile();
     } catch (IOException e) {
       logger.log(Level.WARNING, "Error while loading mzML/RAW file " + e.getMessage(), e);
       throw (new MSDKException(e));
+    } finally {
+      if (parser != null) {
+        // stop decoding threads
+        parser.close();
+      }
     }
-    return parser.getMzMLRawFile();
   }
 
   public File getMzMLFile() {
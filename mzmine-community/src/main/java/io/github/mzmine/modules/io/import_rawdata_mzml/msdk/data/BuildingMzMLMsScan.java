@@ -42,6 +42,7 @@ import io.github.mzmine.datamodel.RawDataFile;
 import io.github.mzmine.datamodel.featuredata.impl.StorageUtils;
 import io.github.mzmine.datamodel.impl.DDAMsMsInfoImpl;
 import io.github.mzmine.datamodel.impl.MSnInfoImpl;
+import io.github.mzmine.datamodel.impl.SourceBackedScan.DataSummary;
 import io.github.mzmine.datamodel.msms.ActivationMethod;
 import io.github.mzmine.datamodel.msms.DDAMsMsInfo;
 import io.github.mzmine.datamodel.msms.DIAMsMsInfoImpl;
@@ -52,6 +53,8 @@ import io.github.mzmine.modules.io.import_rawdata_all.spectral_processor.SimpleS
 import io.github.mzmine.util.DataPointUtils;
 import io.github.mzmine.util.MemoryMapStorage;
 import io.github.mzmine.util.RangeUtils;
+import io.github.mzmine.util.concurrent.OrderedCommitPipeline;
+import io.github.mzmine.util.scans.ScanUtils;
 import java.io.IOException;
 import java.lang.foreign.MemorySegment;
 import java.util.ArrayList;
@@ -112,6 +115,14 @@ public class BuildingMzMLMsScan extends MetadataOnlyScan {
   // mobility scans are memory mapped later
   private @Nullable SimpleSpectralArrays mobilityScanSimpleSpectralData;
 
+  // lazy raw data: mzValues and intensityValues hold the mass list and the raw data points are
+  // decoded on demand from the source file
+  private @Nullable MzMLBinaryDataInfo lazyMzInfo;
+  private @Nullable MzMLBinaryDataInfo lazyIntensityInfo;
+  private @Nullable DataSummary lazyDataSummary;
+  private @Nullable MzMLSpectralDataSource lazySource;
+  private int lazySourceIndex = -1;
+
 
   /**
    * @param id              the Scan ID
@@ -632,11 +643,28 @@ public class BuildingMzMLMsScan extends MetadataOnlyScan {
    */
   public boolean loadProcessMemMapMzData(final MemoryMapStorage storage,
       final @NotNull ScanImportProcessorConfig config) {
+    final SimpleSpectralArrays specData = loadProcessMzData(config);
+    if (specData == null) {
+      return false;
+    }
+    memMapMzData(storage, specData);
+    return true;
+  }
+
+  /**
+   * Decode and process the data points. Does not access the storage and may run in a worker thread
+   * of the {@link OrderedCommitPipeline}, followed by {@link #memMapMzData(MemoryMapStorage,
+   * SimpleSpectralArrays)} in the parser thread.
+   *
+   * @return the processed data or null if no data was loaded
+   */
+  public @Nullable SimpleSpectralArrays loadProcessMzData(
+      final @NotNull ScanImportProcessorConfig config) {
     try {
       SimpleSpectralArrays specData = loadMzData();
       if (specData == null) {
         // may be null for UV spectra
-        return false;
+        return null;
       }
 
       // process and filter - needs metadata so wrap
@@ -646,22 +674,111 @@ public class BuildingMzMLMsScan extends MetadataOnlyScan {
         // after mass detection we have a centroid scan
         spectrumType = MassSpectrumType.CENTROIDED;
       }
+      return specData;
+    } catch (MSDKException | IOException e) {
+      logger.warning("Could not load data of scan #%d".formatted(getScanNumber()));
+      return null;
+    }
+  }
 
-      if (getMobility() != null) {
-        // cannot memory map mobility scan data as we need to do this later all mobility scans at once
-        mobilityScanSimpleSpectralData = specData;
-      } else {
-        // memory map regular scan data but not mobility scans
-        this.mzValues = StorageUtils.storeValuesToDoubleBuffer(storage, specData.mzs());
-        this.intensityValues = StorageUtils.storeValuesToDoubleBuffer(storage,
-            specData.intensities());
-      }
+  /**
+   * Memory map the processed data. Mobility scans keep their data until all mobility scans of a
+   * frame are memory mapped together.
+   */
+  public void memMapMzData(final MemoryMapStorage storage,
+      final @NotNull SimpleSpectralArrays specData) {
+    if (getMobility() != null) {
+      // cannot memory map mobility scan data as we need to do this later all mobility scans at once
+      mobilityScanSimpleSpectralData = specData;
+    } else {
+      // memory map regular scan data but not mobility scans
+      this.mzValues = StorageUtils.storeValuesToDoubleBuffer(storage, specData.mzs());
+      this.intensityValues = StorageUtils.storeValuesToDoubleBuffer(storage,
+          specData.intensities());
+    }
+  }
 
+  /**
+   * Decode the raw data points once to summarize them and process them into the mass list. The raw
+   * data points are not kept, they are decoded on demand from the source file, see
+   * {@link #memMapLazyMzData(MemoryMapStorage, MzMLSpectralDataSource, int, SimpleSpectralArrays)}.
+   * Requires mass detection for the MS level of this scan. May run in a worker thread of the
+   * {@link OrderedCommitPipeline}.
+   *
+   * @return the processed data (mass list) or null if no data was loaded
+   */
+  public @Nullable SimpleSpectralArrays loadProcessLazyMzData(
+      final @NotNull ScanImportProcessorConfig config) {
+    lazyMzInfo = mzBinaryDataInfo;
+    lazyIntensityInfo = intensityBinaryDataInfo;
+    try {
+      SimpleSpectralArrays rawData = loadMzData();
+      if (rawData == null) {
+        return null;
+      }
+      rawData = DataPointUtils.ensureSortingMzAscendingDefault(rawData);
+      lazyDataSummary = DataSummary.of(rawData);
+      // raw spectrum type, the mass list is centroided
+      if (getSpectrumType() == null) {
+        spectrumType = ScanUtils.detectSpectrumType(rawData.mzs(), rawData.intensities());
+      }
+      tic = lazyDataSummary.tic();
+      mzRange = lazyDataSummary.mzRange();
+      return config.processor().processScan(this, rawData);
     } catch (MSDKException | IOException e) {
       logger.warning("Could not load data of scan #%d".formatted(getScanNumber()));
-      return false;
+      return null;
     }
-    return true;
+  }
+
+  /**
+   * Registers this scan in the source for on demand decoding of the raw data and memory maps the
+   * mass list. Falls back to memory mapping the raw data if the spectrum is not found in the file
+   * index.
+   *
+   * @param indexHint the index attribute of the spectrum element
+   * @param masses    the mass list from
+   *                  {@link #loadProcessLazyMzData(ScanImportProcessorConfig)}
+   */
+  public void memMapLazyMzData(final MemoryMapStorage storage,
+      final @NotNull MzMLSpectralDataSource source, final int indexHint,
+      final @NotNull SimpleSpectralArrays masses) {
+    this.mzValues = StorageUtils.storeValuesToDoubleBuffer(storage, masses.mzs());
+    this.intensityValues = StorageUtils.storeValuesToDoubleBuffer(storage, masses.intensities());
+    if (lazyMzInfo != null && lazyIntensityInfo != null) {
+      lazySourceIndex = source.register(id, indexHint, lazyMzInfo, lazyIntensityInfo);
+    }
+    if (lazySourceIndex >= 0) {
+      lazySource = source;
+    } else {
+      // same as regular import with mass detection
+      spectrumType = MassSpectrumType.CENTROIDED;
+    }
+    lazyMzInfo = null;
+    lazyIntensityInfo = null;
+  }
+
+  /**
+   * @return true if the raw data is decoded on demand from the source file and the memory mapped
+   * data is the mass list
+   */
+  public boolean isLazyRawData() {
+    return lazySource != null;
+  }
+
+  public @Nullable MzMLSpectralDataSource getLazySource() {
+    return lazySource;
+  }
+
+  public int getLazySourceIndex() {
+    return lazySourceIndex;
+  }
+
+  /**
+   * @return summary of the raw data if this scan uses lazy raw data
+   */
+  public @Nullable DataSummary getLazyDataSummary() {
+    return lazyDataSummary;
   }
 
   /**
@@ -670,11 +787,27 @@ public class BuildingMzMLMsScan extends MetadataOnlyScan {
    */
   public BuildingMobilityScanStorage loadProccessMemMapMzDataForMergedMobilityScan(
       MemoryMapStorage storage, @NotNull ScanImportProcessorConfig config) {
+    return memMapMergedMobilityScans(storage, loadProcessMergedMobilityScans(config));
+  }
+
+  /**
+   * Decode, split and process the merged mobility scans. May run in a worker thread.
+   */
+  public @NotNull List<MobilitySpectralArrays> loadProcessMergedMobilityScans(
+      @NotNull ScanImportProcessorConfig config) {
     final List<MobilitySpectralArrays> processedMobilityScanData = splitMergedMobilityScans().stream()
         .map(msa -> msa.process(this, config)).toList();
     if (config.isMassDetectActive(getMSLevel())) {
       spectrumType = MassSpectrumType.CENTROIDED;
     }
+    return processedMobilityScanData;
+  }
+
+  /**
+   * Memory map the processed mobility scans of a merged mobility scan
+   */
+  public @NotNull BuildingMobilityScanStorage memMapMergedMobilityScans(MemoryMapStorage storage,
+      @NotNull List<MobilitySpectralArrays> processedMobilityScanData) {
     final BuildingMobilityScanStorage buildingMobilityScanStorage = new BuildingMobilityScanStorage(
         storage, this, processedMobilityScanData);
     clearUnusedData();
@@ -797,21 +930,33 @@ public class BuildingMzMLMsScan extends MetadataOnlyScan {
    */
   public boolean loadProcessMemMapUvData(final MemoryMapStorage storage,
       final @NotNull ScanImportProcessorConfig config) {
-    try {
-      SimpleSpectralArrays specData = loadUVData();
-      if (specData == null) {
-        return false;
-      }
-
-      this.wavelengthValues = StorageUtils.storeValuesToDoubleBuffer(storage, specData.mzs());
-      this.intensityValues = StorageUtils.storeValuesToDoubleBuffer(storage,
-          specData.intensities());
+    final SimpleSpectralArrays specData = loadUvDataOrNull();
+    if (specData == null) {
+      return false;
+    }
+    memMapUvData(storage, specData);
+    return true;
+  }
 
+  /**
+   * Decode the UV data. May run in a worker thread.
+   *
+   * @return the wavelengths as mz and intensities or null if no data was loaded
+   */
+  public @Nullable SimpleSpectralArrays loadUvDataOrNull() {
+    try {
+      return loadUVData();
     } catch (MSDKException | IOException e) {
       logger.warning("Could not load data of scan #%d".formatted(getScanNumber()));
-      return false;
+      return null;
     }
-    return true;
+  }
+
+  public void memMapUvData(final MemoryMapStorage storage,
+      final @NotNull SimpleSpectralArrays specData) {
+    this.wavelengthValues = StorageUtils.storeValuesToDoubleBuffer(storage, specData.mzs());
+    this.intensityValues = StorageUtils.storeValuesToDoubleBuffer(storage,
+        specData.intensities());
   }
 
   /**
@@ -42,6 +42,8 @@ public class MzMLBinaryDataInfo {
   // the binary text content
   private String xmlBinaryContent;
   private String unitAccession;
+  // index of the binaryDataArray in its spectrum
+  private int arrayIndex = -1;
 
   /**
    * <p>
@@ -218,4 +220,16 @@ public class MzMLBinaryDataInfo {
   public void setUnitAccession(String unitAccession) {
     this.unitAccession = unitAccession;
   }
+
+  /**
+   * @return the index of this binaryDataArray in the binaryDataArrayList of its spectrum or -1 if
+   * not set
+   */
+  public int getArrayIndex() {
+    return arrayIndex;
+  }
+
+  public void setArrayIndex(int arrayIndex) {
+    this.arrayIndex = arrayIndex;
+  }
 }
@@ -0,0 +1,283 @@
+/*
+ * Copyright (c) 2004-2024 The mzmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package io.github.mzmine.modules.io.import_rawdata_mzml.msdk.data;
+
+import io.github.mzmine.modules.io.import_rawdata_mzml.msdk.util.MemorySegmentInputStream;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Byte offsets of all spectrum and chromatogram elements in an mzML file. Uses the
+ * {@code <indexList>} of indexedmzML files if present and valid, otherwise the offsets are found by
+ * a single byte scan over the file.
+ */
+public final class MzMLIndex {
+
+  private static final Logger logger = Logger.getLogger(MzMLIndex.class.getName());
+  private static final Pattern indexListOffsetPattern = Pattern.compile(
+      "<" + MzMLTags.TAG_INDEX_LIST_OFFSET + ">\\s*(\\d+)\\s*</" + MzMLTags.TAG_INDEX_LIST_OFFSET
+      + ">");
+  // the index list offset is at the end of the file
+  private static final int TAIL_BYTES = 4096;
+  private static final byte[] SPECTRUM_TAG = ("<" + MzMLTags.TAG_SPECTRUM).getBytes(
+      StandardCharsets.US_ASCII);
+  private static final byte[] CHROMATOGRAM_TAG = ("<" + MzMLTags.TAG_CHROMATOGRAM).getBytes(
+      StandardCharsets.US_ASCII);
+  private static final byte[] ID_ATTR = (" " + MzMLTags.ATTR_ID + "=\"").getBytes(
+      StandardCharsets.US_ASCII);
+
+  private final long[] spectrumOffsets;
+  private final String[] spectrumIds;
+  private final long[] chromatogramOffsets;
+  private final boolean fromIndexList;
+  // lazily created if spectra are not found by their index
+  private Object2IntOpenHashMap<String> idToIndex;
+
+  private MzMLIndex(long[] spectrumOffsets, String[] spectrumIds, long[] chromatogramOffsets,
+      boolean fromIndexList) {
+    this.spectrumOffsets = spectrumOffsets;
+    this.spectrumIds = spectrumIds;
+    this.chromatogramOffsets = chromatogramOffsets;
+    this.fromIndexList = fromIndexList;
+  }
+
+  /**
+   * @param file the whole mzML file
+   * @return the index from the index list or from a byte scan
+   */
+  public static @NotNull MzMLIndex create(@NotNull MemorySegment file) {
+    final MzMLIndex index = readIndexList(file);
+    return index != null ? index : scanOffsets(file);
+  }
+
+  /**
+   * Reads the {@code <indexList>} of an indexedmzML file
+   *
+   * @return the index or null if there is no index list or if the offsets do not point to the
+   * elements
+   */
+  static @Nullable MzMLIndex readIndexList(@NotNull MemorySegment file) {
+    final long tailStart = Math.max(0, file.byteSize() - TAIL_BYTES);
+    final String tail = new String(
+        file.asSlice(tailStart).toArray(ValueLayout.JAVA_BYTE), StandardCharsets.US_ASCII);
+    final Matcher matcher = indexListOffsetPattern.matcher(tail);
+    if (!matcher.find()) {
+      return null;
+    }
+    final long indexListOffset = Long.parseLong(matcher.group(1));
+    if (indexListOffset <= 0 || indexListOffset >= file.byteSize()) {
+      return null;
+    }
+
+    final LongArrayList spectra = new LongArrayList();
+    final List<String> ids = new ArrayList<>();
+    final LongArrayList chromatograms = new LongArrayList();
+    try {
+      final XMLStreamReader reader = XMLInputFactory.newInstance()
+          .createXMLStreamReader(new MemorySegmentInputStream(file, indexListOffset));
+      String indexName = null;
+      while (reader.hasNext()) {
+        final int event = reader.next();
+        if (event == XMLStreamConstants.END_ELEMENT && MzMLTags.TAG_INDEX_LIST.equals(
+            reader.getLocalName())) {
+          break;
+        }
+        if (event != XMLStreamConstants.START_ELEMENT) {
+          continue;
+        }
+        switch (reader.getLocalName()) {
+          case MzMLTags.TAG_INDEX -> indexName = reader.getAttributeValue(null, MzMLTags.ATTR_NAME);
+          case MzMLTags.TAG_OFFSET -> {
+            final String idRef = reader.getAttributeValue(null, MzMLTags.ATTR_ID_REF);
+            final long offset = Long.parseLong(reader.getElementText().trim());
+            if (MzMLTags.TAG_SPECTRUM.equals(indexName)) {
+              spectra.add(offset);
+              ids.add(idRef);
+            } else if (MzMLTags.TAG_CHROMATOGRAM.equals(indexName)) {
+              chromatograms.add(offset);
+            }
+          }
+        }
+      }
+      reader.close();
+    } catch (XMLStreamException | NumberFormatException e) {
+      logger.log(Level.WARNING, "Cannot read mzML index list, falling back to byte scan", e);
+      return null;
+    }
+
+    // files that were changed after writing the index have wrong offsets
+    for (long offset : spectra) {
+      if (!startsWithTag(file, offset, SPECTRUM_TAG)) {
+        logger.warning("mzML index list has invalid spectrum offsets, falling back to byte scan");
+        return null;
+      }
+    }
+    for (long offset : chromatograms) {
+      if (!startsWithTag(file, offset, CHROMATOGRAM_TAG)) {
+        logger.warning(
+            "mzML index list has invalid chromatogram offsets, falling back to byte scan");
+        return null;
+      }
+    }
+    return new MzMLIndex(spectra.toLongArray(), ids.toArray(String[]::new),
+        chromatograms.toLongArray(), true);
+  }
+
+  /**
+   * Finds all spectrum and chromatogram start tags in one pass over the bytes. Base64 data cannot
+   * contain '<', so only element starts are matched.
+   */
+  static @NotNull MzMLIndex scanOffsets(@NotNull MemorySegment file) {
+    final LongArrayList spectra = new LongArrayList();
+    final List<String> ids = new ArrayList<>();
+    final LongArrayList chromatograms = new LongArrayList();
+    final long size = file.byteSize();
+    for (long i = 0; i < size; i++) {
+      if (file.get(ValueLayout.JAVA_BYTE, i) != '<') {
+        continue;
+      }
+      if (startsWithTag(file, i, SPECTRUM_TAG)) {
+        spectra.add(i);
+        ids.add(readId(file, i));
+      } else if (startsWithTag(file, i, CHROMATOGRAM_TAG)) {
+        chromatograms.add(i);
+      }
+    }
+    return new MzMLIndex(spectra.toLongArray(), ids.toArray(String[]::new),
+        chromatograms.toLongArray(), false);
+  }
+
+  /**
+   * @return true if the tag name matches and is followed by whitespace. Excludes spectrumList
+   */
+  private static boolean startsWithTag(MemorySegment file, long offset, byte[] tag) {
+    if (offset < 0 || offset + tag.length >= file.byteSize()) {
+      return false;
+    }
+    for (int i = 0; i < tag.length; i++) {
+      if (file.get(ValueLayout.JAVA_BYTE, offset + i) != tag[i]) {
+        return false;
+      }
+    }
+    return Character.isWhitespace(file.get(ValueLayout.JAVA_BYTE, offset + tag.length));
+  }
+
+  /**
+   * @return the raw value of the id attribute of the element at offset or null
+   */
+  private static @Nullable String readId(MemorySegment file, long offset) {
+    final long size = file.byteSize();
+    for (long i = offset; i < size - ID_ATTR.length; i++) {
+      final byte b = file.get(ValueLayout.JAVA_BYTE, i);
+      if (b == '>') {
+        return null;
+      }
+      if (!Character.isWhitespace(b)) {
+        continue;
+      }
+      boolean match = true;
+      for (int j = 1; j < ID_ATTR.length && match; j++) {
+        match = file.get(ValueLayout.JAVA_BYTE, i + j) == ID_ATTR[j];
+      }
+      if (match) {
+        final long start = i + ID_ATTR.length;
+        long end = start;
+        while (end < size && file.get(ValueLayout.JAVA_BYTE, end) != '"') {
+          end++;
+        }
+        return new String(file.asSlice(start, end - start).toArray(ValueLayout.JAVA_BYTE),
+            StandardCharsets.UTF_8);
+      }
+    }
+    return null;
+  }
+
+  public int getNumSpectra() {
+    return spectrumOffsets.length;
+  }
+
+  public long getSpectrumOffset(int index) {
+    return spectrumOffsets[index];
+  }
+
+  /**
+   * @return the spectrum id or null if not available
+   */
+  public @Nullable String getSpectrumId(int index) {
+    return spectrumIds[index];
+  }
+
+  /**
+   * Find the index of a spectrum by its id
+   *
+   * @param id   the spectrum id
+   * @param hint the expected index, usually the index attribute of the spectrum element
+   * @return the index of the spectrum or -1 if not found
+   */
+  public int indexOf(@NotNull String id, int hint) {
+    if (hint >= 0 && hint < spectrumIds.length && id.equals(spectrumIds[hint])) {
+      return hint;
+    }
+    synchronized (this) {
+      if (idToIndex == null) {
+        idToIndex = new Object2IntOpenHashMap<>(spectrumIds.length);
+        idToIndex.defaultReturnValue(-1);
+        for (int i = 0; i < spectrumIds.length; i++) {
+          if (spectrumIds[i] != null) {
+            idToIndex.putIfAbsent(spectrumIds[i], i);
+          }
+        }
+      }
+      return idToIndex.getInt(id);
+    }
+  }
+
+  public long[] getChromatogramOffsets() {
+    return chromatogramOffsets;
+  }
+
+  /**
+   * @return true if the offsets were read from the index list, false if found by byte scan
+   */
+  public boolean isFromIndexList() {
+    return fromIndexList;
+  }
+}
@@ -0,0 +1,279 @@
+/*
+ * Copyright (c) 2004-2024 The mzmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package io.github.mzmine.modules.io.import_rawdata_mzml.msdk.data;
+
+import com.google.common.collect.Range;
+import io.github.mzmine.modules.io.import_rawdata_mzml.msdk.util.MemorySegmentInputStream;
+import io.github.mzmine.parameters.parametertypes.selectors.ScanSelection;
+import java.io.File;
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.StandardOpenOption;
+import java.util.function.BooleanSupplier;
+import java.util.logging.Logger;
+import java.util.zip.DataFormatException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Random access reader for mzML files. Memory maps the file and uses the {@link MzMLIndex} to parse
+ * only the spectra selected by the scan number and retention time range of a {@link ScanSelection}.
+ * Other spectra are not parsed and their binary data is not decoded. The spectra are assumed to be
+ * sorted by retention time, which is the acquisition order in mzML files.
+ * <p>
+ * The header and all chromatograms are always parsed. All elements are passed to the
+ * {@link MzMLParser} like in the streaming import.
+ */
+public class MzMLIndexedReader implements AutoCloseable {
+
+  private static final Logger logger = Logger.getLogger(MzMLIndexedReader.class.getName());
+
+  private final Arena arena = Arena.ofShared();
+  private final MemorySegment data;
+  private final MzMLIndex index;
+  private final XMLInputFactory factory;
+
+  public MzMLIndexedReader(@NotNull File file, @NotNull XMLInputFactory factory)
+      throws IOException {
+    this.factory = factory;
+    try (var channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      data = channel.map(MapMode.READ_ONLY, 0, channel.size(), arena);
+    } catch (IOException e) {
+      arena.close();
+      throw e;
+    }
+    index = MzMLIndex.create(data);
+    logger.finest(() -> "Indexed %d spectra of %s (%s)".formatted(index.getNumSpectra(), file,
+        index.isFromIndexList() ? "index list" : "byte scan"));
+  }
+
+  /**
+   * @return true if the filter selects scans by scan number or retention time so that random
+   * access can skip spectra
+   */
+  public static boolean canSkipSpectra(@NotNull ScanSelection filter) {
+    return filter.getScanNumberRange() != null || filter.getScanRTRange() != null;
+  }
+
+  public @NotNull MzMLIndex getIndex() {
+    return index;
+  }
+
+  private XMLStreamReader openAt(long offset) throws XMLStreamException {
+    return factory.createXMLStreamReader(new MemorySegmentInputStream(data, offset));
+  }
+
+  /**
+   * Parses the header, the selected spectra and all chromatograms
+   */
+  public void parse(@NotNull MzMLParser parser, @NotNull ScanSelection filter,
+      @NotNull BooleanSupplier isCanceled)
+      throws XMLStreamException, IOException, DataFormatException {
+    if (!parseHeader(parser)) {
+      return;
+    }
+
+    final Range<Integer> scanNumbers = filter.getScanNumberRange();
+    final Range<Double> rtRange = filter.getScanRTRange();
+    final int numSpectra = index.getNumSpectra();
+    final int first = rtRange != null && rtRange.hasLowerBound() ? findFirstSpectrum(
+        rtRange.lowerEndpoint()) : 0;
+
+    for (int i = first; i < numSpectra; i++) {
+      if (isCanceled.getAsBoolean()) {
+        return;
+      }
+      if (scanNumbers != null) {
+        final String id = index.getSpectrumId(i);
+        final int scanNumber = id == null ? i + 1 : parser.getScanNumber(id).orElse(i + 1);
+        if (!scanNumbers.contains(scanNumber)) {
+          continue;
+        }
+      }
+      if (rtRange != null && rtRange.hasUpperBound()
+          && peekRetentionTime(i) > rtRange.upperEndpoint()) {
+        // sorted by retention time
+        break;
+      }
+      parseElement(parser, index.getSpectrumOffset(i), MzMLTags.TAG_SPECTRUM);
+    }
+    // the reader is not used for closing tags
+    parser.processClosingTag(null, MzMLTags.TAG_SPECTRUM_LIST);
+
+    final long[] chromatograms = index.getChromatogramOffsets();
+    if (chromatograms.length > 0) {
+      parser.processOpeningTag(null, MzMLTags.TAG_CHROMATOGRAM_LIST);
+      for (long offset : chromatograms) {
+        if (isCanceled.getAsBoolean()) {
+          return;
+        }
+        parseElement(parser, offset, MzMLTags.TAG_CHROMATOGRAM);
+      }
+      parser.processClosingTag(null, MzMLTags.TAG_CHROMATOGRAM_LIST);
+    }
+  }
+
+  /**
+   * Parses all elements until the spectrum list is entered
+   *
+   * @return true if the spectrum list was found
+   */
+  private boolean parseHeader(MzMLParser parser)
+      throws XMLStreamException, IOException, DataFormatException {
+    final XMLStreamReader reader = openAt(0);
+    try {
+      while (reader.hasNext()) {
+        switch (reader.next()) {
+          case XMLStreamConstants.START_ELEMENT -> {
+            final String name = reader.getLocalName();
+            parser.processOpeningTag(reader, name);
+            if (MzMLTags.TAG_SPECTRUM_LIST.equals(name)) {
+              return true;
+            }
+          }
+          case XMLStreamConstants.END_ELEMENT ->
+              parser.processClosingTag(reader, reader.getLocalName());
+        }
+      }
+      return false;
+    } finally {
+      reader.close();
+    }
+  }
+
+  /**
+   * Parses one spectrum or chromatogram element starting at offset
+   */
+  private void parseElement(MzMLParser parser, long offset, String elementName)
+      throws XMLStreamException, IOException, DataFormatException {
+    final XMLStreamReader reader = openAt(offset);
+    try {
+      while (reader.hasNext()) {
+        switch (reader.next()) {
+          case XMLStreamConstants.START_ELEMENT ->
+              parser.processOpeningTag(reader, reader.getLocalName());
+          case XMLStreamConstants.END_ELEMENT -> {
+            final String name = reader.getLocalName();
+            parser.processClosingTag(reader, name);
+            if (elementName.equals(name)) {
+              return;
+            }
+          }
+        }
+      }
+    } finally {
+      reader.close();
+    }
+  }
+
+  /**
+   * Binary search for the first spectrum with a retention time >= rt
+   *
+   * @return the spectrum index or 0 if the retention times cannot be read
+   */
+  private int findFirstSpectrum(double rt) throws XMLStreamException {
+    int low = 0;
+    int high = index.getNumSpectra();
+    while (low < high) {
+      final int mid = (low + high) >>> 1;
+      final float midRt = peekRetentionTime(mid);
+      if (Float.isNaN(midRt)) {
+        return 0;
+      }
+      if (midRt < rt) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * Reads the retention time of a spectrum in minutes without reading the binary data
+   *
+   * @return the retention time or NaN if not found
+   */
+  float peekRetentionTime(int spectrumIndex) throws XMLStreamException {
+    final XMLStreamReader reader = openAt(index.getSpectrumOffset(spectrumIndex));
+    try {
+      while (reader.hasNext()) {
+        final int event = reader.next();
+        if (event == XMLStreamConstants.END_ELEMENT && MzMLTags.TAG_SPECTRUM.equals(
+            reader.getLocalName())) {
+          return Float.NaN;
+        }
+        if (event != XMLStreamConstants.START_ELEMENT) {
+          continue;
+        }
+        final String name = reader.getLocalName();
+        if (MzMLTags.TAG_BINARY_DATA_ARRAY_LIST.equals(name)) {
+          return Float.NaN;
+        }
+        if (!MzMLTags.TAG_CV_PARAM.equals(name)) {
+          continue;
+        }
+        final String accession = reader.getAttributeValue(null, MzMLTags.ATTR_ACCESSION);
+        switch (accession) {
+          case MzMLCV.MS_RT_SCAN_START, MzMLCV.MS_RT_RETENTION_TIME,
+               MzMLCV.MS_RT_RETENTION_TIME_LOCAL, MzMLCV.MS_RT_RETENTION_TIME_NORMALIZED -> {
+            final String value = reader.getAttributeValue(null, MzMLTags.ATTR_VALUE);
+            final String unit = reader.getAttributeValue(null, MzMLTags.ATTR_UNIT_ACCESSION);
+            if (value == null) {
+              return Float.NaN;
+            }
+            // same as BuildingMzMLMsScan: minutes or seconds if no unit
+            return switch (unit) {
+              case MzMLCV.cvUnitsMin1, MzMLCV.cvUnitsMin2 -> Float.parseFloat(value);
+              case MzMLCV.cvUnitsSec -> Float.parseFloat(value) / 60f;
+              case null -> Float.parseFloat(value) / 60f;
+              default -> Float.NaN;
+            };
+          }
+          case null, default -> {
+          }
+        }
+      }
+      return Float.NaN;
+    } finally {
+      reader.close();
+    }
+  }
+
+  /**
+   * Unmaps the file
+   */
+  @Override
+  public void close() {
+    arena.close();
+  }
+}
@@ -25,10 +25,14 @@
 package io.github.mzmine.modules.io.import_rawdata_mzml.msdk.data;
 
 import io.github.msdk.datamodel.Chromatogram;
+import io.github.mzmine.main.ConfigService;
+import io.github.mzmine.modules.io.import_rawdata_all.spectral_processor.MobilitySpectralArrays;
 import io.github.mzmine.modules.io.import_rawdata_all.spectral_processor.ScanImportProcessorConfig;
+import io.github.mzmine.modules.io.import_rawdata_all.spectral_processor.SimpleSpectralArrays;
 import io.github.mzmine.modules.io.import_rawdata_mzml.MSDKmzMLImportTask;
 import io.github.mzmine.modules.io.import_rawdata_mzml.msdk.util.TagTracker;
 import io.github.mzmine.util.MemoryMapStorage;
+import io.github.mzmine.util.concurrent.OrderedCommitPipeline;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
@@ -46,13 +50,14 @@ import java.util.zip.DataFormatException;
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamReader;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * <p>
  * Used to parse mzML meta-data and initialize {@link MzMLBinaryDataInfo MzMLBinaryDataInfo}
  * </p>
  */
-public class MzMLParser {
+public class MzMLParser implements AutoCloseable {
 
   private static final Logger logger = Logger.getLogger(MzMLParser.class.getName());
 
@@ -61,6 +66,10 @@ public class MzMLParser {
   private final MemoryMapStorage storage;
   private final @NotNull ScanImportProcessorConfig scanProcessorConfig;
   private final File mzMLFile;
+  // decodes binary data in parallel and commits scans in order
+  private final OrderedCommitPipeline decodePipeline;
+  // raw data of scans with mass detection is decoded on demand from this source if set
+  private @Nullable MzMLSpectralDataSource lazyRawDataSource;
 
   private final MzMLRawDataFile newRawFile;
   private final Pattern scanNumberPattern = Pattern.compile("scan=([0-9]+)");
@@ -83,6 +92,8 @@ public class MzMLParser {
         vars.mobilityScanData);
     this.storage = storage;
     this.scanProcessorConfig = scanProcessorConfig;
+    final int threads = ConfigService.getConfiguration().getNumOfThreads();
+    this.decodePipeline = new OrderedCommitPipeline(threads, threads * 4);
   }
 
   /**
@@ -155,6 +166,8 @@ public class MzMLParser {
         Integer scanNumber = getScanNumber(id).orElse(index + 1);
         //        vars.spectrum = new BuildingMzMLMsScan(newRawFile, id, scanNumber, vars.defaultArrayLength);
         vars.spectrum = new BuildingMzMLMsScan(id, scanNumber, vars.defaultArrayLength);
+        vars.spectrumIndex = index;
+        vars.binaryDataArrayIndex = 0;
       } else if (openingTagName.contentEquals(MzMLTags.TAG_BINARY_DATA_ARRAY)) {
         vars.skipBinaryDataArray = false;
         int encodedLength = Integer.parseInt(
@@ -166,6 +179,7 @@ public class MzMLParser {
         } else {
           vars.binaryDataInfo = new MzMLBinaryDataInfo(encodedLength, vars.defaultArrayLength);
         }
+        vars.binaryDataInfo.setArrayIndex(vars.binaryDataArrayIndex++);
 
       } else if (openingTagName.contentEquals(MzMLTags.TAG_SCAN)) {
         vars.scan = new MzMLScan();
@@ -512,6 +526,7 @@ public class MzMLParser {
     }
     if (closingTagName.contentEquals(MzMLTags.TAG_SPECTRUM_LIST)) {
       // finished the last scan
+      decodePipeline.finish();
       vars.memoryMapAndClearFrameMobilityScanData(storage);
     } else if (tracker.inside(MzMLTags.TAG_CHROMATOGRAM_LIST)) {
       if (closingTagName.contentEquals(MzMLTags.TAG_CHROMATOGRAM)) {
@@ -525,28 +540,64 @@ public class MzMLParser {
 
   /**
    * Called when spectrum end is read. Check if spectrum is filtered - skip this scan if not in
-   * filter. Then process data points and memory map resulting data to disk to save RAM.
+   * filter. Then process data points in the {@link OrderedCommitPipeline} and memory map resulting
+   * data to disk to save RAM. Memory mapping and adding the scans to the lists is done in this thread
+   * in scan order.
    */
   private void filterProcessFinalizeScan() {
-    var spectrum = vars.spectrum;
+    final var spectrum = vars.spectrum;
+    vars.spectrum = null;
 //    logger.info(STR."Finalizing scan \{spectrum.getScanNumber()}");
     if (spectrum.isUVSpectrum()) {
-      if (spectrum.loadProcessMemMapUvData(storage, scanProcessorConfig)) {
-        vars.addSpectrumToList(storage, spectrum);
-      }
-      vars.spectrum = null;
+      decodePipeline.submit(() -> {
+        final SimpleSpectralArrays data = spectrum.loadUvDataOrNull();
+        if (data == null) {
+          return null;
+        }
+        return () -> {
+          spectrum.memMapUvData(storage, data);
+          vars.addSpectrumToList(storage, spectrum);
+        };
+      });
       return;
     }
 
-    if (scanProcessorConfig.scanFilter().matches(spectrum)) {
-      if (spectrum.isMergedMobilitySpectrum()) {
-        vars.mobilityScanData.add(
-            spectrum.loadProccessMemMapMzDataForMergedMobilityScan(storage, scanProcessorConfig));
-      } else if (spectrum.loadProcessMemMapMzData(storage, scanProcessorConfig)) {
-        vars.addSpectrumToList(storage, spectrum);
-      }
+    if (!scanProcessorConfig.scanFilter().matches(spectrum)) {
+      return;
+    }
+    if (spectrum.isMergedMobilitySpectrum()) {
+      decodePipeline.submit(() -> {
+        final List<MobilitySpectralArrays> mobilityScans = spectrum.loadProcessMergedMobilityScans(
+            scanProcessorConfig);
+        return () -> vars.mobilityScanData.add(
+            spectrum.memMapMergedMobilityScans(storage, mobilityScans));
+      });
+    } else if (lazyRawDataSource != null && spectrum.getMobility() == null
+               && scanProcessorConfig.isLazyRawData(spectrum.getMSLevel())) {
+      final MzMLSpectralDataSource source = lazyRawDataSource;
+      final int indexHint = vars.spectrumIndex;
+      decodePipeline.submit(() -> {
+        final SimpleSpectralArrays masses = spectrum.loadProcessLazyMzData(scanProcessorConfig);
+        if (masses == null) {
+          return null;
+        }
+        return () -> {
+          spectrum.memMapLazyMzData(storage, source, indexHint, masses);
+          vars.addSpectrumToList(storage, spectrum);
+        };
+      });
+    } else {
+      decodePipeline.submit(() -> {
+        final SimpleSpectralArrays data = spectrum.loadProcessMzData(scanProcessorConfig);
+        if (data == null) {
+          return null;
+        }
+        return () -> {
+          spectrum.memMapMzData(storage, data);
+          vars.addSpectrumToList(storage, spectrum);
+        };
+      });
     }
-    vars.spectrum = null;
   }
 
   /**
@@ -672,6 +723,8 @@ public class MzMLParser {
    * @return a {@link MzMLRawDataFile MzMLRawDataFile} containing the parsed data
    */
   public MzMLRawDataFile getMzMLRawFile() {
+    // commit remaining scans if the spectrum list was not closed
+    decodePipeline.finish();
     final List<BuildingMzMLMsScan> msSpectra = vars.spectrumList.stream()
         .filter(BuildingMzMLMsScan::isMassSpectrum).toList();
     newRawFile.setMsScans(msSpectra);
@@ -689,6 +742,23 @@ public class MzMLParser {
     return vars.mobilityScanData;
   }
 
+  /**
+   * Decode the raw data of scans with mass detection on demand from this source instead of memory
+   * mapping it. Only the mass lists are memory mapped. See
+   * {@link ScanImportProcessorConfig#isLazyRawData(int)}
+   */
+  public void setLazyRawDataSource(@Nullable MzMLSpectralDataSource lazyRawDataSource) {
+    this.lazyRawDataSource = lazyRawDataSource;
+  }
+
+  /**
+   * Stops the decoding threads
+   */
+  @Override
+  public void close() {
+    decodePipeline.close();
+  }
+
   public int getTotalScans() {
     return totalScans;
   }
@@ -715,6 +785,8 @@ public class MzMLParser {
     final List<BuildingMobilityScanStorage> mobilityScanData = new ArrayList<>();
     List<BuildingMzMLMsScan> spectrumList;
     int defaultArrayLength;
+    int spectrumIndex;
+    int binaryDataArrayIndex;
     boolean skipBinaryDataArray;
     BuildingMzMLMsScan spectrum;
     MzMLChromatogram chromatogram;
@@ -0,0 +1,216 @@
+/*
+ * Copyright (c) 2004-2024 The mzmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package io.github.mzmine.modules.io.import_rawdata_mzml.msdk.data;
+
+import io.github.mzmine.datamodel.impl.LazySpectralDataSource;
+import io.github.mzmine.modules.io.import_rawdata_all.spectral_processor.SimpleSpectralArrays;
+import io.github.mzmine.util.DataPointUtils;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import java.io.File;
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Decodes the m/z and intensity arrays of spectra on demand from a memory mapped mzML file. Used by
+ * the lazy raw data import, where only the mass lists are stored and the raw data points are read
+ * from the original file. Spectra are located by the byte offsets of the {@link MzMLIndex} and the
+ * binary arrays by their index in the binaryDataArrayList of the spectrum, the encoding is taken
+ * from the {@link MzMLBinaryDataInfo} of the import.
+ * <p>
+ * The file is unmapped when this source is no longer referenced by any scan.
+ */
+public class MzMLSpectralDataSource extends LazySpectralDataSource {
+
+  private static final Logger logger = Logger.getLogger(MzMLSpectralDataSource.class.getName());
+  private static final byte[] BINARY_TAG = ("<" + MzMLTags.TAG_BINARY).getBytes(
+      StandardCharsets.US_ASCII);
+
+  private final @NotNull File file;
+  private final MemorySegment data;
+  private final MzMLIndex index;
+
+  // registered spectra
+  private final LongArrayList spectrumOffsets = new LongArrayList();
+  private final List<MzMLBinaryDataInfo> mzInfos = new ArrayList<>();
+  private final List<MzMLBinaryDataInfo> intensityInfos = new ArrayList<>();
+
+  private MzMLSpectralDataSource(@NotNull File file, MemorySegment data) {
+    this.file = file;
+    this.data = data;
+    this.index = MzMLIndex.create(data);
+  }
+
+  /**
+   * Memory maps and indexes the mzML file
+   */
+  public static @NotNull MzMLSpectralDataSource open(@NotNull File file) throws IOException {
+    try (var channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      // auto arena: the mapping lives as long as the scans that reference this source
+      final MemorySegment data = channel.map(MapMode.READ_ONLY, 0, channel.size(),
+          Arena.ofAuto());
+      return new MzMLSpectralDataSource(file, data);
+    }
+  }
+
+  /**
+   * Registers a spectrum for on demand decoding. Called during import before the scans are
+   * accessed.
+   *
+   * @param id             the spectrum id
+   * @param indexHint      the index attribute of the spectrum
+   * @param mzInfo         binary info of the m/z array, the text content is not needed
+   * @param intensityInfo  binary info of the intensity array, the text content is not needed
+   * @return the index of the spectrum in this source or -1 if the spectrum was not found in the
+   * file index
+   */
+  public synchronized int register(@NotNull String id, int indexHint,
+      @NotNull MzMLBinaryDataInfo mzInfo, @NotNull MzMLBinaryDataInfo intensityInfo) {
+    if (mzInfo.getArrayIndex() < 0 || intensityInfo.getArrayIndex() < 0) {
+      return -1;
+    }
+    final int fileIndex = index.indexOf(id, indexHint);
+    if (fileIndex < 0) {
+      return -1;
+    }
+    // text content is decoded from the file
+    mzInfo.setTextContent(null);
+    intensityInfo.setTextContent(null);
+
+    spectrumOffsets.add(index.getSpectrumOffset(fileIndex));
+    mzInfos.add(mzInfo);
+    intensityInfos.add(intensityInfo);
+    return spectrumOffsets.size() - 1;
+  }
+
+  @Override
+  protected @NotNull SimpleSpectralArrays decodeSpectrum(int index) {
+    final long offset;
+    final MzMLBinaryDataInfo mzInfo;
+    final MzMLBinaryDataInfo intensityInfo;
+    synchronized (this) {
+      offset = spectrumOffsets.getLong(index);
+      mzInfo = mzInfos.get(index);
+      intensityInfo = intensityInfos.get(index);
+    }
+    final double[] mzs = decodeArray(offset, mzInfo);
+    final double[] intensities = decodeArray(offset, intensityInfo);
+    if (mzs.length != intensities.length) {
+      logger.warning(
+          "Different number of m/z and intensity values in spectrum at offset %d of %s".formatted(
+              offset, file));
+      final int n = Math.min(mzs.length, intensities.length);
+      return DataPointUtils.ensureSortingMzAscendingDefault(
+          new SimpleSpectralArrays(Arrays.copyOf(mzs, n), Arrays.copyOf(intensities, n)));
+    }
+    return DataPointUtils.ensureSortingMzAscendingDefault(new SimpleSpectralArrays(mzs, intensities));
+  }
+
+  private double[] decodeArray(long spectrumOffset, MzMLBinaryDataInfo info) {
+    if (info.getEncodedLength() == 0) {
+      return new double[0];
+    }
+    final String text = findBinaryText(spectrumOffset, info.getArrayIndex());
+    if (text == null) {
+      throw new IllegalStateException(
+          "Cannot find binary array %d of spectrum at offset %d in %s".formatted(
+              info.getArrayIndex(), spectrumOffset, file));
+    }
+    return MzMLPeaksDecoder.decodeToDoubleAsArray(text, info, null);
+  }
+
+  /**
+   * @param arrayIndex index of the binaryDataArray in the spectrum
+   * @return the base64 text of the binary element or null if not found
+   */
+  private @Nullable String findBinaryText(long spectrumOffset, int arrayIndex) {
+    final long size = data.byteSize();
+    int found = 0;
+    for (long i = spectrumOffset; i < size - BINARY_TAG.length; i++) {
+      if (data.get(ValueLayout.JAVA_BYTE, i) != '<' || !startsWith(i)) {
+        continue;
+      }
+      final long afterTag = i + BINARY_TAG.length;
+      final byte next = data.get(ValueLayout.JAVA_BYTE, afterTag);
+      // exclude binaryDataArray and binaryDataArrayList
+      if (next != '>' && next != '/' && !Character.isWhitespace(next)) {
+        continue;
+      }
+      // find end of start tag
+      long start = afterTag;
+      while (start < size && data.get(ValueLayout.JAVA_BYTE, start) != '>') {
+        start++;
+      }
+      final boolean emptyElement = data.get(ValueLayout.JAVA_BYTE, start - 1) == '/';
+      if (found++ < arrayIndex) {
+        i = start;
+        continue;
+      }
+      if (emptyElement) {
+        return "";
+      }
+      start++;
+      long end = start;
+      while (end < size && data.get(ValueLayout.JAVA_BYTE, end) != '<') {
+        end++;
+      }
+      return new String(data.asSlice(start, end - start).toArray(ValueLayout.JAVA_BYTE),
+          StandardCharsets.US_ASCII).strip();
+    }
+    return null;
+  }
+
+  private boolean startsWith(long offset) {
+    for (int j = 1; j < BINARY_TAG.length; j++) {
+      if (data.get(ValueLayout.JAVA_BYTE, offset + j) != BINARY_TAG[j]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return number of registered spectra
+   */
+  public synchronized int getNumSpectra() {
+    return spectrumOffsets.size();
+  }
+
+  public @NotNull File getFile() {
+    return file;
+  }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2004-2024 The mzmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package io.github.mzmine.modules.io.import_rawdata_mzml.msdk.util;
+
+import java.io.InputStream;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Input stream over a memory segment, e.g., a region of a memory mapped file. Unlike
+ * {@link ByteBufferInputStream}, segments are not limited to 2 GB.
+ */
+public class MemorySegmentInputStream extends InputStream {
+
+  private final MemorySegment segment;
+  private long position;
+
+  /**
+   * @param segment  the data
+   * @param position start position in the segment
+   */
+  public MemorySegmentInputStream(@NotNull MemorySegment segment, long position) {
+    this.segment = segment;
+    this.position = position;
+  }
+
+  @Override
+  public int read() {
+    if (position >= segment.byteSize()) {
+      return -1;
+    }
+    return segment.get(ValueLayout.JAVA_BYTE, position++) & 0xFF;
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) {
+    if (len == 0) {
+      return 0;
+    }
+    final long remaining = segment.byteSize() - position;
+    if (remaining <= 0) {
+      return -1;
+    }
+    final int n = (int) Math.min(len, remaining);
+    MemorySegment.copy(segment, ValueLayout.JAVA_BYTE, position, b, off, n);
+    position += n;
+    return n;
+  }
+
+  @Override
+  public long skip(long n) {
+    final long skipped = Math.max(0, Math.min(n, segment.byteSize() - position));
+    position += skipped;
+    return skipped;
+  }
+
+  @Override
+  public int available() {
+    return (int) Math.min(Integer.MAX_VALUE, Math.max(0, segment.byteSize() - position));
+  }
+
+  public long position() {
+    return position;
+  }
+}
@@ -26,9 +26,14 @@
 package io.github.mzmine.modules.io.import_spectral_library;
 
 import io.github.mzmine.datamodel.MZmineProject;
+import io.github.mzmine.gui.preferences.MZminePreferences;
+import io.github.mzmine.main.ConfigService;
 import io.github.mzmine.taskcontrol.AbstractTask;
 import io.github.mzmine.taskcontrol.TaskStatus;
 import io.github.mzmine.util.MemoryMapStorage;
+import io.github.mzmine.util.spectraldb.cache.SpectralLibraryCache;
+import io.github.mzmine.util.spectraldb.cache.SpectralLibraryCacheFormat;
+import io.github.mzmine.util.spectraldb.cache.SpectralLibraryCacheFormat.SourceInfo;
 import io.github.mzmine.util.spectraldb.entry.SpectralLibrary;
 import io.github.mzmine.util.spectraldb.entry.SpectralLibraryEntry;
 import io.github.mzmine.util.spectraldb.parser.AutoLibraryParser;
@@ -40,6 +45,7 @@ import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 public class SpectralLibraryImportTask extends AbstractTask {
 
@@ -75,11 +81,27 @@ public class SpectralLibraryImportTask extends AbstractTask {
     setStatus(TaskStatus.PROCESSING);
 
     try {
-      // will block until all library spectra are added to entries list
-      SpectralLibrary library = parseFile(dataBaseFile);
-      // remove empty or 0 intensity spectra
-      library.removeif(this::checkRemoveEntry);
-      library.trim(); // trim to save memory
+      // compiled libraries are memory mapped and only used if the library file is unchanged
+      final File cacheDirectory = getCacheDirectory();
+      final SourceInfo sourceInfo =
+          cacheDirectory == null ? null : SpectralLibraryCacheFormat.readSourceInfo(dataBaseFile);
+      SpectralLibrary library = sourceInfo == null ? null
+          : SpectralLibraryCache.load(dataBaseFile, sourceInfo, cacheDirectory);
+      if (library == null) {
+        // will block until all library spectra are added to entries list
+        library = parseFile(dataBaseFile);
+        // remove empty or 0 intensity spectra
+        library.removeif(this::checkRemoveEntry);
+        library.trim(); // trim to save memory
+        if (sourceInfo != null) {
+          writeCache(library, sourceInfo, cacheDirectory);
+        }
+      } else {
+        logger.fine(() -> "Using compiled spectral library cache for " + dataBaseFile);
+      }
+      if (isCanceled()) {
+        return;
+      }
       final List<SpectralLibraryEntry> entries = library.getEntries();
       if (!entries.isEmpty()) {
         project.addSpectralLibrary(library);
@@ -100,6 +122,36 @@ public class SpectralLibraryImportTask extends AbstractTask {
     setStatus(TaskStatus.FINISHED);
   }
 
+  /**
+   * @return the directory of compiled libraries or null if caching is disabled in the preferences
+   */
+  private static @Nullable File getCacheDirectory() {
+    final var cache = ConfigService.getPreferences()
+        .getParameter(MZminePreferences.spectralLibraryCache);
+    if (!cache.getValue()) {
+      return null;
+    }
+    final File directory = cache.getEmbeddedParameter().getValue();
+    return directory != null ? directory : SpectralLibraryCacheFormat.getDefaultCacheDirectory();
+  }
+
+  /**
+   * The cache is optional, failing to write it does not fail the import
+   */
+  private void writeCache(SpectralLibrary library, SourceInfo sourceInfo, File cacheDirectory) {
+    if (isCanceled() || library.size() == 0) {
+      return;
+    }
+    try {
+      final File cache = SpectralLibraryCache.write(library, sourceInfo, cacheDirectory,
+          this::isCanceled);
+      logger.fine(() -> "Wrote compiled spectral library cache " + cache);
+    } catch (IOException e) {
+      logger.log(Level.WARNING,
+          "Cannot write spectral library cache for %s: %s".formatted(dataBaseFile, e.getMessage()));
+    }
+  }
+
   private boolean checkRemoveEntry(SpectralLibraryEntry entry) {
     if (entry.getNumberOfDataPoints() == 0) {
       return true;
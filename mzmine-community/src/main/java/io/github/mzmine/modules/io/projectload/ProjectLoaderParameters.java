@@ -27,6 +27,7 @@ package io.github.mzmine.modules.io.projectload;
 
 import io.github.mzmine.parameters.Parameter;
 import io.github.mzmine.parameters.impl.SimpleParameterSet;
+import io.github.mzmine.parameters.parametertypes.BooleanParameter;
 import io.github.mzmine.parameters.parametertypes.filenames.FileNameParameter;
 import io.github.mzmine.parameters.parametertypes.filenames.FileSelectionType;
 import io.github.mzmine.util.ExitCode;
@@ -45,8 +46,14 @@ public class ProjectLoaderParameters extends SimpleParameterSet {
   public static final FileNameParameter projectFile = new FileNameParameter("Project file",
       "File name of project to be loaded", extensions, FileSelectionType.OPEN);
 
+  public static final BooleanParameter lazyFeatureData = new BooleanParameter(
+      "Lazy feature data", """
+      Only for feature lists saved in the binary format. Feature data (chromatograms) is read directly
+      from the memory mapped feature list file instead of being copied on import.
+      This reduces the import time and memory.""", false);
+
   public ProjectLoaderParameters() {
-    super(new Parameter[]{projectFile});
+    super(new Parameter[]{projectFile, lazyFeatureData});
   }
 
   @Override
@@ -77,6 +77,7 @@ public class ProjectOpeningTask extends AbstractTask {
   private CountingInputStream cis;
   private long totalBytes, finishedBytes;
   private String currentLoadedObjectName;
+  private final boolean lazyFeatureData;
 
   // This hashtable maps stored IDs to raw data file objects
 //  private final Hashtable<String, RawDataFile> dataFilesIDMap = new Hashtable<>();
@@ -85,11 +86,13 @@ public class ProjectOpeningTask extends AbstractTask {
   public ProjectOpeningTask(ParameterSet parameters, @NotNull Instant moduleCallDate) {
     super(null, moduleCallDate);
     this.openFile = parameters.getParameter(ProjectLoaderParameters.projectFile).getValue();
+    this.lazyFeatureData = parameters.getValue(ProjectLoaderParameters.lazyFeatureData);
   }
 
   public ProjectOpeningTask(File openFile, @NotNull Instant moduleCallDate) {
     super(null, moduleCallDate);
     this.openFile = openFile;
+    this.lazyFeatureData = false;
   }
 
   /**
@@ -357,7 +360,7 @@ public class ProjectOpeningTask extends AbstractTask {
   private void loadFeatureList(ZipFile zipFile) {
 
     FeatureListLoadTask task = new FeatureListLoadTask(MemoryMapStorage.forFeatureList(),
-        newProject, zipFile);
+        newProject, zipFile, lazyFeatureData);
     MZmineCore.getTaskController().addTask(task);
     currentLoadedObjectName = "Feature lists";
     while (task.getStatus() != TaskStatus.FINISHED && !task.isCanceled() && !isCanceled()) {
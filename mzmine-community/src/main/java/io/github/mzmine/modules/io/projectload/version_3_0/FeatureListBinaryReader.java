@@ -0,0 +1,380 @@
+/*
+ * Copyright (c) 2004-2024 The mzmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package io.github.mzmine.modules.io.projectload.version_3_0;
+
+import com.google.common.collect.Range;
+import io.github.mzmine.datamodel.FeatureStatus;
+import io.github.mzmine.datamodel.MZmineProject;
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.Scan;
+import io.github.mzmine.datamodel.featuredata.impl.SimpleIonTimeSeries;
+import io.github.mzmine.datamodel.features.ModularDataModel;
+import io.github.mzmine.datamodel.features.ModularFeature;
+import io.github.mzmine.datamodel.features.ModularFeatureList;
+import io.github.mzmine.datamodel.features.ModularFeatureListRow;
+import io.github.mzmine.datamodel.features.types.DataType;
+import io.github.mzmine.datamodel.features.types.DataTypes;
+import io.github.mzmine.datamodel.features.types.FeatureDataType;
+import io.github.mzmine.modules.io.projectload.CachedIMSFrame;
+import io.github.mzmine.modules.io.projectload.CachedIMSRawDataFile;
+import io.github.mzmine.modules.io.projectsave.FeatureListBinaryFormat;
+import io.github.mzmine.modules.io.projectsave.FeatureListBinaryFormat.ValueKind;
+import io.github.mzmine.util.MemoryMapStorage;
+import java.io.File;
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Reads a feature list file in the {@link FeatureListBinaryFormat} from a memory mapped file.
+ * Creates the rows, the features with their data and sets all column values. The remaining types
+ * are loaded from the annotations xml by {@link FeatureListLoadTask}.
+ * <p>
+ * In lazy mode, the feature data directly uses the memory mapped file without copying. The file
+ * needs to exist as long as the feature list is used.
+ */
+class FeatureListBinaryReader implements AutoCloseable {
+
+  private static final Logger logger = Logger.getLogger(FeatureListBinaryReader.class.getName());
+
+  private static final ValueLayout.OfInt INT = ValueLayout.JAVA_INT_UNALIGNED.withOrder(
+      ByteOrder.LITTLE_ENDIAN);
+  private static final ValueLayout.OfLong LONG = ValueLayout.JAVA_LONG_UNALIGNED.withOrder(
+      ByteOrder.LITTLE_ENDIAN);
+  private static final ValueLayout.OfFloat FLOAT = ValueLayout.JAVA_FLOAT_UNALIGNED.withOrder(
+      ByteOrder.LITTLE_ENDIAN);
+  private static final ValueLayout.OfDouble DOUBLE = ValueLayout.JAVA_DOUBLE_UNALIGNED.withOrder(
+      ByteOrder.LITTLE_ENDIAN);
+
+  private final File file;
+  private final Arena arena;
+  private final boolean lazy;
+  private final MemorySegment data;
+  private final int numRows;
+  private final int numFeatures;
+  private final String[] rawFileNames;
+  private final List<Block> blocks = new ArrayList<>();
+
+  // created features in order of the file
+  private ModularFeature[] features;
+
+  /**
+   * @param lazy keep the file mapped and use it directly for the feature data. Only used on little
+   *             endian platforms.
+   */
+  FeatureListBinaryReader(@NotNull File file, boolean lazy) throws IOException {
+    this.file = file;
+    this.lazy = lazy && ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN;
+    // lazy segments are released when the feature data is garbage collected
+    arena = this.lazy ? Arena.ofAuto() : Arena.ofConfined();
+    final Header header;
+    try {
+      try (var channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+        data = channel.map(MapMode.READ_ONLY, 0, channel.size(), arena);
+      }
+      header = readHeader();
+    } catch (IOException | RuntimeException e) {
+      // do not keep the file mapped
+      close();
+      throw e;
+    }
+    numRows = header.numRows();
+    numFeatures = header.numFeatures();
+    rawFileNames = header.rawFileNames();
+  }
+
+  /**
+   * Reads the file header and indexes all blocks
+   */
+  private Header readHeader() throws IOException {
+    final byte[] magic = data.asSlice(0, FeatureListBinaryFormat.MAGIC.length)
+        .toArray(ValueLayout.JAVA_BYTE);
+    if (!Arrays.equals(magic, FeatureListBinaryFormat.MAGIC)) {
+      throw new IOException("File " + file + " is not a binary feature list file.");
+    }
+    long offset = FeatureListBinaryFormat.MAGIC.length;
+    final int version = data.get(INT, offset);
+    if (version > FeatureListBinaryFormat.VERSION) {
+      throw new IOException(
+          "Binary feature list version %d is not supported. Please update mzmine.".formatted(
+              version));
+    }
+    final int numRows = data.get(INT, offset + 4);
+    final int numFeatures = data.get(INT, offset + 8);
+    final String[] rawFileNames = new String[data.get(INT, offset + 12)];
+    offset += 16;
+    for (int i = 0; i < rawFileNames.length; i++) {
+      final int length = data.get(INT, offset);
+      rawFileNames[i] = readString(offset);
+      offset += 4 + length;
+    }
+    offset = FeatureListBinaryFormat.align8(offset);
+
+    // index all blocks
+    while (offset + FeatureListBinaryFormat.BLOCK_HEADER_BYTES <= data.byteSize()) {
+      final int type = data.get(INT, offset);
+      final long length = data.get(LONG, offset + 8);
+      final long start = offset + FeatureListBinaryFormat.BLOCK_HEADER_BYTES;
+      if (start + length > data.byteSize()) {
+        throw new IOException("Binary feature list file %s is truncated.".formatted(file));
+      }
+      blocks.add(new Block(type, start, length));
+      offset = FeatureListBinaryFormat.align8(start + length);
+    }
+    return new Header(numRows, numFeatures, rawFileNames);
+  }
+
+  private String readString(long offset) {
+    final int length = data.get(INT, offset);
+    return new String(data.asSlice(offset + 4, length).toArray(ValueLayout.JAVA_BYTE),
+        StandardCharsets.UTF_8);
+  }
+
+  private @Nullable Block findBlock(int type) {
+    return blocks.stream().filter(b -> b.type == type).findFirst().orElse(null);
+  }
+
+  int getNumRows() {
+    return numRows;
+  }
+
+  /**
+   * Creates all rows with their ids in the feature list
+   */
+  void createRows(@NotNull ModularFeatureList flist) throws IOException {
+    final Block block = findBlock(FeatureListBinaryFormat.BLOCK_ROW_IDS);
+    if (block == null) {
+      throw new IOException("Binary feature list file %s has no row ids.".formatted(file));
+    }
+    for (int i = 0; i < numRows; i++) {
+      flist.addRow(new ModularFeatureListRow(flist, data.get(INT, block.start + 4L * i)));
+    }
+  }
+
+  /**
+   * Creates the features, sets their data and values and adds them to the rows. Row values are set
+   * afterward so that they are not changed by row bindings.
+   */
+  void readFeaturesAndColumns(@NotNull MZmineProject project, @NotNull ModularFeatureList flist,
+      @NotNull BooleanSupplier isCanceled) throws IOException {
+    final Block block = findBlock(FeatureListBinaryFormat.BLOCK_FEATURES);
+    if (block == null) {
+      throw new IOException("Binary feature list file %s has no features.".formatted(file));
+    }
+
+    // raw files in the project, may be cached IMS files during import
+    final List<RawDataFile> projectFiles = project.getCurrentRawDataFiles();
+    final RawDataFile[] rawFiles = new RawDataFile[rawFileNames.length];
+    for (int i = 0; i < rawFileNames.length; i++) {
+      final String name = rawFileNames[i];
+      rawFiles[i] = projectFiles.stream().filter(f -> f.getName().equals(name)).findFirst()
+          .orElse(null);
+      if (rawFiles[i] == null) {
+        logger.warning(() -> "Cannot load features for file " + name
+                             + ". File does not exist in project.");
+      }
+    }
+
+    final long fileIndexOffset =
+        block.start + FeatureListBinaryFormat.align8(4L * numFeatures);
+    features = new ModularFeature[numFeatures];
+    final RawDataFile[] featureFiles = new RawDataFile[numFeatures];
+    for (int i = 0; i < numFeatures; i++) {
+      final RawDataFile file = rawFiles[data.get(INT, fileIndexOffset + 4L * i)];
+      if (file == null) {
+        continue;
+      }
+      featureFiles[i] = file;
+      final RawDataFile originalFile =
+          file instanceof CachedIMSRawDataFile c ? c.getOriginalFile() : file;
+      features[i] = new ModularFeature(flist, originalFile, null, null);
+    }
+
+    final Block dataBlock = findBlock(FeatureListBinaryFormat.BLOCK_FEATURE_DATA);
+    if (dataBlock != null) {
+      readFeatureData(dataBlock, flist, featureFiles, isCanceled);
+    }
+
+    for (Block column : blocks) {
+      if (column.type == FeatureListBinaryFormat.BLOCK_FEATURE_COLUMN) {
+        readColumn(column, features);
+      }
+    }
+
+    for (int i = 0; i < numFeatures; i++) {
+      if (features[i] == null) {
+        continue;
+      }
+      final ModularFeatureListRow row = (ModularFeatureListRow) flist.getRow(
+          data.get(INT, block.start + 4L * i));
+      row.addFeature(features[i].getRawDataFile(), features[i]);
+    }
+
+    final ModularDataModel[] rows = flist.getRows().toArray(ModularDataModel[]::new);
+    for (Block column : blocks) {
+      if (column.type == FeatureListBinaryFormat.BLOCK_ROW_COLUMN) {
+        readColumn(column, rows);
+      }
+    }
+  }
+
+  private void readFeatureData(Block block, ModularFeatureList flist, RawDataFile[] featureFiles,
+      BooleanSupplier isCanceled) throws IOException {
+    final MemoryMapStorage storage = flist.getMemoryMapStorage();
+    long totalValues = 0;
+    for (int i = 0; i < numFeatures; i++) {
+      totalValues += Math.max(0, data.get(INT, block.start + 4L * i));
+    }
+    long scanOffset = block.start + FeatureListBinaryFormat.align8(4L * numFeatures);
+    long mzOffset = scanOffset + FeatureListBinaryFormat.align8(4L * totalValues);
+    long intensityOffset = mzOffset + 8L * totalValues;
+
+    for (int i = 0; i < numFeatures; i++) {
+      if (isCanceled.getAsBoolean()) {
+        throw new IOException("Canceled loading of feature list " + flist.getName());
+      }
+      final int n = data.get(INT, block.start + 4L * i);
+      if (n == -1) {
+        continue;
+      }
+      if (features[i] != null) {
+        final List<Scan> allScans = featureFiles[i].getScans();
+        final List<Scan> scans = new ArrayList<>(n);
+        for (int j = 0; j < n; j++) {
+          Scan scan = allScans.get(data.get(INT, scanOffset + 4L * j));
+          // do not keep references to cached mobility scans
+          if (scan instanceof CachedIMSFrame cached) {
+            scan = cached.getOriginalFrame();
+          }
+          scans.add(scan);
+        }
+
+        final SimpleIonTimeSeries series;
+        if (lazy) {
+          series = SimpleIonTimeSeries.ofSegments(data.asSlice(mzOffset, 8L * n),
+              data.asSlice(intensityOffset, 8L * n), scans);
+        } else {
+          final double[] mzs = data.asSlice(mzOffset, 8L * n).toArray(DOUBLE);
+          final double[] intensities = data.asSlice(intensityOffset, 8L * n).toArray(DOUBLE);
+          series = new SimpleIonTimeSeries(storage, mzs, intensities, scans);
+        }
+        features[i].set(FeatureDataType.class, series);
+      }
+      scanOffset += 4L * n;
+      mzOffset += 8L * n;
+      intensityOffset += 8L * n;
+    }
+  }
+
+  /**
+   * Sets the values of a column to the rows or features. Null models are skipped.
+   */
+  private void readColumn(Block block, ModularDataModel[] models) throws IOException {
+    final String typeId = readString(block.start);
+    final long typeIdBytes = typeId.getBytes(StandardCharsets.UTF_8).length;
+    final int kindId = data.get(INT, block.start + 4 + typeIdBytes);
+    final ValueKind kind = ValueKind.forId(kindId);
+    if (kind == null) {
+      throw new IOException(
+          "Binary feature list file %s has an unknown value kind %d for data type %s.".formatted(
+              file, kindId, typeId));
+    }
+    final DataType type = DataTypes.getTypeForId(typeId);
+    if (type == null) {
+      logger.info(() -> "No data type for id " + typeId);
+      return;
+    }
+
+    final long presentOffset =
+        block.start + FeatureListBinaryFormat.align8(4 + typeIdBytes + 4);
+    final long valuesOffset = presentOffset + FeatureListBinaryFormat.align8(models.length);
+    for (int i = 0; i < models.length; i++) {
+      if (models[i] == null || data.get(ValueLayout.JAVA_BYTE, presentOffset + i) == 0) {
+        continue;
+      }
+      final long offset = valuesOffset + (long) i * kind.getBytes();
+      final Object value = switch (kind) {
+        case DOUBLE -> data.get(DOUBLE, offset);
+        case FLOAT -> data.get(FLOAT, offset);
+        case INTEGER -> data.get(INT, offset);
+        case DOUBLE_RANGE -> Range.closed(data.get(DOUBLE, offset), data.get(DOUBLE, offset + 8));
+        case FLOAT_RANGE -> Range.closed(data.get(FLOAT, offset), data.get(FLOAT, offset + 4));
+        case FEATURE_STATUS -> readFeatureStatus(offset);
+      };
+      try {
+        models[i].set(type, value);
+      } catch (RuntimeException e) {
+        logger.log(Level.WARNING, () -> String.format(
+            "DataType %s and value %s were not set. Maybe incompatible during loading?", type,
+            value));
+      }
+    }
+  }
+
+  private FeatureStatus readFeatureStatus(long offset) throws IOException {
+    final int id = data.get(INT, offset);
+    final FeatureStatus status = FeatureListBinaryFormat.featureStatusForId(id);
+    if (status == null) {
+      throw new IOException(
+          "Binary feature list file %s has an unknown feature status id %d.".formatted(file, id));
+    }
+    return status;
+  }
+
+  /**
+   * Unmaps the file if not in lazy mode. In lazy mode, the mapping is released by the garbage
+   * collector once all feature data is unreachable.
+   */
+  @Override
+  public void close() {
+    if (!lazy) {
+      arena.close();
+    }
+  }
+
+  private record Block(int type, long start, long length) {
+
+  }
+
+  private record Header(int numRows, int numFeatures, String[] rawFileNames) {
+
+  }
+}
@@ -87,11 +87,14 @@ public class FeatureListLoadTask extends AbstractTask {
   public static final String TEMP_FLIST_DATA_FOLDER = "mzmine_featurelists_temp";
   public static final Pattern fileNamePattern = Pattern
       .compile("([^\\n]+)(" + FeatureListSaveTask.DATA_FILE_SUFFIX + ")");
+  public static final Pattern binaryFileNamePattern = Pattern.compile(
+      "([^\\n]+)(" + Pattern.quote(FeatureListSaveTask.BINARY_DATA_FILE_SUFFIX) + ")");
 
   private static final Logger logger = Logger.getLogger(FeatureListLoadTask.class.getName());
   final String idTypeUniqueID = new IDType().getUniqueID();
   private final ZipFile zip;
   private final MZmineProject project;
+  private final boolean lazyFeatureData;
   private final AtomicInteger rowCounter = new AtomicInteger(0);
   private int totalRows = 1;
   private int processedRows = 0;
@@ -101,9 +104,19 @@ public class FeatureListLoadTask extends AbstractTask {
 
   public FeatureListLoadTask(@Nullable MemoryMapStorage storage, @NotNull MZmineProject project,
       ZipFile zip) {
+    this(storage, project, zip, false);
+  }
+
+  /**
+   * @param lazyFeatureData use the feature data of binary feature lists directly from the memory
+   *                        mapped file
+   */
+  public FeatureListLoadTask(@Nullable MemoryMapStorage storage, @NotNull MZmineProject project,
+      ZipFile zip, boolean lazyFeatureData) {
     super(storage, Instant.now());
     this.project = project;
     this.zip = zip;
+    this.lazyFeatureData = lazyFeatureData;
   }
 
   /**
@@ -156,7 +169,8 @@ public class FeatureListLoadTask extends AbstractTask {
       logger.info(() -> "Unzipping feature lists done.");
 
       File[] files = new File(tempDirectory.toFile(), FeatureListSaveTask.FLIST_FOLDER)
-          .listFiles((dir, name) -> fileNamePattern.matcher(name).matches());
+          .listFiles((dir, name) -> fileNamePattern.matcher(name).matches()
+                                    || binaryFileNamePattern.matcher(name).matches());
       if (files == null) {
         logger.info("Did not find feature lists to load.");
         setStatus(TaskStatus.FINISHED);
@@ -176,6 +190,12 @@ public class FeatureListLoadTask extends AbstractTask {
         }
         rowCounter.set(0);
 
+        if (binaryFileNamePattern.matcher(flistFile.getName()).matches()) {
+          loadBinaryFeatureList(storage, flistFile);
+          processedFlists++;
+          continue;
+        }
+
         final File metadataFile = new File(flistFile.toString()
             .replace(FeatureListSaveTask.DATA_FILE_SUFFIX,
                 FeatureListSaveTask.METADATA_FILE_SUFFIX));
@@ -210,6 +230,46 @@ public class FeatureListLoadTask extends AbstractTask {
     setStatus(TaskStatus.FINISHED);
   }
 
+  /**
+   * Loads a feature list saved in the {@link io.github.mzmine.modules.io.projectsave.FeatureListBinaryFormat}.
+   * Rows, features and column values are read from the binary file, all other types from the
+   * annotations xml.
+   */
+  private void loadBinaryFeatureList(MemoryMapStorage storage, File binaryFile)
+      throws IOException {
+    final String path = binaryFile.toString();
+    final String base = path.substring(0,
+        path.length() - FeatureListSaveTask.BINARY_DATA_FILE_SUFFIX.length());
+    final File metadataFile = new File(base + FeatureListSaveTask.METADATA_FILE_SUFFIX);
+    final File annotationsFile = new File(base + FeatureListSaveTask.ANNOTATIONS_FILE_SUFFIX);
+
+    final ModularFeatureList flist = readMetadataCreateFeatureList(metadataFile, storage);
+    if (flist == null) {
+      logger.severe(
+          () -> "Cannot load feature list from files " + binaryFile.getAbsolutePath() + " and "
+                + metadataFile.getAbsolutePath());
+      return;
+    }
+    currentFlist = flist.getName();
+    processedRows = 0;
+
+    try (var reader = new FeatureListBinaryReader(binaryFile, lazyFeatureData)) {
+      totalRows = Math.max(1, reader.getNumRows());
+      reader.createRows(flist);
+      reader.readFeaturesAndColumns(project, flist, this::isCanceled);
+    }
+    if (isCanceled()) {
+      return;
+    }
+
+    if (annotationsFile.exists()) {
+      parseFeatureList(storage, project, flist, annotationsFile);
+    }
+
+    flist.replaceCachedFilesAndScans();
+    project.addFeatureList(flist);
+  }
+
   private void parseFeatureList(MemoryMapStorage storage, MZmineProject project,
       ModularFeatureList flist, File flistFile) {
     currentFlist = flist.getName();
@@ -440,7 +500,10 @@ public class FeatureListLoadTask extends AbstractTask {
     // create feature with original file, but use buffered file for data type loading.
     final RawDataFile originalFile =
         file instanceof CachedIMSRawDataFile c ? c.getOriginalFile() : file;
-    final ModularFeature feature = new ModularFeature(flist, originalFile, null, null);
+    // binary feature lists already created the feature
+    final ModularFeature existing = row.getFeature(originalFile);
+    final ModularFeature feature =
+        existing != null ? existing : new ModularFeature(flist, originalFile, null, null);
 
     while (!(reader.getEventType() == XMLEvent.END_ELEMENT && reader.getLocalName()
         .equals(CONST.XML_FEATURE_ELEMENT)) && reader.hasNext()) {
@@ -467,6 +530,8 @@ public class FeatureListLoadTask extends AbstractTask {
       }
     }
 
-    row.addFeature(originalFile, feature);
+    if (existing == null) {
+      row.addFeature(originalFile, feature);
+    }
   }
 }
@@ -0,0 +1,235 @@
+/*
+ * Copyright (c) 2004-2024 The mzmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package io.github.mzmine.modules.io.projectsave;
+
+import com.google.common.collect.Range;
+import io.github.mzmine.datamodel.FeatureStatus;
+import io.github.mzmine.datamodel.MZmineProject;
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.features.ModularFeature;
+import io.github.mzmine.datamodel.features.ModularFeatureList;
+import io.github.mzmine.datamodel.features.ModularFeatureListRow;
+import io.github.mzmine.datamodel.features.types.DataType;
+import io.github.mzmine.datamodel.features.types.DetectionType;
+import io.github.mzmine.datamodel.features.types.numbers.abstr.DoubleRangeType;
+import io.github.mzmine.datamodel.features.types.numbers.abstr.DoubleType;
+import io.github.mzmine.datamodel.features.types.numbers.abstr.FloatRangeType;
+import io.github.mzmine.datamodel.features.types.numbers.abstr.FloatType;
+import io.github.mzmine.datamodel.features.types.numbers.abstr.IntegerType;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Binary columnar format of the feature list data in a project file. Numeric row and feature
+ * values and {@link io.github.mzmine.datamodel.featuredata.impl.SimpleIonTimeSeries} data are
+ * stored as primitive columns in length-prefixed blocks. All other types are stored in the XML
+ * annotations file of the same feature list, see {@link FeatureListSaveTask}.
+ * <p>
+ * All values are little endian. The file starts with the {@link #MAGIC} bytes, the format version,
+ * the number of rows, features and raw data files and the raw data file names. Each block starts
+ * with the block type (int), a reserved int and the length of the payload in bytes (long). Blocks
+ * and arrays start at multiples of 8 bytes, so that they can be accessed directly in a memory
+ * mapped file. Unknown blocks are skipped by their length.
+ */
+public final class FeatureListBinaryFormat {
+
+  public static final byte[] MAGIC = "MZFLBIN\0".getBytes(StandardCharsets.US_ASCII);
+  public static final int VERSION = 1;
+
+  /**
+   * int[numRows] row ids
+   */
+  public static final int BLOCK_ROW_IDS = 1;
+  /**
+   * int[numFeatures] row index, int[numFeatures] raw file index
+   */
+  public static final int BLOCK_FEATURES = 2;
+  /**
+   * type id, kind, byte[numRows] value present, values[numRows]
+   */
+  public static final int BLOCK_ROW_COLUMN = 3;
+  /**
+   * type id, kind, byte[numFeatures] value present, values[numFeatures]
+   */
+  public static final int BLOCK_FEATURE_COLUMN = 4;
+  /**
+   * int[numFeatures] number of data points (-1 if absent), int[] scan indices, double[] m/z
+   * values, double[] intensities of all features
+   */
+  public static final int BLOCK_FEATURE_DATA = 5;
+
+  public static final int BLOCK_HEADER_BYTES = 16;
+
+  private static final Set<Class<?>> XML_BASE_CLASSES = Set.of(DoubleType.class, FloatType.class,
+      IntegerType.class, DoubleRangeType.class, FloatRangeType.class, DetectionType.class);
+
+  private FeatureListBinaryFormat() {
+  }
+
+  public static long align8(long position) {
+    return (position + 7) & ~7L;
+  }
+
+  /**
+   * The ids are part of the file format and must not change when constants are added or
+   * reordered.
+   *
+   * @return the stable id of the feature status
+   */
+  public static int featureStatusId(@NotNull FeatureStatus status) {
+    return switch (status) {
+      case UNKNOWN -> 0;
+      case DETECTED -> 1;
+      case ESTIMATED -> 2;
+      case MANUAL -> 3;
+    };
+  }
+
+  /**
+   * @return the feature status of this id or null if the id is unknown
+   */
+  public static @Nullable FeatureStatus featureStatusForId(int id) {
+    return switch (id) {
+      case 0 -> FeatureStatus.UNKNOWN;
+      case 1 -> FeatureStatus.DETECTED;
+      case 2 -> FeatureStatus.ESTIMATED;
+      case 3 -> FeatureStatus.MANUAL;
+      default -> null;
+    };
+  }
+
+  /**
+   * @return number of bytes of a column block payload
+   */
+  public static long columnPayloadBytes(@NotNull String typeId, @NotNull ValueKind kind,
+      int numValues) {
+    final int idBytes = typeId.getBytes(StandardCharsets.UTF_8).length;
+    return align8(4 + idBytes + 4) + align8(numValues) + align8(
+        (long) numValues * kind.getBytes());
+  }
+
+  /**
+   * Primitive encoding of the value of a type. The ids are part of the file format and must not
+   * change.
+   */
+  public enum ValueKind {
+    DOUBLE(0, 8), FLOAT(1, 4), INTEGER(2, 4), DOUBLE_RANGE(3, 16), FLOAT_RANGE(4, 8), FEATURE_STATUS(
+        5, 4);
+
+    private final int id;
+    private final int bytes;
+
+    ValueKind(int id, int bytes) {
+      this.id = id;
+      this.bytes = bytes;
+    }
+
+    /**
+     * Only types that use the XML serialization of their abstract number type can be stored in
+     * binary columns. Types with custom serialization are written to XML.
+     *
+     * @return the kind used for this type or null if the type is not stored in binary columns
+     */
+    public static @Nullable ValueKind forType(@NotNull DataType<?> type) {
+      final ValueKind kind = switch (type) {
+        case DoubleType _ -> DOUBLE;
+        case FloatType _ -> FLOAT;
+        case IntegerType _ -> INTEGER;
+        case DoubleRangeType _ -> DOUBLE_RANGE;
+        case FloatRangeType _ -> FLOAT_RANGE;
+        case DetectionType _ -> FEATURE_STATUS;
+        default -> null;
+      };
+      if (kind == null || !usesDefaultXmlSerialization(type)) {
+        return null;
+      }
+      return kind;
+    }
+
+    private static boolean usesDefaultXmlSerialization(DataType<?> type) {
+      try {
+        final Class<?> save = type.getClass()
+            .getMethod("saveToXML", XMLStreamWriter.class, Object.class, ModularFeatureList.class,
+                ModularFeatureListRow.class, ModularFeature.class, RawDataFile.class)
+            .getDeclaringClass();
+        final Class<?> load = type.getClass()
+            .getMethod("loadFromXML", XMLStreamReader.class, MZmineProject.class,
+                ModularFeatureList.class, ModularFeatureListRow.class, ModularFeature.class,
+                RawDataFile.class).getDeclaringClass();
+        return XML_BASE_CLASSES.contains(save) && XML_BASE_CLASSES.contains(load);
+      } catch (NoSuchMethodException e) {
+        return false;
+      }
+    }
+
+    /**
+     * @return the kind of this id or null if the id is unknown
+     */
+    public static @Nullable ValueKind forId(int id) {
+      for (final ValueKind kind : values()) {
+        if (kind.id == id) {
+          return kind;
+        }
+      }
+      return null;
+    }
+
+    /**
+     * @return the stable id that is written to the file
+     */
+    public int getId() {
+      return id;
+    }
+
+    /**
+     * @return number of bytes per value
+     */
+    public int getBytes() {
+      return bytes;
+    }
+
+    /**
+     * @return true if the value can be written and read without loss
+     */
+    public boolean canEncode(@Nullable Object value) {
+      return switch (this) {
+        case DOUBLE -> value instanceof Double;
+        case FLOAT -> value instanceof Float;
+        case INTEGER -> value instanceof Integer;
+        case DOUBLE_RANGE -> value instanceof Range<?> r && r.hasLowerBound() && r.hasUpperBound()
+            && r.lowerEndpoint() instanceof Double && r.upperEndpoint() instanceof Double;
+        case FLOAT_RANGE -> value instanceof Range<?> r && r.hasLowerBound() && r.hasUpperBound()
+            && r.lowerEndpoint() instanceof Float && r.upperEndpoint() instanceof Float;
+        case FEATURE_STATUS -> value instanceof FeatureStatus;
+      };
+    }
+  }
+}
@@ -0,0 +1,421 @@
+/*
+ * Copyright (c) 2004-2024 The mzmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package io.github.mzmine.modules.io.projectsave;
+
+import com.google.common.collect.Range;
+import io.github.mzmine.datamodel.FeatureStatus;
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.Scan;
+import io.github.mzmine.datamodel.featuredata.impl.SimpleIonTimeSeries;
+import io.github.mzmine.datamodel.features.FeatureListRow;
+import io.github.mzmine.datamodel.features.ModularDataModel;
+import io.github.mzmine.datamodel.features.ModularFeature;
+import io.github.mzmine.datamodel.features.ModularFeatureList;
+import io.github.mzmine.datamodel.features.types.DataType;
+import io.github.mzmine.datamodel.features.types.FeatureDataType;
+import io.github.mzmine.datamodel.features.types.RawFileType;
+import io.github.mzmine.modules.io.projectsave.FeatureListBinaryFormat.ValueKind;
+import io.github.mzmine.util.ParsingUtils;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.function.BooleanSupplier;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Writes the {@link FeatureListBinaryFormat}. The constructor decides which types are stored in
+ * binary columns: a type is stored in binary if all its values in rows (or features) can be
+ * encoded by its {@link ValueKind}. All other values need to be written to the XML annotations
+ * file, see {@link #isBinaryRowType(DataType)} and {@link #isBinaryFeatureType(DataType)}.
+ */
+public class FeatureListBinaryWriter {
+
+  private final ModularFeatureList flist;
+  private final List<RawDataFile> rawFiles;
+  private final List<FeatureListRow> rows;
+  private final List<ModularFeature> features = new ArrayList<>();
+  private final int[] featureRows;
+  private final int[] featureFiles;
+  private final Map<DataType, ValueKind> rowColumns;
+  private final Map<DataType, ValueKind> featureColumns;
+  private final boolean binaryFeatureData;
+
+  /**
+   * @param flist the feature list, needs to be unchanged until written
+   */
+  public FeatureListBinaryWriter(@NotNull ModularFeatureList flist) {
+    this.flist = flist;
+    rawFiles = flist.getRawDataFiles();
+    rows = List.copyOf(flist.getRows());
+
+    final Map<RawDataFile, Integer> fileIndex = new IdentityHashMap<>();
+    for (int i = 0; i < rawFiles.size(); i++) {
+      fileIndex.put(rawFiles.get(i), i);
+    }
+
+    final List<Integer> rowIndices = new ArrayList<>();
+    final List<Integer> fileIndices = new ArrayList<>();
+    for (int r = 0; r < rows.size(); r++) {
+      for (ModularFeature feature : rows.get(r).getFeatures()) {
+        // same as in xml
+        final RawDataFile file = feature.getRawDataFile();
+        final Integer index = file == null ? null : fileIndex.get(file);
+        if (index == null || feature.getFeatureStatus() == FeatureStatus.UNKNOWN) {
+          continue;
+        }
+        features.add(feature);
+        rowIndices.add(r);
+        fileIndices.add(index);
+      }
+    }
+    featureRows = rowIndices.stream().mapToInt(Integer::intValue).toArray();
+    featureFiles = fileIndices.stream().mapToInt(Integer::intValue).toArray();
+
+    rowColumns = findBinaryColumns(rows.stream().map(ModularDataModel.class::cast).toList());
+    featureColumns = findBinaryColumns(features.stream().map(ModularDataModel.class::cast).toList());
+    binaryFeatureData = features.stream().map(f -> f.get(FeatureDataType.class))
+        .allMatch(data -> data == null || data.getClass() == SimpleIonTimeSeries.class);
+  }
+
+  /**
+   * @return the types that are stored as columns and the kind of encoding
+   */
+  private static Map<DataType, ValueKind> findBinaryColumns(List<ModularDataModel> models) {
+    final Map<DataType, ValueKind> columns = new LinkedHashMap<>();
+    final Set<DataType> xmlTypes = new HashSet<>();
+    for (ModularDataModel model : models) {
+      for (Entry<DataType, Object> entry : model.getMap().entrySet()) {
+        final DataType type = entry.getKey();
+        if (xmlTypes.contains(type) || entry.getValue() == null) {
+          continue;
+        }
+        ValueKind kind = columns.get(type);
+        if (kind == null) {
+          kind = ValueKind.forType(type);
+        }
+        if (kind != null && kind.canEncode(entry.getValue())) {
+          columns.put(type, kind);
+        } else {
+          columns.remove(type);
+          xmlTypes.add(type);
+        }
+      }
+    }
+    return columns;
+  }
+
+  /**
+   * @return true if the value of this row type is written to the binary file
+   */
+  boolean isBinaryRowType(DataType<?> type) {
+    return rowColumns.containsKey(type);
+  }
+
+  /**
+   * @return true if the value of this feature type is written to the binary file
+   */
+  boolean isBinaryFeatureType(DataType<?> type) {
+    return featureColumns.containsKey(type) || type instanceof RawFileType || (binaryFeatureData
+        && type instanceof FeatureDataType);
+  }
+
+  public void write(@NotNull OutputStream out, @NotNull BooleanSupplier isCanceled)
+      throws IOException {
+    final BlockOutput output = new BlockOutput(out);
+    output.writeBytes(FeatureListBinaryFormat.MAGIC);
+    output.writeInt(FeatureListBinaryFormat.VERSION);
+    output.writeInt(rows.size());
+    output.writeInt(features.size());
+    output.writeInt(rawFiles.size());
+    for (RawDataFile file : rawFiles) {
+      output.writeString(file.getName());
+    }
+    output.pad8();
+
+    // row ids
+    output.startBlock(FeatureListBinaryFormat.BLOCK_ROW_IDS, 4L * rows.size());
+    for (FeatureListRow row : rows) {
+      output.writeInt(row.getID());
+    }
+    output.endBlock();
+
+    // feature to row and raw file mapping
+    output.startBlock(FeatureListBinaryFormat.BLOCK_FEATURES,
+        FeatureListBinaryFormat.align8(4L * features.size()) + 4L * features.size());
+    for (int row : featureRows) {
+      output.writeInt(row);
+    }
+    output.pad8();
+    for (int file : featureFiles) {
+      output.writeInt(file);
+    }
+    output.endBlock();
+
+    if (binaryFeatureData) {
+      writeFeatureData(output, isCanceled);
+    }
+
+    for (Entry<DataType, ValueKind> column : featureColumns.entrySet()) {
+      writeColumn(output, FeatureListBinaryFormat.BLOCK_FEATURE_COLUMN, column.getKey(),
+          column.getValue(), features);
+    }
+    for (Entry<DataType, ValueKind> column : rowColumns.entrySet()) {
+      writeColumn(output, FeatureListBinaryFormat.BLOCK_ROW_COLUMN, column.getKey(),
+          column.getValue(), rows);
+    }
+    output.flush();
+  }
+
+  private void writeFeatureData(BlockOutput output, BooleanSupplier isCanceled)
+      throws IOException {
+    final int[] numValues = new int[features.size()];
+    long totalValues = 0;
+    for (int i = 0; i < features.size(); i++) {
+      final SimpleIonTimeSeries data = (SimpleIonTimeSeries) features.get(i)
+          .get(FeatureDataType.class);
+      numValues[i] = data == null ? -1 : data.getNumberOfValues();
+      totalValues += Math.max(0, numValues[i]);
+    }
+
+    final long length = FeatureListBinaryFormat.align8(4L * features.size())
+        + FeatureListBinaryFormat.align8(4L * totalValues) + 16L * totalValues;
+    output.startBlock(FeatureListBinaryFormat.BLOCK_FEATURE_DATA, length);
+    for (int n : numValues) {
+      output.writeInt(n);
+    }
+    output.pad8();
+    for (int i = 0; i < features.size(); i++) {
+      if (isCanceled.getAsBoolean()) {
+        throw new IOException("Canceled saving of feature list " + flist.getName());
+      }
+      if (numValues[i] > 0) {
+        final SimpleIonTimeSeries data = (SimpleIonTimeSeries) features.get(i)
+            .get(FeatureDataType.class);
+        for (int index : getScanIndices(data.getSpectra(), rawFiles.get(featureFiles[i]))) {
+          output.writeInt(index);
+        }
+      }
+    }
+    output.pad8();
+    for (int i = 0; i < features.size(); i++) {
+      if (numValues[i] > 0) {
+        final SimpleIonTimeSeries data = (SimpleIonTimeSeries) features.get(i)
+            .get(FeatureDataType.class);
+        for (int j = 0; j < numValues[i]; j++) {
+          output.writeDouble(data.getMZ(j));
+        }
+      }
+    }
+    for (int i = 0; i < features.size(); i++) {
+      if (numValues[i] > 0) {
+        final SimpleIonTimeSeries data = (SimpleIonTimeSeries) features.get(i)
+            .get(FeatureDataType.class);
+        for (int j = 0; j < numValues[i]; j++) {
+          output.writeDouble(data.getIntensity(j));
+        }
+      }
+    }
+    output.endBlock();
+  }
+
+  /**
+   * Indices of the scans in all scans of the raw data file. Uses the sorting by scan number and
+   * falls back to a full search.
+   */
+  private static int[] getScanIndices(List<Scan> scans, RawDataFile file) {
+    final List<Scan> allScans = file.getScans();
+    final int[] indices = new int[scans.size()];
+    int lower = 0;
+    for (int i = 0; i < scans.size(); i++) {
+      final Scan scan = scans.get(i);
+      int low = lower;
+      int high = allScans.size() - 1;
+      int found = -1;
+      while (low <= high) {
+        final int mid = (low + high) >>> 1;
+        final int compare = Integer.compare(allScans.get(mid).getScanNumber(),
+            scan.getScanNumber());
+        if (compare < 0) {
+          low = mid + 1;
+        } else if (compare > 0) {
+          high = mid - 1;
+        } else {
+          found = mid;
+          break;
+        }
+      }
+      if (found == -1 || !scan.equals(allScans.get(found))) {
+        return ParsingUtils.getIndicesOfSubListElements(scans, allScans);
+      }
+      indices[i] = found;
+      lower = found;
+    }
+    return indices;
+  }
+
+  private static void writeColumn(BlockOutput output, int blockType, DataType type,
+      ValueKind kind, List<? extends ModularDataModel> models) throws IOException {
+    final String typeId = type.getUniqueID();
+    output.startBlock(blockType,
+        FeatureListBinaryFormat.columnPayloadBytes(typeId, kind, models.size()));
+    output.writeString(typeId);
+    output.writeInt(kind.getId());
+    output.pad8();
+    final Object[] values = new Object[models.size()];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = models.get(i).get(type);
+      output.writeByte(values[i] != null ? 1 : 0);
+    }
+    output.pad8();
+    for (final Object value : values) {
+      switch (kind) {
+        case DOUBLE -> output.writeDouble(value == null ? 0d : (Double) value);
+        case FLOAT -> output.writeFloat(value == null ? 0f : (Float) value);
+        case INTEGER -> output.writeInt(value == null ? 0 : (Integer) value);
+        case DOUBLE_RANGE -> {
+          final Range<Double> range = (Range<Double>) value;
+          output.writeDouble(range == null ? 0d : range.lowerEndpoint());
+          output.writeDouble(range == null ? 0d : range.upperEndpoint());
+        }
+        case FLOAT_RANGE -> {
+          final Range<Float> range = (Range<Float>) value;
+          output.writeFloat(range == null ? 0f : range.lowerEndpoint());
+          output.writeFloat(range == null ? 0f : range.upperEndpoint());
+        }
+        case FEATURE_STATUS -> output.writeInt(
+            value == null ? 0 : FeatureListBinaryFormat.featureStatusId((FeatureStatus) value));
+      }
+    }
+    output.endBlock();
+  }
+
+  /**
+   * Little endian output with position tracking for alignment and block length checks
+   */
+  private static class BlockOutput {
+
+    private final OutputStream out;
+    private final ByteBuffer buffer = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+    private long position = 0;
+    private long blockEnd = -1;
+
+    private BlockOutput(OutputStream out) {
+      this.out = out;
+    }
+
+    private void ensure(int bytes) throws IOException {
+      if (buffer.remaining() < bytes) {
+        flushBuffer();
+      }
+    }
+
+    void writeByte(int value) throws IOException {
+      ensure(1);
+      buffer.put((byte) value);
+      position++;
+    }
+
+    void writeInt(int value) throws IOException {
+      ensure(4);
+      buffer.putInt(value);
+      position += 4;
+    }
+
+    void writeLong(long value) throws IOException {
+      ensure(8);
+      buffer.putLong(value);
+      position += 8;
+    }
+
+    void writeFloat(float value) throws IOException {
+      ensure(4);
+      buffer.putFloat(value);
+      position += 4;
+    }
+
+    void writeDouble(double value) throws IOException {
+      ensure(8);
+      buffer.putDouble(value);
+      position += 8;
+    }
+
+    void writeBytes(byte[] bytes) throws IOException {
+      flushBuffer();
+      out.write(bytes);
+      position += bytes.length;
+    }
+
+    void writeString(String value) throws IOException {
+      final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+      writeInt(bytes.length);
+      writeBytes(bytes);
+    }
+
+    void pad8() throws IOException {
+      while ((position & 7) != 0) {
+        writeByte(0);
+      }
+    }
+
+    void startBlock(int type, long payloadLength) throws IOException {
+      writeInt(type);
+      writeInt(0);
+      writeLong(payloadLength);
+      // blocks are padded to 8 bytes
+      blockEnd = FeatureListBinaryFormat.align8(position + payloadLength);
+    }
+
+    void endBlock() throws IOException {
+      pad8();
+      if (position != blockEnd) {
+        throw new IllegalStateException(
+            "Block length does not match. Position %d, expected %d".formatted(position,
+                blockEnd));
+      }
+    }
+
+    private void flushBuffer() throws IOException {
+      out.write(buffer.array(), 0, buffer.position());
+      buffer.clear();
+    }
+
+    void flush() throws IOException {
+      flushBuffer();
+      out.flush();
+    }
+  }
+}
@@ -38,25 +38,14 @@ import io.github.mzmine.datamodel.features.types.DataType;
 import io.github.mzmine.datamodel.features.types.FeaturesType;
 import io.github.mzmine.datamodel.features.types.numbers.IDType;
 import io.github.mzmine.modules.io.projectload.version_3_0.CONST;
-import io.github.mzmine.taskcontrol.AbstractTask;
-import io.github.mzmine.taskcontrol.TaskStatus;
 import io.github.mzmine.util.ParsingUtils;
-import io.github.mzmine.util.StreamCopy;
 import io.github.mzmine.util.XMLUtils;
-import io.github.mzmine.util.files.FileAndPathUtil;
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.OutputStream;
-import java.time.Instant;
 import java.util.List;
 import java.util.Map.Entry;
-import java.util.logging.Level;
+import java.util.function.BooleanSupplier;
 import java.util.logging.Logger;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
 import javafx.collections.ObservableList;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
@@ -70,94 +59,104 @@ import org.jetbrains.annotations.Nullable;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 
-public class FeatureListSaveTask extends AbstractTask {
+/**
+ * Serializes a feature list into the data and metadata entries of a project file. Both entries are
+ * written concurrently with other feature lists and raw data files by the {@link ProjectZipWriter}.
+ */
+public class FeatureListSaveTask {
 
   public static final String METADATA_FILE_SUFFIX = "_metadata.xml";
   public static final String DATA_FILE_SUFFIX = "_data.xml";
+  public static final String BINARY_DATA_FILE_SUFFIX = "_data.bin";
+  public static final String ANNOTATIONS_FILE_SUFFIX = "_annotations.xml";
   public static final String FLIST_FOLDER = "featurelists/";
   private static final Logger logger = Logger.getLogger(FeatureListSaveTask.class.getName());
   private static final IDType idType = new IDType();
 
   private final ModularFeatureList flist;
-  private final ZipOutputStream zos;
   private final int rows;
-  private final StreamCopy copy;
-  private int processedRows = 0;
+  private final BooleanSupplier isCanceled;
+  private final boolean binaryFormat;
+  private FeatureListBinaryWriter binaryWriter;
+  private volatile int processedRows = 0;
+  private volatile boolean metadataSaved = false;
+
+  /**
+   * @param isCanceled stops writing rows if canceled
+   */
+  public FeatureListSaveTask(ModularFeatureList flist, BooleanSupplier isCanceled) {
+    this(flist, isCanceled, false);
+  }
 
-  public FeatureListSaveTask(ModularFeatureList flist, ZipOutputStream zos) {
-    super(null, Instant.now());
+  /**
+   * @param isCanceled   stops writing rows if canceled
+   * @param binaryFormat write numeric columns and feature data to the
+   *                     {@link FeatureListBinaryFormat} and only the remaining types to the
+   *                     annotations xml
+   */
+  public FeatureListSaveTask(ModularFeatureList flist, BooleanSupplier isCanceled,
+      boolean binaryFormat) {
     this.flist = flist;
-    this.zos = zos;
+    this.isCanceled = isCanceled;
+    this.binaryFormat = binaryFormat;
     rows = flist.getNumberOfRows();
-    copy = new StreamCopy();
   }
 
   public static String getDataFileName(String flistname) {
     return FLIST_FOLDER + CONST.XML_FEATURE_LIST_ELEMENT + "_" + flistname + DATA_FILE_SUFFIX;
   }
 
+  public static String getBinaryDataFileName(String flistname) {
+    return FLIST_FOLDER + CONST.XML_FEATURE_LIST_ELEMENT + "_" + flistname
+        + BINARY_DATA_FILE_SUFFIX;
+  }
+
+  public static String getAnnotationsFileName(String flistname) {
+    return FLIST_FOLDER + CONST.XML_FEATURE_LIST_ELEMENT + "_" + flistname
+        + ANNOTATIONS_FILE_SUFFIX;
+  }
+
   public static String getMetadataFileName(String flistname) {
     return FLIST_FOLDER + CONST.XML_FEATURE_LIST_ELEMENT + "_" + flistname + METADATA_FILE_SUFFIX;
   }
 
-  @Override
   public String getTaskDescription() {
     return "Saving feature list " + flist.getName();
   }
 
-  @Override
   public double getFinishedPercentage() {
-    return (((double) processedRows / rows) + copy.getProgress()) / 2;
+    return ((rows == 0 ? 1d : (double) processedRows / rows) + (metadataSaved ? 1 : 0)) / 2;
   }
 
-  @Override
-  public void run() {
-    setStatus(TaskStatus.PROCESSING);
-
-    if (!saveFeatureData()) {
-      return;
+  /**
+   * Submits the data and metadata entries. The serialization runs in the worker threads of the
+   * writer. In the binary format, the columns are selected here, so the feature list should not
+   * change until the entries are written.
+   */
+  public void submit(@NotNull ProjectZipWriter zipWriter) throws IOException {
+    if (binaryFormat) {
+      binaryWriter = new FeatureListBinaryWriter(flist);
+      zipWriter.submit(getBinaryDataFileName(flist.getName()),
+          out -> binaryWriter.write(out, isCanceled));
+      zipWriter.submit(getAnnotationsFileName(flist.getName()), this::writeFeatureData);
+    } else {
+      zipWriter.submit(getDataFileName(flist.getName()), this::writeFeatureData);
     }
-
-    saveAppliedMethods();
-
-    setStatus(TaskStatus.FINISHED);
+    zipWriter.submit(getMetadataFileName(flist.getName()), this::writeAppliedMethods);
   }
 
-  private boolean saveAppliedMethods() {
-    logger.finest(() -> "Creating temporary file for feature list " + flist.getName() + ".");
-    File tempFile;
-    try {
-      tempFile = FileAndPathUtil.createTempFile("mzmine_featurelist_applied_methods", ".tmp");
-    } catch (IOException e) {
-      logger.log(Level.SEVERE, "Cannot create temporary file.", e);
-      setStatus(TaskStatus.ERROR);
-      return false;
-    }
-
-    try {
-      final DocumentBuilderFactory dbFactory = DocumentBuilderFactory.newInstance();
-      final DocumentBuilder dBuilder = dbFactory.newDocumentBuilder();
-      final Document document = dBuilder.newDocument();
-      final Element root = document.createElement(CONST.XML_ROOT_ELEMENT);
-      document.appendChild(root);
-
-      appendMetadata(document, root, flist);
-
-      XMLUtils.saveToFile(tempFile, document);
-      zos.putNextEntry(new ZipEntry(getMetadataFileName(flist.getName())));
+  private void writeAppliedMethods(OutputStream out)
+      throws ParserConfigurationException, TransformerException {
+    final DocumentBuilderFactory dbFactory = DocumentBuilderFactory.newInstance();
+    final DocumentBuilder dBuilder = dbFactory.newDocumentBuilder();
+    final Document document = dBuilder.newDocument();
+    final Element root = document.createElement(CONST.XML_ROOT_ELEMENT);
+    document.appendChild(root);
 
-      try (InputStream is = new FileInputStream(tempFile)) {
-        copy.copy(is, zos);
-      }
-
-      tempFile.delete();
-    } catch (ParserConfigurationException | TransformerException | IOException e) {
-      logger.log(Level.SEVERE, e.getMessage(), e);
-      setStatus(TaskStatus.ERROR);
-      return false;
-    }
+    appendMetadata(document, root, flist);
 
-    return true;
+    XMLUtils.saveToStream(out, document);
+    metadataSaved = true;
   }
 
   private void appendMetadata(Document document, Element root, ModularFeatureList flist) {
@@ -217,63 +216,31 @@ public class FeatureListSaveTask extends AbstractTask {
     root.appendChild(dataFilesListElement);
   }
 
-  private boolean saveFeatureData() {
-    logger.finest(() -> "Creating temporary file for feature list " + flist.getName() + ".");
-    File tempFile;
-    try {
-      tempFile = FileAndPathUtil.createTempFile("mzmine_featurelist_data", ".tmp");
-    } catch (IOException e) {
-      logger.log(Level.SEVERE, "Cannot create temporary file.", e);
-      setStatus(TaskStatus.ERROR);
-      return false;
-    }
-
-    try (OutputStream os = new FileOutputStream(tempFile)) {
-      final XMLOutputFactory xof = XMLOutputFactory.newInstance();
-      final XMLStreamWriter writer = new IndentingXMLStreamWriter(xof.createXMLStreamWriter(os));
-      writer.writeStartDocument("UTF-8", "1.0");
-
-      writer.writeStartElement("featurelist");
-      writer.writeAttribute(CONST.XML_FLIST_NAME_ATTR, flist.getName());
-      writer.writeAttribute(CONST.XML_NUM_ROWS_ATTR, String.valueOf(flist.getNumberOfRows()));
-      writer.writeAttribute(CONST.XML_DATE_CREATED_ATTR, flist.getDateCreated());
-
-      for (FeatureListRow r : flist.getRows()) {
-        if (isCanceled()) {
-          break;
-        }
+  private void writeFeatureData(OutputStream os) throws XMLStreamException, IOException {
+    final XMLOutputFactory xof = XMLOutputFactory.newInstance();
+    final XMLStreamWriter writer = new IndentingXMLStreamWriter(xof.createXMLStreamWriter(os));
+    writer.writeStartDocument("UTF-8", "1.0");
 
-        ModularFeatureListRow row = (ModularFeatureListRow) r;
-        writeRow(writer, row);
+    writer.writeStartElement("featurelist");
+    writer.writeAttribute(CONST.XML_FLIST_NAME_ATTR, flist.getName());
+    writer.writeAttribute(CONST.XML_NUM_ROWS_ATTR, String.valueOf(flist.getNumberOfRows()));
+    writer.writeAttribute(CONST.XML_DATE_CREATED_ATTR, flist.getDateCreated());
 
-        processedRows++;
+    int processed = 0;
+    for (FeatureListRow r : flist.getRows()) {
+      if (isCanceled.getAsBoolean()) {
+        throw new IOException("Canceled saving of feature list " + flist.getName());
       }
-      writer.writeEndElement();
-      writer.writeEndDocument();
-      writer.flush();
-      writer.close();
-    } catch (IOException | XMLStreamException e) {
-      logger.log(Level.SEVERE, e.getMessage(), e);
-      setStatus(TaskStatus.ERROR);
-      return false;
-    }
 
-    if (isCanceled()) {
-      tempFile.delete();
-      return false;
-    }
+      ModularFeatureListRow row = (ModularFeatureListRow) r;
+      writeRow(writer, row);
 
-    try (FileInputStream is = new FileInputStream(tempFile)) {
-      zos.putNextEntry(new ZipEntry(getDataFileName(flist.getName())));
-      copy.copy(is, zos);
-    } catch (IOException e) {
-      logger.log(Level.SEVERE, e.getMessage(), e);
-      setStatus(TaskStatus.ERROR);
-      return false;
+      processedRows = ++processed;
     }
-
-//    tempFile.delete();
-    return true;
+    writer.writeEndElement();
+    writer.writeEndDocument();
+    writer.flush();
+    writer.close();
   }
 
   private void writeRow(XMLStreamWriter writer, ModularFeatureListRow row)
@@ -285,7 +252,8 @@ public class FeatureListSaveTask extends AbstractTask {
     for (Entry<DataType, Object> entry : row.getMap().entrySet()) {
       DataType dataType = entry.getKey();
       Object value = entry.getValue();
-      if (dataType instanceof FeaturesType) {
+      if (dataType instanceof FeaturesType || (binaryWriter != null
+          && binaryWriter.isBinaryRowType(dataType))) {
         continue;
       }
       writeDataType(writer, dataType, value, flist, row, null, null);
@@ -323,10 +291,18 @@ public class FeatureListSaveTask extends AbstractTask {
       return;
     }
 
+    final List<Entry<DataType, Object>> entries = feature.getMap().entrySet().stream()
+        .filter(e -> binaryWriter == null || !binaryWriter.isBinaryFeatureType(e.getKey()))
+        .toList();
+    if (binaryWriter != null && entries.isEmpty()) {
+      // feature is fully defined by the binary data
+      return;
+    }
+
     writer.writeStartElement(CONST.XML_FEATURE_ELEMENT);
     writer.writeAttribute(CONST.XML_RAW_FILE_ELEMENT, rawDataFile.getName());
 
-    for (Entry<DataType, Object> entry : feature.getMap().entrySet()) {
+    for (Entry<DataType, Object> entry : entries) {
       writeDataType(writer, entry.getKey(), entry.getValue(), flist, row, feature, rawDataFile);
     }
 
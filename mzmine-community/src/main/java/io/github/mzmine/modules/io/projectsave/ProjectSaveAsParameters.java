@@ -34,6 +34,7 @@ import io.github.mzmine.javafx.components.factories.FxTextFlows;
 import io.github.mzmine.parameters.Parameter;
 import io.github.mzmine.parameters.dialogs.ParameterSetupDialog;
 import io.github.mzmine.parameters.impl.SimpleParameterSet;
+import io.github.mzmine.parameters.parametertypes.BooleanParameter;
 import io.github.mzmine.parameters.parametertypes.ComboParameter;
 import io.github.mzmine.parameters.parametertypes.filenames.FileNameSuffixExportParameter;
 import io.github.mzmine.project.ProjectService;
@@ -68,12 +69,25 @@ public class ProjectSaveAsParameters extends SimpleParameterSet {
       creating a larger, but flexible project that can be shared without any additional requirements.""",
       ProjectSaveOption.values(), ProjectSaveOption.REFERENCING);
 
+  public static final BooleanParameter compressRawData = new BooleanParameter(
+      "Compress raw data files", """
+      Only used for standalone projects. Compresses the raw data files in the project file.
+      Storing them uncompressed is faster and many raw data formats are already compressed.""",
+      true);
+
+  public static final BooleanParameter binaryFeatureLists = new BooleanParameter(
+      "Binary feature lists", """
+      Stores numeric feature list columns and feature data in a binary format, which is faster to
+      save and load. Other annotations are still stored as xml.
+      Projects with binary feature lists cannot be opened by older mzmine versions, which would
+      open them without feature lists.""", false);
+
   public static final FileNameSuffixExportParameter projectFile = new FileNameSuffixExportParameter(
       "Project file", "File name of project to be saved", extensions, null);
   private static final Logger logger = Logger.getLogger(ProjectSaveAsParameters.class.getName());
 
   public ProjectSaveAsParameters() {
-    super(new Parameter[]{projectFile, option});
+    super(new Parameter[]{projectFile, option, compressRawData, binaryFeatureLists});
   }
 
   @Override
@@ -41,21 +41,17 @@ import io.github.mzmine.util.files.FileAndPathUtil;
 import io.github.mzmine.util.io.SemverVersionReader;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Hashtable;
 import java.util.List;
 import java.util.Objects;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
 import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.transform.TransformerConfigurationException;
 import org.jetbrains.annotations.NotNull;
-import org.xml.sax.SAXException;
 
 public class ProjectSavingTask extends AbstractTask {
 
@@ -68,10 +64,13 @@ public class ProjectSavingTask extends AbstractTask {
 
   private final File saveFile;
   private final MZmineProjectImpl savedProject;
+  private final boolean compressRawData;
+  private final boolean binaryFeatureLists;
   private final int totalSaveItems;
-  private final int finishedSaveItems = 0;
   // This hashtable maps raw data files to their ID within the saved project
   private final Hashtable<RawDataFile, String> dataFilesIDMap;
+  private volatile List<FeatureListSaveTask> featureListSaveTasks = List.of();
+  private ProjectZipWriter zipWriter;
   private RawDataFileSaveHandler rawDataFileSaveHandler;
   private UserParameterSaveHandler userParameterSaveHandler;
   private int currentStage;
@@ -83,6 +82,8 @@ public class ProjectSavingTask extends AbstractTask {
     this.savedProject = (MZmineProjectImpl) project;
     this.saveFile = parameters.getValue(ProjectSaveAsParameters.projectFile);
     this.projectType = parameters.getValue(ProjectSaveAsParameters.option);
+    this.compressRawData = parameters.getValue(ProjectSaveAsParameters.compressRawData);
+    this.binaryFeatureLists = parameters.getValue(ProjectSaveAsParameters.binaryFeatureLists);
     dataFilesIDMap = new Hashtable<>();
     this.totalSaveItems = project.getDataFiles().length + project.getCurrentFeatureLists().size();
   }
@@ -102,25 +103,22 @@ public class ProjectSavingTask extends AbstractTask {
       return 0.0;
     }
 
-    double currentItemProgress = 0.0;
-
-    switch (currentStage) {
-      case 2:
-        if (rawDataFileSaveHandler != null) {
-          currentItemProgress = rawDataFileSaveHandler.getProgress();
-        }
-        break;
-      case 3:
-        // todo update feature list saving progress
-        break;
-      case 4:
-      case 5:
-        return 1.0;
-      default:
-        return 0;
+    // feature lists are serialized in parallel to the raw data files
+    double featureListProgress = 0;
+    for (FeatureListSaveTask saveTask : featureListSaveTasks) {
+      featureListProgress += saveTask.getFinishedPercentage();
+    }
+    double rawDataProgress = 0;
+    if (rawDataFileSaveHandler != null) {
+      rawDataProgress = rawDataFileSaveHandler.getProgress() * (totalSaveItems
+          - featureListSaveTasks.size());
     }
 
-    return (finishedSaveItems + currentItemProgress) / totalSaveItems;
+    return switch (currentStage) {
+      case 2, 3 -> Math.min(1d, (featureListProgress + rawDataProgress) / totalSaveItems);
+      case 4, 5 -> 1.0;
+      default -> 0;
+    };
   }
 
   @Override
@@ -138,10 +136,14 @@ public class ProjectSavingTask extends AbstractTask {
       userParameterSaveHandler.cancel();
     }
 
+    if (zipWriter != null) {
+      zipWriter.cancel();
+    }
   }
 
   @Override
   public void run() {
+    File tempFile = null;
     try {
       logger.info("Saving project to " + saveFile);
       setStatus(TaskStatus.PROCESSING);
@@ -167,59 +169,52 @@ public class ProjectSavingTask extends AbstractTask {
         return;
       }
 
-      File tempFile = File.createTempFile(saveFile.getName(), ".tmp", saveFile.getParentFile());
+      tempFile = File.createTempFile(saveFile.getName(), ".tmp", saveFile.getParentFile());
       tempFile.deleteOnExit();
 
-      // Create a ZIP stream writing to the temporary file
-      FileOutputStream tempStream = new FileOutputStream(tempFile);
-      ZipOutputStream zipStream = new ZipOutputStream(tempStream);
+      // entries are serialized and compressed in parallel and written to the temporary file
+      try (ProjectZipWriter writer = new ProjectZipWriter(tempFile,
+          MZmineCore.getConfiguration().getNumOfThreads())) {
+        zipWriter = writer;
+
+        // Stage 1 - save version and configuration
+        currentStage++;
+        saveVersion(writer);
+        saveStandalone(writer);
+        saveConfiguration(writer);
+        if (isCanceled()) {
+          writer.cancel();
+          return;
+        }
 
-      // Stage 1 - save version and configuration
-      currentStage++;
-      saveVersion(zipStream);
-      saveStandalone(zipStream);
-      saveConfiguration(zipStream);
-      if (isCanceled()) {
-        zipStream.close();
-        tempFile.delete();
-        return;
-      }
+        // Stage 2 - start serializing the feature lists in parallel
+        currentStage++;
+        savePeakLists(writer);
 
-      // Stage 2 - save RawDataFile objects
-      currentStage++;
-      saveRawDataFiles(zipStream);
-      if (isCanceled()) {
-        zipStream.close();
-        tempFile.delete();
-        return;
-      }
+        // Stage 3 - save RawDataFile objects while the feature lists are serialized
+        currentStage++;
+        saveRawDataFiles(writer);
+        if (isCanceled()) {
+          writer.cancel();
+          return;
+        }
 
-      // Stage 3 - save PeakList objects
-      currentStage++;
-      savePeakLists(zipStream);
-      if (isCanceled()) {
-        zipStream.close();
-        tempFile.delete();
-        return;
-      }
+        // Stage 4 - save user parameters
+        currentStage++;
+        saveUserParameters(writer);
+        if (isCanceled()) {
+          writer.cancel();
+          return;
+        }
 
-      // Stage 4 - save user parameters
-      currentStage++;
-      saveUserParameters(zipStream);
-      if (isCanceled()) {
-        zipStream.close();
-        tempFile.delete();
-        return;
+        // Stage 5 - finish and close the temporary ZIP file
+        currentStage++;
+        currentSavedObjectName = null;
+        writer.flush();
       }
 
-      // Stage 5 - finish and close the temporary ZIP file
-      currentStage++;
-      currentSavedObjectName = null;
-      zipStream.close();
-
       // Final check for cancel
       if (isCanceled()) {
-        tempFile.delete();
         return;
       }
 
@@ -259,6 +254,10 @@ public class ProjectSavingTask extends AbstractTask {
                 + ExceptionUtils.exceptionToString(e));
       }
 
+    } finally {
+      if (tempFile != null && tempFile.exists() && !isFinished()) {
+        tempFile.delete();
+      }
     }
   }
 
@@ -267,21 +266,17 @@ public class ProjectSavingTask extends AbstractTask {
    *
    * @throws java.io.IOException
    */
-  private void saveVersion(ZipOutputStream zipStream) throws IOException {
-
-    zipStream.putNextEntry(new ZipEntry(VERSION_FILENAME));
+  private void saveVersion(ProjectZipWriter writer) throws IOException {
 
     String MZmineVersion = String.valueOf(SemverVersionReader.getMZmineVersion());
 
-    zipStream.write(MZmineVersion.getBytes());
-
+    writer.submitDirect(VERSION_FILENAME, true, out -> out.write(MZmineVersion.getBytes()));
   }
 
-  private void saveStandalone(ZipOutputStream zipStream) throws IOException {
+  private void saveStandalone(ProjectZipWriter writer) throws IOException {
     if (savedProject.isStandalone()) {
-      zipStream.putNextEntry(new ZipEntry(STANDALONE_FILENAME));
       String MZmineVersion = STANDALONE_FILENAME;
-      zipStream.write(MZmineVersion.getBytes());
+      writer.submitDirect(STANDALONE_FILENAME, true, out -> out.write(MZmineVersion.getBytes()));
     }
   }
 
@@ -290,39 +285,42 @@ public class ProjectSavingTask extends AbstractTask {
    *
    * @throws java.io.IOException
    */
-  private void saveConfiguration(ZipOutputStream zipStream) throws IOException {
+  private void saveConfiguration(ProjectZipWriter writer) throws IOException {
 
     logger.info("Saving configuration file");
 
     currentSavedObjectName = "configuration";
 
-    zipStream.putNextEntry(new ZipEntry(CONFIG_FILENAME));
-
-    try {
-      File tempConfigFile = FileAndPathUtil.createTempFile("mzmineconfig", ".tmp");
-      MZmineCore.getConfiguration().saveConfiguration(tempConfigFile);
-      FileInputStream fileStream = new FileInputStream(tempConfigFile);
+    writer.submitDirect(CONFIG_FILENAME, true, out -> {
+      try {
+        File tempConfigFile = FileAndPathUtil.createTempFile("mzmineconfig", ".tmp");
+        MZmineCore.getConfiguration().saveConfiguration(tempConfigFile);
+        FileInputStream fileStream = new FileInputStream(tempConfigFile);
 
-      StreamCopy copyMachine = new StreamCopy();
-      copyMachine.copy(fileStream, zipStream);
+        StreamCopy copyMachine = new StreamCopy();
+        copyMachine.copy(fileStream, out);
 
-      fileStream.close();
-      tempConfigFile.delete();
-    } catch (Exception e) {
-      logger.log(Level.SEVERE, e.getMessage(), e);
-      logger.warning("Could not save configuration" + ExceptionUtils.exceptionToString(e));
-    }
+        fileStream.close();
+        tempConfigFile.delete();
+      } catch (Exception e) {
+        logger.log(Level.SEVERE, e.getMessage(), e);
+        logger.warning("Could not save configuration" + ExceptionUtils.exceptionToString(e));
+      }
+    });
+    // write the small entries before the parallel part starts
+    writer.flush();
   }
 
   /**
    * Save the raw data files
    */
-  private void saveRawDataFiles(ZipOutputStream zipStream)
+  private void saveRawDataFiles(ProjectZipWriter writer)
       throws IOException, ParserConfigurationException {
 
     AtomicBoolean finished = new AtomicBoolean(false);
-    rawDataFileSaveHandler = new RawDataFileSaveHandler(savedProject, zipStream,
-        Objects.requireNonNullElse(savedProject.isStandalone(), true), getModuleCallDate());
+    rawDataFileSaveHandler = new RawDataFileSaveHandler(savedProject, writer,
+        Objects.requireNonNullElse(savedProject.isStandalone(), true), compressRawData,
+        getModuleCallDate());
     rawDataFileSaveHandler.addTaskStatusListener((task, newStatus, oldStatus) -> {
       switch (newStatus) {
         case WAITING, PROCESSING -> {
@@ -353,53 +351,26 @@ public class ProjectSavingTask extends AbstractTask {
   }
 
   /**
-   * Save the feature lists
-   *
-   * @throws SAXException
-   * @throws TransformerConfigurationException
+   * Submit the feature lists. Each feature list is serialized and compressed by a worker thread of
+   * the writer, concurrently with all other feature lists and raw data files.
    */
-  private void savePeakLists(ZipOutputStream zipStream)
-      throws IOException, TransformerConfigurationException, SAXException {
+  private void savePeakLists(ProjectZipWriter writer) throws IOException {
 
     final List<FeatureList> currentFeatureLists = savedProject.getCurrentFeatureLists();
+    final List<FeatureListSaveTask> saveTasks = new ArrayList<>();
     for (FeatureList featureList : currentFeatureLists) {
       FeatureListSaveTask saveTask = new FeatureListSaveTask((ModularFeatureList) featureList,
-          zipStream);
-
-      AtomicBoolean finished = new AtomicBoolean(false);
-      saveTask.addTaskStatusListener((task, newStatus, oldStatus) -> {
-        switch (newStatus) {
-          case WAITING, PROCESSING -> {
-          }
-          case FINISHED, ERROR, CANCELED -> {
-            finished.set(true);
-          }
-        }
-      });
-      MZmineCore.getTaskController().addTask(saveTask);
-
-      while (!finished.get()) {
-        try {
-          Thread.sleep(50);
-        } catch (InterruptedException e) {
-          logger.log(Level.SEVERE, e.getMessage(), e);
-        }
-      }
-
-      if (isCanceled()) {
-        break;
-      }
+          this::isCanceled, binaryFeatureLists);
+      saveTasks.add(saveTask);
+      saveTask.submit(writer);
     }
+    featureListSaveTasks = List.copyOf(saveTasks);
   }
 
   /**
-   * Save the feature lists
-   *
-   * @throws SAXException
-   * @throws TransformerConfigurationException
+   * Save the user parameters. Written after all raw data files and feature lists.
    */
-  private void saveUserParameters(ZipOutputStream zipStream)
-      throws IOException, TransformerConfigurationException, SAXException {
+  private void saveUserParameters(ProjectZipWriter writer) throws IOException {
 
     if (isCanceled()) {
       return;
@@ -407,14 +378,12 @@ public class ProjectSavingTask extends AbstractTask {
 
     logger.info("Saving user parameters");
 
-    zipStream.putNextEntry(new ZipEntry(PARAMETERS_FILENAME));
-
-    userParameterSaveHandler = new UserParameterSaveHandler(zipStream, savedProject,
-        dataFilesIDMap);
-
     currentSavedObjectName = "User parameters";
-    userParameterSaveHandler.saveParameters();
-
+    writer.submitDirect(PARAMETERS_FILENAME, true, out -> {
+      userParameterSaveHandler = new UserParameterSaveHandler(out, savedProject, dataFilesIDMap);
+      userParameterSaveHandler.saveParameters();
+    });
+    writer.flush();
   }
 
 }
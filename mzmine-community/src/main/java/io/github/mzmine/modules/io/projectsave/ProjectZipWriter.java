@@ -0,0 +1,516 @@
+/*
+ * Copyright (c) 2004-2024 The mzmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package io.github.mzmine.modules.io.projectsave;
+
+import io.github.mzmine.util.StreamCopy;
+import io.github.mzmine.util.files.FileAndPathUtil;
+import it.unimi.dsi.fastutil.io.FastByteArrayOutputStream;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Writes the entries of a project file. The content of entries is serialized and deflated
+ * concurrently by worker threads and then added as raw (already compressed) entries to the zip
+ * file. Entries are committed in the order they were submitted, so the layout of the project file
+ * does not depend on the thread scheduling. Compressed data is buffered in memory up to a total
+ * limit shared by all pending entries, entries that exceed it are spilled to temporary files. The
+ * number of pending entries is limited, large files are streamed directly into the zip file by the
+ * committing thread.
+ * <p>
+ * Not thread safe: entries need to be submitted and committed by one thread at a time. The created
+ * zip file uses only STORED and DEFLATED entries and can be read by {@link java.util.zip.ZipFile}.
+ */
+public class ProjectZipWriter implements AutoCloseable {
+
+  /**
+   * Files up to this size are compressed in parallel in memory, larger files are streamed
+   */
+  public static final long MAX_PARALLEL_FILE_SIZE = 64L << 20;
+
+  /**
+   * Compressed bytes of all pending entries that are buffered in memory before spilling to
+   * temporary files
+   */
+  public static final long DEFAULT_MAX_BUFFERED_BYTES = 128L << 20;
+
+  // keeps a single in-memory buffer well below the array size limit
+  private static final int MAX_ENTRY_BUFFER_SIZE = 1 << 30;
+
+  private static final Logger logger = Logger.getLogger(ProjectZipWriter.class.getName());
+
+  private final ZipArchiveOutputStream zip;
+  private final ExecutorService executor;
+  private final int maxPendingEntries;
+  private final long maxBufferedBytes;
+  private final AtomicLong bufferedBytes = new AtomicLong(0);
+  private final ArrayDeque<PendingEntry> pending = new ArrayDeque<>();
+  private final Set<String> entryNames = new HashSet<>();
+  private volatile boolean canceled = false;
+
+  /**
+   * @param file    the zip file
+   * @param threads number of threads to compress entries
+   */
+  public ProjectZipWriter(@NotNull File file, int threads) throws IOException {
+    this(file, threads, DEFAULT_MAX_BUFFERED_BYTES);
+  }
+
+  /**
+   * @param file             the zip file
+   * @param threads          number of threads to compress entries
+   * @param maxBufferedBytes compressed bytes of pending entries that are held in memory, more data
+   *                         is written to temporary files
+   */
+  public ProjectZipWriter(@NotNull File file, int threads, long maxBufferedBytes)
+      throws IOException {
+    zip = new ZipArchiveOutputStream(file);
+    final int numThreads = Math.max(1, threads);
+    maxPendingEntries = numThreads * 2;
+    this.maxBufferedBytes = maxBufferedBytes;
+    final AtomicInteger threadCounter = new AtomicInteger(0);
+    executor = Executors.newFixedThreadPool(numThreads, runnable -> {
+      Thread thread = new Thread(runnable,
+          "Project save thread " + threadCounter.getAndIncrement());
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * Serializes and deflates the content in a worker thread. The entry is added to the zip file in
+   * submission order.
+   *
+   * @throws ZipException if an entry of the same name was already submitted
+   */
+  public void submit(@NotNull String name, @NotNull EntryContent content) throws IOException {
+    checkUniqueName(name);
+    final Future<CompressedEntry> future = executor.submit(() -> compress(name, content));
+    addPending(new PendingEntry(name, future, null, true));
+  }
+
+  /**
+   * Writes the content directly into the zip file in the committing thread, after all previously
+   * submitted entries.
+   *
+   * @param compress deflate or store the entry
+   * @throws ZipException if an entry of the same name was already submitted
+   */
+  public void submitDirect(@NotNull String name, boolean compress, @NotNull EntryContent content)
+      throws IOException {
+    checkUniqueName(name);
+    addPending(new PendingEntry(name, null, content, compress));
+  }
+
+  /**
+   * Adds a file. Small compressed files are deflated in parallel, large or stored files are
+   * streamed into the zip file.
+   *
+   * @param compress deflate or store the file
+   * @throws ZipException if an entry of the same name was already submitted
+   */
+  public void submitFile(@NotNull File file, @NotNull String name, boolean compress)
+      throws IOException {
+    final EntryContent content = out -> {
+      try (InputStream in = new FileInputStream(file)) {
+        new StreamCopy().copy(in, out);
+      }
+    };
+    if (compress && file.length() <= MAX_PARALLEL_FILE_SIZE) {
+      submit(name, content);
+    } else {
+      submitDirect(name, compress, content);
+    }
+  }
+
+  /**
+   * Adds all files of a directory recursively, same structure as
+   * {@link io.github.mzmine.util.ZipUtils#zipDirectory}
+   */
+  public void submitDirectory(@NotNull File dir, @NotNull String destPath, boolean compress)
+      throws IOException {
+    final File[] files = dir.listFiles();
+    if (!dir.isDirectory() || files == null) {
+      return;
+    }
+    if (!destPath.endsWith("/")) {
+      destPath = destPath + "/";
+    }
+
+    for (final File file : files) {
+      if (file.isDirectory()) {
+        submitDirectory(file, destPath + file.getName(), compress);
+      }
+      if (file.isFile()) {
+        submitFile(file, destPath + file.getName(), compress);
+      }
+    }
+  }
+
+  /**
+   * Write all pending entries to the zip file
+   */
+  public void flush() throws IOException {
+    while (!pending.isEmpty()) {
+      commit(pending.poll());
+    }
+  }
+
+  /**
+   * Cancels all pending entries. Submitted work is discarded and nothing is written anymore.
+   */
+  public void cancel() {
+    canceled = true;
+    executor.shutdownNow();
+  }
+
+  public boolean isCanceled() {
+    return canceled;
+  }
+
+  /**
+   * Finishes the zip file. Entries that were not flushed are discarded, call {@link #flush()}
+   * before.
+   */
+  @Override
+  public void close() throws IOException {
+    try {
+      executor.shutdownNow();
+      for (final PendingEntry entry : pending) {
+        discard(entry);
+      }
+      pending.clear();
+    } finally {
+      zip.close();
+    }
+  }
+
+  /**
+   * @return compressed bytes of pending entries that are currently held in memory
+   */
+  long getBufferedBytes() {
+    return bufferedBytes.get();
+  }
+
+  private void checkUniqueName(String name) throws ZipException {
+    if (!entryNames.add(name)) {
+      throw new ZipException("duplicate entry: " + name);
+    }
+  }
+
+  private void addPending(PendingEntry entry) throws IOException {
+    pending.add(entry);
+    // limit the memory of compressed entries waiting for their commit
+    while (pending.size() > maxPendingEntries) {
+      commit(pending.poll());
+    }
+  }
+
+  private void commit(PendingEntry entry) throws IOException {
+    if (canceled) {
+      discard(entry);
+      return;
+    }
+    if (entry.future() != null) {
+      final CompressedEntry compressed;
+      try {
+        compressed = entry.future().get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IOException("Interrupted while saving " + entry.name(), e);
+      } catch (ExecutionException e) {
+        throw new IOException("Error while saving " + entry.name(), e.getCause());
+      }
+
+      try {
+        final ZipArchiveEntry zipEntry = new ZipArchiveEntry(entry.name());
+        zipEntry.setMethod(ZipEntry.DEFLATED);
+        zipEntry.setCrc(compressed.crc());
+        zipEntry.setSize(compressed.size());
+        zipEntry.setCompressedSize(compressed.data().size());
+        try (InputStream in = compressed.data().openInputStream()) {
+          zip.addRawArchiveEntry(zipEntry, in);
+        }
+      } finally {
+        compressed.data().release();
+      }
+      return;
+    }
+
+    final ZipArchiveEntry zipEntry = new ZipArchiveEntry(entry.name());
+    zipEntry.setMethod(entry.compress() ? ZipEntry.DEFLATED : ZipEntry.STORED);
+    zip.putArchiveEntry(zipEntry);
+    try {
+      entry.direct().write(new NonClosingOutputStream(zip));
+    } catch (IOException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new IOException("Error while saving " + entry.name(), e);
+    }
+    zip.closeArchiveEntry();
+  }
+
+  /**
+   * Releases the buffer of a compressed entry that is not written
+   */
+  private void discard(PendingEntry entry) {
+    if (entry.future() == null) {
+      return;
+    }
+    if (!entry.future().cancel(true) && entry.future().isDone()) {
+      try {
+        entry.future().get().data().release();
+      } catch (Exception e) {
+        // failed entries have released their buffer already
+      }
+    }
+  }
+
+  /**
+   * Runs in the worker thread
+   */
+  private CompressedEntry compress(String name, EntryContent content) throws Exception {
+    if (canceled) {
+      throw new IOException("Canceled saving of " + name);
+    }
+    final SpillingOutputStream data = new SpillingOutputStream();
+    final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+    final CrcOutputStream crcStream;
+    try (DeflaterOutputStream deflaterStream = new DeflaterOutputStream(data, deflater, 1 << 16)) {
+      crcStream = new CrcOutputStream(deflaterStream);
+      content.write(new NonClosingOutputStream(crcStream));
+      crcStream.flush();
+    } catch (Exception e) {
+      data.release();
+      throw e;
+    } finally {
+      deflater.end();
+    }
+    return new CompressedEntry(data, crcStream.crc.getValue(), crcStream.size);
+  }
+
+  /**
+   * Writes the uncompressed content of an entry
+   */
+  @FunctionalInterface
+  public interface EntryContent {
+
+    /**
+     * @param out the stream of this entry. Closing the stream has no effect.
+     */
+    void write(@NotNull OutputStream out) throws Exception;
+  }
+
+  private record PendingEntry(String name, Future<CompressedEntry> future, EntryContent direct,
+                              boolean compress) {
+
+  }
+
+  private record CompressedEntry(SpillingOutputStream data, long crc, long size) {
+
+  }
+
+  /**
+   * Buffers compressed data in memory as long as the shared limit of all pending entries allows it
+   * and continues in a temporary file otherwise.
+   */
+  private final class SpillingOutputStream extends OutputStream {
+
+    private FastByteArrayOutputStream memory = new FastByteArrayOutputStream(1 << 16);
+    // bytes of the shared limit that are used by this buffer
+    private long reserved = 0;
+    private File file;
+    private OutputStream fileOut;
+    private long size = 0;
+
+    @Override
+    public void write(int b) throws IOException {
+      write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      if (fileOut == null && !reserve(len)) {
+        spill();
+      }
+      if (fileOut != null) {
+        fileOut.write(b, off, len);
+      } else {
+        memory.write(b, off, len);
+      }
+      size += len;
+    }
+
+    private boolean reserve(int len) {
+      if ((long) memory.length + len > MAX_ENTRY_BUFFER_SIZE) {
+        return false;
+      }
+      if (bufferedBytes.addAndGet(len) > maxBufferedBytes) {
+        bufferedBytes.addAndGet(-len);
+        return false;
+      }
+      reserved += len;
+      return true;
+    }
+
+    private void spill() throws IOException {
+      file = FileAndPathUtil.createTempFile("mzmine_project_entry", ".tmp");
+      file.deleteOnExit();
+      fileOut = new BufferedOutputStream(new FileOutputStream(file), 1 << 16);
+      fileOut.write(memory.array, 0, memory.length);
+      memory = null;
+      bufferedBytes.addAndGet(-reserved);
+      reserved = 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (fileOut != null) {
+        fileOut.close();
+      }
+    }
+
+    private long size() {
+      return size;
+    }
+
+    private InputStream openInputStream() throws IOException {
+      if (file != null) {
+        return new BufferedInputStream(new FileInputStream(file), 1 << 16);
+      }
+      return new ByteArrayInputStream(memory.array, 0, memory.length);
+    }
+
+    /**
+     * Frees the memory and deletes the temporary file
+     */
+    private void release() {
+      bufferedBytes.addAndGet(-reserved);
+      reserved = 0;
+      memory = null;
+      if (fileOut != null) {
+        try {
+          fileOut.close();
+        } catch (IOException e) {
+          // only closed to delete the file
+        }
+      }
+      if (file != null && !file.delete()) {
+        logger.fine(() -> "Cannot delete temporary file " + file);
+      }
+    }
+  }
+
+  /**
+   * Tracks the CRC32 and number of uncompressed bytes
+   */
+  private static class CrcOutputStream extends OutputStream {
+
+    private final OutputStream out;
+    private final CRC32 crc = new CRC32();
+    private long size = 0;
+
+    private CrcOutputStream(OutputStream out) {
+      this.out = out;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      out.write(b);
+      crc.update(b);
+      size++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      out.write(b, off, len);
+      crc.update(b, off, len);
+      size += len;
+    }
+
+    @Override
+    public void flush() throws IOException {
+      out.flush();
+    }
+  }
+
+  /**
+   * Serializers like XML writers may close the stream, which would end the zip file
+   */
+  private static class NonClosingOutputStream extends OutputStream {
+
+    private final OutputStream out;
+
+    private NonClosingOutputStream(OutputStream out) {
+      this.out = out;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      out.write(b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      out.write(b, off, len);
+    }
+
+    @Override
+    public void flush() throws IOException {
+      out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+      out.flush();
+    }
+  }
+}
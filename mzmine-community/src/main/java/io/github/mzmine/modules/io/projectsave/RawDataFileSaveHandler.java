@@ -40,12 +40,8 @@ import io.github.mzmine.taskcontrol.AbstractTask;
 import io.github.mzmine.taskcontrol.TaskPriority;
 import io.github.mzmine.taskcontrol.TaskStatus;
 import io.github.mzmine.util.RawDataFileType;
-import io.github.mzmine.util.StreamCopy;
 import io.github.mzmine.util.XMLUtils;
-import io.github.mzmine.util.ZipUtils;
-import io.github.mzmine.util.files.FileAndPathUtil;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Paths;
@@ -57,13 +53,10 @@ import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Pattern;
-import java.util.zip.ZipEntry;
 import java.util.zip.ZipException;
-import java.util.zip.ZipOutputStream;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.transform.TransformerException;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.w3c.dom.Document;
@@ -83,21 +76,27 @@ public class RawDataFileSaveHandler extends AbstractTask {
 
   private final MZmineProject project;
   private final Logger logger = Logger.getLogger(this.getClass().getName());
-  private final ZipOutputStream zipStream;
+  private final ProjectZipWriter zipWriter;
   private final List<RawDataFile> files;
   private final boolean saveFilesInProject;
+  private final boolean compressFiles;
   private final String prefix = "Saving raw data files: ";
   private final int numSteps;
   private final double stepProgress;
   private double progress = 0;
   private String description;
 
-  public RawDataFileSaveHandler(MZmineProject project, ZipOutputStream zipOutputStream,
-      boolean saveFilesInProject, @NotNull Instant moduleCallDate) {
+  /**
+   * @param compressFiles deflate the raw data files or store them uncompressed. Many raw data
+   *                      formats are already compressed.
+   */
+  public RawDataFileSaveHandler(MZmineProject project, ProjectZipWriter zipWriter,
+      boolean saveFilesInProject, boolean compressFiles, @NotNull Instant moduleCallDate) {
     super(null, moduleCallDate);
     this.project = project;
-    this.zipStream = zipOutputStream;
+    this.zipWriter = zipWriter;
     this.saveFilesInProject = saveFilesInProject;
+    this.compressFiles = compressFiles;
     files = List.of(project.getDataFiles());
     numSteps = 1 /*dissect + merge */ + (saveFilesInProject ? files.size() : 0) /*save files*/
         + 1 /*save batch file*/;
@@ -150,8 +149,6 @@ public class RawDataFileSaveHandler extends AbstractTask {
       copyRawDataFilesToZip();
     }
 
-    zipStream.putNextEntry(new ZipEntry(RAW_DATA_IMPORT_BATCH_FILENAME));
-
     try {
       final DocumentBuilderFactory dbFactory = DocumentBuilderFactory.newInstance();
       final DocumentBuilder dbBuilder = dbFactory.newDocumentBuilder();
@@ -169,16 +166,11 @@ public class RawDataFileSaveHandler extends AbstractTask {
         batchRoot.appendChild(batchQueueEntry);
       }
 
-      final File tmpFile = FileAndPathUtil.createTempFile(TEMP_FILE_NAME, ".tmp");
-      XMLUtils.saveToFile(tmpFile, batchQueueFile);
-
-      final StreamCopy copyMachine = new StreamCopy();
-      final FileInputStream fileInputStream = new FileInputStream(tmpFile);
-      copyMachine.copy(fileInputStream, zipStream);
-
-      fileInputStream.close();
-      tmpFile.delete();
-    } catch (ParserConfigurationException | TransformerException e) {
+      zipWriter.submitDirect(RAW_DATA_IMPORT_BATCH_FILENAME, true,
+          out -> XMLUtils.saveToStream(out, batchQueueFile));
+      // write all raw data files
+      zipWriter.flush();
+    } catch (ParserConfigurationException e) {
       e.printStackTrace();
       logger.log(Level.WARNING, "Could not save batch import step.\n" + e.getMessage(), e);
       return false;
@@ -189,7 +181,8 @@ public class RawDataFileSaveHandler extends AbstractTask {
   }
 
   /**
-   * Copies the raw data files to the zip folder (MZmine project file).
+   * Copies the raw data files to the zip folder (MZmine project file). Files are compressed
+   * concurrently and written in order.
    *
    * @throws IOException
    */
@@ -206,7 +199,7 @@ public class RawDataFileSaveHandler extends AbstractTask {
 
       final File f = new File(file.getAbsolutePath());
       if (f.isDirectory()) {
-        ZipUtils.zipDirectory(zipStream, f, getZipPath(file));
+        zipWriter.submitDirectory(f, getZipPath(file), compressFiles);
       } else {
         try {
           String zipPath = getZipPath(file);
@@ -232,11 +225,7 @@ public class RawDataFileSaveHandler extends AbstractTask {
   }
 
   private void copyToZip(File actualFile, String zipPath) throws IOException {
-    zipStream.putNextEntry(new ZipEntry(zipPath));
-    FileInputStream inputStream = new FileInputStream(actualFile);
-    StreamCopy cpy = new StreamCopy();
-    cpy.copy(inputStream, zipStream);
-    inputStream.close();
+    zipWriter.submitFile(actualFile, zipPath, compressFiles);
   }
 
   /**
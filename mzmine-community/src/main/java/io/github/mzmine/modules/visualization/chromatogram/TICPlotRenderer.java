@@ -26,6 +26,7 @@
 package io.github.mzmine.modules.visualization.chromatogram;
 
 import io.github.mzmine.gui.chartbasics.simplechart.SimpleChartUtility;
+import io.github.mzmine.gui.chartbasics.simplechart.renderers.LevelOfDetailDecimator;
 import java.awt.AlphaComposite;
 import java.awt.Graphics2D;
 import java.awt.Shape;
@@ -46,6 +47,8 @@ public class TICPlotRenderer extends XYLineAndShapeRenderer {
    */
   private static final long serialVersionUID = 1L;
   private final double transparency = 1.0f;
+  // only draws the items that change the shape of large series
+  private transient LevelOfDetailDecimator decimator = new LevelOfDetailDecimator();
 
   public TICPlotRenderer() {
     super(true, false);
@@ -54,6 +57,23 @@ public class TICPlotRenderer extends XYLineAndShapeRenderer {
     SimpleChartUtility.tryApplyDefaultChartThemeToRenderer(this);
   }
 
+  /**
+   * Skipping items only keeps the shape if the line is drawn as one path without item shapes
+   */
+  private boolean isDecimated(int series) {
+    if (decimator == null) {
+      decimator = new LevelOfDetailDecimator();
+    }
+    return getDrawSeriesLineAsPath() && !getItemShapeVisible(series, 0);
+  }
+
+  @Override
+  public Object clone() throws CloneNotSupportedException {
+    final TICPlotRenderer clone = (TICPlotRenderer) super.clone();
+    clone.decimator = new LevelOfDetailDecimator();
+    return clone;
+  }
+
   private AlphaComposite makeComposite(double alpha) {
     int type = AlphaComposite.SRC_OVER;
     return (AlphaComposite.getInstance(type, (float) alpha));
@@ -62,6 +82,10 @@ public class TICPlotRenderer extends XYLineAndShapeRenderer {
   public void drawItem(Graphics2D g2, XYItemRendererState state, Rectangle2D dataArea,
       PlotRenderingInfo info, XYPlot plot, ValueAxis domainAxis, ValueAxis rangeAxis,
       XYDataset dataset, int series, int item, CrosshairState crosshairState, int pass) {
+    if (isDecimated(series) && !decimator.isItemDrawn(state, plot, dataArea, domainAxis, dataset,
+        series, item)) {
+      return;
+    }
 
     g2.setComposite(makeComposite(transparency));
 
@@ -52,6 +52,7 @@ import io.github.mzmine.modules.dataprocessing.align_join.RowAlignmentScoreCalcu
 import io.github.mzmine.modules.visualization.featurelisttable_modular.FeatureTableFX;
 import io.github.mzmine.util.collections.BinarySearch;
 import io.github.mzmine.util.collections.IndexRange;
+import io.github.mzmine.util.collections.MzRtMobilityIndex;
 import io.github.mzmine.util.javafx.WeakAdapter;
 import io.github.mzmine.util.math.ScoreAccumulator;
 import it.unimi.dsi.fastutil.ints.Int2ObjectArrayMap;
@@ -162,6 +163,20 @@ public class FeatureListUtils {
     return candidates;
   }
 
+  /**
+   * Creates an immutable index of the rows by m/z, RT and mobility for repeated range queries.
+   * Same results as {@link #getCandidatesWithinRanges(Range, Range, Range, List, boolean)}, but
+   * faster for many queries on the same rows.
+   *
+   * @param rows the rows to index, order does not matter
+   * @return the index
+   */
+  public static @NotNull MzRtMobilityIndex<FeatureListRow> createRowIndex(
+      @NotNull Collection<? extends FeatureListRow> rows) {
+    return MzRtMobilityIndex.of(rows, FeatureListRow::getAverageMZ, FeatureListRow::getAverageRT,
+        FeatureListRow::getAverageMobility);
+  }
+
   /**
    * All features within all ranges. Use a sorted list to speed up search. Use range.all() instead
    * of null for missign ranges
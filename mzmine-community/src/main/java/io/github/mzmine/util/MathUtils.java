@@ -110,6 +110,56 @@ public class MathUtils {
     }
   }
 
+  /**
+   * Same result as
+   * {@link #calcCenter(CenterMeasure, double[], double[], Weighting, Double, Double)} for the
+   * first length values without allocating new arrays. The values are sorted in place for the
+   * median and the weights are transformed in place for the weighted average.
+   *
+   * @param length number of values and weights to use
+   * @return median or weighted average
+   */
+  public static double calcCenterInPlace(CenterMeasure measure, double[] values, double[] weights,
+      int length, Weighting weightTransform, Double noiseLevel, Double maxWeight) {
+    switch (measure) {
+      case AVG:
+        if (weightTransform != null) {
+          for (int i = 0; i < length; i++) {
+            weights[i] = weightTransform.transform(weights[i], noiseLevel, maxWeight);
+          }
+        }
+        // same compensated summation as in calcWeightedAvg
+        final double weightSum = Arrays.stream(weights, 0, length).sum();
+        if (weightSum == 0) {
+          if (length == 0) {
+            return Double.NaN;
+          }
+          double sum = 0;
+          for (int i = 0; i < length; i++) {
+            sum += values[i];
+          }
+          return sum / length;
+        }
+
+        double avg = 0;
+        for (int i = 0; i < length; i++) {
+          avg += values[i] * weights[i] / weightSum;
+        }
+        return avg;
+      case MEDIAN:
+        if (length == 0) {
+          return 0;
+        }
+        if (length == 1) {
+          return values[0];
+        }
+        Arrays.sort(values, 0, length);
+        return calcQuantileSorted(values, 0, length, 0.5);
+      default:
+        return Double.NaN;
+    }
+  }
+
   /**
    * Median
    *
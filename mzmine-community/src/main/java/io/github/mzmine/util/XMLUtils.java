@@ -29,6 +29,7 @@ import com.google.common.collect.Range;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.StringWriter;
 import java.util.Objects;
 import javax.xml.parsers.DocumentBuilderFactory;
@@ -75,6 +76,21 @@ public class XMLUtils {
    */
   public static void saveToFile(final File file, final Document document)
       throws TransformerException, IOException {
+    // Write to file and transform.
+    try (FileOutputStream fos = new FileOutputStream(file)) {
+      saveToStream(fos, document);
+    }
+  }
+
+  /**
+   * Write XML to a stream. The stream is not closed.
+   *
+   * @param out      output stream
+   * @param document xml document
+   * @throws TransformerException
+   */
+  public static void saveToStream(final OutputStream out, final Document document)
+      throws TransformerException {
     // Create transformer.
     final Transformer transformer = TransformerFactory.newInstance().newTransformer();
     transformer.setOutputProperty(OutputKeys.METHOD, "xml");
@@ -82,10 +98,7 @@ public class XMLUtils {
     transformer.setOutputProperty(OutputKeys.ENCODING, "UTF-8");
     transformer.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "4");
 
-    // Write to file and transform.
-    try (FileOutputStream fos = new FileOutputStream(file)) {
-      transformer.transform(new DOMSource(document), new StreamResult(fos));
-    }
+    transformer.transform(new DOMSource(document), new StreamResult(out));
   }
 
   /**
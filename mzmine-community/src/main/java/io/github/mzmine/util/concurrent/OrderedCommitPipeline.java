@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2004-2024 The mzmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package io.github.mzmine.util.concurrent;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Producer/consumer pipeline that runs tasks in a pool of worker threads and commits their results
+ * in submission order. The submitting thread passes tasks, e.g., the decoding of mzML binary
+ * arrays or the mass detection of a chunk of scans, to the workers. Each task returns a commit
+ * action that is run in the submitting thread in submission order. This way, data is memory mapped
+ * and added to scans in a deterministic order while the processing runs in parallel.
+ * <p>
+ * The number of pending tasks is limited so that the submitting thread cannot run ahead and keep
+ * too much processed data in memory. With a single thread, all tasks are run directly in the
+ * calling thread.
+ * <p>
+ * All pipelines share one pool of worker threads. Many tasks, e.g., the import or mass detection
+ * of many files, run their pipelines concurrently and would otherwise create threads² workers. The
+ * submitted tasks must not block on other pipelines.
+ */
+public class OrderedCommitPipeline implements AutoCloseable {
+
+  private static final AtomicInteger threadCounter = new AtomicInteger(0);
+  private static final ThreadPoolExecutor sharedExecutor = new ThreadPoolExecutor(1, 1, 30,
+      TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+    final Thread thread = new Thread(runnable,
+        "ordered-commit-worker-" + threadCounter.incrementAndGet());
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  static {
+    sharedExecutor.allowCoreThreadTimeOut(true);
+  }
+
+  private final ThreadPoolExecutor executor;
+  private final ArrayDeque<Future<Runnable>> pending = new ArrayDeque<>();
+  private final int maxPending;
+
+  /**
+   * @param numThreads number of worker threads of the shared pool, usually the number of threads
+   *                   from the preferences. 1 runs all tasks in the calling thread
+   * @param maxPending maximum number of submitted but uncommitted tasks of this pipeline
+   */
+  public OrderedCommitPipeline(int numThreads, int maxPending) {
+    this.maxPending = Math.max(1, maxPending);
+    if (numThreads <= 1) {
+      executor = null;
+    } else {
+      executor = sharedExecutor;
+      resizeSharedPool(numThreads);
+    }
+  }
+
+  /**
+   * The shared pool follows the latest number of threads, e.g., after a change in the preferences
+   */
+  private static synchronized void resizeSharedPool(int numThreads) {
+    if (numThreads > sharedExecutor.getMaximumPoolSize()) {
+      sharedExecutor.setMaximumPoolSize(numThreads);
+      sharedExecutor.setCorePoolSize(numThreads);
+    } else if (numThreads < sharedExecutor.getMaximumPoolSize()) {
+      sharedExecutor.setCorePoolSize(numThreads);
+      sharedExecutor.setMaximumPoolSize(numThreads);
+    }
+  }
+
+  /**
+   * @return the current number of worker threads of the shared pool
+   */
+  static int getSharedPoolSize() {
+    return sharedExecutor.getMaximumPoolSize();
+  }
+
+  /**
+   * Submit a task. Commits all finished tasks at the head of the queue and blocks if too many tasks
+   * are pending.
+   *
+   * @param task runs in a worker thread and returns the commit action for the submitting thread or
+   *             null if there is nothing to commit
+   */
+  public void submit(@NotNull Callable<Runnable> task) {
+    if (executor == null) {
+      commit(run(task));
+      return;
+    }
+    pending.add(executor.submit(task));
+    commitFinished();
+    while (pending.size() >= maxPending) {
+      commit(await(pending.poll()));
+    }
+  }
+
+  /**
+   * Commits the finished tasks at the head of the queue without blocking
+   */
+  public void commitFinished() {
+    while (!pending.isEmpty() && pending.peek().isDone()) {
+      commit(await(pending.poll()));
+    }
+  }
+
+  /**
+   * Waits for all submitted tasks and commits them in order
+   */
+  public void finish() {
+    while (!pending.isEmpty()) {
+      commit(await(pending.poll()));
+    }
+  }
+
+  private static void commit(Runnable commit) {
+    if (commit != null) {
+      commit.run();
+    }
+  }
+
+  private static Runnable run(Callable<Runnable> task) {
+    try {
+      return task.call();
+    } catch (RuntimeException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new IllegalStateException("Error in parallel processing: " + e.getMessage(), e);
+    }
+  }
+
+  private Runnable await(Future<Runnable> future) {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      close();
+      throw new IllegalStateException("Interrupted during parallel processing", e);
+    } catch (ExecutionException e) {
+      close();
+      if (e.getCause() instanceof RuntimeException re) {
+        throw re;
+      }
+      throw new IllegalStateException("Error in parallel processing: " + e.getMessage(),
+          e.getCause());
+    }
+  }
+
+  /**
+   * Cancels and discards the pending tasks of this pipeline. The shared workers keep running.
+   */
+  @Override
+  public void close() {
+    for (Future<Runnable> future : pending) {
+      future.cancel(false);
+    }
+    pending.clear();
+  }
+}
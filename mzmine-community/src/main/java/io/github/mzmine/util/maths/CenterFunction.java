@@ -106,4 +106,16 @@ public class CenterFunction {
   public double calcCenter(double[] values, double[] weights) {
     return MathUtils.calcCenter(measure, values, weights, weightTransform, noiseLevel, maxWeight);
   }
+
+  /**
+   * Same result as {@link #calcCenter(double[], double[])} for the first length values, but
+   * without allocations. Values and weights are used as buffers and are changed.
+   *
+   * @param length number of values and weights to use
+   * @return median or weighted average
+   */
+  public double calcCenterInPlace(double[] values, double[] weights, int length) {
+    return MathUtils.calcCenterInPlace(measure, values, weights, length, weightTransform,
+        noiseLevel, maxWeight);
+  }
 }
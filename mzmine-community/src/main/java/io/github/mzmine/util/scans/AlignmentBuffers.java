@@ -0,0 +1,266 @@
+/*
+ * Copyright (c) 2004-2024 The mzmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.util.scans;
+
+import io.github.mzmine.datamodel.DataPoint;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import it.unimi.dsi.fastutil.ints.IntComparator;
+import java.util.Arrays;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Reusable scratch buffers for the primitive spectral alignment in {@link ScanAlignment}. One
+ * instance per thread is provided by {@link #get()} so that alignments and similarity calculations
+ * do not allocate. Buffers only grow and are never shrunk.
+ * <p>
+ * The input arrays (m/z, intensity) of spectrum A and B can be loaded from {@link DataPoint}
+ * arrays, which sorts them by descending intensity exactly like {@link ScanAlignment#sorter}. The
+ * alignment results are stored in {@link #matchA} (index of matched signal in B or -1) and
+ * {@link #matchedB}.
+ */
+public final class AlignmentBuffers {
+
+  private static final ThreadLocal<AlignmentBuffers> THREAD_BUFFERS = ThreadLocal.withInitial(
+      AlignmentBuffers::new);
+
+  // loaded input values sorted by intensity
+  private double[] mzsA = new double[64];
+  private double[] intensitiesA = new double[64];
+  private double[] mzsB = new double[64];
+  private double[] intensitiesB = new double[64];
+  private int numA;
+  private int numB;
+
+  // alignment results
+  int[] matchA = new int[64];
+  boolean[] matchedB = new boolean[64];
+  int overlap;
+
+  // scratch
+  int[] order = new int[64];
+  private int[] supportOrder = new int[64];
+  double[] weightedA = new double[64];
+  double[] weightedB = new double[64];
+  private double[] keys = new double[64];
+  // used by the sort comparators
+  private double[] sortMzs;
+  private double[] sortIntensities;
+  private final IntComparator intensityDescending = (i, j) -> {
+    // same as DataPointSorter: intensity then m/z, both descending
+    int result = Double.compare(sortIntensities[j], sortIntensities[i]);
+    return result != 0 ? result : Double.compare(sortMzs[j], sortMzs[i]);
+  };
+  private final IntComparator mzAscending = (i, j) -> {
+    int result = Double.compare(sortMzs[i], sortMzs[j]);
+    return result != 0 ? result : Integer.compare(i, j);
+  };
+  private final IntComparator keyAscending = (i, j) -> Double.compare(sortMzs[i], sortMzs[j]);
+
+  private AlignmentBuffers() {
+  }
+
+  /**
+   * @return the buffers of the current thread
+   */
+  public static @NotNull AlignmentBuffers get() {
+    return THREAD_BUFFERS.get();
+  }
+
+  private static double[] ensure(double[] array, int size) {
+    return array.length >= size ? array : new double[Math.max(size, array.length * 2)];
+  }
+
+  private static int[] ensure(int[] array, int size) {
+    return array.length >= size ? array : new int[Math.max(size, array.length * 2)];
+  }
+
+  /**
+   * Makes sure that all alignment result and scratch arrays can hold the signals
+   */
+  void ensureCapacity(int numA, int numB) {
+    final int max = Math.max(numA, numB);
+    matchA = ensure(matchA, numA);
+    if (matchedB.length < numB) {
+      matchedB = new boolean[Math.max(numB, matchedB.length * 2)];
+    }
+    order = ensure(order, max);
+    supportOrder = ensure(supportOrder, max);
+    weightedA = ensure(weightedA, numA);
+    weightedB = ensure(weightedB, numB);
+    keys = ensure(keys, numA);
+  }
+
+  /**
+   * Load spectrum A and sort by descending intensity. The data points are not changed.
+   */
+  public void loadA(@NotNull DataPoint[] dps) {
+    mzsA = ensure(mzsA, dps.length);
+    intensitiesA = ensure(intensitiesA, dps.length);
+    numA = loadSorted(dps, mzsA, intensitiesA);
+  }
+
+  /**
+   * Load spectrum B and sort by descending intensity. The data points are not changed.
+   */
+  public void loadB(@NotNull DataPoint[] dps) {
+    mzsB = ensure(mzsB, dps.length);
+    intensitiesB = ensure(intensitiesB, dps.length);
+    numB = loadSorted(dps, mzsB, intensitiesB);
+  }
+
+  private int loadSorted(DataPoint[] dps, double[] dstMzs, double[] dstIntensities) {
+    final int n = dps.length;
+    order = ensure(order, n);
+    supportOrder = ensure(supportOrder, n);
+    // temporarily use the destination as sort values
+    for (int i = 0; i < n; i++) {
+      dstMzs[i] = dps[i].getMZ();
+      dstIntensities[i] = dps[i].getIntensity();
+      order[i] = i;
+    }
+    sortMzs = dstMzs;
+    sortIntensities = dstIntensities;
+    IntArrays.quickSort(order, 0, n, intensityDescending);
+    sortMzs = null;
+    sortIntensities = null;
+
+    for (int i = 0; i < n; i++) {
+      final DataPoint dp = dps[order[i]];
+      dstMzs[i] = dp.getMZ();
+      dstIntensities[i] = dp.getIntensity();
+    }
+    return n;
+  }
+
+  /**
+   * Sorts the first n indices in {@link #order} by ascending m/z
+   */
+  void sortOrderByMz(double[] mzs, int n) {
+    for (int i = 0; i < n; i++) {
+      order[i] = i;
+    }
+    sortMzs = mzs;
+    IntArrays.quickSort(order, 0, n, mzAscending);
+    sortMzs = null;
+  }
+
+  /**
+   * Stable sort of the first n values in {@link #order} by the given key values
+   *
+   * @param keys values indexed by the values in order
+   */
+  void stableSortOrder(double[] keys, int n) {
+    System.arraycopy(order, 0, supportOrder, 0, n);
+    sortMzs = keys;
+    IntArrays.mergeSort(order, 0, n, keyAscending, supportOrder);
+    sortMzs = null;
+  }
+
+  /**
+   * Collects all matched signals of the last alignment of the loaded spectra and sorts them by
+   * the lower m/z of each pair (stable sort). Access the sorted signals by
+   * {@link #getSortedMatchedA(int)}
+   *
+   * @return the number of matched signals
+   */
+  public int sortMatchedByMinMz() {
+    int n = 0;
+    for (int a = 0; a < numA; a++) {
+      final int b = matchA[a];
+      if (b != -1) {
+        keys[a] = Math.min(mzsA[a], mzsB[b]);
+        order[n++] = a;
+      }
+    }
+    stableSortOrder(keys, n);
+    return n;
+  }
+
+  /**
+   * @param i index in the sorted matches, see {@link #sortMatchedByMinMz()}
+   * @return the index of the signal in A
+   */
+  public int getSortedMatchedA(int i) {
+    return order[i];
+  }
+
+  void clearMatchedB(int numB) {
+    Arrays.fill(matchedB, 0, numB, false);
+  }
+
+  public double[] getMzsA() {
+    return mzsA;
+  }
+
+  public double[] getIntensitiesA() {
+    return intensitiesA;
+  }
+
+  public double[] getMzsB() {
+    return mzsB;
+  }
+
+  public double[] getIntensitiesB() {
+    return intensitiesB;
+  }
+
+  /**
+   * @return number of loaded signals in A
+   */
+  public int getNumA() {
+    return numA;
+  }
+
+  /**
+   * @return number of loaded signals in B
+   */
+  public int getNumB() {
+    return numB;
+  }
+
+  /**
+   * @param a index of signal in A
+   * @return index of the matched signal in B or -1 if unmatched
+   */
+  public int getMatchA(int a) {
+    return matchA[a];
+  }
+
+  /**
+   * @param b index of signal in B
+   * @return true if signal was matched
+   */
+  public boolean isMatchedB(int b) {
+    return matchedB[b];
+  }
+
+  /**
+   * @return number of matched signals of the last alignment
+   */
+  public int getOverlap() {
+    return overlap;
+  }
+}
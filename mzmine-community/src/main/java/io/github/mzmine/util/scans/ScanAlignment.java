@@ -162,6 +162,188 @@ public class ScanAlignment {
     return list;
   }
 
+  /**
+   * Primitive and allocation free version of {@link #alignOfSorted(MZTolerance, DataPoint[],
+   * List)} on the spectra loaded into the buffers by {@link AlignmentBuffers#loadA(DataPoint[])}
+   * and {@link AlignmentBuffers#loadB(DataPoint[])}.
+   *
+   * @param buffers loaded buffers, results are stored in the buffers
+   * @return number of matched signals
+   */
+  public static int alignLoaded(MZTolerance mzTol, AlignmentBuffers buffers) {
+    return alignOfSorted(mzTol, buffers.getMzsA(), buffers.getNumA(), buffers.getMzsB(),
+        buffers.getNumB(), buffers);
+  }
+
+  /**
+   * Primitive and allocation free version of {@link #alignOfSorted(MZTolerance, DataPoint[],
+   * List)}. Both spectra need to be sorted by descending intensity (and descending m/z for equal
+   * intensities, see {@link #sorter}). Each signal in A is matched to the most intense unmatched
+   * signal in B within the tolerance. Results are stored in the buffers, see
+   * {@link AlignmentBuffers#getMatchA(int)} and {@link AlignmentBuffers#isMatchedB(int)}.
+   *
+   * @param sortedMzsA m/z values of A sorted by intensity
+   * @param numA       number of signals in A
+   * @param sortedMzsB m/z values of B sorted by intensity
+   * @param numB       number of signals in B
+   * @param buffers    the buffers of the current thread, see {@link AlignmentBuffers#get()}
+   * @return number of matched signals
+   */
+  public static int alignOfSorted(MZTolerance mzTol, double[] sortedMzsA, int numA,
+      double[] sortedMzsB, int numB, AlignmentBuffers buffers) {
+    return alignOfSortedPrimitive(mzTol, sortedMzsA, numA, sortedMzsB, numB, false, 0d, buffers);
+  }
+
+  /**
+   * Primitive and allocation free version of {@link #alignOfSortedModAware(MZTolerance,
+   * DataPoint[], List, double, double)}. Both spectra need to be sorted by descending intensity
+   * (and descending m/z for equal intensities, see {@link #sorter}). Results are stored in the
+   * buffers, see {@link AlignmentBuffers#getMatchA(int)} and
+   * {@link AlignmentBuffers#isMatchedB(int)}.
+   *
+   * @param sortedMzsA   m/z values of A sorted by intensity
+   * @param numA         number of signals in A
+   * @param sortedMzsB   m/z values of B sorted by intensity
+   * @param numB         number of signals in B
+   * @param precursorMzA precursor m/z of A
+   * @param precursorMzB precursor m/z of B
+   * @param buffers      the buffers of the current thread, see {@link AlignmentBuffers#get()}
+   * @return number of matched signals
+   */
+  public static int alignOfSortedModAware(MZTolerance mzTol, double[] sortedMzsA, int numA,
+      double[] sortedMzsB, int numB, double precursorMzA, double precursorMzB,
+      AlignmentBuffers buffers) {
+    return alignOfSortedPrimitive(mzTol, sortedMzsA, numA, sortedMzsB, numB, true,
+        precursorMzB - precursorMzA, buffers);
+  }
+
+  private static int alignOfSortedPrimitive(MZTolerance mzTol, double[] sortedMzsA, int numA,
+      double[] sortedMzsB, int numB, boolean modAware, double deltaMz, AlignmentBuffers buffers) {
+    buffers.ensureCapacity(numA, numB);
+    buffers.clearMatchedB(numB);
+    // B by m/z to find all signals within tolerance
+    buffers.sortOrderByMz(sortedMzsB, numB);
+
+    final int[] matchA = buffers.matchA;
+    final boolean[] matchedB = buffers.matchedB;
+    int overlap = 0;
+    for (int a = 0; a < numA; a++) {
+      final double mz = sortedMzsA[a];
+      // lowest index in B is the most intense signal
+      int match = findMostIntenseUnmatched(mzTol, mz, sortedMzsB, numB, buffers.order, matchedB,
+          Integer.MAX_VALUE);
+      if (modAware) {
+        match = findMostIntenseUnmatched(mzTol, mz + deltaMz, sortedMzsB, numB, buffers.order,
+            matchedB, match);
+      }
+      if (match == Integer.MAX_VALUE) {
+        matchA[a] = -1;
+      } else {
+        matchA[a] = match;
+        matchedB[match] = true;
+        overlap++;
+      }
+    }
+    buffers.overlap = overlap;
+    return overlap;
+  }
+
+  /**
+   * @param mzOrderB indices of B sorted by m/z
+   * @param bestSoFar the current best index or Integer.MAX_VALUE
+   * @return the lowest unmatched index in B within tolerance or bestSoFar
+   */
+  private static int findMostIntenseUnmatched(MZTolerance mzTol, double mz, double[] sortedMzsB,
+      int numB, int[] mzOrderB, boolean[] matchedB, int bestSoFar) {
+    // exact check is done with the tolerance function - widen the window for rounding errors
+    final double tolerance = mzTol.getMzToleranceForMass(mz) + 1E-9;
+    final double lower = mz - tolerance;
+    final double upper = mz + tolerance;
+
+    // binary search for first m/z >= lower
+    int low = 0;
+    int high = numB;
+    while (low < high) {
+      final int mid = (low + high) >>> 1;
+      if (sortedMzsB[mzOrderB[mid]] < lower) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+
+    int best = bestSoFar;
+    for (int i = low; i < numB; i++) {
+      final int b = mzOrderB[i];
+      final double mzB = sortedMzsB[b];
+      if (mzB > upper) {
+        break;
+      }
+      if (b < best && !matchedB[b] && mzTol.checkWithinTolerance(mz, mzB)) {
+        best = b;
+      }
+    }
+    return best;
+  }
+
+  /**
+   * Weighted cosine similarity of the last alignment in the buffers. Same result as
+   * {@link #toIntensityMatrixWeighted(List, double, double)} and cosine similarity on the aligned
+   * list, with unmatched signals removed or matched to zero.
+   *
+   * @param sortedMzsA         m/z values of A sorted by intensity
+   * @param sortedIntensitiesA intensities of A sorted by intensity
+   * @param numA               number of signals in A
+   * @param sortedMzsB         m/z values of B sorted by intensity
+   * @param sortedIntensitiesB intensities of B sorted by intensity
+   * @param numB               number of signals in B
+   * @param keepUnmatchedA     keep unmatched signals of A and match them to zero
+   * @param keepUnmatchedB     keep unmatched signals of B and match them to zero
+   * @param buffers            contains the last alignment of A and B
+   * @return the cosine similarity
+   */
+  public static double weightedCosine(double[] sortedMzsA, double[] sortedIntensitiesA, int numA,
+      double[] sortedMzsB, double[] sortedIntensitiesB, int numB, double weightIntensity,
+      double weightMZ, boolean keepUnmatchedA, boolean keepUnmatchedB, AlignmentBuffers buffers) {
+    final double[] weightedA = buffers.weightedA;
+    final double[] weightedB = buffers.weightedB;
+    for (int a = 0; a < numA; a++) {
+      weightedA[a] =
+          Math.pow(sortedIntensitiesA[a], weightIntensity) * Math.pow(sortedMzsA[a], weightMZ);
+    }
+    for (int b = 0; b < numB; b++) {
+      weightedB[b] =
+          Math.pow(sortedIntensitiesB[b], weightIntensity) * Math.pow(sortedMzsB[b], weightMZ);
+    }
+
+    // same order as the aligned list: all signals of A then unmatched B
+    final int[] matchA = buffers.matchA;
+    double dot = 0;
+    double normA = 0;
+    double normB = 0;
+    for (int a = 0; a < numA; a++) {
+      final int b = matchA[a];
+      if (b == -1 && !keepUnmatchedA) {
+        continue;
+      }
+      final double x = weightedA[a];
+      final double y = b == -1 ? 0 : weightedB[b];
+      dot += x * y;
+      normA += x * x;
+      normB += y * y;
+    }
+    if (keepUnmatchedB) {
+      final boolean[] matchedB = buffers.matchedB;
+      for (int b = 0; b < numB; b++) {
+        if (!matchedB[b]) {
+          final double y = weightedB[b];
+          normB += y * y;
+        }
+      }
+    }
+    return dot / (Math.sqrt(normA) * Math.sqrt(normB));
+  }
+
   /**
    * get overlapping MZ range (lowerBound - mzTol and upperbound+ mzTol)
    */
@@ -2175,14 +2175,26 @@ public class ScanUtils {
    */
   public static double[] denormalizeIntensitiesMultiplyByInjectTime(final double[] intensities,
       Float injectTime) {
+    denormalizeIntensitiesMultiplyByInjectTime(intensities, 0, intensities.length, injectTime);
+    return intensities;
+  }
+
+  /**
+   * Same as {@link #denormalizeIntensitiesMultiplyByInjectTime(double[], Float)} but only for the
+   * range of a shared buffer that holds the values of multiple scans.
+   *
+   * @param from first index, inclusive
+   * @param to   last index, exclusive
+   */
+  public static void denormalizeIntensitiesMultiplyByInjectTime(final double[] intensities,
+      int from, int to, Float injectTime) {
     if (injectTime == null || injectTime <= 0) {
-      return intensities;
+      return;
     }
 
-    for (int i = 0; i < intensities.length; i++) {
+    for (int i = from; i < to; i++) {
       intensities[i] = intensities[i] * injectTime;
     }
-    return intensities;
   }
 
   /**
@@ -0,0 +1,526 @@
+/*
+ * Copyright (c) 2004-2024 The mzmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.util.scans;
+
+import io.github.mzmine.datamodel.MassSpectrum;
+import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
+import io.github.mzmine.util.maths.CenterFunction;
+import io.github.mzmine.util.scans.SpectraMerging.IntensityMergingType;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import java.util.Arrays;
+import java.util.Collection;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Primitive implementation of
+ * {@link SpectraMerging#calculatedMergedMzsAndIntensities(Collection, MZTolerance,
+ * IntensityMergingType, CenterFunction, Double, Double, Integer)}. Produces the same results as
+ * the former implementation based on a {@link com.google.common.collect.TreeRangeMap} of sets of
+ * indexed data points, bit for bit, but only uses primitive arrays:
+ * <ol>
+ *   <li>All signals are collected into parallel arrays and an index is sorted by descending
+ *   intensity (ties by descending m/z, then by input order, like the former stable sort).</li>
+ *   <li>A single greedy sweep assigns each signal to the m/z interval that contains it or creates
+ *   a new interval with {@link SpectraMerging#createNewNonOverlappingRange} semantics. Intervals
+ *   are stored as cuts (see {@link com.google.common.collect.Range}) and looked up in a grid of
+ *   m/z buckets.</li>
+ *   <li>Signals are grouped by cluster in the order of the source spectra. Only the most intense
+ *   signal of each source spectrum is kept per cluster, and centers and intensities are computed
+ *   in place.</li>
+ * </ol>
+ * Instances are used for a single merge and are not thread safe.
+ */
+final class SpectraMergingKernel {
+
+  private static final int INITIAL_INTERVALS = 64;
+
+  // signals in the order of the source spectra
+  private final double[] mzs;
+  private final double[] intensities;
+  private final int[] spectrumIndex;
+  private final int numSignals;
+
+  // intervals as cuts: lower cut is above the value for open lower bounds, upper cut is above the
+  // value for closed upper bounds
+  private double[] lower = new double[INITIAL_INTERVALS];
+  private boolean[] lowerAbove = new boolean[INITIAL_INTERVALS];
+  private double[] upper = new double[INITIAL_INTERVALS];
+  private boolean[] upperAbove = new boolean[INITIAL_INTERVALS];
+  private int[] intervalCluster = new int[INITIAL_INTERVALS];
+  private boolean[] alive = new boolean[INITIAL_INTERVALS];
+  private int[] visited = new int[INITIAL_INTERVALS];
+  private int visitStamp = 0;
+  private int numIntervals = 0;
+
+  // bucket grid of interval references as linked lists
+  private int numBuckets = 1;
+  private double bucketMin = 0;
+  private double bucketWidth = 1;
+  private int[] bucketHead;
+  private int[] nodeInterval = new int[INITIAL_INTERVALS];
+  private int[] nodeNext = new int[INITIAL_INTERVALS];
+  private int numNodes = 0;
+
+  // proposed range of a new interval
+  private double propLower;
+  private boolean propLowerAbove;
+  private double propUpper;
+  private boolean propUpperAbove;
+
+  private SpectraMergingKernel(double[] mzs, double[] intensities, int[] spectrumIndex,
+      int numSignals) {
+    this.mzs = mzs;
+    this.intensities = intensities;
+    this.spectrumIndex = spectrumIndex;
+    this.numSignals = numSignals;
+  }
+
+  /**
+   * See
+   * {@link SpectraMerging#calculatedMergedMzsAndIntensities(Collection, MZTolerance,
+   * IntensityMergingType, CenterFunction, Double, Double, Integer)}
+   */
+  static <T extends MassSpectrum> double[][] merge(@NotNull final Collection<T> source,
+      @NotNull final MZTolerance tolerance,
+      @NotNull final IntensityMergingType intensityMergingType,
+      @NotNull final CenterFunction mzCenterFunction, @Nullable final Double inputNoiseLevel,
+      @Nullable final Double outputNoiseLevel, @Nullable final Integer minNumPeaks) {
+    int maxDp = 0;
+    int totalDp = 0;
+    for (T spectrum : source) {
+      final int n = spectrum.getNumberOfDataPoints();
+      maxDp = Math.max(maxDp, n);
+      totalDp += n;
+    }
+
+    final double[] rawMzs = new double[maxDp];
+    final double[] rawIntensities = new double[maxDp];
+    final double[] mzs = new double[totalDp];
+    final double[] intensities = new double[totalDp];
+    final int[] spectrumIndex = new int[totalDp];
+
+    int numSignals = 0;
+    int index = 0;
+    for (T spectrum : source) {
+      spectrum.getMzValues(rawMzs);
+      spectrum.getIntensityValues(rawIntensities);
+
+      for (int i = 0; i < spectrum.getNumberOfDataPoints(); i++) {
+        if (inputNoiseLevel == null || rawIntensities[i] > inputNoiseLevel) {
+          mzs[numSignals] = rawMzs[i];
+          intensities[numSignals] = rawIntensities[i];
+          spectrumIndex[numSignals] = index;
+          numSignals++;
+        }
+      }
+      index++;
+    }
+
+    final SpectraMergingKernel kernel = new SpectraMergingKernel(mzs, intensities, spectrumIndex,
+        numSignals);
+    return kernel.merge(tolerance, intensityMergingType, mzCenterFunction, outputNoiseLevel,
+        minNumPeaks);
+  }
+
+  private double[][] merge(@NotNull final MZTolerance tolerance,
+      @NotNull final IntensityMergingType intensityMergingType,
+      @NotNull final CenterFunction mzCenterFunction, @Nullable final Double outputNoiseLevel,
+      @Nullable final Integer minNumPeaks) {
+    initBuckets(tolerance);
+
+    // descending intensity, then descending m/z, then input order
+    final int[] order = new int[numSignals];
+    for (int i = 0; i < numSignals; i++) {
+      order[i] = i;
+    }
+    IntArrays.quickSort(order, 0, numSignals, (a, b) -> {
+      int result = Double.compare(intensities[b], intensities[a]);
+      if (result == 0) {
+        result = Double.compare(mzs[b], mzs[a]);
+      }
+      return result != 0 ? result : Integer.compare(a, b);
+    });
+
+    // greedy sweep from the most intense signal
+    final int[] signalCluster = new int[numSignals];
+    final int[] rank = new int[numSignals];
+    int numClusters = 0;
+    for (int r = 0; r < numSignals; r++) {
+      final int signal = order[r];
+      rank[signal] = r;
+      final double mz = mzs[signal];
+
+      final int interval = findInterval(mz);
+      if (interval != -1) {
+        signalCluster[signal] = intervalCluster[interval];
+        continue;
+      }
+
+      final double tol = tolerance.getMzToleranceForMass(mz);
+      propLower = mz - tol;
+      propLowerAbove = false;
+      propUpper = mz + tol;
+      propUpperAbove = true;
+      createNonOverlappingProposal();
+
+      if (compareCuts(propLower, propLowerAbove, propUpper, propUpperAbove) == 0) {
+        // empty ranges are not added to a range map, the signal is lost
+        signalCluster[signal] = -1;
+        continue;
+      }
+      putProposal(numClusters);
+      signalCluster[signal] = numClusters;
+      numClusters++;
+    }
+
+    // group signals by cluster in the order of the source spectra
+    final int[] clusterStart = new int[numClusters + 1];
+    for (int i = 0; i < numSignals; i++) {
+      if (signalCluster[i] != -1) {
+        clusterStart[signalCluster[i] + 1]++;
+      }
+    }
+    int maxClusterSize = 0;
+    for (int c = 0; c < numClusters; c++) {
+      maxClusterSize = Math.max(maxClusterSize, clusterStart[c + 1]);
+      clusterStart[c + 1] += clusterStart[c];
+    }
+    final int[] members = new int[clusterStart[numClusters]];
+    final int[] fill = Arrays.copyOf(clusterStart, numClusters);
+    for (int i = 0; i < numSignals; i++) {
+      if (signalCluster[i] != -1) {
+        members[fill[signalCluster[i]]++] = i;
+      }
+    }
+
+    // ascending m/z intervals like the entries of the range map
+    final int[] sortedIntervals = new int[numIntervals];
+    int numAlive = 0;
+    for (int i = 0; i < numIntervals; i++) {
+      if (alive[i]) {
+        sortedIntervals[numAlive++] = i;
+      }
+    }
+    IntArrays.quickSort(sortedIntervals, 0, numAlive,
+        (a, b) -> compareCuts(lower[a], lowerAbove[a], lower[b], lowerAbove[b]));
+
+    final double[] mzBuffer = new double[maxClusterSize];
+    final double[] intensityBuffer = new double[maxClusterSize];
+    // intervals are only split in rare cases, cache the results per cluster
+    final double[] clusterMz = new double[numClusters];
+    final double[] clusterIntensity = new double[numClusters];
+    final byte[] clusterState = new byte[numClusters];
+
+    final double[] newMzs = new double[numAlive];
+    final double[] newIntensities = new double[numAlive];
+    int numMerged = 0;
+    for (int s = 0; s < numAlive; s++) {
+      final int cluster = intervalCluster[sortedIntervals[s]];
+      if (clusterState[cluster] == 0) {
+        clusterState[cluster] = 2;
+
+        // keep only the most intense signal per source spectrum
+        int size = 0;
+        int last = -1;
+        for (int m = clusterStart[cluster]; m < clusterStart[cluster + 1]; m++) {
+          final int signal = members[m];
+          if (last != -1 && spectrumIndex[last] == spectrumIndex[signal]) {
+            if (rank[signal] < rank[last]) {
+              mzBuffer[size - 1] = mzs[signal];
+              intensityBuffer[size - 1] = intensities[signal];
+              last = signal;
+            }
+            continue;
+          }
+          mzBuffer[size] = mzs[signal];
+          intensityBuffer[size] = intensities[signal];
+          last = signal;
+          size++;
+        }
+
+        if (minNumPeaks != null && size < minNumPeaks) {
+          continue;
+        }
+
+        // intensity before center, the weights are transformed in place
+        final double newIntensity = switch (intensityMergingType) {
+          case SUMMED -> Arrays.stream(intensityBuffer, 0, size).sum();
+          case MAXIMUM -> max(intensityBuffer, size);
+          case AVERAGE -> Arrays.stream(intensityBuffer, 0, size).average().orElse(0d);
+        };
+        final double newMz = mzCenterFunction.calcCenterInPlace(mzBuffer, intensityBuffer, size);
+
+        if (outputNoiseLevel == null || newIntensity > outputNoiseLevel) {
+          clusterState[cluster] = 1;
+          clusterMz[cluster] = newMz;
+          clusterIntensity[cluster] = newIntensity;
+        }
+      }
+
+      if (clusterState[cluster] == 1) {
+        newMzs[numMerged] = clusterMz[cluster];
+        newIntensities[numMerged] = clusterIntensity[cluster];
+        numMerged++;
+      }
+    }
+
+    return new double[][]{Arrays.copyOf(newMzs, numMerged),
+        Arrays.copyOf(newIntensities, numMerged)};
+  }
+
+  private static double max(double[] values, int length) {
+    if (length == 0) {
+      return 0d;
+    }
+    double max = values[0];
+    for (int i = 1; i < length; i++) {
+      max = Math.max(max, values[i]);
+    }
+    return max;
+  }
+
+  /**
+   * Buckets are at least as wide as the widest tolerance range, so an interval is referenced by
+   * at most two buckets.
+   */
+  private void initBuckets(@NotNull final MZTolerance tolerance) {
+    double min = Double.POSITIVE_INFINITY;
+    double max = Double.NEGATIVE_INFINITY;
+    for (int i = 0; i < numSignals; i++) {
+      final double mz = mzs[i];
+      if (Double.isFinite(mz)) {
+        min = Math.min(min, mz);
+        max = Math.max(max, mz);
+      }
+    }
+
+    numBuckets = 1;
+    if (min <= max) {
+      final double span = max - min;
+      final double maxTol = tolerance.getMzToleranceForMass(
+          Math.max(Math.abs(min), Math.abs(max)));
+      final double width = Math.max(2 * maxTol, span / Math.max(numSignals, 1));
+      if (width > 0 && Double.isFinite(span / width)) {
+        numBuckets = (int) Math.min(span / width, numSignals) + 1;
+        bucketMin = min;
+        bucketWidth = width;
+      }
+    }
+    bucketHead = new int[numBuckets];
+    Arrays.fill(bucketHead, -1);
+  }
+
+  /**
+   * Monotonic in the order of {@link Double#compare(double, double)}
+   */
+  private int bucket(double mz) {
+    if (numBuckets == 1 || Double.isNaN(mz)) {
+      return numBuckets - 1;
+    }
+    final double bucket = (mz - bucketMin) / bucketWidth;
+    if (!(bucket > 0)) {
+      return 0;
+    }
+    return bucket >= numBuckets - 1 ? numBuckets - 1 : (int) bucket;
+  }
+
+  /**
+   * Compares two cuts like {@link com.google.common.collect.Range} bounds. A cut below a value is
+   * smaller than the cut above the same value.
+   */
+  private static int compareCuts(double a, boolean aAbove, double b, boolean bAbove) {
+    final int result = Double.compare(a, b);
+    return result != 0 ? result : Boolean.compare(aAbove, bAbove);
+  }
+
+  private boolean contains(int interval, double mz) {
+    final int lowerCmp = Double.compare(lower[interval], mz);
+    if (lowerCmp > 0 || (lowerCmp == 0 && lowerAbove[interval])) {
+      return false;
+    }
+    final int upperCmp = Double.compare(upper[interval], mz);
+    return upperCmp > 0 || (upperCmp == 0 && upperAbove[interval]);
+  }
+
+  /**
+   * @return the interval that contains the m/z or -1
+   */
+  private int findInterval(double mz) {
+    for (int node = bucketHead[bucket(mz)]; node != -1; node = nodeNext[node]) {
+      final int interval = nodeInterval[node];
+      if (alive[interval] && contains(interval, mz)) {
+        return interval;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Intersection of the proposed range and an interval, like {@link
+   * com.google.common.collect.Range#intersection}
+   *
+   * @return true if the intersection is empty
+   * @throws IllegalArgumentException if the ranges are not connected
+   */
+  private boolean isIntersectionWithProposalEmpty(int interval) {
+    final boolean lowerFromProposal =
+        compareCuts(propLower, propLowerAbove, lower[interval], lowerAbove[interval]) >= 0;
+    final double newLower = lowerFromProposal ? propLower : lower[interval];
+    final boolean newLowerAbove = lowerFromProposal ? propLowerAbove : lowerAbove[interval];
+
+    final boolean upperFromProposal =
+        compareCuts(propUpper, propUpperAbove, upper[interval], upperAbove[interval]) <= 0;
+    final double newUpper = upperFromProposal ? propUpper : upper[interval];
+    final boolean newUpperAbove = upperFromProposal ? propUpperAbove : upperAbove[interval];
+
+    final int cmp = compareCuts(newLower, newLowerAbove, newUpper, newUpperAbove);
+    if (cmp > 0) {
+      throw new IllegalArgumentException(
+          "intersection is undefined for disconnected ranges around " + propLower + " and "
+              + lower[interval]);
+    }
+    return cmp == 0;
+  }
+
+  /**
+   * Same logic as {@link SpectraMerging#createNewNonOverlappingRange} applied to the proposed
+   * range.
+   */
+  private void createNonOverlappingProposal() {
+    while (true) {
+      final int lowerEntry = findInterval(
+          !propLowerAbove ? propLower : propLower + SpectraMerging.EPSILON);
+      final int upperEntry = findInterval(
+          propUpperAbove ? propUpper : propUpper - SpectraMerging.EPSILON);
+
+      if (lowerEntry == -1 && upperEntry == -1) {
+        return;
+      }
+
+      final boolean lowerIntersects =
+          lowerEntry != -1 && !isIntersectionWithProposalEmpty(lowerEntry);
+      final boolean upperIntersects =
+          upperEntry != -1 && !isIntersectionWithProposalEmpty(upperEntry);
+      if (!lowerIntersects && !upperIntersects) {
+        return;
+      }
+
+      // check if the ranges actually overlap or if they are closed and open
+      if (lowerIntersects) {
+        propLower = upper[lowerEntry];
+        propLowerAbove = true;
+      }
+      if (upperIntersects) {
+        propUpper = lower[upperEntry];
+        propUpperAbove = false;
+      }
+      if (compareCuts(propLower, propLowerAbove, propUpper, propUpperAbove) > 0) {
+        throw new IllegalArgumentException(
+            "Invalid range: (" + propLower + ".." + propUpper + ")");
+      }
+    }
+  }
+
+  /**
+   * Puts the proposed range like {@link com.google.common.collect.RangeMap#put}, existing
+   * intervals are truncated, split or removed where they overlap.
+   */
+  private void putProposal(int cluster) {
+    visitStamp++;
+    final int firstBucket = bucket(propLower);
+    final int lastBucket = bucket(propUpper);
+    for (int b = firstBucket; b <= lastBucket; b++) {
+      for (int node = bucketHead[b]; node != -1; node = nodeNext[node]) {
+        final int interval = nodeInterval[node];
+        if (!alive[interval] || visited[interval] == visitStamp) {
+          continue;
+        }
+        visited[interval] = visitStamp;
+        if (compareCuts(lower[interval], lowerAbove[interval], propUpper, propUpperAbove) >= 0
+            || compareCuts(upper[interval], upperAbove[interval], propLower, propLowerAbove)
+            <= 0) {
+          continue;
+        }
+
+        final boolean keepBelow =
+            compareCuts(lower[interval], lowerAbove[interval], propLower, propLowerAbove) < 0;
+        final boolean keepAbove =
+            compareCuts(upper[interval], upperAbove[interval], propUpper, propUpperAbove) > 0;
+        if (keepBelow && keepAbove) {
+          final int split = addInterval(propUpper, propUpperAbove, upper[interval],
+              upperAbove[interval], intervalCluster[interval]);
+          visited[split] = visitStamp;
+        }
+        if (keepBelow) {
+          upper[interval] = propLower;
+          upperAbove[interval] = propLowerAbove;
+        } else if (keepAbove) {
+          lower[interval] = propUpper;
+          lowerAbove[interval] = propUpperAbove;
+        } else {
+          alive[interval] = false;
+        }
+      }
+    }
+
+    addInterval(propLower, propLowerAbove, propUpper, propUpperAbove, cluster);
+  }
+
+  private int addInterval(double lowerValue, boolean lowerIsAbove, double upperValue,
+      boolean upperIsAbove, int cluster) {
+    if (numIntervals == lower.length) {
+      final int capacity = numIntervals * 2;
+      lower = Arrays.copyOf(lower, capacity);
+      lowerAbove = Arrays.copyOf(lowerAbove, capacity);
+      upper = Arrays.copyOf(upper, capacity);
+      upperAbove = Arrays.copyOf(upperAbove, capacity);
+      intervalCluster = Arrays.copyOf(intervalCluster, capacity);
+      alive = Arrays.copyOf(alive, capacity);
+      visited = Arrays.copyOf(visited, capacity);
+    }
+    final int interval = numIntervals++;
+    lower[interval] = lowerValue;
+    lowerAbove[interval] = lowerIsAbove;
+    upper[interval] = upperValue;
+    upperAbove[interval] = upperIsAbove;
+    intervalCluster[interval] = cluster;
+    alive[interval] = true;
+
+    final int lastBucket = bucket(upperValue);
+    for (int b = bucket(lowerValue); b <= lastBucket; b++) {
+      if (numNodes == nodeInterval.length) {
+        nodeInterval = Arrays.copyOf(nodeInterval, numNodes * 2);
+        nodeNext = Arrays.copyOf(nodeNext, numNodes * 2);
+      }
+      nodeInterval[numNodes] = interval;
+      nodeNext[numNodes] = bucketHead[b];
+      bucketHead[b] = numNodes;
+      numNodes++;
+    }
+    return interval;
+  }
+}
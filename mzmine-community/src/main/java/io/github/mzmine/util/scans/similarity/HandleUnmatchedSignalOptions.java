@@ -46,6 +46,20 @@ public enum HandleUnmatchedSignalOptions {
   }
 
 
+  /**
+   * @return true if unmatched library signals are kept and matched against 0 intensity
+   */
+  public boolean isKeepUnmatchedLibrarySignals() {
+    return this == KEEP_ALL_AND_MATCH_TO_ZERO || this == KEEP_LIBRARY_SIGNALS;
+  }
+
+  /**
+   * @return true if unmatched query signals are kept and matched against 0 intensity
+   */
+  public boolean isKeepUnmatchedQuerySignals() {
+    return this == KEEP_ALL_AND_MATCH_TO_ZERO || this == KEEP_EXPERIMENTAL_SIGNALS;
+  }
+
   /**
    * Remove unaligned signals (not present in all masslists)
    *
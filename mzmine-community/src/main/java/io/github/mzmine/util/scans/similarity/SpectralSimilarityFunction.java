@@ -28,6 +28,7 @@ package io.github.mzmine.util.scans.similarity;
 import io.github.mzmine.datamodel.DataPoint;
 import io.github.mzmine.modules.MZmineModule;
 import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
+import io.github.mzmine.util.scans.AlignmentBuffers;
 import io.github.mzmine.util.scans.ScanAlignment;
 import java.util.List;
 import org.jetbrains.annotations.Nullable;
@@ -48,6 +49,32 @@ public abstract class SpectralSimilarityFunction implements MZmineModule {
   public abstract SpectralSimilarity getSimilarity(MZTolerance mzTol, int minMatch,
       DataPoint[] library, DataPoint[] query);
 
+  /**
+   * Weights that are applied to the signals before the score calculation. Used to calculate upper
+   * bounds of the score before the actual alignment.
+   *
+   * @return the weights or null if the score is not based on weighted signal intensities
+   */
+  @Nullable
+  public Weights getCosineWeights() {
+    return null;
+  }
+
+  /**
+   * Cheap check before the alignment of two spectra. Implementations must never return false if
+   * {@link #getSimilarity(MZTolerance, int, DataPoint[], DataPoint[])} could return a match.
+   *
+   * @param maxOverlap          upper bound of the number of matched signals
+   * @param queryN              number of query signals
+   * @param maxMatchedQueryNorm upper bound of the norm of the matched weighted query signals
+   *                            divided by the norm of all weighted query signals (0-1). Weights
+   *                            are defined by {@link #getCosineWeights()}
+   * @return false if the minimum score can never be reached
+   */
+  public boolean isScoreReachable(int maxOverlap, int queryN, double maxMatchedQueryNorm) {
+    return true;
+  }
+
   /**
    * Align two mass lists. Override if alignement is changed in a specific spectral similarity
    * function.
@@ -61,6 +88,36 @@ public abstract class SpectralSimilarityFunction implements MZmineModule {
     return ScanAlignment.align(mzTol, a, b);
   }
 
+  /**
+   * Primitive alignment of the library (A) and query (B) into the buffers of the current thread.
+   * Same alignment as {@link #alignDataPoints(MZTolerance, DataPoint[], DataPoint[])} without
+   * creating the aligned data point arrays. The input arrays are not changed.
+   *
+   * @return the buffers that hold the alignment until the next call on the same thread
+   */
+  protected static AlignmentBuffers alignToBuffers(MZTolerance mzTol, DataPoint[] library,
+      DataPoint[] query) {
+    final AlignmentBuffers buffers = AlignmentBuffers.get();
+    buffers.loadA(library);
+    buffers.loadB(query);
+    ScanAlignment.alignLoaded(mzTol, buffers);
+    return buffers;
+  }
+
+  /**
+   * Weighted cosine on the alignment in the buffers. Same as the cosine on the aligned list after
+   * {@link HandleUnmatchedSignalOptions#handleUnmatched(List)}
+   *
+   * @param buffers alignment of library (A) and query (B)
+   */
+  protected static double weightedCosine(AlignmentBuffers buffers, Weights weights,
+      HandleUnmatchedSignalOptions handleUnmatched) {
+    return ScanAlignment.weightedCosine(buffers.getMzsA(), buffers.getIntensitiesA(),
+        buffers.getNumA(), buffers.getMzsB(), buffers.getIntensitiesB(), buffers.getNumB(),
+        weights.getIntensity(), weights.getMz(), handleUnmatched.isKeepUnmatchedLibrarySignals(),
+        handleUnmatched.isKeepUnmatchedQuerySignals(), buffers);
+  }
+
   /**
    * Calculate overlap
    *
@@ -28,16 +28,13 @@ package io.github.mzmine.util.scans.similarity.impl.composite;
 import io.github.mzmine.datamodel.DataPoint;
 import io.github.mzmine.parameters.ParameterSet;
 import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
-import io.github.mzmine.util.maths.similarity.Similarity;
+import io.github.mzmine.util.scans.AlignmentBuffers;
 import io.github.mzmine.util.scans.ScanAlignment;
 import io.github.mzmine.util.scans.similarity.HandleUnmatchedSignalOptions;
 import io.github.mzmine.util.scans.similarity.SpectralSimilarity;
 import io.github.mzmine.util.scans.similarity.SpectralSimilarityFunction;
 import io.github.mzmine.util.scans.similarity.Weights;
-import java.util.Arrays;
-import java.util.Comparator;
 import java.util.List;
-import java.util.Objects;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -85,28 +82,27 @@ public class CompositeCosineSpectralSimilarity extends SpectralSimilarityFunctio
       HandleUnmatchedSignalOptions handleUnmatched, MZTolerance mzTol, int minMatch,
       DataPoint[] library, DataPoint[] query) {
 
-    // align
-    List<DataPoint[]> aligned = ScanAlignment.align(mzTol, library, query);
-    // removes all signals which were not found in both masslists
-    aligned = handleUnmatched.handleUnmatched(aligned);
+    // align on primitive buffers
+    final AlignmentBuffers buffers = alignToBuffers(mzTol, library, query);
 
     int queryN = query.length;
-    int overlap = calcOverlap(aligned);
+    int overlap = buffers.getOverlap();
 
     if (overlap >= minMatch) {
       // relative factor ranges from 0-1
-      double relativeFactor = calcRelativeNeighbourFactor(aligned);
+      double relativeFactor = calcRelativeNeighbourFactor(buffers);
 
-      // weighted cosine
-      double[][] diffArray = ScanAlignment.toIntensityMatrixWeighted(aligned,
-          weights.getIntensity(), weights.getMz());
-      double diffCosine = Similarity.COSINE.calc(diffArray);
+      // weighted cosine - unmatched signals are removed or matched to zero
+      double diffCosine = weightedCosine(buffers, weights, handleUnmatched);
 
       // composite dot product identity score
       // NIST search similar
       double composite = (queryN * diffCosine + overlap * relativeFactor) / (queryN + overlap);
 
       if (composite >= minCos) {
+        // aligned data points are only created for matches
+        List<DataPoint[]> aligned = handleUnmatched.handleUnmatched(
+            ScanAlignment.align(mzTol, library, query));
         return new SpectralSimilarity(name, composite, overlap, library, query, aligned);
       } else {
         return null;
@@ -118,50 +114,44 @@ public class CompositeCosineSpectralSimilarity extends SpectralSimilarityFunctio
   /**
    * sum of relative ratios of neighbours in both mass lists
    *
-   * @param aligned list of aligned signals DataPoint[library, query]
+   * @param buffers alignment of library (A) and query (B)
    */
-  private static double calcRelativeNeighbourFactor(List<DataPoint[]> aligned) {
-    // remove all unaligned signals
-    List<DataPoint[]> filtered = removeUnaligned(aligned);
-    // sort by mz
-    sortByMZ(filtered);
-
-    // overlapping within mass tolerance
-    int overlap = calcOverlap(aligned);
+  private static double calcRelativeNeighbourFactor(AlignmentBuffers buffers) {
+    // matched signals sorted by mz
+    final int overlap = buffers.sortMatchedByMinMz();
+    final double[] libraryIntensities = buffers.getIntensitiesA();
+    final double[] queryIntensities = buffers.getIntensitiesB();
 
     // sum of relative ratios of neighbours in both mass lists
     double factor = 0;
-    for (int i = 1; i < filtered.size(); i++) {
-      DataPoint[] match1 = filtered.get(i - 1);
-      DataPoint[] match2 = filtered.get(i);
-
-      // 0 is library
-      // 1 is query
-      double ratioLibrary = match2[0].getIntensity() / match1[0].getIntensity();
-      double ratioQuery = match2[1].getIntensity() / match1[1].getIntensity();
+    for (int i = 1; i < overlap; i++) {
+      final int lib1 = buffers.getSortedMatchedA(i - 1);
+      final int lib2 = buffers.getSortedMatchedA(i);
+
+      double ratioLibrary = libraryIntensities[lib2] / libraryIntensities[lib1];
+      double ratioQuery = queryIntensities[buffers.getMatchA(lib2)]
+                          / queryIntensities[buffers.getMatchA(lib1)];
       factor += Math.min(ratioLibrary, ratioQuery) / Math.max(ratioLibrary, ratioQuery);
     }
     // factor ranges from 0-1 * overlap
     return factor / (overlap);
   }
 
-  /**
-   * Sort aligned datapoints by their minimum mz values (ascending)
-   *
-   * @param filtered list of aligned signals DataPoint[library, query]
-   */
-  private static void sortByMZ(List<DataPoint[]> filtered) {
-    filtered.sort(Comparator.comparingDouble(CompositeCosineSpectralSimilarity::getMinMZ));
+  @Override
+  public @Nullable Weights getCosineWeights() {
+    return weights;
   }
 
-  /**
-   * Minimum mz of all aligned data points
-   *
-   * @param dp array of aligned data points
-   * @return minimum mz of aligned data points
-   */
-  private static double getMinMZ(DataPoint[] dp) {
-    return Arrays.stream(dp).filter(Objects::nonNull).mapToDouble(DataPoint::getMZ).min().orElse(0);
+  @Override
+  public boolean isScoreReachable(int maxOverlap, int queryN, double maxMatchedQueryNorm) {
+    // unmatched query signals are part of the query norm and limit the cosine
+    final double maxCosine = switch (handleUnmatched) {
+      case KEEP_ALL_AND_MATCH_TO_ZERO, KEEP_EXPERIMENTAL_SIGNALS -> maxMatchedQueryNorm;
+      case KEEP_LIBRARY_SIGNALS, REMOVE_ALL -> 1d;
+    };
+    // relative neighbour factor is at most 1 and the composite score increases with the overlap
+    final double maxComposite = (queryN * maxCosine + maxOverlap) / (queryN + maxOverlap);
+    return maxComposite >= minCos;
   }
 
   @Override
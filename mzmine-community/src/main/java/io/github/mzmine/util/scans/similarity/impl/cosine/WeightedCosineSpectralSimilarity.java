@@ -28,8 +28,7 @@ package io.github.mzmine.util.scans.similarity.impl.cosine;
 import io.github.mzmine.datamodel.DataPoint;
 import io.github.mzmine.parameters.ParameterSet;
 import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
-import io.github.mzmine.util.maths.similarity.Similarity;
-import io.github.mzmine.util.scans.ScanAlignment;
+import io.github.mzmine.util.scans.AlignmentBuffers;
 import io.github.mzmine.util.scans.similarity.HandleUnmatchedSignalOptions;
 import io.github.mzmine.util.scans.similarity.SpectralSimilarity;
 import io.github.mzmine.util.scans.similarity.SpectralSimilarityFunction;
@@ -72,20 +71,19 @@ public class WeightedCosineSpectralSimilarity extends SpectralSimilarityFunction
   @Override
   public SpectralSimilarity getSimilarity(MZTolerance mzTol, int minMatch, DataPoint[] library,
       DataPoint[] query) {
-    // align
-    List<DataPoint[]> aligned = alignDataPoints(mzTol, library, query);
-    // removes all signals which were not found in both masslists
-    aligned = handleUnmatched.handleUnmatched(aligned);
+    // align on primitive buffers
+    final AlignmentBuffers buffers = alignToBuffers(mzTol, library, query);
 
     // overlapping within mass tolerance
-    int overlap = calcOverlap(aligned);
+    int overlap = buffers.getOverlap();
 
     if (overlap >= minMatch) {
-      // weighted cosine
-      double[][] diffArray = ScanAlignment.toIntensityMatrixWeighted(aligned,
-          weights.getIntensity(), weights.getMz());
-      double diffCosine = Similarity.COSINE.calc(diffArray);
+      // weighted cosine - unmatched signals are removed or matched to zero
+      double diffCosine = weightedCosine(buffers, weights, handleUnmatched);
       if (diffCosine >= minCos) {
+        // aligned data points are only created for matches
+        List<DataPoint[]> aligned = handleUnmatched.handleUnmatched(
+            alignDataPoints(mzTol, library, query));
         return new SpectralSimilarity(getName(), diffCosine, overlap, library, query, aligned);
       } else {
         return null;
@@ -94,6 +92,20 @@ public class WeightedCosineSpectralSimilarity extends SpectralSimilarityFunction
     return null;
   }
 
+  @Override
+  public @Nullable Weights getCosineWeights() {
+    return weights;
+  }
+
+  @Override
+  public boolean isScoreReachable(int maxOverlap, int queryN, double maxMatchedQueryNorm) {
+    // unmatched query signals are part of the query norm and limit the cosine
+    return switch (handleUnmatched) {
+      case KEEP_ALL_AND_MATCH_TO_ZERO, KEEP_EXPERIMENTAL_SIGNALS -> maxMatchedQueryNorm >= minCos;
+      case KEEP_LIBRARY_SIGNALS, REMOVE_ALL -> true;
+    };
+  }
+
   @Override
   @NotNull
   public String getName() {
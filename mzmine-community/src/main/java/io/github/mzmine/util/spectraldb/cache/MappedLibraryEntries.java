@@ -0,0 +1,291 @@
+/*
+ * Copyright (c) 2004-2024 The mzmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.util.spectraldb.cache;
+
+import io.github.mzmine.util.ParsingUtils;
+import io.github.mzmine.util.io.JsonUtils;
+import io.github.mzmine.util.spectraldb.cache.SpectralLibraryCacheFormat.Layout;
+import io.github.mzmine.util.spectraldb.cache.SpectralLibraryCacheFormat.SourceInfo;
+import io.github.mzmine.util.spectraldb.entry.DBEntryField;
+import io.github.mzmine.util.spectraldb.entry.SpectralDBEntry;
+import io.github.mzmine.util.spectraldb.entry.SpectralLibrary;
+import io.github.mzmine.util.spectraldb.entry.SpectralLibraryEntry;
+import it.unimi.dsi.fastutil.floats.FloatArrayList;
+import java.io.File;
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.lang.ref.SoftReference;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Read-only entries of a memory mapped {@link SpectralLibraryCacheFormat} file. Entries are only
+ * created on first access and are softly referenced afterwards, so that the same instance is
+ * returned as long as it is in use. On little endian platforms the data points of the entries
+ * directly use the mapped file. The file is unmapped when this list and all entries are garbage
+ * collected.
+ */
+public final class MappedLibraryEntries extends AbstractList<SpectralLibraryEntry> implements
+    RandomAccess {
+
+  private static final Logger logger = Logger.getLogger(MappedLibraryEntries.class.getName());
+
+  private static final ValueLayout.OfInt INT = ValueLayout.JAVA_INT_UNALIGNED.withOrder(
+      ByteOrder.LITTLE_ENDIAN);
+  private static final ValueLayout.OfLong LONG = ValueLayout.JAVA_LONG_UNALIGNED.withOrder(
+      ByteOrder.LITTLE_ENDIAN);
+  private static final ValueLayout.OfDouble DOUBLE = ValueLayout.JAVA_DOUBLE_UNALIGNED.withOrder(
+      ByteOrder.LITTLE_ENDIAN);
+
+  private final File file;
+  private final MemorySegment data;
+  private final Layout layout;
+  private final boolean useSegments;
+  private final AtomicReferenceArray<SoftReference<SpectralLibraryEntry>> created;
+  private @Nullable SpectralLibrary library;
+
+  private MappedLibraryEntries(@NotNull File file, @NotNull MemorySegment data,
+      @NotNull Layout layout) {
+    this.file = file;
+    this.data = data;
+    this.layout = layout;
+    useSegments = ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN;
+    created = new AtomicReferenceArray<>(layout.numEntries());
+  }
+
+  /**
+   * Validates the header and maps the cache file. The file is only mapped if it matches the source
+   * file.
+   *
+   * @param file   the cache file
+   * @param source the current size and checksum of the source library file
+   * @return the entries or null if the cache file is outdated
+   * @throws IOException if the file is no valid cache file
+   */
+  static @Nullable MappedLibraryEntries open(@NotNull File file, @NotNull SourceInfo source)
+      throws IOException {
+    final ByteBuffer header = ByteBuffer.allocate(SpectralLibraryCacheFormat.HEADER_BYTES)
+        .order(ByteOrder.LITTLE_ENDIAN);
+    try (var channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      while (header.hasRemaining()) {
+        if (channel.read(header) == -1) {
+          throw new IOException("File " + file + " is truncated.");
+        }
+      }
+      header.flip();
+
+      final byte[] magic = new byte[SpectralLibraryCacheFormat.MAGIC.length];
+      header.get(magic);
+      if (!Arrays.equals(magic, SpectralLibraryCacheFormat.MAGIC)) {
+        throw new IOException("File " + file + " is not a spectral library cache file.");
+      }
+      final int version = header.getInt();
+      if (version != SpectralLibraryCacheFormat.VERSION) {
+        // written by another mzmine version
+        logger.fine(() -> "Spectral library cache %s has version %d, expected %d".formatted(file,
+            version, SpectralLibraryCacheFormat.VERSION));
+        return null;
+      }
+      final int numEntries = header.getInt();
+      final long sourceSize = header.getLong();
+      final long sourceChecksum = header.getLong();
+      if (sourceSize != source.size() || sourceChecksum != source.checksum()) {
+        return null;
+      }
+      final int numStrings = header.getInt();
+      final int numFieldRecords = header.getInt();
+      final int numPrecursors = header.getInt();
+      header.getInt(); // reserved
+      final long totalPeaks = header.getLong();
+      final long stringBytes = header.getLong();
+      if (numEntries < 0 || numStrings < 0 || numFieldRecords < 0 || numPrecursors < 0
+          || totalPeaks < 0 || stringBytes < 0) {
+        throw new IOException("File " + file + " has an invalid header.");
+      }
+
+      final Layout layout = new Layout(numEntries, numStrings, numFieldRecords, numPrecursors,
+          totalPeaks, stringBytes);
+      if (channel.size() < layout.fileSize()) {
+        throw new IOException("File " + file + " is truncated.");
+      }
+      // the mapping is released when the entries and their data are garbage collected
+      final MemorySegment data = channel.map(MapMode.READ_ONLY, 0, layout.fileSize(),
+          Arena.ofAuto());
+      return new MappedLibraryEntries(file, data, layout);
+    }
+  }
+
+  /**
+   * Set once after the library was created
+   */
+  void setLibrary(@NotNull SpectralLibrary library) {
+    this.library = library;
+  }
+
+  @Override
+  public SpectralLibraryEntry get(int index) {
+    Objects.checkIndex(index, size());
+    while (true) {
+      final SoftReference<SpectralLibraryEntry> ref = created.get(index);
+      final SpectralLibraryEntry existing = ref == null ? null : ref.get();
+      if (existing != null) {
+        return existing;
+      }
+      final SpectralLibraryEntry entry = createEntry(index);
+      // another thread may have created the entry in the meantime, keep only one instance
+      if (created.compareAndSet(index, ref, new SoftReference<>(entry))) {
+        return entry;
+      }
+    }
+  }
+
+  @Override
+  public int size() {
+    return layout.numEntries();
+  }
+
+  /**
+   * Reads the number of data points without creating the entry
+   */
+  public int getNumberOfDataPoints(int index) {
+    Objects.checkIndex(index, size());
+    return (int) (peakStart(index + 1) - peakStart(index));
+  }
+
+  /**
+   * Reads the m/z values without creating the entry
+   *
+   * @param dst the target array, a new array is created if it is too small
+   * @return the dst array or a new array with the m/z values
+   */
+  public double[] getMzValues(int index, double[] dst) {
+    final int n = getNumberOfDataPoints(index);
+    if (dst.length < n) {
+      dst = new double[n];
+    }
+    MemorySegment.copy(data, DOUBLE, layout.mzsOffset() + 8L * peakStart(index), dst, 0, n);
+    return dst;
+  }
+
+  /**
+   * @return the precursor m/z values of the precursor index in ascending order
+   */
+  public double[] getSortedPrecursorMzs() {
+    return data.asSlice(layout.precursorMzsOffset(), 8L * layout.numPrecursors()).toArray(DOUBLE);
+  }
+
+  /**
+   * @return the entry indices of the precursor index, same order as
+   * {@link #getSortedPrecursorMzs()}
+   */
+  public int[] getSortedPrecursorEntries() {
+    return data.asSlice(layout.precursorEntriesOffset(), 4L * layout.numPrecursors())
+        .toArray(INT);
+  }
+
+  private long peakStart(int index) {
+    return data.get(LONG, layout.peakStartsOffset() + 8L * index);
+  }
+
+  private SpectralLibraryEntry createEntry(int index) {
+    final long peakStart = peakStart(index);
+    final long peakEnd = peakStart(index + 1);
+    final MemorySegment mzs = data.asSlice(layout.mzsOffset() + 8L * peakStart,
+        8L * (peakEnd - peakStart));
+    final MemorySegment intensities = data.asSlice(layout.intensitiesOffset() + 8L * peakStart,
+        8L * (peakEnd - peakStart));
+
+    final Map<DBEntryField, Object> fields = readFields(index);
+    if (useSegments) {
+      return new SpectralDBEntry(mzs, intensities, fields, library);
+    }
+    return new SpectralDBEntry(null, mzs.toArray(DOUBLE), intensities.toArray(DOUBLE), fields,
+        library);
+  }
+
+  private Map<DBEntryField, Object> readFields(int index) {
+    final int start = data.get(INT, layout.fieldStartsOffset() + 4L * index);
+    final int end = data.get(INT, layout.fieldStartsOffset() + 4L * (index + 1));
+    final Map<DBEntryField, Object> fields = new HashMap<>();
+    for (int i = start; i < end; i++) {
+      final long offset =
+          layout.fieldRecordsOffset() + 4L * SpectralLibraryCacheFormat.FIELD_RECORD_INTS * i;
+      final String name = readString(data.get(INT, offset));
+      final int kind = data.get(INT, offset + 4);
+      final String value = readString(data.get(INT, offset + 8));
+      try {
+        final DBEntryField field = DBEntryField.valueOf(name);
+        fields.put(field, decodeValue(kind, value));
+      } catch (Exception e) {
+        logger.log(Level.WARNING,
+            "Cannot read field %s of entry %d in spectral library cache %s".formatted(name, index,
+                file), e);
+      }
+    }
+    return fields;
+  }
+
+  private static Object decodeValue(int kind, String value) {
+    return switch (kind) {
+      case SpectralLibraryCacheFormat.KIND_STRING -> value;
+      case SpectralLibraryCacheFormat.KIND_DOUBLE -> Double.parseDouble(value);
+      case SpectralLibraryCacheFormat.KIND_FLOAT -> Float.parseFloat(value);
+      case SpectralLibraryCacheFormat.KIND_INTEGER -> Integer.parseInt(value);
+      case SpectralLibraryCacheFormat.KIND_LONG -> Long.parseLong(value);
+      case SpectralLibraryCacheFormat.KIND_FLOAT_LIST -> value.isEmpty() ? new FloatArrayList()
+          : new FloatArrayList(ParsingUtils.stringToFloatArray(value, ","));
+      case SpectralLibraryCacheFormat.KIND_STRING_LIST -> JsonUtils.<List<String>>readValueOrThrow(
+          value);
+      default -> throw new IllegalArgumentException("Unknown value kind " + kind);
+    };
+  }
+
+  private String readString(int index) {
+    final long start = data.get(LONG, layout.stringStartsOffset() + 8L * index);
+    final long end = data.get(LONG, layout.stringStartsOffset() + 8L * (index + 1));
+    final byte[] bytes = data.asSlice(layout.stringDataOffset() + start, end - start)
+        .toArray(ValueLayout.JAVA_BYTE);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2004-2024 The mzmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.util.spectraldb.cache;
+
+import io.github.mzmine.util.spectraldb.cache.SpectralLibraryCacheFormat.SourceInfo;
+import io.github.mzmine.util.spectraldb.entry.SpectralLibrary;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.function.BooleanSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Compiled spectral libraries that are memory mapped instead of parsed. The cache is written to the
+ * cache directory after parsing a library file and is used on the next import of the same unchanged
+ * file. Caching is optional, see
+ * {@link io.github.mzmine.gui.preferences.MZminePreferences#spectralLibraryCache} and
+ * {@link SpectralLibraryCacheFormat}.
+ */
+public final class SpectralLibraryCache {
+
+  private static final Logger logger = Logger.getLogger(SpectralLibraryCache.class.getName());
+
+  private SpectralLibraryCache() {
+  }
+
+  /**
+   * @param source         the library file
+   * @param sourceInfo     the current size and checksum of the library file
+   * @param cacheDirectory the directory of the compiled libraries
+   * @return a library with lazily created entries or null if there is no valid cache
+   */
+  public static @Nullable SpectralLibrary load(@NotNull File source,
+      @NotNull SourceInfo sourceInfo, @NotNull File cacheDirectory) {
+    final File cache = SpectralLibraryCacheFormat.getCacheFile(cacheDirectory, source);
+    if (!cache.isFile()) {
+      return null;
+    }
+    try {
+      final MappedLibraryEntries entries = MappedLibraryEntries.open(cache, sourceInfo);
+      if (entries == null) {
+        logger.fine(() -> "Spectral library cache %s is outdated".formatted(cache));
+        return null;
+      }
+      final SpectralLibrary library = new SpectralLibrary(null, source, entries);
+      entries.setLibrary(library);
+      return library;
+    } catch (IOException | RuntimeException e) {
+      logger.log(Level.WARNING, "Cannot read spectral library cache " + cache, e);
+      return null;
+    }
+  }
+
+  /**
+   * Writes the cache to the cache directory. The file is written to a temporary file first and
+   * then moved.
+   *
+   * @param library        the parsed library
+   * @param sourceInfo     the size and checksum of the library file that was parsed
+   * @param cacheDirectory the directory of the compiled libraries, created if missing
+   * @return the cache file
+   * @throws IOException if a value cannot be cached or the file cannot be written
+   */
+  public static @NotNull File write(@NotNull SpectralLibrary library,
+      @NotNull SourceInfo sourceInfo, @NotNull File cacheDirectory,
+      @NotNull BooleanSupplier isCanceled) throws IOException {
+    final SpectralLibraryCacheWriter writer = new SpectralLibraryCacheWriter(library.getEntries(),
+        sourceInfo);
+
+    final File cache = SpectralLibraryCacheFormat.getCacheFile(cacheDirectory, library.getPath());
+    Files.createDirectories(cacheDirectory.toPath());
+
+    final Path temp = Files.createTempFile(cache.getParentFile().toPath(), cache.getName(),
+        ".tmp");
+    try {
+      try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(temp))) {
+        writer.write(out, isCanceled);
+      }
+      try {
+        Files.move(temp, cache.toPath(), StandardCopyOption.ATOMIC_MOVE,
+            StandardCopyOption.REPLACE_EXISTING);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(temp, cache.toPath(), StandardCopyOption.REPLACE_EXISTING);
+      }
+    } finally {
+      Files.deleteIfExists(temp);
+    }
+    return cache;
+  }
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) 2004-2024 The mzmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.util.spectraldb.cache;
+
+import io.github.mzmine.util.files.FileAndPathUtil;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Binary format of a compiled spectral library. The cache file is written next to the source
+ * library file (or to the mzmine user directory if the source directory is read-only) and is
+ * invalidated by the size and CRC32C checksum of the source file.
+ * <p>
+ * All values are little endian and all sections start at multiples of 8 bytes so that they can be
+ * accessed directly in a memory mapped file. The header is followed by these sections, their
+ * offsets are derived from the counts in the header, see {@link Layout}:
+ * <ol>
+ *   <li>long[numEntries + 1] start of the peaks of each entry</li>
+ *   <li>int[numEntries + 1] start of the field records of each entry</li>
+ *   <li>int[numFieldRecords * 3] field records: name string, value kind, value string</li>
+ *   <li>long[numStrings + 1] start of each string in the string data</li>
+ *   <li>the UTF-8 string data, each distinct string is stored once</li>
+ *   <li>double[totalPeaks] m/z values and double[totalPeaks] intensities of all entries</li>
+ *   <li>double[numPrecursors] sorted precursor m/z and int[numPrecursors] entry indices</li>
+ * </ol>
+ */
+public final class SpectralLibraryCacheFormat {
+
+  public static final byte[] MAGIC = "MZLIBC\0\0".getBytes(StandardCharsets.US_ASCII);
+  public static final int VERSION = 1;
+  public static final String FILE_SUFFIX = ".mzlibcache";
+
+  /**
+   * magic, version, numEntries, sourceSize, sourceChecksum, numStrings, numFieldRecords,
+   * numPrecursors, reserved, totalPeaks, stringBytes
+   */
+  public static final int HEADER_BYTES = 64;
+  public static final int FIELD_RECORD_INTS = 3;
+
+  // value kinds of the field records
+  public static final int KIND_STRING = 0;
+  public static final int KIND_DOUBLE = 1;
+  public static final int KIND_FLOAT = 2;
+  public static final int KIND_INTEGER = 3;
+  public static final int KIND_LONG = 4;
+  /**
+   * comma separated float values
+   */
+  public static final int KIND_FLOAT_LIST = 5;
+  /**
+   * json list of strings
+   */
+  public static final int KIND_STRING_LIST = 6;
+
+  private SpectralLibraryCacheFormat() {
+  }
+
+  public static long align8(long position) {
+    return (position + 7) & ~7L;
+  }
+
+  /**
+   * @param cacheDirectory the directory of all compiled libraries
+   * @return the cache file of the source library file
+   */
+  public static @NotNull File getCacheFile(@NotNull File cacheDirectory, @NotNull File source) {
+    final String name = FileAndPathUtil.safePathEncode(source.getAbsolutePath());
+    return new File(cacheDirectory, name + FILE_SUFFIX);
+  }
+
+  /**
+   * @return the default cache directory in the mzmine user directory
+   */
+  public static @NotNull File getDefaultCacheDirectory() {
+    return FileAndPathUtil.resolveInMzmineDir("library_cache");
+  }
+
+  /**
+   * Size and checksum of the source library file
+   */
+  public static @NotNull SourceInfo readSourceInfo(@NotNull File source) throws IOException {
+    final CRC32C crc = new CRC32C();
+    final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20);
+    long size = 0;
+    try (var channel = FileChannel.open(source.toPath(), StandardOpenOption.READ)) {
+      int read;
+      while ((read = channel.read(buffer)) != -1) {
+        size += read;
+        buffer.flip();
+        crc.update(buffer);
+        buffer.clear();
+      }
+    }
+    return new SourceInfo(size, crc.getValue());
+  }
+
+  /**
+   * @param size     file size in bytes
+   * @param checksum CRC32C of the file content
+   */
+  public record SourceInfo(long size, long checksum) {
+
+  }
+
+  /**
+   * Byte offsets of all sections, derived from the header counts
+   */
+  public record Layout(int numEntries, int numStrings, int numFieldRecords, int numPrecursors,
+                       long totalPeaks, long stringBytes) {
+
+    public long peakStartsOffset() {
+      return HEADER_BYTES;
+    }
+
+    public long fieldStartsOffset() {
+      return peakStartsOffset() + 8L * (numEntries + 1);
+    }
+
+    public long fieldRecordsOffset() {
+      return align8(fieldStartsOffset() + 4L * (numEntries + 1));
+    }
+
+    public long stringStartsOffset() {
+      return align8(fieldRecordsOffset() + 4L * FIELD_RECORD_INTS * numFieldRecords);
+    }
+
+    public long stringDataOffset() {
+      return stringStartsOffset() + 8L * (numStrings + 1);
+    }
+
+    public long mzsOffset() {
+      return align8(stringDataOffset() + stringBytes);
+    }
+
+    public long intensitiesOffset() {
+      return mzsOffset() + 8L * totalPeaks;
+    }
+
+    public long precursorMzsOffset() {
+      return intensitiesOffset() + 8L * totalPeaks;
+    }
+
+    public long precursorEntriesOffset() {
+      return precursorMzsOffset() + 8L * numPrecursors;
+    }
+
+    public long fileSize() {
+      return align8(precursorEntriesOffset() + 4L * numPrecursors);
+    }
+  }
+}
@@ -0,0 +1,304 @@
+/*
+ * Copyright (c) 2004-2024 The mzmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.util.spectraldb.cache;
+
+import io.github.mzmine.util.io.JsonUtils;
+import io.github.mzmine.util.spectraldb.cache.SpectralLibraryCacheFormat.Layout;
+import io.github.mzmine.util.spectraldb.cache.SpectralLibraryCacheFormat.SourceInfo;
+import io.github.mzmine.util.spectraldb.entry.DBEntryField;
+import io.github.mzmine.util.spectraldb.entry.SpectralLibraryEntry;
+import it.unimi.dsi.fastutil.floats.FloatArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.function.BooleanSupplier;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Writes the {@link SpectralLibraryCacheFormat}. The constructor collects the string table and
+ * field records of all entries and throws an {@link IOException} if a field value cannot be
+ * restored without loss.
+ */
+class SpectralLibraryCacheWriter {
+
+  private final List<SpectralLibraryEntry> entries;
+  private final SourceInfo source;
+  private final Object2IntOpenHashMap<String> stringIndex = new Object2IntOpenHashMap<>();
+  private final List<byte[]> strings = new ArrayList<>();
+  private final IntArrayList fieldRecords = new IntArrayList();
+  private final int[] fieldStarts;
+  private final long[] peakStarts;
+  private final double[] precursorMzs;
+  private final int[] precursorEntries;
+  private final Layout layout;
+
+  /**
+   * @param entries the library entries, need to be unchanged until written
+   * @param source  the source file info that invalidates the cache
+   */
+  SpectralLibraryCacheWriter(@NotNull List<SpectralLibraryEntry> entries,
+      @NotNull SourceInfo source) throws IOException {
+    this.entries = entries;
+    this.source = source;
+    stringIndex.defaultReturnValue(-1);
+
+    final int numEntries = entries.size();
+    fieldStarts = new int[numEntries + 1];
+    peakStarts = new long[numEntries + 1];
+    final List<Integer> withPrecursor = new ArrayList<>();
+    long stringBytes = 0;
+    for (int i = 0; i < numEntries; i++) {
+      final SpectralLibraryEntry entry = entries.get(i);
+      peakStarts[i + 1] = peakStarts[i] + entry.getNumberOfDataPoints();
+      for (Entry<DBEntryField, Object> field : entry.getFields().entrySet()) {
+        if (field.getValue() == null) {
+          continue;
+        }
+        final int kind = getKind(field.getKey(), field.getValue());
+        final int name = addString(field.getKey().name());
+        final int value = addString(encodeValue(field.getValue()));
+        fieldRecords.add(name);
+        fieldRecords.add(kind);
+        fieldRecords.add(value);
+      }
+      fieldStarts[i + 1] = fieldRecords.size() / SpectralLibraryCacheFormat.FIELD_RECORD_INTS;
+
+      final Double precursorMz = entry.getPrecursorMZ();
+      if (precursorMz != null && !precursorMz.isNaN()) {
+        withPrecursor.add(i);
+      }
+    }
+    for (byte[] string : strings) {
+      stringBytes += string.length;
+    }
+
+    // sorted by precursor m/z for binary search
+    withPrecursor.sort((a, b) -> Double.compare(entries.get(a).getPrecursorMZ(),
+        entries.get(b).getPrecursorMZ()));
+    precursorMzs = new double[withPrecursor.size()];
+    precursorEntries = new int[withPrecursor.size()];
+    for (int i = 0; i < precursorMzs.length; i++) {
+      precursorEntries[i] = withPrecursor.get(i);
+      precursorMzs[i] = entries.get(precursorEntries[i]).getPrecursorMZ();
+    }
+
+    layout = new Layout(numEntries, strings.size(),
+        fieldRecords.size() / SpectralLibraryCacheFormat.FIELD_RECORD_INTS, precursorMzs.length,
+        peakStarts[numEntries], stringBytes);
+  }
+
+  /**
+   * @throws IOException if the value cannot be restored to an equal object
+   */
+  private static int getKind(DBEntryField field, Object value) throws IOException {
+    return switch (value) {
+      case String _ -> SpectralLibraryCacheFormat.KIND_STRING;
+      case Double _ -> SpectralLibraryCacheFormat.KIND_DOUBLE;
+      case Float _ -> SpectralLibraryCacheFormat.KIND_FLOAT;
+      case Integer _ -> SpectralLibraryCacheFormat.KIND_INTEGER;
+      case Long _ -> SpectralLibraryCacheFormat.KIND_LONG;
+      case FloatArrayList _ -> SpectralLibraryCacheFormat.KIND_FLOAT_LIST;
+      case List<?> list when list.stream().allMatch(String.class::isInstance) ->
+          SpectralLibraryCacheFormat.KIND_STRING_LIST;
+      default -> throw new IOException(
+          "Cannot cache value of type %s for field %s".formatted(value.getClass().getName(),
+              field.name()));
+    };
+  }
+
+  private static String encodeValue(Object value) {
+    return switch (value) {
+      case FloatArrayList floats -> {
+        final StringBuilder b = new StringBuilder();
+        for (int i = 0; i < floats.size(); i++) {
+          if (i > 0) {
+            b.append(',');
+          }
+          b.append(floats.getFloat(i));
+        }
+        yield b.toString();
+      }
+      case List<?> list -> JsonUtils.writeStringOrThrow(list);
+      // shortest representation that is parsed to the same value
+      default -> String.valueOf(value);
+    };
+  }
+
+  private int addString(String value) {
+    int index = stringIndex.getInt(value);
+    if (index == -1) {
+      index = strings.size();
+      strings.add(value.getBytes(StandardCharsets.UTF_8));
+      stringIndex.put(value, index);
+    }
+    return index;
+  }
+
+  void write(@NotNull OutputStream out, @NotNull BooleanSupplier isCanceled) throws IOException {
+    final LittleEndianOutput output = new LittleEndianOutput(out);
+    output.writeBytes(SpectralLibraryCacheFormat.MAGIC);
+    output.writeInt(SpectralLibraryCacheFormat.VERSION);
+    output.writeInt(layout.numEntries());
+    output.writeLong(source.size());
+    output.writeLong(source.checksum());
+    output.writeInt(layout.numStrings());
+    output.writeInt(layout.numFieldRecords());
+    output.writeInt(layout.numPrecursors());
+    output.writeInt(0);
+    output.writeLong(layout.totalPeaks());
+    output.writeLong(layout.stringBytes());
+    output.checkPosition(layout.peakStartsOffset());
+
+    for (long start : peakStarts) {
+      output.writeLong(start);
+    }
+    output.checkPosition(layout.fieldStartsOffset());
+    for (int start : fieldStarts) {
+      output.writeInt(start);
+    }
+    output.pad8();
+    output.checkPosition(layout.fieldRecordsOffset());
+    for (int i = 0; i < fieldRecords.size(); i++) {
+      output.writeInt(fieldRecords.getInt(i));
+    }
+    output.pad8();
+
+    output.checkPosition(layout.stringStartsOffset());
+    long stringStart = 0;
+    output.writeLong(stringStart);
+    for (byte[] string : strings) {
+      stringStart += string.length;
+      output.writeLong(stringStart);
+    }
+    for (byte[] string : strings) {
+      output.writeBytes(string);
+    }
+    output.pad8();
+
+    output.checkPosition(layout.mzsOffset());
+    for (SpectralLibraryEntry entry : entries) {
+      if (isCanceled.getAsBoolean()) {
+        throw new IOException("Canceled writing of spectral library cache");
+      }
+      for (int i = 0; i < entry.getNumberOfDataPoints(); i++) {
+        output.writeDouble(entry.getMzValue(i));
+      }
+    }
+    for (SpectralLibraryEntry entry : entries) {
+      for (int i = 0; i < entry.getNumberOfDataPoints(); i++) {
+        output.writeDouble(entry.getIntensityValue(i));
+      }
+    }
+
+    output.checkPosition(layout.precursorMzsOffset());
+    for (double mz : precursorMzs) {
+      output.writeDouble(mz);
+    }
+    for (int entry : precursorEntries) {
+      output.writeInt(entry);
+    }
+    output.pad8();
+    output.checkPosition(layout.fileSize());
+    output.flush();
+  }
+
+  /**
+   * Little endian output with position tracking for alignment and section offset checks
+   */
+  private static class LittleEndianOutput {
+
+    private final OutputStream out;
+    private final ByteBuffer buffer = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+    private long position = 0;
+
+    private LittleEndianOutput(OutputStream out) {
+      this.out = out;
+    }
+
+    private void ensure(int bytes) throws IOException {
+      if (buffer.remaining() < bytes) {
+        flushBuffer();
+      }
+    }
+
+    void writeInt(int value) throws IOException {
+      ensure(4);
+      buffer.putInt(value);
+      position += 4;
+    }
+
+    void writeLong(long value) throws IOException {
+      ensure(8);
+      buffer.putLong(value);
+      position += 8;
+    }
+
+    void writeDouble(double value) throws IOException {
+      ensure(8);
+      buffer.putDouble(value);
+      position += 8;
+    }
+
+    void writeBytes(byte[] bytes) throws IOException {
+      flushBuffer();
+      out.write(bytes);
+      position += bytes.length;
+    }
+
+    void pad8() throws IOException {
+      while ((position & 7) != 0) {
+        ensure(1);
+        buffer.put((byte) 0);
+        position++;
+      }
+    }
+
+    void checkPosition(long expected) {
+      if (position != expected) {
+        throw new IllegalStateException(
+            "Section offset does not match. Position %d, expected %d".formatted(position,
+                expected));
+      }
+    }
+
+    private void flushBuffer() throws IOException {
+      out.write(buffer.array(), 0, buffer.position());
+      buffer.clear();
+    }
+
+    void flush() throws IOException {
+      flushBuffer();
+      out.flush();
+    }
+  }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright (c) 2004-2024 The mzmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.util.spectraldb.entry;
+
+import com.google.common.collect.Range;
+import io.github.mzmine.util.collections.BinarySearch;
+import io.github.mzmine.util.collections.IndexRange;
+import io.github.mzmine.util.spectraldb.entry.SpectralLibrary.PrecursorMzIndex;
+import it.unimi.dsi.fastutil.doubles.DoubleArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Read-only view on the entries of multiple spectral libraries. Only the library and entry indices
+ * are stored, entries are retrieved on access. This way the entries of compiled libraries are only
+ * created when needed, e.g., for candidates of spectral library matching. The number of data points
+ * and the m/z values are read without creating entries.
+ */
+public final class CombinedLibraryEntries extends AbstractList<SpectralLibraryEntry> implements
+    RandomAccess {
+
+  private final @NotNull List<SpectralLibrary> libraries;
+  private final int[] libraryIndices;
+  private final int[] entryIndices;
+  // ascending precursor m/z or null if not sorted by precursor m/z
+  private final double @Nullable [] precursorMzs;
+
+  private CombinedLibraryEntries(@NotNull List<SpectralLibrary> libraries, int[] libraryIndices,
+      int[] entryIndices, double @Nullable [] precursorMzs) {
+    this.libraries = libraries;
+    this.libraryIndices = libraryIndices;
+    this.entryIndices = entryIndices;
+    this.precursorMzs = precursorMzs;
+  }
+
+  /**
+   * All entries in library order
+   *
+   * @param minDataPoints only entries with at least this number of data points
+   */
+  public static @NotNull CombinedLibraryEntries of(@NotNull List<SpectralLibrary> libraries,
+      int minDataPoints) {
+    final IntArrayList libraryIndices = new IntArrayList();
+    final IntArrayList entryIndices = new IntArrayList();
+    for (int lib = 0; lib < libraries.size(); lib++) {
+      final SpectralLibrary library = libraries.get(lib);
+      for (int e = 0; e < library.size(); e++) {
+        if (library.getNumberOfDataPoints(e) >= minDataPoints) {
+          libraryIndices.add(lib);
+          entryIndices.add(e);
+        }
+      }
+    }
+    return new CombinedLibraryEntries(List.copyOf(libraries), libraryIndices.toIntArray(),
+        entryIndices.toIntArray(), null);
+  }
+
+  /**
+   * All entries with precursor m/z sorted by precursor m/z. Uses the precursor m/z index of
+   * compiled libraries. Entries with equal precursor m/z are in library order.
+   *
+   * @param minDataPoints only entries with at least this number of data points
+   */
+  public static @NotNull CombinedLibraryEntries sortedByPrecursorMz(
+      @NotNull List<SpectralLibrary> libraries, int minDataPoints) {
+    final IntArrayList libraryIndices = new IntArrayList();
+    final IntArrayList entryIndices = new IntArrayList();
+    final DoubleArrayList mzs = new DoubleArrayList();
+    for (int lib = 0; lib < libraries.size(); lib++) {
+      final SpectralLibrary library = libraries.get(lib);
+      final PrecursorMzIndex index = library.getPrecursorMzIndex();
+      for (int i = 0; i < index.entries().length; i++) {
+        final int e = index.entries()[i];
+        if (library.getNumberOfDataPoints(e) >= minDataPoints) {
+          libraryIndices.add(lib);
+          entryIndices.add(e);
+          mzs.add(index.precursorMzs()[i]);
+        }
+      }
+    }
+
+    // each library is sorted already, merge sort keeps the library order of equal values
+    final double[] unsortedMzs = mzs.toDoubleArray();
+    final int[] order = new int[unsortedMzs.length];
+    for (int i = 0; i < order.length; i++) {
+      order[i] = i;
+    }
+    IntArrays.mergeSort(order, (a, b) -> Double.compare(unsortedMzs[a], unsortedMzs[b]));
+
+    final int[] sortedLibraries = new int[order.length];
+    final int[] sortedEntries = new int[order.length];
+    final double[] sortedMzs = new double[order.length];
+    for (int i = 0; i < order.length; i++) {
+      sortedLibraries[i] = libraryIndices.getInt(order[i]);
+      sortedEntries[i] = entryIndices.getInt(order[i]);
+      sortedMzs[i] = unsortedMzs[order[i]];
+    }
+    return new CombinedLibraryEntries(List.copyOf(libraries), sortedLibraries, sortedEntries,
+        sortedMzs);
+  }
+
+  @Override
+  public SpectralLibraryEntry get(int index) {
+    return libraries.get(libraryIndices[index]).getEntry(entryIndices[index]);
+  }
+
+  @Override
+  public int size() {
+    return entryIndices.length;
+  }
+
+  /**
+   * Does not create the entry of compiled libraries
+   */
+  public int getNumberOfDataPoints(int index) {
+    return libraries.get(libraryIndices[index]).getNumberOfDataPoints(entryIndices[index]);
+  }
+
+  /**
+   * Does not create the entry of compiled libraries
+   *
+   * @param dst the target array, a new array is created if it is too small
+   * @return the dst array or a new array with the m/z values of the entry
+   */
+  public double[] getMzValues(int index, double[] dst) {
+    return libraries.get(libraryIndices[index]).getMzValues(entryIndices[index], dst);
+  }
+
+  public boolean isSortedByPrecursorMz() {
+    return precursorMzs != null;
+  }
+
+  /**
+   * Binary search on the precursor m/z values without creating entries
+   *
+   * @return the index range of all entries within the precursor m/z range
+   * @throws IllegalStateException if the entries are not sorted by precursor m/z
+   */
+  public @NotNull IndexRange indexRangeOfPrecursorMz(@NotNull Range<Double> mzRange) {
+    if (precursorMzs == null) {
+      throw new IllegalStateException("Entries are not sorted by precursor m/z");
+    }
+    return BinarySearch.indexRange(precursorMzs, mzRange);
+  }
+}
@@ -32,6 +32,7 @@ import io.github.mzmine.datamodel.structures.StructureParser;
 import io.github.mzmine.modules.io.projectload.version_3_0.CONST;
 import io.github.mzmine.util.MemoryMapStorage;
 import io.github.mzmine.util.ParsingUtils;
+import java.lang.foreign.MemorySegment;
 import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.Map;
@@ -68,6 +69,22 @@ public class SpectralDBEntry extends SimpleMassList implements SpectralLibraryEn
     this.library = library;
   }
 
+  /**
+   * Uses the stored values directly, e.g., segments of a memory mapped library cache
+   *
+   * @param mzValues        sorted by m/z in native byte order
+   * @param intensityValues the intensity values in native byte order
+   */
+  public SpectralDBEntry(@NotNull MemorySegment mzValues, @NotNull MemorySegment intensityValues,
+      @Nullable Map<DBEntryField, Object> fields, @Nullable SpectralLibrary library) {
+    super(mzValues, intensityValues);
+    this.fields = new HashMap<>();
+    if (fields != null) {
+      this.fields.putAll(fields);
+    }
+    this.library = library;
+  }
+
   public SpectralDBEntry(@Nullable MemoryMapStorage storage, @NotNull double[] mzValues,
       @NotNull double[] intensityValues, @Nullable Map<DBEntryField, Object> fields) {
     this(storage, mzValues, intensityValues, fields, null);
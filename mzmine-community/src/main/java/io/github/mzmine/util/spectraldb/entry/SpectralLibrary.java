@@ -27,6 +27,10 @@ package io.github.mzmine.util.spectraldb.entry;
 
 import io.github.mzmine.datamodel.features.types.DataType;
 import io.github.mzmine.util.MemoryMapStorage;
+import io.github.mzmine.util.spectraldb.cache.MappedLibraryEntries;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import it.unimi.dsi.fastutil.ints.IntList;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -49,7 +53,7 @@ public class SpectralLibrary {
   private final @NotNull String name;
   private final @NotNull File path;
   // spectra
-  private final @NotNull ArrayList<SpectralLibraryEntry> entries = new ArrayList<>(1024);
+  private final @NotNull List<SpectralLibraryEntry> entries;
 
   // internals
   @Nullable
@@ -62,9 +66,24 @@ public class SpectralLibrary {
 
   public SpectralLibrary(@Nullable MemoryMapStorage storage, @NotNull String name,
       @NotNull File path) {
+    this(storage, name, path, new ArrayList<>(1024));
+  }
+
+  /**
+   * Uses the entries list directly, e.g., the read-only {@link MappedLibraryEntries} of a compiled
+   * library
+   */
+  public SpectralLibrary(@Nullable MemoryMapStorage storage, @NotNull File path,
+      @NotNull List<SpectralLibraryEntry> entries) {
+    this(storage, path.getName(), path, entries);
+  }
+
+  private SpectralLibrary(@Nullable MemoryMapStorage storage, @NotNull String name,
+      @NotNull File path, @NotNull List<SpectralLibraryEntry> entries) {
     this.storage = storage;
     this.path = path;
     this.name = name;
+    this.entries = entries;
   }
 
   @NotNull
@@ -82,7 +101,9 @@ public class SpectralLibrary {
   }
 
   public void trim() {
-    entries.trimToSize();
+    if (entries instanceof ArrayList<SpectralLibraryEntry> list) {
+      list.trimToSize();
+    }
   }
 
   public void removeif(Predicate<SpectralLibraryEntry> filter) {
@@ -137,4 +158,72 @@ public class SpectralLibrary {
   public Stream<SpectralLibraryEntry> stream() {
     return getEntries().stream();
   }
+
+  /**
+   * Does not create the entry of compiled libraries
+   */
+  public int getNumberOfDataPoints(int index) {
+    if (entries instanceof MappedLibraryEntries mapped) {
+      return mapped.getNumberOfDataPoints(index);
+    }
+    return entries.get(index).getNumberOfDataPoints();
+  }
+
+  /**
+   * Does not create the entry of compiled libraries
+   *
+   * @param dst the target array, a new array is created if it is too small
+   * @return the dst array or a new array with the m/z values of the entry
+   */
+  public double[] getMzValues(int index, double[] dst) {
+    if (entries instanceof MappedLibraryEntries mapped) {
+      return mapped.getMzValues(index, dst);
+    }
+    return entries.get(index).getMzValues(dst);
+  }
+
+  /**
+   * Uses the precursor m/z index of compiled libraries and sorts all entries otherwise. Entries
+   * with equal precursor m/z keep their order.
+   *
+   * @return the indices of all entries with precursor m/z, sorted by precursor m/z
+   */
+  @NotNull
+  public PrecursorMzIndex getPrecursorMzIndex() {
+    if (entries instanceof MappedLibraryEntries mapped) {
+      return new PrecursorMzIndex(mapped.getSortedPrecursorEntries(),
+          mapped.getSortedPrecursorMzs());
+    }
+    final double[] precursorMzs = new double[entries.size()];
+    final IntList withPrecursor = new IntArrayList();
+    for (int i = 0; i < entries.size(); i++) {
+      final Double mz = entries.get(i).getPrecursorMZ();
+      if (mz != null && !mz.isNaN()) {
+        precursorMzs[i] = mz;
+        withPrecursor.add(i);
+      }
+    }
+    final int[] sorted = withPrecursor.toIntArray();
+    IntArrays.mergeSort(sorted, (a, b) -> Double.compare(precursorMzs[a], precursorMzs[b]));
+    final double[] sortedMzs = new double[sorted.length];
+    for (int i = 0; i < sorted.length; i++) {
+      sortedMzs[i] = precursorMzs[sorted[i]];
+    }
+    return new PrecursorMzIndex(sorted, sortedMzs);
+  }
+
+  /**
+   * @return true if the entries are read from a compiled library cache
+   */
+  public boolean isCompiled() {
+    return entries instanceof MappedLibraryEntries;
+  }
+
+  /**
+   * @param entries      entry indices sorted by precursor m/z
+   * @param precursorMzs precursor m/z of the entries in ascending order
+   */
+  public record PrecursorMzIndex(int[] entries, double[] precursorMzs) {
+
+  }
 }
@@ -0,0 +1,223 @@
+/*
+ * Copyright (c) 2004-2024 The mzmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package io.github.mzmine.datamodel.features;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.github.mzmine.datamodel.features.types.DataType;
+import io.github.mzmine.datamodel.features.types.DataTypes;
+import io.github.mzmine.datamodel.features.types.annotations.CommentType;
+import io.github.mzmine.datamodel.features.types.numbers.ChargeType;
+import io.github.mzmine.datamodel.features.types.numbers.HeightType;
+import io.github.mzmine.datamodel.features.types.numbers.IDType;
+import io.github.mzmine.datamodel.features.types.numbers.MZType;
+import io.github.mzmine.datamodel.features.types.numbers.RTType;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Set;
+import javafx.collections.MapChangeListener;
+import org.junit.jupiter.api.Test;
+
+class ColumnarDataMapTest {
+
+  private static final DataType mz = DataTypes.get(MZType.class);
+  private static final DataType rt = DataTypes.get(RTType.class);
+  private static final DataType height = DataTypes.get(HeightType.class);
+  private static final DataType charge = DataTypes.get(ChargeType.class);
+  private static final DataType comment = DataTypes.get(CommentType.class);
+  private static final DataType id = DataTypes.get(IDType.class);
+
+  @Test
+  void testColumnarAndMapValues() {
+    final List<DataType> addedTypes = new ArrayList<>();
+    final ColumnarDataMap map = new ColumnarDataMap(new ModularDataColumns(), addedTypes::add);
+
+    assertTrue(map.isEmpty());
+    assertNull(map.put(mz, 200.1234));
+    assertNull(map.put(rt, null));
+    assertNull(map.put(charge, 2));
+    assertNull(map.put(comment, "text"));
+
+    assertEquals(200.1234, map.get(mz));
+    assertTrue(map.containsKey(rt));
+    assertNull(map.get(rt));
+    assertFalse(map.containsKey(height));
+    assertEquals(2, map.get(charge));
+    assertEquals("text", map.get(comment));
+    assertEquals(4, map.size());
+    assertEquals(List.of(mz, rt, charge, comment), addedTypes);
+
+    // same content as a plain map
+    assertEquals(new HashMap<>(map), map);
+
+    assertEquals(2, map.remove(charge));
+    assertFalse(map.containsKey(charge));
+    assertEquals(3, map.size());
+  }
+
+  @Test
+  void testValueOfOtherClassFallsBackToMap() {
+    final ColumnarDataMap map = new ColumnarDataMap(new ModularDataColumns(), _ -> {
+    });
+    // height is a float type
+    map.put(height, 5d);
+    assertEquals(5d, map.get(height));
+    assertEquals(5d, map.put(height, 6f));
+    assertEquals(6f, map.get(height));
+    assertEquals(1, map.size());
+  }
+
+  @Test
+  void testChangeEvents() {
+    final ColumnarDataMap map = new ColumnarDataMap(new ModularDataColumns(), _ -> {
+    });
+    final List<String> events = new ArrayList<>();
+    map.addListener((MapChangeListener<DataType, Object>) change -> events.add(
+        "%s %b %b %s %s".formatted(change.getKey().getUniqueID(), change.wasAdded(),
+            change.wasRemoved(), change.getValueRemoved(), change.getValueAdded())));
+
+    map.put(rt, 1.5f);
+    // no event for equal value
+    map.put(rt, 1.5f);
+    map.put(rt, 2.5f);
+    map.remove(rt);
+    map.remove(rt);
+
+    final String id = rt.getUniqueID();
+    assertEquals(List.of(id + " true false null 1.5", id + " true true 1.5 2.5",
+        id + " false true 2.5 null"), events);
+  }
+
+  @Test
+  void testManySlots() {
+    final ModularDataColumns columns = new ModularDataColumns();
+    final DataType idType = DataTypes.get(IDType.class);
+    final List<ColumnarDataMap> maps = new ArrayList<>();
+    for (int i = 0; i < 10_000; i++) {
+      final ColumnarDataMap map = new ColumnarDataMap(columns, _ -> {
+      });
+      map.put(idType, i);
+      maps.add(map);
+    }
+    assertEquals(10_000, columns.getNumSlots());
+    for (int i = 0; i < maps.size(); i++) {
+      assertEquals(i, maps.get(i).get(idType));
+    }
+  }
+
+  @Test
+  void testReleasedSlotIsReused() {
+    final ModularDataColumns columns = new ModularDataColumns();
+    final ColumnarDataMap first = new ColumnarDataMap(columns, _ -> {
+    });
+    first.put(mz, 100d);
+    first.put(charge, 1);
+    final ColumnarDataMap second = new ColumnarDataMap(columns, _ -> {
+    });
+    second.put(mz, 200d);
+    assertEquals(2, columns.getNumUsedSlots());
+
+    // the owner is removed, its values move to its map
+    first.releaseColumns();
+    assertEquals(1, columns.getNumUsedSlots());
+    // releasing again has no effect
+    first.releaseColumns();
+    assertFalse(columns.releaseSlot(0));
+    assertEquals(1, columns.getNumUsedSlots());
+
+    final ColumnarDataMap reused = new ColumnarDataMap(columns, _ -> {
+    });
+    assertEquals(2, columns.getNumSlots());
+    assertEquals(2, columns.getNumUsedSlots());
+    assertTrue(reused.isEmpty());
+    assertFalse(reused.containsKey(mz));
+    assertEquals(200d, second.get(mz));
+
+    // the released map keeps its values and does not change the reused slot
+    assertEquals(100d, first.get(mz));
+    assertEquals(1, first.get(charge));
+    assertEquals(2, first.size());
+    first.put(mz, 300d);
+    assertEquals(300d, first.get(mz));
+    assertFalse(reused.containsKey(mz));
+    reused.put(mz, 400d);
+    assertEquals(300d, first.get(mz));
+    assertEquals(400d, reused.get(mz));
+  }
+
+  @Test
+  void testRemovedRowsReleaseSlots() {
+    final ModularFeatureList flist = new ModularFeatureList("flist", null, List.of());
+    final List<ModularFeatureListRow> rows = new ArrayList<>();
+    for (int i = 0; i < 4; i++) {
+      final ModularFeatureListRow row = new ModularFeatureListRow(flist, i);
+      row.set(MZType.class, 100d + i);
+      flist.addRow(row);
+      rows.add(row);
+    }
+    final ModularDataColumns columns = flist.getRowColumns();
+    assertEquals(4, columns.getNumUsedSlots());
+
+    flist.removeRow(rows.get(1));
+    flist.removeRows(Set.of(rows.get(2)));
+    assertEquals(2, columns.getNumUsedSlots());
+    // removed rows keep their values
+    assertEquals(101d, rows.get(1).get(mz));
+    assertEquals(2, rows.get(2).get(id));
+
+    // rows that stay in the list keep their slots
+    flist.setRows(rows.get(3), rows.get(0));
+    assertEquals(2, columns.getNumUsedSlots());
+    flist.setRows(rows.get(0));
+    assertEquals(1, columns.getNumUsedSlots());
+    assertEquals(103d, rows.get(3).get(mz));
+
+    final ModularFeatureListRow added = new ModularFeatureListRow(flist, 4);
+    assertEquals(4, columns.getNumSlots());
+    assertEquals(4, added.get(id));
+    assertEquals(100d, rows.get(0).get(mz));
+  }
+
+  @Test
+  void testIntegerSentinelsFallBackToMap() {
+    final ColumnarDataMap map = new ColumnarDataMap(new ModularDataColumns(), _ -> {
+    });
+    map.put(charge, Integer.MIN_VALUE);
+    map.put(DataTypes.get(IDType.class), Integer.MIN_VALUE + 1);
+    assertEquals(Integer.MIN_VALUE, map.get(charge));
+    assertEquals(Integer.MIN_VALUE + 1, map.get(DataTypes.get(IDType.class)));
+    assertEquals(2, map.size());
+
+    map.put(charge, 3);
+    assertEquals(3, map.get(charge));
+    assertEquals(2, map.size());
+  }
+}
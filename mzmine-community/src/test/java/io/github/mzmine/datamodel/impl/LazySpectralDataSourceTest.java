@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.datamodel.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import io.github.mzmine.modules.io.import_rawdata_all.spectral_processor.SimpleSpectralArrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+
+class LazySpectralDataSourceTest {
+
+  private static class CountingSource extends LazySpectralDataSource {
+
+    final AtomicInteger decoded = new AtomicInteger();
+
+    CountingSource(long maxCachedDataPoints) {
+      super(maxCachedDataPoints);
+    }
+
+    @Override
+    protected @NotNull SimpleSpectralArrays decodeSpectrum(int index) {
+      decoded.incrementAndGet();
+      // index + 1 data points
+      final double[] mzs = new double[index + 1];
+      for (int i = 0; i < mzs.length; i++) {
+        mzs[i] = 100 * index + i;
+      }
+      return new SimpleSpectralArrays(mzs, mzs.clone());
+    }
+  }
+
+  @Test
+  void testCachedSpectraAreDecodedOnce() {
+    final CountingSource source = new CountingSource(100);
+    final SimpleSpectralArrays first = source.getSpectrum(3);
+    assertSame(first, source.getSpectrum(3));
+    assertEquals(1, source.decoded.get());
+    assertEquals(300d, first.mzs()[0]);
+  }
+
+  @Test
+  void testLeastRecentlyUsedEviction() {
+    // 5 data points: spectra 0 (1 dp), 1 (2 dp) and 2 (3 dp) do not fit at once
+    final CountingSource source = new CountingSource(5);
+    source.getSpectrum(0);
+    source.getSpectrum(1);
+    // access 0 so that 1 is the least recently used
+    source.getSpectrum(0);
+    source.getSpectrum(2);
+    assertEquals(2, source.getCachedSpectra());
+    assertEquals(3, source.decoded.get());
+
+    source.getSpectrum(0);
+    assertEquals(3, source.decoded.get());
+    source.getSpectrum(1);
+    assertEquals(4, source.decoded.get());
+  }
+
+  @Test
+  void testLargeSpectrumIsAlwaysCached() {
+    final CountingSource source = new CountingSource(1);
+    source.getSpectrum(10);
+    source.getSpectrum(10);
+    assertEquals(1, source.getCachedSpectra());
+    assertEquals(1, source.decoded.get());
+  }
+}
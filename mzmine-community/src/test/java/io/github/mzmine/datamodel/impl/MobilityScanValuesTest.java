@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2004-2024 The mzmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.datamodel.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+
+import io.github.mzmine.datamodel.impl.MobilityScanValues.DoubleValues;
+import io.github.mzmine.datamodel.impl.MobilityScanValues.FixedPointValues;
+import org.junit.jupiter.api.Test;
+
+class MobilityScanValuesTest {
+
+  private static final double[] mzs = {1221.990637, 118.086255, 622.028963, 922.009798,
+      118.086255, 1521.971475};
+
+  @Test
+  void testFixedPointWithinPrecision() {
+    final double precision = 0.00001;
+    final MobilityScanValues values = MobilityScanValues.ofFixedPoint(null, mzs, precision);
+    assertInstanceOf(FixedPointValues.class, values);
+    assertEquals(mzs.length, values.size());
+
+    final double[] decoded = new double[4];
+    values.copyTo(2, 6, decoded);
+    for (int i = 0; i < mzs.length; i++) {
+      assertEquals(mzs[i], values.get(i), precision / 2);
+    }
+    for (int i = 0; i < decoded.length; i++) {
+      assertEquals(mzs[i + 2], decoded[i], precision / 2);
+    }
+  }
+
+  @Test
+  void testFixedPointFallsBackToDoubles() {
+    final MobilityScanValues values = MobilityScanValues.ofFixedPoint(null,
+        new double[]{0, 1E6}, 0.00001);
+    assertInstanceOf(DoubleValues.class, values);
+    assertEquals(1E6, values.get(1));
+  }
+
+  @Test
+  void testFloatIntensities() {
+    final double[] intensities = {0, 12, 1.5E7, 33.25};
+    final MobilityScanValues values = MobilityScanValues.ofFloats(null, intensities);
+    final double[] decoded = new double[intensities.length];
+    values.copyTo(0, intensities.length, decoded);
+    for (int i = 0; i < intensities.length; i++) {
+      assertEquals(intensities[i], decoded[i], intensities[i] * 1E-7);
+    }
+  }
+}
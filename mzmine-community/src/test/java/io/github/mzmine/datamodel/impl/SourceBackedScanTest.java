@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2004-2024 The mzmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.datamodel.impl;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import io.github.mzmine.datamodel.MassSpectrumType;
+import io.github.mzmine.datamodel.PolarityType;
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.Scan;
+import io.github.mzmine.datamodel.impl.SourceBackedScan.DataSummary;
+import io.github.mzmine.modules.io.import_rawdata_all.spectral_processor.SimpleSpectralArrays;
+import io.github.mzmine.project.impl.RawDataFileImpl;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+
+class SourceBackedScanTest {
+
+  private static final double[] MZS = {100.1, 150.2, 200.3, 250.4, 300.5};
+  private static final double[] INTENSITIES = {10d, 500d, 20d, 1000d, 5d};
+
+  private final RawDataFile file = new RawDataFileImpl("file", null, null);
+
+  private static class CountingSource extends LazySpectralDataSource {
+
+    final AtomicInteger lookups = new AtomicInteger();
+
+    @Override
+    protected @NotNull SimpleSpectralArrays decodeSpectrum(int index) {
+      return new SimpleSpectralArrays(MZS.clone(), INTENSITIES.clone());
+    }
+
+    @Override
+    public @NotNull SimpleSpectralArrays getSpectrum(int index) {
+      lookups.incrementAndGet();
+      return super.getSpectrum(index);
+    }
+  }
+
+  private SourceBackedScan createScan(LazySpectralDataSource source) {
+    final DataSummary summary = DataSummary.of(new SimpleSpectralArrays(MZS, INTENSITIES));
+    return new SourceBackedScan(file, 1, 1, 0.5f, null, MassSpectrumType.CENTROIDED,
+        PolarityType.POSITIVE, "", null, null, source, 0, summary);
+  }
+
+  @Test
+  void testValuesEqualEagerScan() {
+    final SourceBackedScan lazy = createScan(new CountingSource());
+    final Scan eager = new SimpleScan(file, 1, 1, 0.5f, null, MZS, INTENSITIES,
+        MassSpectrumType.CENTROIDED, PolarityType.POSITIVE, "", null);
+
+    assertEquals(eager.getNumberOfDataPoints(), lazy.getNumberOfDataPoints());
+    for (int i = 0; i < eager.getNumberOfDataPoints(); i++) {
+      assertEquals(eager.getMzValue(i), lazy.getMzValue(i));
+      assertEquals(eager.getIntensityValue(i), lazy.getIntensityValue(i));
+    }
+    assertArrayEquals(eager.getMzValues(new double[0]), lazy.getMzValues(new double[0]));
+    assertArrayEquals(eager.getIntensityValues(new double[0]),
+        lazy.getIntensityValues(new double[0]));
+    assertEquals(eager.getTIC(), lazy.getTIC());
+    assertEquals(eager.getBasePeakMz(), lazy.getBasePeakMz());
+    assertEquals(eager.getBasePeakIntensity(), lazy.getBasePeakIntensity());
+    assertEquals(eager.getDataPointMZRange(), lazy.getDataPointMZRange());
+  }
+
+  @Test
+  void testSingleValueAccessReusesDecodedData() {
+    final CountingSource source = new CountingSource();
+    final SourceBackedScan scan = createScan(source);
+    double tic = 0;
+    for (int i = 0; i < scan.getNumberOfDataPoints(); i++) {
+      assertEquals(MZS[i], scan.getMzValue(i));
+      tic += scan.getIntensityValue(i);
+    }
+    assertEquals(scan.getTIC(), tic);
+    // one lookup in the source cache for all values
+    assertEquals(1, source.lookups.get());
+  }
+}
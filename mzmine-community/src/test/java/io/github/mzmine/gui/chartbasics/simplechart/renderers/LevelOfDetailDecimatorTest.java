@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2004-2024 The mzmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.gui.chartbasics.simplechart.renderers;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.BitSet;
+import java.util.Random;
+import org.jfree.data.xy.DefaultXYDataset;
+import org.jfree.data.xy.XYDataset;
+import org.junit.jupiter.api.Test;
+
+class LevelOfDetailDecimatorTest {
+
+  private static XYDataset createDataset(double[] ys) {
+    final double[] xs = new double[ys.length];
+    for (int i = 0; i < xs.length; i++) {
+      xs[i] = i * 0.1;
+    }
+    final DefaultXYDataset dataset = new DefaultXYDataset();
+    dataset.addSeries("series", new double[][]{xs, ys});
+    return dataset;
+  }
+
+  private static double[] randomValues(int n) {
+    final Random rand = new Random(42);
+    final double[] ys = new double[n];
+    for (int i = 0; i < n; i++) {
+      ys[i] = rand.nextDouble() * 1000;
+    }
+    return ys;
+  }
+
+  private static long bucket(XYDataset dataset, int item, double origin, double bucketWidth) {
+    return (long) Math.floor((dataset.getXValue(0, item) - origin) / bucketWidth);
+  }
+
+  @Test
+  void testMinMaxPerBucket() {
+    final double[] ys = randomValues(10_000);
+    final XYDataset dataset = createDataset(ys);
+    final double bucketWidth = 2.5;
+    final BitSet items = LevelOfDetailDecimator.decimate(dataset, 0, 0, ys.length - 1, 0,
+        bucketWidth);
+
+    int bucketStart = 0;
+    int numBuckets = 0;
+    while (bucketStart < ys.length) {
+      final long bucket = bucket(dataset, bucketStart, 0, bucketWidth);
+      int bucketEnd = bucketStart;
+      int min = bucketStart;
+      int max = bucketStart;
+      while (bucketEnd + 1 < ys.length
+             && bucket(dataset, bucketEnd + 1, 0, bucketWidth) == bucket) {
+        bucketEnd++;
+        min = ys[bucketEnd] < ys[min] ? bucketEnd : min;
+        max = ys[bucketEnd] > ys[max] ? bucketEnd : max;
+      }
+      assertTrue(items.get(bucketStart), "first item of bucket " + bucket);
+      assertTrue(items.get(bucketEnd), "last item of bucket " + bucket);
+      assertTrue(items.get(min), "minimum of bucket " + bucket);
+      assertTrue(items.get(max), "maximum of bucket " + bucket);
+      // nothing else
+      final int selected = items.get(bucketStart, bucketEnd + 1).cardinality();
+      assertTrue(selected <= 4, "bucket " + bucket + " has " + selected + " items");
+
+      numBuckets++;
+      bucketStart = bucketEnd + 1;
+    }
+    assertTrue(numBuckets > 100);
+    assertTrue(items.cardinality() <= 4 * numBuckets);
+    assertTrue(items.cardinality() < ys.length / 4);
+  }
+
+  @Test
+  void testFirstAndLastItemsKept() {
+    final double[] ys = randomValues(5_000);
+    final XYDataset dataset = createDataset(ys);
+    // visible sub range and an origin that is not aligned to the items
+    final int first = 1_234;
+    final int last = 3_456;
+    final BitSet items = LevelOfDetailDecimator.decimate(dataset, 0, first, last, 0.037, 7.3);
+
+    assertTrue(items.get(first));
+    assertTrue(items.get(last));
+    assertEquals(first, items.nextSetBit(0));
+    assertEquals(last, items.previousSetBit(ys.length - 1));
+  }
+
+  @Test
+  void testNaNGapsPreserved() {
+    final double[] ys = randomValues(2_000);
+    final int[] gaps = {0, 500, 501, 502, 1_333, 1_999};
+    for (int gap : gaps) {
+      ys[gap] = Double.NaN;
+    }
+    final XYDataset dataset = createDataset(ys);
+    final BitSet items = LevelOfDetailDecimator.decimate(dataset, 0, 0, ys.length - 1, 0, 10);
+
+    for (int gap : gaps) {
+      assertTrue(items.get(gap), "NaN item " + gap);
+      if (gap > 0) {
+        assertTrue(items.get(gap - 1), "item before NaN " + gap);
+      }
+      if (gap < ys.length - 1) {
+        assertTrue(items.get(gap + 1), "item after NaN " + gap);
+      }
+    }
+    assertTrue(items.cardinality() < ys.length / 10);
+  }
+
+  @Test
+  void testSmallBucketsKeepAllItems() {
+    final double[] ys = randomValues(100);
+    final XYDataset dataset = createDataset(ys);
+    // buckets with at most 2 items, the first and the last
+    final BitSet items = LevelOfDetailDecimator.decimate(dataset, 0, 0, ys.length - 1, 0, 0.15);
+    assertEquals(ys.length, items.cardinality());
+  }
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) 2004-2024 The mzmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.batchmode;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.github.mzmine.modules.MZmineProcessingModule;
+import io.github.mzmine.modules.MZmineProcessingStep;
+import io.github.mzmine.modules.dataprocessing.align_join.JoinAlignerModule;
+import io.github.mzmine.modules.dataprocessing.align_join.JoinAlignerParameters;
+import io.github.mzmine.modules.dataprocessing.featdet_adapchromatogrambuilder.ADAPChromatogramBuilderParameters;
+import io.github.mzmine.modules.dataprocessing.featdet_adapchromatogrambuilder.ModularADAPChromatogramBuilderModule;
+import io.github.mzmine.modules.dataprocessing.featdet_chromatogramdeconvolution.minimumsearch.MinimumSearchFeatureResolverModule;
+import io.github.mzmine.modules.dataprocessing.featdet_chromatogramdeconvolution.minimumsearch.MinimumSearchFeatureResolverParameters;
+import io.github.mzmine.modules.dataprocessing.featdet_massdetection.MassDetectionModule;
+import io.github.mzmine.modules.dataprocessing.featdet_massdetection.MassDetectionParameters;
+import io.github.mzmine.modules.dataprocessing.featdet_smoothing.SmoothingModule;
+import io.github.mzmine.modules.dataprocessing.featdet_smoothing.SmoothingParameters;
+import io.github.mzmine.modules.dataprocessing.filter_isotopegrouper.IsotopeGrouperModule;
+import io.github.mzmine.modules.dataprocessing.filter_isotopegrouper.IsotopeGrouperParameters;
+import io.github.mzmine.modules.impl.MZmineProcessingStepImpl;
+import io.github.mzmine.modules.io.import_rawdata_all.AllSpectralDataImportModule;
+import io.github.mzmine.modules.io.import_rawdata_all.AllSpectralDataImportParameters;
+import io.github.mzmine.parameters.ParameterSet;
+import io.github.mzmine.parameters.parametertypes.selectors.FeatureListsParameter;
+import io.github.mzmine.parameters.parametertypes.selectors.FeatureListsSelection;
+import io.github.mzmine.parameters.parametertypes.selectors.FeatureListsSelectionType;
+import io.github.mzmine.parameters.parametertypes.selectors.RawDataFilesSelection;
+import io.github.mzmine.parameters.parametertypes.selectors.RawDataFilesSelectionType;
+import java.io.File;
+import org.junit.jupiter.api.Test;
+
+class BatchSamplePipelineTest {
+
+  private static MZmineProcessingStep<MZmineProcessingModule> step(MZmineProcessingModule module,
+      ParameterSet parameters) {
+    return new MZmineProcessingStepImpl<>(module, parameters);
+  }
+
+  private static MZmineProcessingStep<MZmineProcessingModule> importStep(boolean metadata,
+      File[] libraries) {
+    return step(new AllSpectralDataImportModule(),
+        AllSpectralDataImportParameters.create(new File[]{new File("a.mzML"), new File("b.mzML")},
+            metadata ? new File("metadata.tsv") : null, libraries));
+  }
+
+  private static MZmineProcessingStep<MZmineProcessingModule> massDetection(
+      RawDataFilesSelectionType selection) {
+    final ParameterSet param = new MassDetectionParameters().cloneParameterSet();
+    param.setParameter(MassDetectionParameters.dataFiles, new RawDataFilesSelection(selection));
+    return step(new MassDetectionModule(), param);
+  }
+
+  private static MZmineProcessingStep<MZmineProcessingModule> chromatogramBuilder() {
+    final ParameterSet param = new ADAPChromatogramBuilderParameters().cloneParameterSet();
+    param.setParameter(ADAPChromatogramBuilderParameters.dataFiles,
+        new RawDataFilesSelection(RawDataFilesSelectionType.BATCH_LAST_FILES));
+    return step(new ModularADAPChromatogramBuilderModule(), param);
+  }
+
+  private static MZmineProcessingStep<MZmineProcessingModule> smoothing(
+      FeatureListsSelectionType selection) {
+    final ParameterSet param = new SmoothingParameters().cloneParameterSet();
+    param.setParameter(SmoothingParameters.featureLists, new FeatureListsSelection(selection));
+    return step(new SmoothingModule(), param);
+  }
+
+  private static MZmineProcessingStep<MZmineProcessingModule> featureListStep(
+      MZmineProcessingModule module, ParameterSet parameters, FeatureListsParameter flists) {
+    final ParameterSet param = parameters.cloneParameterSet();
+    param.setParameter(flists,
+        new FeatureListsSelection(FeatureListsSelectionType.BATCH_LAST_FEATURELISTS));
+    return step(module, param);
+  }
+
+  private static BatchQueue createQueue() {
+    final BatchQueue queue = new BatchQueue();
+    queue.add(importStep(false, null));
+    queue.add(massDetection(RawDataFilesSelectionType.BATCH_LAST_FILES));
+    queue.add(chromatogramBuilder());
+    queue.add(smoothing(FeatureListsSelectionType.BATCH_LAST_FEATURELISTS));
+    queue.add(featureListStep(new MinimumSearchFeatureResolverModule(),
+        new MinimumSearchFeatureResolverParameters(),
+        MinimumSearchFeatureResolverParameters.PEAK_LISTS));
+    queue.add(featureListStep(new IsotopeGrouperModule(), new IsotopeGrouperParameters(),
+        IsotopeGrouperParameters.peakLists));
+    // aggregate step needs all samples
+    queue.add(featureListStep(new JoinAlignerModule(), new JoinAlignerParameters(),
+        JoinAlignerParameters.peakLists));
+    queue.add(smoothing(FeatureListsSelectionType.BATCH_LAST_FEATURELISTS));
+    return queue;
+  }
+
+  @Test
+  void testFindPipelineEnd() {
+    final BatchQueue queue = createQueue();
+    // import to isotope grouping
+    assertEquals(6, BatchSamplePipeline.findPipelineEnd(queue, 0));
+    assertEquals(6, BatchSamplePipeline.findPipelineEnd(queue, 2));
+    // the aligner is a barrier
+    assertEquals(6, BatchSamplePipeline.findPipelineEnd(queue, 6));
+    assertEquals(8, BatchSamplePipeline.findPipelineEnd(queue, 7));
+    assertEquals(8, BatchSamplePipeline.findPipelineEnd(queue, 8));
+  }
+
+  @Test
+  void testStepInBetweenEndsPipeline() {
+    final BatchQueue queue = createQueue();
+    // smoothing of a fixed selection of feature lists
+    queue.set(3, smoothing(FeatureListsSelectionType.ALL_FEATURELISTS));
+    assertEquals(3, BatchSamplePipeline.findPipelineEnd(queue, 0));
+    assertEquals(3, BatchSamplePipeline.findPipelineEnd(queue, 3));
+    assertEquals(6, BatchSamplePipeline.findPipelineEnd(queue, 4));
+  }
+
+  @Test
+  void testImportIsOnlyPipelinedAsFirstStep() {
+    assertTrue(BatchSamplePipeline.isPerSampleStep(importStep(false, null), true));
+    assertTrue(BatchSamplePipeline.isPerSampleStep(importStep(false, new File[0]), true));
+    assertFalse(BatchSamplePipeline.isPerSampleStep(importStep(false, null), false));
+    // metadata and libraries are imported once for all samples
+    assertFalse(BatchSamplePipeline.isPerSampleStep(importStep(true, null), true));
+    assertFalse(BatchSamplePipeline.isPerSampleStep(
+        importStep(false, new File[]{new File("library.json")}), true));
+  }
+
+  @Test
+  void testPerSampleStepsNeedBatchLastSelection() {
+    assertTrue(BatchSamplePipeline.isPerSampleStep(
+        massDetection(RawDataFilesSelectionType.BATCH_LAST_FILES), false));
+    assertFalse(BatchSamplePipeline.isPerSampleStep(
+        massDetection(RawDataFilesSelectionType.ALL_FILES), false));
+    assertTrue(BatchSamplePipeline.isPerSampleStep(
+        smoothing(FeatureListsSelectionType.BATCH_LAST_FEATURELISTS), false));
+    assertFalse(BatchSamplePipeline.isPerSampleStep(
+        smoothing(FeatureListsSelectionType.ALL_FEATURELISTS), false));
+  }
+
+  @Test
+  void testAggregateStepIsNotPerSample() {
+    assertFalse(BatchSamplePipeline.isPerSampleStep(
+        featureListStep(new JoinAlignerModule(), new JoinAlignerParameters(),
+            JoinAlignerParameters.peakLists), false));
+  }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2004-2024 The mzmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.batchmode.timing;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class BatchTimingReportTest {
+
+  private static final StepResourceUsage USAGE = new StepResourceUsage(1.5, 0.25, 2.125, 3.5,
+      0.75, 42);
+
+  private static List<StepTimeMeasurement> createSteps() {
+    return List.of(new StepTimeMeasurement(0, "Import", Duration.ofMillis(5250), false, USAGE),
+        new StepTimeMeasurement(1, "Export", Duration.ofSeconds(2), false));
+  }
+
+  @Test
+  void testStepValues() {
+    final StepTimeMeasurement step = createSteps().getFirst();
+    assertEquals(5.25, step.secondsToFinish());
+    assertEquals(1.5, step.cpuSeconds());
+    assertEquals(0.25, step.gcSeconds());
+    assertEquals(2.125, step.allocatedGB());
+    assertEquals(3.5, step.peakHeapGB());
+    assertEquals(0.75, step.tempStorageGB());
+    assertEquals(42L, step.processedItems());
+    assertEquals("Step 1: Import took %.3f seconds to finish (CPU: %.3f s, GC: %.3f s)".formatted(
+        5.25, 1.5, 0.25), step.toString());
+
+    final StepTimeMeasurement untracked = createSteps().getLast();
+    assertEquals(null, untracked.cpuSeconds());
+    assertEquals(null, untracked.processedItems());
+    assertEquals("Step 2: Export took %.3f seconds to finish".formatted(2d),
+        untracked.toString());
+  }
+
+  @Test
+  void testWriteCsvAndJson(@TempDir Path dir) throws IOException {
+    final BatchTimingReport report = new BatchTimingReport(Instant.parse("2024-05-01T10:15:30Z"),
+        "my dataset", createSteps());
+    final File csv = report.writeTo(dir.toFile());
+
+    assertTrue(csv.getName().startsWith("batch_2024-05-0"), csv.getName());
+    assertTrue(csv.getName().endsWith(".csv"));
+    final List<String> lines = Files.readAllLines(csv.toPath());
+    // header and one line per step
+    assertEquals(3, lines.size());
+    final List<String> header = List.of(lines.getFirst().split(","));
+    assertTrue(header.contains("cpuSeconds"), lines.getFirst());
+    assertTrue(header.contains("processedItems"), lines.getFirst());
+    final String[] first = lines.get(1).split(",", -1);
+    assertEquals("1.5", first[header.indexOf("cpuSeconds")]);
+    assertEquals("42", first[header.indexOf("processedItems")]);
+    // not tracked
+    final String[] second = lines.get(2).split(",", -1);
+    assertEquals("", second[header.indexOf("cpuSeconds")]);
+
+    final File json = new File(dir.toFile(),
+        csv.getName().substring(0, csv.getName().length() - 4) + ".json");
+    assertTrue(json.exists());
+    final JsonNode root = new ObjectMapper().readTree(json);
+    assertEquals("2024-05-01T10:15:30Z", root.get("batchStart").asText());
+    assertEquals("my dataset", root.get("dataset").asText());
+    assertEquals(Runtime.getRuntime().availableProcessors(), root.get("availableThreads").asInt());
+    assertEquals(2, root.get("steps").size());
+    assertEquals("Import", root.get("steps").get(0).get("name").asText());
+    assertEquals(0.75, root.get("steps").get(0).get("tempStorageGB").asDouble());
+    assertTrue(root.get("steps").get(1).get("cpuSeconds").isNull());
+  }
+}
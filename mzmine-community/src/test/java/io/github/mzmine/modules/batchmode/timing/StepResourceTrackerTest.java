@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2004-2024 The mzmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.batchmode.timing;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import io.github.mzmine.taskcontrol.AbstractTask;
+import io.github.mzmine.taskcontrol.ProcessedItemsCounter;
+import io.github.mzmine.taskcontrol.TaskPriority;
+import io.github.mzmine.taskcontrol.TaskStatus;
+import io.github.mzmine.taskcontrol.impl.WrappedTask;
+import java.lang.management.ManagementFactory;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class StepResourceTrackerTest {
+
+  private static class CountingTask extends AbstractTask implements ProcessedItemsCounter {
+
+    private final int items;
+
+    CountingTask(int items) {
+      super(Instant.now());
+      this.items = items;
+    }
+
+    @Override
+    public String getTaskDescription() {
+      return "Counting " + items;
+    }
+
+    @Override
+    public double getFinishedPercentage() {
+      return 1;
+    }
+
+    @Override
+    public void run() {
+      setStatus(TaskStatus.FINISHED);
+    }
+
+    @Override
+    public int getProcessedItems() {
+      return items;
+    }
+  }
+
+  @Test
+  void testProcessedItemsOfStepTasksAreSummed() {
+    // items of tasks before the step are not counted
+    new WrappedTask(new CountingTask(100), TaskPriority.NORMAL).run();
+
+    final StepResourceTracker tracker = StepResourceTracker.start();
+    new WrappedTask(new CountingTask(5), TaskPriority.NORMAL).run();
+    new WrappedTask(new CountingTask(7), TaskPriority.NORMAL).run();
+    final StepResourceUsage usage = tracker.stop(0, "step");
+
+    assertEquals(12, usage.processedItems());
+  }
+
+  @Test
+  void testResourcesOfStep() {
+    final StepResourceTracker tracker = StepResourceTracker.start();
+    // allocate 64 MB
+    long sum = 0;
+    for (int i = 0; i < 64; i++) {
+      final byte[] block = new byte[1024 * 1024];
+      block[i] = (byte) i;
+      sum += block[i];
+    }
+    final StepResourceUsage usage = tracker.stop(1, "allocate");
+
+    assertEquals(2016, sum);
+    assertTrue(usage.cpuSeconds() >= 0);
+    assertTrue(usage.gcSeconds() >= 0);
+    assertTrue(usage.peakHeapGB() >= 0);
+    assertTrue(usage.tempStorageGB() >= 0);
+    assertEquals(0, usage.processedItems());
+
+    assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean bean
+               && bean.isThreadAllocatedMemorySupported() && bean.isThreadAllocatedMemoryEnabled());
+    assertTrue(usage.allocatedGB() >= 0.06, "allocated " + usage.allocatedGB());
+  }
+
+  @Test
+  void testPeakHeapOfOverlappingTrackers() {
+    final StepResourceTracker batch = StepResourceTracker.start();
+    final StepResourceTracker step = StepResourceTracker.start();
+    // keep 64 MB until the step ends
+    final List<byte[]> blocks = new ArrayList<>();
+    for (int i = 0; i < 64; i++) {
+      blocks.add(new byte[1024 * 1024]);
+    }
+    final StepResourceUsage stepUsage = step.stop(1, "allocate");
+    blocks.clear();
+    System.gc();
+    final StepResourceUsage batchUsage = batch.stop(0, "batch");
+
+    assertTrue(stepUsage.peakHeapGB() >= 0.06, "step peak " + stepUsage.peakHeapGB());
+    // the step does not reset the peak of the batch
+    assertTrue(batchUsage.peakHeapGB() >= stepUsage.peakHeapGB(),
+        "batch peak %f, step peak %f".formatted(batchUsage.peakHeapGB(), stepUsage.peakHeapGB()));
+  }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2004-2024 The mzmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataanalysis.significance;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import io.github.mzmine.datamodel.AbundanceMeasure;
+import io.github.mzmine.datamodel.MZmineProject;
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.features.FeatureListRow;
+import io.github.mzmine.datamodel.features.ModularFeatureList;
+import io.github.mzmine.datamodel.features.ModularFeatureListRow;
+import io.github.mzmine.project.impl.MZmineProjectImpl;
+import io.github.mzmine.project.impl.RawDataFileImpl;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class SignificanceResultCacheTest {
+
+  private final AtomicInteger testedRows = new AtomicInteger();
+  private final RowSignificanceTest test = new RowSignificanceTest() {
+    @Override
+    public RowSignificanceTestResult test(FeatureListRow row, AbundanceMeasure abundanceMeasure) {
+      testedRows.incrementAndGet();
+      return new Result(row, 0.01);
+    }
+
+    @Override
+    public List<List<RawDataFile>> groupedFiles() {
+      return List.of();
+    }
+  };
+
+  private final AtomicReference<MZmineProject> project = new AtomicReference<>();
+  private SignificanceResultCache cache;
+  private ModularFeatureList flist;
+  private ModularFeatureList other;
+
+  @BeforeEach
+  void setUp() {
+    project.set(new MZmineProjectImpl());
+    cache = new SignificanceResultCache(project::get);
+    flist = createFeatureList("a", 3);
+    other = createFeatureList("b", 2);
+    project.get().addFeatureList(flist);
+    project.get().addFeatureList(other);
+  }
+
+  @Test
+  void testResultsAreCached() {
+    final List<RowSignificanceTestResult> results = compute(flist);
+    assertEquals(3, results.size());
+    assertSame(results, compute(flist));
+    assertEquals(3, testedRows.get());
+    assertEquals(1, cache.size());
+  }
+
+  @Test
+  void testChangedRowsReplaceResults() {
+    compute(flist);
+    flist.removeRow(flist.getRow(0));
+    assertEquals(2, compute(flist).size());
+    // the results of the removed row are not kept
+    assertEquals(1, cache.size());
+    assertEquals(5, testedRows.get());
+  }
+
+  @Test
+  void testRemovedFeatureListIsEvicted() {
+    compute(flist);
+    compute(other);
+    assertEquals(2, cache.size());
+
+    project.get().removeFeatureList(flist);
+    compute(other);
+    assertEquals(1, cache.size());
+    assertEquals(5, testedRows.get());
+  }
+
+  @Test
+  void testProjectChangeClearsResults() {
+    compute(flist);
+    final MZmineProjectImpl newProject = new MZmineProjectImpl();
+    newProject.addFeatureList(flist);
+    project.set(newProject);
+
+    compute(flist);
+    assertEquals(1, cache.size());
+    // tested again for the new project
+    assertEquals(6, testedRows.get());
+  }
+
+  @Test
+  void testCanceledResultsAreNotCached() {
+    final List<RowSignificanceTestResult> canceled = cache.getOrCompute(flist, test,
+        AbundanceMeasure.Height, () -> true);
+    assertEquals(0, canceled.size());
+    assertEquals(0, cache.size());
+
+    assertEquals(3, compute(flist).size());
+    assertEquals(1, cache.size());
+  }
+
+  private List<RowSignificanceTestResult> compute(ModularFeatureList flist) {
+    return cache.getOrCompute(flist, test, AbundanceMeasure.Height, () -> false);
+  }
+
+  private static ModularFeatureList createFeatureList(String name, int numRows) {
+    final RawDataFile file = new RawDataFileImpl(name, null, null);
+    final ModularFeatureList flist = new ModularFeatureList(name, null, file);
+    for (int i = 0; i < numRows; i++) {
+      flist.addRow(new ModularFeatureListRow(flist, i + 1));
+    }
+    return flist;
+  }
+
+  private record Result(FeatureListRow row, double pValue) implements
+      RowSignificanceTestResult {
+
+    @Override
+    public String groupingColumn() {
+      return "group";
+    }
+  }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2004-2023 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package io.github.mzmine.modules.dataprocessing.featdet_adapchromatogrambuilder;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.google.common.collect.Range;
+import com.google.common.collect.RangeMap;
+import com.google.common.collect.TreeRangeMap;
+import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
+import java.util.Map.Entry;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class MzIntervalIndexTest {
+
+  @Test
+  void testSameAsRangeMap() {
+    final Random rand = new Random(42);
+    final MZTolerance mzTol = new MZTolerance(0.002, 5);
+    final RangeMap<Double, Integer> rangeMap = TreeRangeMap.create();
+    final MzIntervalIndex index = new MzIntervalIndex();
+
+    for (int i = 0; i < 100_000; i++) {
+      // dense m/z values to create many limited ranges
+      final double mz = 100 + rand.nextDouble() * 20;
+      final Entry<Range<Double>, Integer> existing = rangeMap.getEntry(mz);
+      final int existingId = index.get(mz);
+      assertEquals(existing == null ? -1 : existing.getValue(), existingId);
+      if (existing != null) {
+        continue;
+      }
+
+      // same range limitation as in the chromatogram builder
+      final Range<Double> tolRange = mzTol.getToleranceRange(mz);
+      final var minus = rangeMap.getEntry(tolRange.lowerEndpoint());
+      final var plus = rangeMap.getEntry(tolRange.upperEndpoint());
+      final double lower = minus == null ? tolRange.lowerEndpoint() : minus.getKey().upperEndpoint();
+      final double upper = plus == null ? tolRange.upperEndpoint() : plus.getKey().lowerEndpoint();
+      if (lower < upper) {
+        final int id = index.add(lower, upper);
+        rangeMap.put(Range.closedOpen(lower, upper), id);
+        assertEquals(lower, index.getLower(id));
+        assertEquals(upper, index.getUpper(id));
+      }
+    }
+
+    final int[] expected = rangeMap.asMapOfRanges().values().stream().mapToInt(Integer::intValue)
+        .toArray();
+    assertEquals(expected.length, index.size());
+    assertArrayEquals(expected, index.getSortedIds());
+  }
+
+  @Test
+  void testAddRemovesCoveredIntervals() {
+    final MzIntervalIndex index = new MzIntervalIndex();
+    final int a = index.add(100, 100.1);
+    final int b = index.add(100.2, 100.3);
+    final int c = index.add(100.35, 100.4);
+    final int d = index.add(100.5, 100.6);
+    // covers b and c
+    final int e = index.add(100.15, 100.45);
+
+    assertArrayEquals(new int[]{a, e, d}, index.getSortedIds());
+    assertEquals(-1, index.get(100.12));
+    assertEquals(e, index.get(100.2));
+    assertEquals(e, index.get(100.38));
+    assertEquals(-1, index.get(100.45));
+    assertEquals(d, index.get(100.5));
+    assertEquals(3, index.size());
+    assertEquals(5, index.numIds());
+  }
+}
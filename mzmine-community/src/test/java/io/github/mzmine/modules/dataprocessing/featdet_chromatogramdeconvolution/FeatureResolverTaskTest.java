@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2004-2024 The mzmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataprocessing.featdet_chromatogramdeconvolution;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.google.common.collect.Range;
+import io.github.mzmine.datamodel.FeatureStatus;
+import io.github.mzmine.datamodel.MassSpectrumType;
+import io.github.mzmine.datamodel.PolarityType;
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.Scan;
+import io.github.mzmine.datamodel.featuredata.FeatureDataUtils;
+import io.github.mzmine.datamodel.featuredata.IonTimeSeries;
+import io.github.mzmine.datamodel.featuredata.impl.SimpleIonTimeSeries;
+import io.github.mzmine.datamodel.features.ModularFeature;
+import io.github.mzmine.datamodel.features.ModularFeatureList;
+import io.github.mzmine.datamodel.features.ModularFeatureListRow;
+import io.github.mzmine.datamodel.impl.SimpleScan;
+import io.github.mzmine.modules.dataprocessing.featdet_chromatogramdeconvolution.minimumsearch.MinimumSearchFeatureResolverParameters;
+import io.github.mzmine.parameters.ParameterSet;
+import io.github.mzmine.project.impl.MZmineProjectImpl;
+import io.github.mzmine.project.impl.RawDataFileImpl;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Resolving a feature list in parallel chunks needs to create the same features in the same order
+ * as resolving all rows sequentially.
+ */
+class FeatureResolverTaskTest {
+
+  private static final int NUM_SCANS = 120;
+  private static final int NUM_ROWS = 37;
+
+  private final RawDataFile file = new RawDataFileImpl("file", null, null);
+  private ModularFeatureList flist;
+  private ParameterSet parameters;
+
+  private static double gauss(double x, double center, double sigma) {
+    return Math.exp(-0.5 * Math.pow((x - center) / sigma, 2));
+  }
+
+  @BeforeEach
+  void setUp() {
+    final List<Scan> scans = new ArrayList<>();
+    for (int i = 0; i < NUM_SCANS; i++) {
+      final Scan scan = new SimpleScan(file, i + 1, 1, 0.05f * i, null, new double[]{200d},
+          new double[]{1d}, MassSpectrumType.CENTROIDED, PolarityType.POSITIVE, "",
+          Range.closed(100d, 1000d));
+      file.addScan(scan);
+      scans.add(scan);
+    }
+
+    flist = new ModularFeatureList("chromatograms", null, file);
+    flist.setSelectedScans(file, scans);
+    for (int row = 0; row < NUM_ROWS; row++) {
+      // two peaks per chromatogram at different positions for each row
+      final double first = 0.5 + (row % 7) * 0.3;
+      final double second = first + 1.5 + (row % 3) * 0.4;
+      final double[] mzs = new double[NUM_SCANS];
+      final double[] intensities = new double[NUM_SCANS];
+      for (int i = 0; i < NUM_SCANS; i++) {
+        final double rt = scans.get(i).getRetentionTime();
+        mzs[i] = 150d + row;
+        intensities[i] = 1E5 * (1 + row) * (gauss(rt, first, 0.08) + 0.6 * gauss(rt, second, 0.1))
+            + 10d;
+      }
+      final IonTimeSeries<Scan> series = new SimpleIonTimeSeries(null, mzs, intensities, scans);
+      final ModularFeature feature = new ModularFeature(flist, file, series,
+          FeatureStatus.DETECTED);
+      flist.addRow(new ModularFeatureListRow(flist, row + 1, feature));
+    }
+
+    parameters = new MinimumSearchFeatureResolverParameters().cloneParameterSet();
+    parameters.setParameter(MinimumSearchFeatureResolverParameters.SUFFIX, "r");
+    parameters.setParameter(MinimumSearchFeatureResolverParameters.groupMS2Parameters, false);
+    parameters.setParameter(MinimumSearchFeatureResolverParameters.dimension,
+        ResolvingDimension.RETENTION_TIME);
+    parameters.setParameter(MinimumSearchFeatureResolverParameters.CHROMATOGRAPHIC_THRESHOLD_LEVEL,
+        0.5);
+    parameters.setParameter(MinimumSearchFeatureResolverParameters.SEARCH_RT_RANGE, 0.2);
+    parameters.setParameter(MinimumSearchFeatureResolverParameters.MIN_RELATIVE_HEIGHT, 0d);
+    parameters.setParameter(MinimumSearchFeatureResolverParameters.MIN_ABSOLUTE_HEIGHT, 1E3);
+    parameters.setParameter(MinimumSearchFeatureResolverParameters.MIN_RATIO, 1.8);
+    parameters.setParameter(MinimumSearchFeatureResolverParameters.PEAK_DURATION,
+        Range.closed(0d, 5d));
+    parameters.setParameter(MinimumSearchFeatureResolverParameters.MIN_NUMBER_OF_DATAPOINTS, 4);
+  }
+
+  private List<ModularFeature> resolve(int numChunks) {
+    final FeatureResolverTask task = new FeatureResolverTask(new MZmineProjectImpl(), null, flist,
+        parameters, FeatureDataUtils.DEFAULT_CENTER_FUNCTION, Instant.now());
+    final Resolver resolver = ((GeneralResolverParameters) parameters).getResolver(parameters,
+        flist);
+    final ModularFeatureList resolved = new ModularFeatureList("resolved", null, file);
+    return task.resolveInChunks(flist, resolved, resolver, numChunks);
+  }
+
+  @Test
+  void testChunkedEqualsSequential() {
+    final List<ModularFeature> sequential = resolve(1);
+    // more features than rows as each chromatogram has two peaks
+    assertTrue(sequential.size() > NUM_ROWS);
+
+    // 37 rows do not split evenly into 4 or 5 chunks
+    for (int numChunks : new int[]{2, 4, 5, NUM_ROWS, NUM_ROWS + 3}) {
+      final List<ModularFeature> chunked = resolve(numChunks);
+      assertEquals(sequential.size(), chunked.size(), "chunks: " + numChunks);
+      for (int i = 0; i < sequential.size(); i++) {
+        final ModularFeature expected = sequential.get(i);
+        final ModularFeature actual = chunked.get(i);
+        assertSame(expected.getRawDataFile(), actual.getRawDataFile());
+        assertEquals(expected.getMZ(), actual.getMZ());
+        assertEquals(expected.getRT(), actual.getRT());
+        assertEquals(expected.getHeight(), actual.getHeight());
+        assertEquals(expected.getArea(), actual.getArea());
+        assertEquals(expected.getRawDataPointsRTRange(), actual.getRawDataPointsRTRange());
+        assertEquals(expected.getFeatureData().getNumberOfValues(),
+            actual.getFeatureData().getNumberOfValues());
+      }
+    }
+  }
+}
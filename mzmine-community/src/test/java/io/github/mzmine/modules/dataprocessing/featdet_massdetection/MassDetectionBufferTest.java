@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2004-2024 The mzmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataprocessing.featdet_massdetection;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import io.github.mzmine.datamodel.MassSpectrum;
+import io.github.mzmine.datamodel.MassSpectrumType;
+import io.github.mzmine.datamodel.impl.SimpleMassSpectrum;
+import io.github.mzmine.modules.dataprocessing.featdet_massdetection.auto.AutoMassDetector;
+import io.github.mzmine.modules.dataprocessing.featdet_massdetection.centroid.CentroidMassDetector;
+import io.github.mzmine.modules.dataprocessing.featdet_massdetection.factor_of_lowest.FactorOfLowestMassDetector;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class MassDetectionBufferTest {
+
+  private final MassSpectrum first = new SimpleMassSpectrum(
+      new double[]{100.1, 150.2, 200.3, 250.4, 300.5},
+      new double[]{50, 1000, 20, 3000, 500});
+  private final MassSpectrum second = new SimpleMassSpectrum(new double[]{110.1, 210.2, 310.3},
+      new double[]{2000, 0, 400}, MassSpectrumType.CENTROIDED);
+
+  @Test
+  void testBufferOverloadEqualsArrays() {
+    for (MassDetector detector : List.of(new CentroidMassDetector(100),
+        new FactorOfLowestMassDetector(5), new AutoMassDetector(100))) {
+      final MassDetectionBuffer buffer = new MassDetectionBuffer(1);
+
+      int start = 0;
+      for (MassSpectrum spectrum : List.of(first, second, first)) {
+        final double[][] expected = detector.getMassValues(spectrum);
+        final int added = detector.getMassValues(spectrum, buffer);
+        assertEquals(expected[0].length, added);
+        assertEquals(start + added, buffer.size());
+        assertArrayEquals(expected[0],
+            Arrays.copyOfRange(buffer.mzs(), start, buffer.size()));
+        assertArrayEquals(expected[1],
+            Arrays.copyOfRange(buffer.intensities(), start, buffer.size()));
+        start = buffer.size();
+      }
+
+      buffer.clear();
+      assertEquals(0, buffer.size());
+    }
+  }
+}
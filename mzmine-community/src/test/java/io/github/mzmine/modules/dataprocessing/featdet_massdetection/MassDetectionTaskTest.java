@@ -0,0 +1,265 @@
+/*
+ * Copyright (c) 2004-2024 The mzmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataprocessing.featdet_massdetection;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+import com.google.common.collect.Range;
+import io.github.mzmine.datamodel.Frame;
+import io.github.mzmine.datamodel.MassList;
+import io.github.mzmine.datamodel.MassSpectrum;
+import io.github.mzmine.datamodel.MassSpectrumType;
+import io.github.mzmine.datamodel.MobilityScan;
+import io.github.mzmine.datamodel.MobilityType;
+import io.github.mzmine.datamodel.PolarityType;
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.Scan;
+import io.github.mzmine.datamodel.impl.BuildingMobilityScan;
+import io.github.mzmine.datamodel.impl.SimpleFrame;
+import io.github.mzmine.datamodel.impl.SimpleScan;
+import io.github.mzmine.gui.preferences.MZminePreferences;
+import io.github.mzmine.main.ConfigService;
+import io.github.mzmine.modules.dataprocessing.featdet_massdetection.factor_of_lowest.FactorOfLowestMassDetector;
+import io.github.mzmine.modules.dataprocessing.featdet_massdetection.factor_of_lowest.FactorOfLowestMassDetectorParameters;
+import io.github.mzmine.parameters.ParameterSet;
+import io.github.mzmine.parameters.parametertypes.selectors.ScanSelection;
+import io.github.mzmine.project.impl.IMSRawDataFileImpl;
+import io.github.mzmine.project.impl.RawDataFileImpl;
+import io.github.mzmine.taskcontrol.TaskStatus;
+import io.github.mzmine.util.MemoryMapStorage;
+import io.github.mzmine.util.scans.ScanUtils;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import testutils.MZmineTestUtil;
+
+class MassDetectionTaskTest {
+
+  private static final double NOISE_FACTOR = 2.5;
+  private static final int MOBILITY_SCANS = 12;
+  // the last mobility scan is the largest, it has to count for the maximum number of points
+  private static final int LARGEST_MOBILITY_SCAN = 80;
+
+  @BeforeAll
+  static void initialize() {
+    MZmineTestUtil.startMzmineCore();
+    // exact values are compared
+    ConfigService.getPreferences()
+        .setParameter(MZminePreferences.compactMobilityScanStorage, false);
+  }
+
+  @Test
+  void testChunksCloseAfterMobilityFrames() {
+    final Random random = new Random(42);
+    final RawDataFile lcFile = createLcFile(random, 205);
+    final RawDataFile imsFile = createImsFile(random, 1);
+
+    final List<Scan> scans = new ArrayList<>(lcFile.getScans().subList(0, 5));
+    scans.add(imsFile.getScan(0));
+    scans.addAll(lcFile.getScans().subList(5, 205));
+
+    assertEquals(6, MassDetectionTask.findChunkEnd(scans, 0, SelectedScanTypes.SCANS));
+    assertEquals(6 + MassDetectionTask.CHUNK_SIZE,
+        MassDetectionTask.findChunkEnd(scans, 6, SelectedScanTypes.SCANS));
+    assertEquals(scans.size(),
+        MassDetectionTask.findChunkEnd(scans, 6 + MassDetectionTask.CHUNK_SIZE,
+            SelectedScanTypes.SCANS));
+    // mobility scans are not detected, frames do not close the chunk
+    assertEquals(MassDetectionTask.CHUNK_SIZE,
+        MassDetectionTask.findChunkEnd(scans, 0, SelectedScanTypes.FRAMES));
+  }
+
+  @Test
+  void testParallelEqualsSequentialLc() {
+    // three chunks, the last one is partial
+    final RawDataFile file = createLcFile(new Random(1), 2 * MassDetectionTask.CHUNK_SIZE + 44);
+    final List<double[][]> sequential = detect(file, 1);
+    final List<double[][]> parallel = detect(file, 4);
+
+    assertMassListsEqual(expected(file), sequential);
+    assertMassListsEqual(sequential, parallel);
+  }
+
+  @Test
+  void testParallelEqualsSequentialIms() {
+    final RawDataFile file = createImsFile(new Random(2), 6);
+    final List<double[][]> sequential = detect(file, 1);
+    assertMobilityMaxPoints(file);
+    final List<double[][]> parallel = detect(file, 4);
+    assertMobilityMaxPoints(file);
+
+    assertMassListsEqual(expected(file), sequential);
+    assertMassListsEqual(sequential, parallel);
+  }
+
+  /**
+   * Runs the mass detection and returns the mass lists of all scans and mobility scans
+   */
+  private static List<double[][]> detect(RawDataFile file, int threads) {
+    final MassDetectionTask task = new MassDetectionTask(file, createParameters(),
+        MemoryMapStorage.create(), Instant.now(), threads);
+    task.run();
+    assertEquals(TaskStatus.FINISHED, task.getStatus(), task.getErrorMessage());
+
+    final List<double[][]> massLists = new ArrayList<>();
+    for (Scan scan : file.getScans()) {
+      massLists.add(values(scan.getMassList()));
+      if (scan instanceof Frame frame) {
+        for (MobilityScan mobilityScan : frame.getMobilityScans()) {
+          massLists.add(values(mobilityScan.getMassList()));
+        }
+      }
+    }
+    return massLists;
+  }
+
+  /**
+   * Mass lists of the sequential array based detection, MS2 intensities are denormalized
+   */
+  private static List<double[][]> expected(RawDataFile file) {
+    final MassDetector detector = new FactorOfLowestMassDetector(NOISE_FACTOR);
+    final List<double[][]> massLists = new ArrayList<>();
+    for (Scan scan : file.getScans()) {
+      massLists.add(expected(detector, scan, scan));
+      if (scan instanceof Frame frame) {
+        for (MobilityScan mobilityScan : frame.getMobilityScans()) {
+          massLists.add(expected(detector, mobilityScan, frame));
+        }
+      }
+    }
+    return massLists;
+  }
+
+  private static double[][] expected(MassDetector detector, MassSpectrum spectrum, Scan scan) {
+    final double[][] masses = detector.getMassValues(spectrum);
+    if (scan.getMSLevel() > 1) {
+      ScanUtils.denormalizeIntensitiesMultiplyByInjectTime(masses[1], scan.getInjectionTime());
+    }
+    return masses;
+  }
+
+  /**
+   * The stored maximum number of points equals the largest mobility scan mass list
+   */
+  private static void assertMobilityMaxPoints(RawDataFile file) {
+    for (Scan scan : file.getScans()) {
+      final Frame frame = (Frame) scan;
+      final int max = frame.getMobilityScans().stream()
+          .mapToInt(ms -> ms.getMassList().getNumberOfDataPoints()).max().orElse(0);
+      assertEquals(LARGEST_MOBILITY_SCAN - 1, max);
+      assertEquals(max, frame.getMaxMobilityScanMassListDataPoints());
+    }
+  }
+
+  private static void assertMassListsEqual(List<double[][]> expected, List<double[][]> actual) {
+    assertEquals(expected.size(), actual.size());
+    for (int i = 0; i < expected.size(); i++) {
+      assertArrayEquals(expected.get(i)[0], actual.get(i)[0], "m/z of mass list " + i);
+      assertArrayEquals(expected.get(i)[1], actual.get(i)[1], "intensity of mass list " + i);
+    }
+  }
+
+  private static double[][] values(MassList massList) {
+    assertNotNull(massList);
+    final int numPoints = massList.getNumberOfDataPoints();
+    return new double[][]{massList.getMzValues(new double[numPoints]),
+        massList.getIntensityValues(new double[numPoints])};
+  }
+
+  private static ParameterSet createParameters() {
+    final ParameterSet detectorParam = new FactorOfLowestMassDetectorParameters()
+        .cloneParameterSet();
+    detectorParam.setParameter(FactorOfLowestMassDetectorParameters.noiseFactor, NOISE_FACTOR);
+
+    final ParameterSet param = new MassDetectionParameters().cloneParameterSet();
+    param.getParameter(MassDetectionParameters.scanSelection)
+        .setValue(true, ScanSelection.ALL_SCANS);
+    param.setParameter(MassDetectionParameters.scanTypes, SelectedScanTypes.SCANS);
+    param.setParameter(MassDetectionParameters.denormalizeMSnScans, true);
+    param.getParameter(MassDetectionParameters.massDetector)
+        .setValue(MassDetectors.FACTOR_OF_LOWEST, detectorParam);
+    return param;
+  }
+
+  /**
+   * Every third scan is MS1, the others are MS2 with different injection times. Some scans are
+   * empty.
+   */
+  private static RawDataFile createLcFile(Random random, int numScans) {
+    final RawDataFile file = new RawDataFileImpl("lc", null, null);
+    for (int i = 0; i < numScans; i++) {
+      final double[][] data = randomSpectrum(random, i % 17 == 0 ? 0 : random.nextInt(60));
+      file.addScan(new SimpleScan(file, i, i % 3 == 0 ? 1 : 2, i * 0.1f, null, data[0], data[1],
+          MassSpectrumType.CENTROIDED, PolarityType.POSITIVE, "", Range.closed(0d, 1000d),
+          5f + i % 7));
+    }
+    return file;
+  }
+
+  /**
+   * Alternating MS1 and MS2 frames, each with mobility scans
+   */
+  private static RawDataFile createImsFile(Random random, int numFrames) {
+    final IMSRawDataFileImpl file = new IMSRawDataFileImpl("ims", null, null);
+    for (int i = 0; i < numFrames; i++) {
+      final double[][] data = randomSpectrum(random, 100);
+      final SimpleFrame frame = new SimpleFrame(file, i, i % 2 == 0 ? 1 : 2, i * 0.1f, data[0],
+          data[1], MassSpectrumType.CENTROIDED, PolarityType.POSITIVE, "", Range.closed(0d, 1000d),
+          MobilityType.TIMS, null, 20f + i);
+
+      final List<BuildingMobilityScan> mobilityScans = new ArrayList<>();
+      for (int m = 0; m < MOBILITY_SCANS; m++) {
+        final int numPoints = m == MOBILITY_SCANS - 1 ? LARGEST_MOBILITY_SCAN : random.nextInt(40);
+        mobilityScans.add(new BuildingMobilityScan(m, randomSpectrum(random, numPoints)));
+      }
+      frame.setMobilityScans(mobilityScans, false);
+      frame.setMobilities(new double[MOBILITY_SCANS]);
+      file.addScan(frame);
+    }
+    return file;
+  }
+
+  /**
+   * @return sorted m/z values and intensities above the noise level of the factor of lowest
+   * detector, except for the lowest signal
+   */
+  private static double[][] randomSpectrum(Random random, int numPoints) {
+    final double[] mzs = new double[numPoints];
+    final double[] intensities = new double[numPoints];
+    double mz = 50;
+    for (int i = 0; i < numPoints; i++) {
+      mz += 0.5 + random.nextDouble() * 10;
+      mzs[i] = mz;
+      intensities[i] = i == 0 ? 100 : 1000 + random.nextDouble() * 1E4;
+    }
+    return new double[][]{mzs, intensities};
+  }
+}
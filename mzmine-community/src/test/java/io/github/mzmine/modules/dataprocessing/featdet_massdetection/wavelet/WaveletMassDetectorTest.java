@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2004-2024 The mzmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataprocessing.featdet_massdetection.wavelet;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+import io.github.mzmine.datamodel.MassSpectrum;
+import io.github.mzmine.datamodel.MassSpectrumType;
+import io.github.mzmine.datamodel.impl.SimpleMassSpectrum;
+import java.util.Random;
+import java.util.TreeMap;
+import org.junit.jupiter.api.Test;
+
+class WaveletMassDetectorTest {
+
+  /**
+   * Profile spectrum with gaussian peaks on a noisy baseline
+   */
+  private static MassSpectrum createProfileSpectrum(Random random, int numPoints) {
+    final double[] mzs = new double[numPoints];
+    final double[] intensities = new double[numPoints];
+    double mz = 100 + random.nextDouble();
+    for (int i = 0; i < numPoints; i++) {
+      mzs[i] = mz;
+      mz += 0.002 + random.nextDouble() * 0.001;
+      intensities[i] = random.nextDouble() * 50;
+    }
+    for (int p = 0; p < numPoints / 40; p++) {
+      final int center = random.nextInt(numPoints);
+      final double height = 100 + random.nextDouble() * 1E5;
+      final double width = 1 + random.nextDouble() * 4;
+      for (int i = Math.max(0, center - 20); i < Math.min(numPoints, center + 20); i++) {
+        final double x = (i - center) / width;
+        intensities[i] += height * Math.exp(-x * x / 2);
+      }
+    }
+    return new SimpleMassSpectrum(mzs, intensities, MassSpectrumType.PROFILE);
+  }
+
+  @Test
+  void testKernelEqualsLegacyDetection() {
+    final Random random = new Random(42);
+    for (int iteration = 0; iteration < 40; iteration++) {
+      final MassSpectrum spectrum = createProfileSpectrum(random, 20 + random.nextInt(3000));
+      final double noise = random.nextDouble() * 500;
+      final int scale = 1 + random.nextInt(12);
+      final double window = 0.05 + random.nextDouble() * 0.95;
+
+      final double[][] expected = legacyMassValues(spectrum, noise, scale, window);
+      final double[][] actual = new WaveletMassDetector(noise, scale, window).getMassValues(
+          spectrum);
+      assertArrayEquals(expected[0], actual[0]);
+      assertArrayEquals(expected[1], actual[1]);
+    }
+  }
+
+  /**
+   * The previous implementation with a kernel per spectrum and data point objects
+   */
+  private static double[][] legacyMassValues(MassSpectrum scan, double noiseLevel, int scaleLevel,
+      double waveletWindow) {
+    final double npoints = 60000;
+    final int esl = -5;
+    final int esr = 5;
+    int length = scan.getNumberOfDataPoints();
+    double[] cwt = new double[length];
+    double wstep = ((esr - esl) / npoints);
+    double[] W = new double[(int) npoints];
+
+    double waveletIndex = esl;
+    for (int j = 0; j < npoints; j++) {
+      double x = waveletIndex / waveletWindow;
+      double x2 = x * x;
+      W[j] = 0.8673250705840776 * (1.0 - x2) * Math.exp(-x2 / 2);
+      waveletIndex += wstep;
+    }
+
+    int d = (int) npoints / (esr - esl);
+    int a_esl = scaleLevel * esl;
+    int a_esr = scaleLevel * esr;
+    double sqrtScaleLevel = Math.sqrt(scaleLevel);
+    for (int dx = 0; dx < length; dx++) {
+      int t1 = Math.max(a_esl + dx, 0);
+      int t2 = Math.min(a_esr + dx, length - 1);
+      double intensity = 0.0;
+      for (int i = t1; i <= t2; i++) {
+        int ind = (int) (npoints / 2) - ((d * (i - dx) / scaleLevel) * (-1));
+        ind = Math.min(Math.max(ind, 0), (int) npoints - 1);
+        intensity += scan.getIntensityValue(i) * W[ind];
+      }
+      intensity /= sqrtScaleLevel;
+      cwt[dx] = Math.max(intensity, 0);
+    }
+
+    // mz -> intensity, sorted by mz and intensity is not needed for distinct m/z values
+    final TreeMap<Double, Double> peaks = new TreeMap<>();
+    int stopInd = length - 1;
+    for (int ind = 0; ind <= stopInd; ind++) {
+      while ((ind <= stopInd) && (cwt[ind] == 0)) {
+        ind++;
+      }
+      int peakMaxInd = ind;
+      if (ind >= stopInd) {
+        break;
+      }
+      double aprox = 0;
+      while ((ind <= stopInd) && (cwt[ind] > 0)) {
+        if (cwt[ind] > cwt[peakMaxInd]) {
+          peakMaxInd = ind;
+        }
+        aprox = Math.max(aprox, scan.getIntensityValue(ind));
+        ind++;
+      }
+      if (ind >= stopInd) {
+        break;
+      }
+      aprox = Math.max(aprox, scan.getIntensityValue(ind));
+      if (scan.getIntensityValue(peakMaxInd) > noiseLevel) {
+        peaks.put(scan.getMzValue(peakMaxInd), aprox);
+      }
+    }
+
+    return new double[][]{peaks.keySet().stream().mapToDouble(Double::doubleValue).toArray(),
+        peaks.values().stream().mapToDouble(Double::doubleValue).toArray()};
+  }
+}
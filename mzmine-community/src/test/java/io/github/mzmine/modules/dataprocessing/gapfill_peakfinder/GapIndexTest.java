@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataprocessing.gapfill_peakfinder;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.google.common.collect.Range;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class GapIndexTest {
+
+  private static Gap gap(double mzLower, double mzUpper, float rtLower, float rtUpper) {
+    return new Gap(null, null, Range.closed(mzLower, mzUpper), Range.closed(rtLower, rtUpper), 0);
+  }
+
+  @Test
+  void testActiveGapsFollowRetentionTime() {
+    final Gap a = gap(300, 301, 1f, 2f);
+    final Gap b = gap(100, 101, 1.5f, 3f);
+    final Gap c = gap(200, 201, 4f, 5f);
+    final GapIndex<Gap> index = new GapIndex<>(List.of(c, a, b));
+
+    assertEquals(List.of(), index.advance(0.5f));
+    assertEquals(List.of(a), index.advance(1f));
+    // sorted by m/z
+    assertEquals(List.of(b, a), index.advance(1.8f));
+    assertEquals(List.of(b), index.advance(2.5f));
+    assertEquals(List.of(), index.advance(3.5f));
+    assertEquals(List.of(c), index.advance(5f));
+    // unsorted scans start over
+    assertEquals(List.of(b, a), index.advance(1.6f));
+  }
+
+  @Test
+  void testGapsSkippedBetweenScansDoNotBecomeActive() {
+    final Gap a = gap(300, 301, 1f, 2f);
+    final GapIndex<Gap> index = new GapIndex<>(List.of(a));
+    assertEquals(List.of(), index.advance(3f));
+  }
+
+  @Test
+  void testMzOverlap() {
+    final Gap a = gap(100, 101, 1f, 2f);
+    final Gap b = gap(100.5, 102, 1f, 2f);
+    final Gap c = gap(200, 201, 1f, 2f);
+    final Gap d = gap(300, 301, 1f, 2f);
+    final GapIndex<Gap> index = new GapIndex<>(List.of(a, b, c, d));
+    index.advance(1.5f);
+
+    final double[] mzs = {50, 101.5, 300.5, 400, 0};
+    final List<Gap> overlapping = new ArrayList<>();
+    index.forEachMzOverlapping(mzs, 4, overlapping::add);
+    assertEquals(List.of(b, d), overlapping);
+  }
+}
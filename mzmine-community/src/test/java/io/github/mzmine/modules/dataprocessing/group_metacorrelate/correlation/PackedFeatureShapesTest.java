@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2004-2024 The mzmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataprocessing.group_metacorrelate.correlation;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.google.common.collect.Range;
+import io.github.mzmine.datamodel.FeatureStatus;
+import io.github.mzmine.datamodel.MassSpectrumType;
+import io.github.mzmine.datamodel.PolarityType;
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.Scan;
+import io.github.mzmine.datamodel.data_access.CachedFeatureDataAccess;
+import io.github.mzmine.datamodel.featuredata.impl.SimpleIonTimeSeries;
+import io.github.mzmine.datamodel.features.Feature;
+import io.github.mzmine.datamodel.features.FeatureListRow;
+import io.github.mzmine.datamodel.features.ModularFeature;
+import io.github.mzmine.datamodel.features.ModularFeatureList;
+import io.github.mzmine.datamodel.features.ModularFeatureListRow;
+import io.github.mzmine.datamodel.features.correlation.CorrelationData;
+import io.github.mzmine.datamodel.impl.SimpleScan;
+import io.github.mzmine.project.impl.RawDataFileImpl;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * The packed feature shape correlation needs to find the same data points and correlation as
+ * {@link FeatureCorrelationUtil#corrFeatureShape}
+ */
+class PackedFeatureShapesTest {
+
+  private static final int NUM_SCANS = 80;
+  private static final int NUM_ROWS = 25;
+  private static final double NOISE_LEVEL = 500;
+
+  private final List<RawDataFile> raws = List.of(new RawDataFileImpl("a", null, null),
+      new RawDataFileImpl("b", null, null));
+  private FeatureListRow[] rows;
+
+  @BeforeEach
+  void setUp() {
+    final ModularFeatureList flist = new ModularFeatureList("flist", null, raws);
+    final List<List<Scan>> scans = new ArrayList<>();
+    for (RawDataFile raw : raws) {
+      final List<Scan> rawScans = new ArrayList<>();
+      for (int i = 0; i < NUM_SCANS; i++) {
+        final Scan scan = new SimpleScan(raw, i + 1, 1, 0.05f * i, null, new double[]{200d},
+            new double[]{1d}, MassSpectrumType.CENTROIDED, PolarityType.POSITIVE, "",
+            Range.closed(100d, 1000d));
+        raw.addScan(scan);
+        rawScans.add(scan);
+      }
+      flist.setSelectedScans(raw, rawScans);
+      scans.add(rawScans);
+    }
+
+    final Random random = new Random(42);
+    rows = new FeatureListRow[NUM_ROWS];
+    for (int r = 0; r < NUM_ROWS; r++) {
+      final ModularFeatureListRow row = new ModularFeatureListRow(flist, r + 1);
+      for (int k = 0; k < raws.size(); k++) {
+        // some rows are missing in one file
+        if ((r + k) % 7 == 0) {
+          continue;
+        }
+        // features cover different scan ranges around similar apex positions
+        final int first = 10 + random.nextInt(15);
+        final int last = Math.min(NUM_SCANS - 1, first + 8 + random.nextInt(30));
+        final double apex = first + (last - first) * (0.3 + 0.4 * random.nextDouble());
+        final double sigma = 2 + random.nextDouble() * 4;
+        final int n = last - first + 1;
+        final double[] mzs = new double[n];
+        final double[] intensities = new double[n];
+        for (int i = 0; i < n; i++) {
+          final double x = (first + i - apex) / sigma;
+          mzs[i] = 150d + r;
+          intensities[i] =
+              1E5 * (1 + r % 4) * Math.exp(-x * x / 2) * (0.9 + 0.2 * random.nextDouble()) + 100;
+        }
+        final SimpleIonTimeSeries series = new SimpleIonTimeSeries(null, mzs, intensities,
+            scans.get(k).subList(first, last + 1));
+        row.addFeature(raws.get(k),
+            new ModularFeature(flist, raws.get(k), series, FeatureStatus.DETECTED), false);
+      }
+      rows[r] = row;
+    }
+  }
+
+  /**
+   * Left data points are added in reverse order by the previous implementation
+   */
+  private static double[][] sorted(double[][] data) {
+    final double[][] copy = data.clone();
+    Arrays.sort(copy, Comparator.<double[]>comparingDouble(dp -> dp[0])
+        .thenComparingDouble(dp -> dp[1]));
+    return copy;
+  }
+
+  @Test
+  void testSameAsFeatureCorrelationUtil() {
+    final PackedFeatureShapes shapes = new PackedFeatureShapes(rows, raws);
+    final CachedFeatureDataAccess data = new CachedFeatureDataAccess(rows, false, true);
+
+    int correlated = 0;
+    int skipped = 0;
+    for (int minEdge : new int[]{0, 2, 4}) {
+      for (int a = 0; a < NUM_ROWS; a++) {
+        for (int b = a + 1; b < NUM_ROWS; b++) {
+          for (int k = 0; k < raws.size(); k++) {
+            final Feature fa = rows[a].getFeature(raws.get(k));
+            final Feature fb = rows[b].getFeature(raws.get(k));
+            if (fa == null || fb == null) {
+              continue;
+            }
+            final CorrelationData expected = FeatureCorrelationUtil.corrFeatureShape(data, fa, fb,
+                true, 5, minEdge, NOISE_LEVEL);
+            final CorrelationData actual = shapes.corrFeatureShape(a, b, k, 5, minEdge,
+                NOISE_LEVEL);
+            final String pair = "rows %d and %d in file %d".formatted(a, b, k);
+            if (expected == null) {
+              assertNull(actual, pair);
+              skipped++;
+              continue;
+            }
+            assertNotNull(actual, pair);
+            correlated++;
+            assertEquals(expected.getDPCount(), actual.getDPCount(), pair);
+            assertEquals(expected.getPearsonR(), actual.getPearsonR(), 1E-10, pair);
+            assertEquals(expected.getCosineSimilarity(), actual.getCosineSimilarity(), 1E-10,
+                pair);
+            assertArrayEquals(sorted(expected.getData()), sorted(actual.getData()), pair);
+          }
+        }
+      }
+    }
+    // both cases are covered
+    assertTrue(correlated > 10, "correlated " + correlated);
+    assertTrue(skipped > 10, "skipped " + skipped);
+  }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2004-2024 The mzmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataprocessing.group_metacorrelate.correlation;
+
+import io.github.mzmine.datamodel.features.correlation.FullCorrelationData;
+import io.github.mzmine.datamodel.features.correlation.PackedCorrelationData;
+import io.github.mzmine.datamodel.features.correlation.PackedCorrelationData.Statistics;
+import java.util.List;
+import java.util.Random;
+import org.apache.commons.math.MathException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class ShapeCorrelationKernelTest {
+
+  private static double[] randomShape(Random random, int n) {
+    double[] values = new double[n];
+    for (int i = 0; i < n; i++) {
+      final double x = (i - n / 2d) / (n / 6d);
+      values[i] = 1E5 * Math.exp(-x * x / 2) * (0.8 + 0.4 * random.nextDouble()) + 100;
+    }
+    return values;
+  }
+
+  private static double[][] pairs(double[] x, int xOffset, double[] y, int yOffset, int n) {
+    double[][] data = new double[n][];
+    for (int i = 0; i < n; i++) {
+      data[i] = new double[]{x[xOffset + i], y[yOffset + i]};
+    }
+    return data;
+  }
+
+  @Test
+  void testSameAsFullCorrelation() throws MathException {
+    Random random = new Random(42);
+    for (int n = 3; n < 70; n++) {
+      double[] x = randomShape(random, n + 3);
+      double[] y = randomShape(random, n + 5);
+
+      Statistics stats = ShapeCorrelationKernel.computeStatistics(x, 3, y, 5, n);
+      Statistics scalar = ShapeCorrelationKernel.computeStatisticsScalar(x, 3, y, 5, n);
+      Assertions.assertEquals(scalar.sumXY(), stats.sumXY(), 1E-12 * Math.abs(scalar.sumXY()));
+      Assertions.assertEquals(scalar.dot(), stats.dot(), 1E-12 * scalar.dot());
+
+      PackedCorrelationData packed = new PackedCorrelationData(stats, x, 3, y, 5);
+      FullCorrelationData full = new FullCorrelationData(pairs(x, 3, y, 5, n));
+
+      Assertions.assertEquals(full.getDPCount(), packed.getDPCount());
+      Assertions.assertEquals(full.getPearsonR(), packed.getPearsonR(), 1E-10);
+      Assertions.assertEquals(full.getCosineSimilarity(), packed.getCosineSimilarity(), 1E-10);
+      Assertions.assertEquals(full.getSlope(), packed.getSlope(), 1E-8 * Math.abs(full.getSlope()));
+      Assertions.assertEquals(full.getRegressionSignificance(),
+          packed.getRegressionSignificance(), 1E-6);
+      Assertions.assertEquals(full.getMaxFoldChange(0), packed.getMaxFoldChange(0), 1E-10);
+      Assertions.assertArrayEquals(full.getData(), packed.getData());
+    }
+  }
+
+  @Test
+  void testMerge() {
+    Random random = new Random(7);
+    double[] x = randomShape(random, 40);
+    double[] y = randomShape(random, 40);
+
+    PackedCorrelationData first = new PackedCorrelationData(
+        ShapeCorrelationKernel.computeStatistics(x, 0, y, 0, 15), x, 0, y, 0);
+    PackedCorrelationData second = new PackedCorrelationData(
+        ShapeCorrelationKernel.computeStatistics(x, 15, y, 15, 25), x, 15, y, 15);
+    PackedCorrelationData merged = PackedCorrelationData.merge(List.of(first, second));
+    FullCorrelationData full = new FullCorrelationData(pairs(x, 0, y, 0, 40));
+
+    Assertions.assertEquals(40, merged.getDPCount());
+    Assertions.assertEquals(full.getPearsonR(), merged.getPearsonR(), 1E-10);
+    Assertions.assertEquals(full.getCosineSimilarity(), merged.getCosineSimilarity(), 1E-10);
+    Assertions.assertArrayEquals(full.getData(), merged.getData());
+  }
+}
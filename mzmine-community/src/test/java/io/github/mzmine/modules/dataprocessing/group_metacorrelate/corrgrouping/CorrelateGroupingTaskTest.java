@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2004-2024 The mzmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataprocessing.group_metacorrelate.corrgrouping;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.github.mzmine.parameters.parametertypes.tolerances.RTTolerance;
+import io.github.mzmine.parameters.parametertypes.tolerances.RTTolerance.Unit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * The balanced blocks of RT windows need to compare the same row pairs as the previous loop over
+ * all rows that stopped at the first row outside the RT tolerance
+ */
+class CorrelateGroupingTaskTest {
+
+  private static float[] sortedRts(int n) {
+    final Random random = new Random(42);
+    final float[] rts = new float[n];
+    for (int i = 0; i < n; i++) {
+      // dense clusters and sparse regions
+      rts[i] = i % 50 < 40 ? 2f + random.nextFloat() : 2f + random.nextFloat() * 20f;
+    }
+    Arrays.sort(rts);
+    return rts;
+  }
+
+  private static List<long[]> previousPairs(float[] rts, RTTolerance tolerance) {
+    final List<long[]> pairs = new ArrayList<>();
+    for (int i = 0; i < rts.length - 1; i++) {
+      for (int x = i + 1; x < rts.length; x++) {
+        if (!tolerance.checkWithinTolerance(rts[i], rts[x])) {
+          break;
+        }
+        pairs.add(new long[]{i, x});
+      }
+    }
+    return pairs;
+  }
+
+  private static List<long[]> blockPairs(int[] windowEnd, int[] blocks) {
+    final List<long[]> pairs = new ArrayList<>();
+    for (int b = 0; b < blocks.length - 1; b++) {
+      for (int i = blocks[b]; i < blocks[b + 1]; i++) {
+        for (int x = i + 1; x < windowEnd[i]; x++) {
+          pairs.add(new long[]{i, x});
+        }
+      }
+    }
+    return pairs;
+  }
+
+  @Test
+  void testSameComparisonsAsRowLoop() {
+    final float[] rts = sortedRts(2_000);
+    for (RTTolerance tolerance : List.of(new RTTolerance(0.01f, Unit.MINUTES),
+        new RTTolerance(0.5f, Unit.PERCENT), new RTTolerance(100f, Unit.MINUTES))) {
+      final int[] windowEnd = CorrelateGroupingTask.findRtWindowEnds(rts, tolerance);
+      final List<long[]> expected = previousPairs(rts, tolerance);
+      for (int numBlocks : new int[]{1, 7, 64, 10_000}) {
+        final int[] blocks = CorrelateGroupingTask.createBalancedBlocks(windowEnd, numBlocks);
+        final List<long[]> actual = blockPairs(windowEnd, blocks);
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+          assertArrayEquals(expected.get(i), actual.get(i));
+        }
+      }
+    }
+  }
+
+  @Test
+  void testBalancedBlocks() {
+    final float[] rts = sortedRts(2_000);
+    final int[] windowEnd = CorrelateGroupingTask.findRtWindowEnds(rts,
+        new RTTolerance(0.05f, Unit.MINUTES));
+    long total = 0;
+    int maxRowComparisons = 0;
+    for (int i = 0; i < windowEnd.length; i++) {
+      total += windowEnd[i] - i - 1;
+      maxRowComparisons = Math.max(maxRowComparisons, windowEnd[i] - i - 1);
+    }
+
+    final int numBlocks = 32;
+    final int[] blocks = CorrelateGroupingTask.createBalancedBlocks(windowEnd, numBlocks);
+    assertEquals(0, blocks[0]);
+    assertEquals(rts.length, blocks[blocks.length - 1]);
+    // all but the last block reach the target number of comparisons
+    final long perBlock = total / numBlocks;
+    assertTrue(blocks.length - 1 <= total / perBlock + 1, "blocks: " + (blocks.length - 1));
+    for (int b = 0; b < blocks.length - 1; b++) {
+      assertTrue(blocks[b] < blocks[b + 1]);
+      long comparisons = 0;
+      for (int i = blocks[b]; i < blocks[b + 1]; i++) {
+        comparisons += windowEnd[i] - i - 1;
+      }
+      // a block ends with the first row that reaches the target
+      assertTrue(comparisons < perBlock + maxRowComparisons,
+          "block %d has %d comparisons".formatted(b, comparisons));
+    }
+  }
+
+  @Test
+  void testFewRows() {
+    assertArrayEquals(new int[]{0, 1}, CorrelateGroupingTask.createBalancedBlocks(new int[]{1}, 8));
+    // no comparisons at all: one block
+    assertArrayEquals(new int[]{0, 3},
+        CorrelateGroupingTask.createBalancedBlocks(new int[]{1, 2, 3}, 8));
+  }
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2004-2023 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package io.github.mzmine.modules.dataprocessing.group_spectral_networking.modified_cosine;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import io.github.mzmine.datamodel.DataPoint;
+import io.github.mzmine.datamodel.features.FeatureListRow;
+import io.github.mzmine.datamodel.features.correlation.R2RMap;
+import io.github.mzmine.datamodel.features.correlation.R2RSpectralSimilarity;
+import io.github.mzmine.datamodel.features.correlation.RowsRelationship;
+import io.github.mzmine.datamodel.features.correlation.SpectralSimilarity;
+import io.github.mzmine.datamodel.impl.SimpleDataPoint;
+import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
+import io.github.mzmine.util.maths.Combinatorics;
+import io.github.mzmine.util.scans.ScanAlignment;
+import io.github.mzmine.util.scans.similarity.Weights;
+import java.util.AbstractMap.SimpleEntry;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+class TiledModifiedCosineEngineTest {
+
+  private static final MZTolerance mzTol = new MZTolerance(0.005, 10);
+  private static final int minMatch = 4;
+  private static final double minCosine = 0.5;
+
+  private static List<Entry<FeatureListRow, List<FilteredRowData>>> createRows(Random rand,
+      int numRows) {
+    double[] precursors = new double[numRows];
+    for (int i = 0; i < numRows; i++) {
+      precursors[i] = 150 + rand.nextDouble() * 400;
+    }
+    Arrays.sort(precursors);
+
+    // a few shared fragment sets to create similar spectra
+    double[][] templates = new double[10][];
+    for (int t = 0; t < templates.length; t++) {
+      templates[t] = new double[15];
+      for (int k = 0; k < templates[t].length; k++) {
+        templates[t][k] = 50 + rand.nextDouble() * 100;
+      }
+    }
+
+    List<Entry<FeatureListRow, List<FilteredRowData>>> rows = new ArrayList<>();
+    for (int i = 0; i < numRows; i++) {
+      FeatureListRow row = mock(FeatureListRow.class);
+      when(row.getID()).thenReturn(i + 1);
+      when(row.getAverageMZ()).thenReturn(precursors[i]);
+
+      List<FilteredRowData> spectra = new ArrayList<>();
+      final int numSpectra = 1 + rand.nextInt(2);
+      for (int s = 0; s < numSpectra; s++) {
+        double[] template = templates[rand.nextInt(templates.length)];
+        List<DataPoint> dps = new ArrayList<>();
+        for (double mz : template) {
+          if (rand.nextDouble() < 0.8) {
+            dps.add(new SimpleDataPoint(mz + (rand.nextDouble() - 0.5) * 0.004,
+                1 + rand.nextDouble() * 1000));
+          }
+        }
+        // shifted fragments that only match with the modification aware alignment
+        for (int k = 0; k < 5; k++) {
+          dps.add(new SimpleDataPoint(precursors[i] - 20 - rand.nextInt(30) * 1.0078,
+              1 + rand.nextDouble() * 1000));
+        }
+        // noise
+        for (int k = 0; k < 10; k++) {
+          dps.add(new SimpleDataPoint(50 + rand.nextDouble() * precursors[i],
+              1 + rand.nextDouble() * 200));
+        }
+        DataPoint[] sorted = dps.toArray(DataPoint[]::new);
+        Arrays.sort(sorted, ScanAlignment.sorter);
+        spectra.add(new FilteredRowData(row, sorted));
+      }
+      rows.add(new SimpleEntry<>(row, spectra));
+    }
+    return rows;
+  }
+
+  private static R2RMap<RowsRelationship> bruteForce(
+      List<Entry<FeatureListRow, List<FilteredRowData>>> rows, double maxMzDelta) {
+    R2RMap<RowsRelationship> map = new R2RMap<>();
+    for (int i = 0; i < rows.size(); i++) {
+      for (int j = i + 1; j < rows.size(); j++) {
+        var rowA = rows.get(i).getKey();
+        var rowB = rows.get(j).getKey();
+        if (maxMzDelta < rowB.getAverageMZ() - rowA.getAverageMZ()) {
+          break;
+        }
+        SpectralSimilarity best = null;
+        for (FilteredRowData a : rows.get(i).getValue()) {
+          for (FilteredRowData b : rows.get(j).getValue()) {
+            var result = ModifiedCosineSpectralNetworkingTask.createMS2SimModificationAware(mzTol,
+                Weights.SQRT, a.data(), b.data(), minMatch,
+                ModifiedCosineSpectralNetworkingTask::calcOverlap, rowA.getAverageMZ(),
+                rowB.getAverageMZ());
+            if (result != null && (best == null || result.cosine() > best.cosine())) {
+              best = result;
+            }
+          }
+        }
+        if (best != null && best.cosine() >= minCosine) {
+          map.add(rowA, rowB, new R2RSpectralSimilarity(rowA, rowB,
+              RowsRelationship.Type.MS2_COSINE_SIM, best));
+        }
+      }
+    }
+    return map;
+  }
+
+  @Test
+  void testTiledEngineEqualsBruteForce() {
+    final Random rand = new Random(42);
+    final var rows = createRows(rand, 400);
+    for (double maxMzDelta : new double[]{Double.MAX_VALUE, 50}) {
+      final var expected = bruteForce(rows, maxMzDelta);
+      assertTrue(expected.size() > 0);
+
+      final var engine = new TiledModifiedCosineEngine(rows, mzTol, Weights.SQRT, minMatch,
+          minCosine, maxMzDelta);
+      assertTrue(engine.getNumBlocks() > 1);
+      final var actual = new R2RMap<RowsRelationship>();
+      final AtomicLong processedPairs = new AtomicLong();
+      engine.processAllPairs(actual, processedPairs, () -> false);
+
+      // progress covers all pairs, also the ones that were skipped
+      assertEquals(Combinatorics.uniquePairs(rows.size()), processedPairs.get());
+      assertTrue(engine.getPrunedSpectraPairs() > 0);
+
+      assertEquals(expected.keySet(), actual.keySet());
+      for (var entry : expected.entrySet()) {
+        var actualSim = actual.get(entry.getKey());
+        assertNotNull(actualSim);
+        assertEquals(entry.getValue().getScore(), actualSim.getScore(), 0d);
+      }
+    }
+  }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2004-2024 The mzmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataprocessing.id_spectral_library_match;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.github.mzmine.datamodel.DataPoint;
+import io.github.mzmine.datamodel.impl.SimpleDataPoint;
+import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
+import io.github.mzmine.util.collections.IndexRange;
+import io.github.mzmine.util.scans.similarity.SpectralSimilarityFunction;
+import io.github.mzmine.util.scans.similarity.impl.cosine.WeightedCosineSpectralSimilarity;
+import io.github.mzmine.util.spectraldb.entry.SpectralDBEntry;
+import io.github.mzmine.util.spectraldb.entry.SpectralLibraryEntry;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class SpectralLibraryFragmentIndexTest {
+
+  private static final MZTolerance mzTol = new MZTolerance(0.005, 10);
+
+  private static List<SpectralLibraryEntry> createLibrary(Random rand, int numEntries) {
+    List<SpectralLibraryEntry> entries = new ArrayList<>();
+    for (int e = 0; e < numEntries; e++) {
+      int n = 5 + rand.nextInt(20);
+      double[] mzs = new double[n];
+      double[] intensities = new double[n];
+      for (int i = 0; i < n; i++) {
+        // coarse m/z grid to create many shared fragments
+        mzs[i] = 50 + rand.nextInt(400) * 0.5 + rand.nextDouble() * 0.004;
+        intensities[i] = 1 + rand.nextDouble() * 1000;
+      }
+      Arrays.sort(mzs);
+      entries.add(new SpectralDBEntry(null, mzs, intensities));
+    }
+    return entries;
+  }
+
+  private static DataPoint[] copyAsQuery(Random rand, SpectralLibraryEntry entry) {
+    DataPoint[] dps = entry.getDataPoints();
+    DataPoint[] query = new DataPoint[dps.length];
+    for (int i = 0; i < dps.length; i++) {
+      query[i] = new SimpleDataPoint(dps[i].getMZ() + (rand.nextDouble() - 0.5) * 0.004,
+          dps[i].getIntensity() * (0.5 + rand.nextDouble()));
+    }
+    return query;
+  }
+
+  @Test
+  void testIndexFindsAllBruteForceMatches() {
+    final Random rand = new Random(42);
+    final List<SpectralLibraryEntry> entries = createLibrary(rand, 2000);
+    final SpectralLibraryFragmentIndex index = new SpectralLibraryFragmentIndex(entries, mzTol);
+    final SpectralSimilarityFunction simFunction = new WeightedCosineSpectralSimilarity();
+    final int minMatch = 4;
+
+    for (int q = 0; q < 50; q++) {
+      final DataPoint[] query = copyAsQuery(rand, entries.get(rand.nextInt(entries.size())));
+      final int[] candidates = index.findCandidates(IndexRange.ofExclusive(0, entries.size()),
+          query, minMatch, simFunction, true);
+
+      // candidates are sorted
+      int[] sorted = candidates.clone();
+      Arrays.sort(sorted);
+      assertArrayEquals(sorted, candidates);
+
+      for (int e = 0; e < entries.size(); e++) {
+        var sim = simFunction.getSimilarity(mzTol, minMatch, entries.get(e).getDataPoints(),
+            query);
+        if (sim != null) {
+          assertTrue(Arrays.binarySearch(candidates, e) >= 0,
+              "Brute force match %d is missing in index candidates".formatted(e));
+        }
+      }
+    }
+  }
+
+  @Test
+  void testIndexRespectsEntryRange() {
+    final Random rand = new Random(7);
+    final List<SpectralLibraryEntry> entries = createLibrary(rand, 500);
+    final SpectralLibraryFragmentIndex index = new SpectralLibraryFragmentIndex(entries, mzTol);
+    final DataPoint[] query = copyAsQuery(rand, entries.get(250));
+
+    final int[] candidates = index.findCandidates(IndexRange.ofInclusive(200, 300), query, 4,
+        null, false);
+    assertTrue(Arrays.binarySearch(candidates, 250) >= 0);
+    for (int e : candidates) {
+      assertTrue(e >= 200 && e <= 300);
+    }
+  }
+}
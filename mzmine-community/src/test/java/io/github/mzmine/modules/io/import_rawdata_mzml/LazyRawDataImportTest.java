@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2004-2024 The mzmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.io.import_rawdata_mzml;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.Scan;
+import io.github.mzmine.datamodel.impl.SourceBackedScan;
+import io.github.mzmine.modules.io.import_rawdata_all.AdvancedSpectraImportParameters;
+import io.github.mzmine.modules.io.import_rawdata_all.AllSpectralDataImportModule;
+import io.github.mzmine.modules.io.import_rawdata_all.AllSpectralDataImportParameters;
+import io.github.mzmine.modules.io.import_rawdata_all.spectral_processor.MsProcessor;
+import io.github.mzmine.modules.io.import_rawdata_all.spectral_processor.MsProcessorList;
+import io.github.mzmine.modules.io.import_rawdata_all.spectral_processor.ScanImportProcessorConfig;
+import io.github.mzmine.modules.io.import_rawdata_all.spectral_processor.processors.MassDetectorMsProcessor;
+import io.github.mzmine.modules.io.import_rawdata_all.spectral_processor.processors.SortByMzMsProcessor;
+import io.github.mzmine.modules.tools.batchwizard.subparameters.MassDetectorWizardOptions;
+import io.github.mzmine.parameters.parametertypes.selectors.ScanSelection;
+import io.github.mzmine.project.impl.MZmineProjectImpl;
+import java.io.File;
+import java.time.Instant;
+import java.util.List;
+import java.util.Objects;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Compares the raw data of the lazy raw data import, which decodes the data points from the mzML
+ * file on demand, with the regular import that stores all data points.
+ */
+class LazyRawDataImportTest {
+
+  private static final String FILE = "rawdatafiles/additional/gc_orbi_profile_21scans.mzML";
+
+  private static RawDataFile importFile(ScanImportProcessorConfig config) {
+    final File file = new File(
+        Objects.requireNonNull(LazyRawDataImportTest.class.getClassLoader().getResource(FILE))
+            .getFile());
+    final MSDKmzMLImportTask task = new MSDKmzMLImportTask(new MZmineProjectImpl(), file, config,
+        AllSpectralDataImportModule.class, new AllSpectralDataImportParameters(), Instant.now(),
+        null);
+    return task.importStreamOrFile();
+  }
+
+  @Test
+  void testSourceBackedScansEqualEagerScans() {
+    final RawDataFile eager = importFile(ScanImportProcessorConfig.createDefault());
+
+    final var advanced = AdvancedSpectraImportParameters.create(
+        MassDetectorWizardOptions.ABSOLUTE_NOISE_LEVEL, 0d, 0d, null, ScanSelection.ALL_SCANS,
+        false);
+    final List<MsProcessor> processors = List.of(new SortByMzMsProcessor(),
+        new MassDetectorMsProcessor(advanced));
+    final RawDataFile lazy = importFile(
+        new ScanImportProcessorConfig(ScanSelection.ALL_SCANS, new MsProcessorList(processors),
+            true));
+
+    assertNotNull(eager);
+    assertNotNull(lazy);
+    assertEquals(21, eager.getNumOfScans());
+    assertEquals(eager.getNumOfScans(), lazy.getNumOfScans());
+
+    for (int s = 0; s < eager.getNumOfScans(); s++) {
+      final Scan expected = eager.getScan(s);
+      final Scan actual = lazy.getScan(s);
+      assertInstanceOf(SourceBackedScan.class, actual);
+      assertNotNull(actual.getMassList());
+
+      assertEquals(expected.getScanNumber(), actual.getScanNumber());
+      assertEquals(expected.getNumberOfDataPoints(), actual.getNumberOfDataPoints());
+      for (int i = 0; i < expected.getNumberOfDataPoints(); i++) {
+        assertEquals(expected.getMzValue(i), actual.getMzValue(i));
+        assertEquals(expected.getIntensityValue(i), actual.getIntensityValue(i));
+      }
+      assertEquals(expected.getTIC(), actual.getTIC(), 1E-6 * expected.getTIC());
+      assertEquals(expected.getBasePeakMz(), actual.getBasePeakMz());
+      assertEquals(expected.getDataPointMZRange(), actual.getDataPointMZRange());
+    }
+  }
+}
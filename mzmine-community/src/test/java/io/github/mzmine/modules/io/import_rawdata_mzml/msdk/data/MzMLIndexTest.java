@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package io.github.mzmine.modules.io.import_rawdata_mzml.msdk.data;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.foreign.MemorySegment;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Test;
+
+class MzMLIndexTest {
+
+  private static final int NUM_SPECTRA = 5;
+
+  /**
+   * @param shiftOffsets simulates a file that was changed after writing the index
+   */
+  private static String createMzML(long[] offsets, boolean shiftOffsets) {
+    final StringBuilder b = new StringBuilder("""
+        <?xml version="1.0" encoding="utf-8"?>
+        <indexedmzML><mzML><run id="run"><spectrumList count="5" defaultDataProcessingRef="dp">
+        """);
+    for (int i = 0; i < NUM_SPECTRA; i++) {
+      offsets[i] = b.length();
+      b.append("""
+          <spectrum index="%d" id="scan=%d" defaultArrayLength="0"></spectrum>
+          """.formatted(i, i + 100));
+    }
+    b.append("""
+        </spectrumList><chromatogramList count="1">
+        <chromatogram index="0" id="TIC" defaultArrayLength="0"></chromatogram>
+        </chromatogramList></run></mzML>
+        """);
+    final long indexListOffset = b.length();
+    b.append("<indexList count=\"1\"><index name=\"spectrum\">");
+    for (int i = 0; i < NUM_SPECTRA; i++) {
+      b.append("<offset idRef=\"scan=%d\">%d</offset>".formatted(i + 100,
+          offsets[i] + (shiftOffsets ? 2 : 0)));
+    }
+    b.append("</index></indexList>\n<indexListOffset>%d</indexListOffset></indexedmzML>".formatted(
+        indexListOffset));
+    return b.toString();
+  }
+
+  @Test
+  void testReadIndexList() {
+    final long[] offsets = new long[NUM_SPECTRA];
+    final String mzml = createMzML(offsets, false);
+    final MzMLIndex index = MzMLIndex.create(
+        MemorySegment.ofArray(mzml.getBytes(StandardCharsets.UTF_8)));
+
+    assertTrue(index.isFromIndexList());
+    assertEquals(NUM_SPECTRA, index.getNumSpectra());
+    for (int i = 0; i < NUM_SPECTRA; i++) {
+      assertEquals(offsets[i], index.getSpectrumOffset(i));
+      assertEquals("scan=" + (i + 100), index.getSpectrumId(i));
+    }
+  }
+
+  @Test
+  void testByteScanWithInvalidIndexList() {
+    final long[] offsets = new long[NUM_SPECTRA];
+    final String mzml = createMzML(offsets, true);
+    final MzMLIndex index = MzMLIndex.create(
+        MemorySegment.ofArray(mzml.getBytes(StandardCharsets.UTF_8)));
+
+    assertFalse(index.isFromIndexList());
+    assertEquals(NUM_SPECTRA, index.getNumSpectra());
+    for (int i = 0; i < NUM_SPECTRA; i++) {
+      assertEquals(offsets[i], index.getSpectrumOffset(i));
+      assertEquals("scan=" + (i + 100), index.getSpectrumId(i));
+    }
+    // chromatograms are not part of the index list in this file but are found by the byte scan
+    assertArrayEquals(new long[]{mzml.indexOf("<chromatogram ")}, index.getChromatogramOffsets());
+  }
+}
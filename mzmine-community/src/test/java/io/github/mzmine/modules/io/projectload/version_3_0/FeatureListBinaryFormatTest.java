@@ -0,0 +1,290 @@
+/*
+ * Copyright (c) 2004-2024 The mzmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.io.projectload.version_3_0;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.google.common.collect.Range;
+import io.github.mzmine.datamodel.FeatureStatus;
+import io.github.mzmine.datamodel.MZmineProject;
+import io.github.mzmine.datamodel.MassSpectrumType;
+import io.github.mzmine.datamodel.PolarityType;
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.Scan;
+import io.github.mzmine.datamodel.featuredata.IonTimeSeries;
+import io.github.mzmine.datamodel.featuredata.impl.SimpleIonTimeSeries;
+import io.github.mzmine.datamodel.features.ModularFeature;
+import io.github.mzmine.datamodel.features.ModularFeatureList;
+import io.github.mzmine.datamodel.features.ModularFeatureListRow;
+import io.github.mzmine.datamodel.features.types.DataType;
+import io.github.mzmine.datamodel.features.types.numbers.AreaType;
+import io.github.mzmine.datamodel.features.types.numbers.CCSType;
+import io.github.mzmine.datamodel.features.types.numbers.ChargeType;
+import io.github.mzmine.datamodel.features.types.numbers.HeightType;
+import io.github.mzmine.datamodel.features.types.numbers.MZType;
+import io.github.mzmine.datamodel.impl.SimpleScan;
+import io.github.mzmine.modules.io.projectsave.FeatureListBinaryFormat;
+import io.github.mzmine.modules.io.projectsave.FeatureListBinaryFormat.ValueKind;
+import io.github.mzmine.modules.io.projectsave.FeatureListBinaryWriter;
+import io.github.mzmine.project.impl.MZmineProjectImpl;
+import io.github.mzmine.project.impl.RawDataFileImpl;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map.Entry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class FeatureListBinaryFormatTest {
+
+  @TempDir
+  Path tempDir;
+
+  private final MZmineProject project = new MZmineProjectImpl();
+  private final RawDataFile fileA = new RawDataFileImpl("file_a", null, null);
+  private final RawDataFile fileB = new RawDataFileImpl("file_b", null, null);
+  private ModularFeatureList flist;
+
+  private static List<Scan> addScans(RawDataFile file, int numScans) {
+    final List<Scan> scans = new ArrayList<>();
+    for (int i = 0; i < numScans; i++) {
+      final Scan scan = new SimpleScan(file, i + 1, 1, 0.1f * i, null, new double[]{200d + i},
+          new double[]{1000d * i}, MassSpectrumType.CENTROIDED, PolarityType.POSITIVE, "",
+          Range.closed(100d, 500d));
+      file.addScan(scan);
+      scans.add(scan);
+    }
+    return scans;
+  }
+
+  private static IonTimeSeries<Scan> series(List<Scan> scans, int from, int to, double mz) {
+    final List<Scan> subList = scans.subList(from, to);
+    final double[] mzs = new double[subList.size()];
+    final double[] intensities = new double[subList.size()];
+    for (int i = 0; i < mzs.length; i++) {
+      mzs[i] = mz + i * 1E-4;
+      intensities[i] = 100d * (i + 1);
+    }
+    return new SimpleIonTimeSeries(null, mzs, intensities, subList);
+  }
+
+  @BeforeEach
+  void setUp() {
+    final List<Scan> scansA = addScans(fileA, 10);
+    final List<Scan> scansB = addScans(fileB, 8);
+    project.addFile(fileA);
+    project.addFile(fileB);
+    flist = new ModularFeatureList("flist", null, fileA, fileB);
+
+    // row with features in both files
+    final ModularFeatureListRow row1 = new ModularFeatureListRow(flist, 1);
+    final ModularFeature a1 = new ModularFeature(flist, fileA, series(scansA, 2, 7, 200.1),
+        FeatureStatus.DETECTED);
+    a1.set(CCSType.class, 150.5f);
+    final ModularFeature b1 = new ModularFeature(flist, fileB, series(scansB, 1, 4, 200.1),
+        FeatureStatus.ESTIMATED);
+    // missing and NaN values in a binary column
+    b1.set(CCSType.class, null);
+    b1.set(AreaType.class, Float.NaN);
+    row1.addFeature(fileA, a1);
+    row1.addFeature(fileB, b1);
+    row1.set(ChargeType.class, 2);
+    flist.addRow(row1);
+
+    // row with a single feature without feature data
+    final ModularFeatureListRow row2 = new ModularFeatureListRow(flist, 5);
+    final ModularFeature a2 = new ModularFeature(flist, fileA, FeatureStatus.DETECTED);
+    a2.set(MZType.class, 300.2);
+    a2.set(HeightType.class, 5E4f);
+    row2.addFeature(fileA, a2);
+    flist.addRow(row2);
+  }
+
+  private File write() throws IOException {
+    final File file = tempDir.resolve("flist_data.bin").toFile();
+    try (OutputStream out = new FileOutputStream(file)) {
+      new FeatureListBinaryWriter(flist).write(out, () -> false);
+    }
+    return file;
+  }
+
+  private ModularFeatureList read(File file, boolean lazy) throws IOException {
+    final ModularFeatureList loaded = new ModularFeatureList("loaded", null, fileA, fileB);
+    try (var reader = new FeatureListBinaryReader(file, lazy)) {
+      assertEquals(2, reader.getNumRows());
+      reader.createRows(loaded);
+      reader.readFeaturesAndColumns(project, loaded, () -> false);
+    }
+    // the reader is closed, lazy data needs to stay valid
+    return loaded;
+  }
+
+  private void assertSameFeatureList(ModularFeatureList loaded) {
+    assertEquals(flist.getNumberOfRows(), loaded.getNumberOfRows());
+    for (int r = 0; r < flist.getNumberOfRows(); r++) {
+      final ModularFeatureListRow row = (ModularFeatureListRow) flist.getRow(r);
+      final ModularFeatureListRow loadedRow = (ModularFeatureListRow) loaded.getRow(r);
+      assertEquals(row.getID(), loadedRow.getID());
+      assertEquals(row.getNumberOfFeatures(), loadedRow.getNumberOfFeatures());
+
+      for (final ModularFeature feature : row.getFeatures()) {
+        final ModularFeature loadedFeature = loadedRow.getFeature(feature.getRawDataFile());
+        assertNotNull(loadedFeature);
+        assertEquals(feature.getFeatureStatus(), loadedFeature.getFeatureStatus());
+        assertSameValues(feature.getMap().entrySet(), loadedFeature);
+
+        final IonTimeSeries<?> data = feature.getFeatureData();
+        final IonTimeSeries<?> loadedData = loadedFeature.getFeatureData();
+        if (data == null) {
+          assertNull(loadedData);
+          continue;
+        }
+        assertNotNull(loadedData);
+        assertEquals(data.getNumberOfValues(), loadedData.getNumberOfValues());
+        assertEquals(data.getSpectra(), loadedData.getSpectra());
+        for (int i = 0; i < data.getNumberOfValues(); i++) {
+          assertEquals(data.getMZ(i), loadedData.getMZ(i));
+          assertEquals(data.getIntensity(i), loadedData.getIntensity(i));
+        }
+      }
+    }
+  }
+
+  /**
+   * All numeric values are stored in binary columns in this test, other types would be loaded
+   * from the annotations xml
+   */
+  private static void assertSameValues(Iterable<Entry<DataType, Object>> expected,
+      ModularFeature loaded) {
+    for (final Entry<DataType, Object> entry : expected) {
+      if (FeatureListBinaryFormat.ValueKind.forType(entry.getKey()) != null) {
+        assertEquals(entry.getValue(), loaded.get(entry.getKey()), entry.getKey().getUniqueID());
+      }
+    }
+  }
+
+  @Test
+  void testRoundTripEager() throws IOException {
+    final ModularFeatureList loaded = read(write(), false);
+    assertSameFeatureList(loaded);
+
+    final ModularFeatureListRow row1 = (ModularFeatureListRow) loaded.getRow(0);
+    assertEquals(2, row1.get(ChargeType.class));
+    assertEquals(150.5f, row1.getFeature(fileA).get(CCSType.class));
+    assertNull(row1.getFeature(fileB).get(CCSType.class));
+    assertTrue(Float.isNaN(row1.getFeature(fileB).get(AreaType.class)));
+    final ModularFeature a2 = ((ModularFeatureListRow) loaded.getRow(1)).getFeature(fileA);
+    assertEquals(300.2, a2.get(MZType.class));
+    assertEquals(5E4f, a2.get(HeightType.class));
+    assertNull(a2.getFeatureData());
+  }
+
+  @Test
+  void testRoundTripLazy() throws IOException {
+    final ModularFeatureList loaded = read(write(), true);
+    assertSameFeatureList(loaded);
+  }
+
+  @Test
+  void testNewerVersionIsRejected() throws IOException {
+    final File file = write();
+    try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+      raf.seek(FeatureListBinaryFormat.MAGIC.length);
+      // little endian
+      raf.writeInt(Integer.reverseBytes(FeatureListBinaryFormat.VERSION + 1));
+    }
+    assertThrows(IOException.class, () -> new FeatureListBinaryReader(file, false));
+  }
+
+  @Test
+  void testFeatureStatusIdsAreStable() {
+    assertEquals(0, FeatureListBinaryFormat.featureStatusId(FeatureStatus.UNKNOWN));
+    assertEquals(1, FeatureListBinaryFormat.featureStatusId(FeatureStatus.DETECTED));
+    assertEquals(2, FeatureListBinaryFormat.featureStatusId(FeatureStatus.ESTIMATED));
+    assertEquals(3, FeatureListBinaryFormat.featureStatusId(FeatureStatus.MANUAL));
+    for (final FeatureStatus status : FeatureStatus.values()) {
+      assertEquals(status, FeatureListBinaryFormat.featureStatusForId(
+          FeatureListBinaryFormat.featureStatusId(status)));
+    }
+    assertNull(FeatureListBinaryFormat.featureStatusForId(-1));
+    assertNull(FeatureListBinaryFormat.featureStatusForId(FeatureStatus.values().length));
+
+    for (final ValueKind kind : ValueKind.values()) {
+      assertEquals(kind, ValueKind.forId(kind.getId()));
+    }
+    assertEquals(5, ValueKind.FEATURE_STATUS.getId());
+    assertNull(ValueKind.forId(ValueKind.values().length));
+  }
+
+  @Test
+  void testUnknownFeatureStatusIsRejected() throws IOException {
+    final File file = write();
+    final byte[] bytes = Files.readAllBytes(file.toPath());
+    final byte[] typeId = "feature_state".getBytes(StandardCharsets.UTF_8);
+    final int blockStart = indexOf(bytes, typeId) - 4;
+    assertTrue(blockStart > 0);
+    final long presentOffset = blockStart + FeatureListBinaryFormat.align8(4 + typeId.length + 4);
+    final long valuesOffset = presentOffset + FeatureListBinaryFormat.align8(3);
+    try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+      raf.seek(valuesOffset);
+      // little endian
+      raf.writeInt(Integer.reverseBytes(99));
+    }
+
+    final ModularFeatureList loaded = new ModularFeatureList("loaded", null, fileA, fileB);
+    try (var reader = new FeatureListBinaryReader(file, false)) {
+      reader.createRows(loaded);
+      final IOException e = assertThrows(IOException.class,
+          () -> reader.readFeaturesAndColumns(project, loaded, () -> false));
+      assertTrue(e.getMessage().contains("feature status id 99"), e.getMessage());
+    }
+  }
+
+  private static int indexOf(byte[] bytes, byte[] sequence) {
+    outer:
+    for (int i = 0; i <= bytes.length - sequence.length; i++) {
+      for (int j = 0; j < sequence.length; j++) {
+        if (bytes[i + j] != sequence[j]) {
+          continue outer;
+        }
+      }
+      return i;
+    }
+    return -1;
+  }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2004-2024 The mzmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package io.github.mzmine.modules.io.projectsave;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ProjectZipWriterTest {
+
+  @TempDir
+  Path tempDir;
+
+  private static String content(int i) {
+    return "entry %d\n".formatted(i).repeat(1000 * i + 1);
+  }
+
+  private static byte[] read(ZipFile zip, String name) throws IOException {
+    try (InputStream in = zip.getInputStream(zip.getEntry(name))) {
+      return in.readAllBytes();
+    }
+  }
+
+  @Test
+  void testEntriesInSubmissionOrder() throws IOException {
+    final File file = tempDir.resolve("project.zip").toFile();
+    final byte[] binary = new byte[1 << 20];
+    new Random(42).nextBytes(binary);
+    final File binaryFile = tempDir.resolve("raw.bin").toFile();
+    Files.write(binaryFile.toPath(), binary);
+
+    final List<String> names = new ArrayList<>();
+    try (ProjectZipWriter writer = new ProjectZipWriter(file, 4)) {
+      writer.submitDirect("version", true, out -> out.write("1".getBytes()));
+      names.add("version");
+      for (int i = 0; i < 20; i++) {
+        final int index = i;
+        writer.submit("list_" + i,
+            out -> out.write(content(index).getBytes(StandardCharsets.UTF_8)));
+        names.add("list_" + i);
+      }
+      writer.submitFile(binaryFile, "stored.bin", false);
+      writer.submitFile(binaryFile, "deflated.bin", true);
+      names.add("stored.bin");
+      names.add("deflated.bin");
+
+      assertThrows(ZipException.class, () -> writer.submit("version", out -> {
+      }));
+      writer.flush();
+    }
+
+    // readable by the zip file used to load projects
+    try (ZipFile zip = new ZipFile(file)) {
+      final List<String> entries = Collections.list(zip.entries()).stream().map(ZipEntry::getName)
+          .toList();
+      assertEquals(names, entries);
+      assertEquals(ZipEntry.STORED, zip.getEntry("stored.bin").getMethod());
+      assertEquals(ZipEntry.DEFLATED, zip.getEntry("deflated.bin").getMethod());
+      for (int i = 0; i < 20; i++) {
+        assertEquals(content(i), new String(read(zip, "list_" + i), StandardCharsets.UTF_8));
+      }
+      assertArrayEquals(binary, read(zip, "stored.bin"));
+      assertArrayEquals(binary, read(zip, "deflated.bin"));
+    }
+  }
+
+  @Test
+  void testEntriesLargerThanBufferLimitAreSpilled() throws IOException {
+    final File file = tempDir.resolve("spilled.zip").toFile();
+    final Random random = new Random(42);
+    final List<byte[]> data = new ArrayList<>();
+    // random data does not compress, so most entries exceed the shared in-memory limit
+    try (ProjectZipWriter writer = new ProjectZipWriter(file, 3, 50_000)) {
+      for (int i = 0; i < 10; i++) {
+        final byte[] bytes = new byte[20_000 * (i + 1)];
+        random.nextBytes(bytes);
+        data.add(bytes);
+        writer.submit("list_" + i, out -> out.write(bytes));
+      }
+      writer.flush();
+      assertEquals(0, writer.getBufferedBytes());
+    }
+
+    try (ZipFile zip = new ZipFile(file)) {
+      for (int i = 0; i < data.size(); i++) {
+        assertArrayEquals(data.get(i), read(zip, "list_" + i));
+      }
+    }
+  }
+}
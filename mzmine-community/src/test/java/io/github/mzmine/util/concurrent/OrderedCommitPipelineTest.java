@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+
+package io.github.mzmine.util.concurrent;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+
+class OrderedCommitPipelineTest {
+
+  @Test
+  void testCommitsInSubmissionOrder() {
+    final List<Integer> committed = new ArrayList<>();
+    try (var pipeline = new OrderedCommitPipeline(4, 8)) {
+      for (int i = 0; i < 500; i++) {
+        final int scan = i;
+        pipeline.submit(() -> {
+          // later scans may finish first
+          Thread.sleep(scan % 3);
+          return () -> committed.add(scan);
+        });
+      }
+      pipeline.finish();
+    }
+    assertEquals(IntStream.range(0, 500).boxed().toList(), committed);
+  }
+
+  @Test
+  void testSingleThreadAndSkippedScans() {
+    final List<Integer> committed = new ArrayList<>();
+    try (var pipeline = new OrderedCommitPipeline(1, 1)) {
+      for (int i = 0; i < 10; i++) {
+        final int scan = i;
+        // null commit skips the scan
+        pipeline.submit(() -> scan % 2 == 0 ? () -> committed.add(scan) : null);
+      }
+      pipeline.finish();
+    }
+    assertEquals(List.of(0, 2, 4, 6, 8), committed);
+  }
+
+  @Test
+  void testConcurrentPipelinesShareWorkers() throws Exception {
+    final int threads = 3;
+    final Set<Thread> workers = ConcurrentHashMap.newKeySet();
+    final ExecutorService tasks = Executors.newFixedThreadPool(threads);
+    try {
+      // like several mass detection tasks that each use the number of threads
+      final List<Future<List<Integer>>> results = new ArrayList<>();
+      for (int t = 0; t < threads; t++) {
+        results.add(tasks.submit(() -> {
+          final List<Integer> committed = new ArrayList<>();
+          try (var pipeline = new OrderedCommitPipeline(threads, threads * 2)) {
+            for (int i = 0; i < 100; i++) {
+              final int scan = i;
+              pipeline.submit(() -> {
+                workers.add(Thread.currentThread());
+                Thread.sleep(scan % 2);
+                return () -> committed.add(scan);
+              });
+            }
+            pipeline.finish();
+          }
+          return committed;
+        }));
+      }
+      for (Future<List<Integer>> result : results) {
+        assertEquals(IntStream.range(0, 100).boxed().toList(), result.get());
+      }
+    } finally {
+      tasks.shutdownNow();
+    }
+    assertEquals(threads, OrderedCommitPipeline.getSharedPoolSize());
+    assertTrue(workers.size() <= threads, "Workers: " + workers.size());
+  }
+
+  @Test
+  void testErrorIsThrownInSubmittingThread() {
+    try (var pipeline = new OrderedCommitPipeline(2, 4)) {
+      pipeline.submit(() -> {
+        throw new IllegalStateException("corrupt binary data");
+      });
+      assertThrows(IllegalStateException.class, pipeline::finish);
+    }
+  }
+}
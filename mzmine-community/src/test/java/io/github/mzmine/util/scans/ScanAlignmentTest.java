@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2004-2023 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.util.scans;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import io.github.mzmine.datamodel.DataPoint;
+import io.github.mzmine.datamodel.features.correlation.SpectralSimilarity;
+import io.github.mzmine.datamodel.impl.SimpleDataPoint;
+import io.github.mzmine.modules.dataprocessing.group_spectral_networking.modified_cosine.ModifiedCosineSpectralNetworkingTask;
+import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
+import io.github.mzmine.util.DataPointUtils;
+import io.github.mzmine.util.maths.similarity.Similarity;
+import io.github.mzmine.util.scans.similarity.Weights;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class ScanAlignmentTest {
+
+  private static final MZTolerance mzTol = new MZTolerance(0.005, 10);
+
+  private static DataPoint[] randomSpectrum(Random rand) {
+    int n = 1 + rand.nextInt(40);
+    DataPoint[] dps = new DataPoint[n];
+    for (int i = 0; i < n; i++) {
+      // coarse grid creates competing signals within tolerance
+      double mz = 50 + rand.nextInt(150) * 0.5 + rand.nextDouble() * 0.008;
+      // equal intensities check the m/z tie breaker
+      double intensity = 1 + rand.nextInt(50) * 10;
+      dps[i] = new SimpleDataPoint(mz, intensity);
+    }
+    Arrays.sort(dps, ScanAlignment.sorter);
+    return dps;
+  }
+
+  @Test
+  void testPrimitiveAlignmentEqualsLegacy() {
+    final Random rand = new Random(42);
+    final AlignmentBuffers buffers = AlignmentBuffers.get();
+    for (int i = 0; i < 500; i++) {
+      final DataPoint[] a = randomSpectrum(rand);
+      final DataPoint[] b = randomSpectrum(rand);
+      final List<DataPoint[]> legacy = ScanAlignment.alignOfSorted(mzTol, a, b);
+
+      final double[][] dataA = DataPointUtils.getDataPointsAsDoubleArray(a);
+      final double[][] dataB = DataPointUtils.getDataPointsAsDoubleArray(b);
+      final int overlap = ScanAlignment.alignOfSorted(mzTol, dataA[0], a.length, dataB[0],
+          b.length, buffers);
+
+      assertEquals(ModifiedCosineSpectralNetworkingTask.calcOverlap(legacy), overlap);
+      for (int j = 0; j < a.length; j++) {
+        final int match = buffers.getMatchA(j);
+        assertSame(legacy.get(j)[0], a[j]);
+        if (match == -1) {
+          assertNull(legacy.get(j)[1]);
+        } else {
+          assertSame(legacy.get(j)[1], b[match]);
+        }
+      }
+
+      final double[][] matrix = ScanAlignment.toIntensityMatrixWeighted(legacy, 0.5, 0);
+      final double legacyCosine = Similarity.COSINE.calc(matrix);
+      final double cosine = ScanAlignment.weightedCosine(dataA[0], dataA[1], a.length, dataB[0],
+          dataB[1], b.length, 0.5, 0, true, true, buffers);
+      assertEquals(legacyCosine, cosine, 0d);
+    }
+  }
+
+  @Test
+  void testPrimitiveModifiedCosineEqualsLegacy() {
+    final Random rand = new Random(7);
+    for (int i = 0; i < 500; i++) {
+      final DataPoint[] a = randomSpectrum(rand);
+      final DataPoint[] b = randomSpectrum(rand);
+      final double precursorA = 200 + rand.nextDouble() * 10;
+      final double precursorB = rand.nextBoolean() ? -1 : 200 + rand.nextDouble() * 10;
+
+      // legacy on the aligned data point list with a custom overlap function
+      final SpectralSimilarity legacy = ModifiedCosineSpectralNetworkingTask.createMS2SimModificationAware(
+          mzTol, Weights.SQRT, a, b, 2, ModifiedCosineSpectralNetworkingTask::calcOverlap,
+          precursorA, precursorB);
+
+      final double[][] dataA = DataPointUtils.getDataPointsAsDoubleArray(a);
+      final double[][] dataB = DataPointUtils.getDataPointsAsDoubleArray(b);
+      final SpectralSimilarity primitive = ModifiedCosineSpectralNetworkingTask.createMS2SimModificationAware(
+          mzTol, Weights.SQRT, dataA[0], dataA[1], dataB[0], dataB[1], 2, precursorA,
+          precursorB);
+
+      if (legacy == null) {
+        assertNull(primitive);
+      } else {
+        assertEquals(legacy, primitive);
+      }
+    }
+  }
+}
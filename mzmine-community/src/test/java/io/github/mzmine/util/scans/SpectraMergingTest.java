@@ -0,0 +1,190 @@
+/*
+ * Copyright (c) 2004-2024 The mzmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.util.scans;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+import com.google.common.collect.Range;
+import com.google.common.collect.RangeMap;
+import com.google.common.collect.TreeRangeMap;
+import io.github.mzmine.datamodel.MassSpectrum;
+import io.github.mzmine.datamodel.impl.SimpleMassSpectrum;
+import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
+import io.github.mzmine.util.DataPointSorter;
+import io.github.mzmine.util.maths.CenterFunction;
+import io.github.mzmine.util.maths.CenterMeasure;
+import io.github.mzmine.util.maths.Weighting;
+import io.github.mzmine.util.scans.SpectraMerging.IntensityMergingType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Random;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import org.junit.jupiter.api.Test;
+
+class SpectraMergingTest {
+
+  private static final List<MZTolerance> tolerances = List.of(new MZTolerance(0.005, 15),
+      new MZTolerance(0.001, 50), new MZTolerance(0, 0));
+
+  private static List<MassSpectrum> randomSpectra(Random rand, double maxMz) {
+    final int numSpectra = 1 + rand.nextInt(12);
+    final List<MassSpectrum> spectra = new ArrayList<>();
+    for (int s = 0; s < numSpectra; s++) {
+      final int n = rand.nextInt(60);
+      final double[] mzs = new double[n];
+      final double[] intensities = new double[n];
+      for (int i = 0; i < n; i++) {
+        // coarse grid creates competing signals within tolerance, also from the same spectrum
+        mzs[i] = 50 + rand.nextInt(40) * (maxMz - 50) / 40 + rand.nextDouble() * 0.03;
+        // equal intensities check the m/z tie breaker
+        intensities[i] = rand.nextInt(20) * 10;
+      }
+      Arrays.sort(mzs);
+      spectra.add(new SimpleMassSpectrum(mzs, intensities));
+    }
+    return spectra;
+  }
+
+  private static List<CenterFunction> centerFunctions() {
+    final List<CenterFunction> functions = new ArrayList<>();
+    for (CenterMeasure measure : CenterMeasure.values()) {
+      for (Weighting weighting : Weighting.values()) {
+        functions.add(new CenterFunction(measure, weighting));
+      }
+    }
+    functions.add(new CenterFunction(CenterMeasure.AVG, Weighting.logger10, 25, 1.5));
+    return functions;
+  }
+
+  @Test
+  void testKernelEqualsLegacyMerging() {
+    final Random rand = new Random(42);
+    final List<CenterFunction> centerFunctions = centerFunctions();
+    for (int i = 0; i < 30; i++) {
+      final List<MassSpectrum> spectra = randomSpectra(rand, i % 2 == 0 ? 150 : 1500);
+      for (MZTolerance tolerance : tolerances) {
+        for (IntensityMergingType type : IntensityMergingType.values()) {
+          for (CenterFunction center : centerFunctions) {
+            final Double inputNoise = rand.nextBoolean() ? null : 15d;
+            final Double outputNoise = rand.nextBoolean() ? null : 40d;
+            final Integer minPeaks = rand.nextBoolean() ? null : 2;
+
+            final double[][] expected = legacyMerge(spectra, tolerance, type, center, inputNoise,
+                outputNoise, minPeaks);
+            final double[][] actual = SpectraMerging.calculatedMergedMzsAndIntensities(spectra,
+                tolerance, type, center, inputNoise, outputNoise, minPeaks);
+            assertArrayEquals(expected[0], actual[0]);
+            assertArrayEquals(expected[1], actual[1]);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Former implementation of {@link SpectraMerging#calculatedMergedMzsAndIntensities} as reference
+   */
+  private static double[][] legacyMerge(Collection<? extends MassSpectrum> source,
+      MZTolerance tolerance, IntensityMergingType intensityMergingType,
+      CenterFunction mzCenterFunction, Double inputNoiseLevel, Double outputNoiseLevel,
+      Integer minNumPeaks) {
+    final List<IndexedDataPoint> dataPoints = new ArrayList<>();
+    int index = 0;
+    for (MassSpectrum spectrum : source) {
+      for (int i = 0; i < spectrum.getNumberOfDataPoints(); i++) {
+        if (inputNoiseLevel == null || spectrum.getIntensityValue(i) > inputNoiseLevel) {
+          dataPoints.add(
+              new IndexedDataPoint(spectrum.getMzValue(i), spectrum.getIntensityValue(i), index));
+        }
+      }
+      index++;
+    }
+    dataPoints.sort(DataPointSorter.DEFAULT_INTENSITY);
+
+    final RangeMap<Double, SortedSet<IndexedDataPoint>> dataPointRanges = TreeRangeMap.create();
+    for (IndexedDataPoint dp : dataPoints) {
+      SortedSet<IndexedDataPoint> dplist = dataPointRanges.get(dp.getMZ());
+      boolean containsIndex = false;
+      if (dplist == null) {
+        dplist = new TreeSet<>(Comparator.comparingInt(IndexedDataPoint::getIndex));
+        final Range<Double> range = SpectraMerging.createNewNonOverlappingRange(dataPointRanges,
+            tolerance.getToleranceRange(dp.getMZ()));
+        dataPointRanges.put(range, dplist);
+      } else {
+        if (dp.getIndex() > dplist.first().getIndex() && dp.getIndex() < dplist.last().getIndex()) {
+          for (IndexedDataPoint indexedDataPoint : dplist) {
+            if (dp.getIndex() == indexedDataPoint.getIndex()) {
+              containsIndex = true;
+              break;
+            }
+            if (dp.getIndex() > indexedDataPoint.getIndex()) {
+              break;
+            }
+          }
+        }
+        if (containsIndex) {
+          dplist = new TreeSet<>(Comparator.comparingInt(IndexedDataPoint::getIndex));
+          final Range<Double> range = SpectraMerging.createNewNonOverlappingRange(dataPointRanges,
+              tolerance.getToleranceRange(dp.getMZ()));
+          dataPointRanges.put(range, dplist);
+        }
+      }
+      // the set keeps the first (most intense) data point of each spectrum
+      dplist.add(dp);
+    }
+
+    final List<Double> newMzs = new ArrayList<>();
+    final List<Double> newIntensities = new ArrayList<>();
+    for (Entry<Range<Double>, SortedSet<IndexedDataPoint>> entry : dataPointRanges.asMapOfRanges()
+        .entrySet()) {
+      if (minNumPeaks != null && entry.getValue().size() < minNumPeaks) {
+        continue;
+      }
+      final double[] mzs = entry.getValue().stream().mapToDouble(IndexedDataPoint::getMZ)
+          .toArray();
+      final double[] intensities = entry.getValue().stream()
+          .mapToDouble(IndexedDataPoint::getIntensity).toArray();
+
+      final double newMz = mzCenterFunction.calcCenter(mzs, intensities);
+      final double newIntensity = switch (intensityMergingType) {
+        case SUMMED -> Arrays.stream(intensities).sum();
+        case MAXIMUM -> Arrays.stream(intensities).max().orElse(0d);
+        case AVERAGE -> Arrays.stream(intensities).average().orElse(0d);
+      };
+      if (outputNoiseLevel == null || newIntensity > outputNoiseLevel) {
+        newMzs.add(newMz);
+        newIntensities.add(newIntensity);
+      }
+    }
+    return new double[][]{newMzs.stream().mapToDouble(Double::doubleValue).toArray(),
+        newIntensities.stream().mapToDouble(Double::doubleValue).toArray()};
+  }
+}
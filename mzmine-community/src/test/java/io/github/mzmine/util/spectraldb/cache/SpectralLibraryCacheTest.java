@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2004-2024 The mzmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.util.spectraldb.cache;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.github.mzmine.util.spectraldb.cache.SpectralLibraryCacheFormat.SourceInfo;
+import io.github.mzmine.util.spectraldb.entry.DBEntryField;
+import io.github.mzmine.util.spectraldb.entry.SpectralDBEntry;
+import io.github.mzmine.util.spectraldb.entry.SpectralLibrary;
+import io.github.mzmine.util.spectraldb.entry.SpectralLibraryEntry;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class SpectralLibraryCacheTest {
+
+  @TempDir
+  Path dir;
+
+  private File createSource(String name, String content) throws IOException {
+    final Path source = Files.createDirectories(dir.resolve("libraries")).resolve(name);
+    Files.writeString(source, content);
+    return source.toFile();
+  }
+
+  private static SpectralLibrary createLibrary(File source) {
+    final SpectralLibrary library = new SpectralLibrary(null, source);
+    for (int e = 0; e < 50; e++) {
+      final Map<DBEntryField, Object> fields = new HashMap<>();
+      fields.put(DBEntryField.NAME, "Compound " + e);
+      fields.put(DBEntryField.INSTRUMENT, "Orbitrap");
+      fields.put(DBEntryField.SYNONYMS, List.of("synonym " + e, "other"));
+      fields.put(DBEntryField.MS_LEVEL, 2);
+      // some entries without precursor
+      if (e % 5 != 0) {
+        fields.put(DBEntryField.PRECURSOR_MZ, 1000d - e * 13.123456789);
+      }
+      final double[] mzs = new double[e % 7];
+      final double[] intensities = new double[mzs.length];
+      for (int i = 0; i < mzs.length; i++) {
+        mzs[i] = 50 + i * 10.0001;
+        intensities[i] = e + i * 0.5;
+      }
+      library.addEntry(new SpectralDBEntry(null, mzs, intensities, fields, library));
+    }
+    return library;
+  }
+
+  @Test
+  void testWriteAndLoad() throws IOException {
+    final File source = createSource("library.msp", "NAME: some library content");
+    final SpectralLibrary library = createLibrary(source);
+    final SourceInfo info = SpectralLibraryCacheFormat.readSourceInfo(source);
+    final File cacheDirectory = dir.resolve("cache").toFile();
+
+    final File cache = SpectralLibraryCache.write(library, info, cacheDirectory, () -> false);
+    assertEquals(SpectralLibraryCacheFormat.getCacheFile(cacheDirectory, source), cache);
+    assertTrue(cache.isFile());
+    // nothing is written next to the library file
+    try (var files = Files.list(source.toPath().getParent())) {
+      assertEquals(List.of(source.toPath()), files.toList());
+    }
+
+    final SpectralLibrary loaded = SpectralLibraryCache.load(source, info, cacheDirectory);
+    assertNotNull(loaded);
+    assertTrue(loaded.isCompiled());
+    assertEquals(library.size(), loaded.size());
+    for (int i = 0; i < library.size(); i++) {
+      final SpectralLibraryEntry expected = library.getEntries().get(i);
+      final SpectralLibraryEntry actual = loaded.getEntries().get(i);
+      assertEquals(expected.getFields(), actual.getFields());
+      assertArrayEquals(expected.getMzValues(new double[expected.getNumberOfDataPoints()]),
+          actual.getMzValues(new double[actual.getNumberOfDataPoints()]));
+      assertArrayEquals(
+          expected.getIntensityValues(new double[expected.getNumberOfDataPoints()]),
+          actual.getIntensityValues(new double[actual.getNumberOfDataPoints()]));
+      assertSame(loaded, ((SpectralDBEntry) actual).getLibrary());
+      // entries are created once
+      assertSame(actual, loaded.getEntries().get(i));
+    }
+
+    final var precursorIndex = library.getPrecursorMzIndex();
+    final var loadedPrecursorIndex = loaded.getPrecursorMzIndex();
+    assertArrayEquals(precursorIndex.entries(), loadedPrecursorIndex.entries());
+    assertArrayEquals(precursorIndex.precursorMzs(), loadedPrecursorIndex.precursorMzs());
+  }
+
+  @Test
+  void testChangedSourceInvalidatesCache() throws IOException {
+    final File source = createSource("library.mgf", "BEGIN IONS");
+    final SpectralLibrary library = createLibrary(source);
+    final File cacheDirectory = dir.resolve("cache").toFile();
+    SpectralLibraryCache.write(library, SpectralLibraryCacheFormat.readSourceInfo(source),
+        cacheDirectory, () -> false);
+
+    Files.writeString(source.toPath(), "BEGIN IONS changed");
+    assertNull(SpectralLibraryCache.load(source, SpectralLibraryCacheFormat.readSourceInfo(source),
+        cacheDirectory));
+  }
+
+  @Test
+  void testMissingCache() throws IOException {
+    final File source = createSource("library.json", "[]");
+    assertNull(SpectralLibraryCache.load(source, SpectralLibraryCacheFormat.readSourceInfo(source),
+        dir.resolve("cache").toFile()));
+  }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2004-2024 The mzmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.util.spectraldb.entry;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.google.common.collect.Range;
+import io.github.mzmine.util.collections.BinarySearch;
+import io.github.mzmine.util.spectraldb.cache.SpectralLibraryCache;
+import io.github.mzmine.util.spectraldb.cache.SpectralLibraryCacheFormat;
+import io.github.mzmine.util.spectraldb.cache.SpectralLibraryCacheFormat.SourceInfo;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class CombinedLibraryEntriesTest {
+
+  private static final int MIN_DATA_POINTS = 2;
+
+  @TempDir
+  Path dir;
+
+  private static SpectralLibrary createLibrary(File source, String prefix) {
+    final SpectralLibrary library = new SpectralLibrary(null, source);
+    for (int e = 0; e < 40; e++) {
+      final Map<DBEntryField, Object> fields = new HashMap<>();
+      fields.put(DBEntryField.NAME, prefix + e);
+      // some entries without precursor and many equal precursor m/z
+      if (e % 6 != 0) {
+        fields.put(DBEntryField.PRECURSOR_MZ, 300d - (e % 9) * 25);
+      }
+      final double[] mzs = new double[e % 5];
+      final double[] intensities = new double[mzs.length];
+      for (int i = 0; i < mzs.length; i++) {
+        mzs[i] = 50 + e + i * 10.0001;
+        intensities[i] = 1 + i;
+      }
+      library.addEntry(new SpectralDBEntry(null, mzs, intensities, fields, library));
+    }
+    return library;
+  }
+
+  private SpectralLibrary createCompiledLibrary(String name) throws IOException {
+    final File source = Files.writeString(dir.resolve(name), name).toFile();
+    final SourceInfo info = SpectralLibraryCacheFormat.readSourceInfo(source);
+    final File cacheDirectory = dir.resolve("cache").toFile();
+    SpectralLibraryCache.write(createLibrary(source, name), info, cacheDirectory, () -> false);
+    final SpectralLibrary compiled = SpectralLibraryCache.load(source, info, cacheDirectory);
+    assertNotNull(compiled);
+    return compiled;
+  }
+
+  private static List<String> names(List<SpectralLibraryEntry> entries) {
+    return entries.stream().map(entry -> entry.getAsString(DBEntryField.NAME).orElseThrow())
+        .toList();
+  }
+
+  private List<SpectralLibrary> createLibraries() throws IOException {
+    return List.of(createLibrary(dir.resolve("a.msp").toFile(), "a"),
+        createCompiledLibrary("b.mgf"), createLibrary(dir.resolve("c.json").toFile(), "c"));
+  }
+
+  @Test
+  void testAllEntries() throws IOException {
+    final List<SpectralLibrary> libraries = createLibraries();
+    final CombinedLibraryEntries combined = CombinedLibraryEntries.of(libraries, MIN_DATA_POINTS);
+    assertFalse(combined.isSortedByPrecursorMz());
+
+    final List<SpectralLibraryEntry> expected = libraries.stream()
+        .flatMap(SpectralLibrary::stream)
+        .filter(entry -> entry.getNumberOfDataPoints() >= MIN_DATA_POINTS).toList();
+    assertEquals(names(expected), names(combined));
+    assertDataPoints(combined);
+  }
+
+  @Test
+  void testSortedByPrecursorMz() throws IOException {
+    final List<SpectralLibrary> libraries = createLibraries();
+    final CombinedLibraryEntries combined = CombinedLibraryEntries.sortedByPrecursorMz(libraries,
+        MIN_DATA_POINTS);
+    assertTrue(combined.isSortedByPrecursorMz());
+
+    // same order as sorting all entries with a stable sort
+    final List<SpectralLibraryEntry> expected = libraries.stream()
+        .flatMap(SpectralLibrary::stream)
+        .filter(entry -> entry.getNumberOfDataPoints() >= MIN_DATA_POINTS)
+        .filter(entry -> entry.getPrecursorMZ() != null)
+        .sorted(Comparator.comparing(SpectralLibraryEntry::getPrecursorMZ)).toList();
+    assertEquals(names(expected), names(combined));
+    assertDataPoints(combined);
+
+    for (Range<Double> range : List.of(Range.closed(200d, 250d), Range.closed(99d, 101d),
+        Range.closed(0d, 10d), Range.closed(301d, 400d), Range.closed(0d, 1000d))) {
+      assertEquals(BinarySearch.indexRange(range, expected, SpectralLibraryEntry::getPrecursorMZ),
+          combined.indexRangeOfPrecursorMz(range));
+    }
+  }
+
+  private static void assertDataPoints(CombinedLibraryEntries combined) {
+    for (int i = 0; i < combined.size(); i++) {
+      final SpectralLibraryEntry entry = combined.get(i);
+      assertEquals(entry.getNumberOfDataPoints(), combined.getNumberOfDataPoints(i));
+      assertArrayEquals(entry.getMzValues(new double[entry.getNumberOfDataPoints()]),
+          combined.getMzValues(i, new double[0]));
+    }
+  }
+
+  @Test
+  void testEmpty() {
+    assertTrue(CombinedLibraryEntries.sortedByPrecursorMz(List.of(), 0).isEmpty());
+    assertTrue(CombinedLibraryEntries.of(List.of(new SpectralLibrary(null, new File("x.msp"))), 0)
+        .isEmpty());
+  }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2004-2024 The mzmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package stats;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import io.github.mzmine.modules.dataanalysis.pca_new.PCAResult;
+import io.github.mzmine.modules.dataanalysis.pca_new.RandomizedSVD;
+import java.util.Random;
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.apache.commons.math3.linear.RealMatrix;
+import org.apache.commons.math3.linear.SingularValueDecomposition;
+import org.junit.jupiter.api.Test;
+
+class RandomizedSVDTest {
+
+  /**
+   * Low rank data with decaying singular values and noise
+   */
+  private static double[][] createData(Random random, int rows, int cols, int rank) {
+    final double[][] data = new double[rows][cols];
+    for (int k = 0; k < rank; k++) {
+      final double weight = 100d / (k + 1);
+      final double[] sampleFactors = random.doubles(rows).map(v -> v - 0.5).toArray();
+      final double[] featureFactors = random.doubles(cols).map(v -> v - 0.5).toArray();
+      for (int r = 0; r < rows; r++) {
+        for (int c = 0; c < cols; c++) {
+          data[r][c] += weight * sampleFactors[r] * featureFactors[c];
+        }
+      }
+    }
+    for (int r = 0; r < rows; r++) {
+      for (int c = 0; c < cols; c++) {
+        data[r][c] += random.nextGaussian() * 0.01;
+      }
+    }
+    return data;
+  }
+
+  @Test
+  void testTopComponentsEqualFullSvd() {
+    final double[][] data = createData(new Random(7), 150, 400, 8);
+    final SingularValueDecomposition svd = new SingularValueDecomposition(
+        new Array2DRowRealMatrix(data));
+    final PCAResult full = new PCAResult(svd);
+
+    final int components = 5;
+    final PCAResult truncated = RandomizedSVD.decompose(data, components, null);
+
+    assertEquals(components, truncated.componentCount());
+    assertEquals(full.totalVariance(), truncated.totalVariance(), full.totalVariance() * 1E-10);
+    for (int i = 0; i < components; i++) {
+      final double expected = full.singularValues()[i];
+      assertEquals(expected, truncated.singularValues()[i], expected * 1E-8);
+      // components are equal up to the sign
+      assertEquals(1d, Math.abs(dot(full.u(), truncated.u(), i)), 1E-8);
+      assertEquals(1d, Math.abs(dot(full.v(), truncated.v(), i)), 1E-8);
+    }
+
+    final float[] fullContributions = full.getComponentContributions(components);
+    final float[] contributions = truncated.getComponentContributions(components);
+    for (int i = 0; i < components; i++) {
+      assertEquals(fullContributions[i], contributions[i], 1E-6);
+    }
+  }
+
+  @Test
+  void testIntermediateResultAndDeterminism() {
+    final double[][] data = createData(new Random(3), 120, 300, 4);
+    final PCAResult[] intermediate = new PCAResult[1];
+    final PCAResult first = RandomizedSVD.decompose(data, 3, result -> intermediate[0] = result);
+    final PCAResult second = RandomizedSVD.decompose(data, 3, null);
+
+    assertEquals(3, intermediate[0].componentCount());
+    assertEquals(first.singularValues()[0], intermediate[0].singularValues()[0],
+        first.singularValues()[0] * 1E-3);
+    for (int i = 0; i < 3; i++) {
+      assertEquals(first.singularValues()[i], second.singularValues()[i], 0d);
+    }
+  }
+
+  private static double dot(RealMatrix a, RealMatrix b, int column) {
+    double dot = 0;
+    for (int r = 0; r < a.getRowDimension(); r++) {
+      dot += a.getEntry(r, column) * b.getEntry(r, column);
+    }
+    return dot;
+  }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2004-2024 The mzmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package stats;
+
+import io.github.mzmine.modules.dataanalysis.significance.SignificanceKernels;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+import org.apache.commons.math3.stat.inference.TestUtils;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class SignificanceKernelsTest {
+
+  private static final int ROWS = 2500;
+  private static final int[] GROUP_A = {0, 2, 4, 6, 8};
+  private static final int[] GROUP_B = {1, 3, 5, 7, 9};
+  private static final int[] GROUP_C = {10, 11, 12, 13};
+
+  private final float[][] columns = createColumns(14);
+
+  private static float[][] createColumns(int files) {
+    final Random random = new Random(42);
+    final float[][] columns = new float[files][ROWS];
+    for (int f = 0; f < files; f++) {
+      for (int r = 0; r < ROWS; r++) {
+        // some missing values and a shift in group B
+        columns[f][r] = random.nextDouble() < 0.15 ? Float.NaN
+            : (float) (1E5 * (1 + random.nextDouble()) * (f % 2 == 1 ? 1.3 : 1));
+      }
+    }
+    return columns;
+  }
+
+  private double[] values(int row, int[] group) {
+    return Arrays.stream(group).mapToDouble(c -> columns[c][row]).filter(v -> !Double.isNaN(v))
+        .toArray();
+  }
+
+  @Test
+  void testWelchTTest() {
+    final double[] pValues = SignificanceKernels.welchTTest(columns, ROWS, GROUP_A, GROUP_B,
+        () -> false);
+    for (int r = 0; r < ROWS; r++) {
+      final double[] a = values(r, GROUP_A);
+      final double[] b = values(r, GROUP_B);
+      if (a.length < 2 || b.length < 2) {
+        Assertions.assertTrue(Double.isNaN(pValues[r]));
+      } else {
+        Assertions.assertEquals(TestUtils.tTest(a, b), pValues[r], 1E-12);
+      }
+    }
+  }
+
+  @Test
+  void testPairedTTest() {
+    final double[] pValues = SignificanceKernels.pairedTTest(columns, ROWS, GROUP_A, GROUP_B,
+        () -> false);
+    int tested = 0;
+    for (int r = 0; r < ROWS; r++) {
+      final double[] a = values(r, GROUP_A);
+      final double[] b = values(r, GROUP_B);
+      if (a.length != b.length || a.length < 2) {
+        Assertions.assertTrue(Double.isNaN(pValues[r]));
+      } else {
+        tested++;
+        Assertions.assertEquals(TestUtils.pairedTTest(a, b), pValues[r], 1E-12);
+      }
+    }
+    Assertions.assertTrue(tested > 0);
+  }
+
+  @Test
+  void testOneWayAnova() {
+    final int[][] groups = {GROUP_A, GROUP_B, GROUP_C};
+    final double[] pValues = new double[ROWS];
+    final double[] fValues = new double[ROWS];
+    SignificanceKernels.oneWayAnova(columns, ROWS, groups, pValues, fValues, () -> false);
+    for (int r = 0; r < ROWS; r++) {
+      final int row = r;
+      final List<double[]> data = Arrays.stream(groups).map(g -> values(row, g)).toList();
+      if (data.stream().anyMatch(values -> values.length <= 1)) {
+        Assertions.assertTrue(Double.isNaN(pValues[r]));
+      } else {
+        Assertions.assertEquals(TestUtils.oneWayAnovaPValue(data), pValues[r], 1E-12);
+        Assertions.assertEquals(TestUtils.oneWayAnovaFValue(data), fValues[r], 1E-9);
+      }
+    }
+  }
+
+  @Test
+  void testCountValues() {
+    final int[] counts = SignificanceKernels.countValues(columns, ROWS, GROUP_A);
+    for (int r = 0; r < ROWS; r++) {
+      Assertions.assertEquals(values(r, GROUP_A).length, counts[r]);
+    }
+  }
+
+  @Test
+  void testCanceledTestSkipsAllBlocks() {
+    final double[] pValues = SignificanceKernels.welchTTest(columns, ROWS, GROUP_A, GROUP_B,
+        () -> true);
+    Assertions.assertTrue(Arrays.stream(pValues).allMatch(p -> p == 0d));
+  }
+
+  @Test
+  void testBenjaminiHochberg() {
+    final double[] pValues = {0.01, Double.NaN, 0.04, 0.03, 0.2};
+    final double[] qValues = SignificanceKernels.benjaminiHochberg(pValues);
+    // 4 tests: 0.01*4/1, 0.03*4/2, 0.04*4/3, 0.2*4/4 with monotonicity from the largest p-value
+    Assertions.assertEquals(0.04, qValues[0], 1E-12);
+    Assertions.assertTrue(Double.isNaN(qValues[1]));
+    Assertions.assertEquals(0.04 * 4 / 3, qValues[2], 1E-12);
+    Assertions.assertEquals(0.04 * 4 / 3, qValues[3], 1E-12);
+    Assertions.assertEquals(0.2, qValues[4], 1E-12);
+
+    final double[] q = SignificanceKernels.benjaminiHochberg(
+        SignificanceKernels.welchTTest(columns, ROWS, GROUP_A, GROUP_B, () -> false));
+    Assertions.assertTrue(IntStream.range(0, q.length).filter(i -> !Double.isNaN(q[i]))
+        .allMatch(i -> q[i] >= 0 && q[i] <= 1));
+  }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2004-2024 The mzmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataprocessing.group_metacorrelate.correlation;
+
+import io.github.mzmine.datamodel.features.correlation.PackedCorrelationData.Statistics;
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Vector API implementation of {@link ShapeCorrelationKernel}. Only compiled with the vectorApi
+ * build property and only loaded if the jdk.incubator.vector module is available.
+ */
+final class VectorShapeCorrelationKernel implements ShapeCorrelationKernel.VectorKernel {
+
+  private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+  /**
+   * @return number of lanes
+   */
+  @Override
+  public int minLength() {
+    return SPECIES.length();
+  }
+
+  @Override
+  public @NotNull Statistics computeStatistics(double[] x, int xOffset, double[] y, int yOffset,
+      int n) {
+    final int upper = SPECIES.loopBound(n);
+    DoubleVector sumX = DoubleVector.zero(SPECIES);
+    DoubleVector sumY = DoubleVector.zero(SPECIES);
+    DoubleVector dot = DoubleVector.zero(SPECIES);
+    DoubleVector normX = DoubleVector.zero(SPECIES);
+    DoubleVector normY = DoubleVector.zero(SPECIES);
+    DoubleVector minX = DoubleVector.broadcast(SPECIES, Double.POSITIVE_INFINITY);
+    DoubleVector maxX = DoubleVector.broadcast(SPECIES, Double.NEGATIVE_INFINITY);
+    DoubleVector minY = minX;
+    DoubleVector maxY = maxX;
+    for (int i = 0; i < upper; i += SPECIES.length()) {
+      final DoubleVector a = DoubleVector.fromArray(SPECIES, x, xOffset + i);
+      final DoubleVector b = DoubleVector.fromArray(SPECIES, y, yOffset + i);
+      sumX = sumX.add(a);
+      sumY = sumY.add(b);
+      dot = a.fma(b, dot);
+      normX = a.fma(a, normX);
+      normY = b.fma(b, normY);
+      minX = minX.min(a);
+      maxX = maxX.max(a);
+      minY = minY.min(b);
+      maxY = maxY.max(b);
+    }
+    double sx = sumX.reduceLanes(VectorOperators.ADD);
+    double sy = sumY.reduceLanes(VectorOperators.ADD);
+    double sdot = dot.reduceLanes(VectorOperators.ADD);
+    double snx = normX.reduceLanes(VectorOperators.ADD);
+    double sny = normY.reduceLanes(VectorOperators.ADD);
+    double mnx = minX.reduceLanes(VectorOperators.MIN);
+    double mxx = maxX.reduceLanes(VectorOperators.MAX);
+    double mny = minY.reduceLanes(VectorOperators.MIN);
+    double mxy = maxY.reduceLanes(VectorOperators.MAX);
+    // tail
+    for (int i = upper; i < n; i++) {
+      final double a = x[xOffset + i];
+      final double b = y[yOffset + i];
+      sx += a;
+      sy += b;
+      sdot += a * b;
+      snx += a * a;
+      sny += b * b;
+      mnx = Math.min(mnx, a);
+      mxx = Math.max(mxx, a);
+      mny = Math.min(mny, b);
+      mxy = Math.max(mxy, b);
+    }
+
+    // centered sums
+    final DoubleVector meanX = DoubleVector.broadcast(SPECIES, sx / n);
+    final DoubleVector meanY = DoubleVector.broadcast(SPECIES, sy / n);
+    DoubleVector sumXX = DoubleVector.zero(SPECIES);
+    DoubleVector sumYY = DoubleVector.zero(SPECIES);
+    DoubleVector sumXY = DoubleVector.zero(SPECIES);
+    for (int i = 0; i < upper; i += SPECIES.length()) {
+      final DoubleVector dx = DoubleVector.fromArray(SPECIES, x, xOffset + i).sub(meanX);
+      final DoubleVector dy = DoubleVector.fromArray(SPECIES, y, yOffset + i).sub(meanY);
+      sumXX = dx.fma(dx, sumXX);
+      sumYY = dy.fma(dy, sumYY);
+      sumXY = dx.fma(dy, sumXY);
+    }
+    // tail is added by the scalar implementation
+    return ShapeCorrelationKernel.centered(x, xOffset, y, yOffset, n, upper, sx, sy,
+        sumXX.reduceLanes(VectorOperators.ADD), sumYY.reduceLanes(VectorOperators.ADD),
+        sumXY.reduceLanes(VectorOperators.ADD), sdot, snx, sny, mnx, mxx, mny, mxy);
+  }
+}
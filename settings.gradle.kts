@@ -19,5 +19,6 @@ include(
     "utils",
     "javafx-framework",
     "config",
+    "mzmine-benchmarks",
 )
 //includeBuild("convention-plugins")
@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2004-2024 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.taskcontrol.impl;
+
+import io.github.mzmine.taskcontrol.ProcessedItemsCounter;
+import io.github.mzmine.taskcontrol.Task;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * JDK Flight Recorder event emitted for every task that runs through a {@link WrappedTask}. CPU
+ * time and allocations are measured on the thread that runs {@link Task#run()}, work of sub threads
+ * started by the task is not included. Values are only measured while a recording is active.
+ */
+@Name(TaskEvent.NAME)
+@Label("Task")
+@Category({"mzmine", "Tasks"})
+@Description("Run of a single mzmine task")
+@StackTrace(false)
+public class TaskEvent extends Event {
+
+  public static final String NAME = "io.github.mzmine.Task";
+
+  /**
+   * Items processed by all finished tasks that implement {@link ProcessedItemsCounter}. Used to
+   * calculate the items processed during a batch step.
+   */
+  private static final LongAdder totalProcessedItems = new LongAdder();
+
+  @Label("Task class")
+  String taskClass;
+
+  @Label("Description")
+  String description;
+
+  @Label("Status")
+  String status;
+
+  @Label("CPU time")
+  @Timespan(Timespan.NANOSECONDS)
+  long cpuTime;
+
+  @Label("Allocated")
+  @DataAmount(DataAmount.BYTES)
+  long allocated;
+
+  @Label("Processed items")
+  long processedItems;
+
+  private transient long startCpuTime;
+  private transient long startAllocated;
+
+  /**
+   * @return the sum of processed items of all finished tasks that implement
+   * {@link ProcessedItemsCounter}
+   */
+  public static long getTotalProcessedItems() {
+    return totalProcessedItems.sum();
+  }
+
+  /**
+   * Start the event and capture the thread resources. Call on the thread that runs the task.
+   */
+  void start(@NotNull Task task) {
+    begin();
+    if (!isEnabled()) {
+      return;
+    }
+    taskClass = task.getClass().getName();
+    description = task.getTaskDescription();
+    startCpuTime = threadCpuTime();
+    startAllocated = threadAllocatedBytes();
+  }
+
+  /**
+   * Finish and commit the event. Call on the same thread as {@link #start(Task)}.
+   */
+  void finish(@NotNull Task task) {
+    end();
+    final long items =
+        task instanceof ProcessedItemsCounter counter ? counter.getProcessedItems() : 0;
+    totalProcessedItems.add(items);
+    if (!shouldCommit()) {
+      return;
+    }
+    status = String.valueOf(task.getStatus());
+    cpuTime = Math.max(0, threadCpuTime() - startCpuTime);
+    allocated = Math.max(0, threadAllocatedBytes() - startAllocated);
+    processedItems = items;
+    commit();
+  }
+
+  private static long threadCpuTime() {
+    final var bean = ManagementFactory.getThreadMXBean();
+    return bean.isCurrentThreadCpuTimeSupported() ? bean.getCurrentThreadCpuTime() : 0;
+  }
+
+  private static long threadAllocatedBytes() {
+    if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean bean
+        && bean.isThreadAllocatedMemorySupported()) {
+      return bean.getCurrentThreadAllocatedBytes();
+    }
+    return 0;
+  }
+}
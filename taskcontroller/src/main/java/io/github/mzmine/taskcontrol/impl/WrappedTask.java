@@ -160,6 +160,8 @@ public class WrappedTask implements Task {
     try {
       running = true;
       Task actualTask = getActualTask();
+      final TaskEvent event = new TaskEvent();
+      event.start(actualTask);
       try {
 
         // Log the start (INFO level events go to the Status bar, too)
@@ -205,6 +207,8 @@ public class WrappedTask implements Task {
 //          "Unhandled exception in task " + actualTask.getTaskDescription() + ": "
 //          + ExceptionUtils.exceptionToString(e));
 
+      } finally {
+        event.finish(actualTask);
       }
 
       /*
@@ -0,0 +1,358 @@
+/*
+ * Copyright (c) 2004-2024 The mzmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.util.collections;
+
+import com.google.common.collect.BoundType;
+import com.google.common.collect.Range;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Immutable index of items by m/z, retention time and mobility for fast range queries, e.g., of
+ * feature list rows in alignment and annotation. The index is a k-d tree over primitive arrays
+ * where each node stores the bounding box of its subtree. Missing retention time or mobility values
+ * are wildcards that match every query range, like in
+ * {@code FeatureListUtils.getCandidatesWithinRanges}. Items without m/z never match. Queries with
+ * primitive bounds do not allocate.
+ *
+ * @param <T> the indexed items
+ */
+public class MzRtMobilityIndex<T> {
+
+  private static final int LEAF_SIZE = 16;
+  private static final int MZ = 0;
+  private static final int RT = 1;
+  private static final int MOBILITY = 2;
+
+  // items and values in tree order
+  private final Object[] items;
+  private final double[] mzs;
+  private final float[] rts;
+  private final float[] mobilities;
+
+  // nodes: [start, end) in item arrays, index of left child (right is left + 1) or -1 for leaves
+  private final int[] nodeStart;
+  private final int[] nodeEnd;
+  private final int[] nodeLeft;
+  private final double[] nodeMinMz;
+  private final double[] nodeMaxMz;
+  private final float[] nodeMinRt;
+  private final float[] nodeMaxRt;
+  private final float[] nodeMinMobility;
+  private final float[] nodeMaxMobility;
+  private int numNodes;
+
+  private MzRtMobilityIndex(Object[] items, double[] mzs, float[] rts, float[] mobilities) {
+    this.items = items;
+    this.mzs = mzs;
+    this.rts = rts;
+    this.mobilities = mobilities;
+
+    // leaves hold at least LEAF_SIZE/2 items
+    final int maxNodes = 4 * items.length / LEAF_SIZE + 4;
+    nodeStart = new int[maxNodes];
+    nodeEnd = new int[maxNodes];
+    nodeLeft = new int[maxNodes];
+    nodeMinMz = new double[maxNodes];
+    nodeMaxMz = new double[maxNodes];
+    nodeMinRt = new float[maxNodes];
+    nodeMaxRt = new float[maxNodes];
+    nodeMinMobility = new float[maxNodes];
+    nodeMaxMobility = new float[maxNodes];
+    numNodes = 1;
+    build(0, 0, items.length, 0);
+  }
+
+  /**
+   * Creates an index of the items. Null values are wildcards for retention time and mobility.
+   *
+   * @param mz       m/z of an item, items with null are never returned
+   * @param rt       retention time of an item or null
+   * @param mobility mobility of an item or null
+   */
+  public static <T> @NotNull MzRtMobilityIndex<T> of(@NotNull Collection<? extends T> items,
+      @NotNull Function<? super T, ? extends Number> mz,
+      @NotNull Function<? super T, ? extends Number> rt,
+      @NotNull Function<? super T, ? extends Number> mobility) {
+    final int n = items.size();
+    final Object[] array = new Object[n];
+    final double[] mzs = new double[n];
+    final float[] rts = new float[n];
+    final float[] mobilities = new float[n];
+    int i = 0;
+    for (T item : items) {
+      array[i] = item;
+      final Number itemMz = mz.apply(item);
+      final Number itemRt = rt.apply(item);
+      final Number itemMobility = mobility.apply(item);
+      mzs[i] = itemMz == null ? Double.NaN : itemMz.doubleValue();
+      rts[i] = itemRt == null ? Float.NaN : itemRt.floatValue();
+      mobilities[i] = itemMobility == null ? Float.NaN : itemMobility.floatValue();
+      i++;
+    }
+    return new MzRtMobilityIndex<>(array, mzs, rts, mobilities);
+  }
+
+  private static double lower(@Nullable Range<Double> range) {
+    if (range == null || !range.hasLowerBound()) {
+      return Double.NEGATIVE_INFINITY;
+    }
+    final double value = range.lowerEndpoint();
+    return range.lowerBoundType() == BoundType.CLOSED ? value : Math.nextUp(value);
+  }
+
+  private static double upper(@Nullable Range<Double> range) {
+    if (range == null || !range.hasUpperBound()) {
+      return Double.POSITIVE_INFINITY;
+    }
+    final double value = range.upperEndpoint();
+    return range.upperBoundType() == BoundType.CLOSED ? value : Math.nextDown(value);
+  }
+
+  private static float lowerFloat(@Nullable Range<Float> range) {
+    if (range == null || !range.hasLowerBound()) {
+      return Float.NEGATIVE_INFINITY;
+    }
+    final float value = range.lowerEndpoint();
+    return range.lowerBoundType() == BoundType.CLOSED ? value : Math.nextUp(value);
+  }
+
+  private static float upperFloat(@Nullable Range<Float> range) {
+    if (range == null || !range.hasUpperBound()) {
+      return Float.POSITIVE_INFINITY;
+    }
+    final float value = range.upperEndpoint();
+    return range.upperBoundType() == BoundType.CLOSED ? value : Math.nextDown(value);
+  }
+
+  /**
+   * @return number of indexed items
+   */
+  public int size() {
+    return items.length;
+  }
+
+  /**
+   * All items within all ranges. Null ranges or {@link Range#all()} deactivate the filter.
+   *
+   * @return an unsorted list of items
+   */
+  public @NotNull List<T> getWithinRanges(@Nullable Range<Double> mzRange,
+      @Nullable Range<Float> rtRange, @Nullable Range<Float> mobilityRange) {
+    final List<T> result = new ArrayList<>();
+    addWithinRanges(lower(mzRange), upper(mzRange), lowerFloat(rtRange), upperFloat(rtRange),
+        lowerFloat(mobilityRange), upperFloat(mobilityRange), result);
+    return result;
+  }
+
+  /**
+   * Number of items within all ranges. Null ranges or {@link Range#all()} deactivate the filter.
+   */
+  public int countWithinRanges(@Nullable Range<Double> mzRange, @Nullable Range<Float> rtRange,
+      @Nullable Range<Float> mobilityRange) {
+    return forEachWithinRanges(lower(mzRange), upper(mzRange), lowerFloat(rtRange),
+        upperFloat(rtRange), lowerFloat(mobilityRange), upperFloat(mobilityRange), item -> {
+        });
+  }
+
+  /**
+   * Adds all items within the closed ranges to the target. Use infinite bounds to deactivate a
+   * filter.
+   *
+   * @return number of added items
+   */
+  public int addWithinRanges(double minMz, double maxMz, float minRt, float maxRt,
+      float minMobility, float maxMobility, @NotNull Collection<? super T> target) {
+    return forEachWithinRanges(minMz, maxMz, minRt, maxRt, minMobility, maxMobility, target::add);
+  }
+
+  /**
+   * Applies the consumer to all items within the closed ranges. Use infinite bounds to deactivate
+   * a filter.
+   *
+   * @return number of items
+   */
+  public int forEachWithinRanges(double minMz, double maxMz, float minRt, float maxRt,
+      float minMobility, float maxMobility, @NotNull Consumer<? super T> consumer) {
+    if (items.length == 0) {
+      return 0;
+    }
+    return query(0, minMz, maxMz, minRt, maxRt, minMobility, maxMobility, consumer);
+  }
+
+  @SuppressWarnings("unchecked")
+  private int query(int node, double minMz, double maxMz, float minRt, float maxRt,
+      float minMobility, float maxMobility, Consumer<? super T> consumer) {
+    if (nodeMaxMz[node] < minMz || nodeMinMz[node] > maxMz || nodeMaxRt[node] < minRt
+        || nodeMinRt[node] > maxRt || nodeMaxMobility[node] < minMobility
+        || nodeMinMobility[node] > maxMobility) {
+      return 0;
+    }
+    final int left = nodeLeft[node];
+    if (left != -1) {
+      return query(left, minMz, maxMz, minRt, maxRt, minMobility, maxMobility, consumer) + query(
+          left + 1, minMz, maxMz, minRt, maxRt, minMobility, maxMobility, consumer);
+    }
+
+    int found = 0;
+    for (int i = nodeStart[node]; i < nodeEnd[node]; i++) {
+      final double mz = mzs[i];
+      final float rt = rts[i];
+      final float mobility = mobilities[i];
+      // NaN m/z never matches, NaN rt and mobility always match
+      if (mz >= minMz && mz <= maxMz //
+          && !(rt < minRt || rt > maxRt) //
+          && !(mobility < minMobility || mobility > maxMobility)) {
+        consumer.accept((T) items[i]);
+        found++;
+      }
+    }
+    return found;
+  }
+
+  private void build(int node, int start, int end, int depth) {
+    nodeStart[node] = start;
+    nodeEnd[node] = end;
+    nodeLeft[node] = -1;
+
+    double minMz = Double.POSITIVE_INFINITY, maxMz = Double.NEGATIVE_INFINITY;
+    float minRt = Float.POSITIVE_INFINITY, maxRt = Float.NEGATIVE_INFINITY;
+    float minMobility = Float.POSITIVE_INFINITY, maxMobility = Float.NEGATIVE_INFINITY;
+    boolean rtWildcard = false, mobilityWildcard = false;
+    for (int i = start; i < end; i++) {
+      if (!Double.isNaN(mzs[i])) {
+        minMz = Math.min(minMz, mzs[i]);
+        maxMz = Math.max(maxMz, mzs[i]);
+      }
+      if (Float.isNaN(rts[i])) {
+        rtWildcard = true;
+      } else {
+        minRt = Math.min(minRt, rts[i]);
+        maxRt = Math.max(maxRt, rts[i]);
+      }
+      if (Float.isNaN(mobilities[i])) {
+        mobilityWildcard = true;
+      } else {
+        minMobility = Math.min(minMobility, mobilities[i]);
+        maxMobility = Math.max(maxMobility, mobilities[i]);
+      }
+    }
+    nodeMinMz[node] = minMz;
+    nodeMaxMz[node] = maxMz;
+    // wildcards match every query range
+    nodeMinRt[node] = rtWildcard ? Float.NEGATIVE_INFINITY : minRt;
+    nodeMaxRt[node] = rtWildcard ? Float.POSITIVE_INFINITY : maxRt;
+    nodeMinMobility[node] = mobilityWildcard ? Float.NEGATIVE_INFINITY : minMobility;
+    nodeMaxMobility[node] = mobilityWildcard ? Float.POSITIVE_INFINITY : maxMobility;
+
+    if (end - start <= LEAF_SIZE) {
+      return;
+    }
+    // split dimensions in turn, skip dimensions without spread
+    final boolean[] splittable = {minMz < maxMz, minRt < maxRt, minMobility < maxMobility};
+    int dim = -1;
+    for (int d = 0; d < 3; d++) {
+      if (splittable[(depth + d) % 3]) {
+        dim = (depth + d) % 3;
+        break;
+      }
+    }
+    if (dim == -1) {
+      return;
+    }
+
+    final int mid = (start + end) >>> 1;
+    select(start, end - 1, mid, dim);
+    final int left = numNodes;
+    numNodes += 2;
+    nodeLeft[node] = left;
+    build(left, start, mid, depth + 1);
+    build(left + 1, mid, end, depth + 1);
+  }
+
+  /**
+   * Partial sorting so that the k-th element is at its sorted position (NaN last)
+   *
+   * @param low  inclusive
+   * @param high inclusive
+   */
+  private void select(int low, int high, int k, int dim) {
+    while (high > low) {
+      final double pivot = key(dim, (low + high) >>> 1);
+      int i = low;
+      int j = high;
+      while (i <= j) {
+        while (key(dim, i) < pivot) {
+          i++;
+        }
+        while (key(dim, j) > pivot) {
+          j--;
+        }
+        if (i <= j) {
+          swap(i, j);
+          i++;
+          j--;
+        }
+      }
+      if (k <= j) {
+        high = j;
+      } else if (k >= i) {
+        low = i;
+      } else {
+        return;
+      }
+    }
+  }
+
+  private double key(int dim, int i) {
+    final double value = switch (dim) {
+      case MZ -> mzs[i];
+      case RT -> rts[i];
+      default -> mobilities[i];
+    };
+    return Double.isNaN(value) ? Double.POSITIVE_INFINITY : value;
+  }
+
+  private void swap(int i, int j) {
+    final Object item = items[i];
+    items[i] = items[j];
+    items[j] = item;
+    final double mz = mzs[i];
+    mzs[i] = mzs[j];
+    mzs[j] = mz;
+    final float rt = rts[i];
+    rts[i] = rts[j];
+    rts[j] = rt;
+    final float mobility = mobilities[i];
+    mobilities[i] = mobilities[j];
+    mobilities[j] = mobility;
+  }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2004-2024 The mzmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.util.collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.google.common.collect.Range;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class MzRtMobilityIndexTest {
+
+  private static List<Item> createItems(int n, Random random) {
+    List<Item> items = new ArrayList<>(n);
+    for (int i = 0; i < n; i++) {
+      // some missing values as wildcards
+      Float rt = random.nextInt(20) == 0 ? null : random.nextFloat() * 30f;
+      Float mobility = random.nextBoolean() ? null : 0.5f + random.nextFloat();
+      // duplicates of m/z
+      double mz = random.nextInt(10) == 0 && i > 0 ? items.get(i - 1).mz()
+          : 100 + random.nextDouble() * 900;
+      items.add(new Item(i, mz, rt, mobility));
+    }
+    return items;
+  }
+
+  private static List<Item> bruteForce(List<Item> items, Range<Double> mzRange,
+      Range<Float> rtRange, Range<Float> mobilityRange) {
+    return items.stream().filter(item -> mzRange.contains(item.mz()) //
+        && (item.rt() == null || rtRange.contains(item.rt())) //
+        && (item.mobility() == null || mobilityRange.contains(item.mobility()))).toList();
+  }
+
+  private static List<Item> sorted(List<Item> items) {
+    return items.stream().sorted(Comparator.comparingInt(Item::id)).toList();
+  }
+
+  @Test
+  void testSameAsLinearSearch() {
+    Random random = new Random(42);
+    List<Item> items = createItems(5000, random);
+    MzRtMobilityIndex<Item> index = MzRtMobilityIndex.of(items, Item::mz, Item::rt,
+        Item::mobility);
+    assertEquals(items.size(), index.size());
+
+    for (int i = 0; i < 500; i++) {
+      double mz = 100 + random.nextDouble() * 900;
+      float rt = random.nextFloat() * 30f;
+      float mobility = 0.5f + random.nextFloat();
+      Range<Double> mzRange =
+          i % 5 == 0 ? Range.all() : Range.closed(mz - random.nextDouble() * 5, mz);
+      Range<Float> rtRange = i % 3 == 0 ? Range.all() : Range.closed(rt - 0.5f, rt + 0.5f);
+      Range<Float> mobilityRange =
+          i % 2 == 0 ? Range.all() : Range.closedOpen(mobility, mobility + 0.05f);
+
+      assertEquals(sorted(bruteForce(items, mzRange, rtRange, mobilityRange)),
+          sorted(index.getWithinRanges(mzRange, rtRange, mobilityRange)));
+    }
+  }
+
+  @Test
+  void testEmptyAndMissingMz() {
+    MzRtMobilityIndex<Item> empty = MzRtMobilityIndex.of(List.of(), Item::mz, Item::rt,
+        Item::mobility);
+    assertEquals(0, empty.getWithinRanges(Range.all(), Range.all(), Range.all()).size());
+
+    List<Item> items = List.of(new Item(0, null, 1f, null), new Item(1, 200d, null, null));
+    MzRtMobilityIndex<Item> index = MzRtMobilityIndex.of(items, Item::mz, Item::rt,
+        Item::mobility);
+    assertEquals(List.of(items.get(1)),
+        index.getWithinRanges(Range.all(), Range.closed(5f, 6f), Range.closed(1f, 2f)));
+  }
+
+  private record Item(int id, Double mz, Float rt, Float mobility) {
+
+  }
+}